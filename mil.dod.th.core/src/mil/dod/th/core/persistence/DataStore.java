@@ -35,6 +35,48 @@ import mil.dod.th.core.validator.ValidationFailedException;
 @ProviderType
 public interface DataStore<T>
 {
+    /** Event topic prefix to use for the removal topics in this interface. */
+    String REMOVE_TOPIC_PREFIX = "mil/dod/th/core/persistence/DataStore/";
+    
+    /**
+     * Topic used each time a chunk of a bulk removal has been committed. Bulk removals (by time range or query) are 
+     * done in chunks so other operations on the store are not blocked for the entire removal. The following are the 
+     * properties that will be set on the event with this topic.
+     * <ul>
+     * <li>{@link #EVENT_PROP_DATA_TYPE} - fully qualified class name of the data being removed
+     * <li>{@link #EVENT_PROP_REMOVED_COUNT} - number of items removed so far
+     * <li>{@link #EVENT_PROP_REMOVE_TOTAL} - total number of items that matched the removal
+     * <li>{@link #EVENT_PROP_REMOVE_RATE} - items removed per second so far
+     * </ul>
+     */
+    String TOPIC_REMOVE_PROGRESS = REMOVE_TOPIC_PREFIX + "REMOVE_PROGRESS";
+    
+    /**
+     * Topic used when a bulk removal has completed including cleanup of any related data. Contains the same properties
+     * as {@link #TOPIC_REMOVE_PROGRESS}.
+     */
+    String TOPIC_REMOVE_COMPLETE = REMOVE_TOPIC_PREFIX + "REMOVE_COMPLETE";
+    
+    /**
+     * Event property key for the fully qualified class name of the data type being removed (String).
+     */
+    String EVENT_PROP_DATA_TYPE = "data.type";
+    
+    /**
+     * Event property key for the number of items removed so far (Long).
+     */
+    String EVENT_PROP_REMOVED_COUNT = "removed.count";
+    
+    /**
+     * Event property key for the total number of items to be removed (Long).
+     */
+    String EVENT_PROP_REMOVE_TOTAL = "remove.total";
+    
+    /**
+     * Event property key for the number of items removed per second (Double).
+     */
+    String EVENT_PROP_REMOVE_RATE = "remove.rate";
+    
     /**
      * Check if the specified UUID correlates to any of the persistent data entries.
      * 
@@ -92,7 +134,8 @@ public interface DataStore<T>
     void remove(UUID uuid) throws IllegalArgumentException;
 
     /**
-     * Removes data instances stored during the time period framed by the specified start and stop times.
+     * Removes data instances stored during the time period framed by the specified start and stop times. Progress is 
+     * reported using the {@link #TOPIC_REMOVE_PROGRESS} and {@link #TOPIC_REMOVE_COMPLETE} events.
      * 
      * @param startTime
      *            the specified start time
@@ -14,7 +14,9 @@ package mil.dod.th.core.persistence;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import aQute.bnd.annotation.ProviderType;
 
@@ -42,6 +44,11 @@ import mil.dod.th.core.types.observation.ObservationSubTypeEnum;
 @ProviderType
 public interface ObservationQuery
 {
+    /**
+     * Number of observations retrieved from the store at a time by {@link #stream()}.
+     */
+    int DEFAULT_FETCH_SIZE = 100;
+    
     /**
      * This is the equivalent of calling <code>withAssetUuid(asset.getUuid())</code>.
      * 
@@ -264,6 +271,17 @@ public interface ObservationQuery
      */
     ObservationQuery withSystemId(int systemId);
     
+    /**
+     * Do not read the value of digital media that the store keeps outside of the database when running the query. 
+     * The value of such media in the retrieved observations is only a reference to the stored value, which can be 
+     * read as a stream using {@link ObservationStore#openDigitalMedia(mil.dod.th.core.types.DigitalMedia)}. Useful 
+     * when the observations are retrieved without needing the media, or to avoid holding large media in memory.
+     * 
+     * @return
+     *      the updated query object
+     */
+    ObservationQuery withDigitalMediaDeferred();
+    
     /**
      * Run the query.
      * 
@@ -273,7 +291,53 @@ public interface ObservationQuery
     Collection<Observation> execute();
     
     /**
-     * Remove the observations that match the query from the data store.
+     * <p>
+     * Run the query, retrieving observations from the store lazily in pages of the given size instead of all at once 
+     * like {@link #execute()}. Only the current page is held in memory and the store is not locked between pages, so 
+     * this should be used for queries that may match a large number of observations.
+     * </p>
+     * <p>
+     * Pages are found using the last created timestamp (and UUID) returned by the previous page, so observations 
+     * persisted or removed while iterating will not cause observations to be skipped or returned twice. If sorting by 
+     * {@link SortField#ObservedTimestamp}, pages are found by position instead, which does not provide this guarantee.
+     * </p>
+     * <p>
+     * The range, max, order and filters are captured when this method is called, later changes to the query do not 
+     * affect the returned iterator.
+     * </p>
+     * 
+     * @param fetchSize
+     *      maximum number of observations to retrieve from the store at a time
+     * @return
+     *      iterator of the observations matching the query, {@link Iterator#remove()} is not supported
+     * @throws IllegalArgumentException
+     *      if the fetch size is less than 1
+     */
+    Iterator<Observation> iterate(int fetchSize) throws IllegalArgumentException;
+    
+    /**
+     * Run the query, retrieving observations lazily as the stream is consumed. Same as {@link #iterate(int)} using 
+     * {@link #DEFAULT_FETCH_SIZE} as the fetch size.
+     * 
+     * @return
+     *      sequential stream of the observations matching the query
+     */
+    Stream<Observation> stream();
+    
+    /**
+     * Describe how the query would be run by {@link #execute()} without running it. Intended as a diagnostic to verify 
+     * the store can use an index for the query, the format of the description is not defined and may change.
+     * 
+     * @return
+     *      human readable description of the query, including the filters, ordering and the plan reported by the 
+     *      underlying database if available
+     */
+    String explain();
+    
+    /**
+     * Remove the observations that match the query from the data store. Observations are removed in chunks with 
+     * progress reported using the {@link DataStore#TOPIC_REMOVE_PROGRESS} and {@link DataStore#TOPIC_REMOVE_COMPLETE}
+     * events.
      * 
      * @return
      *      number of observations removed
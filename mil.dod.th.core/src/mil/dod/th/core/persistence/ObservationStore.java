@@ -12,13 +12,17 @@
 //==============================================================================
 package mil.dod.th.core.persistence;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 import aQute.bnd.annotation.ProviderType;
 
 import mil.dod.th.core.asset.Asset;
 import mil.dod.th.core.observation.types.Observation;
+import mil.dod.th.core.types.DigitalMedia;
 import mil.dod.th.core.types.Version;
 import mil.dod.th.core.types.observation.ObservationSubTypeEnum;
 import mil.dod.th.core.validator.ValidationFailedException;
@@ -182,6 +186,47 @@ public interface ObservationStore extends DataStore<Observation>
     void persist(Observation observation) throws IllegalArgumentException, ValidationFailedException,
             PersistenceFailedException;
     
+    /**
+     * Persists an observation instance without waiting for the observation to be committed to the store. The 
+     * observation is validated against a schema before this method returns, but the write itself is queued and 
+     * committed together with other pending observations in a single transaction. This method may block if the queue 
+     * of pending observations is full. The given observation is committed as is, so it must not be accessed or changed 
+     * until the returned future completes.
+     * 
+     * @param observation
+     *            the asset observation to be validated and persisted
+     * @return
+     *            future that completes with the persisted observation once it has been committed, if the persist fails
+     *            {@link Future#get()} will throw an {@link java.util.concurrent.ExecutionException} with a 
+     *            {@link PersistenceFailedException} as the cause
+     * @throws IllegalArgumentException
+     *            if the specified validated observation is null
+     * @throws ValidationFailedException
+     *            if the observation is not valid
+     */
+    Future<Observation> persistAsync(Observation observation) throws IllegalArgumentException, 
+            ValidationFailedException;
+    
+    /**
+     * Persists a group of observations in a single transaction, replacing any observation already in the store that 
+     * has the same UUID as one of the given observations. All observations are validated before anything is written 
+     * and the existing observations are found with a single query for the whole group. Either all observations are 
+     * persisted or none are.
+     * 
+     * @param observations
+     *            the asset observations to be validated and persisted, must not contain the same UUID twice
+     * @return
+     *            number of observations that replaced an observation already in the store
+     * @throws IllegalArgumentException
+     *            if the collection or any of the observations is null
+     * @throws PersistenceFailedException
+     *            if the persist failed, no observations will have been persisted or replaced
+     * @throws ValidationFailedException
+     *            if any of the observations is not valid
+     */
+    int persistOrReplaceAll(Collection<Observation> observations) throws IllegalArgumentException, 
+            ValidationFailedException, PersistenceFailedException;
+    
     /**
      * Create a new query object to query or remove observations.  Initially the query will return observations in 
      * descending order (using {@link Observation#getCreatedTimestamp()} and can be changed by calling {@link 
@@ -193,6 +238,21 @@ public interface ObservationStore extends DataStore<Observation>
      */
     ObservationQuery newQuery();
     
+    /**
+     * Open a stream to read the value of the given digital media, taken from an observation retrieved from this 
+     * store. If the store keeps the value outside of the database, it is read from there as the stream is consumed, 
+     * including media of observations retrieved using {@link ObservationQuery#withDigitalMediaDeferred()}. Otherwise, 
+     * the stream reads the value of the media.
+     * 
+     * @param media
+     *      digital media of an observation retrieved from this store
+     * @return
+     *      stream of the media value, must be closed by the caller
+     * @throws IOException
+     *      if the value kept outside of the database cannot be opened
+     */
+    InputStream openDigitalMedia(DigitalMedia media) throws IOException;
+    
     /**
      * Removes all persistence managed observation instances from memory for the specified asset instance.
      * 
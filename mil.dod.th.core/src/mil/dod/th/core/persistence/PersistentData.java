@@ -79,7 +79,30 @@ public class PersistentData
                        final String context, // NOCHECKSTYLE: hides a field, but this name makes most sense
                        final Serializable entity) // NOCHECKSTYLE: hides a field, but this name makes most sense
     {
-        timestamp = new Date().getTime();
+        this(uuid, description, context, entity, new Date().getTime());
+    }
+    
+    /**
+     * Constructor for a copy of existing data that keeps the original timestamp.
+     * 
+     * @param uuid
+     *            the specified universally unique identifier
+     * @param description
+     *            the queryable description string of the persistence managed data
+     * @param context
+     *            the queryable symbolic name of the data's originating OSGi bundle
+     * @param entity
+     *            the persistent entity
+     * @param timestamp
+     *            the time relative to the origination of the data in milliseconds
+     */
+    public PersistentData(final UUID uuid, // NOCHECKSTYLE: hides a field, but this name makes most sense
+                       final String description, // NOCHECKSTYLE: hides a field, but this name makes most sense
+                       final String context, // NOCHECKSTYLE: hides a field, but this name makes most sense
+                       final Serializable entity, // NOCHECKSTYLE: hides a field, but this name makes most sense
+                       final long timestamp) // NOCHECKSTYLE: hides a field, but this name makes most sense
+    {
+        this.timestamp = timestamp;
         this.uuid = uuid;
         this.description = description;
         this.context = context;
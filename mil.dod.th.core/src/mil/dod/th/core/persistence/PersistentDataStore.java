@@ -169,6 +169,9 @@ public interface PersistentDataStore extends DataStore<PersistentData>
      * If the persistent data instances are contained in the persistence context, and match based on the defined data
      * description, they are returned.
      * 
+     * The results may be cached until the store changes, but each call returns its own instances, so changes to a 
+     * returned instance are not seen by other callers until saved using {@link #merge(Object)}.
+     * 
      * @param context
      *            the specified context which uniquely identifies the data being persisted
      * @param description
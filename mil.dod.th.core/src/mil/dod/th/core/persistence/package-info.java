@@ -14,7 +14,7 @@
 /**
  * Implementation support for persistence of data.
  */
-@Version("4.1.0")
+@Version("4.7.0")
 package mil.dod.th.core.persistence;
 
 import aQute.bnd.annotation.Version;
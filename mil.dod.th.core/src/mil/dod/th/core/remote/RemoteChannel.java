@@ -93,6 +93,32 @@ public interface RemoteChannel
      */
     int getQueuedMessageCount();
     
+    /**
+     * Get the total size of the messages currently queued for sending.
+     * 
+     * @return
+     *      number of bytes of messages already queued
+     */
+    long getQueuedByteCount();
+    
+    /**
+     * Get the running count of messages transmitted on this channel.  Value is only reset when channel is recreated 
+     * (system restart).
+     * 
+     * @return
+     *      number of messages transmitted
+     */
+    long getMessagesTransmitted();
+    
+    /**
+     * Get the running count of messages that were dropped by this channel without being sent, either because the 
+     * queue was full or because the queue was cleared.  Value is only reset when channel is recreated (system restart).
+     * 
+     * @return
+     *      number of messages dropped
+     */
+    long getDroppedMessageCount();
+    
     /**
      * Get the running count of byte transmitted on this channel.  Value is only reset when channel is recreated (system
      * restart).  Does not include the octet count varint sent before each message.
@@ -13,6 +13,9 @@
 
 package mil.dod.th.core.remote.messaging;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import aQute.bnd.annotation.ProviderType;
 
 import mil.dod.th.core.remote.RemoteChannel;
@@ -182,6 +185,32 @@ public interface MessageSender
      *      false if not (the message will not be sent as the queue has reached a limit)
      */
     boolean queueMessage(RemoteChannel channel, TerraHarvestPayload payload, ResponseHandler handler);
+
+    /**
+     * Queue a request to the desired destination and get a future for the response.  Works like {@link 
+     * #queueMessage(int, TerraHarvestPayload, EncryptType, ResponseHandler)}, but instead of calling a handler, the 
+     * returned future is completed with the response.  The future is completed exceptionally with a {@link 
+     * java.util.concurrent.TimeoutException} if no response is received within the timeout, or an {@link 
+     * IllegalStateException} if the request could not be queued.  Cancelling the future stops waiting for the 
+     * response.
+     * 
+     * @param destId
+     *      the id of the destination system
+     * @param payload
+     *      the payload message
+     * @param encryptType
+     *      the encryption mode to be used
+     * @param timeout
+     *      how long to wait for the response
+     * @param unit
+     *      unit of the timeout
+     * @return
+     *      future completed with the response, or exceptionally if the request fails or times out
+     * @throws IllegalArgumentException
+     *      if the given destination id cannot be found in the lookup
+     */
+    CompletableFuture<RemoteResponse> queueRequest(int destId, TerraHarvestPayload payload, EncryptType encryptType, 
+            long timeout, TimeUnit unit) throws IllegalArgumentException;
     
     /**
      * Get the number of response handlers currently known to this service.
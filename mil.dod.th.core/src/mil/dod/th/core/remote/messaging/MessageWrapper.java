@@ -13,6 +13,9 @@
 
 package mil.dod.th.core.remote.messaging; 
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import aQute.bnd.annotation.ProviderType;
 
 import mil.dod.th.core.remote.RemoteChannel;
@@ -27,7 +30,8 @@ import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
  * If the endpoint is available, the message will be sent immediately.
  * 
  * The trySend() method does not support a response handler. If a response handler is needed for the handling 
- * of a response to a request, the queue() must be called. 
+ * of a response to a request, the queue() must be called. The queueRequest() method returns a future for the response 
+ * instead of calling a handler.
  * 
  * @author cashioka
  *
@@ -91,4 +95,25 @@ public interface MessageWrapper extends MessageWrapperAutoEncryption
      *      false if not (the message will not be sent as the queue has reached a limit)
      */
     boolean queue(RemoteChannel channel, EncryptType encryptType, ResponseHandler handler);
+
+    /**
+     * Queue the wrapped message to the desired destination and get a future for the response.  The future is 
+     * completed exceptionally with a {@link java.util.concurrent.TimeoutException} if no response is received within
+     * the timeout, or an {@link IllegalStateException} if the message could not be queued.
+     * 
+     * @param destId
+     *      {@link mil.dod.th.core.system.TerraHarvestSystem} id of the destination system
+     * @param encryptType
+     *      the encryption mode to be used
+     * @param timeout
+     *      how long to wait for the response
+     * @param unit
+     *      unit of the timeout
+     * @return
+     *      future completed with the response
+     * @throws IllegalArgumentException
+     *      if the given destination id cannot be found in the lookup
+     */
+    CompletableFuture<RemoteResponse> queueRequest(int destId, EncryptType encryptType, long timeout, TimeUnit unit)
+            throws IllegalArgumentException;
 } 
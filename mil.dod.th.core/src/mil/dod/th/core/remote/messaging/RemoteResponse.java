@@ -0,0 +1,111 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.core.remote.messaging;
+
+import com.google.protobuf.Message;
+
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
+
+/**
+ * Response received for a request sent with {@link MessageWrapper#queueRequest(int, 
+ * mil.dod.th.core.remote.proto.RemoteBase.EncryptType, long, java.util.concurrent.TimeUnit)}.  Contains the same 
+ * information passed to a {@link mil.dod.th.core.remote.ResponseHandler}.
+ */
+public final class RemoteResponse
+{
+    /**
+     * The entire response message.
+     */
+    private final TerraHarvestMessage m_Message;
+    
+    /**
+     * Payload of the response.
+     */
+    private final TerraHarvestPayload m_Payload;
+    
+    /**
+     * Namespace message of the response.
+     */
+    private final Message m_NamespaceMessage;
+    
+    /**
+     * Data message of the namespace message, may be null.
+     */
+    private final Message m_DataMessage;
+
+    /**
+     * Create a response.
+     * 
+     * @param message
+     *      the entire response message
+     * @param payload
+     *      payload of the response
+     * @param namespaceMessage
+     *      namespace message of the response
+     * @param dataMessage
+     *      data message of the namespace message, null if the message has no data
+     */
+    public RemoteResponse(final TerraHarvestMessage message, final TerraHarvestPayload payload, 
+            final Message namespaceMessage, final Message dataMessage)
+    {
+        m_Message = message;
+        m_Payload = payload;
+        m_NamespaceMessage = namespaceMessage;
+        m_DataMessage = dataMessage;
+    }
+
+    /**
+     * Get the entire response message.
+     * 
+     * @return
+     *      the response message
+     */
+    public TerraHarvestMessage getMessage()
+    {
+        return m_Message;
+    }
+
+    /**
+     * Get the payload containing the namespace of the response.
+     * 
+     * @return
+     *      the payload
+     */
+    public TerraHarvestPayload getPayload()
+    {
+        return m_Payload;
+    }
+
+    /**
+     * Get the namespace response message.
+     * 
+     * @return
+     *      the namespace message
+     */
+    public Message getNamespaceMessage()
+    {
+        return m_NamespaceMessage;
+    }
+
+    /**
+     * Get the data message of the namespace response.
+     * 
+     * @return
+     *      the data message, null if no data is associated with the namespace message
+     */
+    public Message getDataMessage()
+    {
+        return m_DataMessage;
+    }
+}
@@ -17,7 +17,7 @@
  * <p>
  * The remote messaging package is the basic API to support creation and transportation of messages.
  */
-@Version("1.2.0")
+@Version("1.3.0")
 package mil.dod.th.core.remote.messaging;
 
 import aQute.bnd.annotation.Version;
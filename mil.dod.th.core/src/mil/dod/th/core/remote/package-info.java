@@ -18,7 +18,7 @@
  * The remote package is the basic API to support remote access of a controller either by the standard Terra Harvest 
  * user interface, another controller or by any other client.  This could include a client not written in Java.
  */
-@Version("3.2.0")
+@Version("3.3.0")
 package mil.dod.th.core.remote;
 
 import aQute.bnd.annotation.Version;
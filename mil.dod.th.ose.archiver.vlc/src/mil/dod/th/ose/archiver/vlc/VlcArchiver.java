@@ -141,7 +141,11 @@ public class VlcArchiver implements ArchiverService
             //If media item is created successfully, keep track in process map
             m_ProcessMap.put(processId, player);
 
-            m_WakeLock.activate();
+            // lock stays active while any process is running, only the first process needs to activate it
+            if (m_ProcessMap.size() == 1)
+            {
+                m_WakeLock.activate();
+            }
         }
         else
         {
@@ -19,8 +19,16 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -32,6 +40,7 @@ import mil.dod.th.core.log.Logging;
 import mil.dod.th.core.observation.types.AudioMetadata;
 import mil.dod.th.core.observation.types.Observation;
 import mil.dod.th.core.observation.types.Weather;
+import mil.dod.th.core.persistence.DataStore;
 import mil.dod.th.core.persistence.ObservationQuery.SortField;
 import mil.dod.th.core.persistence.ObservationQuery.SortOrder;
 import mil.dod.th.core.persistence.ObservationStore;
@@ -45,11 +54,13 @@ import mil.dod.th.core.types.audio.AudioRecorder;
 import mil.dod.th.core.types.audio.AudioRecorderEnum;
 import mil.dod.th.core.types.observation.ObservationSubTypeEnum;
 import mil.dod.th.core.validator.ValidationFailedException;
+import mil.dod.th.ose.integration.commons.EventHandlerSyncer;
 import mil.dod.th.ose.test.matchers.JaxbUtil;
 
 import org.knowhowlab.osgi.testing.utils.ServiceUtils;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
+import org.osgi.service.event.Event;
 import org.osgi.service.log.LogService;
 
 import example.asset.data.ExampleNonLexiconData;
@@ -567,7 +578,7 @@ public class TestPersistence extends TestCase
      * Verify can use some of the same query methods to remove observations
      */
     public void testObservationRemoval()
-        throws ValidationFailedException, IllegalArgumentException, PersistenceFailedException
+        throws ValidationFailedException, IllegalArgumentException, PersistenceFailedException, InterruptedException
     {
         List<Observation> expectedObs = new ArrayList<>();
         for (int i = 0; i < 20; i++)
@@ -578,8 +589,15 @@ public class TestPersistence extends TestCase
             m_ObservationStore.persist(expectedObs.get(i));
         }
         
+        final EventHandlerSyncer syncer = new EventHandlerSyncer(m_Context, DataStore.TOPIC_REMOVE_COMPLETE, 
+                String.format("(%s=%s)", DataStore.EVENT_PROP_DATA_TYPE, Observation.class.getName()));
         long obsRemoved = m_ObservationStore.newQuery().withAssetType(ASSETTYPE).remove();
         assertThat(obsRemoved, is((long)expectedObs.size()));
+        
+        // completion is posted with the number of observations removed
+        final Event event = syncer.waitForEvent(5);
+        assertThat((Long)event.getProperty(DataStore.EVENT_PROP_REMOVED_COUNT), is(obsRemoved));
+        assertThat((Long)event.getProperty(DataStore.EVENT_PROP_REMOVE_TOTAL), is(obsRemoved));
         List<Observation> obsLeft = new ArrayList<>(m_ObservationStore.newQuery().withAssetType(ASSETTYPE).execute());
         
         //should be the 0 left
@@ -681,4 +699,135 @@ public class TestPersistence extends TestCase
                 new Date(endTime));
         assertThat(pDataColl.size(), is(0));
     }
+    
+    /**
+     * Verify iterating through a query a page at a time returns the same observations as executing it at once, 
+     * including observations that share a created timestamp across a page boundary.
+     */
+    public void testObservationQueryIterate() throws IllegalArgumentException, PersistenceFailedException, 
+        ValidationFailedException
+    {
+        final long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 25; i++)
+        {
+            final Observation observation = createObservation();
+            // groups of 3 share a timestamp so some groups are split between pages
+            observation.setCreatedTimestamp(timestamp + i / 3);
+            m_ObservationStore.persist(observation);
+        }
+        
+        final List<UUID> expected = new ArrayList<>();
+        for (Observation observation : m_ObservationStore.newQuery().withAssetType(ASSETTYPE).execute())
+        {
+            expected.add(observation.getUuid());
+        }
+        assertThat(expected.size(), is(25));
+        
+        final Set<UUID> iterated = new HashSet<>();
+        final Iterator<Observation> iterator = m_ObservationStore.newQuery().withAssetType(ASSETTYPE).iterate(4);
+        long lastTimestamp = Long.MAX_VALUE;
+        while (iterator.hasNext())
+        {
+            final Observation observation = iterator.next();
+            assertThat(observation.getCreatedTimestamp() <= lastTimestamp, is(true));
+            lastTimestamp = observation.getCreatedTimestamp();
+            assertThat(iterated.add(observation.getUuid()), is(true));
+        }
+        assertThat(iterated, is((Set<UUID>)new HashSet<>(expected)));
+        
+        // range applies to the iterator too
+        final List<UUID> ranged = new ArrayList<>();
+        final Iterator<Observation> rangedIterator = 
+                m_ObservationStore.newQuery().withAssetType(ASSETTYPE).withRange(5, 15).iterate(4);
+        while (rangedIterator.hasNext())
+        {
+            ranged.add(rangedIterator.next().getUuid());
+        }
+        assertThat(ranged.size(), is(10));
+        assertThat(m_ObservationStore.newQuery().withAssetType(ASSETTYPE).stream().count(), is(25L));
+    }
+    
+    /**
+     * Verify the composite indexes exist and the database plan reported by explain uses them.
+     */
+    public void testObservationQueryExplain() throws IllegalArgumentException, PersistenceFailedException, 
+        ValidationFailedException
+    {
+        final Observation observation = createObservation();
+        m_ObservationStore.persist(observation);
+        
+        final String explanation = m_ObservationStore.newQuery().withAssetUuid(observation.getAssetUuid())
+                .withTimeCreatedRange(new Date(0), new Date()).explain();
+        assertThat(explanation, containsString("Database plan: "));
+        assertThat(explanation, containsString("ASSETUUID_CREATED_INDEX"));
+        
+        // query must still run the same once explained
+        assertThat(m_ObservationStore.newQuery().withAssetUuid(observation.getAssetUuid()).execute().size(), is(1));
+    }
+    
+    /**
+     * Verify ingest rate of observations holds up while other threads are querying the store. Queries run on separate 
+     * read connections so they should not hold up writes.
+     */
+    public void testPersistThroughputWithConcurrentQueries() throws Exception
+    {
+        final int count = 200;
+        
+        final long baselineMs = persistObservations(count);
+        
+        final AtomicBoolean querying = new AtomicBoolean(true);
+        final AtomicInteger queryCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final long concurrentMs;
+        try
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        while (querying.get())
+                        {
+                            m_ObservationStore.queryByAssetType(ASSETTYPE);
+                            queryCount.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            
+            concurrentMs = persistObservations(count);
+        }
+        finally
+        {
+            querying.set(false);
+            executor.shutdown();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        
+        Logging.log(LogService.LOG_INFO, "Persisted %d observations in %d ms alone, %d ms with %d concurrent queries",
+                count, baselineMs, concurrentMs, queryCount.get());
+        
+        // allow for some slowdown, but writes must not be starved by the readers
+        assertThat(concurrentMs <= Math.max(baselineMs, 1) * 2, is(true));
+    }
+    
+    /**
+     * Persist the given number of new observations.
+     * 
+     * @param count
+     *      number of observations to persist
+     * @return
+     *      time in ms it took to persist all observations
+     */
+    private long persistObservations(final int count) throws ValidationFailedException, PersistenceFailedException
+    {
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++)
+        {
+            m_ObservationStore.persist(createObservation());
+        }
+        return System.currentTimeMillis() - start;
+    }
 }
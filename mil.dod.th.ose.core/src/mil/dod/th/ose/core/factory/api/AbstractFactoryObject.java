@@ -13,6 +13,7 @@
 package mil.dod.th.ose.core.factory.api;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,12 +28,15 @@ import com.google.common .base.Objects;
 import com.google.common.base.Preconditions;
 
 import mil.dod.th.core.factory.Extension;
+import mil.dod.th.core.factory.FactoryDescriptor;
 import mil.dod.th.core.factory.FactoryException;
 import mil.dod.th.core.factory.FactoryObjectProxy;
 import mil.dod.th.core.log.Logging;
 import mil.dod.th.core.pm.WakeLock;
 import mil.dod.th.ose.core.factory.api.data.FactoryObjectInformationException;
 import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.EventTopicInterest;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
 import mil.dod.th.ose.utils.ConfigurationUtils;
 
 import org.osgi.service.cm.Configuration;
@@ -116,7 +120,31 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
     /**
      * Wake lock used for base factory object operations.
      */
-    private WakeLock m_WakeLock;
+    private CountingWakeLock m_WakeLock;
+    
+    /**
+     * Cached snapshot of the configuration properties, invalidated when the configuration changes.
+     */
+    private final FactoryObjectConfigCache m_ConfigCache = new FactoryObjectConfigCache();
+    
+    /**
+     * Loads the properties from configuration admin when the cached snapshot is not available.
+     */
+    private final FactoryObjectConfigCache.PropertiesLoader m_PropertiesLoader = 
+            new FactoryObjectConfigCache.PropertiesLoader()
+            {
+                @Override
+                public Map<String, Object> load()
+                {
+                    return loadProperties();
+                }
+            };
+    
+    /**
+     * Immutable properties included in every event posted by the object, null if they must be rebuilt because the name
+     * or PID changed.
+     */
+    private volatile Map<String, Object> m_BaseEventProps;
 
     @Override
     public void initialize(final FactoryRegistry<?> registry, final FactoryObjectProxy proxy, //NOPMD: 
@@ -138,8 +166,12 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
         m_EventAdmin = eventAdmin;
         m_ConfigAdmin = configAdmin;
         m_PowerManagerInternal = powerMgr;
+        m_ConfigCache.invalidate();
+        m_BaseEventProps = null;
 
-        m_WakeLock = powerMgr.createWakeLock(m_FactoryObjectProxy.getClass(), this, "coreFactoryObject");
+        m_WakeLock = new CountingWakeLock(
+                powerMgr.createWakeLock(m_FactoryObjectProxy.getClass(), this, "coreFactoryObject"));
+        powerMgr.registerCountingWakeLock(m_WakeLock);
 
         m_ExtensionMap = new HashMap<>();
         final Set<Extension<?>> extensions = 
@@ -166,6 +198,8 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
     public void setPid(final String pid)
     {
         m_Pid = pid;
+        m_ConfigCache.invalidate();
+        m_BaseEventProps = null;
     }
     
     @Override
@@ -190,6 +224,7 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
     public void internalSetName(final String name)
     {
         m_Name = name;
+        m_BaseEventProps = null;
     }
 
     @Override
@@ -200,17 +235,63 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
     
     @Override
     public Map<String, Object> getProperties()
+    {
+        // interface promises a copy, the snapshot itself is unmodifiable
+        return new HashMap<>(m_ConfigCache.getProperties(m_PropertiesLoader));
+    }
+    
+    @Override
+    public void invalidateConfigSnapshot()
+    {
+        m_ConfigCache.invalidate();
+    }
+    
+    /**
+     * Get the cache holding the configuration snapshot of this object.
+     * 
+     * @return
+     *      the configuration cache, can be used to retrieve hit and miss counts
+     */
+    public FactoryObjectConfigCache getConfigCache()
+    {
+        return m_ConfigCache;
+    }
+    
+    /**
+     * Get the configuration of this object through the given attributes interface. The returned attributes are cached 
+     * until the configuration changes so this can be called frequently.
+     * 
+     * @param <T>
+     *      type of the attributes interface
+     * @param type
+     *      attributes interface of the object
+     * @return
+     *      attributes backed by the current configuration
+     */
+    protected <T> T getAttributes(final Class<T> type)
+    {
+        return m_ConfigCache.getAttributes(type, m_PropertiesLoader);
+    }
+    
+    /**
+     * Load the properties directly from configuration admin, does not include default values.
+     * 
+     * @return
+     *      the current properties
+     */
+    private Map<String, Object> loadProperties()
     {
         // return whatever comes back from config admin, don't get defaults.
+        final String pid = m_Pid;
         Configuration config;//NOCHECKSTYLE assigned inside try/catch
         try
         {
-            config = FactoryServiceUtils.getFactoryConfiguration(m_ConfigAdmin, m_Pid);
+            config = FactoryServiceUtils.getFactoryConfiguration(m_ConfigAdmin, pid);
         }
         catch (final FactoryException e)
         {
             throw new IllegalStateException(String.format("Configuration could not be retrieved for %s" 
-                    + " for PID %s", getName(), m_Pid));
+                    + " for PID %s", getName(), pid));
         }
 
         Dictionary<String, Object> configProps = null;
@@ -257,6 +338,7 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
                     m_Latch = new CountDownLatch(1);
                     // Update properties in ConfigAdmin
                     configuration.update(propsDict);
+                    m_ConfigCache.invalidate();
                 }
             }
             catch (final IOException e)
@@ -314,6 +396,8 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
     @Override
     public void blockingPropsUpdate(final Map<String, Object> props) throws ConfigurationException
     {
+        // drop the snapshot first so the object sees the new values while handling the update
+        m_ConfigCache.invalidate();
         synchronized (m_LatchLock)
         {
             try
@@ -335,20 +419,78 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
     @Override
     public void postEvent(final String topic, final Map<String, Object> props)
     {
-        final Map<String, Object> propsToPost = FactoryServiceUtils.getFactoryObjectBaseEventProps(this);
-        
-        if (props != null)
+        if (isEventSubscribed(topic))
         {
-            for (String key : props.keySet())
-            {
-                propsToPost.put(key, props.get(key));
-            }
+            postSubscribedEvent(topic, props);
+        }
+    }
+    
+    /**
+     * Check if any event handler is subscribed to the given topic. Use before building the properties of high rate 
+     * events and then call {@link #postSubscribedEvent(String, Map)} only if true is returned. Each call is counted as 
+     * a delivered or suppressed event.
+     * 
+     * @param topic
+     *      topic of the event about to be posted
+     * @return
+     *      true if the event should be built and posted, always true if the topic interest service is not available
+     */
+    protected boolean isEventSubscribed(final String topic)
+    {
+        final EventTopicInterest topicInterest = m_Registry.getEventTopicInterest();
+        return topicInterest == null || topicInterest.isSubscribed(topic);
+    }
+    
+    /**
+     * Post an event that has already been checked with {@link #isEventSubscribed(String)}. The base factory object 
+     * properties are added to the given properties.
+     * 
+     * @param topic
+     *      topic of the event
+     * @param props
+     *      event specific properties, may be null
+     */
+    protected void postSubscribedEvent(final String topic, final Map<String, Object> props)
+    {
+        final Map<String, Object> propsToPost;
+        if (props == null || props.isEmpty())
+        {
+            propsToPost = getBaseEventProperties();
+        }
+        else
+        {
+            propsToPost = new LayeredEventProperties(getBaseEventProperties(), props);
         }
         
         m_EventAdmin.postEvent(new Event(topic, propsToPost));
         Logging.log(LogService.LOG_DEBUG, "Factory object [%s] posted event [%s]", m_Name, topic);
     }
     
+    /**
+     * Get the properties common to every event posted by this object. The map is built once and reused until the name 
+     * or PID of the object changes.
+     * 
+     * @return
+     *      unmodifiable map of the base event properties
+     */
+    protected Map<String, Object> getBaseEventProperties()
+    {
+        Map<String, Object> baseProps = m_BaseEventProps;
+        if (baseProps == null)
+        {
+            baseProps = Collections.unmodifiableMap(FactoryServiceUtils.getFactoryObjectBaseEventProps(this));
+            m_BaseEventProps = baseProps;
+            
+            // name or PID may have changed while building, don't keep the stale map around for later events
+            if (!Objects.equal(baseProps.get(FactoryDescriptor.EVENT_PROP_OBJ_NAME), m_Name)
+                    || !Objects.equal(baseProps.get(FactoryDescriptor.EVENT_PROP_OBJ_PID), m_Pid))
+            {
+                m_BaseEventProps = null;
+            }
+        }
+        return baseProps;
+    }
+    
     @Override
     public <T> T getExtension(final Class<T> type) throws IllegalArgumentException
     {
@@ -389,7 +531,7 @@ public abstract class AbstractFactoryObject implements FactoryObjectInternal
     public void delete() throws IllegalStateException
     {
         m_Registry.delete(this);
-        m_PowerManagerInternal.deleteWakeLock(m_WakeLock);
+        m_PowerManagerInternal.deleteWakeLock(m_WakeLock.getWakeLock());
     }
     
     @Override
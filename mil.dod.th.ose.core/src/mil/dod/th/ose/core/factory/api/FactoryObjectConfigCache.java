@@ -0,0 +1,237 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.factory.api;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import aQute.bnd.annotation.metatype.Configurable;
+
+/**
+ * Caches an immutable snapshot of a factory object's configuration properties along with the attributes proxy created
+ * from them. Once loaded, reads are a single volatile read until the snapshot is invalidated because the configuration 
+ * changed.
+ */
+public class FactoryObjectConfigCache
+{
+    /**
+     * Guards the generation so a load that started before an invalidation cannot store a stale snapshot.
+     */
+    private final Object m_Lock = new Object();
+    
+    /**
+     * Number of reads served from the snapshot.
+     */
+    private final AtomicLong m_Hits = new AtomicLong();
+    
+    /**
+     * Number of reads that had to load the properties.
+     */
+    private final AtomicLong m_Misses = new AtomicLong();
+    
+    /**
+     * Current snapshot, null if the properties must be loaded on the next read.
+     */
+    private volatile Snapshot m_Snapshot;
+    
+    /**
+     * Incremented each time the snapshot is invalidated, guarded by {@link #m_Lock}.
+     */
+    private long m_Generation;
+    
+    /**
+     * Get the cached properties, loading them if there is no current snapshot.
+     * 
+     * @param loader
+     *      used to load the properties from configuration admin on a miss
+     * @return
+     *      unmodifiable map of the current properties
+     */
+    public Map<String, Object> getProperties(final PropertiesLoader loader)
+    {
+        return getSnapshot(loader).getProperties();
+    }
+    
+    /**
+     * Get the cached attributes proxy for the current properties, creating it if needed.
+     * 
+     * @param <T>
+     *      type of the attributes interface
+     * @param type
+     *      attributes interface the properties are accessed through
+     * @param loader
+     *      used to load the properties from configuration admin on a miss
+     * @return
+     *      attributes backed by the current properties snapshot
+     */
+    public <T> T getAttributes(final Class<T> type, final PropertiesLoader loader)
+    {
+        final Snapshot snapshot = getSnapshot(loader);
+        Object attributes = snapshot.getAttributes();
+        if (!type.isInstance(attributes))
+        {
+            attributes = Configurable.createConfigurable(type, snapshot.getProperties());
+            snapshot.setAttributes(attributes);
+        }
+        return type.cast(attributes);
+    }
+    
+    /**
+     * Discard the current snapshot so the next read loads the properties again.
+     */
+    public void invalidate()
+    {
+        synchronized (m_Lock)
+        {
+            m_Generation++;
+            m_Snapshot = null;
+        }
+    }
+    
+    /**
+     * Get the number of reads served from a cached snapshot.
+     * 
+     * @return
+     *      number of cache hits
+     */
+    public long getHitCount()
+    {
+        return m_Hits.get();
+    }
+    
+    /**
+     * Get the number of reads that had to load the properties.
+     * 
+     * @return
+     *      number of cache misses
+     */
+    public long getMissCount()
+    {
+        return m_Misses.get();
+    }
+    
+    /**
+     * Get the current snapshot or load a new one.
+     * 
+     * @param loader
+     *      used to load the properties on a miss
+     * @return
+     *      the snapshot to read from
+     */
+    private Snapshot getSnapshot(final PropertiesLoader loader)
+    {
+        Snapshot snapshot = m_Snapshot;
+        if (snapshot != null)
+        {
+            m_Hits.incrementAndGet();
+            return snapshot;
+        }
+        
+        m_Misses.incrementAndGet();
+        final long generation;
+        synchronized (m_Lock)
+        {
+            generation = m_Generation;
+        }
+        
+        snapshot = new Snapshot(Collections.unmodifiableMap(new HashMap<>(loader.load())));
+        
+        synchronized (m_Lock)
+        {
+            // only keep the snapshot if the configuration was not changed while loading
+            if (generation == m_Generation)
+            {
+                m_Snapshot = snapshot;
+            }
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Loads the current properties of a factory object.
+     */
+    public interface PropertiesLoader
+    {
+        /**
+         * Load the properties.
+         * 
+         * @return
+         *      the current properties, never null
+         * @throws IllegalStateException
+         *      if the properties cannot be retrieved
+         */
+        Map<String, Object> load() throws IllegalStateException;
+    }
+    
+    /**
+     * Immutable properties and the attributes proxy lazily created from them.
+     */
+    private static final class Snapshot
+    {
+        /**
+         * Unmodifiable properties.
+         */
+        private final Map<String, Object> m_Properties;
+        
+        /**
+         * Attributes proxy backed by {@link #m_Properties}, null until first requested.
+         */
+        private volatile Object m_Attributes;
+        
+        /**
+         * Create a snapshot of the given properties.
+         * 
+         * @param properties
+         *      unmodifiable properties
+         */
+        Snapshot(final Map<String, Object> properties)
+        {
+            m_Properties = properties;
+        }
+        
+        /**
+         * Get the properties.
+         * 
+         * @return
+         *      unmodifiable properties
+         */
+        Map<String, Object> getProperties()
+        {
+            return m_Properties;
+        }
+        
+        /**
+         * Get the attributes proxy.
+         * 
+         * @return
+         *      the attributes or null if not created yet
+         */
+        Object getAttributes()
+        {
+            return m_Attributes;
+        }
+        
+        /**
+         * Set the attributes proxy.
+         * 
+         * @param attributes
+         *      attributes backed by the properties
+         */
+        void setAttributes(final Object attributes)
+        {
+            m_Attributes = attributes;
+        }
+    }
+}
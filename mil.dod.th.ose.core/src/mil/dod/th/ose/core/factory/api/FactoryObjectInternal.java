@@ -131,6 +131,13 @@ public interface FactoryObjectInternal extends FactoryObject, FactoryObjectConte
      */
     void configUpdated(Map<String, Object> props) throws ConfigurationException;
     
+    /**
+     * Discard the cached snapshot of the configuration properties so the next call to {@link #getProperties()} or to
+     * get the object's attributes reads the configuration again. Called when {@link ConfigurationAdmin} reports a 
+     * change to the object's configuration.
+     */
+    void invalidateConfigSnapshot();
+    
     @Override 
     FactoryInternal getFactory();
 }
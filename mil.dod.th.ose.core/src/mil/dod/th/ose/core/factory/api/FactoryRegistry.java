@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
@@ -47,6 +48,7 @@ import mil.dod.th.ose.core.factory.api.data.FactoryObjectDataManager;
 import mil.dod.th.ose.core.factory.api.data.FactoryObjectInformationException;
 import mil.dod.th.ose.core.factory.impl.PendingFactoryObject;
 import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.utils.ConfigurationUtils;
 
 import org.osgi.framework.BundleContext;
@@ -84,7 +86,28 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
     /**
      * Map of all control objects; keyed by the object's UUID.
      */
-    private final Map<UUID, T> m_ControlObjects = Collections.synchronizedMap(new HashMap<UUID, T>());
+    private final Map<UUID, T> m_ControlObjects = new ConcurrentHashMap<>();
+    
+    /**
+     * Index of {@link #m_ControlObjects} by object name.
+     */
+    private final Map<String, T> m_ObjectsByName = new ConcurrentHashMap<>();
+    
+    /**
+     * Index of {@link #m_ControlObjects} by PID, only contains objects that have a PID.
+     */
+    private final Map<String, T> m_ObjectsByPid = new ConcurrentHashMap<>();
+    
+    /**
+     * Index of {@link #m_ControlObjects} by the product type of the object's factory. Sets are never removed so views 
+     * returned by {@link #getObjectsByProductType(String)} stay valid.
+     */
+    private final Map<String, Set<T>> m_ObjectsByProductType = new ConcurrentHashMap<>();
+    
+    /**
+     * Lock held while updating {@link #m_ControlObjects} and the indexes, lookups do not need the lock.
+     */
+    private final Object m_IndexLock = new Object();
     
     /**
      * Map which keeps track of all component instances created and are 
@@ -149,6 +172,11 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
      */
     private PowerManagerInternal m_PowerInternal;
     
+    /**
+     * Used to skip events nobody is subscribed to, null if the service is not available.
+     */
+    private volatile EventTopicInterest m_EventTopicInterest;
+    
     /**
      * The callback interface to use.
      */
@@ -216,6 +244,42 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
         m_PowerInternal = powerMgr;
     }
     
+    /**
+     * Method used to set the {@link EventTopicInterest} service to use.
+     * 
+     * This reference is optional, all events are posted if not available.
+     * 
+     * @param topicInterest
+     *  the service used to check if event topics have any subscribers
+     */
+    @Reference(optional = true, dynamic = true)
+    public void setEventTopicInterest(final EventTopicInterest topicInterest)
+    {
+        m_EventTopicInterest = topicInterest;
+    }
+    
+    /**
+     * Method used to unset the {@link EventTopicInterest} service.
+     * 
+     * @param topicInterest
+     *  parameter not used, must match binding method signature
+     */
+    public void unsetEventTopicInterest(final EventTopicInterest topicInterest)
+    {
+        m_EventTopicInterest = null; // NOPMD: NullAssignment, Must assign to null, field is checked before using
+    }
+    
+    /**
+     * Get the service used to check if event topics posted by objects in this registry have any subscribers.
+     * 
+     * @return
+     *  the event topic interest service or null if not available
+     */
+    public EventTopicInterest getEventTopicInterest()
+    {
+        return m_EventTopicInterest;
+    }
+    
     /**
      * Activation method for this component.
      * @param context
@@ -290,6 +354,18 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
         return Collections.unmodifiableSet(new HashSet<T>(m_ControlObjects.values()));
     }
     
+    /**
+     * Get an unmodifiable view of all known control objects. Unlike {@link #getObjects()}, the objects are not copied, 
+     * the view reflects objects added or removed while iterating.
+     * 
+     * @return
+     *      view of all objects in the registry
+     */
+    public Collection<T> getObjectsView()
+    {
+        return Collections.unmodifiableCollection(m_ControlObjects.values());
+    }
+    
     /**
      * Get the UUIDs of all the objects in the registry.
      * @return
@@ -297,14 +373,7 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
      */
     public List<UUID> getUuids()
     {
-        final List<UUID> uuidList = new ArrayList<UUID>();
-        
-        for (T object : getObjects())
-        {
-            uuidList.add(object.getUuid());
-        }
-        
-        return uuidList;
+        return new ArrayList<UUID>(m_ControlObjects.keySet());
     }
     
     /**
@@ -316,7 +385,19 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
      */
     private void addObject(final T object)
     {
-        m_ControlObjects.put(object.getUuid(), object);
+        synchronized (m_IndexLock)
+        {
+            m_ControlObjects.put(object.getUuid(), object);
+            updateIndex(m_ObjectsByName, null, object.getName(), object);
+            updateIndex(m_ObjectsByPid, null, object.getPid(), object);
+            Set<T> productTypeObjects = m_ObjectsByProductType.get(object.getFactory().getProductType());
+            if (productTypeObjects == null)
+            {
+                productTypeObjects = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+                m_ObjectsByProductType.put(object.getFactory().getProductType(), productTypeObjects);
+            }
+            productTypeObjects.add(object);
+        }
 
         m_DirectoryService.postFactoryObjectEvent(FactoryDescriptor.TOPIC_FACTORY_OBJ_CREATED, object);
         
@@ -334,7 +415,17 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
     {
         m_Logging.info("Attempting to remove %s with UUID %s from registry", m_BaseType, uuid);
 
-        final T itemRemoved = m_ControlObjects.remove(uuid);
+        final T itemRemoved;
+        synchronized (m_IndexLock)
+        {
+            itemRemoved = m_ControlObjects.remove(uuid);
+            if (itemRemoved != null)
+            {
+                updateIndex(m_ObjectsByName, itemRemoved.getName(), null, itemRemoved);
+                updateIndex(m_ObjectsByPid, itemRemoved.getPid(), null, itemRemoved);
+                m_ObjectsByProductType.get(itemRemoved.getFactory().getProductType()).remove(itemRemoved);
+            }
+        }
         if (itemRemoved != null)
         {
             final ComponentInstance compInst = m_ComponentMap.remove(itemRemoved.getUuid());
@@ -502,7 +593,9 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
             throw new IllegalArgumentException("Name cannot be set to null or empty.");
         }
 
+        final String oldName = object.getName();
         object.internalSetName(setName(name, object.getUuid(), false));
+        reindex(m_ObjectsByName, oldName, object.getName(), object);
         
         //name changed post event
         m_DirectoryService.postFactoryObjectEvent(FactoryDescriptor.TOPIC_FACTORY_OBJ_NAME_UPDATED, object);
@@ -538,18 +631,7 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
      */
     public T findObjectByName(final String name)
     {
-        synchronized (m_ControlObjects)
-        {
-            for (T object : m_ControlObjects.values())
-            {
-                if (name.equals(object.getName()))
-                {
-                    return object;
-                }
-            }            
-        }
-        
-        return null;
+        return m_ObjectsByName.get(name);
     }
     
     /**
@@ -562,18 +644,7 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
      */
     public boolean isObjectCreated(final String name) 
     {
-        synchronized (m_ControlObjects)
-        {
-            for (T object : m_ControlObjects.values())
-            {
-                if (name.equals(object.getName()))
-                {
-                    return true;
-                }
-            }
-        }
-        
-        return false;
+        return m_ObjectsByName.containsKey(name);
     }
     
     /**
@@ -611,17 +682,11 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
      */
     public T getObjectByPid(final String pid)
     {
-        //iterate over all known objects checking the PID
-        for (T obj : getObjects())
+        if (pid == null)
         {
-            final String objPid = obj.getPid();
-
-            if (objPid != null && objPid.equals(pid))
-            { 
-                return obj;
-            }
+            return null;
         }
-        return null;
+        return m_ObjectsByPid.get(pid);
     }
     
     /**
@@ -659,19 +724,17 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
      * @param productType
      *      type to find as returned by {@link FactoryDescriptor#getProductType()}
      * @return
-     *      set of objects matching the given type, an empty set means that no objects of the specified type are known
+     *      unmodifiable view of the objects matching the given type, an empty set means that no objects of the 
+     *      specified type are known, the view reflects objects added or removed later on
      */
     public Set<T> getObjectsByProductType(final String productType)
     {
-        final Set<T> objects = new HashSet<T>();
-        for (T object : getObjects())
+        final Set<T> objects = m_ObjectsByProductType.get(productType);
+        if (objects == null)
         {
-            if (object.getFactory().getProductType().equals(productType))
-            {
-                objects.add(object);
-            }
+            return Collections.emptySet();
         }
-        return objects;
+        return Collections.unmodifiableSet(objects);
     }
     
     /**
@@ -683,7 +746,7 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
     public List<String> getObjectNames()
     {
         final List<String> names = new ArrayList<String>();
-        for (T object : getObjects())
+        for (T object : m_ControlObjects.values())
         {
             names.add(object.getName());
         }
@@ -1024,7 +1087,9 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
     public void unAssignPidForObj(final FactoryObjectInternal object) throws IllegalArgumentException, 
             FactoryObjectInformationException
     {
+        final String oldPid = object.getPid();
         object.setPid(null);
+        reindex(m_ObjectsByPid, oldPid, null, object);
         m_FactoryObjectDataManager.clearPid(object.getUuid());
         
         //notify that the pid has been unassigned for an object.
@@ -1073,7 +1138,9 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
         //assign the PID if the object is not null
         if (object != null)
         {
+            final String oldPid = object.getPid();
             object.setPid(pid);
+            reindex(m_ObjectsByPid, oldPid, pid, object);
             
             //send out an event that notifies that the pid has been set for an object.
             m_DirectoryService.postFactoryObjectEvent(FactoryDescriptor.TOPIC_FACTORY_OBJ_PID_CREATED, 
@@ -1083,6 +1150,55 @@ public class FactoryRegistry<T extends FactoryObjectInternal>  //NOPMD Avoid rea
         return config;
     }
     
+    /**
+     * Update the given index after a key of the given object changed, if the object is in the registry.
+     * 
+     * @param index
+     *      index to update
+     * @param oldKey
+     *      key before the change, null if the object had no key
+     * @param newKey
+     *      key after the change, null if the object no longer has a key
+     * @param object
+     *      object that changed
+     */
+    private void reindex(final Map<String, T> index, final String oldKey, final String newKey, 
+            final FactoryObjectInternal object)
+    {
+        synchronized (m_IndexLock)
+        {
+            final T registeredObject = m_ControlObjects.get(object.getUuid());
+            if (registeredObject == object) // NOPMD: compare reference, only objects in the registry are indexed
+            {
+                updateIndex(index, oldKey, newKey, registeredObject);
+            }
+        }
+    }
+    
+    /**
+     * Move the given object from the old key to the new key of the index. Caller must hold {@link #m_IndexLock}.
+     * 
+     * @param index
+     *      index to update
+     * @param oldKey
+     *      key to remove, null if none
+     * @param newKey
+     *      key to add, null if none
+     * @param object
+     *      object being indexed
+     */
+    private void updateIndex(final Map<String, T> index, final String oldKey, final String newKey, final T object)
+    {
+        if (oldKey != null)
+        {
+            index.remove(oldKey, object);
+        }
+        if (newKey != null)
+        {
+            index.put(newKey, object);
+        }
+    }
+    
     /**
      * Create a dictionary of all possible dependencies that an object may have.
      * 
@@ -0,0 +1,172 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.factory.api;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of event properties that layers caller supplied properties over an immutable set of base properties
+ * without copying either. Entries in the overlay take precedence over base entries with the same key. The view is 
+ * meant to be handed directly to an {@link org.osgi.service.event.Event}, which makes the only copy of the properties.
+ */
+final class LayeredEventProperties extends AbstractMap<String, Object>
+{
+    /**
+     * Properties common to every event posted by the object, never modified.
+     */
+    private final Map<String, Object> m_Base;
+    
+    /**
+     * Event specific properties, takes precedence over the base properties.
+     */
+    private final Map<String, Object> m_Overlay;
+    
+    /**
+     * Lazily created entry set view.
+     */
+    private Set<Entry<String, Object>> m_EntrySet;
+    
+    /**
+     * Create a view of the given properties.
+     * 
+     * @param base
+     *      immutable base properties
+     * @param overlay
+     *      event specific properties, not copied so must not be modified while the view is in use
+     */
+    LayeredEventProperties(final Map<String, Object> base, final Map<String, Object> overlay)
+    {
+        super();
+        m_Base = base;
+        m_Overlay = overlay;
+    }
+    
+    @Override
+    public Object get(final Object key)
+    {
+        if (m_Overlay.containsKey(key))
+        {
+            return m_Overlay.get(key);
+        }
+        return m_Base.get(key);
+    }
+    
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        return m_Overlay.containsKey(key) || m_Base.containsKey(key);
+    }
+    
+    @Override
+    public int size()
+    {
+        int size = m_Overlay.size();
+        for (String key : m_Base.keySet())
+        {
+            if (!m_Overlay.containsKey(key))
+            {
+                size++;
+            }
+        }
+        return size;
+    }
+    
+    @Override
+    public Set<Entry<String, Object>> entrySet()
+    {
+        if (m_EntrySet == null)
+        {
+            m_EntrySet = new AbstractSet<Entry<String, Object>>()
+            {
+                @Override
+                public Iterator<Entry<String, Object>> iterator()
+                {
+                    return new LayeredIterator();
+                }
+
+                @Override
+                public int size()
+                {
+                    return LayeredEventProperties.this.size();
+                }
+            };
+        }
+        return m_EntrySet;
+    }
+    
+    /**
+     * Iterates all overlay entries followed by the base entries that are not hidden by the overlay.
+     */
+    private class LayeredIterator implements Iterator<Entry<String, Object>>
+    {
+        /**
+         * Iterator of the overlay entries.
+         */
+        private final Iterator<Entry<String, Object>> m_OverlayIterator = m_Overlay.entrySet().iterator();
+        
+        /**
+         * Iterator of the base entries.
+         */
+        private final Iterator<Entry<String, Object>> m_BaseIterator = m_Base.entrySet().iterator();
+        
+        /**
+         * Next base entry not hidden by the overlay, null if not yet found.
+         */
+        private Entry<String, Object> m_NextBase;
+        
+        @Override
+        public boolean hasNext()
+        {
+            if (m_OverlayIterator.hasNext())
+            {
+                return true;
+            }
+            while (m_NextBase == null && m_BaseIterator.hasNext())
+            {
+                final Entry<String, Object> entry = m_BaseIterator.next();
+                if (!m_Overlay.containsKey(entry.getKey()))
+                {
+                    m_NextBase = entry;
+                }
+            }
+            return m_NextBase != null;
+        }
+
+        @Override
+        public Entry<String, Object> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            if (m_OverlayIterator.hasNext())
+            {
+                return m_OverlayIterator.next();
+            }
+            final Entry<String, Object> entry = m_NextBase;
+            m_NextBase = null;
+            return entry;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("Event properties are read-only");
+        }
+    }
+}
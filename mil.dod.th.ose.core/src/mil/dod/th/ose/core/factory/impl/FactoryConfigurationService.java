@@ -29,7 +29,9 @@ import mil.dod.th.ose.core.factory.api.data.FactoryObjectInformationException;
 import mil.dod.th.ose.utils.ConfigurationUtils;
 
 import org.osgi.framework.Bundle;
+import org.osgi.service.cm.ConfigurationEvent;
 import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ManagedServiceFactory;
 import org.osgi.service.log.LogService;
 import org.osgi.service.metatype.AttributeDefinition;
@@ -42,11 +44,11 @@ import org.osgi.service.metatype.ObjectClassDefinition;
  * Base implementation of a factory configuration service used to register attributes of a factory with the 
  * {@link org.osgi.service.cm.ConfigurationAdmin} and {@link MetaTypeProvider}.  Each service that maintains 
  * {@link mil.dod.th.core.factory.FactoryObject}s 
- * must extend this class.
+ * must extend this class. Also listens for configuration events so objects can drop cached configuration snapshots.
  * 
  * @author dlandoll
  */
-public class FactoryConfigurationService implements ManagedServiceFactory, MetaTypeProvider
+public class FactoryConfigurationService implements ManagedServiceFactory, MetaTypeProvider, ConfigurationListener
 { 
     /**
      * Utility used to log messages.
@@ -276,4 +278,19 @@ public class FactoryConfigurationService implements ManagedServiceFactory, MetaT
             }
         }
     }
-}
\ No newline at end of file
+    
+    @Override
+    public void configurationEvent(final ConfigurationEvent event)
+    {
+        if (!m_Pid.equals(event.getFactoryPid()))
+        {
+            return;
+        }
+        
+        final FactoryObjectInternal object = m_Registry.getObjectByPid(event.getPid());
+        if (object != null)
+        {
+            object.invalidateConfigSnapshot();
+        }
+    }
+}
@@ -52,6 +52,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ManagedServiceFactory;
 import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.component.ComponentFactory;
@@ -256,7 +257,8 @@ public class FactoryDescriptorImpl implements FactoryInternal
     /**
      * Register a factory's {@link MetaTypeProvider} and {@link ManagedServiceFactory} services. These services are 
      * used by the {@link org.osgi.service.cm.ConfigurationAdmin} to provide multiple configurations, provide default 
-     * values for configuration properties, and define property keys.
+     * values for configuration properties, and define property keys. The same service is registered as a 
+     * {@link ConfigurationListener} so objects drop cached configuration when it changes.
      * 
      * After this call the factory is not available as a factory to other services. 
      * Instead see {@link #makeAvailable()}.
@@ -272,7 +274,8 @@ public class FactoryDescriptorImpl implements FactoryInternal
         final Dictionary<String, Object> configServProps = new Hashtable<String, Object>();
         configServProps.put(Constants.SERVICE_PID, getPid());
         configServProps.put(MetaTypeProvider.METATYPE_FACTORY_PID, getPid());
-        final String[] clazzes = {ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName()};
+        final String[] clazzes = {ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName(), 
+            ConfigurationListener.class.getName()};
         final BundleContext context = 
                 m_FactoryServiceContext.getMetaTypeProviderBundle().getBundle().getBundleContext();
         final ServiceRegistration<?> configServReg = context.registerService(clazzes, configService, configServProps);
@@ -18,7 +18,6 @@ import java.util.UUID;
 
 import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Reference;
-import aQute.bnd.annotation.metatype.Configurable;
 
 import mil.dod.th.core.asset.Asset;
 import mil.dod.th.core.asset.AssetAttributes;
@@ -41,7 +40,6 @@ import mil.dod.th.core.observation.types.Observation;
 import mil.dod.th.core.observation.types.Status;
 import mil.dod.th.core.persistence.ObservationStore;
 import mil.dod.th.core.persistence.PersistenceFailedException;
-import mil.dod.th.core.pm.WakeLock;
 import mil.dod.th.core.types.spatial.Coordinates;
 import mil.dod.th.core.types.spatial.Orientation;
 import mil.dod.th.core.types.status.OperatingStatus;
@@ -54,6 +52,7 @@ import mil.dod.th.ose.core.factory.api.FactoryRegistry;
 import mil.dod.th.ose.core.factory.api.data.FactoryObjectInformationException;
 import mil.dod.th.ose.core.impl.asset.data.AssetFactoryObjectDataManager;
 import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
 
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationException;
@@ -129,7 +128,7 @@ public class AssetImpl extends AbstractFactoryObject implements AssetInternal
     /**
      * Wake lock used for asset operations.
      */
-    private WakeLock m_WakeLock;
+    private CountingWakeLock m_WakeLock;
 
     /**
      * Boolean value representing if the represented asset possesses the ability to handle it's own position. True means
@@ -207,7 +206,8 @@ public class AssetImpl extends AbstractFactoryObject implements AssetInternal
         m_AssetProxy = (AssetProxy)proxy;
         m_PluginOverridesPosition = getConfig().pluginOverridesPosition();
         m_PowInternal = powerMgr;
-        m_WakeLock = powerMgr.createWakeLock(m_AssetProxy.getClass(), this, "coreAsset");
+        m_WakeLock = new CountingWakeLock(powerMgr.createWakeLock(m_AssetProxy.getClass(), this, "coreAsset"));
+        powerMgr.registerCountingWakeLock(m_WakeLock);
 
         // MUST RESTORE THE LOCATION BEFORE POSTING OBSERVATIONS
         // depending on if the position override is true or not the location could be accessed before
@@ -317,9 +317,12 @@ public class AssetImpl extends AbstractFactoryObject implements AssetInternal
 
             persistObservation(observation);
 
-            final Map<String, Object> props = new HashMap<>();
-            props.put(EVENT_PROP_ASSET_OBSERVATION_UUID, observation.getUuid());
-            postEvent(TOPIC_DATA_CAPTURED, props);
+            if (isEventSubscribed(TOPIC_DATA_CAPTURED))
+            {
+                final Map<String, Object> props = new HashMap<>();
+                props.put(EVENT_PROP_ASSET_OBSERVATION_UUID, observation.getUuid());
+                postSubscribedEvent(TOPIC_DATA_CAPTURED, props);
+            }
 
             return observation;
         }
@@ -683,7 +686,7 @@ public class AssetImpl extends AbstractFactoryObject implements AssetInternal
     @Override
     public AssetAttributes getConfig()
     {
-        return Configurable.createConfigurable(AssetAttributes.class, getProperties());
+        return getAttributes(AssetAttributes.class);
     }
 
     @Override
@@ -725,7 +728,7 @@ public class AssetImpl extends AbstractFactoryObject implements AssetInternal
                     "Asset Active Status is %s, not DEACTIVATED, cannot remove %s.", getActiveStatus(), getName()));
         }
 
-        m_PowInternal.deleteWakeLock(m_WakeLock);
+        m_PowInternal.deleteWakeLock(m_WakeLock.getWakeLock());
 
         super.delete();
     }
@@ -12,16 +12,23 @@
 //==============================================================================
 package mil.dod.th.ose.core.impl.ccomm;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import aQute.bnd.annotation.component.Component;
 
+import com.google.common.base.Objects;
+
 import mil.dod.th.core.ccomm.Address;
 import mil.dod.th.core.ccomm.AddressProxy;
 import mil.dod.th.core.ccomm.capability.AddressCapabilities;
 import mil.dod.th.ose.core.factory.api.AbstractFactoryObject;
 
+import org.osgi.service.cm.ConfigurationException;
+
 /**
  * Address implementation of a {@link mil.dod.th.core.factory.FactoryObject}.
  * 
@@ -30,15 +37,59 @@ import mil.dod.th.ose.core.factory.api.AbstractFactoryObject;
 @Component(factory = AddressInternal.COMPONENT_FACTORY_REG_ID)
 public class AddressImpl extends AbstractFactoryObject implements AddressInternal
 {
+    /**
+     * Event properties already built for each prefix, cleared when the name or properties of the address change.
+     */
+    private final ConcurrentMap<String, Map<String, Object>> m_EventPropsByPrefix = new ConcurrentHashMap<>();
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The returned map is unmodifiable and shared by every caller using the same prefix, callers add it to their own 
+     * event properties.
+     */
     @Override
     public Map<String, Object> getEventProperties(final String prefix)
     {
+        final Map<String, Object> cached = m_EventPropsByPrefix.get(prefix);
+        if (cached != null)
+        {
+            return cached;
+        }
+        
+        final String name = getName();
+        final String description = getDescription();
         final Map<String, Object> props = new HashMap<String, Object>();
         props.put(prefix + Address.EVENT_PROP_ADDRESS_SUFFIX, this);
         props.put(prefix + Address.EVENT_PROP_ADDRESS_TYPE_SUFFIX, getFactory().getProductType()); 
-        props.put(prefix + Address.EVENT_PROP_ADDRESS_NAME_SUFFIX, getName());
-        props.put(prefix + Address.EVENT_PROP_MESSAGE_ADDRESS_SUFFIX, getDescription());
-        return props;
+        props.put(prefix + Address.EVENT_PROP_ADDRESS_NAME_SUFFIX, name);
+        props.put(prefix + Address.EVENT_PROP_MESSAGE_ADDRESS_SUFFIX, description);
+        final Map<String, Object> unmodifiableProps = Collections.unmodifiableMap(props);
+        m_EventPropsByPrefix.put(prefix, unmodifiableProps);
+        
+        // address may have been renamed or updated while building, don't keep the stale map around for later events
+        if (!Objects.equal(name, getName()) || !Objects.equal(description, getDescription()))
+        {
+            m_EventPropsByPrefix.remove(prefix, unmodifiableProps);
+        }
+        return unmodifiableProps;
+    }
+    
+    @Override
+    public void internalSetName(final String name)
+    {
+        super.internalSetName(name);
+        m_EventPropsByPrefix.clear();
+    }
+    
+    @Override
+    public void configUpdated(final Map<String, Object> props) throws ConfigurationException
+    {
+        super.configUpdated(props);
+        
+        // description is based on the properties so must be rebuilt
+        m_EventPropsByPrefix.clear();
     }
     
     @Override
@@ -239,7 +239,7 @@ public class AddressManagerServiceImpl extends DirectoryService implements Addre
     public List<String> getAddressDescriptiveStrings()
     {
         final List<String> descriptors  = new ArrayList<String>();
-        for (AddressInternal address : m_FactoryServiceContext.getRegistry().getObjects())
+        for (AddressInternal address : m_FactoryServiceContext.getRegistry().getObjectsView())
         {
             final String messageAddress;
             try
@@ -281,9 +281,8 @@ public class AddressManagerServiceImpl extends DirectoryService implements Addre
     {   
         Preconditions.checkNotNull(properties);
 
-        // check to see if the address is currently in the list of known addresses
-        // TD: should probably store of map of addresses by descriptive string or something as this method could be
-        // called often
+        // check to see if the address is currently in the list of known addresses, registry indexes by type so only 
+        // addresses of the same type are checked
         for (Address aAddress : m_FactoryServiceContext.getRegistry().getObjectsByProductType(addressType))
         {
             if (aAddress.equalProperties(properties))
@@ -315,12 +314,10 @@ public class AddressManagerServiceImpl extends DirectoryService implements Addre
     @Override
     public Address getAddressByName(final String name) throws IllegalArgumentException
     {
-        for (Address aAddress : m_FactoryServiceContext.getRegistry().getObjects())
+        final Address address = m_FactoryServiceContext.getRegistry().findObjectByName(name);
+        if (address != null)
         {
-            if (aAddress.getName().equals(name))
-            {
-                return aAddress;
-            }
+            return address;
         }
 
         throw new IllegalArgumentException(String.format("Address with name %s not found", name));
@@ -330,7 +327,7 @@ public class AddressManagerServiceImpl extends DirectoryService implements Addre
     public List<String> getAddressNames()
     {
         final List<String> names  = new ArrayList<>();
-        for (Address address : m_FactoryServiceContext.getRegistry().getObjects())
+        for (Address address : m_FactoryServiceContext.getRegistry().getObjectsView())
         {
             names.add(address.getName());
         }
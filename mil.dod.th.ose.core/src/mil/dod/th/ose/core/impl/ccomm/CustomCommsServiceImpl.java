@@ -330,10 +330,9 @@ public class CustomCommsServiceImpl extends DirectoryService implements CustomCo
         final String linkLayerName = (String)properties.get(TransportLayerAttributes.CONFIG_PROP_LINK_LAYER_NAME);
 
         // search to see if transport layer is already in list
-        for (TransportLayer tLayer : m_TransLayerFactContext.getRegistry().getObjects())
+        for (TransportLayer tLayer : m_TransLayerFactContext.getRegistry().getObjectsByProductType(tlType))
         {
-            if (tLayer.getFactory().getProductType().equals(tlType) 
-                    && tLayer.getLinkLayer() != null
+            if (tLayer.getLinkLayer() != null
                     && tLayer.getLinkLayer().getName().equals(linkLayerName))
             {
                 m_Logging.log(LogService.LOG_INFO,
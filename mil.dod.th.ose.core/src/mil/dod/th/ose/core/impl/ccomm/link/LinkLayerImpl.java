@@ -17,7 +17,6 @@ import java.util.Map;
 import java.util.UUID;
 
 import aQute.bnd.annotation.component.Component;
-import aQute.bnd.annotation.metatype.Configurable;
 
 import com.google.common.base.Preconditions;
 
@@ -32,11 +31,11 @@ import mil.dod.th.core.ccomm.link.capability.LinkLayerCapabilities;
 import mil.dod.th.core.ccomm.physical.PhysicalLink;
 import mil.dod.th.core.factory.FactoryObjectProxy;
 import mil.dod.th.core.log.Logging;
-import mil.dod.th.core.pm.WakeLock;
 import mil.dod.th.ose.core.factory.api.AbstractFactoryObject;
 import mil.dod.th.ose.core.factory.api.FactoryInternal;
 import mil.dod.th.ose.core.factory.api.FactoryRegistry;
 import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
 
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.event.EventAdmin;
@@ -83,7 +82,7 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
     /**
      * Wake lock used for link layer operations.
      */
-    private WakeLock m_WakeLock;
+    private CountingWakeLock m_WakeLock;
 
     @Override
     public void initialize(final FactoryRegistry<?> registry, final FactoryObjectProxy proxy, //NOPMD:
@@ -95,7 +94,8 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
         super.initialize(registry, proxy, factory, configAdmin, eventAdmin, powInternal, uuid, name, pid, baseType);
         m_LinkProxy = (LinkLayerProxy)proxy;
         m_PowInternal = powInternal;
-        m_WakeLock = powInternal.createWakeLock(m_LinkProxy.getClass(), this, "coreLinkLayer");
+        m_WakeLock = new CountingWakeLock(powInternal.createWakeLock(m_LinkProxy.getClass(), this, "coreLinkLayer"));
+        powInternal.registerCountingWakeLock(m_WakeLock);
     }
     
     @Override
@@ -180,13 +180,16 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
 
             final int toReturn = m_LinkProxy.send(frame, addr);
         
-            final Map<String, Object> props = new HashMap<String, Object>();
-            if (addr != null)
+            if (isEventSubscribed(LinkLayer.TOPIC_DATA_SENT))
             {
-                props.putAll(addr.getEventProperties(Address.EVENT_PROP_DEST_ADDRESS_PREFIX));
+                final Map<String, Object> props = new HashMap<String, Object>();
+                if (addr != null)
+                {
+                    props.putAll(addr.getEventProperties(Address.EVENT_PROP_DEST_ADDRESS_PREFIX));
+                }
+                props.put(LinkLayer.EVENT_PROP_LINK_FRAME, frame);
+                postSubscribedEvent(LinkLayer.TOPIC_DATA_SENT, props);
             }
-            props.put(LinkLayer.EVENT_PROP_LINK_FRAME, frame);
-            postEvent(LinkLayer.TOPIC_DATA_SENT, props);
             
             return toReturn;
         }
@@ -248,7 +251,7 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
     @Override
     public LinkLayerAttributes getConfig() 
     {
-        return Configurable.createConfigurable(LinkLayerAttributes.class, getProperties());
+        return getAttributes(LinkLayerAttributes.class);
     };
     
     @Override
@@ -266,6 +269,11 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
     {
         Preconditions.checkNotNull(frame, "The received LinkFrame is null; this is not allowed.");
         
+        if (!isEventSubscribed(TOPIC_DATA_RECEIVED))
+        {
+            return;
+        }
+        
         final Map<String, Object> props = new HashMap<String, Object>();
         if (sourceAddress != null)
         {
@@ -277,7 +285,7 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
         }
         props.put(LinkLayer.EVENT_PROP_LINK_FRAME, frame);
         
-        postEvent(TOPIC_DATA_RECEIVED, props);
+        postSubscribedEvent(TOPIC_DATA_RECEIVED, props);
     }
 
     @Override
@@ -287,13 +295,13 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
     }
     
     @Override
-    public void postEvent(final String topic, final Map<String, Object> props)
+    protected void postSubscribedEvent(final String topic, final Map<String, Object> props)
     {
         //add link status
         props.put(LinkLayer.EVENT_PROP_LINK_STATUS, getLinkStatus());
         
         //post
-        super.postEvent(topic, props);
+        super.postSubscribedEvent(topic, props);
     }
     
     @Override
@@ -305,7 +313,7 @@ public class LinkLayerImpl extends AbstractFactoryObject implements LinkLayerInt
                     getName()));
         }
  
-        m_PowInternal.deleteWakeLock(m_WakeLock);
+        m_PowInternal.deleteWakeLock(m_WakeLock.getWakeLock());
 
         super.delete();
     }
@@ -19,7 +19,6 @@ import java.util.UUID;
 
 import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Reference;
-import aQute.bnd.annotation.metatype.Configurable;
 
 import mil.dod.th.core.ccomm.link.LinkLayer;
 import mil.dod.th.core.ccomm.physical.PhysicalLinkAttributes;
@@ -192,7 +191,7 @@ public class PhysicalLinkImpl extends AbstractFactoryObject implements PhysicalL
     @Override
     public PhysicalLinkAttributes getConfig()
     {
-        return Configurable.createConfigurable(PhysicalLinkAttributes.class, getProperties());
+        return getAttributes(PhysicalLinkAttributes.class);
     }
 
     @Override
@@ -16,7 +16,6 @@ import java.util.Map;
 
 import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Reference;
-import aQute.bnd.annotation.metatype.Configurable;
 
 import mil.dod.th.core.ccomm.physical.PhysicalLinkException;
 import mil.dod.th.core.ccomm.physical.SerialPort;
@@ -74,6 +73,6 @@ public class SerialPortImpl extends PhysicalLinkImpl implements SerialPort
     @Override
     public SerialPortAttributes getConfig()
     {
-        return Configurable.createConfigurable(SerialPortAttributes.class, getProperties());
+        return getAttributes(SerialPortAttributes.class);
     }
 }
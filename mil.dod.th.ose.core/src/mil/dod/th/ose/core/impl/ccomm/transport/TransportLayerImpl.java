@@ -18,7 +18,6 @@ import java.util.Map;
 import java.util.UUID;
 
 import aQute.bnd.annotation.component.Component;
-import aQute.bnd.annotation.metatype.Configurable;
 
 import com.google.common.base.Preconditions;
 
@@ -262,7 +261,7 @@ public class TransportLayerImpl extends AbstractFactoryObject implements Transpo
     @Override
     public TransportLayerAttributes getConfig()
     {
-        return Configurable.createConfigurable(TransportLayerAttributes.class, getProperties());
+        return getAttributes(TransportLayerAttributes.class);
     }
     
     /**
@@ -279,6 +278,11 @@ public class TransportLayerImpl extends AbstractFactoryObject implements Transpo
     {
         Preconditions.checkNotNull(pkt, "Cannot transmit a [NULL] packet.");
         
+        if (!isEventSubscribed(TOPIC_PACKET_RECEIVED))
+        {
+            return;
+        }
+        
         final Map<String, Object> props = new HashMap<>();
         if (sourceAddress != null)
         {
@@ -289,7 +293,7 @@ public class TransportLayerImpl extends AbstractFactoryObject implements Transpo
             props.putAll(destAddress.getEventProperties(Address.EVENT_PROP_DEST_ADDRESS_PREFIX));
         }
         props.put(EVENT_PROP_PACKET, pkt);
-        postEvent(TOPIC_PACKET_RECEIVED, props);
+        postSubscribedEvent(TOPIC_PACKET_RECEIVED, props);
 
         Logging.log(LogService.LOG_DEBUG, "Posted data received event for transport: %s", getName());
     }
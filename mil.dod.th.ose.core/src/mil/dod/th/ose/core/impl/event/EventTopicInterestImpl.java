@@ -0,0 +1,320 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.event;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import aQute.bnd.annotation.component.Activate;
+import aQute.bnd.annotation.component.Component;
+import aQute.bnd.annotation.component.Deactivate;
+import aQute.bnd.annotation.component.Reference;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.ose.shared.EventTopicInterest;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
+
+/**
+ * Implementation of {@link EventTopicInterest} that tracks the {@link EventConstants#EVENT_TOPIC} property of all 
+ * registered {@link EventHandler} services. Handler services are never retrieved so delayed handler components are not 
+ * activated by the tracker.
+ */
+@Component
+public class EventTopicInterestImpl implements EventTopicInterest
+{
+    /**
+     * Maximum number of topics to remember the result for before the cache is cleared, topics are normally constants so
+     * this limit is only reached if topics are generated.
+     */
+    private static final int MAX_RESOLVED_TOPICS = 1024;
+    
+    /**
+     * Topics of each tracked handler, guarded by itself.
+     */
+    private final Map<ServiceReference<EventHandler>, String[]> m_HandlerTopics = new HashMap<>();
+    
+    /**
+     * Number of events that had at least one subscriber.
+     */
+    private final AtomicLong m_Delivered = new AtomicLong();
+    
+    /**
+     * Number of events skipped because there were no subscribers.
+     */
+    private final AtomicLong m_Suppressed = new AtomicLong();
+    
+    /**
+     * Index built from the current handler topics, replaced whenever a handler is added, modified or removed.
+     */
+    private volatile TopicIndex m_Index = new TopicIndex(Collections.<String[]>emptyList());
+    
+    /**
+     * Tracks all event handler services.
+     */
+    private ServiceTracker<EventHandler, ServiceReference<EventHandler>> m_Tracker;
+    
+    /**
+     * Service for logging messages.
+     */
+    private LoggingService m_Logging;
+    
+    /**
+     * Binds the logging service for logging messages.
+     * 
+     * @param logging
+     *            Logging service object
+     */
+    @Reference
+    public void setLoggingService(final LoggingService logging)
+    {
+        m_Logging = logging;
+    }
+    
+    /**
+     * Activate the component and start tracking event handlers.
+     * 
+     * @param context
+     *      context used to track the event handler services
+     */
+    @Activate
+    public void activate(final BundleContext context)
+    {
+        m_Tracker = new ServiceTracker<>(context, EventHandler.class, new HandlerTracker());
+        // track all handlers, even if registered against a different version of the event package 
+        m_Tracker.open(true);
+    }
+    
+    /**
+     * Stop tracking event handlers and log the event counts.
+     */
+    @Deactivate
+    public void deactivate()
+    {
+        m_Tracker.close();
+        m_Logging.debug("Event topic interest: %d events delivered, %d events suppressed", m_Delivered.get(), 
+                m_Suppressed.get());
+    }
+    
+    @Override
+    public boolean isSubscribed(final String topic)
+    {
+        if (m_Index.isSubscribed(topic))
+        {
+            m_Delivered.incrementAndGet();
+            return true;
+        }
+        
+        m_Suppressed.incrementAndGet();
+        return false;
+    }
+    
+    @Override
+    public long getDeliveredCount()
+    {
+        return m_Delivered.get();
+    }
+    
+    @Override
+    public long getSuppressedCount()
+    {
+        return m_Suppressed.get();
+    }
+    
+    /**
+     * Update the topics for the given handler and rebuild the index.
+     * 
+     * @param reference
+     *      reference to the handler
+     * @param topics
+     *      topics of the handler, null if the handler has been removed
+     */
+    private void updateHandler(final ServiceReference<EventHandler> reference, final String[] topics)
+    {
+        synchronized (m_HandlerTopics)
+        {
+            if (topics == null)
+            {
+                m_HandlerTopics.remove(reference);
+            }
+            else
+            {
+                m_HandlerTopics.put(reference, topics);
+            }
+            m_Index = new TopicIndex(m_HandlerTopics.values());
+        }
+    }
+    
+    /**
+     * Get the topics from the {@link EventConstants#EVENT_TOPIC} property of the handler.
+     * 
+     * @param reference
+     *      reference to the handler
+     * @return
+     *      topics of the handler, empty if the property is missing or invalid as the handler will not receive any 
+     *      events
+     */
+    private static String[] getTopics(final ServiceReference<EventHandler> reference)
+    {
+        final Object topicProp = reference.getProperty(EventConstants.EVENT_TOPIC);
+        if (topicProp instanceof String)
+        {
+            return new String[] {(String)topicProp};
+        }
+        else if (topicProp instanceof String[])
+        {
+            return (String[])topicProp;
+        }
+        else if (topicProp instanceof Collection)
+        {
+            final Collection<?> topics = (Collection<?>)topicProp;
+            return topics.toArray(new String[topics.size()]);
+        }
+        return new String[0];
+    }
+    
+    /**
+     * Immutable index of the topics subscribed to when it was built. Results are cached per topic so repeated checks of
+     * the same topic are a single map lookup. A new index, with a new cache, replaces this one when handlers change so 
+     * a check racing with a change can never leave a stale result behind.
+     */
+    private static class TopicIndex
+    {
+        /**
+         * Whether any handler is subscribed to all topics.
+         */
+        private final boolean m_AllTopics;
+        
+        /**
+         * Topics subscribed to without a wildcard.
+         */
+        private final Set<String> m_ExactTopics = new HashSet<>();
+        
+        /**
+         * Prefixes, including the trailing separator, of the topics subscribed to with a wildcard.
+         */
+        private final Set<String> m_TopicPrefixes = new HashSet<>();
+        
+        /**
+         * Result of previous checks for each topic.
+         */
+        private final ConcurrentMap<String, Boolean> m_Resolved = new ConcurrentHashMap<>();
+        
+        /**
+         * Build the index from the topics of all handlers.
+         * 
+         * @param handlerTopics
+         *      topics of each handler
+         */
+        TopicIndex(final Collection<String[]> handlerTopics)
+        {
+            boolean allTopics = false;
+            for (String[] topics : handlerTopics)
+            {
+                for (String topic : topics)
+                {
+                    if ("*".equals(topic))
+                    {
+                        allTopics = true;
+                    }
+                    else if (topic.endsWith("/*"))
+                    {
+                        m_TopicPrefixes.add(topic.substring(0, topic.length() - 1));
+                    }
+                    else
+                    {
+                        m_ExactTopics.add(topic);
+                    }
+                }
+            }
+            m_AllTopics = allTopics;
+        }
+        
+        /**
+         * Check if any handler is subscribed to the given topic.
+         * 
+         * @param topic
+         *      topic to check
+         * @return
+         *      true if at least one handler is subscribed
+         */
+        boolean isSubscribed(final String topic)
+        {
+            final Boolean resolved = m_Resolved.get(topic);
+            if (resolved != null)
+            {
+                return resolved;
+            }
+            
+            boolean subscribed = m_AllTopics || m_ExactTopics.contains(topic);
+            if (!subscribed)
+            {
+                for (String prefix : m_TopicPrefixes)
+                {
+                    if (topic.startsWith(prefix))
+                    {
+                        subscribed = true;
+                        break;
+                    }
+                }
+            }
+            
+            if (m_Resolved.size() >= MAX_RESOLVED_TOPICS)
+            {
+                m_Resolved.clear();
+            }
+            m_Resolved.put(topic, subscribed);
+            return subscribed;
+        }
+    }
+    
+    /**
+     * Keeps the index up to date as handlers are registered, modified and unregistered.
+     */
+    private class HandlerTracker 
+        implements ServiceTrackerCustomizer<EventHandler, ServiceReference<EventHandler>>
+    {
+        @Override
+        public ServiceReference<EventHandler> addingService(final ServiceReference<EventHandler> reference)
+        {
+            updateHandler(reference, getTopics(reference));
+            return reference;
+        }
+
+        @Override
+        public void modifiedService(final ServiceReference<EventHandler> reference, 
+                final ServiceReference<EventHandler> service)
+        {
+            updateHandler(reference, getTopics(reference));
+        }
+
+        @Override
+        public void removedService(final ServiceReference<EventHandler> reference, 
+                final ServiceReference<EventHandler> service)
+        {
+            updateHandler(reference, null);
+        }
+    }
+}
@@ -12,17 +12,25 @@
 //==============================================================================
 package mil.dod.th.ose.core.impl.persistence;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import javax.jdo.Extent;
 import javax.jdo.JDOException;
+import javax.jdo.JDOHelper;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
@@ -34,8 +42,11 @@ import aQute.bnd.annotation.metatype.Configurable;
 import mil.dod.th.core.persistence.DataStore;
 import mil.dod.th.core.persistence.PersistenceFailedException;
 import mil.dod.th.core.pm.PowerManager;
-import mil.dod.th.core.pm.WakeLock;
+import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
 import mil.dod.th.ose.shared.JdoDataStore;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
+
+import org.datanucleus.api.jdo.JDOQuery;
 
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
@@ -58,9 +69,30 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
     
     /**
      * Property constant value used for representing the extended data fetch group. This fetch group is used to retrieve
-     * large data fields such a digital media after an initial query.
+     * large data fields such a digital media after an initial query. Queries created by {@link #newJdoQuery()} include 
+     * the group in their fetch plan unless removed.
+     */
+    final static protected String PROP_EXTENDED_FETCH_GROUP = "extendedDataGroup";
+    
+    /**
+     * Field that uniquely identifies each item, used to remove items in chunks.
+     */
+    final static private String KEY_FIELD = "uuid";
+    
+    /**
+     * Name of the parameter holding the last key of the previous chunk when removing in chunks.
+     */
+    final static private String LAST_KEY_PARAM = "removeLastKey";
+    
+    /**
+     * Filter for the keys after the last key of the previous chunk when removing in chunks.
+     */
+    final static private String KEY_AFTER_FILTER = KEY_FIELD + " > :" + LAST_KEY_PARAM;
+    
+    /**
+     * Number of nanoseconds in a second.
      */
-    final static private String PROP_EXTENDED_FETCH_GROUP = "extendedDataGroup";
+    final static private double NANOS_PER_SECOND = 1000000000.0;
 
     /**
      * Instances of the Extent class represent the entire collection of instances in the data store of the candidate
@@ -102,11 +134,37 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
      * Service used to create power management wake locks.
      */
     private PowerManager m_PowerManager;
+    
+    /**
+     * Core power manager used to register the counting wake locks, null if not available.
+     */
+    private PowerManagerInternal m_PowerManagerInternal;
 
     /**
-     * Wake lock used for database operations.
+     * Wake lock used for database operations, counting as writes from different threads can overlap.
      */
-    private WakeLock m_WakeLock;
+    private CountingWakeLock m_WakeLock;
+    
+    /**
+     * Wake lock used for read only database operations, counting as multiple reads can be active at once.
+     */
+    private CountingWakeLock m_ReadWakeLock;
+    
+    /**
+     * Persistence managers that are available to run read only queries, each is only used by one thread at a time. 
+     * Empty if queries use {@link #m_PersistenceManager}.
+     */
+    private BlockingQueue<PersistenceManager> m_ReadManagers;
+    
+    /**
+     * All persistence managers that were created for read only queries, whether in use or not.
+     */
+    private final List<PersistenceManager> m_AllReadManagers = new ArrayList<>();
+    
+    /**
+     * Maximum number of items to remove in a single transaction.
+     */
+    private volatile int m_RemoveChunkSize;
 
     /**
      * Default constructor, sets the extent class type.
@@ -135,7 +193,7 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
      */
     protected void activateStore(final String url, final Map<String, Object> props)
     {
-        m_WakeLock = m_PowerManager.createWakeLock(getClass(), "coreDataStore");
+        m_WakeLock = createCountingWakeLock("coreDataStore");
 
         final PersistenceManagerFactory persistenceManagerFactory;
         persistenceManagerFactory = 
@@ -152,6 +210,23 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
         // from the database.  This setting assumes the fetch group setup contains only a single object with few 
         // linkages.
         m_PersistenceManager.getFetchPlan().setMaxFetchDepth(10); // NOCHECKSTYLE: magic #, accessor defines the meaning 
+        // queries copy the fetch plan of the manager creating them, so new queries include the extended data
+        m_PersistenceManager.getFetchPlan().addGroup(PROP_EXTENDED_FETCH_GROUP);
+        
+        // queries get their own persistence managers (and connections) so they don't have to wait on the monitor used
+        // for writes, each must be limited the same way as above
+        m_ReadWakeLock = createCountingWakeLock("coreDataStoreRead");
+        final DataStoreConfig config = Configurable.createConfigurable(DataStoreConfig.class, props);
+        final int readPoolSize = config.readPoolSize();
+        m_ReadManagers = new ArrayBlockingQueue<>(Math.max(1, readPoolSize));
+        m_AllReadManagers.clear();
+        for (int i = 0; i < readPoolSize; i++)
+        {
+            final PersistenceManager readManager = persistenceManagerFactory.getPersistenceManager();
+            readManager.getFetchPlan().setMaxFetchDepth(10); // NOCHECKSTYLE: magic #, accessor defines the meaning
+            m_AllReadManagers.add(readManager);
+            m_ReadManagers.add(readManager);
+        }
         
         updateProps(props);
     }
@@ -163,8 +238,16 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
      */
     protected void deactivateStore()
     {
+        for (PersistenceManager readManager : m_AllReadManagers)
+        {
+            readManager.close();
+        }
+        m_AllReadManagers.clear();
+        m_ReadManagers.clear();
+        
         m_PersistenceManager.close();
-        m_WakeLock.delete();
+        m_WakeLock.deleteWakeLock();
+        m_ReadWakeLock.deleteWakeLock();
     }
 
     /**
@@ -190,6 +273,25 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
         m_PersistenceManagerFactoryCreator = persistenceManagerFactoryCreator;
     }
     
+    /**
+     * Create a counting wake lock for this store. If the core power manager is bound, the lock is registered with it 
+     * so the configured hysteresis window applies and its activations are tracked.
+     * 
+     * @param lockId
+     *      ID of the wake lock
+     * @return
+     *      the new counting wake lock
+     */
+    private CountingWakeLock createCountingWakeLock(final String lockId)
+    {
+        final CountingWakeLock lock = new CountingWakeLock(m_PowerManager.createWakeLock(getClass(), lockId));
+        if (m_PowerManagerInternal != null)
+        {
+            m_PowerManagerInternal.registerCountingWakeLock(lock);
+        }
+        return lock;
+    }
+
     /**
      * Binds the PowerManager service to this component.
      * 
@@ -200,6 +302,19 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
     {
         m_PowerManager = powerManager;
     }
+    
+    /**
+     * Binds the core PowerManagerInternal service to this component.
+     * 
+     * This reference is optional and not required.
+     * 
+     * @param powerManagerInternal
+     *            service used to register counting wake locks
+     */
+    protected void setPowerManagerInternal(final PowerManagerInternal powerManagerInternal)
+    {
+        m_PowerManagerInternal = powerManagerInternal;
+    }
 
     /**
      * Set the threshold for minimum usable space needed to persist data.
@@ -212,6 +327,17 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
         m_MinUsableSpace = value;
     }
     
+    /**
+     * Get the maximum number of items to remove in a single transaction, also used to limit cleanup operations.
+     * 
+     * @return
+     *      number of items to remove at once
+     */
+    protected int getRemoveChunkSize()
+    {
+        return m_RemoveChunkSize;
+    }
+    
     @Override
     public long getMinUsableSpace()
     {
@@ -289,14 +415,32 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
      */
     protected Collection<DataType> queryOnFilter(final String filterString, final Object... args)
     {
-        synchronized (this)
-        {
-            final Query newQuery = newJdoQuery();
-            newQuery.setFilter(String.format(filterString, args));
-            newQuery.setOrdering(String.format("%s descending", m_ExtentClassTimeField));
+        final Query newQuery = newJdoQuery();
+        newQuery.setFilter(String.format(filterString, args));
+        newQuery.setOrdering(String.format("%s descending", m_ExtentClassTimeField));
 
-            return Collections.unmodifiableCollection(executeJdoQuery(newQuery));
-        }
+        return Collections.unmodifiableCollection(executeJdoQuery(newQuery));
+    }
+    
+    /**
+     * Method that executes a jdo query with a filter string that uses implicit parameters (e.g. {@code context == 
+     * :context}). As the filter string does not change with the parameter values, the query only needs to be compiled 
+     * once per filter string and is then taken from the query compilation cache.
+     * 
+     * @param filterString
+     *  the filter string that is to be used, containing implicit parameters
+     * @param parameters
+     *  values of the implicit parameters, keyed by parameter name without the leading colon
+     * @return
+     *  the collection of objects that satisfy the given query criteria
+     */
+    protected Collection<DataType> queryOnParameters(final String filterString, final Map<String, ?> parameters)
+    {
+        final Query newQuery = newJdoQuery();
+        newQuery.setFilter(filterString);
+        newQuery.setOrdering(String.format("%s descending", m_ExtentClassTimeField));
+
+        return runJdoQuery(newQuery, parameters);
     }
     
     @Override
@@ -366,18 +510,25 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
                     getMinUsableSpace(), getUsableSpace()));
         }
         
+        // a new object is detached as well once committed
+        final boolean merge = JDOHelper.isDetached(object);
+        final DataType persistedObject;
         synchronized (this)
         {
             final PersistenceManager persistenceManager = getPersistenceManager();
             final Transaction transaction = persistenceManager.currentTransaction();
-            final DataType persistedObject;
             try
             {
                 m_WakeLock.activate();
 
+                if (merge)
+                {
+                    beforeChange(Collections.singletonList(getKey(object)));
+                }
                 transaction.begin();
                 persistedObject = persistenceManager.makePersistent(object);
                 transaction.commit();
+                dataChanged();
             }
             catch (final JDOException exception)
             {
@@ -392,11 +543,207 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
                 
                 m_WakeLock.cancel();
             }
+        }
+        
+        if (merge)
+        {
+            deleteCleanup();
+        }
+
+        return persistedObject;
+    }
+
+    /**
+     * Persist a group of class objects T to the data store using a single transaction. Either all objects are
+     * persisted or none are.
+     *
+     * @param objects
+     *            the class T objects to be persisted
+     * @return the persistence managed object references in the same order as given
+     * @throws PersistenceFailedException
+     *          if the call to make persistent fails or there is not enough usable space
+     */
+    protected Collection<DataType> makePersistentAll(final Collection<DataType> objects)
+            throws PersistenceFailedException
+    {
+        if (getUsableSpace() < getMinUsableSpace())
+        {
+            throw new PersistenceFailedException(String.format("Not enough usable space, require %d, only %d",
+                    getMinUsableSpace(), getUsableSpace()));
+        }
+
+        final List<Object> mergedKeys = new ArrayList<>();
+        for (DataType object : objects)
+        {
+            if (JDOHelper.isDetached(object))
+            {
+                mergedKeys.add(getKey(object));
+            }
+        }
+
+        final Collection<DataType> persistedObjects;
+        synchronized (this)
+        {
+            final PersistenceManager persistenceManager = getPersistenceManager();
+            final Transaction transaction = persistenceManager.currentTransaction();
+            try
+            {
+                m_WakeLock.activate();
+
+                if (!mergedKeys.isEmpty())
+                {
+                    beforeChange(mergedKeys);
+                }
+                transaction.begin();
+                persistedObjects = persistenceManager.makePersistentAll(objects);
+                transaction.commit();
+                dataChanged();
+            }
+            catch (final JDOException exception)
+            {
+                throw new PersistenceFailedException("Persist failed.", exception);
+            }
+            finally
+            {
+                if (transaction.isActive())
+                {
+                    transaction.rollback();
+                }
+
+                m_WakeLock.cancel();
+            }
+        }
+        
+        if (!mergedKeys.isEmpty())
+        {
+            deleteCleanup();
+        }
+
+        return persistedObjects;
+    }
+
+    /**
+     * Persist a group of class objects T to the data store using a single transaction, deleting any items already in 
+     * the store with one of the given UUIDs first. The existing items are found with a single query for the whole 
+     * group. Either all objects are persisted or none are.
+     *
+     * @param objects
+     *            the class T objects to be persisted
+     * @param uuids
+     *            UUIDs of the objects being persisted
+     * @return the number of existing items that were replaced
+     * @throws PersistenceFailedException
+     *          if the call to make persistent fails or there is not enough usable space
+     */
+    protected int replaceAll(final Collection<DataType> objects, final Collection<UUID> uuids)
+            throws PersistenceFailedException
+    {
+        if (getUsableSpace() < getMinUsableSpace())
+        {
+            throw new PersistenceFailedException(String.format("Not enough usable space, require %d, only %d",
+                    getMinUsableSpace(), getUsableSpace()));
+        }
+
+        final long numberReplaced;
+        synchronized (this)
+        {
+            final PersistenceManager persistenceManager = getPersistenceManager();
+            final Transaction transaction = persistenceManager.currentTransaction();
+            final Query query = persistenceManager.newQuery(m_Extent, ":keys.contains(" + KEY_FIELD + ")");
+            try
+            {
+                m_WakeLock.activate();
+
+                beforeChange(uuids);
+                transaction.begin();
+                numberReplaced = query.deletePersistentAll(uuids);
+                persistenceManager.makePersistentAll(objects);
+                transaction.commit();
+                dataChanged();
+            }
+            catch (final JDOException exception)
+            {
+                throw new PersistenceFailedException("Persist failed.", exception);
+            }
+            finally
+            {
+                if (transaction.isActive())
+                {
+                    transaction.rollback();
+                }
+                query.closeAll();
 
-            return persistedObject;
+                m_WakeLock.cancel();
+            }
         }
+        
+        if (numberReplaced > 0)
+        {
+            deleteCleanup();
+        }
+        
+        return (int)numberReplaced;
     }
-    
+
+    /**
+     * Update the item stored with the given UUID using a single transaction. The update is applied to the instance 
+     * managed by the persistence manager, so objects held by callers are never attached or changed.
+     *
+     * @param uuid
+     *            the UUID of the item to update
+     * @param update
+     *            applied to the managed item before the transaction is committed
+     * @return true if the item was updated, false if there is no item with the UUID
+     * @throws PersistenceFailedException
+     *          if the update fails or there is not enough usable space
+     */
+    protected boolean updateByUuid(final UUID uuid, final Consumer<DataType> update) throws PersistenceFailedException
+    {
+        if (getUsableSpace() < getMinUsableSpace())
+        {
+            throw new PersistenceFailedException(String.format("Not enough usable space, require %d, only %d",
+                    getMinUsableSpace(), getUsableSpace()));
+        }
+
+        synchronized (this)
+        {
+            final PersistenceManager persistenceManager = getPersistenceManager();
+            final Transaction transaction = persistenceManager.currentTransaction();
+            final Query query = persistenceManager.newQuery(m_Extent, KEY_FIELD + " == :key");
+            query.setUnique(true);
+            try
+            {
+                m_WakeLock.activate();
+
+                transaction.begin();
+                @SuppressWarnings("unchecked")
+                final DataType managed = (DataType)query.execute(uuid);
+                if (managed == null)
+                {
+                    return false;
+                }
+                update.accept(managed);
+                transaction.commit();
+                dataChanged();
+                return true;
+            }
+            catch (final JDOException exception)
+            {
+                throw new PersistenceFailedException("Update failed.", exception);
+            }
+            finally
+            {
+                if (transaction.isActive())
+                {
+                    transaction.rollback();
+                }
+                query.closeAll();
+
+                m_WakeLock.cancel();
+            }
+        }
+    }
+
     /**
      * Returns the class object T for the UUID if managed in the data store.
      * 
@@ -422,46 +769,126 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Collection<DataType> executeJdoQuery(final Query query)
     {
-        final PersistenceManager manager = getPersistenceManager();
-        manager.getFetchPlan().removeGroup(PROP_EXTENDED_FETCH_GROUP);
-        query.compile();
+        return executeJdoQuery(query, Collections.<String, Object>emptyMap());
+    }
+    
+    @Override
+    public Collection<DataType> executeJdoQuery(final Query query, final Map<String, ?> parameters)
+    {
+        return runJdoQuery(query, parameters);
+    }
+    
+    /**
+     * Run the given JDO query with the given parameter values using a read manager if available.
+     * 
+     * @param query
+     *      query to execute
+     * @param parameters
+     *      values of the query parameters keyed by name, empty if the query has no parameters
+     * @return
+     *      results of the query, fully detached
+     */
+    private Collection<DataType> runJdoQuery(final Query query, final Map<String, ?> parameters)
+    {
+        if (m_AllReadManagers.isEmpty())
+        {
+            return executeJdoQueryOnWriteManager(query, parameters);
+        }
         
-        final Collection<DataType> results;
+        final PersistenceManager manager = borrowReadManager();
+        try
+        {
+            m_ReadWakeLock.activate();
+            
+            // query was created by the write persistence manager, so copy it into the read manager
+            return executeJdoQuery(manager, manager.newQuery(query), parameters);
+        }
+        finally
+        {
+            m_ReadWakeLock.cancel();
+            m_ReadManagers.add(manager);
+        }
+    }
+    
+    /**
+     * Run the given JDO query using the persistence manager used for writes. Used if there are no read managers.
+     * 
+     * @param query
+     *      query to execute
+     * @param parameters
+     *      values of the query parameters keyed by name, empty if the query has no parameters
+     * @return
+     *      results of the query, fully detached
+     */
+    private Collection<DataType> executeJdoQueryOnWriteManager(final Query query, final Map<String, ?> parameters)
+    {
         synchronized (this)
         {
-            final Transaction transaction = manager.currentTransaction();
             try
             {
                 m_WakeLock.activate();
-
-                transaction.begin();
-                // copy into new list so it is accessible after query is closed
-                results = new ArrayList<DataType>((Collection<DataType>)query.execute());
                 
-                manager.getFetchPlan().addGroup(PROP_EXTENDED_FETCH_GROUP);
-                
-                transaction.commit();
+                return executeJdoQuery(getPersistenceManager(), query, parameters);
             }
             finally
             {
-                if (transaction.isActive())
-                {
-                    transaction.rollback();
-                }
-                query.closeAll();
-
                 m_WakeLock.cancel();
             }
         }
+    }
+    
+    /**
+     * Run the given JDO query within a transaction of the given persistence manager. Caller is responsible for making 
+     * sure the persistence manager is not used by another thread at the same time.
+     * 
+     * @param manager
+     *      manager that created the query
+     * @param query
+     *      query to execute
+     * @param parameters
+     *      values of the query parameters keyed by name, empty if the query has no parameters
+     * @return
+     *      results of the query, fully detached
+     */
+    @SuppressWarnings("unchecked")
+    private Collection<DataType> executeJdoQuery(final PersistenceManager manager, final Query query, 
+            final Map<String, ?> parameters)
+    {
+        manager.getFetchPlan().removeGroup(PROP_EXTENDED_FETCH_GROUP);
+        query.compile();
+        
+        final Collection<DataType> results;
+        final Transaction transaction = manager.currentTransaction();
+        try
+        {
+            transaction.begin();
+            // copy into new list so it is accessible after query is closed
+            results = new ArrayList<DataType>((Collection<DataType>)execute(query, parameters));
+            
+            manager.getFetchPlan().addGroup(PROP_EXTENDED_FETCH_GROUP);
+            
+            transaction.commit();
+        }
+        finally
+        {
+            if (transaction.isActive())
+            {
+                transaction.rollback();
+            }
+            query.closeAll();
+        }
         
         return Collections.unmodifiableCollection(results);
     }
     
     /**
-     * Helper method to remove based on a JDO query.
+     * Helper method to remove based on a JDO query. The keys of the matching items are queried a chunk of {@link 
+     * #getRemoveChunkSize()} keys at a time, in ascending order starting after the last key of the previous chunk, and 
+     * each chunk is removed in its own transaction, so the store is available to other operations between chunks and 
+     * the keys are never all held in memory. Progress is posted after each chunk. The given query is not changed.
+     * 
      * @param query
      *          the query used to remove
      * @return the number of items deleted
@@ -469,22 +896,211 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
     @Override
     public long removeOnJdoQuery(final Query query)
     {
-        long numberDeleted;//NOCHECKSTYLE gets assigned in try/catch
+        return removeOnJdoQuery(query, Collections.<String, Object>emptyMap());
+    }
+    
+    /**
+     * Remove all items matching the given query with the given parameter values, see {@link 
+     * #removeOnJdoQuery(Query)}.
+     * 
+     * @param query
+     *          the query used to remove
+     * @param parameters
+     *          values of the query parameters keyed by name, empty if the query has no parameters
+     * @return the number of items deleted
+     */
+    private long removeOnJdoQuery(final Query query, final Map<String, ?> parameters)
+    {
+        final long startTime = System.nanoTime();
+        final int chunkSize = getRemoveChunkSize();
+        final long total = executeOnCopy(query, countQuery -> 
+        {
+            countQuery.setResult("count(this)");
+            return (Long)execute(countQuery, parameters);
+        });
+        
+        long numberDeleted = 0;
+        Object lastKey = null;
+        while (numberDeleted < total)
+        {
+            final List<Object> keys = queryKeys(query, parameters, lastKey, chunkSize);
+            if (keys.isEmpty())
+            {
+                break;
+            }
+            
+            final long chunkDeleted = deleteKeys(keys);
+            numberDeleted += chunkDeleted;
+            postRemoveEvent(TOPIC_REMOVE_PROGRESS, numberDeleted, total, startTime);
+            if (keys.size() < chunkSize || chunkDeleted == 0)
+            {
+                break;
+            }
+            lastKey = keys.get(keys.size() - 1);
+        }
+        
+        if (numberDeleted > 0)
+        {
+            deleteCleanup();
+        }
+        postRemoveEvent(TOPIC_REMOVE_COMPLETE, numberDeleted, total, startTime);
+
+        return numberDeleted;
+    }
+    
+    /**
+     * Get the next chunk of keys of items that match the given query, in ascending order.
+     * 
+     * @param query
+     *      query to get the keys for, not changed as a copy is used
+     * @param parameters
+     *      values of the query parameters keyed by name, empty if the query has no parameters
+     * @param lastKey
+     *      last key of the previous chunk, null for the first chunk
+     * @param chunkSize
+     *      max number of keys to return
+     * @return
+     *      list of matching keys
+     */
+    private List<Object> queryKeys(final Query query, final Map<String, ?> parameters, final Object lastKey, 
+            final int chunkSize)
+    {
+        return executeOnCopy(query, keyQuery -> 
+        {
+            keyQuery.setResult(KEY_FIELD);
+            keyQuery.setOrdering(KEY_FIELD + " ascending");
+            keyQuery.setRange(0, chunkSize);
+            
+            // the filter can only be extended for a DataNucleus query, for any other query the items of the previous 
+            // chunk are already removed so the first chunk of the query is the next chunk
+            if (lastKey == null || !(query instanceof JDOQuery))
+            {
+                return new ArrayList<Object>((Collection<?>)execute(keyQuery, parameters));
+            }
+            
+            final String filter = ((JDOQuery)query).getInternalQuery().getFilter();
+            keyQuery.setFilter(filter == null ? KEY_AFTER_FILTER : "(" + filter + ")" + AND + KEY_AFTER_FILTER);
+            final Map<String, Object> keyParameters = new HashMap<>(parameters);
+            keyParameters.put(LAST_KEY_PARAM, lastKey);
+            return new ArrayList<Object>((Collection<?>)keyQuery.executeWithMap(keyParameters));
+        });
+    }
+    
+    /**
+     * Execute a copy of the given query using a read manager if available, or the manager used for writes otherwise, 
+     * and close it.
+     * 
+     * @param <T>
+     *      type of result
+     * @param query
+     *      query to copy, not changed
+     * @param execution
+     *      sets up and executes the copy of the query
+     * @return
+     *      result of the execution
+     */
+    private <T> T executeOnCopy(final Query query, final Function<Query, T> execution)
+    {
+        if (m_AllReadManagers.isEmpty())
+        {
+            synchronized (this)
+            {
+                try
+                {
+                    m_WakeLock.activate();
+                    
+                    return executeAndClose(getPersistenceManager().newQuery(query), execution);
+                }
+                finally
+                {
+                    m_WakeLock.cancel();
+                }
+            }
+        }
+        
+        final PersistenceManager manager = borrowReadManager();
+        try
+        {
+            m_ReadWakeLock.activate();
+            
+            return executeAndClose(manager.newQuery(query), execution);
+        }
+        finally
+        {
+            m_ReadWakeLock.cancel();
+            m_ReadManagers.add(manager);
+        }
+    }
+    
+    /**
+     * Execute the given query and close it.
+     * 
+     * @param <T>
+     *      type of result
+     * @param query
+     *      query to execute
+     * @param execution
+     *      sets up and executes the query
+     * @return
+     *      result of the execution
+     */
+    private static <T> T executeAndClose(final Query query, final Function<Query, T> execution)
+    {
+        try
+        {
+            return execution.apply(query);
+        }
+        finally
+        {
+            query.closeAll();
+        }
+    }
+    
+    /**
+     * Execute the query, binding the parameter values if there are any.
+     * 
+     * @param query
+     *      query to execute
+     * @param parameters
+     *      values of the query parameters keyed by name, empty if the query has no parameters
+     * @return
+     *      result of the query
+     */
+    private Object execute(final Query query, final Map<String, ?> parameters)
+    {
+        if (parameters.isEmpty())
+        {
+            return query.execute();
+        }
+        return query.executeWithMap(parameters);
+    }
+    
+    /**
+     * Delete all items with the given keys in a single transaction.
+     * 
+     * @param keys
+     *      keys of the items to delete
+     * @return
+     *      number of items deleted
+     */
+    private long deleteKeys(final List<Object> keys)
+    {
         synchronized (this)
         {
             final PersistenceManager persistenceManager = getPersistenceManager();
             final Transaction transaction = persistenceManager.currentTransaction();
+            final Query query = persistenceManager.newQuery(m_Extent, ":keys.contains(" + KEY_FIELD + ")");
             try
             {
                 m_WakeLock.activate();
 
+                beforeChange(keys);
                 transaction.begin();
-                numberDeleted = query.deletePersistentAll();
-                transaction.commit();
-
-                transaction.begin();
-                deleteCleanup();
+                final long numberDeleted = query.deletePersistentAll(keys);
                 transaction.commit();
+                dataChanged();
+                
+                return numberDeleted;
             }
             finally
             {
@@ -492,12 +1108,93 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
                 {
                     transaction.rollback();
                 }
+                query.closeAll();
 
                 m_WakeLock.cancel();
             }
         }
-
-        return numberDeleted;
+    }
+    
+    /**
+     * Post an event with the progress of a bulk removal.
+     * 
+     * @param topic
+     *      topic of the event
+     * @param removed
+     *      number of items removed so far
+     * @param total
+     *      total number of items to remove
+     * @param startTime
+     *      {@link System#nanoTime()} when the removal started
+     */
+    private void postRemoveEvent(final String topic, final long removed, final long total, final long startTime)
+    {
+        final double elapsedSeconds = Math.max(1, System.nanoTime() - startTime) / NANOS_PER_SECOND;
+        
+        final Map<String, Object> props = new HashMap<>();
+        props.put(EVENT_PROP_DATA_TYPE, m_ExtentClass.getName());
+        props.put(EVENT_PROP_REMOVED_COUNT, removed);
+        props.put(EVENT_PROP_REMOVE_TOTAL, total);
+        props.put(EVENT_PROP_REMOVE_RATE, removed / elapsedSeconds);
+        postEvent(topic, props);
+    }
+    
+    @Override
+    public String explainJdoQuery(final Query query)
+    {
+        final Object nativeQuery;
+        synchronized (this)
+        {
+            try
+            {
+                query.compile();
+                if (!(query instanceof JDOQuery))
+                {
+                    return "not available, not a DataNucleus query";
+                }
+                nativeQuery = ((JDOQuery)query).getInternalQuery().getNativeQuery();
+            }
+            finally
+            {
+                query.closeAll();
+            }
+        }
+        
+        if (!(nativeQuery instanceof String))
+        {
+            return "not available, query is not translated to SQL";
+        }
+        
+        final String sql = (String)nativeQuery;
+        if (sql.contains("?"))
+        {
+            // plan depends on parameter values which are not known here
+            return String.format("not available, SQL has parameters: %s", sql);
+        }
+        
+        try
+        {
+            return executeSql("EXPLAIN " + sql, new ResultHandler<String>()
+            {
+                @Override
+                public String statementExecuted(final boolean result, final Statement statement) throws SQLException
+                {
+                    final StringBuilder plan = new StringBuilder();
+                    try (ResultSet resultSet = statement.getResultSet())
+                    {
+                        while (resultSet != null && resultSet.next())
+                        {
+                            plan.append(resultSet.getString(1)).append(System.lineSeparator());
+                        }
+                    }
+                    return plan.toString().trim();
+                }
+            });
+        }
+        catch (final SQLException e)
+        {
+            return String.format("not available, unable to explain SQL [%s]: %s", sql, e.getMessage());
+        }
     }
     
     /**
@@ -511,26 +1208,68 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
     @Override
     public long executeGetCount(final Query query)
     {
-        final long resultCount;
-        synchronized (this)
+        query.setResult("count(this)");
+        
+        if (m_AllReadManagers.isEmpty())
         {
-            try
+            synchronized (this)
             {
-                m_WakeLock.activate();
+                try
+                {
+                    m_WakeLock.activate();
 
-                query.setResult("count(this)");
+                    return (long)query.execute();
+                }
+                finally
+                {
+                    query.closeAll();
 
-                resultCount = (long)query.execute();
+                    m_WakeLock.cancel();
+                }
             }
-            finally
-            {
-                query.closeAll();
+        }
+        
+        final PersistenceManager manager = borrowReadManager();
+        Query readQuery = null;
+        try
+        {
+            m_ReadWakeLock.activate();
 
-                m_WakeLock.cancel();
+            readQuery = manager.newQuery(query);
+            return (long)readQuery.execute();
+        }
+        finally
+        {
+            if (readQuery != null)
+            {
+                readQuery.closeAll();
             }
+
+            m_ReadWakeLock.cancel();
+            m_ReadManagers.add(manager);
+        }
+    }
+    
+    /**
+     * Take a persistence manager from the read pool, waiting for one to be returned if all are in use. Must be added
+     * back to {@link #m_ReadManagers} when done.
+     * 
+     * @return
+     *      persistence manager to use for a read only query
+     * @throws PersistenceFailedException
+     *      if interrupted while waiting for a persistence manager
+     */
+    private PersistenceManager borrowReadManager() throws PersistenceFailedException
+    {
+        try
+        {
+            return m_ReadManagers.take();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new PersistenceFailedException("Interrupted waiting to query data store", e);
         }
-        
-        return resultCount;
     }
 
     /**
@@ -549,6 +1288,24 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
         return removeOnJdoQuery(newQuery);
     }
     
+    /**
+     * Helper method to remove based on a JDOQL filter string that uses implicit parameters, see {@link 
+     * #queryOnParameters(String, Map)}.
+     * 
+     * @param filterString
+     *          the specified JDOQL filter string, containing implicit parameters
+     * @param parameters
+     *          values of the implicit parameters, keyed by parameter name without the leading colon
+     * @return the number of items deleted
+     */
+    protected long removeOnParameters(final String filterString, final Map<String, ?> parameters)
+    {
+        final Query newQuery = newJdoQuery();
+        newQuery.setFilter(filterString);
+            
+        return removeOnJdoQuery(newQuery, parameters);
+    }
+    
     /**
      * Helper method for deleting the specified persistent T class objects; wraps PersistenceManager calls.
      * 
@@ -570,13 +1327,11 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
             {
                 m_WakeLock.activate();
 
+                beforeChange(Collections.singletonList(getKey(object)));
                 transaction.begin();
                 persistenceManager.deletePersistent(object);
                 transaction.commit();
-
-                transaction.begin();
-                deleteCleanup();
-                transaction.commit();
+                dataChanged();
             }
             finally
             {
@@ -589,12 +1344,49 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
             }
         }
         
+        deleteCleanup();
     }
 
     /**
-     * Perform any manual cleanup required by the persistent object(s) during a deletion from the database.
+     * Perform any manual cleanup required by the persistent object(s) after a deletion from the database, or after a 
+     * merge replaced some of the data of an item. Called without holding the data store lock so the cleanup can be 
+     * done in chunks using {@link #executeSql(String, ResultHandler)}, each of which will acquire the lock.
      */
     abstract protected void deleteCleanup();
+    
+    /**
+     * Called while holding the data store lock, right before the transaction that deletes, replaces or merges the 
+     * stored items with the given keys. The items have not changed yet, so this is where a subclass can find the rows 
+     * referenced by those items that may be left unreferenced for {@link #deleteCleanup()}. Does nothing by default.
+     * 
+     * @param keys
+     *      values of the key field of the items about to change
+     * @throws PersistenceFailedException
+     *      if unable to prepare for the change, the items are not changed
+     */
+    protected void beforeChange(final Collection<?> keys) throws PersistenceFailedException
+    {
+        // nothing to prepare by default
+    }
+    
+    /**
+     * Get the value of the field uniquely identifying the given item, the UUID of the item.
+     * 
+     * @param object
+     *      item to get the key of
+     * @return
+     *      value of the key field
+     */
+    abstract protected Object getKey(DataType object);
+    
+    /**
+     * Called after each transaction that changes the items in the data store has been committed, while still holding 
+     * the data store lock. Does nothing by default, can be overridden to invalidate any cached query results.
+     */
+    protected void dataChanged()
+    {
+        // nothing to invalidate by default
+    }
 
     /**
      * Helper method to validate start/stop time arguments.
@@ -651,10 +1443,13 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
     {
         final DataStoreConfig config = Configurable.createConfigurable(DataStoreConfig.class, props);
         setMinUsableSpace(config.minUsableSpace());
+        m_RemoveChunkSize = Math.max(1, config.removeChunkSize());
     }
     
     /**
-     * Execute an arbitrary SQL statement and handle the results with the given handler.
+     * Execute an arbitrary SQL statement and handle the results with the given handler. Unless already in one, the 
+     * statement is executed in its own transaction, as changes made using the data store connection outside of a 
+     * transaction are never committed.
      * 
      * @param <T>
      *      type of the value return by this method, handler must be able to get this value from the statement results
@@ -671,31 +1466,47 @@ abstract class AbstractDataStore<DataType> implements DataStore<DataType>, JdoDa
     {
         synchronized (this)
         {
-            final JDOConnection conn = getPersistenceManager().getDataStoreConnection();
-            
+            final Transaction transaction = getPersistenceManager().currentTransaction();
+            final boolean ownTransaction = !transaction.isActive();
             try
             {
                 m_WakeLock.activate();
-
-                @SuppressWarnings("resource") // compiler thinks sqlConn is not closed but it is by conn defined above
-                final java.sql.Connection sqlConn = (java.sql.Connection)conn;
                 
-                try (Statement statement = sqlConn.createStatement())
+                if (ownTransaction)
                 {
-                    final boolean result = statement.execute(statementText);
-                    if (handler == null)
-                    {
-                        return null;
-                    }
-                    else
+                    transaction.begin();
+                }
+                
+                final T value;
+                final JDOConnection conn = getPersistenceManager().getDataStoreConnection();
+                try
+                {
+                    @SuppressWarnings("resource") // compiler thinks sqlConn is not closed but it is by conn above
+                    final java.sql.Connection sqlConn = (java.sql.Connection)conn;
+                    
+                    try (Statement statement = sqlConn.createStatement())
                     {
-                        return handler.statementExecuted(result, statement);
+                        final boolean result = statement.execute(statementText);
+                        value = handler == null ? null : handler.statementExecuted(result, statement);
                     }
                 }
+                finally
+                {
+                    conn.close();
+                }
+                
+                if (ownTransaction)
+                {
+                    transaction.commit();
+                }
+                return value;
             }
             finally
             {
-                conn.close();
+                if (ownTransaction && transaction.isActive())
+                {
+                    transaction.rollback();
+                }
 
                 m_WakeLock.cancel();
             }
@@ -34,6 +34,11 @@ import mil.dod.th.ose.shared.H2DataStore;
  */
 public abstract class AbstractH2DataStore<T> extends AbstractDataStore<T> implements H2DataStore
 {
+    /**
+     * Connection URL setting to enable multi-version concurrency control.
+     */
+    static final String MVCC_SETTING = ";MVCC=TRUE";
+    
     /**
      * Default constructor. Sets the extent class type.
      * 
@@ -47,6 +52,21 @@ public abstract class AbstractH2DataStore<T> extends AbstractDataStore<T> implem
         super(extentClass, extentClassTimeField);
     }
     
+    /**
+     * Activate the store using multi-version concurrency control so queries on the read connections do not block on 
+     * (or block) the table locks held by writes.
+     * 
+     * @param url
+     *            connection URL of the H2 database, without any settings
+     * @param props
+     *            component properties to use once store has been initialized
+     */
+    @Override
+    protected void activateStore(final String url, final Map<String, Object> props)
+    {
+        super.activateStore(url + MVCC_SETTING, props);
+    }
+    
     @Override
     public String executeSql(final String statement) throws SQLException
     {
@@ -57,6 +77,9 @@ public abstract class AbstractH2DataStore<T> extends AbstractDataStore<T> implem
             public String statementExecuted(final boolean result, final Statement statement) 
                     throws SQLException
             {
+                // arbitrary statements may change the items in the store
+                dataChanged();
+                
                 if (!result)
                 {
                     return "Non-singular value not supported, got: " + statement.getUpdateCount();
@@ -0,0 +1,635 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mil.dod.th.core.log.Logging;
+import mil.dod.th.core.persistence.PersistenceFailedException;
+
+import org.osgi.service.log.LogService;
+
+/**
+ * Coalesces concurrent requests to persist objects into a group commit. Requests are placed on a bounded queue and a 
+ * single writer thread commits everything that is pending, up to the configured batch size, in one transaction. If a 
+ * batch fails, each object in the batch is retried on its own so a single bad object does not fail the others.
+ * 
+ * @param <T>
+ *      type of object being persisted
+ */
+class BatchPersistWriter<T>
+{
+    /**
+     * How long to wait for the writer thread to commit pending objects when stopping.
+     */
+    private static final long STOP_TIMEOUT_MS = 10000;
+    
+    /**
+     * How often the writer thread checks whether it has been stopped while idle. The writer thread is never 
+     * interrupted as an interrupt during database I/O will close the underlying file channel.
+     */
+    private static final long IDLE_POLL_MS = 250;
+    
+    /**
+     * Queue of requests waiting to be committed.
+     */
+    private final BlockingQueue<PendingPersist<T>> m_Queue;
+    
+    /**
+     * Performs the actual commit of a batch.
+     */
+    private final Committer<T> m_Committer;
+    
+    /**
+     * Thread that commits batches, null if not started.
+     */
+    private Thread m_WriterThread;
+    
+    /**
+     * Whether requests are being accepted.
+     */
+    private volatile boolean m_Running;
+    
+    /**
+     * Maximum number of objects committed in a single transaction.
+     */
+    private volatile int m_MaxBatchSize;
+    
+    /**
+     * Time in milliseconds to wait for a batch to fill before committing.
+     */
+    private volatile long m_MaxBatchDelayMs;
+    
+    /**
+     * Total number of batches committed (or attempted).
+     */
+    private final AtomicLong m_BatchCount = new AtomicLong();
+    
+    /**
+     * Total number of objects committed successfully.
+     */
+    private final AtomicLong m_PersistedCount = new AtomicLong();
+    
+    /**
+     * Total number of objects that failed to be committed.
+     */
+    private final AtomicLong m_FailedCount = new AtomicLong();
+    
+    /**
+     * Largest number of objects in a single batch.
+     */
+    private volatile int m_LargestBatchSize;
+    
+    /**
+     * Total time in milliseconds spent committing batches.
+     */
+    private final AtomicLong m_TotalCommitTimeMs = new AtomicLong();
+    
+    /**
+     * Longest time in milliseconds taken to commit a single batch.
+     */
+    private volatile long m_MaxCommitTimeMs;
+    
+    /**
+     * Time in milliseconds taken to commit the most recent batch.
+     */
+    private volatile long m_LastCommitTimeMs;
+    
+    /**
+     * Create a new writer, must call {@link #start(String)} before submitting objects.
+     * 
+     * @param committer
+     *      commits batches to the data store
+     * @param queueCapacity
+     *      maximum number of objects waiting to be committed before {@link #submit(Object)} blocks
+     * @param maxBatchSize
+     *      maximum number of objects committed in a single transaction
+     * @param maxBatchDelayMs
+     *      time to wait for a batch to fill before committing a partial batch, 0 to not wait
+     */
+    BatchPersistWriter(final Committer<T> committer, final int queueCapacity, final int maxBatchSize, 
+            final long maxBatchDelayMs)
+    {
+        m_Committer = committer;
+        m_Queue = new ArrayBlockingQueue<>(queueCapacity);
+        setMaxBatchSize(maxBatchSize);
+        setMaxBatchDelayMs(maxBatchDelayMs);
+    }
+    
+    /**
+     * Start the writer thread.
+     * 
+     * @param threadName
+     *      name to give the writer thread
+     */
+    synchronized void start(final String threadName)
+    {
+        m_Running = true;
+        m_WriterThread = new Thread(new Writer(), threadName);
+        m_WriterThread.setDaemon(true);
+        m_WriterThread.start();
+    }
+    
+    /**
+     * Stop accepting new requests and wait for the writer thread to commit any pending objects.
+     */
+    synchronized void stop()
+    {
+        if (m_WriterThread == null)
+        {
+            return;
+        }
+        
+        m_Running = false;
+        try
+        {
+            m_WriterThread.join(STOP_TIMEOUT_MS);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        m_WriterThread = null;
+        
+        // anything left over was not committed in time
+        final List<PendingPersist<T>> remaining = new ArrayList<>();
+        m_Queue.drainTo(remaining);
+        failAll(remaining, new PersistenceFailedException("Data store deactivated before object was persisted"));
+    }
+    
+    /**
+     * Queue up the object to be committed with the next batch. Blocks if the queue is full.
+     * 
+     * @param object
+     *      object to persist
+     * @return
+     *      future that completes with the persisted object once committed or exceptionally with a {@link 
+     *      PersistenceFailedException} if the commit failed, the writer is not running or the calling thread is 
+     *      interrupted while waiting for room in the queue
+     */
+    CompletableFuture<T> submit(final T object)
+    {
+        if (!m_Running)
+        {
+            return failedFuture(new PersistenceFailedException("Data store is not active, unable to persist"));
+        }
+        
+        final PendingPersist<T> pending = new PendingPersist<>(object);
+        try
+        {
+            m_Queue.put(pending);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return failedFuture(new PersistenceFailedException("Interrupted waiting to queue object to be persisted", 
+                    e));
+        }
+        
+        // writer may have stopped while queuing, make sure request is not left on the queue forever
+        if (!m_Running && m_Queue.remove(pending))
+        {
+            return failedFuture(new PersistenceFailedException("Data store is not active, unable to persist"));
+        }
+        return pending.getFuture();
+    }
+    
+    /**
+     * Create a future for an object that was never queued.
+     * 
+     * @param exception
+     *      reason the object could not be queued
+     * @return
+     *      future that is already completed exceptionally with the given exception
+     */
+    private CompletableFuture<T> failedFuture(final PersistenceFailedException exception)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+    
+    /**
+     * Set the maximum number of objects committed in a single transaction.
+     * 
+     * @param maxBatchSize
+     *      maximum batch size, must be at least 1
+     */
+    void setMaxBatchSize(final int maxBatchSize)
+    {
+        if (maxBatchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be at least 1, got: " + maxBatchSize);
+        }
+        m_MaxBatchSize = maxBatchSize;
+    }
+    
+    /**
+     * Set the time to wait for a batch to fill before committing a partial batch.
+     * 
+     * @param maxBatchDelayMs
+     *      time in milliseconds, 0 to commit whatever is pending without waiting
+     */
+    void setMaxBatchDelayMs(final long maxBatchDelayMs)
+    {
+        if (maxBatchDelayMs < 0)
+        {
+            throw new IllegalArgumentException("Batch delay must not be negative, got: " + maxBatchDelayMs);
+        }
+        m_MaxBatchDelayMs = maxBatchDelayMs;
+    }
+    
+    /**
+     * Get the number of objects waiting to be committed.
+     * 
+     * @return
+     *      current queue depth
+     */
+    int getQueueDepth()
+    {
+        return m_Queue.size();
+    }
+    
+    /**
+     * Get the total number of batches committed or attempted.
+     * 
+     * @return
+     *      number of batches
+     */
+    long getBatchCount()
+    {
+        return m_BatchCount.get();
+    }
+    
+    /**
+     * Get the total number of objects successfully committed.
+     * 
+     * @return
+     *      number of objects persisted
+     */
+    long getPersistedCount()
+    {
+        return m_PersistedCount.get();
+    }
+    
+    /**
+     * Get the total number of objects that failed to be committed.
+     * 
+     * @return
+     *      number of failed objects
+     */
+    long getFailedCount()
+    {
+        return m_FailedCount.get();
+    }
+    
+    /**
+     * Get the largest number of objects committed in a single batch.
+     * 
+     * @return
+     *      largest batch size
+     */
+    int getLargestBatchSize()
+    {
+        return m_LargestBatchSize;
+    }
+    
+    /**
+     * Get the average number of objects per batch.
+     * 
+     * @return
+     *      average batch size, 0 if no batches have been committed
+     */
+    double getAverageBatchSize()
+    {
+        final long batches = m_BatchCount.get();
+        return batches == 0 ? 0 : (double)(m_PersistedCount.get() + m_FailedCount.get()) / batches;
+    }
+    
+    /**
+     * Get the time taken to commit the most recent batch.
+     * 
+     * @return
+     *      commit latency in milliseconds
+     */
+    long getLastCommitTimeMs()
+    {
+        return m_LastCommitTimeMs;
+    }
+    
+    /**
+     * Get the longest time taken to commit a batch.
+     * 
+     * @return
+     *      commit latency in milliseconds
+     */
+    long getMaxCommitTimeMs()
+    {
+        return m_MaxCommitTimeMs;
+    }
+    
+    /**
+     * Get the average time taken to commit a batch.
+     * 
+     * @return
+     *      commit latency in milliseconds, 0 if no batches have been committed
+     */
+    double getAverageCommitTimeMs()
+    {
+        final long batches = m_BatchCount.get();
+        return batches == 0 ? 0 : (double)m_TotalCommitTimeMs.get() / batches;
+    }
+    
+    /**
+     * Wait for the next batch of requests. Waits a short time for at least one request to be available, then collects 
+     * whatever else arrives within the batch delay up to the max batch size.
+     * 
+     * @param batch
+     *      list to add requests to, will be left empty if no request arrived
+     * @throws InterruptedException
+     *      if interrupted while waiting for requests
+     */
+    private void collectBatch(final List<PendingPersist<T>> batch) throws InterruptedException
+    {
+        final int maxBatchSize = m_MaxBatchSize;
+        final long maxBatchDelayMs = m_MaxBatchDelayMs;
+        
+        final PendingPersist<T> first = m_Queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null)
+        {
+            return;
+        }
+        batch.add(first);
+        m_Queue.drainTo(batch, maxBatchSize - batch.size());
+        
+        if (maxBatchDelayMs > 0)
+        {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMs);
+            while (batch.size() < maxBatchSize)
+            {
+                final long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0)
+                {
+                    break;
+                }
+                
+                final PendingPersist<T> next = m_Queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                if (next == null)
+                {
+                    break;
+                }
+                batch.add(next);
+                m_Queue.drainTo(batch, maxBatchSize - batch.size());
+            }
+        }
+    }
+    
+    /**
+     * Commit the given batch and complete the futures of each request.
+     * 
+     * @param batch
+     *      requests to commit
+     */
+    private void commitBatch(final List<PendingPersist<T>> batch)
+    {
+        final List<T> objects = new ArrayList<>(batch.size());
+        for (PendingPersist<T> pending : batch)
+        {
+            objects.add(pending.getObject());
+        }
+        
+        final long startTime = System.currentTimeMillis();
+        try
+        {
+            final Collection<T> persisted = m_Committer.commit(objects);
+            recordCommit(batch.size(), System.currentTimeMillis() - startTime);
+            completeAll(batch, persisted);
+        }
+        catch (final PersistenceFailedException e)
+        {
+            recordCommit(batch.size(), System.currentTimeMillis() - startTime);
+            if (batch.size() == 1)
+            {
+                failAll(batch, e);
+                return;
+            }
+            
+            Logging.log(LogService.LOG_DEBUG, e, "Batch of %d failed to persist, retrying individually", 
+                    batch.size());
+            for (PendingPersist<T> pending : batch)
+            {
+                try
+                {
+                    completeAll(Collections.singletonList(pending),
+                            m_Committer.commit(Collections.singletonList(pending.getObject())));
+                }
+                catch (final PersistenceFailedException individualEx)
+                {
+                    failAll(Collections.singletonList(pending), individualEx);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Update statistics after committing a batch.
+     * 
+     * @param batchSize
+     *      number of objects in the batch
+     * @param commitTimeMs
+     *      time taken to commit the batch
+     */
+    private void recordCommit(final int batchSize, final long commitTimeMs)
+    {
+        m_BatchCount.incrementAndGet();
+        m_TotalCommitTimeMs.addAndGet(commitTimeMs);
+        m_LastCommitTimeMs = commitTimeMs;
+        if (commitTimeMs > m_MaxCommitTimeMs)
+        {
+            m_MaxCommitTimeMs = commitTimeMs;
+        }
+        if (batchSize > m_LargestBatchSize)
+        {
+            m_LargestBatchSize = batchSize;
+        }
+    }
+    
+    /**
+     * Complete the futures of the given requests with the persisted objects.
+     * 
+     * @param batch
+     *      requests that were committed
+     * @param persisted
+     *      persisted objects in the same order as the requests
+     */
+    private void completeAll(final List<PendingPersist<T>> batch, final Collection<T> persisted)
+    {
+        final Iterator<T> persistedIter = persisted.iterator();
+        for (PendingPersist<T> pending : batch)
+        {
+            m_PersistedCount.incrementAndGet();
+            pending.getFuture().complete(persistedIter.hasNext() ? persistedIter.next() : pending.getObject());
+        }
+    }
+    
+    /**
+     * Complete the futures of the given requests exceptionally.
+     * 
+     * @param batch
+     *      requests that failed
+     * @param exception
+     *      reason for the failure
+     */
+    private void failAll(final List<PendingPersist<T>> batch, final PersistenceFailedException exception)
+    {
+        for (PendingPersist<T> pending : batch)
+        {
+            m_FailedCount.incrementAndGet();
+            pending.getFuture().completeExceptionally(exception);
+        }
+    }
+    
+    /**
+     * Commits a batch of objects to the data store.
+     * 
+     * @param <T>
+     *      type of object being persisted
+     */
+    interface Committer<T>
+    {
+        /**
+         * Commit all objects in a single transaction.
+         * 
+         * @param objects
+         *      objects to persist
+         * @return
+         *      persisted objects in the same order as given
+         * @throws PersistenceFailedException
+         *      if the commit fails, none of the objects are persisted
+         */
+        Collection<T> commit(List<T> objects) throws PersistenceFailedException;
+    }
+    
+    /**
+     * Request to persist a single object.
+     * 
+     * @param <T>
+     *      type of object being persisted
+     */
+    private static class PendingPersist<T>
+    {
+        /**
+         * Object to persist.
+         */
+        private final T m_Object;
+        
+        /**
+         * Future to complete once the object has been committed.
+         */
+        private final CompletableFuture<T> m_Future = new CompletableFuture<>();
+        
+        /**
+         * Create a new request.
+         * 
+         * @param object
+         *      object to persist
+         */
+        PendingPersist(final T object)
+        {
+            m_Object = object;
+        }
+        
+        /**
+         * Get the object to persist.
+         * 
+         * @return
+         *      object to persist
+         */
+        T getObject()
+        {
+            return m_Object;
+        }
+        
+        /**
+         * Get the future to complete once committed.
+         * 
+         * @return
+         *      future for the request
+         */
+        CompletableFuture<T> getFuture()
+        {
+            return m_Future;
+        }
+    }
+    
+    /**
+     * Writer thread that commits pending requests until stopped.
+     */
+    private class Writer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            final List<PendingPersist<T>> batch = new ArrayList<>();
+            while (m_Running || !m_Queue.isEmpty())
+            {
+                try
+                {
+                    if (m_Running)
+                    {
+                        collectBatch(batch);
+                    }
+                    else
+                    {
+                        // stopping, flush whatever is left without waiting
+                        m_Queue.drainTo(batch, m_MaxBatchSize);
+                    }
+                }
+                catch (final InterruptedException e)
+                {
+                    Logging.log(LogService.LOG_WARNING, "Data store writer interrupted, %d pending", 
+                            m_Queue.size());
+                    m_Running = false;
+                    failAll(batch, new PersistenceFailedException("Data store writer interrupted", e));
+                    batch.clear();
+                    continue;
+                }
+                
+                if (batch.isEmpty())
+                {
+                    continue;
+                }
+                
+                try
+                {
+                    commitBatch(batch);
+                }
+                catch (final RuntimeException e)
+                {
+                    Logging.log(LogService.LOG_ERROR, e, "Unexpected failure committing batch of %d", batch.size());
+                    failAll(batch, new PersistenceFailedException(e));
+                }
+                batch.clear();
+            }
+        }
+    }
+}
@@ -22,6 +22,16 @@ import aQute.bnd.annotation.metatype.Meta;
  */
 public interface DataStoreConfig
 {
+    /**
+     * Key to use for the id of the {@link #readPoolSize()}.
+     */
+    String READ_POOL_SIZE_KEY = "read.pool.size";
+    
+    /**
+     * Key to use for the id of the {@link #removeChunkSize()}.
+     */
+    String REMOVE_CHUNK_SIZE_KEY = "remove.chunk.size";
+    
     /**
      * Property for {@link mil.dod.th.core.persistence.DataStore#getMinUsableSpace()}.
      * 
@@ -30,4 +40,28 @@ public interface DataStoreConfig
      */
     @Meta.AD(required = false, deflt = "1048576") // default to 1MB
     Long minUsableSpace();
+    
+    /**
+     * Number of persistence managers, each with their own database connection, used to run queries concurrently with
+     * writes. Only read when the component is activated.
+     * 
+     * @return
+     *      size of the read pool, 0 means queries share the persistence manager used for writes
+     */
+    @Meta.AD(id = READ_POOL_SIZE_KEY, required = false, deflt = "2", min = "0", 
+            description = "Number of database connections used to run queries concurrently with writes, 0 to share the "
+                    + "write connection")
+    int readPoolSize();
+    
+    /**
+     * Maximum number of items to remove at once for bulk removals. The data store lock is released between each chunk
+     * so other operations are not held up by a large removal.
+     * 
+     * @return
+     *      number of items to remove in each transaction
+     */
+    @Meta.AD(id = REMOVE_CHUNK_SIZE_KEY, required = false, deflt = "500", min = "1", 
+            description = "Maximum number of items removed in a single transaction when removing by time or query, the "
+                    + "store is available to other operations between each chunk")
+    int removeChunkSize();
 }
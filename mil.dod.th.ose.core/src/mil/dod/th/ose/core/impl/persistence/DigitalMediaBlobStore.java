@@ -0,0 +1,309 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content addressed store for the bytes of {@link mil.dod.th.core.types.DigitalMedia} kept outside of the database. 
+ * Each blob is stored once in a file named after the SHA-256 hash of its content. The database keeps a reference 
+ * instead of the bytes, made of {@link #MAGIC}, the hash and the length of the content.
+ * 
+ * <p>
+ * This class does not synchronize storing blobs with {@link #delete(String)}, the caller must make sure a blob that is 
+ * being stored is not deleted before its reference is committed.
+ */
+class DigitalMediaBlobStore
+{
+    /**
+     * Header of a blob reference, the first byte is not valid at the start of any supported media encoding and the 
+     * last byte is the version of the format.
+     */
+    static final byte[] MAGIC = {(byte)0xFF, 'B', 'L', 1};
+    
+    /**
+     * Length of the hash in bytes.
+     */
+    static final int HASH_LENGTH = 32;
+    
+    /**
+     * Length of a blob reference in bytes, header, hash and the length of the content as a long.
+     */
+    static final int REFERENCE_LENGTH = MAGIC.length + HASH_LENGTH + Long.SIZE / Byte.SIZE;
+    
+    /**
+     * Algorithm used to hash blob content.
+     */
+    private static final String HASH_ALGORITHM = "SHA-256";
+    
+    /**
+     * Extension of files being written, renamed once complete.
+     */
+    private static final String TEMP_EXTENSION = ".tmp";
+    
+    /**
+     * Characters used to format a hash.
+     */
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    
+    /**
+     * Directory containing the blob files.
+     */
+    private final Path m_Directory;
+    
+    /**
+     * Create a store using the given directory, the directory is created when the first blob is stored.
+     * 
+     * @param directory
+     *      directory containing the blob files
+     */
+    DigitalMediaBlobStore(final File directory)
+    {
+        m_Directory = directory.toPath();
+    }
+    
+    /**
+     * Store the given content if not already stored.
+     * 
+     * @param content
+     *      bytes to store
+     * @return
+     *      reference to the stored content
+     * @throws IOException
+     *      if unable to write the content
+     */
+    byte[] store(final byte[] content) throws IOException
+    {
+        final byte[] hash = hash(content);
+        final Path path = getPath(toHex(hash));
+        if (!Files.exists(path) || Files.size(path) != content.length)
+        {
+            Files.createDirectories(path.getParent());
+            final Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), 
+                    TEMP_EXTENSION);
+            try
+            {
+                Files.write(tempPath, content);
+                try
+                {
+                    Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (final AtomicMoveNotSupportedException e)
+                {
+                    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            finally
+            {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+        
+        return ByteBuffer.allocate(REFERENCE_LENGTH).put(MAGIC).put(hash).putLong(content.length).array();
+    }
+    
+    /**
+     * Read the content of the given reference.
+     * 
+     * @param reference
+     *      reference returned by {@link #store(byte[])}
+     * @return
+     *      content of the blob
+     * @throws IOException
+     *      if unable to read the blob or the blob is not the expected size
+     */
+    byte[] read(final byte[] reference) throws IOException
+    {
+        final ByteBuffer content = ByteBuffer.allocate(getContentLength(reference));
+        try (FileChannel channel = openChannel(reference))
+        {
+            while (content.hasRemaining() && channel.read(content) >= 0)
+            {
+                // keep reading until the whole blob is read, size was already checked
+            }
+        }
+        return content.array();
+    }
+    
+    /**
+     * Open a stream to read the content of the given reference, so the content never has to be held in memory all at 
+     * once.
+     * 
+     * @param reference
+     *      reference returned by {@link #store(byte[])}
+     * @return
+     *      stream of the content, must be closed by the caller
+     * @throws IOException
+     *      if unable to open the blob or the blob is not the expected size
+     */
+    InputStream open(final byte[] reference) throws IOException
+    {
+        return Channels.newInputStream(openChannel(reference));
+    }
+    
+    /**
+     * Delete the blob with the given hash, the caller must make sure the blob is no longer referenced.
+     * 
+     * @param hash
+     *      hash of the blob, as returned by {@link #getHash(byte[])}
+     * @return
+     *      true if the blob was deleted, false if there was no such blob
+     * @throws IOException
+     *      if unable to delete the blob
+     */
+    boolean delete(final String hash) throws IOException
+    {
+        return Files.deleteIfExists(getPath(hash));
+    }
+    
+    /**
+     * Whether the given value is a reference to a blob.
+     * 
+     * @param value
+     *      value of the digital media as stored in the database
+     * @return
+     *      true if the value is a blob reference
+     */
+    static boolean isReference(final byte[] value)
+    {
+        if (value == null || value.length != REFERENCE_LENGTH)
+        {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++)
+        {
+            if (value[i] != MAGIC[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Get the hash of the blob for the given reference, also used as the blob file name.
+     * 
+     * @param reference
+     *      reference to a blob
+     * @return
+     *      hash of the blob as a lower case hex string
+     */
+    static String getHash(final byte[] reference)
+    {
+        final byte[] hash = new byte[HASH_LENGTH];
+        System.arraycopy(reference, MAGIC.length, hash, 0, HASH_LENGTH);
+        return toHex(hash);
+    }
+    
+    /**
+     * Get the length of the content for the given reference.
+     * 
+     * @param reference
+     *      reference to a blob
+     * @return
+     *      length of the content in bytes
+     */
+    static int getContentLength(final byte[] reference)
+    {
+        return (int)ByteBuffer.wrap(reference, MAGIC.length + HASH_LENGTH, Long.SIZE / Byte.SIZE).getLong();
+    }
+    
+    /**
+     * Open the blob file of the given reference for reading.
+     * 
+     * @param reference
+     *      reference to a blob
+     * @return
+     *      channel to read the content from
+     * @throws IOException
+     *      if unable to open the blob or the blob is not the expected size
+     */
+    private FileChannel openChannel(final byte[] reference) throws IOException
+    {
+        final int length = getContentLength(reference);
+        final FileChannel channel = FileChannel.open(getPath(getHash(reference)), StandardOpenOption.READ);
+        if (channel.size() != length)
+        {
+            final long size = channel.size();
+            channel.close();
+            throw new IOException(String.format("Digital media blob %s is %d bytes, expected %d", 
+                    getHash(reference), size, length));
+        }
+        return channel;
+    }
+    
+    /**
+     * Get the path of the blob with the given hash. Blobs are split into sub-directories by the first byte of the 
+     * hash to keep directories small.
+     * 
+     * @param hash
+     *      hash of the blob
+     * @return
+     *      path of the blob file
+     */
+    private Path getPath(final String hash)
+    {
+        return m_Directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+    
+    /**
+     * Hash the given content.
+     * 
+     * @param content
+     *      content to hash
+     * @return
+     *      hash of the content
+     */
+    private static byte[] hash(final byte[] content)
+    {
+        try
+        {
+            return MessageDigest.getInstance(HASH_ALGORITHM).digest(content);
+        }
+        catch (final NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Format the given bytes as a lower case hex string.
+     * 
+     * @param bytes
+     *      bytes to format
+     * @return
+     *      hex string
+     */
+    static String toHex(final byte[] bytes)
+    {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            chars[i * 2] = HEX_CHARS[(bytes[i] >> 4) & 0xF]; // NOCHECKSTYLE: magic #, nibble of byte
+            chars[i * 2 + 1] = HEX_CHARS[bytes[i] & 0xF]; // NOCHECKSTYLE: magic #, nibble of byte
+        }
+        return new String(chars);
+    }
+}
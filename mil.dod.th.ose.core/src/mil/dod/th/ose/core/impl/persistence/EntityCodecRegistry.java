@@ -0,0 +1,135 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mil.dod.th.ose.shared.EncodedEntity;
+import mil.dod.th.ose.shared.PersistentEntityCodec;
+
+/**
+ * Keeps track of the available {@link PersistentEntityCodec}s and encodes/decodes entities with them. An encoded 
+ * entity is stored as an {@link EncodedEntity} holding the entity class name and the bytes produced by the codec. Any 
+ * other entity, including a byte array, is passed through unchanged so data stored before a codec was available is 
+ * still read.
+ */
+class EntityCodecRegistry
+{
+    /**
+     * Codecs keyed by the name of the entity class they handle.
+     */
+    private final Map<String, PersistentEntityCodec<?>> m_Codecs = new ConcurrentHashMap<>();
+    
+    /**
+     * Add a codec, replacing any existing codec for the same entity type.
+     * 
+     * @param codec
+     *      codec to add
+     */
+    void add(final PersistentEntityCodec<?> codec)
+    {
+        m_Codecs.put(codec.getEntityType().getName(), codec);
+    }
+    
+    /**
+     * Remove a codec if it is the current codec for its entity type.
+     * 
+     * @param codec
+     *      codec to remove
+     */
+    void remove(final PersistentEntityCodec<?> codec)
+    {
+        m_Codecs.remove(codec.getEntityType().getName(), codec);
+    }
+    
+    /**
+     * Whether there is a codec for the given entity.
+     * 
+     * @param entity
+     *      entity to check
+     * @return
+     *      true if {@link #encode(Serializable)} will encode the entity
+     */
+    boolean canEncode(final Serializable entity)
+    {
+        return !m_Codecs.isEmpty() && m_Codecs.containsKey(entity.getClass().getName());
+    }
+    
+    /**
+     * Encode the entity if there is a codec for its type.
+     * 
+     * @param entity
+     *      entity to encode
+     * @return
+     *      an {@link EncodedEntity} or the given entity if there is no codec for it
+     * @throws IOException
+     *      if the codec fails to encode the entity
+     */
+    @SuppressWarnings("unchecked")
+    Serializable encode(final Serializable entity) throws IOException
+    {
+        final String typeName = entity.getClass().getName();
+        final PersistentEntityCodec<Serializable> codec = (PersistentEntityCodec<Serializable>)m_Codecs.get(typeName);
+        if (codec == null)
+        {
+            return entity;
+        }
+        
+        return new EncodedEntity(typeName, codec.encode(entity));
+    }
+    
+    /**
+     * Decode the entity if it was encoded by a codec.
+     * 
+     * @param entity
+     *      entity as stored
+     * @return
+     *      the decoded entity or the given entity if it is not encoded
+     * @throws IOException
+     *      if the codec fails to decode the entity or the codec used to encode it is not available
+     */
+    Serializable decode(final Serializable entity) throws IOException
+    {
+        if (!isEncoded(entity))
+        {
+            return entity;
+        }
+        
+        final EncodedEntity encoded = (EncodedEntity)entity;
+        final PersistentEntityCodec<?> codec = m_Codecs.get(encoded.getEntityType());
+        if (codec == null)
+        {
+            throw new IOException(String.format("No codec available for stored entity of type %s", 
+                    encoded.getEntityType()));
+        }
+        
+        final byte[] data = encoded.getData();
+        return codec.decode(data, 0, data.length);
+    }
+    
+    /**
+     * Whether the entity was encoded by a codec.
+     * 
+     * @param entity
+     *      entity as stored
+     * @return
+     *      true if the entity is an {@link EncodedEntity}
+     */
+    static boolean isEncoded(final Serializable entity)
+    {
+        return entity instanceof EncodedEntity;
+    }
+}
@@ -48,4 +48,30 @@ public interface H2DataStoreConfig extends DataStoreConfig
     @Override
     @Meta.AD(required = false, deflt = "1048576") // default to 1MB
     Long minUsableSpace();
+    
+    // TODO: TH-122: this is copied from the base interface because annotations are not scanned in base interfaces
+    // need to handler some other way
+    /**
+     * Property for the number of persistence managers used to run queries concurrently with writes.
+     * 
+     * @return
+     *      current configuration value for the property, default if not configured yet
+     */
+    @Override
+    @Meta.AD(id = READ_POOL_SIZE_KEY, required = false, deflt = "2", min = "0", 
+            description = "Number of database connections used to run queries concurrently with writes, 0 to share the "
+                    + "write connection")
+    int readPoolSize();
+    
+    /**
+     * Property for the maximum number of items to remove in a single transaction.
+     * 
+     * @return
+     *      current configuration value for the property, default if not configured yet
+     */
+    @Override
+    @Meta.AD(id = REMOVE_CHUNK_SIZE_KEY, required = false, deflt = "500", min = "1", 
+            description = "Maximum number of items removed in a single transaction when removing by time or query, the "
+                    + "store is available to other operations between each chunk")
+    int removeChunkSize();
 }
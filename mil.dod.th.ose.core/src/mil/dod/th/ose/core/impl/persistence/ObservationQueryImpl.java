@@ -14,11 +14,20 @@ package mil.dod.th.ose.core.impl.persistence;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.jdo.Query;
 
@@ -45,6 +54,24 @@ public class ObservationQueryImpl implements ObservationQuery
      */
     private static String TIME_RANGE_FILTER_FORMAT = "%s >= %d && %s <= %d";
 
+    /**
+     * Format string used to find the observations after the last one returned when paging by created timestamp, 
+     * comparing the timestamp and then the UUID. The field name is the first argument, the comparison operator the 
+     * second.
+     */
+    private static final String KEYSET_FILTER = 
+            "(%1$s %2$s :lastTimestamp || (%1$s == :lastTimestamp && uuid %2$s :lastUuid))";
+    
+    /**
+     * Name of the parameter holding the created timestamp of the last observation returned.
+     */
+    private static final String LAST_TIMESTAMP_PARAM = "lastTimestamp";
+    
+    /**
+     * Name of the parameter holding the UUID of the last observation returned.
+     */
+    private static final String LAST_UUID_PARAM = "lastUuid";
+
     /**
      * Data store used for {@link Observation}s.
      */
@@ -110,6 +137,11 @@ public class ObservationQueryImpl implements ObservationQuery
      */
     private SortOrder m_SortOrder;
     
+    /**
+     * Whether digital media kept outside of the database is left unread.
+     */
+    private boolean m_DigitalMediaDeferred;
+    
     /**
      * Base constructor to inject a persistence manager and extent.
      * 
@@ -225,7 +257,7 @@ public class ObservationQueryImpl implements ObservationQuery
     @Override
     public long getCount()
     {
-        final Query query = getBaseJdoQuery();
+        final Query query = createJdoQuery(getFilterStrings());
         
         if (m_FromRangeInclusive != null && m_ToRangeExclusive != null)
         {
@@ -235,22 +267,64 @@ public class ObservationQueryImpl implements ObservationQuery
         return m_DataStore.executeGetCount(query);
     }
 
+    @Override
+    public ObservationQuery withDigitalMediaDeferred()
+    {
+        m_DigitalMediaDeferred = true;
+        return this;
+    }
+
     @Override
     public Collection<Observation> execute()
     {
-        final Query query = getBaseJdoQuery();
-        // default to created timestamp field
-        final SortField field = Objects.firstNonNull(m_SortField, SortField.CreatedTimestamp);
-        // default to descending
-        final SortOrder order = Objects.firstNonNull(m_SortOrder, SortOrder.Descending);
-        query.setOrdering(String.format("%s %s", field.getJdoFieldName(), order.toString().toLowerCase()));
+        return m_DataStore.executeJdoQuery(createExecuteQuery());
+    }
+    
+    @Override
+    public String explain()
+    {
+        final List<String> filterStrings = getFilterStrings();
         
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Filter: %s%n", 
+                filterStrings.isEmpty() ? "none" : Joiner.on(" && ").join(filterStrings)));
+        builder.append(String.format("Ordering: %s %s%n", getSortField().getJdoFieldName(), 
+                getSortOrder().toString().toLowerCase()));
         if (m_FromRangeInclusive != null && m_ToRangeExclusive != null)
         {
-            query.setRange(m_FromRangeInclusive, m_ToRangeExclusive);
+            builder.append(String.format("Range: %d to %d%n", m_FromRangeInclusive, m_ToRangeExclusive));
+        }
+        builder.append(String.format("Database plan: %s", m_DataStore.explainJdoQuery(createExecuteQuery())));
+        return builder.toString();
+    }
+    
+    @Override
+    public Iterator<Observation> iterate(final int fetchSize) throws IllegalArgumentException
+    {
+        Preconditions.checkArgument(fetchSize > 0, "Fetch size must be at least 1: " + fetchSize);
+        
+        final int skip;
+        final long limit;
+        if (m_FromRangeInclusive != null && m_ToRangeExclusive != null)
+        {
+            skip = m_FromRangeInclusive;
+            limit = Math.max(0L, (long)m_ToRangeExclusive - m_FromRangeInclusive);
+        }
+        else
+        {
+            skip = 0;
+            limit = Long.MAX_VALUE;
         }
         
-        return m_DataStore.executeJdoQuery(query);
+        return new PagedIterator(getFilterStrings(), getSortField(), getSortOrder(), m_DigitalMediaDeferred, 
+                fetchSize, skip, limit);
+    }
+    
+    @Override
+    public Stream<Observation> stream()
+    {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterate(DEFAULT_FETCH_SIZE), 
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
     @Override
@@ -262,19 +336,98 @@ public class ObservationQueryImpl implements ObservationQuery
         Preconditions.checkState(m_FromRangeInclusive == null);
         Preconditions.checkState(m_ToRangeExclusive == null);
         
-        return m_DataStore.removeOnJdoQuery(getBaseJdoQuery());
+        return m_DataStore.removeOnJdoQuery(createJdoQuery(getFilterStrings()));
+    }
+    
+    /**
+     * Get the field to sort on, defaults to the created timestamp.
+     * 
+     * @return
+     *      field to sort on
+     */
+    private SortField getSortField()
+    {
+        return Objects.firstNonNull(m_SortField, SortField.CreatedTimestamp);
     }
     
     /**
-     * Get the JDO query given the observation query.
+     * Get the order to sort in, defaults to descending.
+     * 
+     * @return
+     *      order to sort in
+     */
+    private SortOrder getSortOrder()
+    {
+        return Objects.firstNonNull(m_SortOrder, SortOrder.Descending);
+    }
+    
+    /**
+     * Get the JDO query to retrieve the observations, including order and range.
      * 
      * @return
      *      JDO query
      */
-    private Query getBaseJdoQuery()
+    private Query createExecuteQuery()
+    {
+        final SortField field = getSortField();
+        final Query query = createJdoQuery(getFilterStrings());
+        query.setOrdering(String.format("%s %s", field.getJdoFieldName(), getSortOrder().toString().toLowerCase()));
+        
+        if (m_FromRangeInclusive != null && m_ToRangeExclusive != null)
+        {
+            query.setRange(m_FromRangeInclusive, m_ToRangeExclusive);
+        }
+        deferDigitalMedia(query, m_DigitalMediaDeferred);
+        
+        return query;
+    }
+    
+    /**
+     * Remove the extended data from the fetch plan of the given query if digital media is deferred, the store then 
+     * leaves the digital media kept outside of the database unread.
+     * 
+     * @param query
+     *      query to retrieve observations
+     * @param deferred
+     *      whether digital media is deferred
+     */
+    private static void deferDigitalMedia(final Query query, final boolean deferred)
+    {
+        if (deferred)
+        {
+            query.getFetchPlan().removeGroup(AbstractDataStore.PROP_EXTENDED_FETCH_GROUP);
+        }
+    }
+    
+    /**
+     * Create a JDO query using the given filters.
+     * 
+     * @param filterStrings
+     *      JDOQL filters that must all match
+     * @return
+     *      JDO query
+     */
+    private Query createJdoQuery(final List<String> filterStrings)
     {
         final Query query = m_DataStore.newJdoQuery();
         
+        if (filterStrings.size() > 0)
+        {
+            final String completeFilter = Joiner.on(" && ").join(filterStrings);
+            query.setFilter(completeFilter);
+        }
+        
+        return query;
+    }
+    
+    /**
+     * Get the JDOQL filters for the observation query.
+     * 
+     * @return
+     *      list of filters that must all match, modifiable
+     */
+    private List<String> getFilterStrings()
+    {
         final List<String> filterStrings = new ArrayList<>();
         if (m_AssetUuid != null)
         {
@@ -293,15 +446,15 @@ public class ObservationQueryImpl implements ObservationQuery
         if (m_ObservedStartDate != null && m_ObservedStopDate != null)
         {
             final String jdoFieldName = SortField.ObservedTimestamp.getJdoFieldName();
-            filterStrings.add(String.format(TIME_RANGE_FILTER_FORMAT, jdoFieldName, m_ObservedStartDate.getTime(),
-                    jdoFieldName, m_ObservedStopDate.getTime()));
+            filterStrings.add(String.format(TIME_RANGE_FILTER_FORMAT, jdoFieldName, 
+                    m_ObservedStartDate.getTime(), jdoFieldName, m_ObservedStopDate.getTime()));
         }
 
         if (m_CreatedStartDate != null && m_CreatedStopDate != null)
         {
             final String jdoFieldName = SortField.CreatedTimestamp.getJdoFieldName();
-            filterStrings.add(String.format(TIME_RANGE_FILTER_FORMAT, jdoFieldName, m_CreatedStartDate.getTime(),
-                    jdoFieldName, m_CreatedStopDate.getTime()));
+            filterStrings.add(String.format(TIME_RANGE_FILTER_FORMAT, jdoFieldName, 
+                    m_CreatedStartDate.getTime(), jdoFieldName, m_CreatedStopDate.getTime()));
         }
 
         if (m_SystemId != null)
@@ -309,14 +462,7 @@ public class ObservationQueryImpl implements ObservationQuery
             filterStrings.add(String.format("systemId == %s", m_SystemId));
         }
         
-        
-        if (filterStrings.size() > 0)
-        {
-            final String completeFilter = Joiner.on(" && ").join(filterStrings);
-            query.setFilter(completeFilter);
-        }
-        
-        return query;
+        return filterStrings;
     }
     
     /**
@@ -337,4 +483,175 @@ public class ObservationQueryImpl implements ObservationQuery
         }
         return false;
     }
+
+    /**
+     * Iterator that retrieves the observations for the query a page at a time. Each page is a separate query of the 
+     * data store so nothing is held between pages. When sorted by created timestamp, observations are ordered by the 
+     * created timestamp and then the UUID so the next page is found using the timestamp and UUID of the last observation 
+     * returned (keyset pagination). Otherwise, pages are found by position.
+     */
+    private class PagedIterator implements Iterator<Observation>
+    {
+        /**
+         * Filters of the query when the iterator was created.
+         */
+        private final List<String> m_BaseFilters;
+        
+        /**
+         * Field to order by.
+         */
+        private final SortField m_Field;
+        
+        /**
+         * Order of the field.
+         */
+        private final SortOrder m_Order;
+        
+        /**
+         * Whether digital media kept outside of the database is left unread.
+         */
+        private final boolean m_DigitalMediaDeferred;
+        
+        /**
+         * Max number of observations to retrieve per page.
+         */
+        private final int m_FetchSize;
+        
+        /**
+         * Number of observations left to return, based on the range of the query.
+         */
+        private long m_Remaining;
+        
+        /**
+         * Position of the next page in the results, only used for the first page when using keyset pagination.
+         */
+        private long m_Offset;
+        
+        /**
+         * Observations of the current page that have not been returned yet.
+         */
+        private Iterator<Observation> m_Page = Collections.emptyIterator();
+        
+        /**
+         * Whether the last page retrieved was the last one available.
+         */
+        private boolean m_LastPage;
+        
+        /**
+         * Created timestamp of the last observation returned, null if none returned yet.
+         */
+        private Long m_LastTimestamp;
+        
+        /**
+         * UUID of the last observation returned, null if none returned yet.
+         */
+        private UUID m_LastUuid;
+        
+        /**
+         * Create the iterator, no observations are retrieved until needed.
+         * 
+         * @param baseFilters
+         *      filters the observations must match
+         * @param field
+         *      field to order by
+         * @param order
+         *      order of the field
+         * @param digitalMediaDeferred
+         *      whether digital media kept outside of the database is left unread
+         * @param fetchSize
+         *      max number of observations to retrieve per page
+         * @param skip
+         *      number of observations to skip before the first one returned
+         * @param limit
+         *      max number of observations to return overall
+         */
+        PagedIterator(final List<String> baseFilters, final SortField field, final SortOrder order, 
+                final boolean digitalMediaDeferred, final int fetchSize, final int skip, final long limit)
+        {
+            m_BaseFilters = baseFilters;
+            m_Field = field;
+            m_Order = order;
+            m_DigitalMediaDeferred = digitalMediaDeferred;
+            m_FetchSize = fetchSize;
+            m_Offset = skip;
+            m_Remaining = limit;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (m_Remaining <= 0)
+            {
+                return false;
+            }
+            
+            if (!m_Page.hasNext() && !m_LastPage)
+            {
+                fetchNextPage();
+            }
+            
+            return m_Page.hasNext();
+        }
+
+        @Override
+        public Observation next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            
+            final Observation observation = m_Page.next();
+            m_Remaining--;
+            
+            m_LastTimestamp = observation.getCreatedTimestamp();
+            m_LastUuid = observation.getUuid();
+            
+            return observation;
+        }
+        
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("Observations cannot be removed through the iterator");
+        }
+        
+        /**
+         * Query the data store for the next page of observations.
+         */
+        private void fetchNextPage()
+        {
+            final int pageSize = (int)Math.min(m_FetchSize, m_Remaining);
+            final boolean keyset = m_Field == SortField.CreatedTimestamp;
+            
+            final String order = m_Order.toString().toLowerCase();
+            final List<String> filterStrings = new ArrayList<>(m_BaseFilters);
+            final Map<String, Object> parameters = new HashMap<>();
+            String ordering = String.format("%s %s", m_Field.getJdoFieldName(), order);
+            if (keyset)
+            {
+                if (m_LastTimestamp != null)
+                {
+                    final String comparison = m_Order == SortOrder.Descending ? "<" : ">";
+                    filterStrings.add(String.format(KEYSET_FILTER, m_Field.getJdoFieldName(), comparison));
+                    parameters.put(LAST_TIMESTAMP_PARAM, m_LastTimestamp);
+                    parameters.put(LAST_UUID_PARAM, m_LastUuid);
+                }
+                // UUID breaks ties between observations with the same timestamp so the order is total
+                ordering += String.format(", uuid %s", order);
+            }
+            
+            final Query query = createJdoQuery(filterStrings);
+            query.setOrdering(ordering);
+            query.setRange(m_Offset, m_Offset + pageSize);
+            deferDigitalMedia(query, m_DigitalMediaDeferred);
+            
+            final Collection<Observation> page = m_DataStore.executeJdoQuery(query, parameters);
+            
+            // keyset pages start right after the last observation, position based pages must move forward
+            m_Offset = keyset ? 0 : m_Offset + page.size();
+            m_LastPage = page.size() < pageSize;
+            m_Page = page.iterator();
+        }
+    }
 }
@@ -0,0 +1,148 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import aQute.bnd.annotation.metatype.Meta;
+import aQute.bnd.annotation.metatype.Meta.AD;
+
+/**
+ * Configuration interface for the {@link mil.dod.th.core.persistence.ObservationStore} implementation.
+ */
+public interface ObservationStoreConfig extends H2DataStoreConfig
+{
+    /**
+     * Key to use for the id of the {@link #persistBatchSize()}.
+     */
+    String PERSIST_BATCH_SIZE_KEY = "persist.batch.size";
+    
+    /**
+     * Key to use for the id of the {@link #persistBatchDelayMs()}.
+     */
+    String PERSIST_BATCH_DELAY_MS_KEY = "persist.batch.delay.ms";
+    
+    /**
+     * Key to use for the id of the {@link #persistQueueCapacity()}.
+     */
+    String PERSIST_QUEUE_CAPACITY_KEY = "persist.queue.capacity";
+    
+    /**
+     * Key to use for the id of the {@link #blobStoreEnabled()}.
+     */
+    String BLOB_STORE_ENABLED_KEY = "blob.store.enabled";
+    
+    /**
+     * Key to use for the id of the {@link #blobStoreMinSize()}.
+     */
+    String BLOB_STORE_MIN_SIZE_KEY = "blob.store.min.size";
+    
+    /**
+     * Maximum number of pending observations that will be committed to the store in a single transaction.
+     * 
+     * @return
+     *      maximum number of observations per transaction
+     */
+    @AD(id = PERSIST_BATCH_SIZE_KEY, required = false, deflt = "50", min = "1",
+        description = "Maximum number of observations committed together in a single transaction")
+    int persistBatchSize();
+    
+    /**
+     * Maximum amount of time the writer will wait for additional observations before committing a batch that is not
+     * full. A value of 0 means to commit whatever is pending without waiting, so a lone observation is never delayed.
+     * 
+     * @return
+     *      time in milliseconds to wait for a batch to fill
+     */
+    @AD(id = PERSIST_BATCH_DELAY_MS_KEY, required = false, deflt = "0", min = "0",
+        description = "Time in milliseconds to wait for additional observations before committing a partial batch")
+    long persistBatchDelayMs();
+    
+    /**
+     * Maximum number of observations waiting to be committed. Once full, calls to persist an observation will block 
+     * until there is room. Only read when the component is activated.
+     * 
+     * @return
+     *      capacity of the pending observation queue
+     */
+    @AD(id = PERSIST_QUEUE_CAPACITY_KEY, required = false, deflt = "1000", min = "1",
+        description = "Maximum number of observations waiting to be committed before persist calls block")
+    int persistQueueCapacity();
+    
+    /**
+     * Whether digital media bytes are stored in files outside of the database. Media already stored in files is still 
+     * read if this is disabled later on.
+     * 
+     * @return
+     *      true to store digital media outside of the database
+     */
+    @AD(id = BLOB_STORE_ENABLED_KEY, required = false, deflt = "false",
+        description = "Store digital media (images, video, audio) in files outside of the database, identical media "
+                + "is only stored once")
+    boolean blobStoreEnabled();
+    
+    /**
+     * Minimum size of digital media to store outside of the database if {@link #blobStoreEnabled()}, smaller media is 
+     * kept in the database.
+     * 
+     * @return
+     *      minimum size in bytes
+     */
+    @AD(id = BLOB_STORE_MIN_SIZE_KEY, required = false, deflt = "4096", min = "0",
+        description = "Minimum size in bytes of digital media stored outside of the database")
+    int blobStoreMinSize();
+    
+    // TODO: TH-122: this is copied from the base interface because annotations are not scanned in base interfaces
+    // need to handler some other way
+    /**
+     * The maximum size of the cache to use with the H2 database.
+     * 
+     * @return
+     *      size in KB of the cache, value of -1 means to use the value set initially by the database
+     */
+    @Override
+    @AD(id = MAX_CACHE_SIZE_KEY, required = false, deflt = "-1")
+    int maxDatabaseCacheSize();
+    
+    /**
+     * Property for {@link mil.dod.th.core.persistence.DataStore#getMinUsableSpace()}.
+     * 
+     * @return
+     *      current configuration value for the property, default if not configured yet
+     */
+    @Override
+    @Meta.AD(required = false, deflt = "1048576") // default to 1MB
+    Long minUsableSpace();
+    
+    /**
+     * Property for the number of persistence managers used to run queries concurrently with writes.
+     * 
+     * @return
+     *      current configuration value for the property, default if not configured yet
+     */
+    @Override
+    @Meta.AD(id = READ_POOL_SIZE_KEY, required = false, deflt = "2", min = "0", 
+            description = "Number of database connections used to run queries concurrently with writes, 0 to share the "
+                    + "write connection")
+    int readPoolSize();
+    
+    /**
+     * Property for the maximum number of items to remove in a single transaction.
+     * 
+     * @return
+     *      current configuration value for the property, default if not configured yet
+     */
+    @Override
+    @Meta.AD(id = REMOVE_CHUNK_SIZE_KEY, required = false, deflt = "500", min = "1", 
+            description = "Maximum number of items removed in a single transaction when removing by time or query, the "
+                    + "store is available to other operations between each chunk")
+    int removeChunkSize();
+}
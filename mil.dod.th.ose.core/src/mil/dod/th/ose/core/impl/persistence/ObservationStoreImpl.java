@@ -11,15 +11,33 @@
 // <http://creativecommons.org/publicdomain/zero/1.0/>.
 //==============================================================================
 package mil.dod.th.ose.core.impl.persistence;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import javax.jdo.Query;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
@@ -27,21 +45,28 @@ import aQute.bnd.annotation.component.ConfigurationPolicy;
 import aQute.bnd.annotation.component.Deactivate;
 import aQute.bnd.annotation.component.Modified;
 import aQute.bnd.annotation.component.Reference;
+import aQute.bnd.annotation.metatype.Configurable;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
 
 import mil.dod.th.core.asset.Asset;
 import mil.dod.th.core.factory.FactoryDescriptor;
+import mil.dod.th.core.log.Logging;
 import mil.dod.th.core.observation.types.Observation;
 import mil.dod.th.core.persistence.ObservationQuery;
 import mil.dod.th.core.persistence.ObservationQuery.SortField;
 import mil.dod.th.core.persistence.ObservationStore;
 import mil.dod.th.core.persistence.PersistenceFailedException;
 import mil.dod.th.core.pm.PowerManager;
+import mil.dod.th.core.types.DigitalMedia;
 import mil.dod.th.core.types.Version;
 import mil.dod.th.core.types.observation.ObservationSubTypeEnum;
 import mil.dod.th.core.validator.ValidationFailedException;
 import mil.dod.th.core.validator.Validator;
+import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
 import mil.dod.th.ose.shared.H2DataStore;
 import mil.dod.th.ose.shared.JdoDataStore;
 import mil.dod.th.ose.shared.SystemConfigurationConstants;
@@ -51,13 +76,14 @@ import mil.dod.th.ose.utils.PropertyRetriever;
 
 import org.osgi.framework.BundleContext;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.log.LogService;
 
 /**
  * Implementation of the {@link ObservationStore}.
  * 
  * @author jconn
  */
-@Component(designate = H2DataStoreConfig.class, configurationPolicy = ConfigurationPolicy.optional,
+@Component(designate = ObservationStoreConfig.class, configurationPolicy = ConfigurationPolicy.optional,
         provide = { ObservationStore.class, H2DataStore.class, JdoDataStore.class }, 
         properties = JdoDataStore.PROP_KEY_DATASTORE_TYPE + "=" + JdoDataStore.PROP_OBSERVATION_STORE)
 public class ObservationStoreImpl extends AbstractH2DataStore<Observation> implements ObservationStore
@@ -73,6 +99,49 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
      * @see H2DataStoreConfig#maxDatabaseCacheSize()
      */
     public static final String MAX_CACHE_SIZE = "mil.dod.th.ose.core.observationstore.maxcache";
+    
+    /**
+     * Directory, relative to the data directory, containing digital media stored outside of the database.
+     */
+    public static final String BLOB_DIR = "datastores/ObservationBlobs";
+    
+    /**
+     * Query for the IDs of the coordinates referenced by the observations with the UUIDs given as a list of SQL 
+     * literals.
+     */
+    private static final String COORDINATES_OF_OBSERVATIONS = 
+            "SELECT a.ID_ID FROM OBSERVATION o JOIN OBSERVATION_ASSETLOCATION a "
+                + "ON a.OBSERVATION_ID_OID = o.OBSERVATION_ID WHERE o.UUID IN (%1$s) "
+            + "UNION SELECT p.ID_ID FROM OBSERVATION o JOIN OBSERVATION_POINTINGLOCATION p "
+                + "ON p.OBSERVATION_ID_OID = o.OBSERVATION_ID WHERE o.UUID IN (%1$s) "
+            + "UNION SELECT d.ID_ID FROM OBSERVATION o JOIN DETECTION_TARGETLOCATION d "
+                + "ON d.ID_OID = o.DETECTION_ID_OID WHERE o.UUID IN (%1$s)";
+    
+    /**
+     * Query for the IDs of the orientations referenced by the observations with the UUIDs given as a list of SQL 
+     * literals.
+     */
+    private static final String ORIENTATIONS_OF_OBSERVATIONS = 
+            "SELECT a.ID_ID FROM OBSERVATION o JOIN OBSERVATION_ASSETORIENTATION a "
+                + "ON a.OBSERVATION_ID_OID = o.OBSERVATION_ID WHERE o.UUID IN (%1$s) "
+            + "UNION SELECT p.ID_ID FROM OBSERVATION o JOIN OBSERVATION_PLATFORMORIENTATION p "
+                + "ON p.OBSERVATION_ID_OID = o.OBSERVATION_ID WHERE o.UUID IN (%1$s)";
+    
+    /**
+     * Query for the IDs of the digital media, including image masks, referenced by the observations with the UUIDs 
+     * given as a list of SQL literals.
+     */
+    private static final String MEDIA_OF_OBSERVATIONS = 
+            "SELECT d.ID_ID FROM OBSERVATION o JOIN OBSERVATION_DIGITALMEDIA d "
+                + "ON d.OBSERVATION_ID_OID = o.OBSERVATION_ID WHERE o.UUID IN (%1$s) "
+            + "UNION SELECT m.ID_EID FROM OBSERVATION o JOIN IMAGEMETADATA_MASKSAMPLESOFINTEREST m "
+                + "ON m.ID_OID = o.IMAGEMETADATA_ID_OID WHERE o.UUID IN (%1$s)";
+    
+    /**
+     * Query for the blob references held by the digital media with the given list of IDs.
+     */
+    private static final String BLOB_REFERENCES_OF_MEDIA = 
+            "SELECT BLOBREFERENCE FROM DIGITALMEDIA WHERE BLOBREFERENCE IS NOT NULL AND ID IN (%s)";
 
     /**
      * The object which contains the current version of all new observations.
@@ -93,6 +162,44 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
      * Service for accessing the {@link Class} class, so static methods are not called.
      */
     private ClassService m_ClassService;
+    
+    /**
+     * Commits observations to the store in batches, all persists and merges go through this writer.
+     */
+    private BatchPersistWriter<Observation> m_Writer;
+    
+    /**
+     * Store for digital media kept outside of the database.
+     */
+    private DigitalMediaBlobStore m_BlobStore;
+    
+    /**
+     * Whether new digital media is stored in {@link #m_BlobStore}.
+     */
+    private volatile boolean m_BlobStoreEnabled;
+    
+    /**
+     * Minimum size of digital media to store in {@link #m_BlobStore}.
+     */
+    private volatile int m_BlobStoreMinSize;
+    
+    /**
+     * Held for reading from the time digital media is stored in {@link #m_BlobStore} until the references are 
+     * committed, held for writing while unreferenced blobs are deleted so a blob is never deleted before it is 
+     * referenced.
+     */
+    private final ReentrantReadWriteLock m_BlobLock = new ReentrantReadWriteLock();
+    
+    /**
+     * Rows and blobs referenced by observations that have been deleted or changed, checked and deleted if no longer 
+     * referenced by the next cleanup.
+     */
+    private final OrphanCandidates m_OrphanCandidates = new OrphanCandidates();
+    
+    /**
+     * Whether the blob reference column and its index are known to exist in the digital media table.
+     */
+    private volatile boolean m_BlobReferenceIndexed;
 
     /**
      * Constructor.
@@ -158,6 +265,13 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
         super.setPowerManager(powerManager);
     }
 
+    @Reference(optional = true)
+    @Override
+    public void setPowerManagerInternal(final PowerManagerInternal powerManagerInternal)
+    {
+        super.setPowerManagerInternal(powerManagerInternal);
+    }
+
     /**
      * Activate the component by activating the abstract persistent store.
      * 
@@ -181,6 +295,15 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
         
         final String dataDir = context.getProperty(SystemConfigurationConstants.DATA_DIR_PROPERTY);
         activateStore(String.format("jdbc:h2:file:%s", dataDir + "/" + DATABASE_FILE_BASE), combindedProps);
+        createCompositeIndexes();
+        
+        final ObservationStoreConfig config = Configurable.createConfigurable(ObservationStoreConfig.class, props);
+        m_BlobStore = new DigitalMediaBlobStore(new File(dataDir, BLOB_DIR));
+        m_BlobStoreEnabled = config.blobStoreEnabled();
+        m_BlobStoreMinSize = config.blobStoreMinSize();
+        m_Writer = new BatchPersistWriter<>(this::persistBatch, config.persistQueueCapacity(), 
+                config.persistBatchSize(), config.persistBatchDelayMs());
+        m_Writer.start("ObservationStoreWriter");
         
         //pull out the version numbers
         final URL entry = m_ClassService.getResource(Observation.class, "version.properties");
@@ -199,6 +322,12 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
     @Deactivate
     public void deactivate()
     {
+        m_Writer.stop();
+        Logging.log(LogService.LOG_DEBUG, "Observation store persisted %d observations in %d batches (avg size %.1f, "
+                + "max size %d), avg commit %.1f ms, max commit %d ms, %d failed", m_Writer.getPersistedCount(), 
+                m_Writer.getBatchCount(), m_Writer.getAverageBatchSize(), m_Writer.getLargestBatchSize(), 
+                m_Writer.getAverageCommitTimeMs(), m_Writer.getMaxCommitTimeMs(), m_Writer.getFailedCount());
+        
         deactivateStore();
     }
     
@@ -212,6 +341,12 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
     public void modified(final Map<String, Object> props)
     {
         updateProps(props);
+        
+        final ObservationStoreConfig config = Configurable.createConfigurable(ObservationStoreConfig.class, props);
+        m_Writer.setMaxBatchSize(config.persistBatchSize());
+        m_Writer.setMaxBatchDelayMs(config.persistBatchDelayMs());
+        m_BlobStoreEnabled = config.blobStoreEnabled();
+        m_BlobStoreMinSize = config.blobStoreMinSize();
     }
 
     @Override
@@ -220,22 +355,121 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
     {
         final Observation validatedObservation = validateArgumentObservation(observation);
 
-        super.makePersistent(validatedObservation);
+        waitForCommit(m_Writer.submit(validatedObservation));
 
         postEvent(TOPIC_OBSERVATION_PERSISTED, validatedObservation);
     }
     
+    @Override
+    public Future<Observation> persistAsync(final Observation observation) throws IllegalArgumentException, 
+            ValidationFailedException
+    {
+        final Observation validatedObservation = validateArgumentObservation(observation);
+        
+        return m_Writer.submit(validatedObservation).thenApply(persistedObservation -> 
+        {
+            postEvent(TOPIC_OBSERVATION_PERSISTED, validatedObservation);
+            return persistedObservation;
+        });
+    }
+    
+    @Override
+    public int persistOrReplaceAll(final Collection<Observation> observations) throws IllegalArgumentException,
+            ValidationFailedException, PersistenceFailedException
+    {
+        if (observations == null)
+        {
+            throw new IllegalArgumentException("observations must not be null");
+        }
+        
+        final List<UUID> uuids = new ArrayList<>(observations.size());
+        for (Observation observation : observations)
+        {
+            uuids.add(validateArgumentObservation(observation).getUuid());
+        }
+        
+        if (observations.isEmpty())
+        {
+            return 0;
+        }
+        
+        final int replaced = commitWithBlobs(observations, toCommit -> replaceAll(toCommit, uuids));
+        
+        for (Observation observation : observations)
+        {
+            postEvent(TOPIC_OBSERVATION_PERSISTED, observation);
+        }
+        
+        return replaced;
+    }
+    
     @Override
     public void merge(final Observation observation)
             throws IllegalArgumentException, PersistenceFailedException, ValidationFailedException
     {
         final Observation validatedObservation = validateArgumentObservation(observation);
 
-        super.makePersistent(validatedObservation);
+        // go through the writer as well so a merge is never committed ahead of a pending persist
+        waitForCommit(m_Writer.submit(validatedObservation));
         
         postEvent(TOPIC_OBSERVATION_MERGED, validatedObservation);
     }
     
+    /**
+     * Get the writer used to commit observations in batches, used to access the batch statistics.
+     * 
+     * @return
+     *      the batch writer for the store
+     */
+    BatchPersistWriter<Observation> getBatchWriter()
+    {
+        return m_Writer;
+    }
+    
+    @Override
+    public Collection<Observation> executeJdoQuery(final Query query, final Map<String, ?> parameters)
+    {
+        // without the extended data, blobs are left for the caller to read using openDigitalMedia if needed at all
+        final boolean readBlobs = query.getFetchPlan().getGroups().contains(PROP_EXTENDED_FETCH_GROUP);
+        final Collection<Observation> results = super.executeJdoQuery(query, parameters);
+        if (!readBlobs)
+        {
+            return results;
+        }
+        
+        for (Observation observation : results)
+        {
+            for (DigitalMedia media : getDigitalMedia(observation))
+            {
+                if (DigitalMediaBlobStore.isReference(media.getValue()))
+                {
+                    try
+                    {
+                        media.setValue(m_BlobStore.read(media.getValue()));
+                    }
+                    catch (final IOException e)
+                    {
+                        throw new PersistenceFailedException(String.format(
+                                "Unable to read digital media of observation [%s]", observation.getUuid()), e);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+    
+    @Override
+    public InputStream openDigitalMedia(final DigitalMedia media) throws IOException
+    {
+        Preconditions.checkNotNull(media);
+        
+        if (DigitalMediaBlobStore.isReference(media.getValue()))
+        {
+            return m_BlobStore.open(media.getValue());
+        }
+        return new ByteArrayInputStream(media.getValue());
+    }
+    
     @Override
     public ObservationQuery newQuery()
     {
@@ -326,30 +560,429 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
     @Override
     protected void deleteCleanup()
     {
+        // a commit storing blobs holds the blob read lock, it runs the cleanup itself once the lock is released
+        if (m_BlobLock.getReadHoldCount() == 0)
+        {
+            deleteOrphans();
+        }
+    }
+    
+    @Override
+    protected void beforeChange(final Collection<?> keys) throws PersistenceFailedException
+    {
+        try
+        {
+            createBlobReferenceIndex();
+            
+            // observations without a UUID cannot have been stored
+            for (List<?> chunk : Iterables.partition(Iterables.filter(keys, Predicates.notNull()), 
+                    getRemoveChunkSize()))
+            {
+                final String uuids = "'" + Joiner.on("', '").join(chunk) + "'";
+                final Set<Long> mediaIds = queryIds(String.format(MEDIA_OF_OBSERVATIONS, uuids));
+                final Set<ByteBuffer> blobReferences = mediaIds.isEmpty() ? Collections.<ByteBuffer>emptySet() 
+                        : queryBlobReferences(String.format(BLOB_REFERENCES_OF_MEDIA, Joiner.on(", ").join(mediaIds)));
+                m_OrphanCandidates.add(queryIds(String.format(COORDINATES_OF_OBSERVATIONS, uuids)), 
+                        queryIds(String.format(ORIENTATIONS_OF_OBSERVATIONS, uuids)), mediaIds, blobReferences);
+            }
+        }
+        catch (final SQLException ex)
+        {
+            throw new PersistenceFailedException("Unable to find the data referenced by the observations", ex);
+        }
+    }
+    
+    @Override
+    protected Object getKey(final Observation observation)
+    {
+        return observation.getUuid();
+    }
+    
+    /**
+     * Commit a batch of observations from the writer, storing large digital media outside of the database if enabled.
+     * 
+     * @param observations
+     *      observations to commit
+     * @return
+     *      persisted observations
+     */
+    private Collection<Observation> persistBatch(final List<Observation> observations)
+    {
+        commitWithBlobs(observations, toCommit -> makePersistentAll(toCommit));
+        
+        // callers get back their own observations, now detached, with the media values they had before the commit
+        return observations;
+    }
+    
+    /**
+     * Run the given commit with large digital media stored in the blob store and only a reference committed to the 
+     * database. The value of each large digital media of the given observations is replaced by the reference right 
+     * before the commit, as the value is written when the observation is made persistent, and set back once the 
+     * commit is done. New observations are therefore committed as is and detached like any other persisted 
+     * observation, so a later merge of the same instance updates the stored observation. The attached copies made for 
+     * detached observations get the reference the same way.
+     * 
+     * @param <T>
+     *      result of the commit
+     * @param observations
+     *      observations being committed
+     * @param commit
+     *      commits the given observations to the database
+     * @return
+     *      result of the commit
+     * @throws PersistenceFailedException
+     *      if unable to store the digital media or the commit fails
+     */
+    private <T> T commitWithBlobs(final Collection<Observation> observations, 
+            final Function<Collection<Observation>, T> commit) throws PersistenceFailedException
+    {
+        if (!m_BlobStoreEnabled)
+        {
+            return commit.apply(observations);
+        }
+        
+        final int minSize = m_BlobStoreMinSize;
+        final Map<DigitalMedia, byte[]> originalValues = new IdentityHashMap<>();
+        boolean committed = false;
+        final T result;
+        m_BlobLock.readLock().lock();
+        try
+        {
+            for (Observation observation : observations)
+            {
+                for (DigitalMedia media : getDigitalMedia(observation))
+                {
+                    final byte[] value = media.getValue();
+                    if (!originalValues.containsKey(media) && isBlobCandidate(value, minSize))
+                    {
+                        originalValues.put(media, value);
+                        media.setValue(m_BlobStore.store(value));
+                    }
+                }
+            }
+            
+            result = commit.apply(observations);
+            committed = true;
+        }
+        catch (final IOException e)
+        {
+            throw new PersistenceFailedException("Unable to store digital media", e);
+        }
+        finally
+        {
+            // the caller's instances are detached if committed, transient again if not, either way they get their 
+            // values back
+            final Set<ByteBuffer> uncommittedReferences = new HashSet<>();
+            for (Map.Entry<DigitalMedia, byte[]> entry : originalValues.entrySet())
+            {
+                if (!committed)
+                {
+                    uncommittedReferences.add(ByteBuffer.wrap(entry.getKey().getValue()));
+                }
+                entry.getKey().setValue(entry.getValue());
+            }
+            // blobs stored for a failed commit are not referenced, unless they were already stored before
+            m_OrphanCandidates.add(Collections.<Long>emptySet(), Collections.<Long>emptySet(), 
+                    Collections.<Long>emptySet(), uncommittedReferences);
+            m_BlobLock.readLock().unlock();
+        }
+        
+        deleteOrphans();
+        return result;
+    }
+    
+    /**
+     * Check whether the given digital media value should be stored in the blob store.
+     * 
+     * @param value
+     *      digital media value
+     * @param minSize
+     *      minimum size of digital media to store in the blob store
+     * @return
+     *      true if the value is large enough and not already a reference
+     */
+    private static boolean isBlobCandidate(final byte[] value, final int minSize)
+    {
+        return value != null && value.length >= minSize && !DigitalMediaBlobStore.isReference(value);
+    }
+    
+    /**
+     * Delete the rows and blobs found by {@link #beforeChange(Collection)}, or left by a failed commit, that are no 
+     * longer referenced. Only those rows and blobs are checked, using the indexes of the referencing columns, so the 
+     * cost depends on the number of observations changed and not on the size of the store.
+     */
+    private void deleteOrphans()
+    {
+        final OrphanCandidates candidates = m_OrphanCandidates.drain();
+        if (candidates.isEmpty())
+        {
+            return;
+        }
+        
         try
         {
             // Manually cleanup media, coordinate and orientation entries from the database where Datanucleus cannot
             // automatically handle when entries are shared/duplicated between different fields
-            executeSql(
-                    "DELETE FROM COORDINATES WHERE "
-                        + "NOT EXISTS(SELECT NULL FROM OBSERVATION_ASSETLOCATION a WHERE a.ID_ID=ID) "
-                        + "AND NOT EXISTS(SELECT NULL FROM OBSERVATION_POINTINGLOCATION p WHERE p.ID_ID=ID) "
-                        + "AND NOT EXISTS(SELECT NULL FROM DETECTION_TARGETLOCATION d WHERE d.ID_ID=ID)",
-                    null);
-            executeSql(
-                    "DELETE FROM ORIENTATION WHERE "
-                        + "NOT EXISTS(SELECT NULL FROM OBSERVATION_ASSETORIENTATION a WHERE a.ID_ID=ID) "
-                        + "AND NOT EXISTS(SELECT NULL FROM OBSERVATION_PLATFORMORIENTATION p WHERE p.ID_ID=ID)",
+            deleteOrphans("COORDINATES", candidates.getCoordinateIds(),
+                    "LEFT JOIN OBSERVATION_ASSETLOCATION a ON a.ID_ID = c.ID "
+                        + "LEFT JOIN OBSERVATION_POINTINGLOCATION p ON p.ID_ID = c.ID "
+                        + "LEFT JOIN DETECTION_TARGETLOCATION d ON d.ID_ID = c.ID",
+                    "a.ID_ID IS NULL AND p.ID_ID IS NULL AND d.ID_ID IS NULL");
+            deleteOrphans("ORIENTATION", candidates.getOrientationIds(),
+                    "LEFT JOIN OBSERVATION_ASSETORIENTATION a ON a.ID_ID = c.ID "
+                        + "LEFT JOIN OBSERVATION_PLATFORMORIENTATION p ON p.ID_ID = c.ID",
+                    "a.ID_ID IS NULL AND p.ID_ID IS NULL");
+            deleteOrphans("DIGITALMEDIA", candidates.getMediaIds(),
+                    "LEFT JOIN OBSERVATION_DIGITALMEDIA d ON d.ID_ID = c.ID "
+                        + "LEFT JOIN IMAGEMETADATA_MASKSAMPLESOFINTEREST m ON m.ID_EID = c.ID",
+                    "d.ID_ID IS NULL AND m.ID_EID IS NULL");
+            deleteUnreferencedBlobs(candidates.getBlobReferences());
+        }
+        catch (final SQLException | IOException ex)
+        {
+            // check them again after the next change
+            m_OrphanCandidates.add(candidates.getCoordinateIds(), candidates.getOrientationIds(), 
+                    candidates.getMediaIds(), candidates.getBlobReferences());
+            throw new PersistenceFailedException("Observation delete cleanup failed", ex);
+        }
+    }
+    
+    /**
+     * Delete the blobs of the given references that are no longer referenced by any digital media in the database. 
+     * References are looked up using the index on the blob reference column of the digital media table.
+     * 
+     * @param references
+     *      references to the blobs that may no longer be referenced
+     * @throws SQLException
+     *      if unable to query the referenced blobs
+     * @throws IOException
+     *      if unable to delete a blob
+     */
+    private void deleteUnreferencedBlobs(final Set<ByteBuffer> references) throws SQLException, IOException
+    {
+        if (references.isEmpty())
+        {
+            return;
+        }
+        
+        createBlobReferenceIndex();
+        
+        // no reference can be committed while held, so a blob is never deleted right before it is referenced again
+        m_BlobLock.writeLock().lock();
+        try
+        {
+            int deleted = 0;
+            for (List<ByteBuffer> chunk : Iterables.partition(references, getRemoveChunkSize()))
+            {
+                final List<String> literals = new ArrayList<>(chunk.size());
+                for (ByteBuffer reference : chunk)
+                {
+                    literals.add("X'" + DigitalMediaBlobStore.toHex(reference.array()) + "'");
+                }
+                final Set<ByteBuffer> referenced = queryBlobReferences(String.format(
+                        "SELECT BLOBREFERENCE FROM DIGITALMEDIA WHERE BLOBREFERENCE IN (%s)", 
+                        Joiner.on(", ").join(literals)));
+                for (ByteBuffer reference : chunk)
+                {
+                    if (!referenced.contains(reference) 
+                            && m_BlobStore.delete(DigitalMediaBlobStore.getHash(reference.array())))
+                    {
+                        deleted++;
+                    }
+                }
+            }
+            Logging.log(LogService.LOG_DEBUG, "Deleted %d unreferenced digital media blobs", deleted);
+        }
+        finally
+        {
+            m_BlobLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Get all digital media of the given observation.
+     * 
+     * @param observation
+     *      observation to check
+     * @return
+     *      media of the observation including image masks
+     */
+    private static List<DigitalMedia> getDigitalMedia(final Observation observation)
+    {
+        final List<DigitalMedia> media = new ArrayList<>();
+        if (observation.isSetDigitalMedia())
+        {
+            media.add(observation.getDigitalMedia());
+        }
+        if (observation.isSetImageMetadata() && observation.getImageMetadata().isSetMaskSamplesOfInterest())
+        {
+            media.addAll(observation.getImageMetadata().getMaskSamplesOfInterest());
+        }
+        return media;
+    }
+    
+    /**
+     * Delete the rows of the given child table with one of the given IDs that are no longer referenced. The IDs are 
+     * deleted {@link #getRemoveChunkSize()} at a time, so the data store lock is released between chunks. References 
+     * are checked by joining on the referencing columns, which are indexed as foreign keys.
+     * 
+     * @param table
+     *      child table to cleanup, aliased as "c" in the joins and condition
+     * @param ids
+     *      IDs of the rows that may no longer be referenced
+     * @param joins
+     *      left joins of the tables that reference the child table
+     * @param unreferencedCondition
+     *      condition that is true if none of the joined tables reference the row
+     * @throws SQLException
+     *      if unable to execute one of the statements
+     */
+    private void deleteOrphans(final String table, final Set<Long> ids, final String joins, 
+            final String unreferencedCondition) throws SQLException
+    {
+        for (List<Long> chunk : Iterables.partition(ids, getRemoveChunkSize()))
+        {
+            executeSql(String.format("DELETE FROM %s WHERE ID IN (SELECT c.ID FROM %s c %s WHERE c.ID IN (%s) AND %s)", 
+                    table, table, joins, Joiner.on(", ").join(chunk), unreferencedCondition), null);
+        }
+    }
+    
+    /**
+     * Query the IDs returned as the first column by the given statement.
+     * 
+     * @param statementText
+     *      SQL query
+     * @return
+     *      IDs returned by the query
+     * @throws SQLException
+     *      if unable to execute the query
+     */
+    private Set<Long> queryIds(final String statementText) throws SQLException
+    {
+        return executeSql(statementText, new ResultHandler<Set<Long>>()
+        {
+            @Override
+            public Set<Long> statementExecuted(final boolean result, final Statement statement) throws SQLException
+            {
+                final Set<Long> ids = new HashSet<>();
+                try (ResultSet resultSet = statement.getResultSet())
+                {
+                    while (resultSet != null && resultSet.next())
+                    {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+    
+    /**
+     * Query the blob references returned as the first column by the given statement.
+     * 
+     * @param statementText
+     *      SQL query
+     * @return
+     *      blob references returned by the query
+     * @throws SQLException
+     *      if unable to execute the query
+     */
+    private Set<ByteBuffer> queryBlobReferences(final String statementText) throws SQLException
+    {
+        return executeSql(statementText, new ResultHandler<Set<ByteBuffer>>()
+        {
+            @Override
+            public Set<ByteBuffer> statementExecuted(final boolean result, final Statement statement)
+                    throws SQLException
+            {
+                final Set<ByteBuffer> references = new HashSet<>();
+                try (ResultSet resultSet = statement.getResultSet())
+                {
+                    while (resultSet != null && resultSet.next())
+                    {
+                        final byte[] value = resultSet.getBytes(1);
+                        if (DigitalMediaBlobStore.isReference(value))
+                        {
+                            references.add(ByteBuffer.wrap(value));
+                        }
+                    }
+                }
+                return references;
+            }
+        });
+    }
+    
+    /**
+     * Add the indexed blob reference column to the digital media table if missing. The column is computed by the 
+     * database from the value of the media, it holds the value if it is the size of a blob reference and is null 
+     * otherwise, so the index only contains the references. It is not known by the JDO metadata, so it is added here 
+     * once the table exists.
+     * 
+     * @throws SQLException
+     *      if unable to add the column or index
+     */
+    private void createBlobReferenceIndex() throws SQLException
+    {
+        if (m_BlobReferenceIndexed)
+        {
+            return;
+        }
+        
+        executeSql(String.format("ALTER TABLE DIGITALMEDIA ADD COLUMN IF NOT EXISTS BLOBREFERENCE VARBINARY(%1$d) "
+                + "AS CASEWHEN(LENGTH(VALUE) = %1$d, VALUE, NULL)", DigitalMediaBlobStore.REFERENCE_LENGTH), null);
+        executeSql("CREATE INDEX IF NOT EXISTS BLOBREFERENCE_INDEX ON DIGITALMEDIA(BLOBREFERENCE)", null);
+        m_BlobReferenceIndexed = true;
+    }
+
+    /**
+     * Create the composite indexes used by observation queries if missing. The indexes are declared in the JDO 
+     * metadata, but that is only applied when the table is created, so existing databases need them added here.
+     */
+    private void createCompositeIndexes()
+    {
+        try
+        {
+            executeSql("CREATE INDEX IF NOT EXISTS ASSETUUID_CREATED_INDEX ON OBSERVATION(ASSETUUID, CREATEDTIMESTAMP)",
                     null);
-            executeSql(
-                    "DELETE FROM DIGITALMEDIA WHERE "
-                        + "NOT EXISTS(SELECT NULL FROM OBSERVATION_DIGITALMEDIA d WHERE d.ID_ID=ID) "
-                        + "AND NOT EXISTS(SELECT NULL FROM IMAGEMETADATA_MASKSAMPLESOFINTEREST m WHERE m.ID_EID=ID)",
+            executeSql("CREATE INDEX IF NOT EXISTS ASSETTYPE_OBSERVED_INDEX "
+                    + "ON OBSERVATION(ASSETTYPE, OBSERVEDTIMESTAMP)", null);
+            executeSql("CREATE INDEX IF NOT EXISTS SYSTEMID_CREATED_INDEX ON OBSERVATION(SYSTEMID, CREATEDTIMESTAMP)",
                     null);
         }
         catch (final SQLException ex)
         {
-            throw new PersistenceFailedException("Observation delete cleanup failed", ex);
+            // table is created when the store is activated, queries still work without the indexes, only slower
+            Logging.log(LogService.LOG_WARNING, "Unable to create composite observation indexes: %s", 
+                    ex.getMessage());
+        }
+    }
+
+    /**
+     * Block until the observation associated with the given future has been committed.
+     * 
+     * @param future
+     *            future returned by the batch writer
+     * @throws PersistenceFailedException
+     *            if the observation failed to be committed or the thread was interrupted while waiting
+     */
+    private void waitForCommit(final CompletableFuture<Observation> future) throws PersistenceFailedException
+    {
+        try
+        {
+            future.get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new PersistenceFailedException("Interrupted waiting for observation to be persisted", e);
+        }
+        catch (final ExecutionException e)
+        {
+            if (e.getCause() instanceof PersistenceFailedException)
+            {
+                throw (PersistenceFailedException)e.getCause();
+            }
+            throw new PersistenceFailedException("Persist failed.", e.getCause());
         }
     }
 
@@ -501,4 +1134,125 @@ public class ObservationStoreImpl extends AbstractH2DataStore<Observation> imple
         //create a new version object
         return new Version(m_Version.getMajorNumber(), m_Version.getMinorNumber());
     }
+    
+    /**
+     * Rows and blobs that may no longer be referenced, collected by {@link #beforeChange(Collection)} and by failed 
+     * commits until the next cleanup. Accessed by the threads changing the store and the thread running the cleanup.
+     */
+    private static final class OrphanCandidates
+    {
+        /**
+         * IDs of coordinates rows.
+         */
+        private Set<Long> m_CoordinateIds = new HashSet<>();
+        
+        /**
+         * IDs of orientation rows.
+         */
+        private Set<Long> m_OrientationIds = new HashSet<>();
+        
+        /**
+         * IDs of digital media rows.
+         */
+        private Set<Long> m_MediaIds = new HashSet<>();
+        
+        /**
+         * References to blobs in the blob store.
+         */
+        private Set<ByteBuffer> m_BlobReferences = new HashSet<>();
+        
+        /**
+         * Add candidates to check during the next cleanup.
+         * 
+         * @param coordinateIds
+         *      IDs of coordinates rows
+         * @param orientationIds
+         *      IDs of orientation rows
+         * @param mediaIds
+         *      IDs of digital media rows
+         * @param blobReferences
+         *      references to blobs
+         */
+        synchronized void add(final Set<Long> coordinateIds, final Set<Long> orientationIds, 
+                final Set<Long> mediaIds, final Set<ByteBuffer> blobReferences)
+        {
+            m_CoordinateIds.addAll(coordinateIds);
+            m_OrientationIds.addAll(orientationIds);
+            m_MediaIds.addAll(mediaIds);
+            m_BlobReferences.addAll(blobReferences);
+        }
+        
+        /**
+         * Take all candidates added so far, leaving none.
+         * 
+         * @return
+         *      the candidates added since the last time this method was called
+         */
+        synchronized OrphanCandidates drain()
+        {
+            final OrphanCandidates candidates = new OrphanCandidates();
+            candidates.add(m_CoordinateIds, m_OrientationIds, m_MediaIds, m_BlobReferences);
+            m_CoordinateIds = new HashSet<>();
+            m_OrientationIds = new HashSet<>();
+            m_MediaIds = new HashSet<>();
+            m_BlobReferences = new HashSet<>();
+            return candidates;
+        }
+        
+        /**
+         * Whether there are no candidates.
+         * 
+         * @return
+         *      true if nothing was added
+         */
+        synchronized boolean isEmpty()
+        {
+            return m_CoordinateIds.isEmpty() && m_OrientationIds.isEmpty() && m_MediaIds.isEmpty() 
+                    && m_BlobReferences.isEmpty();
+        }
+        
+        /**
+         * Get the IDs of the coordinates rows.
+         * 
+         * @return
+         *      set of IDs
+         */
+        synchronized Set<Long> getCoordinateIds()
+        {
+            return m_CoordinateIds;
+        }
+        
+        /**
+         * Get the IDs of the orientation rows.
+         * 
+         * @return
+         *      set of IDs
+         */
+        synchronized Set<Long> getOrientationIds()
+        {
+            return m_OrientationIds;
+        }
+        
+        /**
+         * Get the IDs of the digital media rows.
+         * 
+         * @return
+         *      set of IDs
+         */
+        synchronized Set<Long> getMediaIds()
+        {
+            return m_MediaIds;
+        }
+        
+        /**
+         * Get the references to blobs.
+         * 
+         * @return
+         *      set of references
+         */
+        synchronized Set<ByteBuffer> getBlobReferences()
+        {
+            return m_BlobReferences;
+        }
+    }
 }
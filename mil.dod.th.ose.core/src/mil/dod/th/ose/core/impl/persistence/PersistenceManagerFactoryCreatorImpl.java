@@ -112,6 +112,10 @@ public class PersistenceManagerFactoryCreatorImpl implements PersistenceManagerF
         m_BaseProperties.put(PropertyNames.PROPERTY_CLASSLOADER_RESOLVER_NAME, "datanucleus");
         m_BaseProperties.put(PropertyNames.PROPERTY_STORE_MANAGER_TYPE, "rdbms");
         m_BaseProperties.put(PropertyNames.PROPERTY_PLUGIN_REGISTRY_CLASSNAME, OSGiPluginRegistry.class.getName());
+        // stores use parameterized filters, so each filter is only compiled to SQL once and then reused from the cache
+        m_BaseProperties.put(PropertyNames.PROPERTY_QUERY_COMPILATION_CACHED, Boolean.TRUE.toString());
+        m_BaseProperties.put(PropertyNames.PROPERTY_CACHE_QUERYCOMPILE_TYPE, "soft");
+        m_BaseProperties.put(PropertyNames.PROPERTY_CACHE_QUERYCOMPILEDATASTORE_TYPE, "soft");
     }
 
     @Override
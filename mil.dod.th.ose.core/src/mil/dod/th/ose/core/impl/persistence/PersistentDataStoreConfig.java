@@ -0,0 +1,37 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import aQute.bnd.annotation.metatype.Meta.AD;
+
+/**
+ * Configuration interface for the {@link mil.dod.th.core.persistence.PersistentDataStore} implementation.
+ */
+public interface PersistentDataStoreConfig extends H2DataStoreConfig
+{
+    /**
+     * Key to use for the id of the {@link #readCacheSize()}.
+     */
+    String READ_CACHE_SIZE_KEY = "read.cache.size";
+    
+    /**
+     * Property for the number of context and description query results to keep cached.
+     * 
+     * @return
+     *      current configuration value for the property, default if not configured yet
+     */
+    @AD(id = READ_CACHE_SIZE_KEY, required = false, deflt = "256", min = "0", 
+            description = "Number of results of queries by context and description to keep cached until the store "
+                    + "changes, 0 to disable the cache")
+    int readCacheSize();
+}
@@ -13,11 +13,18 @@
 package mil.dod.th.ose.core.impl.persistence;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import aQute.bnd.annotation.component.Activate;
@@ -26,25 +33,33 @@ import aQute.bnd.annotation.component.ConfigurationPolicy;
 import aQute.bnd.annotation.component.Deactivate;
 import aQute.bnd.annotation.component.Modified;
 import aQute.bnd.annotation.component.Reference;
+import aQute.bnd.annotation.metatype.Configurable;
 
+import javax.jdo.Query;
+
+import mil.dod.th.core.log.Logging;
 import mil.dod.th.core.persistence.PersistenceFailedException;
 import mil.dod.th.core.persistence.PersistentData;
 import mil.dod.th.core.persistence.PersistentDataStore;
 import mil.dod.th.core.pm.PowerManager;
+import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.EncodedEntity;
 import mil.dod.th.ose.shared.H2DataStore;
 import mil.dod.th.ose.shared.JdoDataStore;
+import mil.dod.th.ose.shared.PersistentEntityCodec;
 import mil.dod.th.ose.shared.SystemConfigurationConstants;
 import mil.dod.th.ose.utils.FileUtils;
 
 import org.osgi.framework.BundleContext;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.log.LogService;
 
 /**
  * Implementation of the {@link PersistentDataStore}.
  * 
  * @author jconn
  */
-@Component(designate = H2DataStoreConfig.class, configurationPolicy = ConfigurationPolicy.optional,
+@Component(designate = PersistentDataStoreConfig.class, configurationPolicy = ConfigurationPolicy.optional,
     provide = { PersistentDataStore.class, H2DataStore.class, JdoDataStore.class }, 
     properties = JdoDataStore.PROP_KEY_DATASTORE_TYPE + "=" + JdoDataStore.PROP_PERSISTENT_STORE)
 public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData> implements PersistentDataStore
@@ -64,20 +79,87 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     /** Name of the default date/time field used by entries in the data store. */
     private static final String TIME_FIELD_NAME = "timestamp";
 
+    /** Name of the context query parameter. */
+    private static final String CONTEXT_PARAM = "context";
+    
+    /** Name of the description query parameter. */
+    private static final String DESCRIPTION_PARAM = "description";
+    
+    /** Name of the start time query parameter. */
+    private static final String START_TIME_PARAM = "startTime";
+    
+    /** Name of the stop time query parameter. */
+    private static final String STOP_TIME_PARAM = "stopTime";
+    
     /** Query by Description Filter. */
-    private static final String DESCRIPTION_FILTER = "description == '%s'";
+    private static final String DESCRIPTION_FILTER = "description == :" + DESCRIPTION_PARAM;
 
     /** Query by Context Filter. */
-    private static final String CONTEXT_FILTER = "context == '%s'";
+    private static final String CONTEXT_FILTER = "context == :" + CONTEXT_PARAM;
+    
+    /** Query by Time Filter. */
+    private static final String TIME_PARAM_FILTER = TIME_FIELD_NAME + " >= :" + START_TIME_PARAM + AND 
+            + TIME_FIELD_NAME + " <= :" + STOP_TIME_PARAM;
     
     /** Query by Context and Time Filter. */
-    private static final String CONTEXT_TIME_FILTER = CONTEXT_FILTER + AND + TIME_FILTER;
+    private static final String CONTEXT_TIME_FILTER = CONTEXT_FILTER + AND + TIME_PARAM_FILTER;
     
     /** Query by Context and Description Filter. */
     private static final String CONTEXT_DESCRIPTION_FILTER = CONTEXT_FILTER + AND + DESCRIPTION_FILTER;
     
     /** Query by Context and Description and Time Filter. */
-    private static final String CONTEXT_DESCRIPTION_TIME_FILTER = CONTEXT_DESCRIPTION_FILTER + AND + TIME_FILTER;
+    private static final String CONTEXT_DESCRIPTION_TIME_FILTER = CONTEXT_DESCRIPTION_FILTER + AND + TIME_PARAM_FILTER;
+    
+    /**
+     * Types of entities that cannot be changed once created, data with these entities can be cached as is.
+     */
+    private static final Set<Class<?>> IMMUTABLE_ENTITY_TYPES = new HashSet<>(Arrays.<Class<?>>asList(String.class, 
+            Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class, 
+            Double.class, UUID.class, EncodedEntity.class));
+    
+    /**
+     * Snapshots of the results of queries by context and description, keyed by the context name and description, in 
+     * least recently used order. Each query answered from the cache gets new {@link PersistentData} instances so 
+     * changes made by one caller are never seen by another. Cleared whenever the store changes. Access must be 
+     * synchronized on the map.
+     */
+    private final Map<List<String>, List<CachedData>> m_ReadCache = 
+            new LinkedHashMap<List<String>, List<CachedData>>(16, 0.75f, true) // NOCHECKSTYLE: defaults
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<List<String>, List<CachedData>> eldest)
+                {
+                    return size() > m_ReadCacheSize;
+                }
+            };
+    
+    /**
+     * Incremented each time the store changes, used to avoid caching results of a query that ran while the store was 
+     * changing. Guarded by {@link #m_ReadCache}.
+     */
+    private long m_ReadCacheGeneration;
+    
+    /**
+     * Max number of query results to keep in {@link #m_ReadCache}.
+     */
+    private volatile int m_ReadCacheSize;
+    
+    /**
+     * Number of queries answered from {@link #m_ReadCache}.
+     */
+    private long m_ReadCacheHits;
+    
+    /**
+     * Number of queries that were not in {@link #m_ReadCache}.
+     */
+    private long m_ReadCacheMisses;
+    
+    /**
+     * Codecs used to store entities in a compact form instead of using Java serialization.
+     */
+    private final EntityCodecRegistry m_EntityCodecs = new EntityCodecRegistry();
     
     /**
      * Constructor.
@@ -108,6 +190,8 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
 
         final String dataDir = context.getProperty(SystemConfigurationConstants.DATA_DIR_PROPERTY);
         activateStore(String.format("jdbc:h2:file:%s", dataDir + "/" + DATABASE_FILE_BASE), combindedProps);
+        
+        updateReadCacheSize(props);
     }
 
     /**
@@ -116,7 +200,14 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     @Deactivate
     public void deactivate()
     {
+        synchronized (m_ReadCache)
+        {
+            Logging.log(LogService.LOG_DEBUG, "Persistent data store read cache had %d hits and %d misses", 
+                    m_ReadCacheHits, m_ReadCacheMisses);
+        }
+        
         deactivateStore();
+        dataChanged();
     }
     
     /**
@@ -129,6 +220,7 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     public void modified(final Map<String, Object> props)
     {
         updateProps(props);
+        updateReadCacheSize(props);
     }
 
     @Reference
@@ -145,12 +237,45 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         super.setPowerManager(powerManager);
     }
 
+    @Reference(optional = true)
+    @Override
+    public void setPowerManagerInternal(final PowerManagerInternal powerManagerInternal)
+    {
+        super.setPowerManagerInternal(powerManagerInternal);
+    }
+
     @Reference
     @Override
     public void setPersistenceManagerFactoryCreator(final PersistenceManagerFactoryCreator pmFactoryCreator)
     {
         super.setPersistenceManagerFactoryCreator(pmFactoryCreator);
     }
+    
+    /**
+     * Bind a codec used to encode entities of a specific type.
+     * 
+     * @param codec
+     *      codec to add
+     */
+    @Reference(multiple = true, optional = true, dynamic = true)
+    public void addEntityCodec(final PersistentEntityCodec<?> codec)
+    {
+        m_EntityCodecs.add(codec);
+        
+        // cached results may contain entities that could not be decoded without the codec
+        dataChanged();
+    }
+    
+    /**
+     * Unbind a codec used to encode entities of a specific type.
+     * 
+     * @param codec
+     *      codec to remove
+     */
+    public void removeEntityCodec(final PersistentEntityCodec<?> codec)
+    {
+        m_EntityCodecs.remove(codec);
+    }
 
     @Override
     public PersistentData persist(final Class<?> context,
@@ -165,7 +290,8 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         validateArgumentEntity(entity);
 
         final PersistentData pData =
-            super.makePersistent(new PersistentData(uuid, description, context.getName(), entity));
+            super.makePersistent(new PersistentData(uuid, description, context.getName(), encodeEntity(entity)));
+        pData.setEntity(entity);
 
         postEvent(TOPIC_DATA_PERSISTED, pData);
 
@@ -178,7 +304,21 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     {
         validateArgumentPersistentData(persistentData);
 
-        super.makePersistent(persistentData);
+        // the caller's data is never attached or changed, the stored copy is updated instead, so an entity is only 
+        // ever encoded in data owned by the store
+        final Serializable entity = persistentData.getEntity();
+        final Serializable storedEntity = entity == null ? null : encodeEntity(entity);
+        final String description = persistentData.getDescription();
+        final boolean updated = updateByUuid(persistentData.getUUID(), stored -> 
+        {
+            stored.setDescription(description);
+            stored.setEntity(storedEntity);
+        });
+        if (!updated)
+        {
+            super.makePersistent(new PersistentData(persistentData.getUUID(), description, 
+                    persistentData.getContext(), storedEntity, persistentData.getTimestamp()));
+        }
 
         postEvent(TOPIC_DATA_MERGED, persistentData);
     }
@@ -189,7 +329,7 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     {
         validateArgumentContext(context);
         
-        removeOnFilter(CONTEXT_FILTER, context.getName());
+        removeOnParameters(CONTEXT_FILTER, contextParams(context));
     }
 
     @Override
@@ -201,8 +341,7 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         validateArgumentContext(context);
         validateArgumentStartStopTimes(startTime, stopTime);
         
-        removeOnFilter(CONTEXT_TIME_FILTER,
-                context.getName(), TIME_FIELD_NAME, startTime.getTime(), TIME_FIELD_NAME, stopTime.getTime());
+        removeOnParameters(CONTEXT_TIME_FILTER, timeParams(contextParams(context), startTime, stopTime));
     }
 
     @Override
@@ -213,7 +352,7 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         validateArgumentContext(context);
         validateArgumentDescription(description);
 
-        removeOnFilter(CONTEXT_DESCRIPTION_FILTER, context.getName(), description);
+        removeOnParameters(CONTEXT_DESCRIPTION_FILTER, descriptionParams(context, description));
     }
 
     @Override
@@ -227,8 +366,8 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         validateArgumentDescription(description);
         validateArgumentStartStopTimes(startTime, stopTime);
         
-        removeOnFilter(CONTEXT_DESCRIPTION_TIME_FILTER, context.getName(), description, TIME_FIELD_NAME,
-                startTime.getTime(), TIME_FIELD_NAME, stopTime.getTime());
+        removeOnParameters(CONTEXT_DESCRIPTION_TIME_FILTER, 
+                timeParams(descriptionParams(context, description), startTime, stopTime));
     }
 
     @Override
@@ -237,7 +376,7 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     {
         validateArgumentContext(context);
         
-        return queryOnFilter(CONTEXT_FILTER, context.getName());
+        return queryOnParameters(CONTEXT_FILTER, contextParams(context));
     }
 
     @Override
@@ -248,7 +387,47 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         validateArgumentContext(context);
         validateArgumentDescription(description);
         
-        return queryOnFilter(CONTEXT_DESCRIPTION_FILTER, context.getName(), description);
+        final List<String> key = Arrays.asList(context.getName(), description);
+        final List<CachedData> cached;
+        final long generation;
+        synchronized (m_ReadCache)
+        {
+            cached = m_ReadCache.get(key);
+            if (cached == null)
+            {
+                m_ReadCacheMisses++;
+            }
+            else
+            {
+                m_ReadCacheHits++;
+            }
+            generation = m_ReadCacheGeneration;
+        }
+        
+        if (cached != null)
+        {
+            final List<PersistentData> results = new ArrayList<>(cached.size());
+            for (CachedData data : cached)
+            {
+                results.add(data.toPersistentData());
+            }
+            return decodeEntities(results);
+        }
+        
+        // entities are still in their stored form, so they can be cached before being decoded
+        final Collection<PersistentData> results = 
+                super.queryOnParameters(CONTEXT_DESCRIPTION_FILTER, descriptionParams(context, description));
+        final List<CachedData> snapshot = m_ReadCacheSize > 0 ? CachedData.snapshot(results) : null;
+        
+        synchronized (m_ReadCache)
+        {
+            // only cache if the store did not change while querying, results may already be out of date
+            if (snapshot != null && generation == m_ReadCacheGeneration)
+            {
+                m_ReadCache.put(key, snapshot);
+            }
+        }
+        return decodeEntities(results);
     }
 
     @Override
@@ -260,8 +439,7 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         validateArgumentContext(context);
         validateArgumentStartStopTimes(startTime, stopTime);
 
-        return queryOnFilter(CONTEXT_TIME_FILTER, context.getName(), TIME_FIELD_NAME, startTime.getTime(),
-                TIME_FIELD_NAME, stopTime.getTime());
+        return queryOnParameters(CONTEXT_TIME_FILTER, timeParams(contextParams(context), startTime, stopTime));
     }
 
     @Override
@@ -275,8 +453,20 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
         validateArgumentDescription(description);
         validateArgumentStartStopTimes(startTime, stopTime);
 
-        return queryOnFilter(CONTEXT_DESCRIPTION_TIME_FILTER, context.getName(), description, TIME_FIELD_NAME,
-                startTime.getTime(), TIME_FIELD_NAME, stopTime.getTime());
+        return queryOnParameters(CONTEXT_DESCRIPTION_TIME_FILTER, 
+                timeParams(descriptionParams(context, description), startTime, stopTime));
+    }
+
+    @Override
+    public Collection<PersistentData> executeJdoQuery(final Query query, final Map<String, ?> parameters)
+    {
+        return decodeEntities(super.executeJdoQuery(query, parameters));
+    }
+    
+    @Override
+    protected Collection<PersistentData> queryOnParameters(final String filterString, final Map<String, ?> parameters)
+    {
+        return decodeEntities(super.queryOnParameters(filterString, parameters));
     }
 
     @Override
@@ -284,6 +474,155 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     {
         // No cleanup required when deleting entries from the database
     }
+    
+    @Override
+    protected Object getKey(final PersistentData data)
+    {
+        return data.getUUID();
+    }
+    
+    @Override
+    protected void dataChanged()
+    {
+        synchronized (m_ReadCache)
+        {
+            m_ReadCacheGeneration++;
+            m_ReadCache.clear();
+        }
+    }
+    
+    /**
+     * Get the number of entries currently in the read cache.
+     * 
+     * @return
+     *      number of cached query results
+     */
+    int getReadCacheCount()
+    {
+        synchronized (m_ReadCache)
+        {
+            return m_ReadCache.size();
+        }
+    }
+    
+    /**
+     * Update the max size of the read cache from the component properties.
+     * 
+     * @param props
+     *      properties of the component
+     */
+    private void updateReadCacheSize(final Map<String, Object> props)
+    {
+        final PersistentDataStoreConfig config = 
+                Configurable.createConfigurable(PersistentDataStoreConfig.class, props);
+        m_ReadCacheSize = config.readCacheSize();
+        dataChanged();
+    }
+    
+    /**
+     * Create the query parameters for the given context.
+     * 
+     * @param context
+     *      context to query for
+     * @return
+     *      map of query parameters
+     */
+    private Map<String, Object> contextParams(final Class<?> context)
+    {
+        final Map<String, Object> params = new HashMap<>();
+        params.put(CONTEXT_PARAM, context.getName());
+        return params;
+    }
+    
+    /**
+     * Create the query parameters for the given context and description.
+     * 
+     * @param context
+     *      context to query for
+     * @param description
+     *      description to query for
+     * @return
+     *      map of query parameters
+     */
+    private Map<String, Object> descriptionParams(final Class<?> context, final String description)
+    {
+        final Map<String, Object> params = contextParams(context);
+        params.put(DESCRIPTION_PARAM, description);
+        return params;
+    }
+    
+    /**
+     * Add the time range query parameters to the given parameters.
+     * 
+     * @param params
+     *      parameters to add to
+     * @param startTime
+     *      start of the time range
+     * @param stopTime
+     *      end of the time range
+     * @return
+     *      the given map of query parameters
+     */
+    private Map<String, Object> timeParams(final Map<String, Object> params, final Date startTime, 
+            final Date stopTime)
+    {
+        params.put(START_TIME_PARAM, startTime.getTime());
+        params.put(STOP_TIME_PARAM, stopTime.getTime());
+        return params;
+    }
+
+    /**
+     * Encode the entity using the codec registered for its type, if any.
+     * 
+     * @param entity
+     *      entity to encode
+     * @return
+     *      the encoded entity or the given entity if there is no codec for it
+     * @throws PersistenceFailedException
+     *      if the codec fails to encode the entity
+     */
+    private Serializable encodeEntity(final Serializable entity) throws PersistenceFailedException
+    {
+        try
+        {
+            return m_EntityCodecs.encode(entity);
+        }
+        catch (final IOException e)
+        {
+            throw new PersistenceFailedException(
+                    String.format("Unable to encode entity of type %s", entity.getClass().getName()), e);
+        }
+    }
+    
+    /**
+     * Replace encoded entities of the detached results with the decoded entities. Entities that are not encoded or 
+     * that fail to decode are left as stored.
+     * 
+     * @param results
+     *      detached query results
+     * @return
+     *      the given results
+     */
+    private Collection<PersistentData> decodeEntities(final Collection<PersistentData> results)
+    {
+        for (PersistentData data : results)
+        {
+            final Serializable entity = data.getEntity();
+            if (EntityCodecRegistry.isEncoded(entity))
+            {
+                try
+                {
+                    data.setEntity(m_EntityCodecs.decode(entity));
+                }
+                catch (final IOException e)
+                {
+                    Logging.log(LogService.LOG_ERROR, e, "Unable to decode entity of persistent data [%s]", 
+                            data.getUUID());
+                }
+            }
+        }
+        return results;
+    }
 
     /**
      * Helper method to wrap base postEvent and create the properties from the persistentData.
@@ -364,4 +703,94 @@ public class PersistentDataStoreImpl extends AbstractH2DataStore<PersistentData>
     {
         return FileUtils.getPartition(new File(DATABASE_FILE_BASE)).getUsableSpace();
     }
+    
+    /**
+     * Immutable snapshot of stored data kept in the read cache.
+     */
+    private static final class CachedData
+    {
+        /**
+         * UUID of the data.
+         */
+        private final UUID m_Uuid;
+        
+        /**
+         * Description of the data.
+         */
+        private final String m_Description;
+        
+        /**
+         * Context of the data.
+         */
+        private final String m_Context;
+        
+        /**
+         * Entity in its stored form, either immutable or a byte array that is copied for each query.
+         */
+        private final Serializable m_Entity;
+        
+        /**
+         * Timestamp of the data.
+         */
+        private final long m_Timestamp;
+        
+        /**
+         * Create a snapshot of the given data.
+         * 
+         * @param data
+         *      data as returned by the store before entities are decoded
+         * @param entity
+         *      entity to keep, already copied if mutable
+         */
+        private CachedData(final PersistentData data, final Serializable entity)
+        {
+            m_Uuid = data.getUUID();
+            m_Description = data.getDescription();
+            m_Context = data.getContext();
+            m_Entity = entity;
+            m_Timestamp = data.getTimestamp();
+        }
+        
+        /**
+         * Create snapshots of the given query results.
+         * 
+         * @param results
+         *      data as returned by the store before entities are decoded
+         * @return
+         *      snapshots of the results or null if an entity could be changed by callers and so cannot be cached
+         */
+        static List<CachedData> snapshot(final Collection<PersistentData> results)
+        {
+            final List<CachedData> snapshot = new ArrayList<>(results.size());
+            for (PersistentData data : results)
+            {
+                final Serializable entity = data.getEntity();
+                if (entity instanceof byte[])
+                {
+                    snapshot.add(new CachedData(data, ((byte[])entity).clone()));
+                }
+                else if (entity == null || IMMUTABLE_ENTITY_TYPES.contains(entity.getClass()))
+                {
+                    snapshot.add(new CachedData(data, entity));
+                }
+                else
+                {
+                    return null;
+                }
+            }
+            return snapshot;
+        }
+        
+        /**
+         * Create new data from the snapshot, owned by the caller.
+         * 
+         * @return
+         *      data with the entity in its stored form
+         */
+        PersistentData toPersistentData()
+        {
+            final Serializable entity = m_Entity instanceof byte[] ? ((byte[])m_Entity).clone() : m_Entity;
+            return new PersistentData(m_Uuid, m_Description, m_Context, entity, m_Timestamp);
+        }
+    }
 }
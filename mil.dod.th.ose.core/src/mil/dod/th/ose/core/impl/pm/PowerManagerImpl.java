@@ -20,8 +20,12 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 
+import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
+import aQute.bnd.annotation.component.Deactivate;
 import aQute.bnd.annotation.component.Reference;
 
 import com.google.common.base.Preconditions;
@@ -35,7 +39,11 @@ import mil.dod.th.core.pm.PowerManager;
 import mil.dod.th.core.pm.WakeLock;
 import mil.dod.th.core.pm.WakeLockState;
 import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.core.pm.api.WakeLockActivationStats;
+import mil.dod.th.ose.shared.ScheduledExceptionLoggingThreadPool;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
 
+import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentFactory;
 import org.osgi.service.component.ComponentInstance;
 
@@ -45,6 +53,12 @@ import org.osgi.service.component.ComponentInstance;
 @Component
 public class PowerManagerImpl implements PowerManager, PowerManagerInternal
 {
+    /**
+     * Name of the OSGi framework property that sets how long, in milliseconds, registered counting wake locks stay 
+     * active after their last holder cancels. Disabled (0) by default.
+     */
+    public static final String WAKELOCK_HYSTERESIS_PROPERTY = "mil.dod.th.ose.core.pm.wakelock.hysteresis.ms";
+    
     /** Used to log messages. */
     private LoggingService m_Logging;
 
@@ -74,6 +88,32 @@ public class PowerManagerImpl implements PowerManager, PowerManagerInternal
     private final Map<WakeLockKey, Map<String, WakeLock>> m_WakeLockMap = 
             new HashMap<WakeLockKey, Map<String, WakeLock>>();
 
+    /**
+     * Registered counting wake locks by the lock they wrap.
+     */
+    private final Map<WakeLock, CountingWakeLock> m_CountingLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Activation counts of deleted counting wake locks by context, first element is the number of requests and the 
+     * second the number of platform activations.
+     */
+    private final Map<Class<?>, long[]> m_DeletedCounts = new HashMap<>();
+
+    /**
+     * Time the activation statistics started being collected.
+     */
+    private final long m_StatsStartTimeMs = System.currentTimeMillis();
+
+    /**
+     * Hysteresis window applied to registered counting wake locks in milliseconds.
+     */
+    private long m_HysteresisMs;
+
+    /**
+     * Cancels registered counting wake locks after the hysteresis window, null if the window is disabled.
+     */
+    private ScheduledExecutorService m_HysteresisScheduler;
+
     /**
      * Binds the logging service for logging messages.
      * 
@@ -117,6 +157,58 @@ public class PowerManagerImpl implements PowerManager, PowerManagerInternal
         }
     }
 
+    /**
+     * Activate the component and read the hysteresis window for counting wake locks.
+     * 
+     * @param bundleContext
+     *      context used to read the {@value #WAKELOCK_HYSTERESIS_PROPERTY} framework property
+     */
+    @Activate
+    public void activate(final BundleContext bundleContext)
+    {
+        final String hysteresisProp = bundleContext.getProperty(WAKELOCK_HYSTERESIS_PROPERTY);
+        if (hysteresisProp != null)
+        {
+            try
+            {
+                m_HysteresisMs = Math.max(0, Long.parseLong(hysteresisProp.trim()));
+            }
+            catch (final NumberFormatException e)
+            {
+                m_Logging.warning("Invalid value [%s] for %s, wake lock hysteresis disabled", hysteresisProp, 
+                        WAKELOCK_HYSTERESIS_PROPERTY);
+            }
+        }
+        
+        if (m_HysteresisMs > 0)
+        {
+            m_HysteresisScheduler = new ScheduledExceptionLoggingThreadPool(m_Logging, 1);
+            m_Logging.info("Counting wake locks stay active for %d ms after last use", m_HysteresisMs);
+        }
+    }
+
+    /**
+     * Deactivate the component, releases any wake locks waiting for the hysteresis window to expire.
+     */
+    @Deactivate
+    public void deactivate()
+    {
+        for (CountingWakeLock lock : m_CountingLocks.values())
+        {
+            lock.setHysteresis(0, null);
+        }
+        
+        if (m_HysteresisScheduler != null)
+        {
+            m_HysteresisScheduler.shutdownNow();
+        }
+        
+        for (WakeLockActivationStats stats : getActivationStats().values())
+        {
+            m_Logging.debug("WakeLock activations for %s", stats);
+        }
+    }
+
     /**
      * Bind the {@link WakeLock} component factory used to create new wake locks.
      * 
@@ -166,6 +258,14 @@ public class PowerManagerImpl implements PowerManager, PowerManagerInternal
     public synchronized void deleteWakeLock(final WakeLock lock) throws IllegalArgumentException
     {
         final ComponentInstance instance = m_InstanceMap.remove(lock);
+        
+        final CountingWakeLock countingLock = m_CountingLocks.remove(lock);
+        if (countingLock != null)
+        {
+            // don't leave a delayed cancel for the deleted lock, keep the counts for the statistics
+            countingLock.setHysteresis(0, null);
+            addCounts(m_DeletedCounts, lock.getContext(), countingLock);
+        }
 
         final WakeLockKey key;
         if (lock.getSourceObject() == null)
@@ -286,6 +386,63 @@ public class PowerManagerImpl implements PowerManager, PowerManagerInternal
         return Collections.unmodifiableSet(contexts);
     }
 
+    @Override
+    public void registerCountingWakeLock(final CountingWakeLock lock)
+    {
+        final WakeLock wakeLock = lock.getWakeLock();
+        Preconditions.checkNotNull(wakeLock);
+        
+        lock.setHysteresis(m_HysteresisMs, m_HysteresisScheduler);
+        m_CountingLocks.put(wakeLock, lock);
+    }
+
+    @Override
+    public synchronized Map<Class<?>, WakeLockActivationStats> getActivationStats()
+    {
+        final Map<Class<?>, long[]> counts = new HashMap<>();
+        for (Map.Entry<Class<?>, long[]> entry : m_DeletedCounts.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().clone());
+        }
+        for (Map.Entry<WakeLock, CountingWakeLock> entry : m_CountingLocks.entrySet())
+        {
+            addCounts(counts, entry.getKey().getContext(), entry.getValue());
+        }
+        
+        final long periodMs = System.currentTimeMillis() - m_StatsStartTimeMs;
+        final Map<Class<?>, WakeLockActivationStats> stats = new HashMap<>();
+        for (Map.Entry<Class<?>, long[]> entry : counts.entrySet())
+        {
+            stats.put(entry.getKey(), new WakeLockActivationStats(entry.getKey(), entry.getValue()[0], 
+                    entry.getValue()[1], periodMs));
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Add the activation counts of a counting wake lock to the counts of its context.
+     * 
+     * @param counts
+     *      counts by context, first element is the number of requests and the second the number of platform 
+     *      activations
+     * @param context
+     *      context of the wake lock
+     * @param lock
+     *      counting lock to add the counts of
+     */
+    private static void addCounts(final Map<Class<?>, long[]> counts, final Class<?> context, 
+            final CountingWakeLock lock)
+    {
+        long[] contextCounts = counts.get(context);
+        if (contextCounts == null)
+        {
+            contextCounts = new long[2];
+            counts.put(context, contextCounts);
+        }
+        contextCounts[0] += lock.getActivateCount();
+        contextCounts[1] += lock.getLockActivateCount();
+    }
+
     /**
      * Helper function used to create new wake locks.
      * 
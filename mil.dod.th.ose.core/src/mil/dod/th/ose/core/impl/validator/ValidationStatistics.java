@@ -0,0 +1,229 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.validator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram for validating a single class. Buckets are powers of 2 in microseconds, so bucket 0 counts 
+ * validations taking less than 1 microsecond, bucket 1 less than 2 microseconds and so on, with the last bucket 
+ * counting everything slower.
+ */
+class ValidationStatistics
+{
+    /**
+     * Number of buckets, the last bucket holds anything 2^(BUCKET_COUNT - 2) microseconds (about 1 second) or longer.
+     */
+    static final int BUCKET_COUNT = 22;
+    
+    /**
+     * Number of validations in each bucket.
+     */
+    private final AtomicLongArray m_Buckets = new AtomicLongArray(BUCKET_COUNT);
+    
+    /**
+     * Total number of validations performed.
+     */
+    private final AtomicLong m_Count = new AtomicLong();
+    
+    /**
+     * Total number of validations skipped because of sampling.
+     */
+    private final AtomicLong m_SkippedCount = new AtomicLong();
+    
+    /**
+     * Total time spent validating in nanoseconds.
+     */
+    private final AtomicLong m_TotalNanos = new AtomicLong();
+    
+    /**
+     * Longest time taken by a single validation in nanoseconds.
+     */
+    private final AtomicLong m_MaxNanos = new AtomicLong();
+    
+    /**
+     * Record the time taken by a validation.
+     * 
+     * @param nanos
+     *      time taken in nanoseconds
+     */
+    void record(final long nanos)
+    {
+        m_Buckets.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        m_Count.incrementAndGet();
+        m_TotalNanos.addAndGet(nanos);
+        m_MaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+    
+    /**
+     * Record that a validation was skipped.
+     */
+    void recordSkipped()
+    {
+        m_SkippedCount.incrementAndGet();
+    }
+    
+    /**
+     * Get the number of validations performed.
+     * 
+     * @return
+     *      number of validations
+     */
+    long getCount()
+    {
+        return m_Count.get();
+    }
+    
+    /**
+     * Get the number of validations skipped because of sampling.
+     * 
+     * @return
+     *      number of skipped validations
+     */
+    long getSkippedCount()
+    {
+        return m_SkippedCount.get();
+    }
+    
+    /**
+     * Get the average time taken by a validation.
+     * 
+     * @return
+     *      average latency in microseconds, 0 if nothing has been validated
+     */
+    double getAverageMicros()
+    {
+        final long count = m_Count.get();
+        return count == 0 ? 0 : m_TotalNanos.get() / 1000.0 / count;
+    }
+    
+    /**
+     * Get the longest time taken by a validation.
+     * 
+     * @return
+     *      maximum latency in microseconds
+     */
+    long getMaxMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(m_MaxNanos.get());
+    }
+    
+    /**
+     * Get the number of validations in each bucket.
+     * 
+     * @return
+     *      copy of the bucket counts
+     */
+    long[] getBuckets()
+    {
+        final long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            buckets[i] = m_Buckets.get(i);
+        }
+        return buckets;
+    }
+    
+    /**
+     * Get the upper bound of the bucket containing the given percentile.
+     * 
+     * @param percentile
+     *      percentile between 0 and 100
+     * @return
+     *      latency in microseconds that the given percent of validations completed within, 0 if nothing has been 
+     *      validated
+     */
+    long getPercentileMicros(final double percentile)
+    {
+        final long[] buckets = getBuckets();
+        long total = 0;
+        for (long bucket : buckets)
+        {
+            total += bucket;
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        
+        final long target = (long)Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++)
+        {
+            seen += buckets[i];
+            if (seen >= target)
+            {
+                return 1L << i;
+            }
+        }
+        return getMaxMicros();
+    }
+    
+    /**
+     * Format the non-empty buckets of the histogram.
+     * 
+     * @return
+     *      histogram in the form "&lt;1us=5 &lt;2us=10 ..."
+     */
+    String formatHistogram()
+    {
+        final long[] buckets = getBuckets();
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            if (buckets[i] == 0)
+            {
+                continue;
+            }
+            if (builder.length() > 0)
+            {
+                builder.append(' ');
+            }
+            if (i == BUCKET_COUNT - 1)
+            {
+                builder.append(">=").append(1L << (i - 1));
+            }
+            else
+            {
+                builder.append('<').append(1L << i);
+            }
+            builder.append("us=").append(buckets[i]);
+        }
+        return builder.toString();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("count=%d, skipped=%d, avg=%.1fus, p50<%dus, p99<%dus, max=%dus [%s]", getCount(), 
+                getSkippedCount(), getAverageMicros(), getPercentileMicros(50), getPercentileMicros(99), 
+                getMaxMicros(), formatHistogram());
+    }
+    
+    /**
+     * Get the bucket for the given latency.
+     * 
+     * @param micros
+     *      latency in microseconds
+     * @return
+     *      index of the bucket
+     */
+    private static int getBucket(final long micros)
+    {
+        // number of bits needed to represent the value, 0 for 0, 1 for 1, 2 for 2-3, 3 for 4-7...
+        final int bits = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(bits, BUCKET_COUNT - 1);
+    }
+}
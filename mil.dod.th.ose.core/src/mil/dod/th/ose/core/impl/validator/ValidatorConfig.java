@@ -0,0 +1,84 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.validator;
+
+import aQute.bnd.annotation.metatype.Meta.AD;
+
+/**
+ * Configuration interface for the {@link ValidatorImpl}.
+ */
+public interface ValidatorConfig
+{
+    /**
+     * Key to use for the id of the {@link #directValidationEnabled()}.
+     */
+    String DIRECT_VALIDATION_ENABLED_KEY = "direct.validation.enabled";
+    
+    /**
+     * Key to use for the id of the {@link #validatorPoolSize()}.
+     */
+    String VALIDATOR_POOL_SIZE_KEY = "validator.pool.size";
+    
+    /**
+     * Key to use for the id of the {@link #trustedAssetTypes()}.
+     */
+    String TRUSTED_ASSET_TYPES_KEY = "trusted.asset.types";
+    
+    /**
+     * Key to use for the id of the {@link #trustedSampleRate()}.
+     */
+    String TRUSTED_SAMPLE_RATE_KEY = "trusted.sample.rate";
+    
+    /**
+     * Whether objects are marshalled straight into a schema validator instead of going through a 
+     * {@link javax.xml.bind.util.JAXBSource}.
+     * 
+     * @return
+     *      true to validate the JAXB object graph directly
+     */
+    @AD(id = DIRECT_VALIDATION_ENABLED_KEY, required = false, deflt = "true",
+        description = "Validate objects by marshalling them directly to the schema validator instead of creating a "
+                + "JAXB source for each object")
+    boolean directValidationEnabled();
+    
+    /**
+     * Maximum number of idle validators kept for each schema so they can be reused by other threads.
+     * 
+     * @return
+     *      number of validators pooled per schema
+     */
+    @AD(id = VALIDATOR_POOL_SIZE_KEY, required = false, deflt = "4", min = "1",
+        description = "Maximum number of idle validators kept for each schema")
+    int validatorPoolSize();
+    
+    /**
+     * Product types of assets whose observations are trusted and only validated at the {@link #trustedSampleRate()}.
+     * 
+     * @return
+     *      asset product types (fully qualified class names)
+     */
+    @AD(id = TRUSTED_ASSET_TYPES_KEY, required = false, deflt = "",
+        description = "Product types of assets whose observations are trusted and only validated 1 in N times where "
+                + "N is the trusted sample rate")
+    String[] trustedAssetTypes();
+    
+    /**
+     * How often observations from trusted assets are validated, a rate of N validates 1 in N observations.
+     * 
+     * @return
+     *      sample rate for trusted assets, 1 validates every observation
+     */
+    @AD(id = TRUSTED_SAMPLE_RATE_KEY, required = false, deflt = "1", min = "1",
+        description = "Validate 1 in N observations from trusted assets, 1 to validate every observation")
+    int trustedSampleRate();
+}
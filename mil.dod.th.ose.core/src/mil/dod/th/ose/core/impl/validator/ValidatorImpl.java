@@ -14,11 +14,17 @@ package mil.dod.th.ose.core.impl.validator;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.MarshalException;
@@ -30,39 +36,58 @@ import javax.xml.validation.Validator;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
+import aQute.bnd.annotation.component.ConfigurationPolicy;
+import aQute.bnd.annotation.component.Deactivate;
+import aQute.bnd.annotation.component.Modified;
 import aQute.bnd.annotation.component.Reference;
+import aQute.bnd.annotation.metatype.Configurable;
 
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Preconditions;
 
 import mil.dod.th.core.asset.commands.Command;
 import mil.dod.th.core.asset.commands.Response;
+import mil.dod.th.core.log.Logging;
+import mil.dod.th.core.observation.types.Observation;
 import mil.dod.th.core.validator.ValidationFailedException;
 import mil.dod.th.core.xml.XmlMarshalService;
+import mil.dod.th.ose.core.impl.validator.ValidatorPool.DirectValidator;
 import mil.dod.th.ose.core.xml.JAXBContextFactory;
 import mil.dod.th.ose.core.xml.XsdResourceFinder;
 import mil.dod.th.ose.utils.xml.XmlService;
 
 import org.osgi.framework.BundleContext;
+import org.osgi.service.log.LogService;
 
 import org.xml.sax.SAXException;
 
 /**
- * Implementation of validator.
+ * Implementation of validator. Schemas are compiled once per class and validators are pooled so they can be used by
+ * multiple threads at once. By default, objects are marshalled straight into the validator. Observations from trusted
+ * assets can be sampled instead of validated every time.
  */
-@Component
+@Component(designate = ValidatorConfig.class, configurationPolicy = ConfigurationPolicy.optional)
 public class ValidatorImpl implements mil.dod.th.core.validator.Validator
 {
     /**
-     * Schema Factory.
+     * Schema Factory, not thread safe so only used while holding the lock of this component.
      */
     private SchemaFactory m_SchemaFactory;
     
     /**
-     * Map of Validators keyed by their respective classes.
+     * Map of validator pools keyed by their respective classes.
      */
-    private final Map<Class<?>, Validator> m_ClassValidators =
-            Collections.synchronizedMap(new HashMap<Class<?>, Validator>());
+    private final ConcurrentMap<Class<?>, ValidatorPool> m_ValidatorPools = new ConcurrentHashMap<>();
+    
+    /**
+     * Map of validation latency statistics keyed by the class being validated.
+     */
+    private final ConcurrentMap<Class<?>, ValidationStatistics> m_Statistics = new ConcurrentHashMap<>();
+    
+    /**
+     * Number of observations seen for each trusted asset type, used to sample which observations are validated.
+     */
+    private final ConcurrentMap<String, AtomicLong> m_TrustedCounters = new ConcurrentHashMap<>();
 
     /**
      * JAXB Context.
@@ -84,6 +109,25 @@ public class ValidatorImpl implements mil.dod.th.core.validator.Validator
      */
     private BundleContext m_Context;
     
+    /**
+     * Whether objects are marshalled directly into the validator.
+     */
+    private volatile boolean m_DirectValidationEnabled;
+    
+    /**
+     * Maximum number of idle validators pooled for each class, only applies to pools created after it is set.
+     */
+    private volatile int m_ValidatorPoolSize;
+    
+    /**
+     * Product types of assets whose observations are sampled.
+     */
+    private volatile Set<String> m_TrustedAssetTypes = Collections.emptySet();
+    
+    /**
+     * Validate 1 in this many observations from trusted assets.
+     */
+    private volatile int m_TrustedSampleRate;
 
     /**
      * Bind the service.
@@ -126,12 +170,40 @@ public class ValidatorImpl implements mil.dod.th.core.validator.Validator
      * 
      * @param context
      *      context of the bundle containing this component
+     * @param props
+     *      configuration properties of the component
      */
     @Activate
-    public void activate(final BundleContext context)
+    public void activate(final BundleContext context, final Map<String, Object> props)
     {
         m_Context = context;
         m_SchemaFactory = m_XmlService.createSchemaFactory(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        updateProps(props);
+    }
+    
+    /**
+     * Update the configuration of the component.
+     * 
+     * @param props
+     *      configuration properties of the component
+     */
+    @Modified
+    public void modified(final Map<String, Object> props)
+    {
+        updateProps(props);
+    }
+    
+    /**
+     * Deactivate the component, logs the validation latency of each class validated.
+     */
+    @Deactivate
+    public void deactivate()
+    {
+        for (Map.Entry<Class<?>, ValidationStatistics> entry : m_Statistics.entrySet())
+        {
+            Logging.log(LogService.LOG_INFO, "Validation latency for [%s]: %s", entry.getKey().getName(), 
+                    entry.getValue());
+        }
     }
     
     @Override
@@ -139,31 +211,120 @@ public class ValidatorImpl implements mil.dod.th.core.validator.Validator
     {
         Preconditions.checkNotNull(object);
         
-        final Source source = createSource(object);
-
+        final ValidationStatistics statistics = getStatistics(object.getClass());
+        if (isSkipped(object))
+        {
+            statistics.recordSkipped();
+            return;
+        }
+        
+        final long startTime = System.nanoTime();
         try
         {
-            validateSource(source, object);
+            final ValidatorPool pool = getValidatorPool(object.getClass());
+            if (m_DirectValidationEnabled)
+            {
+                validateDirect(pool, object);
+            }
+            else
+            {
+                validateSource(pool, createSource(object), object);
+            }
         }
         catch (final IllegalStateException e)
         {
             throw new ValidationFailedException(e);
         }
+        finally
+        {
+            statistics.record(System.nanoTime() - startTime);
+        }
     }
-
+    
     /**
-     * Creates a new JAXBSource from the object and the JAXBContext.
+     * Get the latency statistics for validating the given class.
+     * 
+     * @param clazz
+     *      class being validated
+     * @return
+     *      statistics for the class, never null
+     */
+    ValidationStatistics getStatistics(final Class<?> clazz)
+    {
+        final ValidationStatistics statistics = m_Statistics.get(clazz);
+        if (statistics != null)
+        {
+            return statistics;
+        }
+        m_Statistics.putIfAbsent(clazz, new ValidationStatistics());
+        return m_Statistics.get(clazz);
+    }
+    
+    /**
+     * Update the configuration values.
+     * 
+     * @param props
+     *      configuration properties of the component
+     */
+    private void updateProps(final Map<String, Object> props)
+    {
+        final ValidatorConfig config = Configurable.createConfigurable(ValidatorConfig.class, props);
+        m_DirectValidationEnabled = config.directValidationEnabled();
+        m_ValidatorPoolSize = config.validatorPoolSize();
+        m_TrustedSampleRate = config.trustedSampleRate();
+        
+        final Set<String> trustedAssetTypes = new HashSet<>();
+        if (config.trustedAssetTypes() != null)
+        {
+            trustedAssetTypes.addAll(Arrays.asList(config.trustedAssetTypes()));
+            trustedAssetTypes.remove("");
+        }
+        m_TrustedAssetTypes = Collections.unmodifiableSet(trustedAssetTypes);
+        m_TrustedCounters.clear();
+    }
+    
+    /**
+     * Check whether validation of the object is skipped because it is an observation from a trusted asset that is not 
+     * being sampled.
      * 
      * @param object
-     *            the specified object
-     * @return a JAXBSource instance if successful, else null
-     * @throws ValidationFailedException
-     *             if JAXBSource creation fails
+     *      object being validated
+     * @return
+     *      true if the object should not be validated
      */
-    private Source createSource(final Object object)
-            throws ValidationFailedException
+    private boolean isSkipped(final Object object)
+    {
+        final int sampleRate = m_TrustedSampleRate;
+        if (sampleRate <= 1 || !(object instanceof Observation))
+        {
+            return false;
+        }
+        
+        final String assetType = ((Observation)object).getAssetType();
+        if (assetType == null || !m_TrustedAssetTypes.contains(assetType))
+        {
+            return false;
+        }
+        
+        AtomicLong counter = m_TrustedCounters.get(assetType);
+        if (counter == null)
+        {
+            m_TrustedCounters.putIfAbsent(assetType, new AtomicLong());
+            counter = m_TrustedCounters.get(assetType);
+        }
+        return counter.getAndIncrement() % sampleRate != 0;
+    }
+    
+    /**
+     * Get the object to marshal as the root element. Commands and responses are not root elements so they are wrapped.
+     * 
+     * @param object
+     *      object being validated
+     * @return
+     *      the object itself or a {@link JAXBElement} wrapping the object
+     */
+    private Object getRootElement(final Object object)
     {
-        Object objectContainingSource = object;
         if (object instanceof Command || object instanceof Response)
         {
             final XmlType xmlType = object.getClass().getAnnotation(XmlType.class);
@@ -172,12 +333,27 @@ public class ValidatorImpl implements mil.dod.th.core.validator.Validator
             @SuppressWarnings({"rawtypes", "unchecked"})
             final JAXBElement jaxbElementWrapper = new JAXBElement(qName, object.getClass(), null, object);
             //now that the data is wrapped to create root element the source can be properly created
-            objectContainingSource = jaxbElementWrapper;
+            return jaxbElementWrapper;
         }
+        return object;
+    }
+
+    /**
+     * Creates a new JAXBSource from the object and the JAXBContext.
+     * 
+     * @param object
+     *            the specified object
+     * @return a JAXBSource instance if successful, else null
+     * @throws ValidationFailedException
+     *             if JAXBSource creation fails
+     */
+    private Source createSource(final Object object)
+            throws ValidationFailedException
+    {
         try
         {
             return m_XmlService.createJAXBSource(m_JAXBContextFactory.getContext(object.getClass()), 
-                    objectContainingSource);
+                    getRootElement(object));
         }
         catch (final JAXBException exception)
         {
@@ -185,85 +361,171 @@ public class ValidatorImpl implements mil.dod.th.core.validator.Validator
                 String.format("Could not create JAXBSource for %s", object.getClass()), exception);
         }
     }
+    
+    /**
+     * Validate the object by marshalling it directly into a pooled validator.
+     * 
+     * @param pool
+     *            pool of validators for the object's class
+     * @param object
+     *            JAXB object to validate
+     * @throws ValidationFailedException
+     *            if validation or marshalling fails
+     */
+    private void validateDirect(final ValidatorPool pool, final Object object) throws ValidationFailedException
+    {
+        final DirectValidator validator;
+        try
+        {
+            validator = pool.borrowDirectValidator();
+        }
+        catch (final JAXBException exception)
+        {
+            throw new ValidationFailedException(
+                    String.format("Could not create marshaller for %s", object.getClass()), exception);
+        }
+        
+        try
+        {
+            validator.validate(getRootElement(object));
+        }
+        catch (final JAXBException exception)
+        {
+            // validator is left in an unknown state so it is not returned to the pool
+            if (exception.getLinkedException() instanceof SAXException)
+            {
+                throw createValidationFailure(object, (SAXException)exception.getLinkedException());
+            }
+            throw new ValidationFailedException(String.format("Could not marshal %s", object.getClass()), exception);
+        }
+        pool.release(validator);
+    }
 
     /**
      * Private helper method for validation.
      * 
+     * @param pool
+     *            pool of validators for the object's class
      * @param source
      *            transform source reference
      * @param object
      *            JAXB object to validate
      * @throws ValidationFailedException
      *             if validation, or parsing of XML fails
-     * @throws IllegalStateException
-     *             if the class doesn't have an associated XSD file
      */
-    private void validateSource(final Source source,
-                                final Object object)
-            throws ValidationFailedException, IllegalStateException
+    private void validateSource(final ValidatorPool pool, final Source source, final Object object)
+            throws ValidationFailedException
     {
-        final Validator validator = getSchemaValidator(object.getClass());
+        final Validator validator = pool.borrowValidator();
         
         try
         {
-            synchronized (validator)
-            {
-                validator.validate(source);
-            }
+            validator.validate(source);
         }
         catch (final SAXException exception)
         {
-            final StringBuilder messageBuilder = new StringBuilder("Problem validating XML");
-            
-            try
-            {
-                final byte[] bytes = m_XMLMarshallService.createXmlByteArray(object, true);
-                messageBuilder.append(":\n").append(new String(bytes));
-            }
-            catch (final MarshalException e)
-            {
-                messageBuilder.append(" (and unable to marshall to XML: ");
-                messageBuilder.append(e.getMessage());
-                messageBuilder.append(")");
-            } 
-            
-            throw new ValidationFailedException(messageBuilder.toString(), exception);
+            throw createValidationFailure(object, exception);
         }
         catch (final IOException exception)
         {
             throw new ValidationFailedException("Problem parsing XML", exception);
         }
+        pool.release(validator);
     }
-
+    
+    /**
+     * Create the exception for an object that is not valid, the message includes the object as XML if possible.
+     * 
+     * @param object
+     *            JAXB object that failed validation
+     * @param exception
+     *            validation error
+     * @return
+     *            exception to throw
+     */
+    private ValidationFailedException createValidationFailure(final Object object, final SAXException exception)
+    {
+        final StringBuilder messageBuilder = new StringBuilder("Problem validating XML");
+        
+        try
+        {
+            final byte[] bytes = m_XMLMarshallService.createXmlByteArray(object, true);
+            messageBuilder.append(":\n").append(new String(bytes));
+        }
+        catch (final MarshalException e)
+        {
+            messageBuilder.append(" (and unable to marshall to XML: ");
+            messageBuilder.append(e.getMessage());
+            messageBuilder.append(")");
+        } 
+        
+        return new ValidationFailedException(messageBuilder.toString(), exception);
+    }
+    
     /**
-     * Helper method for validator creation based on the specified schema xsd.
+     * Get the pool of validators for the given class, creating the schema and pool if needed.
      * 
      * @param clazz
-     *      class to get the validator for
+     *      class to get the validators for
      * @return
-     *      the created schema validator
+     *      the pool of validators
      * @throws ValidationFailedException
-     *      if unable to create a schema file, which is needed to create its associated validator
+     *      if unable to create a schema file, which is needed to create its associated validators
      * @throws IllegalStateException
      *      if the class doesn't have an associated XSD file
      */
-    private synchronized Validator getSchemaValidator(final Class<?> clazz) throws ValidationFailedException, 
+    private ValidatorPool getValidatorPool(final Class<?> clazz) throws ValidationFailedException, 
             IllegalStateException
     {
-        final Validator validator = m_ClassValidators.get(clazz);
-        if (validator != null)
+        final ValidatorPool pool = m_ValidatorPools.get(clazz);
+        if (pool != null)
         {
             // already cached, just return it
-            return validator;
+            return pool;
+        }
+        return createValidatorPool(clazz);
+    }
+
+    /**
+     * Helper method for validator pool creation based on the specified schema xsd.
+     * 
+     * @param clazz
+     *      class to get the validators for
+     * @return
+     *      the created pool of validators
+     * @throws ValidationFailedException
+     *      if unable to create a schema file, which is needed to create its associated validators
+     * @throws IllegalStateException
+     *      if the class doesn't have an associated XSD file
+     */
+    private synchronized ValidatorPool createValidatorPool(final Class<?> clazz) throws ValidationFailedException, 
+            IllegalStateException
+    {
+        final ValidatorPool pool = m_ValidatorPools.get(clazz);
+        if (pool != null)
+        {
+            // created by another thread while waiting
+            return pool;
         }
         
         final URL resource = XsdResourceFinder.getXsdResource(m_Context, clazz);
         
+        final JAXBContext jaxbContext;
+        try
+        {
+            jaxbContext = m_JAXBContextFactory.getContext(clazz);
+        }
+        catch (final JAXBException exception)
+        {
+            throw new ValidationFailedException("Could not create JAXB context for " + clazz, exception);
+        }
+        
         try
         {
-            final Validator newValidator = m_SchemaFactory.newSchema(resource).newValidator();
-            m_ClassValidators.put(clazz, newValidator);
-            return newValidator;
+            final ValidatorPool newPool = new ValidatorPool(m_SchemaFactory.newSchema(resource), jaxbContext, 
+                    m_ValidatorPoolSize);
+            m_ValidatorPools.put(clazz, newPool);
+            return newPool;
         }
         catch (final SAXException exception)
         {
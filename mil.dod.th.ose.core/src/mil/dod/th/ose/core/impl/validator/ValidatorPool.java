@@ -0,0 +1,165 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.validator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+
+/**
+ * Holds the compiled schema for a class along with idle validators that can be reused. Validators are not thread safe,
+ * so each is borrowed by a single thread and returned to the pool when done. If the pool is empty a new validator is 
+ * created, if the pool is full a returned validator is discarded.
+ */
+class ValidatorPool
+{
+    /**
+     * Compiled schema, thread safe.
+     */
+    private final Schema m_Schema;
+    
+    /**
+     * Context used to create marshallers for {@link DirectValidator}s.
+     */
+    private final JAXBContext m_JAXBContext;
+    
+    /**
+     * Idle validators for {@link javax.xml.transform.Source}s.
+     */
+    private final BlockingQueue<Validator> m_IdleValidators;
+    
+    /**
+     * Idle validators for objects marshalled directly.
+     */
+    private final BlockingQueue<DirectValidator> m_IdleDirectValidators;
+    
+    /**
+     * Create a pool for the given schema.
+     * 
+     * @param schema
+     *      compiled schema used to create validators
+     * @param jaxbContext
+     *      context for the class being validated
+     * @param maxIdle
+     *      maximum number of idle validators of each type to keep
+     */
+    ValidatorPool(final Schema schema, final JAXBContext jaxbContext, final int maxIdle)
+    {
+        m_Schema = schema;
+        m_JAXBContext = jaxbContext;
+        m_IdleValidators = new ArrayBlockingQueue<>(maxIdle);
+        m_IdleDirectValidators = new ArrayBlockingQueue<>(maxIdle);
+    }
+    
+    /**
+     * Borrow a validator for validating a source, must be returned with {@link #release(Validator)} once done.
+     * 
+     * @return
+     *      validator only to be used by the calling thread
+     */
+    Validator borrowValidator()
+    {
+        final Validator validator = m_IdleValidators.poll();
+        return validator == null ? m_Schema.newValidator() : validator;
+    }
+    
+    /**
+     * Return a validator to the pool so it can be used by another thread.
+     * 
+     * @param validator
+     *      validator previously borrowed, no longer used by the calling thread
+     */
+    void release(final Validator validator)
+    {
+        validator.reset();
+        m_IdleValidators.offer(validator);
+    }
+    
+    /**
+     * Borrow a validator for marshalling an object directly, must be returned with {@link #release(DirectValidator)}
+     * once done.
+     * 
+     * @return
+     *      validator only to be used by the calling thread
+     * @throws JAXBException
+     *      if unable to create a marshaller for the validator
+     */
+    DirectValidator borrowDirectValidator() throws JAXBException
+    {
+        final DirectValidator validator = m_IdleDirectValidators.poll();
+        return validator == null 
+                ? new DirectValidator(m_JAXBContext.createMarshaller(), m_Schema.newValidatorHandler()) : validator;
+    }
+    
+    /**
+     * Return a validator to the pool so it can be used by another thread.
+     * 
+     * @param validator
+     *      validator previously borrowed, no longer used by the calling thread
+     */
+    void release(final DirectValidator validator)
+    {
+        m_IdleDirectValidators.offer(validator);
+    }
+    
+    /**
+     * Validates an object by marshalling it straight into a {@link ValidatorHandler}, the XML is never created and the 
+     * SAX events are not passed through a {@link javax.xml.transform.Source}.
+     */
+    static class DirectValidator
+    {
+        /**
+         * Marshaller that produces the SAX events.
+         */
+        private final Marshaller m_Marshaller;
+        
+        /**
+         * Validates the SAX events, reports errors by throwing an exception.
+         */
+        private final ValidatorHandler m_Handler;
+        
+        /**
+         * Create a validator from a marshaller and handler that are only used by this validator.
+         * 
+         * @param marshaller
+         *      marshaller for the object being validated
+         * @param handler
+         *      handler for the object's schema
+         */
+        DirectValidator(final Marshaller marshaller, final ValidatorHandler handler)
+        {
+            m_Marshaller = marshaller;
+            m_Handler = handler;
+        }
+        
+        /**
+         * Validate the given object.
+         * 
+         * @param root
+         *      object to validate, must be a root element
+         * @throws JAXBException
+         *      if the object cannot be marshalled, a {@link javax.xml.bind.MarshalException} with a linked {@link 
+         *      org.xml.sax.SAXException} if the object is not valid
+         */
+        void validate(final Object root) throws JAXBException
+        {
+            m_Marshaller.marshal(root, m_Handler);
+        }
+    }
+}
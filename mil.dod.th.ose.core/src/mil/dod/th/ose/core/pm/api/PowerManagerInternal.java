@@ -12,9 +12,12 @@
 //==============================================================================
 package mil.dod.th.ose.core.pm.api;
 
+import java.util.Map;
+
 import mil.dod.th.core.factory.FactoryObject;
 import mil.dod.th.core.factory.FactoryObjectProxy;
 import mil.dod.th.core.pm.WakeLock;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
 
 /**
  * Internal interface used by the core bundle for methods available for the {@link mil.dod.th.core.pm.PowerManager} 
@@ -55,4 +58,22 @@ public interface PowerManagerInternal
      *      if the lock provided has already been deleted
      */
     void deleteWakeLock(WakeLock lock) throws IllegalArgumentException;
+    
+    /**
+     * Register a {@link CountingWakeLock} wrapping a lock created by this service. The power manager applies the 
+     * configured hysteresis window to the lock and includes its activations in {@link #getActivationStats()}. The 
+     * registration is removed when the wrapped lock is deleted.
+     * 
+     * @param lock
+     *      counting lock to register
+     */
+    void registerCountingWakeLock(CountingWakeLock lock);
+    
+    /**
+     * Get activation statistics of the registered counting wake locks grouped by wake lock context.
+     * 
+     * @return
+     *      statistics for each context that has a registered counting lock
+     */
+    Map<Class<?>, WakeLockActivationStats> getActivationStats();
 }
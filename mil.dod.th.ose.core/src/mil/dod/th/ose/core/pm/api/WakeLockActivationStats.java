@@ -0,0 +1,114 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.pm.api;
+
+/**
+ * Activation counts of the counting wake locks registered for a single wake lock context.
+ */
+public class WakeLockActivationStats
+{
+    /**
+     * Number of milliseconds in a second, used to calculate rates.
+     */
+    private static final double MS_PER_SECOND = 1000.0;
+    
+    /**
+     * Context of the wake locks.
+     */
+    private final Class<?> m_Context;
+    
+    /**
+     * Number of activation requests.
+     */
+    private final long m_ActivateCount;
+    
+    /**
+     * Number of activations that reached the platform.
+     */
+    private final long m_LockActivateCount;
+    
+    /**
+     * Period the counts were collected over in milliseconds.
+     */
+    private final long m_PeriodMs;
+    
+    /**
+     * Create the statistics.
+     * 
+     * @param context
+     *      context of the wake locks
+     * @param activateCount
+     *      number of activation requests
+     * @param lockActivateCount
+     *      number of activations that reached the platform
+     * @param periodMs
+     *      period the counts were collected over in milliseconds
+     */
+    public WakeLockActivationStats(final Class<?> context, final long activateCount, final long lockActivateCount, 
+            final long periodMs)
+    {
+        m_Context = context;
+        m_ActivateCount = activateCount;
+        m_LockActivateCount = lockActivateCount;
+        m_PeriodMs = periodMs;
+    }
+    
+    public Class<?> getContext()
+    {
+        return m_Context;
+    }
+    
+    public long getActivateCount()
+    {
+        return m_ActivateCount;
+    }
+    
+    public long getLockActivateCount()
+    {
+        return m_LockActivateCount;
+    }
+    
+    public long getPeriodMs()
+    {
+        return m_PeriodMs;
+    }
+    
+    /**
+     * Get the rate of activation requests.
+     * 
+     * @return
+     *      activation requests per second
+     */
+    public double getActivateRate()
+    {
+        return m_ActivateCount * MS_PER_SECOND / Math.max(m_PeriodMs, 1);
+    }
+    
+    /**
+     * Get the rate of activations that reached the platform.
+     * 
+     * @return
+     *      platform activations per second
+     */
+    public double getLockActivateRate()
+    {
+        return m_LockActivateCount * MS_PER_SECOND / Math.max(m_PeriodMs, 1);
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("%s: %d activations (%.2f/s), %d platform activations (%.2f/s)", m_Context.getName(), 
+                m_ActivateCount, getActivateRate(), m_LockActivateCount, getLockActivateRate());
+    }
+}
@@ -36,6 +36,7 @@ import mil.dod.th.ose.core.ConfigurationAdminMocker;
 import mil.dod.th.ose.core.FactoryObjectMocker;
 import mil.dod.th.ose.core.factory.api.data.FactoryObjectInformationException;
 import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.test.ExtensionMocker;
 
 import org.junit.Before;
@@ -49,6 +50,7 @@ import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
 
 import com.google.common.collect.ImmutableMap;
 
@@ -181,6 +183,40 @@ public class TestAbstractFactoryObject
         }
     }
     
+    /**
+     * Verify properties are cached until the configuration changes and the cached map cannot be altered through the 
+     * returned copy.
+     */
+    @Test
+    public void testGetProperties_Cached() throws Exception
+    {
+        Configuration config = ConfigurationAdminMocker.getConfigByPid(OBJ_PID);
+        Dictionary<String, Object> map = new Hashtable<>();
+        map.put("key1", "value1");
+        when(config.getProperties()).thenReturn(map);
+        
+        m_SUT.getProperties().put("key1", "changed");
+        assertThat(m_SUT.getProperties(), hasEntry("key1", (Object)"value1"));
+        assertThat(m_SUT.getConfigCache().getMissCount(), is(1L));
+        assertThat(m_SUT.getConfigCache().getHitCount(), is(1L));
+        
+        // not seen until the snapshot is invalidated
+        map.put("key1", "value2");
+        assertThat(m_SUT.getProperties(), hasEntry("key1", (Object)"value1"));
+        
+        m_SUT.invalidateConfigSnapshot();
+        assertThat(m_SUT.getProperties(), hasEntry("key1", (Object)"value2"));
+        
+        map.put("key1", "value3");
+        m_SUT.blockingPropsUpdate(new HashMap<String, Object>());
+        assertThat(m_SUT.getProperties(), hasEntry("key1", (Object)"value3"));
+        
+        // changing the PID requires a reload
+        m_SUT.setPid(OBJ_PID);
+        m_SUT.getProperties();
+        assertThat(m_SUT.getConfigCache().getMissCount(), is(4L));
+    }
+    
     /**
      * Verify configuration is created if not there.
      */
@@ -479,6 +515,84 @@ public class TestAbstractFactoryObject
         assertThat(event.getValue().getPropertyNames(), hasItemInArray(FactoryDescriptor.EVENT_PROP_OBJ_BASE_TYPE));
     }
     
+    /**
+     * Verify events are not posted if the topic interest service reports no subscribers for the topic.
+     */
+    @Test
+    public void testPostEvent_NoSubscribers()
+    {
+        EventTopicInterest topicInterest = mock(EventTopicInterest.class);
+        when(topicInterest.isSubscribed("subscribed-event")).thenReturn(true);
+        when(m_Registry.getEventTopicInterest()).thenReturn(topicInterest);
+        
+        m_SUT.postEvent("some-event", null);
+        m_SUT.postEvent("subscribed-event", null);
+        
+        ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
+        verify(m_EventAdmin).postEvent(event.capture());
+        assertThat(event.getValue().getTopic(), is("subscribed-event"));
+    }
+    
+    /**
+     * Verify event specific properties take precedence over the base properties and the base properties are rebuilt 
+     * when the name or PID changes.
+     */
+    @Test
+    public void testPostEvent_BasePropsUpdated()
+    {
+        Map<String, Object> baseProps = m_SUT.getBaseEventProperties();
+        assertThat(m_SUT.getBaseEventProperties(), is(sameInstance(baseProps)));
+        
+        m_SUT.postEvent("some-event", 
+                new ImmutableMap.Builder<String, Object>().put(FactoryDescriptor.EVENT_PROP_OBJ_NAME, "other").build());
+        
+        m_SUT.internalSetName("renamed");
+        m_SUT.setPid("new-pid");
+        m_SUT.postEvent("some-event", null);
+        
+        ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
+        verify(m_EventAdmin, times(2)).postEvent(event.capture());
+        
+        assertThat(event.getAllValues().get(0).getProperty(FactoryDescriptor.EVENT_PROP_OBJ_NAME), is((Object)"other"));
+        assertThat(event.getAllValues().get(0).getPropertyNames().length, is(baseProps.size() + 1));
+        assertThat(event.getAllValues().get(1).getProperty(FactoryDescriptor.EVENT_PROP_OBJ_NAME), 
+                is((Object)"renamed"));
+        assertThat(event.getAllValues().get(1).getProperty(FactoryDescriptor.EVENT_PROP_OBJ_PID), 
+                is((Object)"new-pid"));
+        assertThat(m_SUT.getBaseEventProperties(), is(not(sameInstance(baseProps))));
+    }
+    
+    /**
+     * Verify events posted with the cached base properties have the same properties as events built from the base 
+     * properties of the object for each event.
+     */
+    @Test
+    public void testPostEvent_CachedBaseProps()
+    {
+        final Map<String, Object> props = new HashMap<>();
+        props.put("key", "value");
+        props.put("other-key", 1);
+        final Map<String, Object> expectedProps = FactoryServiceUtils.getFactoryObjectBaseEventProps(m_SUT);
+        expectedProps.putAll(props);
+        
+        m_SUT.postEvent("some-event", props);
+        m_SUT.postEvent("some-event", props);
+        
+        ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
+        verify(m_EventAdmin, times(2)).postEvent(event.capture());
+        for (Event postedEvent : event.getAllValues())
+        {
+            final Map<String, Object> postedProps = new HashMap<>();
+            for (String name : postedEvent.getPropertyNames())
+            {
+                postedProps.put(name, postedEvent.getProperty(name));
+            }
+            // event topic is added to the properties by the event itself
+            postedProps.remove(EventConstants.EVENT_TOPIC);
+            assertThat(postedProps, is(expectedProps));
+        }
+    }
+    
     @Test
     public void testGetExtensions()
     {
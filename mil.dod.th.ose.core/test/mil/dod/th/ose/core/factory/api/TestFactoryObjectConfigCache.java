@@ -0,0 +1,154 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.factory.api;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import mil.dod.th.core.asset.AssetAttributes;
+import mil.dod.th.ose.core.factory.api.FactoryObjectConfigCache.PropertiesLoader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class TestFactoryObjectConfigCache
+{
+    private FactoryObjectConfigCache m_SUT;
+    private Map<String, Object> m_Props;
+    private int m_LoadCount;
+    private PropertiesLoader m_Loader;
+    
+    @Before
+    public void setUp()
+    {
+        m_SUT = new FactoryObjectConfigCache();
+        m_Props = new HashMap<>();
+        m_Props.put(AssetAttributes.CONFIG_PROP_PLUGIN_OVERRIDES_POSITION, true);
+        m_Loader = new PropertiesLoader()
+        {
+            @Override
+            public Map<String, Object> load()
+            {
+                m_LoadCount++;
+                return m_Props;
+            }
+        };
+    }
+    
+    /**
+     * Verify properties are loaded once and served from the snapshot until invalidated.
+     */
+    @Test
+    public void testGetProperties()
+    {
+        Map<String, Object> props = m_SUT.getProperties(m_Loader);
+        assertThat(props, hasEntry(AssetAttributes.CONFIG_PROP_PLUGIN_OVERRIDES_POSITION, (Object)true));
+        assertThat(m_SUT.getProperties(m_Loader), is(sameInstance(props)));
+        assertThat(m_LoadCount, is(1));
+        assertThat(m_SUT.getMissCount(), is(1L));
+        assertThat(m_SUT.getHitCount(), is(1L));
+        
+        // snapshot is a copy
+        m_Props.put("new", "value");
+        assertThat(m_SUT.getProperties(m_Loader), not(hasKey("new")));
+        
+        try
+        {
+            props.put("key", "value");
+            fail("Expecting exception");
+        }
+        catch (UnsupportedOperationException e)
+        {
+        }
+        
+        m_SUT.invalidate();
+        assertThat(m_SUT.getProperties(m_Loader), hasKey("new"));
+        assertThat(m_LoadCount, is(2));
+        assertThat(m_SUT.getMissCount(), is(2L));
+    }
+    
+    /**
+     * Verify the attributes proxy is reused for the same snapshot and recreated after invalidation.
+     */
+    @Test
+    public void testGetAttributes()
+    {
+        AssetAttributes attributes = m_SUT.getAttributes(AssetAttributes.class, m_Loader);
+        assertThat(attributes.pluginOverridesPosition(), is(true));
+        assertThat(m_SUT.getAttributes(AssetAttributes.class, m_Loader), is(sameInstance(attributes)));
+        
+        m_Props.put(AssetAttributes.CONFIG_PROP_PLUGIN_OVERRIDES_POSITION, false);
+        m_SUT.invalidate();
+        AssetAttributes updated = m_SUT.getAttributes(AssetAttributes.class, m_Loader);
+        assertThat(updated, is(not(sameInstance(attributes))));
+        assertThat(updated.pluginOverridesPosition(), is(false));
+        assertThat(m_LoadCount, is(2));
+    }
+    
+    /**
+     * Verify a snapshot loaded while the configuration changed is used for that read only and not cached.
+     */
+    @Test
+    public void testInvalidateDuringLoad()
+    {
+        PropertiesLoader loader = new PropertiesLoader()
+        {
+            @Override
+            public Map<String, Object> load()
+            {
+                m_LoadCount++;
+                m_SUT.invalidate();
+                return m_Props;
+            }
+        };
+        
+        assertThat(m_SUT.getProperties(loader), hasKey(AssetAttributes.CONFIG_PROP_PLUGIN_OVERRIDES_POSITION));
+        m_SUT.getProperties(m_Loader);
+        assertThat(m_LoadCount, is(2));
+        
+        m_SUT.getProperties(m_Loader);
+        assertThat(m_LoadCount, is(2));
+    }
+    
+    /**
+     * Verify a failed load is not cached.
+     */
+    @Test
+    public void testLoadFailure()
+    {
+        try
+        {
+            m_SUT.getProperties(new PropertiesLoader()
+            {
+                @Override
+                public Map<String, Object> load()
+                {
+                    throw new IllegalStateException();
+                }
+            });
+            fail("Expecting exception");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        
+        m_SUT.getProperties(m_Loader);
+        assertThat(m_LoadCount, is(1));
+    }
+}
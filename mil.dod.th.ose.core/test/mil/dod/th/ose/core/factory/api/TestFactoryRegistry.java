@@ -120,6 +120,7 @@ public class TestFactoryRegistry
 
         when(m_Utils.getMetaTypeDefaults(m_FactoryDescriptor)).thenReturn(new Hashtable<String, Object>());
         when(m_FactoryDescriptor.getPid()).thenReturn(FACTORY_PID);
+        when(m_FactoryDescriptor.getProductType()).thenReturn("product type");
 
         m_SUT.activate(m_BundleContext);
 
@@ -378,6 +379,98 @@ public class TestFactoryRegistry
         assertThat(objects, hasItems(factory1objects.get(0), factory1objects.get(1)));
     }
 
+    /**
+     * Verify lookups by name, PID and product type follow changes to the objects and removal from the registry.
+     */
+    @Test
+    public void testLookupIndexes() throws Exception
+    {
+        FactoryInternal factory = mock(FactoryInternal.class);
+        final FactoryObjectInternal object = stubFactoryObject(factory, "type-a", 1).get(0);
+        final String[] name = {"old"};
+        final String[] pid = {null};
+        when(object.getName()).thenAnswer(invocation -> name[0]);
+        doAnswer(invocation -> name[0] = (String)invocation.getArguments()[0]).when(object).internalSetName(
+                anyString());
+        when(object.getPid()).thenAnswer(invocation -> pid[0]);
+        doAnswer(invocation -> pid[0] = (String)invocation.getArguments()[0]).when(object).setPid(
+                Mockito.any(String.class));
+        
+        m_SUT.createOrRestoreObject(factory, object.getUuid());
+        Set<FactoryObjectInternal> typeView = m_SUT.getObjectsByProductType("type-a");
+        
+        assertThat(m_SUT.findObjectByName("old"), is(object));
+        assertThat(m_SUT.isObjectCreated("old"), is(true));
+        assertThat(typeView, contains(object));
+        assertThat(m_SUT.getObjectsByProductType("type-b"), is(empty()));
+        assertThat(m_SUT.getObjectsView(), contains(object));
+        
+        m_SUT.setName(object, "new");
+        assertThat(m_SUT.findObjectByName("new"), is(object));
+        assertThat(m_SUT.isObjectCreated("old"), is(false));
+        
+        Configuration config = mock(Configuration.class);
+        when(config.getPid()).thenReturn("config.pid");
+        doReturn(config).when(m_ConfigAdmin).createFactoryConfiguration(FACTORY_PID, null);
+        m_SUT.createConfiguration(object.getUuid(), FACTORY_PID, object);
+        assertThat(m_SUT.getObjectByPid("config.pid"), is(object));
+        
+        m_SUT.unAssignPidForObj(object);
+        assertThat(m_SUT.getObjectByPid("config.pid"), is(nullValue()));
+        
+        m_SUT.removeObject(object.getUuid());
+        assertThat(m_SUT.findObjectByName("new"), is(nullValue()));
+        assertThat(typeView, is(empty()));
+        assertThat(m_SUT.getObjectsView(), is(empty()));
+    }
+    
+    /**
+     * Verify the indexed lookups find every object in a registry with a large number of objects, the same as scanning 
+     * all objects.
+     */
+    @Test
+    public void testLookupManyObjects() throws Exception
+    {
+        final int count = 10000;
+        FactoryInternal factory = mock(FactoryInternal.class);
+        List<FactoryObjectInternal> objects = stubFactoryObject(factory, "type-a", count);
+        for (int i = 0; i < count; i++)
+        {
+            when(objects.get(i).getName()).thenReturn("obj-" + i);
+            when(objects.get(i).getPid()).thenReturn("pid-" + i);
+            m_SUT.createOrRestoreObject(factory, null);
+        }
+        
+        // scanning is slow with this many objects, only sample a few lookups
+        for (int i = 0; i < count; i += count / 20)
+        {
+            assertThat(m_SUT.findObjectByName("obj-" + i), is(scanByName("obj-" + i)));
+        }
+        
+        for (int i = 0; i < count; i++)
+        {
+            assertThat(m_SUT.findObjectByName("obj-" + i), is(objects.get(i)));
+            assertThat(m_SUT.getObjectByPid("pid-" + i), is(objects.get(i)));
+        }
+        assertThat(m_SUT.getObjectsByProductType("type-a").size(), is(count));
+        assertThat(m_SUT.findObjectByName("obj-" + count), is(nullValue()));
+    }
+    
+    /**
+     * Find an object by name the way lookups were done before the registry was indexed.
+     */
+    private FactoryObjectInternal scanByName(final String name)
+    {
+        for (FactoryObjectInternal object : m_SUT.getObjects())
+        {
+            if (name.equals(object.getName()))
+            {
+                return object;
+            }
+        }
+        return null;
+    }
+
     private List<FactoryObjectInternal> stubFactoryObject(FactoryInternal factory, String productType, int count)
     {
         NewInstanceAnswer<FactoryObjectInternal> answer =
@@ -1009,6 +1102,9 @@ public class TestFactoryRegistry
         when(m_FactoryObjectDataManager.getName(Mockito.any(UUID.class))).thenReturn("name");
         when(m_ServiceProxy.createFactoryObjectInternal(m_FactoryDescriptor)).thenReturn(instance);
         when(instance.getInstance()).thenReturn(object);
+        when(object.getUuid()).thenReturn(UUID.randomUUID());
+        when(object.getName()).thenReturn("name");
+        when(object.getFactory()).thenReturn(m_FactoryDescriptor);
         when(object.getPid()).thenReturn("config.pid");
         when(config.getPid()).thenReturn("config.pid");
         when(m_ConfigAdmin.listConfigurations(filter)).thenReturn(new Configuration[]{config});
@@ -0,0 +1,117 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.factory.api;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ */
+public class TestLayeredEventProperties
+{
+    private LayeredEventProperties m_SUT;
+    private Map<String, Object> m_Overlay;
+    
+    @Before
+    public void setUp()
+    {
+        Map<String, Object> base = new ImmutableMap.Builder<String, Object>()
+                .put("a", 1).put("b", 2).put("c", 3).build();
+        m_Overlay = new HashMap<>();
+        m_Overlay.put("b", 20);
+        m_Overlay.put("d", 40);
+        
+        m_SUT = new LayeredEventProperties(base, m_Overlay);
+    }
+    
+    /**
+     * Verify overlay entries hide base entries with the same key.
+     */
+    @Test
+    public void testGet()
+    {
+        assertThat(m_SUT.get("a"), is((Object)1));
+        assertThat(m_SUT.get("b"), is((Object)20));
+        assertThat(m_SUT.get("c"), is((Object)3));
+        assertThat(m_SUT.get("d"), is((Object)40));
+        assertThat(m_SUT.get("e"), is(nullValue()));
+        
+        assertThat(m_SUT.containsKey("a"), is(true));
+        assertThat(m_SUT.containsKey("d"), is(true));
+        assertThat(m_SUT.containsKey("e"), is(false));
+    }
+    
+    /**
+     * Verify a key set in the overlay to null still hides the base entry.
+     */
+    @Test
+    public void testGet_NullOverlayValue()
+    {
+        m_Overlay.put("a", null);
+        
+        assertThat(m_SUT.get("a"), is(nullValue()));
+        assertThat(m_SUT.size(), is(4));
+    }
+    
+    /**
+     * Verify the size and entries do not include the hidden base entries.
+     */
+    @Test
+    public void testEntrySet()
+    {
+        assertThat(m_SUT.size(), is(4));
+        assertThat(m_SUT.entrySet().size(), is(4));
+        
+        Map<String, Object> copy = new HashMap<>(m_SUT);
+        assertThat(copy.size(), is(4));
+        assertThat(copy, hasEntry("a", (Object)1));
+        assertThat(copy, hasEntry("b", (Object)20));
+        assertThat(copy, hasEntry("c", (Object)3));
+        assertThat(copy, hasEntry("d", (Object)40));
+        assertThat(m_SUT, is(equalTo(copy)));
+    }
+    
+    /**
+     * Verify the view can't be modified through the iterator or directly.
+     */
+    @Test
+    public void testReadOnly()
+    {
+        Iterator<Entry<String, Object>> iterator = m_SUT.entrySet().iterator();
+        iterator.next();
+        try
+        {
+            iterator.remove();
+            fail("Expecting exception as view is read-only");
+        }
+        catch (UnsupportedOperationException e) {}
+        
+        try
+        {
+            m_SUT.put("e", 5);
+            fail("Expecting exception as view is read-only");
+        }
+        catch (UnsupportedOperationException e) {}
+    }
+}
@@ -25,6 +25,7 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ManagedServiceFactory;
 import org.osgi.service.event.EventHandler;
 import org.osgi.service.metatype.MetaTypeProvider;
@@ -60,7 +61,8 @@ public class FactoryServiceReferenceMocker
         when(bundleContext.registerService(eq(EventHandler.class), 
                 Mockito.any(EventHandler.class), Mockito.any(Dictionary.class))).thenReturn(evtHdlReg);
         
-        final String[] clazzes = {ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName()};
+        final String[] clazzes = {ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName(), 
+            ConfigurationListener.class.getName()};
         when(bundleContext.registerService(eq(clazzes), anyObject(), Mockito.any(Dictionary.class)))
             .thenAnswer(new Answer() 
             {
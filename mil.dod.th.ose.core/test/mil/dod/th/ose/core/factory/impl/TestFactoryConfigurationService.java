@@ -28,6 +28,9 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.metatype.AttributeDefinition;
 import org.osgi.service.metatype.MetaTypeService;
@@ -329,4 +332,30 @@ public class TestFactoryConfigurationService
         //verify
         verify(m_FactoryReg).unAssignPidForObj(obj);
     }
+    
+    /**
+     * Verify the cached configuration of an object is invalidated when configuration admin reports a change to the 
+     * object's configuration and events for other factories are ignored.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testConfigurationEvent()
+    {
+        FactoryObjectInternal obj = mock(FactoryObjectInternal.class);
+        when(m_FactoryReg.getObjectByPid("objPid")).thenReturn(obj);
+        ServiceReference<ConfigurationAdmin> ref = mock(ServiceReference.class);
+        
+        m_SUT.configurationEvent(new ConfigurationEvent(ref, ConfigurationEvent.CM_UPDATED, 
+                PRODUCT_TYPE + FactoryDescriptor.PID_SUFFIX, "objPid"));
+        verify(obj).invalidateConfigSnapshot();
+        
+        m_SUT.configurationEvent(new ConfigurationEvent(ref, ConfigurationEvent.CM_DELETED, "otherFactoryPid", 
+                "objPid"));
+        m_SUT.configurationEvent(new ConfigurationEvent(ref, ConfigurationEvent.CM_UPDATED, null, "objPid"));
+        verify(obj, times(1)).invalidateConfigSnapshot();
+        
+        // unknown objects are ignored
+        m_SUT.configurationEvent(new ConfigurationEvent(ref, ConfigurationEvent.CM_UPDATED, 
+                PRODUCT_TYPE + FactoryDescriptor.PID_SUFFIX, "unknownPid"));
+    }
 }
@@ -53,6 +53,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ManagedServiceFactory;
 import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.component.ComponentFactory;
@@ -128,7 +129,8 @@ public class TestFactoryDescriptorImpl
         doReturn(FactoryObject.class).when(serviceContext).getBaseType();
         
         when(m_MetaTypeProviderBundleContext.registerService(
-                eq(new String[]{ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName()}), 
+                eq(new String[]{ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName(), 
+                    ConfigurationListener.class.getName()}), 
                     Mockito.any(FactoryConfigurationService.class),
                     Mockito.any(Dictionary.class))).thenReturn(metaServiceReg);
         
@@ -272,7 +274,8 @@ public class TestFactoryDescriptorImpl
     {
         m_SUT.registerServices();
         
-        String[] clazzes = {ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName()};
+        String[] clazzes = {ManagedServiceFactory.class.getName(), MetaTypeProvider.class.getName(), 
+            ConfigurationListener.class.getName()};
         ArgumentCaptor<Dictionary> props = ArgumentCaptor.forClass(Dictionary.class); 
         verify(m_MetaTypeProviderBundleContext).registerService(eq(clazzes), 
                 Mockito.any(FactoryConfigurationService.class), props.capture());
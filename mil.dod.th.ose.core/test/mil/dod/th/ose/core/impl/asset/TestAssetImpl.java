@@ -935,6 +935,8 @@ public class TestAssetImpl
         // test overrides
         table.put(AssetAttributes.CONFIG_PROP_ACTIVATE_ON_STARTUP, true);
         table.put(AssetAttributes.CONFIG_PROP_PLUGIN_OVERRIDES_POSITION, true);
+        // configuration admin reports the change which drops the cached configuration
+        m_SUT.invalidateConfigSnapshot();
         assertThat(m_SUT.getConfig().activateOnStartup(), is(true));
         assertThat(m_SUT.getConfig().pluginOverridesPosition(), is(true));
     }
@@ -1198,6 +1200,7 @@ public class TestAssetImpl
         Dictionary<String, Object> existingProps = new Hashtable<>();
         existingProps.put(AssetAttributes.CONFIG_PROP_ACTIVATE_ON_STARTUP, false);
         when(m_Configuration.getProperties()).thenReturn(existingProps);
+        m_SUT.invalidateConfigSnapshot();
 
         m_SUT.setPluginOverridesPosition(true);
 
@@ -19,6 +19,7 @@ package mil.dod.th.ose.core.impl.ccomm;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 import java.util.HashMap;
@@ -131,6 +132,37 @@ public class TestAddressImpl
                 (Object)m_SUT.getDescription()));
     }
 
+    /**
+     * Verify event properties are built once per prefix and rebuilt after the name or configuration changes.
+     */
+    @Test
+    public void testGetEventProperties_Cached() throws Exception
+    {
+        Map<String, Object> props = m_SUT.getEventProperties("source");
+        
+        assertThat(m_SUT.getEventProperties("source"), is(sameInstance(props)));
+        assertThat(m_SUT.getEventProperties("dest"), is(not(sameInstance(props))));
+        
+        try
+        {
+            props.put("key", "value");
+            fail("Expecting exception as the properties are shared");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            
+        }
+        
+        m_SUT.internalSetName("renamed");
+        Map<String, Object> renamedProps = m_SUT.getEventProperties("source");
+        assertThat(renamedProps, hasEntry("source" + Address.EVENT_PROP_ADDRESS_NAME_SUFFIX, (Object)"renamed"));
+        
+        when(m_Proxy.getAddressDescriptionSuffix()).thenReturn("newSuffix");
+        m_SUT.configUpdated(new HashMap<String, Object>());
+        assertThat(m_SUT.getEventProperties("source"), 
+                hasEntry("source" + Address.EVENT_PROP_MESSAGE_ADDRESS_SUFFIX, (Object)"testPrefix:newSuffix"));
+    }
+
     /**
      * Verify that the associated proxy method is called.
      */
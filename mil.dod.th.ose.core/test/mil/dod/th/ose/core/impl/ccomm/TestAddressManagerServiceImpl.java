@@ -131,6 +131,22 @@ public class TestAddressManagerServiceImpl
 
         m_RegistryObjects = new HashSet<AddressInternal>();
         when(m_Registry.getObjects()).thenReturn(m_RegistryObjects);
+        when(m_Registry.getObjectsView()).thenReturn(m_RegistryObjects);
+        when(m_Registry.findObjectByName(anyString())).thenAnswer(new Answer<AddressInternal>()
+        {
+            @Override
+            public AddressInternal answer(InvocationOnMock invocation)
+            {
+                for (AddressInternal address : m_RegistryObjects)
+                {
+                    if (address.getName().equals(invocation.getArguments()[0]))
+                    {
+                        return address;
+                    }
+                }
+                return null;
+            }
+        });
                 
         when(m_AddressFactoryObjectDataManager.getName(Mockito.any(UUID.class))).thenReturn("name");
         
@@ -109,7 +109,7 @@ public class TestCustomCommsServiceImpl_Transport extends CustomCommsServiceImpl
         //reg mocking
         Set<TransportLayerInternal> transList = new HashSet<>();
         transList.add(m_TransInternal);
-        when(m_TransRegistry.getObjects()).thenReturn(transList);
+        when(m_TransRegistry.getObjectsByProductType(TL_PRODUCT_TYPE)).thenReturn(transList);
         
         //request to create another link with the same link layer, but different name
         String transName2 = "nameAlso";
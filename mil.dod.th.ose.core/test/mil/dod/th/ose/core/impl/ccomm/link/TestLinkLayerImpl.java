@@ -48,6 +48,7 @@ import mil.dod.th.ose.core.factory.api.FactoryInternal;
 import mil.dod.th.ose.core.factory.api.FactoryObjectInternal;
 import mil.dod.th.ose.core.factory.api.FactoryRegistry;
 import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.test.EventAdminVerifier;
 
 import org.junit.Before;
@@ -304,6 +305,23 @@ public class TestLinkLayerImpl
         m_SUT.postReceiveEvent(sourceAddress, null, frame);
     }
     
+    /**
+     * Verify the received event is not built or posted if nothing is subscribed to the topic.
+     */
+    @Test
+    public void testPostReceiveEvent_NoSubscribers()
+    {
+        EventTopicInterest topicInterest = mock(EventTopicInterest.class);
+        doReturn(topicInterest).when(m_FactReg).getEventTopicInterest();
+        Address sourceAddress = mock(Address.class);
+        
+        m_SUT.postReceiveEvent(sourceAddress, null, mock(LinkFrame.class));
+        
+        verify(topicInterest).isSubscribed(LinkLayer.TOPIC_DATA_RECEIVED);
+        verify(sourceAddress, never()).getEventProperties(anyString());
+        verify(m_EventAdmin, never()).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify exception if frame is null.
      */
@@ -568,6 +586,8 @@ public class TestLinkLayerImpl
         table.put(LinkLayerAttributes.CONFIG_PROP_PHYSICAL_LINK_NAME, "blah");
         table.put(LinkLayerAttributes.CONFIG_PROP_RETRIES, 3);
         table.put(LinkLayerAttributes.CONFIG_PROP_READ_TIMEOUT_MS, 500);
+        // configuration admin reports the change which drops the cached configuration
+        m_SUT.invalidateConfigSnapshot();
         assertThat(m_SUT.getConfig().physicalLinkName(), is("blah"));
         assertThat(m_SUT.getConfig().readTimeoutMs(), is(500));
         assertThat(m_SUT.getConfig().retries(), is(3));        
@@ -287,6 +287,8 @@ public class TestPhysicalLinkImpl
         // test overrides
         table.put(PhysicalLinkAttributes.CONFIG_PROP_DATA_BITS, 7);
         table.put(PhysicalLinkAttributes.CONFIG_PROP_READ_TIMEOUT_MS, 500);
+        // configuration admin reports the change which drops the cached configuration
+        m_SUT.invalidateConfigSnapshot();
         assertThat(m_SUT.getConfig().dataBits(), is(7));
         assertThat(m_SUT.getConfig().readTimeoutMs(), is(500));
 
@@ -706,6 +706,8 @@ public class TestTransportLayerImpl
         // test overrides
         table.put(TransportLayerAttributes.CONFIG_PROP_LINK_LAYER_NAME, "blah");
         table.put(TransportLayerAttributes.CONFIG_PROP_READ_TIMEOUT_MS, 500);
+        // configuration admin reports the change which drops the cached configuration
+        m_SUT.invalidateConfigSnapshot();
         assertThat(m_SUT.getConfig().linkLayerName(), is("blah"));
         assertThat(m_SUT.getConfig().readTimeoutMs(), is(500));
     }
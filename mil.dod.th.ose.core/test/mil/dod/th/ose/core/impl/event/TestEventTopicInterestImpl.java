@@ -0,0 +1,164 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.event;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+
+import mil.dod.th.core.log.LoggingService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+/**
+ */
+public class TestEventTopicInterestImpl
+{
+    private EventTopicInterestImpl m_SUT;
+    private BundleContext m_Context;
+    private ServiceListener m_Listener;
+    
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws Exception
+    {
+        m_SUT = new EventTopicInterestImpl();
+        m_Context = mock(BundleContext.class);
+        
+        // handler registered before the component is activated
+        ServiceReference<EventHandler> existingHandler = mockHandler("some/existing/TOPIC");
+        when(m_Context.getAllServiceReferences(EventHandler.class.getName(), null))
+            .thenReturn(new ServiceReference[] {existingHandler});
+        
+        m_SUT.setLoggingService(mock(LoggingService.class));
+        m_SUT.activate(m_Context);
+        
+        ArgumentCaptor<ServiceListener> listenerCaptor = ArgumentCaptor.forClass(ServiceListener.class);
+        verify(m_Context).addServiceListener(listenerCaptor.capture(), anyString());
+        m_Listener = listenerCaptor.getValue();
+    }
+    
+    /**
+     * Verify handlers registered before activation are tracked and unknown topics are suppressed.
+     */
+    @Test
+    public void testIsSubscribed_ExistingHandler()
+    {
+        assertThat(m_SUT.isSubscribed("some/existing/TOPIC"), is(true));
+        assertThat(m_SUT.isSubscribed("some/existing/OTHER"), is(false));
+        assertThat(m_SUT.isSubscribed("some/existing/OTHER"), is(false));
+        
+        assertThat(m_SUT.getDeliveredCount(), is(1L));
+        assertThat(m_SUT.getSuppressedCount(), is(2L));
+    }
+    
+    /**
+     * Verify exact and wildcard topics, including topics given as an array or collection.
+     */
+    @Test
+    public void testIsSubscribed_Wildcards()
+    {
+        registerHandler(mockHandler(new String[] {"a/b/TOPIC", "c/d/*"}));
+        registerHandler(mockHandler(Arrays.asList("e/f/TOPIC")));
+        
+        assertThat(m_SUT.isSubscribed("a/b/TOPIC"), is(true));
+        assertThat(m_SUT.isSubscribed("a/b/OTHER"), is(false));
+        assertThat(m_SUT.isSubscribed("c/d/ANY"), is(true));
+        assertThat(m_SUT.isSubscribed("c/d/e/ANY"), is(true));
+        assertThat(m_SUT.isSubscribed("c/dd/ANY"), is(false));
+        assertThat(m_SUT.isSubscribed("e/f/TOPIC"), is(true));
+        
+        registerHandler(mockHandler("*"));
+        
+        assertThat(m_SUT.isSubscribed("a/b/OTHER"), is(true));
+        assertThat(m_SUT.isSubscribed("c/dd/ANY"), is(true));
+    }
+    
+    /**
+     * Verify handlers with a filter are treated as subscribed to all of their topics.
+     */
+    @Test
+    public void testIsSubscribed_Filter()
+    {
+        ServiceReference<EventHandler> handler = mockHandler("a/b/TOPIC");
+        when(handler.getProperty(EventConstants.EVENT_FILTER)).thenReturn("(key=value)");
+        registerHandler(handler);
+        
+        assertThat(m_SUT.isSubscribed("a/b/TOPIC"), is(true));
+    }
+    
+    /**
+     * Verify the index is updated when a handler changes its topics or is removed.
+     */
+    @Test
+    public void testHandlerModifiedAndRemoved()
+    {
+        ServiceReference<EventHandler> handler = mockHandler("a/b/TOPIC");
+        registerHandler(handler);
+        assertThat(m_SUT.isSubscribed("a/b/TOPIC"), is(true));
+        
+        when(handler.getProperty(EventConstants.EVENT_TOPIC)).thenReturn("a/b/OTHER");
+        m_Listener.serviceChanged(new ServiceEvent(ServiceEvent.MODIFIED, handler));
+        assertThat(m_SUT.isSubscribed("a/b/TOPIC"), is(false));
+        assertThat(m_SUT.isSubscribed("a/b/OTHER"), is(true));
+        
+        m_Listener.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, handler));
+        assertThat(m_SUT.isSubscribed("a/b/OTHER"), is(false));
+    }
+    
+    /**
+     * Verify handlers without a topic property do not subscribe to anything.
+     */
+    @Test
+    public void testIsSubscribed_NoTopic()
+    {
+        registerHandler(mockHandler(null));
+        
+        assertThat(m_SUT.isSubscribed("a/b/TOPIC"), is(false));
+    }
+    
+    /**
+     * Verify the tracker is closed on deactivation so the handlers are no longer tracked.
+     */
+    @Test
+    public void testDeactivate()
+    {
+        m_SUT.deactivate();
+        
+        verify(m_Context).removeServiceListener(m_Listener);
+        assertThat(m_SUT.isSubscribed("some/existing/TOPIC"), is(false));
+    }
+    
+    private void registerHandler(final ServiceReference<EventHandler> handler)
+    {
+        m_Listener.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, handler));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private ServiceReference<EventHandler> mockHandler(final Object topics)
+    {
+        ServiceReference<EventHandler> handler = mock(ServiceReference.class);
+        when(handler.getProperty(EventConstants.EVENT_TOPIC)).thenReturn(topics);
+        return handler;
+    }
+}
@@ -26,8 +26,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.jdo.Extent;
 import javax.jdo.FetchPlan;
@@ -37,15 +43,22 @@ import javax.jdo.Query;
 import javax.jdo.Transaction;
 import javax.jdo.datastore.JDOConnection;
 
+import mil.dod.th.core.persistence.DataStore;
 import mil.dod.th.core.persistence.PersistenceFailedException;
 import mil.dod.th.core.pm.PowerManager;
 import mil.dod.th.core.pm.WakeLock;
+import mil.dod.th.ose.core.pm.api.PowerManagerInternal;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
 
+import org.datanucleus.api.jdo.JDOQuery;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -60,6 +73,7 @@ public class TestAbstractDataStore
     private PersistenceManagerFactory m_PersistenceManagerFactory;
     private PersistenceManager m_PersistenceManager;
     private PowerManager m_PowerManager;
+    private PowerManagerInternal m_PowerManagerInternal;
     private Transaction m_Transaction;
     private Query m_Query;
     private Extent<?> m_Extent;
@@ -68,6 +82,7 @@ public class TestAbstractDataStore
     private Statement m_Statement;
     private FetchPlan m_FetchPlan;
     private WakeLock m_WakeLock;
+    private WakeLock m_ReadWakeLock;
     
     @Before
     public void setUp()
@@ -92,12 +107,19 @@ public class TestAbstractDataStore
             {
                 
             }
+
+            @Override
+            protected Object getKey(Long object)
+            {
+                return object;
+            }
         };
         m_EventAdmin = mock(EventAdmin.class);
         m_PersistenceManagerFactoryCreator = mock(PersistenceManagerFactoryCreator.class);
         m_PersistenceManagerFactory = mock(PersistenceManagerFactory.class);
         m_PersistenceManager = mock(PersistenceManager.class);
         m_PowerManager = mock(PowerManager.class);
+        m_PowerManagerInternal = mock(PowerManagerInternal.class);
         m_Transaction = mock(Transaction.class);
         m_Query = mock(Query.class);
         m_WakeLock = mock(WakeLock.class);
@@ -108,15 +130,27 @@ public class TestAbstractDataStore
         when(m_PersistenceManagerFactoryCreator.createPersistenceManagerFactory(Long.class, "test")).
             thenReturn(m_PersistenceManagerFactory);
         when(m_PersistenceManagerFactory.getPersistenceManager()).thenReturn(m_PersistenceManager);
+        // read path copies queries to a pooled manager, hand back the same mock
+        when(m_PersistenceManager.newQuery((Object)anyObject())).thenAnswer(new Answer<Query>()
+        {
+            @Override
+            public Query answer(final InvocationOnMock invocation)
+            {
+                return (Query)invocation.getArguments()[0];
+            }
+        });
         when(m_PersistenceManager.currentTransaction()).thenReturn(m_Transaction);
         m_Extent = m_PersistenceManager.getExtent(Long.class, true);
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(m_Query);
         m_FetchPlan = mock(FetchPlan.class);
         when(m_PersistenceManager.getFetchPlan()).thenReturn(m_FetchPlan);
         when(m_PowerManager.createWakeLock(anyObject(), anyString())).thenReturn(m_WakeLock);
+        m_ReadWakeLock = mock(WakeLock.class);
+        when(m_PowerManager.createWakeLock(anyObject(), eq("coreDataStoreRead"))).thenReturn(m_ReadWakeLock);
         m_SUT.setEventAdmin(m_EventAdmin);
         m_SUT.setPersistenceManagerFactoryCreator(m_PersistenceManagerFactoryCreator);
         m_SUT.setPowerManager(m_PowerManager);
+        m_SUT.setPowerManagerInternal(m_PowerManagerInternal);
         
         Map<String, Object> props = new HashMap<String, Object>();
         m_SUT.activateStore("test", props);
@@ -128,15 +162,22 @@ public class TestAbstractDataStore
     {
         m_SUT.deactivateStore();
         verify(m_WakeLock).delete();
+        verify(m_ReadWakeLock).delete();
     }
     
     /**
-     * Test activation of store, verify max fetch depth is set.
+     * Test activation of store, verify max fetch depth is set and the wake locks are registered with the core power 
+     * manager.
      */
     @Test
     public void testActivateStore()
     {
-        verify(m_FetchPlan).setMaxFetchDepth(10);
+        // write manager and the default pool of 2 read managers
+        verify(m_FetchPlan, times(3)).setMaxFetchDepth(10);
+        // queries created by the write manager include the extended data
+        verify(m_FetchPlan).addGroup("extendedDataGroup");
+        // write and read wake locks
+        verify(m_PowerManagerInternal, times(2)).registerCountingWakeLock(Mockito.any(CountingWakeLock.class));
     }
 
     @Test
@@ -192,6 +233,35 @@ public class TestAbstractDataStore
         }
     }
     
+    /**
+     * Verify a group of objects is persisted in a single transaction.
+     */
+    @Test
+    public void testPersistAll() throws PersistenceFailedException
+    {
+        Collection<Long> objects = Arrays.asList(1L, 2L, 3L);
+        when(m_PersistenceManager.makePersistentAll(objects)).thenReturn(objects);
+        
+        assertThat(m_SUT.makePersistentAll(objects), is(objects));
+        verify(m_Transaction).begin();
+        verify(m_Transaction).commit();
+        verify(m_WakeLock).activate();
+        verify(m_WakeLock).cancel();
+        
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put("minUsableSpace", m_SUT.getUsableSpace() + 5);
+        m_SUT.updateProps(props);
+        try
+        {
+            m_SUT.makePersistentAll(objects);
+            fail("Expecting exception");
+        }
+        catch (PersistenceFailedException e)
+        {
+            verify(m_Transaction).begin();
+        }
+    }
+    
     /**
      * Verify the query object is returned by the new method.
      */
@@ -213,8 +283,8 @@ public class TestAbstractDataStore
         assertThat(m_SUT.executeGetCount(query), is(222L));
         
         verify(query).closeAll();
-        verify(m_WakeLock).activate();
-        verify(m_WakeLock).cancel();
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
     }
     
     @Test
@@ -225,19 +295,199 @@ public class TestAbstractDataStore
         
         assertThat(m_SUT.queryOnFilter("").size(), is(0));
         verify(m_FetchPlan).removeGroup("extendedDataGroup");
-        verify(m_FetchPlan).addGroup("extendedDataGroup");
-        verify(m_WakeLock).activate();
-        verify(m_WakeLock).cancel();
+        // also added once to the write manager on activation
+        verify(m_FetchPlan, times(2)).addGroup("extendedDataGroup");
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
     }
     
+    /**
+     * Verify queries run on a read persistence manager do not wait for the monitor held during writes.
+     */
     @Test
-    public void testRemoveOnFilter()
+    public void testQueryOnFilterNotBlockedByWrite() throws Exception
     {
-        when(m_Query.deletePersistentAll()).thenReturn(Long.valueOf(10));
+        final Collection<Long> collection = new ArrayList<Long>();
+        when(m_Query.execute()).thenReturn(collection);
+        
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final Future<Collection<Long>> result;
+            synchronized (m_SUT)
+            {
+                result = executor.submit(new Callable<Collection<Long>>()
+                {
+                    @Override
+                    public Collection<Long> call()
+                    {
+                        return m_SUT.queryOnFilter("");
+                    }
+                });
+                
+                // would time out if the query needed the same monitor as writes
+                assertThat(result.get(5, TimeUnit.SECONDS).size(), is(0));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
+        verify(m_WakeLock, never()).activate();
+    }
+    
+    /**
+     * Verify queries and counts fall back to the write persistence manager if the read pool size is 0.
+     */
+    @Test
+    public void testNoReadPool()
+    {
+        m_SUT.deactivateStore();
+        reset(m_WakeLock, m_ReadWakeLock, m_FetchPlan);
+        
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(DataStoreConfig.READ_POOL_SIZE_KEY, 0);
+        m_SUT.activateStore("test", props);
+        verify(m_FetchPlan).setMaxFetchDepth(10);
         
-        assertThat(m_SUT.removeOnFilter(""), is(Long.valueOf(10)));
+        final Collection<Long> collection = new ArrayList<Long>();
+        when(m_Query.execute()).thenReturn(collection, 5L);
+        
+        assertThat(m_SUT.queryOnFilter("").size(), is(0));
+        assertThat(m_SUT.executeGetCount(m_SUT.newJdoQuery()), is(5L));
+        verify(m_WakeLock, times(2)).activate();
+        verify(m_WakeLock, times(2)).cancel();
+        verify(m_ReadWakeLock, never()).activate();
+        verify(m_PersistenceManager, never()).newQuery((Object)anyObject());
+    }
+    
+    @Test
+    public void testRemoveOnFilter()
+    {
+        List<String> keys = Arrays.asList("a", "b");
+        Query countQuery = mock(Query.class);
+        when(countQuery.execute()).thenReturn(2L);
+        Query keyQuery = mock(Query.class);
+        when(keyQuery.execute()).thenReturn(keys);
+        when(m_PersistenceManager.newQuery(m_Query)).thenReturn(countQuery, keyQuery);
+        Query deleteQuery = mock(Query.class);
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(keys)).thenReturn(Long.valueOf(2));
+        
+        assertThat(m_SUT.removeOnFilter(""), is(Long.valueOf(2)));
+        
+        // keys are queried with copies of the query on a read manager, then deleted using the write manager
+        verify(countQuery).setResult("count(this)");
+        verify(countQuery).closeAll();
+        verify(keyQuery).setResult("uuid");
+        verify(keyQuery).setOrdering("uuid ascending");
+        verify(keyQuery).setRange(0, m_SUT.getRemoveChunkSize());
+        verify(keyQuery).closeAll();
+        verify(m_Query, never()).setResult(anyString());
+        verify(m_Query, never()).setOrdering(anyString());
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
         verify(m_WakeLock).activate();
         verify(m_WakeLock).cancel();
+        verify(m_Transaction).commit();
+        verify(deleteQuery).closeAll();
+    }
+    
+    /**
+     * Verify items are removed in chunks, each in its own transaction, with progress posted after each chunk and once 
+     * complete.
+     */
+    @Test
+    public void testRemoveOnFilterChunks()
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(DataStoreConfig.REMOVE_CHUNK_SIZE_KEY, 2);
+        m_SUT.updateProps(props);
+        
+        Query countQuery = mock(Query.class);
+        when(countQuery.execute()).thenReturn(3L);
+        Query keyQuery1 = mock(Query.class);
+        when(keyQuery1.execute()).thenReturn(Arrays.asList("a", "b"));
+        Query keyQuery2 = mock(Query.class);
+        when(keyQuery2.execute()).thenReturn(Arrays.asList("c"));
+        when(m_PersistenceManager.newQuery(m_Query)).thenReturn(countQuery, keyQuery1, keyQuery2);
+        Query deleteQuery = mock(Query.class);
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(Arrays.asList("a", "b"))).thenReturn(Long.valueOf(2));
+        when(deleteQuery.deletePersistentAll(Arrays.asList("c"))).thenReturn(Long.valueOf(1));
+        
+        assertThat(m_SUT.removeOnFilter(""), is(Long.valueOf(3)));
+        
+        // only a chunk of keys is queried at a time
+        verify(keyQuery1).setRange(0, 2);
+        verify(keyQuery2).setRange(0, 2);
+        verify(m_Transaction, times(2)).begin();
+        verify(m_Transaction, times(2)).commit();
+        verify(m_WakeLock, times(2)).activate();
+        verify(m_WakeLock, times(2)).cancel();
+        
+        ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+        verify(m_EventAdmin, times(3)).postEvent(eventCaptor.capture());
+        List<Event> events = eventCaptor.getAllValues();
+        
+        assertThat(events.get(0).getTopic(), is(DataStore.TOPIC_REMOVE_PROGRESS));
+        assertThat((Long)events.get(0).getProperty(DataStore.EVENT_PROP_REMOVED_COUNT), is(2L));
+        assertThat((Long)events.get(0).getProperty(DataStore.EVENT_PROP_REMOVE_TOTAL), is(3L));
+        assertThat((String)events.get(0).getProperty(DataStore.EVENT_PROP_DATA_TYPE), is(Long.class.getName()));
+        assertThat((Double)events.get(0).getProperty(DataStore.EVENT_PROP_REMOVE_RATE), is(greaterThan(0.0)));
+        
+        assertThat(events.get(1).getTopic(), is(DataStore.TOPIC_REMOVE_PROGRESS));
+        assertThat((Long)events.get(1).getProperty(DataStore.EVENT_PROP_REMOVED_COUNT), is(3L));
+        
+        assertThat(events.get(2).getTopic(), is(DataStore.TOPIC_REMOVE_COMPLETE));
+        assertThat((Long)events.get(2).getProperty(DataStore.EVENT_PROP_REMOVED_COUNT), is(3L));
+        assertThat((Long)events.get(2).getProperty(DataStore.EVENT_PROP_REMOVE_TOTAL), is(3L));
+    }
+    
+    /**
+     * Verify each chunk of keys after the first only includes keys after the last key of the previous chunk, bound as 
+     * a parameter, and the caller's query is not changed.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRemoveOnJdoQueryKeyset()
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(DataStoreConfig.REMOVE_CHUNK_SIZE_KEY, 2);
+        m_SUT.updateProps(props);
+        
+        JDOQuery query = mock(JDOQuery.class);
+        org.datanucleus.store.query.Query internalQuery = mock(org.datanucleus.store.query.Query.class);
+        when(query.getInternalQuery()).thenReturn(internalQuery);
+        when(internalQuery.getFilter()).thenReturn("value > 5");
+        Query countQuery = mock(Query.class);
+        when(countQuery.execute()).thenReturn(3L);
+        Query keyQuery1 = mock(Query.class);
+        when(keyQuery1.execute()).thenReturn(Arrays.asList("a", "b"));
+        Query keyQuery2 = mock(Query.class);
+        when(keyQuery2.executeWithMap(anyMap())).thenReturn(Arrays.asList("c"));
+        when(m_PersistenceManager.newQuery(query)).thenReturn(countQuery, keyQuery1, keyQuery2);
+        Query deleteQuery = mock(Query.class);
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(Arrays.asList("a", "b"))).thenReturn(Long.valueOf(2));
+        when(deleteQuery.deletePersistentAll(Arrays.asList("c"))).thenReturn(Long.valueOf(1));
+        
+        assertThat(m_SUT.removeOnJdoQuery(query), is(3L));
+        
+        verify(keyQuery1, never()).setFilter(anyString());
+        verify(keyQuery2).setFilter("(value > 5) && uuid > :removeLastKey");
+        verify(keyQuery2).setRange(0, 2);
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<Map> paramCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(keyQuery2).executeWithMap(paramCaptor.capture());
+        assertThat((Map<String, Object>)paramCaptor.getValue(), hasEntry("removeLastKey", (Object)"b"));
+        
+        verify(query, never()).setResult(anyString());
+        verify(query, never()).setOrdering(anyString());
+        verify(query, never()).setRange(anyLong(), anyLong());
+        verify(query, never()).setFilter(anyString());
     }
 
     @Test
@@ -311,8 +561,8 @@ public class TestAbstractDataStore
         }).when(m_Query).setFilter("uuid == '" + uuid.toString() + "'");
         
         assertThat(m_SUT.contains(uuid), is(true));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
     }
 
     @Test
@@ -338,9 +588,10 @@ public class TestAbstractDataStore
         
         assertThat(m_SUT.find(uuid), is(notNullValue()));
         verify(m_FetchPlan, times(2)).removeGroup("extendedDataGroup");
-        verify(m_FetchPlan, times(2)).addGroup("extendedDataGroup");
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        // also added once to the write manager on activation
+        verify(m_FetchPlan, times(3)).addGroup("extendedDataGroup");
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
     }
     
     /**
@@ -377,9 +628,12 @@ public class TestAbstractDataStore
         m_SUT.remove(uuid);
         verify(m_PersistenceManager).deletePersistent(5L);
         verify(m_FetchPlan, times(2)).removeGroup("extendedDataGroup");
-        verify(m_FetchPlan, times(2)).addGroup("extendedDataGroup");
-        verify(m_WakeLock, times(3)).activate();
-        verify(m_WakeLock, times(3)).cancel();
+        // also added once to the write manager on activation
+        verify(m_FetchPlan, times(3)).addGroup("extendedDataGroup");
+        verify(m_WakeLock).activate();
+        verify(m_WakeLock).cancel();
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
     }
 
     @Test
@@ -387,15 +641,23 @@ public class TestAbstractDataStore
     {
         Date startTime = new Date(10);
         Date stopTime = new Date(100);
+        when(m_Query.execute()).thenReturn(0L);
         
         // replay
         m_SUT.remove(startTime, stopTime);
         
         // verify
         verify(m_Query).setFilter("timestamp >= 10 && timestamp <= 100");
-        verify(m_Query).deletePersistentAll();
-        verify(m_WakeLock).activate();
-        verify(m_WakeLock).cancel();
+        // nothing matches so keys are never queried
+        verify(m_Query).setResult("count(this)");
+        verify(m_Query, never()).setResult("uuid");
+        // nothing to remove so write lock is never used
+        verify(m_WakeLock, never()).activate();
+        
+        ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+        verify(m_EventAdmin).postEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getTopic(), is(DataStore.TOPIC_REMOVE_COMPLETE));
+        assertThat((Long)eventCaptor.getValue().getProperty(DataStore.EVENT_PROP_REMOVED_COUNT), is(0L));
     }
     
     @Test
@@ -469,5 +731,45 @@ public class TestAbstractDataStore
         assertThat(m_Statement, is(statement));
         verify(m_WakeLock, times(2)).activate();
         verify(m_WakeLock, times(2)).cancel();
+        
+        // each statement is committed in its own transaction
+        verify(m_Transaction, times(2)).begin();
+        verify(m_Transaction, times(2)).commit();
+    }
+    
+    /**
+     * Verify a statement executed during a transaction is left for that transaction to commit, and a failed statement 
+     * is rolled back.
+     */
+    @Test
+    public void testExecuteSqlTransaction() throws SQLException
+    {
+        Connection sqlConn = mock(java.sql.Connection.class, withSettings().extraInterfaces(JDOConnection.class));
+        when(m_PersistenceManager.getDataStoreConnection()).thenReturn((JDOConnection)sqlConn);
+        
+        Statement statement = mock(Statement.class);
+        when(sqlConn.createStatement()).thenReturn(statement);
+        when(statement.execute("fail")).thenThrow(new SQLException());
+        
+        when(m_Transaction.isActive()).thenReturn(true);
+        m_SUT.executeSql("test", null);
+        verify(m_Transaction, never()).begin();
+        verify(m_Transaction, never()).commit();
+        verify(m_Transaction, never()).rollback();
+        
+        when(m_Transaction.isActive()).thenReturn(false, true);
+        try
+        {
+            m_SUT.executeSql("fail", null);
+            fail("Expecting exception");
+        }
+        catch (SQLException e)
+        {
+            // expected
+        }
+        verify(m_Transaction).begin();
+        verify(m_Transaction, never()).commit();
+        verify(m_Transaction).rollback();
+        verify(sqlConn, times(2)).close();
     }
 }
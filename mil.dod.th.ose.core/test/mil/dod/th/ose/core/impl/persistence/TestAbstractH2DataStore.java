@@ -27,6 +27,8 @@ import java.util.Map;
 import javax.jdo.FetchPlan;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import javax.jdo.Transaction;
 import javax.jdo.datastore.JDOConnection;
 
 import mil.dod.th.core.persistence.PersistenceFailedException;
@@ -49,6 +51,7 @@ public class TestAbstractH2DataStore
     private Statement m_Statement;
     private FetchPlan m_FetchPlan;
     private WakeLock m_WakeLock;
+    private WakeLock m_ReadWakeLock;
 
     @Before
     public void setUp() throws SQLException
@@ -72,6 +75,12 @@ public class TestAbstractH2DataStore
             {
                 
             }
+
+            @Override
+            protected Object getKey(Byte object)
+            {
+                return object;
+            }
         };
         
         m_PersistenceManagerFactoryCreator = mock(PersistenceManagerFactoryCreator.class);
@@ -79,13 +88,25 @@ public class TestAbstractH2DataStore
         m_PersistenceManager = mock(PersistenceManager.class);
         m_PowerManager = mock(PowerManager.class);
         m_WakeLock = mock(WakeLock.class);
-        when(m_PersistenceManagerFactoryCreator.createPersistenceManagerFactory(Byte.class, "test")).
+        when(m_PersistenceManagerFactoryCreator.createPersistenceManagerFactory(Byte.class, "test;MVCC=TRUE")).
             thenReturn(m_PersistenceManagerFactory);
         when(m_PersistenceManagerFactory.getPersistenceManager()).thenReturn(m_PersistenceManager);
+        when(m_PersistenceManager.currentTransaction()).thenReturn(mock(Transaction.class));
+        // read path copies queries to a pooled manager, hand back the same mock
+        when(m_PersistenceManager.newQuery((Object)anyObject())).thenAnswer(new Answer<Query>()
+        {
+            @Override
+            public Query answer(final InvocationOnMock invocation)
+            {
+                return (Query)invocation.getArguments()[0];
+            }
+        });
         m_SUT.setPersistenceManagerFactoryCreator(m_PersistenceManagerFactoryCreator);
         m_FetchPlan = mock(FetchPlan.class);
         when(m_PersistenceManager.getFetchPlan()).thenReturn(m_FetchPlan);
         when(m_PowerManager.createWakeLock(anyObject(), anyString())).thenReturn(m_WakeLock);
+        m_ReadWakeLock = mock(WakeLock.class);
+        when(m_PowerManager.createWakeLock(anyObject(), eq("coreDataStoreRead"))).thenReturn(m_ReadWakeLock);
         m_SUT.setPowerManager(m_PowerManager);
         
         Map<String, Object> props = new HashMap<String, Object>();
@@ -0,0 +1,240 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import mil.dod.th.core.persistence.PersistenceFailedException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class TestBatchPersistWriter
+{
+    private BatchPersistWriter<String> m_SUT;
+    private List<List<String>> m_Batches;
+    private CountDownLatch m_CommitStarted;
+    private CountDownLatch m_ReleaseCommit;
+    private String m_FailOn;
+    
+    @Before
+    public void setUp()
+    {
+        m_Batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        m_CommitStarted = new CountDownLatch(1);
+        m_ReleaseCommit = new CountDownLatch(0);
+        
+        m_SUT = new BatchPersistWriter<>(new BatchPersistWriter.Committer<String>()
+        {
+            @Override
+            public Collection<String> commit(List<String> objects) throws PersistenceFailedException
+            {
+                m_CommitStarted.countDown();
+                try
+                {
+                    m_ReleaseCommit.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+                
+                if (m_FailOn != null && objects.contains(m_FailOn))
+                {
+                    throw new PersistenceFailedException("bad object");
+                }
+                m_Batches.add(new ArrayList<>(objects));
+                return objects;
+            }
+        }, 100, 10, 0);
+        m_SUT.start("TestWriter");
+    }
+    
+    @After
+    public void tearDown()
+    {
+        m_SUT.stop();
+    }
+    
+    /**
+     * Verify a single object is committed right away.
+     */
+    @Test
+    public void testSubmit() throws Exception
+    {
+        CompletableFuture<String> future = m_SUT.submit("a");
+        
+        assertThat(future.get(5, TimeUnit.SECONDS), is("a"));
+        assertThat(m_Batches.size(), is(1));
+        assertThat(m_SUT.getPersistedCount(), is(1L));
+        assertThat(m_SUT.getBatchCount(), is(1L));
+    }
+    
+    /**
+     * Verify objects submitted while a commit is in progress are committed together in the next batch, up to the max
+     * batch size.
+     */
+    @Test
+    public void testGroupCommit() throws Exception
+    {
+        m_ReleaseCommit = new CountDownLatch(1);
+        
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        futures.add(m_SUT.submit("first"));
+        assertThat(m_CommitStarted.await(5, TimeUnit.SECONDS), is(true));
+        
+        for (int i = 0; i < 15; i++)
+        {
+            futures.add(m_SUT.submit("obj" + i));
+        }
+        assertThat(m_SUT.getQueueDepth(), is(15));
+        
+        m_ReleaseCommit.countDown();
+        for (CompletableFuture<String> future : futures)
+        {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        
+        assertThat(m_Batches.size(), is(3));
+        assertThat(m_Batches.get(0).size(), is(1));
+        assertThat(m_Batches.get(1).size(), is(10));
+        assertThat(m_Batches.get(2).size(), is(5));
+        assertThat(m_SUT.getLargestBatchSize(), is(10));
+        assertThat(m_SUT.getPersistedCount(), is(16L));
+    }
+    
+    /**
+     * Verify that if a batch fails, the other objects in the batch are still committed individually.
+     */
+    @Test
+    public void testBatchFailureRetriesIndividually() throws Exception
+    {
+        m_ReleaseCommit = new CountDownLatch(1);
+        m_FailOn = "bad";
+        
+        CompletableFuture<String> first = m_SUT.submit("first");
+        assertThat(m_CommitStarted.await(5, TimeUnit.SECONDS), is(true));
+        CompletableFuture<String> good = m_SUT.submit("good");
+        CompletableFuture<String> bad = m_SUT.submit("bad");
+        m_ReleaseCommit.countDown();
+        
+        assertThat(first.get(5, TimeUnit.SECONDS), is("first"));
+        assertThat(good.get(5, TimeUnit.SECONDS), is("good"));
+        try
+        {
+            bad.get(5, TimeUnit.SECONDS);
+            fail("Expecting exception");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), instanceOf(PersistenceFailedException.class));
+        }
+        assertThat(m_SUT.getFailedCount(), is(1L));
+        assertThat(m_SUT.getPersistedCount(), is(2L));
+    }
+    
+    /**
+     * Verify pending objects are committed when stopped and new objects are rejected.
+     */
+    @Test
+    public void testStop() throws Exception
+    {
+        m_ReleaseCommit = new CountDownLatch(1);
+        
+        CompletableFuture<String> first = m_SUT.submit("first");
+        assertThat(m_CommitStarted.await(5, TimeUnit.SECONDS), is(true));
+        CompletableFuture<String> pending = m_SUT.submit("pending");
+        m_ReleaseCommit.countDown();
+        
+        m_SUT.stop();
+        
+        assertThat(first.isDone(), is(true));
+        assertThat(pending.get(), is("pending"));
+        
+        CompletableFuture<String> late = m_SUT.submit("late");
+        assertThat(late.isCompletedExceptionally(), is(true));
+        try
+        {
+            late.get();
+            fail("Expecting exception");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), instanceOf(PersistenceFailedException.class));
+        }
+    }
+    
+    /**
+     * Verify an object submitted by an interrupted thread is reported through the future and the interrupt is kept.
+     */
+    @Test
+    public void testSubmitInterrupted() throws Exception
+    {
+        Thread.currentThread().interrupt();
+        CompletableFuture<String> future = m_SUT.submit("interrupted");
+        
+        // clears the flag for the rest of the test
+        assertThat(Thread.interrupted(), is(true));
+        assertThat(future.isCompletedExceptionally(), is(true));
+        try
+        {
+            future.get();
+            fail("Expecting exception");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), instanceOf(PersistenceFailedException.class));
+        }
+    }
+    
+    /**
+     * Verify invalid batch settings are rejected.
+     */
+    @Test
+    public void testInvalidSettings()
+    {
+        try
+        {
+            m_SUT.setMaxBatchSize(0);
+            fail("Expecting exception");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        
+        try
+        {
+            m_SUT.setMaxBatchDelayMs(-1);
+            fail("Expecting exception");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,190 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class TestDigitalMediaBlobStore
+{
+    private File m_Directory;
+    private DigitalMediaBlobStore m_SUT;
+    
+    @Before
+    public void setUp() throws IOException
+    {
+        m_Directory = Files.createTempDirectory("blobs").toFile();
+        m_SUT = new DigitalMediaBlobStore(new File(m_Directory, "store"));
+    }
+    
+    @After
+    public void tearDown()
+    {
+        deleteRecursively(m_Directory);
+    }
+    
+    /**
+     * Verify content can be stored and read back using the reference.
+     */
+    @Test
+    public void testStoreRead() throws IOException
+    {
+        byte[] content = new byte[] {1, 2, 3, 4, 5};
+        byte[] reference = m_SUT.store(content);
+        
+        assertThat(reference.length, is(DigitalMediaBlobStore.REFERENCE_LENGTH));
+        assertThat(DigitalMediaBlobStore.isReference(reference), is(true));
+        assertThat(DigitalMediaBlobStore.getContentLength(reference), is(5));
+        assertThat(m_SUT.read(reference), is(content));
+        
+        // empty content is allowed
+        assertThat(m_SUT.read(m_SUT.store(new byte[0])), is(new byte[0]));
+    }
+    
+    /**
+     * Verify identical content is only stored once.
+     */
+    @Test
+    public void testStoreDeduplicated() throws IOException
+    {
+        byte[] reference1 = m_SUT.store(new byte[] {1, 2, 3});
+        byte[] reference2 = m_SUT.store(new byte[] {1, 2, 3});
+        byte[] reference3 = m_SUT.store(new byte[] {3, 2, 1});
+        
+        assertThat(reference2, is(reference1));
+        assertThat(DigitalMediaBlobStore.getHash(reference3), is(not(DigitalMediaBlobStore.getHash(reference1))));
+        assertThat(countBlobs(), is(2));
+    }
+    
+    /**
+     * Verify a blob that does not match the reference is reported instead of returning the wrong content.
+     */
+    @Test
+    public void testReadWrongSize() throws IOException
+    {
+        byte[] reference = m_SUT.store(new byte[] {1, 2, 3});
+        String hash = DigitalMediaBlobStore.getHash(reference);
+        try (RandomAccessFile file = new RandomAccessFile(
+                new File(m_Directory, "store/" + hash.substring(0, 2) + "/" + hash), "rw"))
+        {
+            file.setLength(2);
+        }
+        
+        try
+        {
+            m_SUT.read(reference);
+            fail("Expecting exception");
+        }
+        catch (IOException e)
+        {
+            assertThat(e.getMessage(), containsString(hash));
+        }
+        
+        // storing again repairs the blob
+        m_SUT.store(new byte[] {1, 2, 3});
+        assertThat(m_SUT.read(reference), is(new byte[] {1, 2, 3}));
+    }
+    
+    /**
+     * Verify only values with the reference header and length are references.
+     */
+    @Test
+    public void testIsReference() throws IOException
+    {
+        assertThat(DigitalMediaBlobStore.isReference(null), is(false));
+        assertThat(DigitalMediaBlobStore.isReference(new byte[DigitalMediaBlobStore.REFERENCE_LENGTH]), is(false));
+        
+        byte[] reference = m_SUT.store(new byte[] {1});
+        byte[] longer = new byte[reference.length + 1];
+        System.arraycopy(reference, 0, longer, 0, reference.length);
+        assertThat(DigitalMediaBlobStore.isReference(longer), is(false));
+    }
+    
+    /**
+     * Verify the content can be streamed using the reference.
+     */
+    @Test
+    public void testOpen() throws IOException
+    {
+        byte[] reference = m_SUT.store(new byte[] {1, 2, 3});
+        
+        try (InputStream stream = m_SUT.open(reference))
+        {
+            assertThat(stream.read(), is(1));
+            assertThat(stream.read(), is(2));
+            assertThat(stream.read(), is(3));
+            assertThat(stream.read(), is(-1));
+        }
+    }
+    
+    /**
+     * Verify a blob is deleted by its hash.
+     */
+    @Test
+    public void testDelete() throws IOException
+    {
+        byte[] reference1 = m_SUT.store(new byte[] {1, 2, 3});
+        byte[] reference2 = m_SUT.store(new byte[] {4, 5, 6});
+        
+        assertThat(m_SUT.delete(DigitalMediaBlobStore.getHash(reference1)), is(true));
+        assertThat(m_SUT.delete(DigitalMediaBlobStore.getHash(reference1)), is(false));
+        
+        assertThat(countBlobs(), is(1));
+        assertThat(m_SUT.read(reference2), is(new byte[] {4, 5, 6}));
+        try
+        {
+            m_SUT.read(reference1);
+            fail("Expecting exception");
+        }
+        catch (IOException e)
+        {
+            // expected, blob was deleted
+        }
+    }
+    
+    private int countBlobs()
+    {
+        int count = 0;
+        for (File subDir : new File(m_Directory, "store").listFiles())
+        {
+            count += subDir.listFiles().length;
+        }
+        return count;
+    }
+    
+    private void deleteRecursively(final File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,103 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import mil.dod.th.ose.core.impl.persistence.TestPersistentDataStoreImpl.LongCodec;
+import mil.dod.th.ose.shared.EncodedEntity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class TestEntityCodecRegistry
+{
+    private EntityCodecRegistry m_SUT;
+    private LongCodec m_Codec;
+    
+    @Before
+    public void setUp()
+    {
+        m_SUT = new EntityCodecRegistry();
+        m_Codec = new LongCodec();
+        m_SUT.add(m_Codec);
+    }
+    
+    /**
+     * Verify an entity with a codec is encoded with its type name and can be decoded.
+     */
+    @Test
+    public void testEncodeDecode() throws Exception
+    {
+        assertThat(m_SUT.canEncode(5L), is(true));
+        
+        EncodedEntity encoded = (EncodedEntity)m_SUT.encode(5L);
+        assertThat(EntityCodecRegistry.isEncoded(encoded), is(true));
+        assertThat(encoded.getEntityType(), is(Long.class.getName()));
+        assertThat(encoded.getData().length, is(8));
+        
+        assertThat(m_SUT.decode(encoded), is((Object)5L));
+    }
+    
+    /**
+     * Verify entities without a codec and entities that are not encoded are passed through, including byte arrays 
+     * that happen to look like encoded data.
+     */
+    @Test
+    public void testPassThrough() throws Exception
+    {
+        assertThat(m_SUT.canEncode("test"), is(false));
+        assertThat(m_SUT.encode("test"), is((Object)"test"));
+        
+        assertThat(m_SUT.decode("test"), is((Object)"test"));
+        byte[] protoBytes = new byte[] {0x0A, 0x02, 'h', 'i'};
+        assertThat(EntityCodecRegistry.isEncoded(protoBytes), is(false));
+        assertThat(m_SUT.decode(protoBytes), is(sameInstance((Object)protoBytes)));
+        byte[] headerBytes = new byte[] {(byte)0xFF, 'P', 'D', 1, 0, 14};
+        assertThat(EntityCodecRegistry.isEncoded(headerBytes), is(false));
+        assertThat(m_SUT.decode(headerBytes), is(sameInstance((Object)headerBytes)));
+    }
+    
+    /**
+     * Verify an encoded entity cannot be decoded once the codec is removed.
+     */
+    @Test
+    public void testRemove() throws Exception
+    {
+        Serializable encoded = m_SUT.encode(5L);
+        
+        // only the registered instance is removed
+        m_SUT.remove(new LongCodec());
+        assertThat(m_SUT.canEncode(5L), is(true));
+        
+        m_SUT.remove(m_Codec);
+        assertThat(m_SUT.canEncode(5L), is(false));
+        assertThat(m_SUT.encode(5L), is((Object)5L));
+        try
+        {
+            m_SUT.decode(encoded);
+            fail("Expecting exception");
+        }
+        catch (IOException e)
+        {
+            assertThat(e.getMessage(), containsString(Long.class.getName()));
+        }
+    }
+}
@@ -21,8 +21,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+import javax.jdo.FetchPlan;
 import javax.jdo.Query;
 
 import mil.dod.th.core.asset.Asset;
@@ -691,4 +698,252 @@ public class TestObservationQueryImpl
         assertThat(stringCaptor.getValue(), anyOf(is("assetType == 'blah' && this.detection.id > 0"),
                                                   is("this.detection.id > 0 && assetType == 'blah'")));
     }
+    
+    /**
+     * Verify iterating retrieves a page at a time, using the created timestamp and UUID of the last observation 
+     * returned as bound parameters for the next page.
+     */
+    @Test
+    public void testIterateKeyset()
+    {
+        Query query1 = mock(Query.class);
+        Query query2 = mock(Query.class);
+        Query query3 = mock(Query.class);
+        when(m_DataStore.newJdoQuery()).thenReturn(query1, query2, query3);
+        
+        Observation obs1 = new Observation().withCreatedTimestamp(300L).withUuid(UUID.randomUUID());
+        Observation obs2 = new Observation().withCreatedTimestamp(200L).withUuid(UUID.randomUUID());
+        Observation obs3 = new Observation().withCreatedTimestamp(200L).withUuid(UUID.randomUUID());
+        Observation obs4 = new Observation().withCreatedTimestamp(100L).withUuid(UUID.randomUUID());
+        when(m_DataStore.executeJdoQuery(eq(query1), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs1, obs2));
+        when(m_DataStore.executeJdoQuery(eq(query2), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs3, obs4));
+        when(m_DataStore.executeJdoQuery(eq(query3), anyMapOf(String.class, Object.class)))
+            .thenReturn(new ArrayList<Observation>());
+        
+        Iterator<Observation> iterator = m_SUT.withAssetType("blah").iterate(2);
+        
+        // nothing retrieved until needed
+        verify(m_DataStore, never()).executeJdoQuery(Mockito.any(Query.class), anyMapOf(String.class, Object.class));
+        
+        List<Observation> actualObs = new ArrayList<>();
+        while (iterator.hasNext())
+        {
+            actualObs.add(iterator.next());
+        }
+        assertThat(actualObs, contains(obs1, obs2, obs3, obs4));
+        
+        verify(query1).setFilter("assetType == 'blah'");
+        verify(query1).setOrdering("createdTimestamp descending, uuid descending");
+        verify(query1).setRange(0, 2);
+        verify(m_DataStore).executeJdoQuery(query1, new HashMap<String, Object>());
+        
+        // same filter for each page, only the parameters change so obs3 with the same timestamp as obs2 is not lost
+        final String keysetFilter = "assetType == 'blah' && (createdTimestamp < :lastTimestamp "
+                + "|| (createdTimestamp == :lastTimestamp && uuid < :lastUuid))";
+        verify(query2).setFilter(keysetFilter);
+        verify(query2).setOrdering("createdTimestamp descending, uuid descending");
+        verify(query2).setRange(0, 2);
+        verify(m_DataStore).executeJdoQuery(query2, keysetParams(200L, obs2.getUuid()));
+        verify(query3).setFilter(keysetFilter);
+        verify(m_DataStore).executeJdoQuery(query3, keysetParams(100L, obs4.getUuid()));
+        
+        try
+        {
+            iterator.next();
+            fail("Expecting exception");
+        }
+        catch (NoSuchElementException e)
+        {
+            
+        }
+        
+        try
+        {
+            iterator.remove();
+            fail("Expecting exception");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            
+        }
+    }
+    
+    /**
+     * Verify iterating with a range skips to the start of the range on the first page and stops at the end of the 
+     * range.
+     */
+    @Test
+    public void testIterateWithRange()
+    {
+        Query query1 = mock(Query.class);
+        Query query2 = mock(Query.class);
+        when(m_DataStore.newJdoQuery()).thenReturn(query1, query2);
+        
+        Observation obs1 = new Observation().withCreatedTimestamp(10L).withUuid(UUID.randomUUID());
+        Observation obs2 = new Observation().withCreatedTimestamp(20L).withUuid(UUID.randomUUID());
+        Observation obs3 = new Observation().withCreatedTimestamp(30L).withUuid(UUID.randomUUID());
+        when(m_DataStore.executeJdoQuery(eq(query1), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs1, obs2));
+        when(m_DataStore.executeJdoQuery(eq(query2), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs3));
+        
+        Iterator<Observation> iterator = m_SUT.withRange(5, 8)
+                .withOrder(SortField.CreatedTimestamp, SortOrder.Ascending).iterate(2);
+        
+        assertThat(iterator.next(), is(obs1));
+        assertThat(iterator.next(), is(obs2));
+        assertThat(iterator.next(), is(obs3));
+        assertThat(iterator.hasNext(), is(false));
+        
+        verify(query1).setOrdering("createdTimestamp ascending, uuid ascending");
+        verify(query1).setRange(5, 7);
+        verify(query1, never()).setFilter(anyString());
+        verify(query2).setFilter("(createdTimestamp > :lastTimestamp "
+                + "|| (createdTimestamp == :lastTimestamp && uuid > :lastUuid))");
+        verify(query2).setRange(0, 1);
+        verify(m_DataStore).executeJdoQuery(query2, keysetParams(20L, obs2.getUuid()));
+        verify(m_DataStore, times(2)).newJdoQuery();
+    }
+    
+    /**
+     * Verify the extended data is removed from the fetch plan of each query, including every page of an iteration, 
+     * when digital media is deferred.
+     */
+    @Test
+    public void testDigitalMediaDeferred()
+    {
+        Query query1 = mock(Query.class);
+        Query query2 = mock(Query.class);
+        Query query3 = mock(Query.class);
+        FetchPlan fetchPlan = mock(FetchPlan.class);
+        when(query1.getFetchPlan()).thenReturn(fetchPlan);
+        when(query2.getFetchPlan()).thenReturn(fetchPlan);
+        when(query3.getFetchPlan()).thenReturn(fetchPlan);
+        when(m_DataStore.newJdoQuery()).thenReturn(query1, query2, query3);
+        Observation obs1 = new Observation().withCreatedTimestamp(10L).withUuid(UUID.randomUUID());
+        when(m_DataStore.executeJdoQuery(eq(query2), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs1));
+        
+        m_SUT.withDigitalMediaDeferred().execute();
+        verify(m_DataStore).executeJdoQuery(query1);
+        
+        Iterator<Observation> iterator = m_SUT.iterate(1);
+        assertThat(iterator.next(), is(obs1));
+        assertThat(iterator.hasNext(), is(false));
+        
+        verify(fetchPlan, times(3)).removeGroup("extendedDataGroup");
+        
+        // extended data included by default
+        new ObservationQueryImpl(m_DataStore).execute();
+        verify(fetchPlan, times(3)).removeGroup("extendedDataGroup");
+    }
+    
+    /**
+     * Verify iterating when sorted by observed timestamp retrieves pages by position.
+     */
+    @Test
+    public void testIterateObservedOrder()
+    {
+        Query query1 = mock(Query.class);
+        Query query2 = mock(Query.class);
+        when(m_DataStore.newJdoQuery()).thenReturn(query1, query2);
+        
+        Observation obs1 = new Observation().withCreatedTimestamp(10L).withUuid(UUID.randomUUID());
+        Observation obs2 = new Observation().withCreatedTimestamp(20L).withUuid(UUID.randomUUID());
+        Observation obs3 = new Observation().withCreatedTimestamp(30L).withUuid(UUID.randomUUID());
+        when(m_DataStore.executeJdoQuery(eq(query1), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs1, obs2));
+        when(m_DataStore.executeJdoQuery(eq(query2), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs3));
+        
+        Iterator<Observation> iterator = m_SUT.withOrder(SortField.ObservedTimestamp, SortOrder.Descending).iterate(2);
+        
+        List<Observation> actualObs = new ArrayList<>();
+        while (iterator.hasNext())
+        {
+            actualObs.add(iterator.next());
+        }
+        assertThat(actualObs, contains(obs1, obs2, obs3));
+        
+        verify(query1).setOrdering("observedTimestamp descending");
+        verify(query1).setRange(0, 2);
+        verify(query2).setOrdering("observedTimestamp descending");
+        verify(query2).setRange(2, 4);
+        verify(query2, never()).setFilter(anyString());
+        verify(m_DataStore).executeJdoQuery(query2, new HashMap<String, Object>());
+        // last page was not full, so no more queries
+        verify(m_DataStore, times(2)).newJdoQuery();
+    }
+    
+    /**
+     * Verify an invalid fetch size is rejected.
+     */
+    @Test
+    public void testIterateInvalidFetchSize()
+    {
+        try
+        {
+            m_SUT.iterate(0);
+            fail("Expecting exception");
+        }
+        catch (IllegalArgumentException e)
+        {
+            
+        }
+    }
+    
+    /**
+     * Verify stream uses the default fetch size.
+     */
+    @Test
+    public void testStream()
+    {
+        Observation obs1 = new Observation().withCreatedTimestamp(200L).withUuid(UUID.randomUUID());
+        Observation obs2 = new Observation().withCreatedTimestamp(100L).withUuid(UUID.randomUUID());
+        when(m_DataStore.executeJdoQuery(Mockito.any(Query.class), anyMapOf(String.class, Object.class)))
+            .thenReturn(Arrays.asList(obs1, obs2));
+        
+        List<Observation> actualObs = m_SUT.stream().collect(Collectors.toList());
+        
+        assertThat(actualObs, contains(obs1, obs2));
+        
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(m_DataStore).executeJdoQuery(query.capture(), anyMapOf(String.class, Object.class));
+        verify(query.getValue()).setRange(0, ObservationQuery.DEFAULT_FETCH_SIZE);
+    }
+    
+    /**
+     * Verify explain reports the filters, ordering and the plan from the data store.
+     */
+    @Test
+    public void testExplain()
+    {
+        UUID uuid = UUID.randomUUID();
+        when(m_DataStore.explainJdoQuery(Mockito.any(Query.class))).thenReturn("SELECT ... /* index scan */");
+        
+        String explanation = m_SUT.withSystemId(5).withAssetUuid(uuid).withRange(0, 10).explain();
+        
+        assertThat(explanation, containsString(
+                String.format("Filter: " + ASSET_UUID_FILTER + " && systemId == 5", uuid)));
+        assertThat(explanation, containsString("Ordering: createdTimestamp descending"));
+        assertThat(explanation, containsString("Range: 0 to 10"));
+        assertThat(explanation, not(containsString("Expected index")));
+        assertThat(explanation, containsString("Database plan: SELECT ... /* index scan */"));
+        
+        // query is only explained, never run
+        verify(m_DataStore, never()).executeJdoQuery(Mockito.any(Query.class));
+    }
+    
+    /**
+     * Create the parameters expected for the next page when iterating by created timestamp.
+     */
+    private Map<String, Object> keysetParams(final long lastTimestamp, final UUID lastUuid)
+    {
+        Map<String, Object> params = new HashMap<>();
+        params.put("lastTimestamp", lastTimestamp);
+        params.put("lastUuid", lastUuid);
+        return params;
+    }
 }
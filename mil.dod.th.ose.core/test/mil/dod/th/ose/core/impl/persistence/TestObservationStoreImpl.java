@@ -16,10 +16,16 @@ package mil.dod.th.ose.core.impl.persistence;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.*;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -27,13 +33,18 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.jdo.Extent;
 import javax.jdo.FetchPlan;
+import javax.jdo.JDOException;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
@@ -45,6 +56,7 @@ import mil.dod.th.core.factory.FactoryDescriptor;
 import mil.dod.th.core.observation.types.Biological;
 import mil.dod.th.core.observation.types.CbrneTrigger;
 import mil.dod.th.core.observation.types.Chemical;
+import mil.dod.th.core.observation.types.ImageMetadata;
 import mil.dod.th.core.observation.types.Observation;
 import mil.dod.th.core.observation.types.Power;
 import mil.dod.th.core.observation.types.WaterQuality;
@@ -54,6 +66,7 @@ import mil.dod.th.core.persistence.PersistenceFailedException;
 import mil.dod.th.core.persistence.PersistentData;
 import mil.dod.th.core.pm.PowerManager;
 import mil.dod.th.core.pm.WakeLock;
+import mil.dod.th.core.types.DigitalMedia;
 import mil.dod.th.core.types.observation.ObservationSubTypeEnum;
 import mil.dod.th.core.validator.ValidationFailedException;
 import mil.dod.th.core.validator.Validator;
@@ -67,6 +80,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.event.Event;
@@ -75,6 +92,14 @@ import org.osgi.service.event.EventAdmin;
 public class TestObservationStoreImpl
 {
     private static final String ASSET_UUID_FILTER = "assetUuid == '%s'";
+    private static final String COORDINATES_QUERY = "SELECT a.ID_ID FROM OBSERVATION o JOIN OBSERVATION_ASSETLOCATION";
+    private static final String ORIENTATIONS_QUERY = 
+            "SELECT a.ID_ID FROM OBSERVATION o JOIN OBSERVATION_ASSETORIENTATION";
+    private static final String MEDIA_QUERY = "SELECT d.ID_ID FROM OBSERVATION o JOIN OBSERVATION_DIGITALMEDIA";
+    private static final String MEDIA_BLOBS_QUERY = 
+            "SELECT BLOBREFERENCE FROM DIGITALMEDIA WHERE BLOBREFERENCE IS NOT NULL";
+    private static final String REFERENCED_BLOBS_QUERY = 
+            "SELECT BLOBREFERENCE FROM DIGITALMEDIA WHERE BLOBREFERENCE IN";
     
     private ObservationStoreImpl m_SUT;
     private EventAdmin m_EventAdmin;
@@ -92,6 +117,7 @@ public class TestObservationStoreImpl
     private BundleContext m_Context;
     private PowerManager m_PowerManager;
     private WakeLock m_WakeLock;
+    private WakeLock m_ReadWakeLock;
        
     @Before
     public void setUp()
@@ -104,13 +130,22 @@ public class TestObservationStoreImpl
         m_PersistenceManager = mock(PersistenceManager.class);
         m_Transaction = mock(Transaction.class);
         m_ObsValidator = mock(Validator.class);
-        m_Query = mock(Query.class);
+        m_Query = mockQuery();
         
         when(m_PersistenceManagerFactoryCreator
                 .createPersistenceManagerFactory(Observation.class,
-                                                 "jdbc:h2:file:data-dir/datastores/ObservationStore"))
+                                                 "jdbc:h2:file:data-dir/datastores/ObservationStore;MVCC=TRUE"))
                 .thenReturn(m_PersistenceManagerFactory);
         when(m_PersistenceManagerFactory.getPersistenceManager()).thenReturn(m_PersistenceManager);
+        // read path copies queries to a pooled manager, hand back the same mock
+        when(m_PersistenceManager.newQuery((Object)anyObject())).thenAnswer(new Answer<Query>()
+        {
+            @Override
+            public Query answer(final InvocationOnMock invocation)
+            {
+                return (Query)invocation.getArguments()[0];
+            }
+        });
         when(m_PersistenceManager.currentTransaction()).thenReturn(m_Transaction);
         m_Extent = m_PersistenceManager.getExtent(PersistentData.class, true);
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(m_Query);
@@ -121,6 +156,8 @@ public class TestObservationStoreImpl
         m_PowerManager = mock(PowerManager.class);
         m_WakeLock = mock(WakeLock.class);
         when(m_PowerManager.createWakeLock(m_SUT.getClass(), "coreDataStore")).thenReturn(m_WakeLock);
+        m_ReadWakeLock = mock(WakeLock.class);
+        when(m_PowerManager.createWakeLock(m_SUT.getClass(), "coreDataStoreRead")).thenReturn(m_ReadWakeLock);
 
         m_SUT.setObservationValidator(m_ObsValidator);
         m_SUT.setEventAdmin(m_EventAdmin);
@@ -160,6 +197,7 @@ public class TestObservationStoreImpl
     {
         m_SUT.deactivate();
         verify(m_WakeLock).delete();
+        verify(m_ReadWakeLock).delete();
     }
     
     /**
@@ -181,7 +219,7 @@ public class TestObservationStoreImpl
         m_SUT.activate(Collections.unmodifiableMap(props), m_Context);
         
         // SET CACHE_SIZE should not be called at all as default will be used
-        verify(statement, never()).execute(anyString());
+        verify(statement, never()).execute(Mockito.startsWith("SET CACHE_SIZE"));
     }
     
     /**
@@ -266,11 +304,11 @@ public class TestObservationStoreImpl
 
         //verify
         verify(m_ObsValidator).validate(m_Observation);
-        verify(m_PersistenceManager).makePersistent(m_Observation);
+        verify(m_PersistenceManager).makePersistentAll(Arrays.asList(m_Observation));
         ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
         verify(m_EventAdmin, times(2)).postEvent(event.capture());
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(5)).activate();
+        verify(m_WakeLock, times(5)).cancel();
  
         //check first event does not observation
         assertThat(event.getAllValues().get(0).getTopic(), is(ObservationStore.TOPIC_OBSERVATION_PERSISTED));
@@ -299,14 +337,15 @@ public class TestObservationStoreImpl
         ValidationFailedException
     {
         m_Observation.setAssetUuid(UUID.randomUUID());
-        when(m_PersistenceManager.makePersistent(m_Observation)).thenReturn(m_Observation);
+        when(m_PersistenceManager.makePersistentAll(Arrays.asList(m_Observation)))
+            .thenReturn(Arrays.asList(m_Observation));
         m_SUT.merge(m_Observation);
 
         //verify
         ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
         verify(m_EventAdmin, times(2)).postEvent(event.capture());
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(5)).activate();
+        verify(m_WakeLock, times(5)).cancel();
  
         //check first event does not observation
         assertThat(event.getAllValues().get(0).getTopic(), is(ObservationStore.TOPIC_OBSERVATION_MERGED));
@@ -319,6 +358,175 @@ public class TestObservationStoreImpl
                 is(m_Observation));
     }
     
+    /**
+     * Verify an observation can be persisted without waiting and events are posted once committed.
+     */
+    @Test
+    public final void testPersistAsync() throws Exception
+    {
+        Observation obs = createObsWithReqFields();
+        when(m_PersistenceManager.makePersistentAll(Arrays.asList(obs))).thenReturn(Arrays.asList(obs));
+        
+        Future<Observation> future = m_SUT.persistAsync(obs);
+        
+        assertThat(future.get(5, TimeUnit.SECONDS), is(obs));
+        verify(m_ObsValidator).validate(obs);
+        verify(m_EventAdmin, times(2)).postEvent(Mockito.any(Event.class));
+        assertThat(m_SUT.getBatchWriter().getPersistedCount(), is(1L));
+    }
+    
+    /**
+     * Verify a failed async persist is reported through the future and no events are posted.
+     */
+    @Test
+    public final void testPersistAsyncFailure() throws Exception
+    {
+        Observation obs = createObsWithReqFields();
+        when(m_PersistenceManager.makePersistentAll(Arrays.asList(obs))).thenThrow(new JDOException("failed"));
+        
+        Future<Observation> future = m_SUT.persistAsync(obs);
+        
+        try
+        {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expecting exception");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), instanceOf(PersistenceFailedException.class));
+        }
+        verify(m_EventAdmin, never()).postEvent(Mockito.any(Event.class));
+    }
+    
+    /**
+     * Verify persisting once the store is no longer active fails through the future for an async persist and by 
+     * throwing for a blocking persist.
+     */
+    @Test
+    public final void testPersistNotActive() throws Exception
+    {
+        Observation obs = createObsWithReqFields();
+        m_SUT.getBatchWriter().stop();
+        
+        Future<Observation> future = m_SUT.persistAsync(obs);
+        try
+        {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expecting exception");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), instanceOf(PersistenceFailedException.class));
+        }
+        
+        try
+        {
+            m_SUT.persist(obs);
+            fail("Expecting exception");
+        }
+        catch (PersistenceFailedException e)
+        {
+            // expected
+        }
+        verify(m_PersistenceManager, never()).makePersistentAll(Mockito.anyCollection());
+        verify(m_EventAdmin, never()).postEvent(Mockito.any(Event.class));
+    }
+    
+    /**
+     * Verify a group of observations is persisted in a single transaction, replacing existing observations found with 
+     * one query, and an event is posted for each observation.
+     */
+    @Test
+    public final void testPersistOrReplaceAll() throws Exception
+    {
+        Observation obs1 = createObsWithReqFields().withUuid(UUID.randomUUID());
+        Observation obs2 = createObsWithReqFields().withUuid(UUID.randomUUID());
+        List<Observation> observations = Arrays.asList(obs1, obs2);
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(Arrays.asList(obs1.getUuid(), obs2.getUuid()))).thenReturn(1L);
+        
+        assertThat(m_SUT.persistOrReplaceAll(observations), is(1));
+        
+        verify(m_ObsValidator).validate(obs1);
+        verify(m_ObsValidator).validate(obs2);
+        InOrder inOrder = inOrder(m_PersistenceManager, deleteQuery, m_Transaction);
+        inOrder.verify(deleteQuery).deletePersistentAll(Arrays.asList(obs1.getUuid(), obs2.getUuid()));
+        inOrder.verify(m_PersistenceManager).makePersistentAll(observations);
+        inOrder.verify(m_Transaction).commit();
+        verify(deleteQuery).closeAll();
+        // persisted and persisted with obs events for each
+        verify(m_EventAdmin, times(4)).postEvent(Mockito.any(Event.class));
+        
+        // nothing written for an empty group
+        assertThat(m_SUT.persistOrReplaceAll(new ArrayList<Observation>()), is(0));
+        verify(m_PersistenceManager).makePersistentAll(anyCollection());
+    }
+    
+    /**
+     * Verify no observations or events are committed if the group fails to persist.
+     */
+    @Test
+    public final void testPersistOrReplaceAllFailure() throws Exception
+    {
+        Observation obs = createObsWithReqFields();
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(m_PersistenceManager.makePersistentAll(Arrays.asList(obs))).thenThrow(new JDOException("failed"));
+        // ignore the statements committed on activation
+        reset(m_Transaction);
+        when(m_Transaction.isActive()).thenReturn(true);
+        
+        try
+        {
+            m_SUT.persistOrReplaceAll(Arrays.asList(obs));
+            fail("Expecting exception");
+        }
+        catch (PersistenceFailedException e)
+        {
+            // expected
+        }
+        
+        verify(m_Transaction, never()).commit();
+        verify(m_Transaction).rollback();
+        verify(m_EventAdmin, never()).postEvent(Mockito.any(Event.class));
+    }
+    
+    /**
+     * Verify a failed persist is thrown to the caller when blocking.
+     */
+    @Test(expected = PersistenceFailedException.class)
+    public final void testPersistFailure() throws ValidationFailedException
+    {
+        Observation obs = createObsWithReqFields();
+        when(m_PersistenceManager.makePersistentAll(Arrays.asList(obs))).thenThrow(new JDOException("failed"));
+        
+        m_SUT.persist(obs);
+    }
+    
+    /**
+     * Verify batch settings can be updated.
+     */
+    @Test
+    public final void testModifiedBatchSettings()
+    {
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ObservationStoreConfig.PERSIST_BATCH_SIZE_KEY, 0);
+        try
+        {
+            m_SUT.modified(props);
+            fail("Expecting exception");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        
+        props.put(ObservationStoreConfig.PERSIST_BATCH_SIZE_KEY, 10);
+        props.put(ObservationStoreConfig.PERSIST_BATCH_DELAY_MS_KEY, 5L);
+        m_SUT.modified(props);
+    }
+    
     /**
      * Verify a new query object can be obtained.
      */
@@ -341,15 +549,20 @@ public class TestObservationStoreImpl
         Asset asset = mock(Asset.class);
         UUID assetUuid = UUID.randomUUID();
         when(asset.getUuid()).thenReturn(assetUuid);
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
-        when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
+        List<UUID> keys = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+        when(jdoQuery.execute()).thenReturn(2L, keys);
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(keys)).thenReturn(2L);
         
         Long obsRemoved = m_SUT.removeByAsset(asset);
         
         verify(jdoQuery).setFilter(String.format(ASSET_UUID_FILTER, assetUuid));
-        verify(jdoQuery).deletePersistentAll();
-        assertThat(obsRemoved, is(3827L));
+        verify(jdoQuery).setResult("uuid");
+        verify(deleteQuery).deletePersistentAll(keys);
+        assertThat(obsRemoved, is(2L));
         verify(m_WakeLock, times(5)).activate();
         verify(m_WakeLock, times(5)).cancel();
     }
@@ -361,15 +574,20 @@ public class TestObservationStoreImpl
     public final void testRemoveByAssetType()
     {
         // mock
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
-        when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
+        List<UUID> keys = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+        when(jdoQuery.execute()).thenReturn(2L, keys);
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(keys)).thenReturn(2L);
         
         Long obsRemoved = m_SUT.removeByAssetType("blah");
         
         verify(jdoQuery).setFilter("assetType == 'blah'");
-        verify(jdoQuery).deletePersistentAll();
-        assertThat(obsRemoved, is(3827L));
+        verify(jdoQuery).setResult("uuid");
+        verify(deleteQuery).deletePersistentAll(keys);
+        assertThat(obsRemoved, is(2L));
         verify(m_WakeLock, times(5)).activate();
         verify(m_WakeLock, times(5)).cancel();
     }
@@ -382,15 +600,20 @@ public class TestObservationStoreImpl
     {
         // mock
         UUID assetUuid = UUID.randomUUID();
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
-        when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
+        List<UUID> keys = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+        when(jdoQuery.execute()).thenReturn(2L, keys);
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(keys)).thenReturn(2L);
         
         Long obsRemoved = m_SUT.removeByAssetUuid(assetUuid);
         
         verify(jdoQuery).setFilter(String.format(ASSET_UUID_FILTER, assetUuid));
-        verify(jdoQuery).deletePersistentAll();
-        assertThat(obsRemoved, is(3827L));
+        verify(jdoQuery).setResult("uuid");
+        verify(deleteQuery).deletePersistentAll(keys);
+        assertThat(obsRemoved, is(2L));
         verify(m_WakeLock, times(5)).activate();
         verify(m_WakeLock, times(5)).cancel();
     }
@@ -403,15 +626,20 @@ public class TestObservationStoreImpl
     public final void testRemoveBySubType()
     {
         // mock
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
-        when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
+        List<UUID> keys = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+        when(jdoQuery.execute()).thenReturn(2L, keys);
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(keys)).thenReturn(2L);
         
         Long obsRemoved = m_SUT.removeBySubType(ObservationSubTypeEnum.DETECTION);
         
         verify(jdoQuery).setFilter("this.detection.id > 0");
-        verify(jdoQuery).deletePersistentAll();
-        assertThat(obsRemoved, is(3827L));
+        verify(jdoQuery).setResult("uuid");
+        verify(deleteQuery).deletePersistentAll(keys);
+        assertThat(obsRemoved, is(2L));
         verify(m_WakeLock, times(5)).activate();
         verify(m_WakeLock, times(5)).cancel();
     }
@@ -423,15 +651,20 @@ public class TestObservationStoreImpl
     public final void testRemoveBySystemId()
     {
         // mock
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
-        when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
+        List<UUID> keys = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+        when(jdoQuery.execute()).thenReturn(2L, keys);
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(keys)).thenReturn(2L);
         
         Long obsRemoved = m_SUT.removeBySystemId(42);
         
         verify(jdoQuery).setFilter("systemId == 42");
-        verify(jdoQuery).deletePersistentAll();
-        assertThat(obsRemoved, is(3827L));
+        verify(jdoQuery).setResult("uuid");
+        verify(deleteQuery).deletePersistentAll(keys);
+        assertThat(obsRemoved, is(2L));
         verify(m_WakeLock, times(5)).activate();
         verify(m_WakeLock, times(5)).cancel();
     }
@@ -460,10 +693,269 @@ public class TestObservationStoreImpl
         Statement statement = mock(Statement.class);
         when(sqlConn.createStatement()).thenReturn(statement);
         when(statement.execute(anyString())).thenThrow(new SQLException());
+        List<UUID> keys = Arrays.asList(UUID.randomUUID());
+        when(m_Query.execute()).thenReturn(1L, keys);
+        Query deleteQuery = mockQuery();
+        when(m_PersistenceManager.newQuery(m_Extent, ":keys.contains(uuid)")).thenReturn(deleteQuery);
+        when(deleteQuery.deletePersistentAll(keys)).thenReturn(1L);
         
         m_SUT.removeByAsset(asset);
     }
 
+    /**
+     * Verify only the entries referenced by the removed observations are checked and deleted if orphaned.
+     */
+    @Test
+    public final void testRemoveCleanupCandidates() throws SQLException
+    {
+        // mock
+        Connection sqlConn = (Connection)m_PersistenceManager.getDataStoreConnection();
+        Statement statement = mock(Statement.class);
+        when(sqlConn.createStatement()).thenReturn(statement);
+        Map<String, List<?>> results = new HashMap<>();
+        results.put(COORDINATES_QUERY, Arrays.asList(1L, 2L));
+        results.put(ORIENTATIONS_QUERY, Arrays.asList(5L));
+        results.put(MEDIA_QUERY, Arrays.asList(3L));
+        mockSqlResults(statement, results);
+        Observation obs = createObsWithReqFields().withUuid(UUID.randomUUID());
+        
+        m_SUT.remove(obs);
+        
+        verify(statement, times(3)).execute(Mockito.contains("WHERE o.UUID IN ('" + obs.getUuid() + "')"));
+        verify(statement).execute("SELECT BLOBREFERENCE FROM DIGITALMEDIA WHERE BLOBREFERENCE IS NOT NULL AND ID IN (3)");
+        verify(statement).execute("DELETE FROM COORDINATES WHERE ID IN (SELECT c.ID FROM COORDINATES c "
+                + "LEFT JOIN OBSERVATION_ASSETLOCATION a ON a.ID_ID = c.ID "
+                + "LEFT JOIN OBSERVATION_POINTINGLOCATION p ON p.ID_ID = c.ID "
+                + "LEFT JOIN DETECTION_TARGETLOCATION d ON d.ID_ID = c.ID "
+                + "WHERE c.ID IN (1, 2) AND a.ID_ID IS NULL AND p.ID_ID IS NULL AND d.ID_ID IS NULL)");
+        verify(statement).execute(Mockito.startsWith("DELETE FROM ORIENTATION"));
+        verify(statement).execute(Mockito.contains("WHERE c.ID IN (5) AND"));
+        verify(statement).execute(Mockito.startsWith("DELETE FROM DIGITALMEDIA"));
+        verify(statement).execute(Mockito.contains("WHERE c.ID IN (3) AND"));
+        // no blobs referenced by the media
+        verify(statement, never()).execute(Mockito.startsWith(REFERENCED_BLOBS_QUERY));
+        
+        // nothing left to check if the observation did not reference anything
+        results.clear();
+        m_SUT.remove(obs);
+        verify(statement, times(3)).execute(Mockito.startsWith("DELETE"));
+    }
+    
+    /**
+     * Verify large digital media is stored outside of the database when enabled, read back when queried and deleted 
+     * once no longer referenced.
+     */
+    @Test
+    public final void testDigitalMediaBlobStore() throws Exception
+    {
+        File dataDir = Files.createTempDirectory("obs-store").toFile();
+        try
+        {
+            when(m_PersistenceManagerFactoryCreator.createPersistenceManagerFactory(eq(Observation.class), 
+                    anyString())).thenReturn(m_PersistenceManagerFactory);
+            when(m_Context.getProperty(SystemConfigurationConstants.DATA_DIR_PROPERTY))
+                .thenReturn(dataDir.getPath());
+            Map<String, Object> props = new HashMap<String, Object>();
+            props.put(ObservationStoreConfig.BLOB_STORE_ENABLED_KEY, true);
+            props.put(ObservationStoreConfig.BLOB_STORE_MIN_SIZE_KEY, 10);
+            m_SUT.activate(props, m_Context);
+            Connection sqlConn = (Connection)m_PersistenceManager.getDataStoreConnection();
+            Statement statement = mock(Statement.class);
+            when(sqlConn.createStatement()).thenReturn(statement);
+            Map<String, List<?>> results = new HashMap<>();
+            mockSqlResults(statement, results);
+            
+            final byte[] image = new byte[1000];
+            Arrays.fill(image, (byte)7);
+            final byte[] smallImage = new byte[] {1, 2, 3};
+            final Observation obs = createObsWithReqFields().withDigitalMedia(new DigitalMedia(image, "image/jpeg"));
+            obs.withImageMetadata(new ImageMetadata().withMaskSamplesOfInterest(new DigitalMedia(smallImage, "mask")));
+            final DigitalMedia media = obs.getDigitalMedia();
+            final List<byte[]> committedValues = new ArrayList<>();
+            final List<Observation> committedObs = new ArrayList<>();
+            when(m_PersistenceManager.makePersistentAll(anyCollection())).thenAnswer(new Answer<List<Observation>>()
+            {
+                @Override
+                public List<Observation> answer(final InvocationOnMock invocation)
+                {
+                    @SuppressWarnings("unchecked")
+                    Observation committed = ((List<Observation>)invocation.getArguments()[0]).get(0);
+                    committedObs.add(committed);
+                    committedValues.add(committed.getDigitalMedia().getValue());
+                    committedValues.add(committed.getImageMetadata().getMaskSamplesOfInterest().get(0).getValue());
+                    return Arrays.asList(committed);
+                }
+            });
+            
+            m_SUT.persist(obs);
+            
+            // caller's observation is committed with the large media replaced by a reference during the commit only
+            assertThat(committedObs.get(0), is(sameInstance(obs)));
+            assertThat(DigitalMediaBlobStore.isReference(committedValues.get(0)), is(true));
+            assertThat(committedValues.get(1), is(smallImage));
+            assertThat(obs.getDigitalMedia(), is(sameInstance(media)));
+            assertThat(obs.getDigitalMedia().getValue(), is(image));
+            assertThat(obs.getImageMetadata().getMaskSamplesOfInterest().get(0).getValue(), is(smallImage));
+            final byte[] reference = committedValues.get(0);
+            File blob = new File(dataDir, ObservationStoreImpl.BLOB_DIR + "/" 
+                    + DigitalMediaBlobStore.getHash(reference).substring(0, 2) + "/" 
+                    + DigitalMediaBlobStore.getHash(reference));
+            assertThat(blob.length(), is(1000L));
+            
+            // query results have the reference replaced by the stored bytes
+            Observation stored = createObsWithReqFields().withUuid(UUID.randomUUID())
+                    .withDigitalMedia(new DigitalMedia(reference, "image/jpeg"));
+            m_ObservationCollection.add(stored);
+            assertThat(m_SUT.queryByAssetUuid(stored.getAssetUuid()), contains(stored));
+            assertThat(stored.getDigitalMedia().getValue(), is(image));
+            
+            // blob is kept while other media still reference it
+            stored.getDigitalMedia().setValue(reference);
+            results.put(MEDIA_QUERY, Arrays.asList(3L));
+            results.put(MEDIA_BLOBS_QUERY, Arrays.asList(reference));
+            results.put(REFERENCED_BLOBS_QUERY, Arrays.asList(reference));
+            m_SUT.remove(stored);
+            verify(statement).execute(Mockito.startsWith(
+                    "ALTER TABLE DIGITALMEDIA ADD COLUMN IF NOT EXISTS BLOBREFERENCE"));
+            verify(statement).execute(String.format("%s (X'%s')", REFERENCED_BLOBS_QUERY, 
+                    DigitalMediaBlobStore.toHex(reference)));
+            assertThat(blob.exists(), is(true));
+            
+            // no media references the blob anymore once removed
+            results.put(REFERENCED_BLOBS_QUERY, Collections.emptyList());
+            m_SUT.remove(stored);
+            assertThat(blob.exists(), is(false));
+        }
+        finally
+        {
+            deleteRecursively(dataDir);
+        }
+    }
+    
+    /**
+     * Verify digital media is left as stored when deferred by the query, the content can then be opened as a stream.
+     */
+    @Test
+    public final void testDigitalMediaDeferred() throws Exception
+    {
+        File dataDir = Files.createTempDirectory("obs-store").toFile();
+        try
+        {
+            when(m_PersistenceManagerFactoryCreator.createPersistenceManagerFactory(eq(Observation.class), 
+                    anyString())).thenReturn(m_PersistenceManagerFactory);
+            when(m_Context.getProperty(SystemConfigurationConstants.DATA_DIR_PROPERTY))
+                .thenReturn(dataDir.getPath());
+            Map<String, Object> props = new HashMap<String, Object>();
+            props.put(ObservationStoreConfig.BLOB_STORE_ENABLED_KEY, true);
+            props.put(ObservationStoreConfig.BLOB_STORE_MIN_SIZE_KEY, 10);
+            m_SUT.activate(props, m_Context);
+            
+            final byte[] image = new byte[1000];
+            Arrays.fill(image, (byte)7);
+            final List<byte[]> committedValues = new ArrayList<>();
+            final Observation obs = createObsWithReqFields().withDigitalMedia(new DigitalMedia(image, "image/jpeg"));
+            when(m_PersistenceManager.makePersistentAll(Arrays.asList(obs))).thenAnswer(new Answer<List<Observation>>()
+            {
+                @Override
+                public List<Observation> answer(final InvocationOnMock invocation)
+                {
+                    committedValues.add(obs.getDigitalMedia().getValue());
+                    return Arrays.asList(obs);
+                }
+            });
+            m_SUT.persist(obs);
+            
+            // query without the extended data
+            Query jdoQuery = mock(Query.class);
+            when(jdoQuery.getFetchPlan()).thenReturn(mock(FetchPlan.class));
+            when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
+            Observation stored = createObsWithReqFields().withDigitalMedia(
+                    new DigitalMedia(committedValues.get(0), "image/jpeg"));
+            when(jdoQuery.execute()).thenReturn(new ArrayList<>(Arrays.asList(stored)));
+            
+            assertThat(m_SUT.newQuery().withDigitalMediaDeferred().execute(), contains(stored));
+            
+            verify(jdoQuery.getFetchPlan()).removeGroup("extendedDataGroup");
+            assertThat(stored.getDigitalMedia().getValue(), is(committedValues.get(0)));
+            try (InputStream stream = m_SUT.openDigitalMedia(stored.getDigitalMedia()))
+            {
+                assertThat(readAll(stream), is(image));
+            }
+            
+            // media kept in the database can be opened the same way
+            try (InputStream stream = m_SUT.openDigitalMedia(new DigitalMedia(new byte[] {1, 2}, "mask")))
+            {
+                assertThat(readAll(stream), is(new byte[] {1, 2}));
+            }
+        }
+        finally
+        {
+            deleteRecursively(dataDir);
+        }
+    }
+    
+    /**
+     * Verify a query fails if the digital media referenced by an observation cannot be read from the blob store.
+     */
+    @Test
+    public final void testDigitalMediaBlobStoreReadFailure() throws Exception
+    {
+        File dataDir = Files.createTempDirectory("obs-store").toFile();
+        try
+        {
+            when(m_PersistenceManagerFactoryCreator.createPersistenceManagerFactory(eq(Observation.class), 
+                    anyString())).thenReturn(m_PersistenceManagerFactory);
+            when(m_Context.getProperty(SystemConfigurationConstants.DATA_DIR_PROPERTY))
+                .thenReturn(dataDir.getPath());
+            Map<String, Object> props = new HashMap<String, Object>();
+            props.put(ObservationStoreConfig.BLOB_STORE_ENABLED_KEY, true);
+            m_SUT.activate(props, m_Context);
+            
+            // reference to a blob that was never stored
+            final byte[] missingRef = new DigitalMediaBlobStore(new File(dataDir, "other")).store(new byte[100]);
+            Observation stored = createObsWithReqFields().withDigitalMedia(new DigitalMedia(missingRef, "image/jpeg"));
+            m_ObservationCollection.add(stored);
+            
+            try
+            {
+                m_SUT.queryByAssetUuid(stored.getAssetUuid());
+                fail("Expecting exception");
+            }
+            catch (final PersistenceFailedException e)
+            {
+                assertThat(e.getCause(), is(instanceOf(IOException.class)));
+            }
+        }
+        finally
+        {
+            deleteRecursively(dataDir);
+        }
+    }
+    
+    /**
+     * Verify digital media is kept in the database by default.
+     */
+    @Test
+    public final void testDigitalMediaBlobStoreDisabled() throws Exception
+    {
+        final byte[] image = new byte[10000];
+        Observation obs = createObsWithReqFields().withDigitalMedia(new DigitalMedia(image, "image/jpeg"));
+        final List<byte[]> committedValues = new ArrayList<>();
+        when(m_PersistenceManager.makePersistentAll(Arrays.asList(obs))).thenAnswer(new Answer<List<Observation>>()
+        {
+            @Override
+            public List<Observation> answer(final InvocationOnMock invocation)
+            {
+                committedValues.add(obs.getDigitalMedia().getValue());
+                return Arrays.asList(obs);
+            }
+        });
+        
+        m_SUT.persist(obs);
+        
+        assertThat(committedValues, contains(image));
+    }
+
     /**
      * Verify querying by asset sets the correct filter and returns the results. 
      */
@@ -471,7 +963,7 @@ public class TestObservationStoreImpl
     public final void testQueryByAsset()
     {
         // mock query
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
         when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
         
@@ -490,8 +982,10 @@ public class TestObservationStoreImpl
         
         verify(jdoQuery).setFilter(String.format(ASSET_UUID_FILTER, assetUuid));
         assertThat(actualObs, contains(obs1, obs2));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(4)).activate();
+        verify(m_WakeLock, times(4)).cancel();
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
     }
 
     /**
@@ -501,7 +995,7 @@ public class TestObservationStoreImpl
     public final void testQueryByAssetType()
     {
         // mock query
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
         when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
         
@@ -515,8 +1009,10 @@ public class TestObservationStoreImpl
         
         verify(jdoQuery).setFilter("assetType == 'blah'");
         assertThat(actualObs, contains(obs1, obs2));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(4)).activate();
+        verify(m_WakeLock, times(4)).cancel();
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
     }
     
     /**
@@ -526,7 +1022,7 @@ public class TestObservationStoreImpl
     public final void testQueryByAssetUuid()
     {
         // mock query
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
         when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
         
@@ -545,8 +1041,10 @@ public class TestObservationStoreImpl
         
         verify(jdoQuery).setFilter(String.format(ASSET_UUID_FILTER, assetUuid));
         assertThat(actualObs, contains(obs1, obs2));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(4)).activate();
+        verify(m_WakeLock, times(4)).cancel();
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
     }
 
     /**
@@ -556,7 +1054,7 @@ public class TestObservationStoreImpl
     public final void testQueryBySubType()
     {
         // mock
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
         when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
         
@@ -570,8 +1068,10 @@ public class TestObservationStoreImpl
         
         verify(jdoQuery).setFilter("this.detection.id > 0");
         assertThat(actualObs, contains(obs1, obs2));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(4)).activate();
+        verify(m_WakeLock, times(4)).cancel();
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
     }
     
     /**
@@ -581,7 +1081,7 @@ public class TestObservationStoreImpl
     public final void testQueryBySystemId()
     {
         //Mock
-        Query jdoQuery = mock(Query.class);
+        Query jdoQuery = mockQuery();
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(jdoQuery);
         when(jdoQuery.deletePersistentAll()).thenReturn(3827L);
         
@@ -595,8 +1095,10 @@ public class TestObservationStoreImpl
         
         verify(jdoQuery).setFilter("systemId == 42");
         assertThat(actualObs, contains(obs1, obs2));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(4)).activate();
+        verify(m_WakeLock, times(4)).cancel();
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
     }
     
     /**
@@ -618,8 +1120,8 @@ public class TestObservationStoreImpl
         
         assertThat((String)eventCaptor.getValue().getProperty(ObservationStore.EVENT_PROP_OBSERVATION_TYPE), 
                 is(ObservationSubTypeEnum.CHEMICAL.toString()));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(5)).activate();
+        verify(m_WakeLock, times(5)).cancel();
     }
     
     /**
@@ -641,8 +1143,8 @@ public class TestObservationStoreImpl
         
         assertThat((String)eventCaptor.getValue().getProperty(ObservationStore.EVENT_PROP_OBSERVATION_TYPE), 
                 is(ObservationSubTypeEnum.BIOLOGICAL.toString()));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(5)).activate();
+        verify(m_WakeLock, times(5)).cancel();
     }
 
     /**
@@ -664,8 +1166,8 @@ public class TestObservationStoreImpl
         
         assertThat((String)eventCaptor.getValue().getProperty(ObservationStore.EVENT_PROP_OBSERVATION_TYPE), 
                 is(ObservationSubTypeEnum.CBRNE_TRIGGER.toString()));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(5)).activate();
+        verify(m_WakeLock, times(5)).cancel();
     }
     
     /**
@@ -687,8 +1189,8 @@ public class TestObservationStoreImpl
         
         assertThat((String)eventCaptor.getValue().getProperty(ObservationStore.EVENT_PROP_OBSERVATION_TYPE), 
                 is(ObservationSubTypeEnum.WATER_QUALITY.toString()));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(5)).activate();
+        verify(m_WakeLock, times(5)).cancel();
     }
 
     /**
@@ -710,8 +1212,8 @@ public class TestObservationStoreImpl
         
         assertThat((String)eventCaptor.getValue().getProperty(ObservationStore.EVENT_PROP_OBSERVATION_TYPE), 
                 is(ObservationSubTypeEnum.POWER.toString()));
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_WakeLock, times(5)).activate();
+        verify(m_WakeLock, times(5)).cancel();
     }
 
     @Test
@@ -752,4 +1254,100 @@ public class TestObservationStoreImpl
         obs.setSystemInTestMode(true);
         return obs;
     }
+
+    /**
+     * Create a query mock with the fetch plan of queries created by the store, including the extended data.
+     */
+    private Query mockQuery()
+    {
+        Query query = mock(Query.class);
+        FetchPlan fetchPlan = mock(FetchPlan.class);
+        when(fetchPlan.getGroups()).thenReturn(Collections.singleton("extendedDataGroup"));
+        when(query.getFetchPlan()).thenReturn(fetchPlan);
+        return query;
+    }
+    
+    /**
+     * Mock the given statement so each SQL query starting with one of the keys of the given map returns the mapped 
+     * values as the single column of its rows. The map is checked when the query is executed, so it can be changed 
+     * between queries.
+     */
+    private void mockSqlResults(final Statement statement, final Map<String, List<?>> results) throws SQLException
+    {
+        when(statement.execute(anyString())).thenAnswer(new Answer<Boolean>()
+        {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) throws Throwable
+            {
+                final String sql = (String)invocation.getArguments()[0];
+                final List<Object> rows = new ArrayList<>();
+                for (Map.Entry<String, List<?>> entry : results.entrySet())
+                {
+                    if (sql.startsWith(entry.getKey()))
+                    {
+                        rows.addAll(entry.getValue());
+                    }
+                }
+                
+                final Object[] row = new Object[1];
+                final Iterator<Object> rowIterator = rows.iterator();
+                ResultSet resultSet = mock(ResultSet.class);
+                when(resultSet.next()).thenAnswer(new Answer<Boolean>()
+                {
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation)
+                    {
+                        if (!rowIterator.hasNext())
+                        {
+                            return false;
+                        }
+                        row[0] = rowIterator.next();
+                        return true;
+                    }
+                });
+                when(resultSet.getLong(1)).thenAnswer(new Answer<Long>()
+                {
+                    @Override
+                    public Long answer(final InvocationOnMock invocation)
+                    {
+                        return (Long)row[0];
+                    }
+                });
+                when(resultSet.getBytes(1)).thenAnswer(new Answer<byte[]>()
+                {
+                    @Override
+                    public byte[] answer(final InvocationOnMock invocation)
+                    {
+                        return (byte[])row[0];
+                    }
+                });
+                when(statement.getResultSet()).thenReturn(resultSet);
+                return sql.startsWith("SELECT");
+            }
+        });
+    }
+    
+    private byte[] readAll(final InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int read;
+        while ((read = stream.read()) != -1)
+        {
+            bytes.write(read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void deleteRecursively(final File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
 }
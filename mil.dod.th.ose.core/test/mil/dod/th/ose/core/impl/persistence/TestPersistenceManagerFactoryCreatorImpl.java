@@ -108,6 +108,9 @@ public class TestPersistenceManagerFactoryCreatorImpl
         assertThat(props, hasEntry("datanucleus.plugin.pluginRegistryClassName", 
                 (Object)OSGiPluginRegistry.class.getName()));
         assertThat(props, hasEntry("datanucleus.ConnectionURL", (Object)"test"));
+        assertThat(props, hasEntry("datanucleus.query.compilation.cached", (Object)"true"));
+        assertThat(props, hasEntry("datanucleus.cache.queryCompilation.type", (Object)"soft"));
+        assertThat(props, hasEntry("datanucleus.cache.queryCompilationDatastore.type", (Object)"soft"));
     }
     
     @SuppressWarnings("rawtypes")
@@ -16,8 +16,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -31,6 +34,7 @@ import java.util.UUID;
 
 import javax.jdo.Extent;
 import javax.jdo.FetchPlan;
+import javax.jdo.JDOException;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
@@ -42,13 +46,18 @@ import mil.dod.th.core.persistence.PersistentData;
 import mil.dod.th.core.persistence.PersistentDataStore;
 import mil.dod.th.core.pm.PowerManager;
 import mil.dod.th.core.pm.WakeLock;
+import mil.dod.th.ose.shared.EncodedEntity;
 import mil.dod.th.ose.shared.JdoDataStore;
+import mil.dod.th.ose.shared.PersistentEntityCodec;
 import mil.dod.th.ose.shared.SystemConfigurationConstants;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.event.EventAdmin;
 import org.powermock.api.mockito.PowerMockito;
@@ -66,6 +75,7 @@ public class TestPersistentDataStoreImpl
     private PersistenceManager m_PersistenceManager;
     private Transaction m_Transaction;
     private Query m_Query;
+    private Query m_UpdateQuery;
     private Extent<?> m_Extent;
     private UUID m_UUID = UUID.randomUUID();
     private PersistentData m_PersistentData;
@@ -74,6 +84,7 @@ public class TestPersistentDataStoreImpl
     private BundleContext m_Context;
     private PowerManager m_PowerManager;
     private WakeLock m_WakeLock;
+    private WakeLock m_ReadWakeLock;
 
     @Before
     public void setUp()
@@ -94,20 +105,34 @@ public class TestPersistentDataStoreImpl
         
         when(m_PersistenceManagerFactoryCreator
               .createPersistenceManagerFactory(PersistentData.class,
-                                               "jdbc:h2:file:data-dir/datastores/PersistentDataStore"))
+                                               "jdbc:h2:file:data-dir/datastores/PersistentDataStore;MVCC=TRUE"))
               .thenReturn(m_PersistenceManagerFactory);
         when(m_PersistenceManagerFactory.getPersistenceManager()).thenReturn(m_PersistenceManager);
+        // read path copies queries to a pooled manager, hand back the same mock
+        when(m_PersistenceManager.newQuery((Object)anyObject())).thenAnswer(new Answer<Query>()
+        {
+            @Override
+            public Query answer(final InvocationOnMock invocation)
+            {
+                return (Query)invocation.getArguments()[0];
+            }
+        });
         when(m_PersistenceManager.currentTransaction()).thenReturn(m_Transaction);
         m_Extent = m_PersistenceManager.getExtent(PersistentData.class, true);
         when(m_PersistenceManager.newQuery(m_Extent)).thenReturn(m_Query);
+        m_UpdateQuery = mock(Query.class);
+        when(m_PersistenceManager.newQuery(m_Extent, "uuid == :key")).thenReturn(m_UpdateQuery);
         m_PersistentDataCollection = new ArrayList<PersistentData>();
         when(m_Query.execute()).thenReturn(m_PersistentDataCollection);
+        when(m_Query.executeWithMap(anyMap())).thenReturn(m_PersistentDataCollection);
         m_FetchPlan = mock(FetchPlan.class);
         when(m_PersistenceManager.getFetchPlan()).thenReturn(m_FetchPlan);
         
         m_PowerManager = mock(PowerManager.class);
         m_WakeLock = mock(WakeLock.class);
         when(m_PowerManager.createWakeLock(m_SUT.getClass(), "coreDataStore")).thenReturn(m_WakeLock);
+        m_ReadWakeLock = mock(WakeLock.class);
+        when(m_PowerManager.createWakeLock(m_SUT.getClass(), "coreDataStoreRead")).thenReturn(m_ReadWakeLock);
 
         m_SUT.setEventAdmin(m_EventAdmin);
         m_SUT.setPersistenceManagerFactoryCreator(m_PersistenceManagerFactoryCreator);
@@ -128,6 +153,7 @@ public class TestPersistentDataStoreImpl
     {
         m_SUT.deactivate();
         verify(m_WakeLock).delete();
+        verify(m_ReadWakeLock).delete();
     }
     
     /**
@@ -231,8 +257,8 @@ public class TestPersistentDataStoreImpl
         
         assertThat(m_SUT.contains(m_PersistentData.getUUID()), is(true));
 
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
     }
 
     @Test
@@ -249,8 +275,8 @@ public class TestPersistentDataStoreImpl
         
         assertThat(m_SUT.find(m_PersistentData.getUUID()), is(notNullValue()));
 
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
     }
 
     @Test
@@ -296,48 +322,182 @@ public class TestPersistentDataStoreImpl
         catch (Throwable ex) { e = ex; }
         assertThat(e, is(instanceOf(IllegalArgumentException.class)));
         
-        when(m_PersistenceManager.makePersistent(m_PersistentData)).thenReturn(m_PersistentData);
+        // the stored instance is updated within a single transaction, the caller's data is not attached
+        PersistentData stored = new PersistentData(m_UUID, "OldDescription", getClass().getName(), 5L, 100L);
+        when(m_UpdateQuery.execute(m_UUID)).thenReturn(stored);
         
         m_SUT.merge(m_PersistentData);
-
+        
+        verify(m_UpdateQuery).setUnique(true);
+        verify(m_Transaction).commit();
+        verify(m_UpdateQuery).closeAll();
+        assertThat(stored.getDescription(), is("TestDescription"));
+        assertThat(stored.getEntity(), is((Object)10L));
+        verify(m_PersistenceManager, never()).makePersistent(Mockito.any(PersistentData.class));
         verify(m_WakeLock).activate();
         verify(m_WakeLock).cancel();
     }
     
+    /**
+     * Verify merging data that is not stored yet stores a copy of the data with the same timestamp.
+     */
+    @Test
+    public void testMergePersistentDataNotStored() throws Exception
+    {
+        final PersistentData data = new PersistentData(m_UUID, "desc", getClass().getName(), 5L, 100L);
+        ArgumentCaptor<PersistentData> dataCaptor = ArgumentCaptor.forClass(PersistentData.class);
+        
+        m_SUT.merge(data);
+        
+        verify(m_PersistenceManager).makePersistent(dataCaptor.capture());
+        PersistentData persisted = dataCaptor.getValue();
+        assertThat(persisted, is(not(sameInstance(data))));
+        assertThat(persisted.getUUID(), is(m_UUID));
+        assertThat(persisted.getDescription(), is("desc"));
+        assertThat(persisted.getContext(), is(getClass().getName()));
+        assertThat(persisted.getEntity(), is((Object)5L));
+        assertThat(persisted.getTimestamp(), is(100L));
+    }
+    
+    /**
+     * Verify entities with a codec are stored encoded and the caller's data is never changed.
+     */
+    @Test
+    public void testPersistMergeWithCodec() throws Exception
+    {
+        LongCodec codec = new LongCodec();
+        m_SUT.addEntityCodec(codec);
+        
+        final Collection<Object> storedEntities = new ArrayList<>();
+        when(m_PersistenceManager.makePersistent(Mockito.any(PersistentData.class))).thenAnswer(new Answer<PersistentData>()
+        {
+            @Override
+            public PersistentData answer(final InvocationOnMock invocation)
+            {
+                PersistentData data = (PersistentData)invocation.getArguments()[0];
+                storedEntities.add(data.getEntity());
+                return data;
+            }
+        });
+        
+        PersistentData persisted = m_SUT.persist(this.getClass(), m_UUID, "desc", 10L);
+        assertThat(persisted.getEntity(), is((Object)10L));
+        assertThat(storedEntities.size(), is(1));
+        assertThat(EntityCodecRegistry.isEncoded((Serializable)storedEntities.iterator().next()), is(true));
+        
+        final PersistentData stored = new PersistentData(m_UUID, "desc", getClass().getName(), 
+                (Serializable)storedEntities.iterator().next(), persisted.getTimestamp());
+        when(m_UpdateQuery.execute(m_UUID)).thenAnswer(new Answer<PersistentData>()
+        {
+            @Override
+            public PersistentData answer(final InvocationOnMock invocation)
+            {
+                storedEntities.add(stored.getEntity());
+                return stored;
+            }
+        });
+        
+        final Long entity = 11L;
+        persisted.setEntity(entity);
+        m_SUT.merge(persisted);
+        assertThat(persisted.getEntity(), is(sameInstance((Object)entity)));
+        assertThat(EntityCodecRegistry.isEncoded(stored.getEntity()), is(true));
+        assertThat(((EncodedEntity)stored.getEntity()).getData(), is(codec.encode(11L)));
+        
+        // without the codec, entity is stored as is
+        m_SUT.removeEntityCodec(codec);
+        m_SUT.merge(persisted);
+        assertThat(stored.getEntity(), is(sameInstance((Object)entity)));
+    }
+    
+    /**
+     * Verify encoded entities are decoded when queried and other entities are returned as stored.
+     */
+    @Test
+    public void testQueryDecodesEntities() throws Exception
+    {
+        LongCodec codec = new LongCodec();
+        EntityCodecRegistry registry = new EntityCodecRegistry();
+        registry.add(codec);
+        m_SUT.addEntityCodec(codec);
+        
+        PersistentData encoded = new PersistentData(UUID.randomUUID(), "desc", getClass().getName(), 
+                registry.encode(5L));
+        PersistentData legacy = new PersistentData(UUID.randomUUID(), "desc", getClass().getName(), 6L);
+        PersistentData bytes = new PersistentData(UUID.randomUUID(), "desc", getClass().getName(), new byte[] {1, 2});
+        m_PersistentDataCollection.add(encoded);
+        m_PersistentDataCollection.add(legacy);
+        m_PersistentDataCollection.add(bytes);
+        
+        Collection<PersistentData> results = m_SUT.query(getClass());
+        assertThat(results, contains(encoded, legacy, bytes));
+        assertThat(encoded.getEntity(), is((Object)5L));
+        assertThat(legacy.getEntity(), is((Object)6L));
+        assertThat((byte[])bytes.getEntity(), is(new byte[] {1, 2}));
+        
+        // find uses the generic query path
+        encoded.setEntity(registry.encode(7L));
+        assertThat(m_SUT.find(encoded.getUUID()).getEntity(), is((Object)7L));
+    }
+    
     @Test
     public void testRemoveMatchingClass()
     {
+        when(m_Query.executeWithMap(anyMap())).thenReturn(0L);
+
         m_SUT.removeMatching(this.getClass());
 
-        verify(m_WakeLock).activate();
-        verify(m_WakeLock).cancel();
+        // nothing matches so only the count is queried
+        verify(m_Query).setResult("count(this)");
+        verify(m_Query, never()).setResult("uuid");
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
+        verify(m_WakeLock, never()).activate();
     }
     
     @Test
     public void testRemoveMatchingClassDateDate()
     {
+        when(m_Query.executeWithMap(anyMap())).thenReturn(0L);
+
         m_SUT.removeMatching(this.getClass(), new Date(), new Date());
 
-        verify(m_WakeLock).activate();
-        verify(m_WakeLock).cancel();
+        // nothing matches so only the count is queried
+        verify(m_Query).setResult("count(this)");
+        verify(m_Query, never()).setResult("uuid");
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
+        verify(m_WakeLock, never()).activate();
     }
 
     @Test
     public void testRemoveMatchingClassString()
     {
+        when(m_Query.executeWithMap(anyMap())).thenReturn(0L);
+
         m_SUT.removeMatching(this.getClass(), m_PersistentData.getDescription());
 
-        verify(m_WakeLock).activate();
-        verify(m_WakeLock).cancel();
+        // nothing matches so only the count is queried
+        verify(m_Query).setResult("count(this)");
+        verify(m_Query, never()).setResult("uuid");
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
+        verify(m_WakeLock, never()).activate();
     }
 
     @Test
     public void testRemoveMatchingClassStringDateDate()
     {
+        when(m_Query.executeWithMap(anyMap())).thenReturn(0L);
+
         m_SUT.removeMatching(this.getClass(), m_PersistentData.getDescription(), new Date(), new Date());
 
-        verify(m_WakeLock).activate();
-        verify(m_WakeLock).cancel();
+        // nothing matches so only the count is queried
+        verify(m_Query).setResult("count(this)");
+        verify(m_Query, never()).setResult("uuid");
+        verify(m_ReadWakeLock).activate();
+        verify(m_ReadWakeLock).cancel();
+        verify(m_WakeLock, never()).activate();
     }
 
     @Test
@@ -354,6 +514,151 @@ public class TestPersistentDataStoreImpl
         verify(m_WakeLock).cancel();
     }
 
+    /**
+     * Verify queries use a filter with parameters so the filter does not change with the values and the values are 
+     * bound when executing.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testQueryParameters()
+    {
+        Date startTime = new Date(100);
+        Date stopTime = new Date(200);
+        
+        m_SUT.query(this.getClass(), "it's", startTime, stopTime);
+        
+        verify(m_Query).setFilter("context == :context && description == :description && "
+                + "timestamp >= :startTime && timestamp <= :stopTime");
+        verify(m_Query).setOrdering("timestamp descending");
+        
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<Map> paramCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(m_Query).executeWithMap(paramCaptor.capture());
+        Map<String, Object> params = paramCaptor.getValue();
+        assertThat(params, hasEntry("context", (Object)this.getClass().getName()));
+        assertThat(params, hasEntry("description", (Object)"it's"));
+        assertThat(params, hasEntry("startTime", (Object)100L));
+        assertThat(params, hasEntry("stopTime", (Object)200L));
+        verify(m_Query, never()).execute();
+    }
+    
+    /**
+     * Verify queries by context and description are cached until the store changes.
+     */
+    @Test
+    public void testQueryClassStringCached() throws Exception
+    {
+        addMockEntry();
+        
+        Collection<PersistentData> results = m_SUT.query(this.getClass(), "TestDescription");
+        assertThat(results, contains(m_PersistentData));
+        Collection<PersistentData> cachedResults = m_SUT.query(this.getClass(), "TestDescription");
+        assertThat(cachedResults.size(), is(1));
+        PersistentData cached = cachedResults.iterator().next();
+        assertThat(cached, is(not(sameInstance(m_PersistentData))));
+        assertThat(cached.getUUID(), is(m_UUID));
+        assertThat(cached.getDescription(), is("TestDescription"));
+        assertThat(cached.getContext(), is(getClass().getName()));
+        assertThat(cached.getEntity(), is((Object)10L));
+        assertThat(cached.getTimestamp(), is(m_PersistentData.getTimestamp()));
+        assertThat(m_SUT.getReadCacheCount(), is(1));
+        verify(m_Query, times(1)).executeWithMap(anyMap());
+        
+        // different description is a different entry
+        m_SUT.query(this.getClass(), "other");
+        assertThat(m_SUT.getReadCacheCount(), is(2));
+        verify(m_Query, times(2)).executeWithMap(anyMap());
+        
+        // any change to the store clears the cache
+        when(m_PersistenceManager.makePersistent(m_PersistentData)).thenReturn(m_PersistentData);
+        m_SUT.merge(m_PersistentData);
+        assertThat(m_SUT.getReadCacheCount(), is(0));
+        
+        m_SUT.query(this.getClass(), "TestDescription");
+        verify(m_Query, times(3)).executeWithMap(anyMap());
+        
+        m_SUT.remove(m_PersistentData);
+        assertThat(m_SUT.getReadCacheCount(), is(0));
+    }
+    
+    /**
+     * Verify changes made by a caller to cached results, including a merge that fails, are never seen by other 
+     * callers.
+     */
+    @Test
+    public void testQueryClassStringCacheIsolated() throws Exception
+    {
+        m_PersistentDataCollection.add(
+                new PersistentData(m_UUID, "desc", getClass().getName(), new byte[] {1, 2, 3}, 100L));
+        
+        PersistentData first = m_SUT.query(getClass(), "desc").iterator().next();
+        PersistentData second = m_SUT.query(getClass(), "desc").iterator().next();
+        assertThat(second, is(not(sameInstance(first))));
+        verify(m_Query, times(1)).executeWithMap(anyMap());
+        
+        // edit the results in place like callers do before merging, merge fails
+        ((byte[])first.getEntity())[0] = 9;
+        second.setEntity(new byte[] {4, 5, 6});
+        second.setDescription("edited");
+        when(m_UpdateQuery.execute(m_UUID)).thenThrow(new JDOException("failed"));
+        try
+        {
+            m_SUT.merge(second);
+            fail("Expecting exception");
+        }
+        catch (final PersistenceFailedException e)
+        {
+            // expected
+        }
+        
+        PersistentData third = m_SUT.query(getClass(), "desc").iterator().next();
+        assertThat((byte[])third.getEntity(), is(new byte[] {1, 2, 3}));
+        assertThat(third.getDescription(), is("desc"));
+        verify(m_Query, times(1)).executeWithMap(anyMap());
+    }
+    
+    /**
+     * Verify results with entities that callers could change are not cached.
+     */
+    @Test
+    public void testQueryClassStringMutableEntityNotCached()
+    {
+        m_PersistentDataCollection.add(new PersistentData(m_UUID, "desc", getClass().getName(), new Date(100L)));
+        
+        m_SUT.query(getClass(), "desc");
+        m_SUT.query(getClass(), "desc");
+        
+        assertThat(m_SUT.getReadCacheCount(), is(0));
+        verify(m_Query, times(2)).executeWithMap(anyMap());
+    }
+    
+    /**
+     * Verify the read cache is limited to the configured size and can be disabled.
+     */
+    @Test
+    public void testQueryClassStringCacheSize()
+    {
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(PersistentDataStoreConfig.READ_CACHE_SIZE_KEY, 2);
+        m_SUT.modified(props);
+        
+        m_SUT.query(this.getClass(), "a");
+        m_SUT.query(this.getClass(), "b");
+        m_SUT.query(this.getClass(), "c");
+        assertThat(m_SUT.getReadCacheCount(), is(2));
+        
+        // least recently used entry was removed
+        m_SUT.query(this.getClass(), "a");
+        verify(m_Query, times(4)).executeWithMap(anyMap());
+        
+        props.put(PersistentDataStoreConfig.READ_CACHE_SIZE_KEY, 0);
+        m_SUT.modified(props);
+        m_SUT.query(this.getClass(), "a");
+        m_SUT.query(this.getClass(), "a");
+        assertThat(m_SUT.getReadCacheCount(), is(0));
+        verify(m_Query, times(6)).executeWithMap(anyMap());
+    }
+
     @Test
     public void testQueryClassDateDate()
     {
@@ -366,8 +671,8 @@ public class TestPersistentDataStoreImpl
         
         assertThat(m_SUT.query(this.getClass(), startTime, stopTime).size(), is(1));
 
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
     }
 
     @Test
@@ -384,8 +689,8 @@ public class TestPersistentDataStoreImpl
         assertThat(m_SUT.query(this.getClass(), m_PersistentData.getDescription(), startTime, stopTime).size(), 
                 is(1));
 
-        verify(m_WakeLock, times(2)).activate();
-        verify(m_WakeLock, times(2)).cancel();
+        verify(m_ReadWakeLock, times(2)).activate();
+        verify(m_ReadWakeLock, times(2)).cancel();
     }
     
     @Test
@@ -410,4 +715,28 @@ public class TestPersistentDataStoreImpl
     {
         m_PersistentDataCollection.add(m_PersistentData);
     }
+
+    /**
+     * Codec used to test encoding of entities.
+     */
+    static class LongCodec implements PersistentEntityCodec<Long>
+    {
+        @Override
+        public Class<Long> getEntityType()
+        {
+            return Long.class;
+        }
+
+        @Override
+        public byte[] encode(final Long entity)
+        {
+            return ByteBuffer.allocate(8).putLong(entity).array();
+        }
+
+        @Override
+        public Long decode(final byte[] data, final int offset, final int length)
+        {
+            return ByteBuffer.wrap(data, offset, length).getLong();
+        }
+    }
 }
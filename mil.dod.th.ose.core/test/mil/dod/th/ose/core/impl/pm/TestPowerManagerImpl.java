@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 import java.util.Dictionary;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import mil.dod.th.core.factory.FactoryDescriptor;
@@ -29,6 +30,8 @@ import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.pm.PlatformPowerManager;
 import mil.dod.th.core.pm.WakeLock;
 import mil.dod.th.core.pm.WakeLockState;
+import mil.dod.th.ose.core.pm.api.WakeLockActivationStats;
+import mil.dod.th.ose.shared.pm.CountingWakeLock;
 import mil.dod.th.ose.test.ComponentFactoryMocker;
 import mil.dod.th.ose.test.ComponentFactoryMocker.ComponentInfo;
 
@@ -36,6 +39,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentFactory;
 
 public class TestPowerManagerImpl
@@ -544,6 +548,83 @@ public class TestPowerManagerImpl
         assertThat(contexts.contains(FactoryObjectProxy.class), is(true));
     }
     
+    /**
+     * Verify a registered counting wake lock only activates the platform lock once for back-to-back operations within 
+     * the hysteresis window and cancels it after the window expires.
+     */
+    @Test
+    public void testCountingWakeLockHysteresis()
+    {
+        BundleContext context = mock(BundleContext.class);
+        when(context.getProperty(PowerManagerImpl.WAKELOCK_HYSTERESIS_PROPERTY)).thenReturn("50");
+        m_SUT.activate(context);
+        
+        WakeLock lock = m_SUT.createWakeLock(TestContext1.class, "lock1");
+        when(lock.getId()).thenReturn("lock1");
+        doReturn(TestContext1.class).when(lock).getContext();
+        CountingWakeLock countingLock = new CountingWakeLock(lock);
+        m_SUT.registerCountingWakeLock(countingLock);
+        
+        countingLock.activate();
+        countingLock.cancel();
+        countingLock.activate();
+        countingLock.cancel();
+        
+        verify(lock, times(1)).activate();
+        verify(lock, timeout(1000)).cancel();
+        
+        m_SUT.deactivate();
+    }
+    
+    /**
+     * Verify activation statistics are grouped by context and kept after the lock is deleted.
+     */
+    @Test
+    public void testGetActivationStats()
+    {
+        // invalid hysteresis is ignored
+        BundleContext context = mock(BundleContext.class);
+        when(context.getProperty(PowerManagerImpl.WAKELOCK_HYSTERESIS_PROPERTY)).thenReturn("abc");
+        m_SUT.activate(context);
+        
+        WakeLock lock1 = m_SUT.createWakeLock(TestContext1.class, "lock1");
+        when(lock1.getId()).thenReturn("lock1");
+        doReturn(TestContext1.class).when(lock1).getContext();
+        WakeLock lock2 = m_SUT.createWakeLock(TestContext2.class, "lock2");
+        doReturn(TestContext2.class).when(lock2).getContext();
+        
+        CountingWakeLock countingLock1 = new CountingWakeLock(lock1);
+        CountingWakeLock countingLock2 = new CountingWakeLock(lock2);
+        m_SUT.registerCountingWakeLock(countingLock1);
+        m_SUT.registerCountingWakeLock(countingLock2);
+        
+        countingLock1.activate();
+        countingLock1.activate();
+        countingLock1.cancel();
+        countingLock1.cancel();
+        countingLock2.activate();
+        countingLock2.cancel();
+        
+        // no hysteresis, canceled right away
+        verify(lock1).cancel();
+        
+        Map<Class<?>, WakeLockActivationStats> stats = m_SUT.getActivationStats();
+        assertThat(stats.size(), is(2));
+        assertThat(stats.get(TestContext1.class).getActivateCount(), is(2L));
+        assertThat(stats.get(TestContext1.class).getLockActivateCount(), is(1L));
+        assertThat(stats.get(TestContext1.class).getActivateRate(), is(greaterThan(0.0)));
+        assertThat(stats.get(TestContext2.class).getActivateCount(), is(1L));
+        
+        m_SUT.deleteWakeLock(lock1);
+        countingLock1.activate();
+        
+        stats = m_SUT.getActivationStats();
+        assertThat(stats.get(TestContext1.class).getActivateCount(), is(2L));
+        assertThat(stats.get(TestContext1.class).getLockActivateCount(), is(1L));
+        
+        m_SUT.deactivate();
+    }
+
     /**
      * Method to create a mocked instance of a FactoryObject.
      * @return
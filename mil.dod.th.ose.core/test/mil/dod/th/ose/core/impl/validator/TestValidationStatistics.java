@@ -0,0 +1,58 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.validator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ */
+public class TestValidationStatistics
+{
+    /**
+     * Verify latencies are placed in power of 2 microsecond buckets and the summary values are calculated.
+     */
+    @Test
+    public void testRecord()
+    {
+        ValidationStatistics sut = new ValidationStatistics();
+        assertThat(sut.getAverageMicros(), is(0.0));
+        assertThat(sut.getPercentileMicros(50), is(0L));
+        
+        sut.record(500); // < 1us
+        sut.record(TimeUnit.MICROSECONDS.toNanos(3)); // < 4us
+        sut.record(TimeUnit.MICROSECONDS.toNanos(3));
+        sut.record(TimeUnit.MICROSECONDS.toNanos(100)); // < 128us
+        sut.record(TimeUnit.SECONDS.toNanos(5)); // last bucket
+        sut.recordSkipped();
+        
+        long[] buckets = sut.getBuckets();
+        assertThat(buckets[0], is(1L));
+        assertThat(buckets[2], is(2L));
+        assertThat(buckets[7], is(1L));
+        assertThat(buckets[ValidationStatistics.BUCKET_COUNT - 1], is(1L));
+        
+        assertThat(sut.getCount(), is(5L));
+        assertThat(sut.getSkippedCount(), is(1L));
+        assertThat(sut.getMaxMicros(), is(5000000L));
+        assertThat(sut.getPercentileMicros(50), is(4L));
+        assertThat(sut.getPercentileMicros(80), is(128L));
+        assertThat(sut.getPercentileMicros(100), is(5000000L));
+        assertThat(sut.formatHistogram(), is("<1us=1 <4us=2 <128us=1 >=1048576us=1"));
+        assertThat(sut.toString(), containsString("count=5, skipped=1"));
+    }
+}
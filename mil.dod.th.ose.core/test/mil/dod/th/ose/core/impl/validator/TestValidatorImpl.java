@@ -13,6 +13,7 @@
 package mil.dod.th.ose.core.impl.validator;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
@@ -20,12 +21,15 @@ import static org.mockito.Mockito.*;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.MarshalException;
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.annotation.XmlType;
 import javax.xml.bind.util.JAXBSource;
 import javax.xml.namespace.QName;
@@ -33,8 +37,10 @@ import javax.xml.transform.Source;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
 import mil.dod.th.core.asset.commands.SetPanTiltCommand;
+import mil.dod.th.core.observation.types.Observation;
 import mil.dod.th.core.validator.ValidationFailedException;
 import mil.dod.th.core.xml.XmlMarshalService;
 import mil.dod.th.ose.core.xml.JAXBContextFactory;
@@ -61,6 +67,11 @@ public class TestValidatorImpl
     private Validator m_Validator;
     private Bundle m_Bundle;
     private Schema m_Schema;
+    private BundleContext m_BundleContext;
+    private JAXBContext m_JAXBContext;
+    private Marshaller m_Marshaller;
+    private ValidatorHandler m_ValidatorHandler;
+    private XmlService m_XmlService;
     
     class TestClass {}
     
@@ -72,26 +83,36 @@ public class TestValidatorImpl
         
         JAXBContextFactory jaxbContextFactory = mock(JAXBContextFactory.class);
         m_SUT.setJAXBContextFactory(jaxbContextFactory);
-        when(jaxbContextFactory.getContext(TestClass.class)).thenReturn(mock(JAXBContext.class));
+        m_JAXBContext = mock(JAXBContext.class);
+        when(jaxbContextFactory.getContext(Matchers.any(Class.class))).thenReturn(m_JAXBContext);
+        m_Marshaller = mock(Marshaller.class);
+        when(m_JAXBContext.createMarshaller()).thenReturn(m_Marshaller);
         
         URL url = new URL("file:schema.xsd");
-        BundleContext context = mock(BundleContext.class);
+        m_BundleContext = mock(BundleContext.class);
         m_Bundle = mock(Bundle.class);
-        when(context.getBundle()).thenReturn(m_Bundle);
+        when(m_BundleContext.getBundle()).thenReturn(m_Bundle);
         when(m_Bundle.getResource(anyString())).thenReturn(url);
         
-        XmlService xmlService = mock(XmlService.class);
-        m_SUT.setXmlService(xmlService);
-        when(xmlService.createJAXBSource(Matchers.any(JAXBContext.class), anyObject()))
+        m_XmlService = mock(XmlService.class);
+        m_SUT.setXmlService(m_XmlService);
+        when(m_XmlService.createJAXBSource(Matchers.any(JAXBContext.class), anyObject()))
             .thenReturn(mock(JAXBSource.class));
         m_SchemaFactory = mock(SchemaFactory.class);
-        when(xmlService.createSchemaFactory(XMLConstants.W3C_XML_SCHEMA_NS_URI)).thenReturn(m_SchemaFactory);
+        when(m_XmlService.createSchemaFactory(XMLConstants.W3C_XML_SCHEMA_NS_URI)).thenReturn(m_SchemaFactory);
         m_Schema = mock(Schema.class);
         when(m_SchemaFactory.newSchema(url)).thenReturn(m_Schema);
         m_Validator = mock(Validator.class);
         when(m_Schema.newValidator()).thenReturn(m_Validator);
+        m_ValidatorHandler = mock(ValidatorHandler.class);
+        when(m_Schema.newValidatorHandler()).thenReturn(m_ValidatorHandler);
+        
+        XmlMarshalService xmlMarshallService = mock(XmlMarshalService.class);
+        m_SUT.setXMLMarshaller(xmlMarshallService);
+        when(xmlMarshallService.createXmlByteArray(anyObject(), eq(true))).thenReturn("<blah>".getBytes());
         
-        m_SUT.activate(context);
+        // most tests cover validating a source, direct validation is covered separately
+        m_SUT.activate(m_BundleContext, createProps(false));
     }
 
     /**
@@ -261,4 +282,137 @@ public class TestValidatorImpl
             //expected
         }
     }
+    
+    /**
+     * Verify the object is marshalled straight into a validator handler when direct validation is enabled and that the
+     * marshaller and handler are reused.
+     */
+    @Test
+    public void testValidateDirect() throws Exception
+    {
+        m_SUT.modified(createProps(true));
+        final TestClass data = new TestClass();
+        
+        m_SUT.validate(data);
+        m_SUT.validate(data);
+        
+        verify(m_Marshaller, times(2)).marshal(data, m_ValidatorHandler);
+        verify(m_Schema, times(1)).newValidatorHandler();
+        verify(m_JAXBContext, times(1)).createMarshaller();
+        verify(m_XmlService, never()).createJAXBSource(Matchers.any(JAXBContext.class), anyObject());
+        verify(m_Validator, never()).validate(Matchers.any(Source.class));
+    }
+    
+    /**
+     * Verify that a command is wrapped in a {@link JAXBElement} before being marshalled directly.
+     */
+    @Test
+    public void testValidateDirectCommand() throws Exception
+    {
+        m_SUT.modified(createProps(true));
+        final SetPanTiltCommand data = new SetPanTiltCommand();
+        
+        m_SUT.validate(data);
+        
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<JAXBElement> jaxElementCap = ArgumentCaptor.forClass(JAXBElement.class);
+        verify(m_Marshaller).marshal(jaxElementCap.capture(), eq(m_ValidatorHandler));
+        assertThat(jaxElementCap.getValue().getValue(), is((Object)data));
+        assertThat(jaxElementCap.getValue().getName().getLocalPart(), is("setPanTiltCommand"));
+    }
+    
+    /**
+     * Verify a validation error reported while marshalling directly includes the object's XML and the validator is not
+     * reused afterwards.
+     */
+    @Test
+    public void testValidateDirectInvalid() throws Exception
+    {
+        m_SUT.modified(createProps(true));
+        final TestClass data = new TestClass();
+        doThrow(new MarshalException(new SAXException("blah"))).when(m_Marshaller).marshal(data, m_ValidatorHandler);
+        
+        try
+        {
+            m_SUT.validate(data);
+            fail("Expecting exception");
+        }
+        catch (ValidationFailedException exception)
+        {
+            assertThat(exception.getMessage(), is("Problem validating XML:\n<blah>"));
+            assertThat(exception.getCause(), is(instanceOf(SAXException.class)));
+        }
+        
+        // other marshalling errors are not validation errors
+        doThrow(new MarshalException("bad object")).when(m_Marshaller).marshal(data, m_ValidatorHandler);
+        try
+        {
+            m_SUT.validate(data);
+            fail("Expecting exception");
+        }
+        catch (ValidationFailedException exception)
+        {
+            assertThat(exception.getCause(), is(instanceOf(MarshalException.class)));
+        }
+        
+        verify(m_Schema, times(2)).newValidatorHandler();
+    }
+    
+    /**
+     * Verify only 1 in N observations from a trusted asset are validated, while others are always validated.
+     */
+    @Test
+    public void testTrustedSampling() throws Exception
+    {
+        Map<String, Object> props = createProps(false);
+        props.put(ValidatorConfig.TRUSTED_ASSET_TYPES_KEY, new String[] {"trusted.Asset"});
+        props.put(ValidatorConfig.TRUSTED_SAMPLE_RATE_KEY, 3);
+        m_SUT.modified(props);
+        
+        Observation trusted = new Observation().withAssetType("trusted.Asset");
+        Observation untrusted = new Observation().withAssetType("other.Asset");
+        for (int i = 0; i < 10; i++)
+        {
+            m_SUT.validate(trusted);
+            m_SUT.validate(untrusted);
+        }
+        
+        // trusted observations 0, 3, 6 and 9 are validated along with all 10 untrusted
+        verify(m_Validator, times(14)).validate(Matchers.any(Source.class));
+        ValidationStatistics statistics = m_SUT.getStatistics(Observation.class);
+        assertThat(statistics.getCount(), is(14L));
+        assertThat(statistics.getSkippedCount(), is(6L));
+        
+        // sample rate of 1 validates everything
+        props.put(ValidatorConfig.TRUSTED_SAMPLE_RATE_KEY, 1);
+        m_SUT.modified(props);
+        m_SUT.validate(trusted);
+        m_SUT.validate(trusted);
+        verify(m_Validator, times(16)).validate(Matchers.any(Source.class));
+    }
+    
+    /**
+     * Verify latency is recorded for each class validated.
+     */
+    @Test
+    public void testStatistics() throws Exception
+    {
+        m_SUT.validate(new TestClass());
+        m_SUT.validate(new TestClass());
+        
+        ValidationStatistics statistics = m_SUT.getStatistics(TestClass.class);
+        assertThat(statistics.getCount(), is(2L));
+        assertThat(statistics.getSkippedCount(), is(0L));
+        assertThat(m_SUT.getStatistics(SetPanTiltCommand.class).getCount(), is(0L));
+        
+        // logs the statistics
+        m_SUT.deactivate();
+    }
+    
+    private Map<String, Object> createProps(final boolean directValidation)
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ValidatorConfig.DIRECT_VALIDATION_ENABLED_KEY, directValidation);
+        return props;
+    }
 }
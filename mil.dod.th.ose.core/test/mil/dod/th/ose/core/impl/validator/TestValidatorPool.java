@@ -0,0 +1,92 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.core.impl.validator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+
+import mil.dod.th.ose.core.impl.validator.ValidatorPool.DirectValidator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class TestValidatorPool
+{
+    private ValidatorPool m_SUT;
+    private Schema m_Schema;
+    private JAXBContext m_JAXBContext;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        m_Schema = mock(Schema.class);
+        when(m_Schema.newValidator()).thenAnswer(invocation -> mock(Validator.class));
+        when(m_Schema.newValidatorHandler()).thenAnswer(invocation -> mock(ValidatorHandler.class));
+        m_JAXBContext = mock(JAXBContext.class);
+        when(m_JAXBContext.createMarshaller()).thenAnswer(invocation -> mock(Marshaller.class));
+        
+        m_SUT = new ValidatorPool(m_Schema, m_JAXBContext, 1);
+    }
+    
+    /**
+     * Verify a new validator is created for each borrower while none are idle, that returned validators are reset and
+     * reused and that the number of idle validators is limited.
+     */
+    @Test
+    public void testBorrowValidator()
+    {
+        Validator validator1 = m_SUT.borrowValidator();
+        Validator validator2 = m_SUT.borrowValidator();
+        assertThat(validator1, is(not(sameInstance(validator2))));
+        verify(m_Schema, times(2)).newValidator();
+        
+        m_SUT.release(validator1);
+        m_SUT.release(validator2);
+        verify(validator1).reset();
+        verify(validator2).reset();
+        
+        // only 1 is kept
+        assertThat(m_SUT.borrowValidator(), is(sameInstance(validator1)));
+        m_SUT.borrowValidator();
+        verify(m_Schema, times(3)).newValidator();
+    }
+    
+    /**
+     * Verify direct validators are pooled the same way.
+     */
+    @Test
+    public void testBorrowDirectValidator() throws Exception
+    {
+        DirectValidator validator1 = m_SUT.borrowDirectValidator();
+        DirectValidator validator2 = m_SUT.borrowDirectValidator();
+        assertThat(validator1, is(not(sameInstance(validator2))));
+        verify(m_Schema, times(2)).newValidatorHandler();
+        verify(m_JAXBContext, times(2)).createMarshaller();
+        
+        m_SUT.release(validator1);
+        m_SUT.release(validator2);
+        
+        assertThat(m_SUT.borrowDirectValidator(), is(sameInstance(validator1)));
+        m_SUT.borrowDirectValidator();
+        verify(m_Schema, times(3)).newValidatorHandler();
+    }
+}
@@ -129,6 +129,19 @@ public class DataStreamStoreImpl implements DataStreamStore, ThreadStatusListene
         m_PersistentDataStore = persistentDataStore;
     }
     
+    /**
+     * Bind the codec used to store archive metadata. The codec is not used directly, but must be available to the 
+     * persistent data store before any metadata is queried.
+     * 
+     * @param codec
+     *      codec for {@link StreamArchiveMetadata}
+     */
+    @Reference
+    public void setStreamArchiveMetadataCodec(final StreamArchiveMetadataCodec codec)
+    {
+        // only a dependency, persistent data store uses the codec
+    }
+    
     @Reference
     public void setArchiverService(final ArchiverService archiverService)
     {
@@ -0,0 +1,63 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.datastream.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+
+import aQute.bnd.annotation.component.Component;
+
+import mil.dod.th.ose.datastream.store.data.StreamArchiveMetadata;
+import mil.dod.th.ose.shared.PersistentEntityCodec;
+
+/**
+ * Stores {@link StreamArchiveMetadata} in the {@link mil.dod.th.core.persistence.PersistentDataStore} as the file 
+ * URL, the start and stop timestamps and the bitrate flag instead of using Java serialization.
+ */
+@Component(provide = {PersistentEntityCodec.class, StreamArchiveMetadataCodec.class})
+public class StreamArchiveMetadataCodec implements PersistentEntityCodec<StreamArchiveMetadata>
+{
+    @Override
+    public Class<StreamArchiveMetadata> getEntityType()
+    {
+        return StreamArchiveMetadata.class;
+    }
+
+    @Override
+    public byte[] encode(final StreamArchiveMetadata entity) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeUTF(entity.getFilePath().toExternalForm());
+        output.writeLong(entity.getStartTimestamp());
+        output.writeLong(entity.getStopTimestamp());
+        output.writeBoolean(entity.isOriginalBitrate());
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public StreamArchiveMetadata decode(final byte[] data, final int offset, final int length) throws IOException
+    {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        final URL filePath = new URL(input.readUTF());
+        final long startTimestamp = input.readLong();
+        final long stopTimestamp = input.readLong();
+        final boolean isOriginalBitrate = input.readBoolean();
+        return new StreamArchiveMetadata(filePath, startTimestamp, stopTimestamp, isOriginalBitrate);
+    }
+}
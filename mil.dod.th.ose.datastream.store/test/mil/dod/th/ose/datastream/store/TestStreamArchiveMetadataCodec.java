@@ -0,0 +1,133 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.datastream.store;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+
+import mil.dod.th.ose.datastream.store.data.StreamArchiveMetadata;
+import mil.dod.th.ose.shared.EncodedEntity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ */
+public class TestStreamArchiveMetadataCodec
+{
+    private StreamArchiveMetadataCodec m_SUT;
+    
+    @Before
+    public void setUp()
+    {
+        m_SUT = new StreamArchiveMetadataCodec();
+    }
+    
+    @Test
+    public void testGetEntityType()
+    {
+        assertThat(m_SUT.getEntityType(), is(equalTo(StreamArchiveMetadata.class)));
+    }
+    
+    /**
+     * Verify metadata can be encoded and decoded, including when the encoded bytes are part of a larger array.
+     */
+    @Test
+    public void testEncodeDecode() throws Exception
+    {
+        StreamArchiveMetadata metadata = new StreamArchiveMetadata(new URL("file:/tmp/archive/stream-1.bin"), 1000L, 
+                2000L, true);
+        
+        byte[] encoded = m_SUT.encode(metadata);
+        byte[] framed = new byte[encoded.length + 5];
+        System.arraycopy(encoded, 0, framed, 3, encoded.length);
+        
+        StreamArchiveMetadata decoded = m_SUT.decode(framed, 3, encoded.length);
+        assertThat(decoded.getFilePath(), is(equalTo(metadata.getFilePath())));
+        assertThat(decoded.getStartTimestamp(), is(1000L));
+        assertThat(decoded.getStopTimestamp(), is(2000L));
+        assertThat(decoded.isOriginalBitrate(), is(true));
+    }
+    
+    /**
+     * Verify the form stored for an encoded entity is smaller than the Java serialized form of the entity.
+     */
+    @Test
+    public void testEncodedSize() throws Exception
+    {
+        StreamArchiveMetadata metadata = new StreamArchiveMetadata(new URL("file:/tmp/archive/stream-1.bin"), 1000L, 
+                2000L, false);
+        
+        final int serializedSize = serialize(metadata).length;
+        final int codecSize = m_SUT.encode(metadata).length;
+        // the store serializes the wrapper holding the encoded bytes
+        final int storedSize = serialize(
+                new EncodedEntity(StreamArchiveMetadata.class.getName(), m_SUT.encode(metadata))).length;
+        
+        assertThat(codecSize, is(lessThan(serializedSize / 2)));
+        assertThat(storedSize, is(lessThan(serializedSize)));
+    }
+    
+    /**
+     * Verify metadata stored and read back the way the persistent data store does, including serializing the wrapper 
+     * of the encoded bytes, is the same as the original metadata.
+     */
+    @Test
+    public void testEncodeDecodeStored() throws Exception
+    {
+        StreamArchiveMetadata metadata = new StreamArchiveMetadata(new URL("file:/tmp/archive/stream-1.bin"), 1000L, 
+                2000L, false);
+        
+        StreamArchiveMetadata decoded = encodeDecode(metadata);
+        assertThat(decoded.getFilePath(), is(equalTo(metadata.getFilePath())));
+        assertThat(decoded.getStartTimestamp(), is(1000L));
+        assertThat(decoded.getStopTimestamp(), is(2000L));
+        assertThat(decoded.isOriginalBitrate(), is(false));
+    }
+    
+    /**
+     * Store and read back the metadata the way the persistent data store does with a codec.
+     */
+    private StreamArchiveMetadata encodeDecode(final StreamArchiveMetadata metadata) throws Exception
+    {
+        final EncodedEntity stored = (EncodedEntity)deserialize(serialize(
+                new EncodedEntity(StreamArchiveMetadata.class.getName(), m_SUT.encode(metadata))));
+        return m_SUT.decode(stored.getData(), 0, stored.getData().length);
+    }
+    
+    private static byte[] serialize(final Serializable entity) throws IOException
+    {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(serialized))
+        {
+            output.writeObject(entity);
+        }
+        return serialized.toByteArray();
+    }
+    
+    private static Object deserialize(final byte[] data) throws Exception
+    {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data)))
+        {
+            return input.readObject();
+        }
+    }
+}
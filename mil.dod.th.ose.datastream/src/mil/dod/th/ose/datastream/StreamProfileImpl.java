@@ -19,7 +19,6 @@ import java.util.UUID;
 
 import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Reference;
-import aQute.bnd.annotation.metatype.Configurable;
 
 import mil.dod.th.core.asset.Asset;
 import mil.dod.th.core.asset.AssetDirectoryService;
@@ -163,7 +162,7 @@ public class StreamProfileImpl extends AbstractFactoryObject implements StreamPr
     @Override
     public StreamProfileAttributes getConfig()
     {
-        return Configurable.createConfigurable(StreamProfileAttributes.class, getProperties());
+        return getAttributes(StreamProfileAttributes.class);
     }
 
     @Override
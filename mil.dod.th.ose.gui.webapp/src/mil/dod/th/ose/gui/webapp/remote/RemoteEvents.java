@@ -59,7 +59,8 @@ final public class RemoteEvents
         final EventRegistrationRequestData.Builder requestMessage = EventRegistrationRequestData.newBuilder().
                 addAllTopic(topics)
                 .setExpirationTimeHours(m_EventRegTimeoutHours)
-                .setCanQueueEvent(canQueueEvent);
+                .setCanQueueEvent(canQueueEvent)
+                .setCanBatchEvents(true);
 
         if (filterString != null)
         {
@@ -0,0 +1,480 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogService;
+
+/**
+ * Queues log entries in a bounded ring buffer so the thread that logged does not perform any I/O. A single writer 
+ * thread takes everything that is queued as one batch, writes each entry and then flushes once per batch. What happens
+ * when the buffer is full is controlled by the {@link LogOverflowPolicy}.
+ */
+class AsyncLogAppender
+{
+    /**
+     * How long to wait for the writer thread to write queued entries when stopping.
+     */
+    private static final long STOP_TIMEOUT_MS = 10000;
+    
+    /**
+     * How often the writer thread checks whether it has been stopped while idle.
+     */
+    private static final long IDLE_POLL_MS = 250;
+    
+    /**
+     * Ring buffer of entries waiting to be written.
+     */
+    private final LogEntry[] m_Ring;
+    
+    /**
+     * Entries taken from the ring by the writer thread, only accessed by the writer thread.
+     */
+    private final LogEntry[] m_Batch;
+    
+    /**
+     * Index of the oldest entry in the ring.
+     */
+    private int m_Head;
+    
+    /**
+     * Number of entries in the ring.
+     */
+    private int m_Count;
+    
+    /**
+     * Guards the ring buffer.
+     */
+    private final ReentrantLock m_Lock = new ReentrantLock();
+    
+    /**
+     * Signaled when an entry is added to the ring.
+     */
+    private final Condition m_NotEmpty = m_Lock.newCondition();
+    
+    /**
+     * Signaled when the writer thread takes entries from the ring.
+     */
+    private final Condition m_NotFull = m_Lock.newCondition();
+    
+    /**
+     * What to do when the ring is full.
+     */
+    private final LogOverflowPolicy m_OverflowPolicy;
+    
+    /**
+     * Writes the entries taken from the ring.
+     */
+    private final EntryWriter m_EntryWriter;
+    
+    /**
+     * Thread that writes entries, null if not started.
+     */
+    private Thread m_WriterThread;
+    
+    /**
+     * Whether entries are being accepted, only changed while holding the lock.
+     */
+    private volatile boolean m_Running;
+    
+    /**
+     * Total number of entries added to the ring.
+     */
+    private final AtomicLong m_EnqueuedCount = new AtomicLong();
+    
+    /**
+     * Total number of entries dropped because the ring was full.
+     */
+    private final AtomicLong m_DroppedCount = new AtomicLong();
+    
+    /**
+     * Total number of entries written by the writer thread.
+     */
+    private final AtomicLong m_WrittenCount = new AtomicLong();
+    
+    /**
+     * Total number of batches written by the writer thread.
+     */
+    private final AtomicLong m_BatchCount = new AtomicLong();
+    
+    /**
+     * Create a new appender, must call {@link #start(String)} before appending entries.
+     * 
+     * @param entryWriter
+     *      writes entries taken from the ring
+     * @param capacity
+     *      maximum number of entries waiting to be written
+     * @param overflowPolicy
+     *      what to do with new entries when the ring is full
+     */
+    AsyncLogAppender(final EntryWriter entryWriter, final int capacity, final LogOverflowPolicy overflowPolicy)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be at least 1, got: " + capacity);
+        }
+        m_EntryWriter = entryWriter;
+        m_Ring = new LogEntry[capacity];
+        m_Batch = new LogEntry[capacity];
+        m_OverflowPolicy = overflowPolicy;
+    }
+    
+    /**
+     * Start the writer thread.
+     * 
+     * @param threadName
+     *      name to give the writer thread
+     */
+    synchronized void start(final String threadName)
+    {
+        m_Running = true;
+        m_WriterThread = new Thread(new Writer(), threadName);
+        m_WriterThread.setDaemon(true);
+        m_WriterThread.start();
+    }
+    
+    /**
+     * Stop accepting new entries and wait for the writer thread to write everything that is queued. Threads blocked 
+     * waiting for room are released and their entries are rejected.
+     */
+    synchronized void stop()
+    {
+        if (m_WriterThread == null)
+        {
+            return;
+        }
+        
+        m_Lock.lock();
+        try
+        {
+            m_Running = false;
+            m_NotEmpty.signalAll();
+            m_NotFull.signalAll();
+        }
+        finally
+        {
+            m_Lock.unlock();
+        }
+        
+        try
+        {
+            m_WriterThread.join(STOP_TIMEOUT_MS);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        m_WriterThread = null;
+    }
+    
+    /**
+     * Queue up the entry to be written by the writer thread. Depending on the overflow policy, blocks or drops an entry
+     * if the ring is full.
+     * 
+     * @param entry
+     *      entry to write
+     * @return
+     *      true if the entry was queued or dropped because of the overflow policy, false if the appender is not 
+     *      running and the caller must write the entry itself
+     */
+    boolean append(final LogEntry entry)
+    {
+        m_Lock.lock();
+        try
+        {
+            while (m_Count == m_Ring.length)
+            {
+                if (!m_Running)
+                {
+                    return false;
+                }
+                if (!makeRoom(entry))
+                {
+                    m_DroppedCount.incrementAndGet();
+                    return true;
+                }
+            }
+            
+            if (!m_Running)
+            {
+                return false;
+            }
+            
+            m_Ring[(m_Head + m_Count) % m_Ring.length] = entry;
+            m_Count++;
+            m_EnqueuedCount.incrementAndGet();
+            m_NotEmpty.signal();
+            return true;
+        }
+        finally
+        {
+            m_Lock.unlock();
+        }
+    }
+    
+    /**
+     * Get the number of entries waiting to be written.
+     * 
+     * @return
+     *      current queue depth
+     */
+    int getQueueDepth()
+    {
+        m_Lock.lock();
+        try
+        {
+            return m_Count;
+        }
+        finally
+        {
+            m_Lock.unlock();
+        }
+    }
+    
+    /**
+     * Get the total number of entries queued to be written.
+     * 
+     * @return
+     *      number of entries queued
+     */
+    long getEnqueuedCount()
+    {
+        return m_EnqueuedCount.get();
+    }
+    
+    /**
+     * Get the total number of entries dropped because the ring was full. Includes entries that were queued and later 
+     * removed to make room.
+     * 
+     * @return
+     *      number of entries dropped
+     */
+    long getDroppedCount()
+    {
+        return m_DroppedCount.get();
+    }
+    
+    /**
+     * Get the total number of entries written by the writer thread.
+     * 
+     * @return
+     *      number of entries written
+     */
+    long getWrittenCount()
+    {
+        return m_WrittenCount.get();
+    }
+    
+    /**
+     * Get the total number of batches written by the writer thread, each batch is followed by a single flush.
+     * 
+     * @return
+     *      number of batches
+     */
+    long getBatchCount()
+    {
+        return m_BatchCount.get();
+    }
+    
+    /**
+     * Apply the overflow policy as the ring is full. Must be called while holding the lock.
+     * 
+     * @param entry
+     *      new entry that does not fit
+     * @return
+     *      true if room was made or the ring should be checked again, false if the new entry should be dropped
+     */
+    private boolean makeRoom(final LogEntry entry)
+    {
+        switch (m_OverflowPolicy)
+        {
+            case Block:
+                // the writer thread cannot wait on itself
+                if (Thread.currentThread() == m_WriterThread)
+                {
+                    return false;
+                }
+                try
+                {
+                    m_NotFull.await();
+                    return true;
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DropDebugFirst:
+                if (entry.getLevel() >= LogService.LOG_DEBUG)
+                {
+                    return false;
+                }
+                removeAt(findOldestDebug());
+                m_DroppedCount.incrementAndGet();
+                return true;
+            case DropOldest:
+                removeAt(0);
+                m_DroppedCount.incrementAndGet();
+                return true;
+            default:
+                throw new IllegalStateException("Unknown overflow policy: " + m_OverflowPolicy);
+        }
+    }
+    
+    /**
+     * Find the oldest debug entry in the ring. Must be called while holding the lock.
+     * 
+     * @return
+     *      offset from the head of the oldest debug entry, 0 (the oldest entry) if there are no debug entries
+     */
+    private int findOldestDebug()
+    {
+        for (int i = 0; i < m_Count; i++)
+        {
+            if (m_Ring[(m_Head + i) % m_Ring.length].getLevel() >= LogService.LOG_DEBUG)
+            {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Remove the entry at the given offset from the head, shifting older entries forward to fill the gap. Must be 
+     * called while holding the lock.
+     * 
+     * @param offset
+     *      offset from the head of the entry to remove
+     */
+    private void removeAt(final int offset)
+    {
+        final int length = m_Ring.length;
+        for (int i = offset; i > 0; i--)
+        {
+            m_Ring[(m_Head + i) % length] = m_Ring[(m_Head + i - 1) % length];
+        }
+        m_Ring[m_Head] = null;
+        m_Head = (m_Head + 1) % length;
+        m_Count--;
+    }
+    
+    /**
+     * Wait for entries and move everything queued into the batch array.
+     * 
+     * @return
+     *      number of entries in the batch, 0 if none arrived, -1 if stopped and nothing is left to write
+     * @throws InterruptedException
+     *      if interrupted while waiting for entries
+     */
+    private int takeBatch() throws InterruptedException
+    {
+        m_Lock.lock();
+        try
+        {
+            if (m_Count == 0)
+            {
+                if (!m_Running)
+                {
+                    return -1;
+                }
+                m_NotEmpty.await(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            }
+            
+            final int count = m_Count;
+            final int length = m_Ring.length;
+            for (int i = 0; i < count; i++)
+            {
+                final int index = (m_Head + i) % length;
+                m_Batch[i] = m_Ring[index];
+                m_Ring[index] = null;
+            }
+            m_Head = 0;
+            m_Count = 0;
+            if (count > 0)
+            {
+                m_NotFull.signalAll();
+            }
+            return count;
+        }
+        finally
+        {
+            m_Lock.unlock();
+        }
+    }
+    
+    /**
+     * Writes entries taken from the ring.
+     */
+    interface EntryWriter
+    {
+        /**
+         * Write a single entry, called by the writer thread for each entry in a batch.
+         * 
+         * @param entry
+         *      entry to write
+         */
+        void write(LogEntry entry);
+        
+        /**
+         * Flush written entries, called by the writer thread after each batch.
+         */
+        void flush();
+    }
+    
+    /**
+     * Writes batches of entries until stopped and the ring is empty.
+     */
+    private class Writer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                final int count;
+                try
+                {
+                    count = takeBatch();
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                
+                if (count < 0)
+                {
+                    return;
+                }
+                if (count == 0)
+                {
+                    continue;
+                }
+                
+                for (int i = 0; i < count; i++)
+                {
+                    m_EntryWriter.write(m_Batch[i]);
+                    m_Batch[i] = null;
+                }
+                m_EntryWriter.flush();
+                m_WrittenCount.addAndGet(count);
+                m_BatchCount.incrementAndGet();
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@
 package mil.dod.th.ose.logging;
 
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
@@ -31,14 +32,14 @@ import org.osgi.framework.Bundle;
 public class LogFilterImpl implements LogFilter
 {
     /**
-     * Filter for the bundle.
+     * Filter for the bundle, compiled once as it is checked for every message logged.
      */
-    private String m_BundleSymbolicFilter;
+    private volatile Pattern m_BundleSymbolicFilter;
     
     /**
      * Log severity as defined by the {@link org.osgi.service.log.LogService}.
      */
-    private int m_Severity;
+    private volatile int m_Severity;
 
     /**
      * Activate the component.
@@ -67,7 +68,7 @@ public class LogFilterImpl implements LogFilter
     @Override
     public boolean matches(final Bundle bundle)
     {
-        return bundle.getSymbolicName().matches(m_BundleSymbolicFilter);
+        return m_BundleSymbolicFilter.matcher(bundle.getSymbolicName()).matches();
     }
 
     @Override
@@ -85,7 +86,7 @@ public class LogFilterImpl implements LogFilter
     private void update(final Map<String, Object> props)
     {
         final LogFilterConfig config = Configurable.createConfigurable(LogFilterConfig.class, props);
-        m_BundleSymbolicFilter = config.bundleSymbolicFilter();
+        m_BundleSymbolicFilter = Pattern.compile(config.bundleSymbolicFilter());
         m_Severity = LogUtil.convertNativeToOsgiLevel(config.severity());
     }
 }
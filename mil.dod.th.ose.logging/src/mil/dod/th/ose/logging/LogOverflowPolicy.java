@@ -0,0 +1,32 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.logging;
+
+/**
+ * What the {@link LogWriter} does with a new log entry when asynchronous logging is enabled and the queue of entries
+ * waiting to be written is full.
+ */
+public enum LogOverflowPolicy
+{
+    /** Block the logging thread until the writer thread makes room in the queue. No entries are lost. */
+    Block,
+    
+    /** 
+     * Drop debug entries before anything else. A new debug entry is dropped, otherwise the oldest queued debug entry 
+     * is dropped to make room. If no debug entries are queued, the oldest entry is dropped.
+     */
+    DropDebugFirst,
+    
+    /** Drop the oldest queued entry to make room for the new one. */
+    DropOldest
+}
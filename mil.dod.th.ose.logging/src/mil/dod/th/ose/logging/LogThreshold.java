@@ -0,0 +1,34 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.logging;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Service that determines whether a message will be logged before the message is created. Allows callers to skip
+ * formatting messages that would be discarded because of the configured log level or a {@link LogFilter}.
+ */
+public interface LogThreshold
+{
+    /**
+     * Check if a message at the given level from the given bundle will be logged.
+     *
+     * @param bundle
+     *      bundle logging the message
+     * @param level
+     *      level of the message as defined by {@link org.osgi.service.log.LogService}
+     * @return
+     *      true if the message will be logged, false if it will be discarded
+     */
+    boolean isLoggable(Bundle bundle, int level);
+}
@@ -34,6 +34,11 @@ public final class LogUtil
      * Date formatter used by the log writer.
      */
     private static final FastDateFormat FDF = FastDateFormat.getInstance("yyyyMMdd HH:mm:ss", Locale.US);
+    
+    /**
+     * Width of the level column at the start of each entry.
+     */
+    private static final int LEVEL_COLUMN_WIDTH = 9;
 
     /**
      * Singleton logging utility class.
@@ -117,12 +122,48 @@ public final class LogUtil
             final boolean logExceptions)
     {
         final StringBuilder stringBuilder = new StringBuilder(100);
+        appendLogEntry(stringBuilder, level, time, bundle, serviceRef, message, except, logExceptions);
+        return stringBuilder.toString();
+    }
 
-        // Add the log level of the entry
-        stringBuilder.append(String.format("%-9S", convertOsgiToNativeLevel(level)));
+    /**
+     * Appends a log entry to the given builder in the same format as {@link #fromLogEntry}. Allows the caller to reuse
+     * the builder between entries.
+     *
+     * @param stringBuilder
+     *      Builder to append the entry to, the entry is assumed to start at the beginning of the builder
+     * @param level
+     *      Log level of the message, see {@link LogService#log(int, String)}.
+     * @param time
+     *      Time in milliseconds based on {@link System#currentTimeMillis()} when the log event occurred
+     * @param bundle
+     *      Source of the log event
+     * @param serviceRef
+     *      The <code>ServiceReference</code> object of the service that this message is associated with
+     * @param message
+     *      Log event message
+     * @param except
+     *      Exception related with the cause of the log message
+     * @param logExceptions
+     *            A boolean flag that if true adds the exception stack trace to the log message.
+     */
+    public static void appendLogEntry(final StringBuilder stringBuilder, final int level, final long time,
+            final Bundle bundle, final ServiceReference<?> serviceRef, final String message, final Throwable except, 
+            final boolean logExceptions)
+    {
+        // Add the log level of the entry, upper case and padded to the column width
+        final String levelName = convertOsgiToNativeLevel(level).toString();
+        for (int i = 0; i < levelName.length(); i++)
+        {
+            stringBuilder.append(Character.toUpperCase(levelName.charAt(i)));
+        }
+        for (int i = levelName.length(); i < LEVEL_COLUMN_WIDTH; i++)
+        {
+            stringBuilder.append(' ');
+        }
 
         // Get the time stamp
-        stringBuilder.append(FDF.format(Long.valueOf(time)));
+        stringBuilder.append(FDF.format(time));
 
         // Check for bundle information
         stringBuilder.append(" ID#");
@@ -188,10 +229,8 @@ public final class LogUtil
                 cause = cause.getCause();
             }
             stringBuilder.append('\n');
-            stringBuilder.append(traceStringBuilder.toString());
+            stringBuilder.append(traceStringBuilder);
         }
-
-        return stringBuilder.toString();
     }
 
     /**
@@ -16,7 +16,12 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -24,6 +29,7 @@ import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
@@ -47,12 +53,14 @@ import org.osgi.service.log.LogService;
 import org.apache.commons.lang.time.FastDateFormat;
 
 /**
- * <code>LogWriter</code> implements {@link LogListener} and prints log entries to STDOUT and/or file.
+ * <code>LogWriter</code> implements {@link LogListener} and prints log entries to STDOUT and/or file. Also provides the
+ * {@link LogThreshold} so messages that will be discarded are not formatted by the {@link LoggingServiceImpl}. If
+ * enabled by {@link LogWriterConfig#asyncEnabled()}, entries are queued and written by a dedicated thread.
  * 
  * @author dlandoll
  */
 @Component(immediate = true, designate = LogWriterConfig.class, configurationPolicy = ConfigurationPolicy.optional)
-public class LogWriter implements LogListener
+public class LogWriter implements LogListener, LogThreshold
 {
     /**
      * Name of the OSGi framework property containing the directory to use for log files.
@@ -110,6 +118,17 @@ public class LogWriter implements LogListener
      */
     private static final String LOG_FILE_EXTENSION = ".log";
     
+    /**
+     * Initial capacity of the reusable buffers used to encode log entries.
+     */
+    private static final int ENTRY_BUFFER_CAPACITY = 512;
+    
+    /**
+     * Minimum size of the log file buffer when entries are written asynchronously, the buffer is flushed after each 
+     * batch of entries instead of as it fills up.
+     */
+    private static final int ASYNC_FILE_BUFFER_SIZE = 64 * 1024;
+    
     /**
      * Reference to the OSGi log reader service.
      */    
@@ -127,7 +146,7 @@ public class LogWriter implements LogListener
      * and adjusting the buffer size. 
      */
     
-    private BufferedOutputStream m_LogFileWriter;
+    private volatile BufferedOutputStream m_LogFileWriter;
     
     /**
      * Property to hold buffer size.
@@ -145,14 +164,15 @@ public class LogWriter implements LogListener
     private boolean m_LogExceptions;
 
     /**
-     * Configured logging level.
+     * Configured logging level, read by threads logging messages through {@link #isLoggable(Bundle, int)}.
      */
-    private int m_LogLevel;
+    private volatile int m_LogLevel;
     
     /**
-     * List that holds the log filters known to this service. 
+     * List that holds the log filters known to this service, read by threads logging messages through {@link 
+     * #isLoggable(Bundle, int)}.
      */
-    private List<LogFilter> m_LogFilterList;
+    private final List<LogFilter> m_LogFilterList;
     
     /**
      * The number of days a single log file can be used. In the event that the system is 
@@ -177,14 +197,55 @@ public class LogWriter implements LogListener
     private File m_LogFile;
         
     /**
-     * Property that holds the date of the next log creation.
+     * Time in milliseconds (based on {@link System#currentTimeMillis()}) of the next log creation.
+     */
+    private long m_NextCreationTime;
+    
+    /**
+     * Number of bytes written to the current log file, used instead of checking the file length for every entry.
      */
-    private Calendar m_NextCreationDate;
+    private long m_LogFileBytes;
     
     /**
      * String to hold operating system independent line separator.
      */
     final private String m_LineSeparator;
+    
+    /**
+     * Reusable builder used to convert a log entry to a string.
+     */
+    private final StringBuilder m_EntryBuilder = new StringBuilder(ENTRY_BUFFER_CAPACITY);
+    
+    /**
+     * Reusable encoder to convert log entries to bytes using the platform default charset.
+     */
+    private final CharsetEncoder m_Encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    
+    /**
+     * Reusable buffer holding encoded bytes before they are written to the log file.
+     */
+    private final ByteBuffer m_ByteBuffer = ByteBuffer.allocate(ENTRY_BUFFER_CAPACITY);
+
+    /**
+     * Whether entries are queued and written by a dedicated thread.
+     */
+    private boolean m_AsyncEnabled;
+    
+    /**
+     * Capacity of the queue used when writing entries asynchronously.
+     */
+    private int m_AsyncQueueCapacity;
+    
+    /**
+     * What to do with new entries when the asynchronous queue is full.
+     */
+    private LogOverflowPolicy m_AsyncOverflowPolicy;
+    
+    /**
+     * Queues entries to be written by a dedicated thread, null if entries are written by the thread that logged.
+     */
+    private volatile AsyncLogAppender m_Appender;
 
     /**
      * The bundle context from the bundle containing this component.
@@ -199,7 +260,7 @@ public class LogWriter implements LogListener
         m_LogStdOut = true;
         m_LogExceptions = true;        
         m_LineSeparator = System.getProperty("line.separator");
-        m_LogFilterList = new ArrayList<>();
+        m_LogFilterList = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -264,6 +325,7 @@ public class LogWriter implements LogListener
         }
 
         processFiltersFromFrameworkProps();
+        startAppender();
         
         // Get existing log entries (in order by newest) and log each entry
         @SuppressWarnings("unchecked")
@@ -282,6 +344,7 @@ public class LogWriter implements LogListener
     @Deactivate
     public void deactivate()
     {
+        stopAppender();
         if (m_LogFileDir != null)
         {
             closeLogFile();
@@ -312,9 +375,11 @@ public class LogWriter implements LogListener
     @Modified
     public void modified(final Map<String, Object> props)
     {
+        stopAppender();
         closeLogFile();
         updateProps(props);
         openLogFile();
+        startAppender();
     }
     
     /**
@@ -333,13 +398,59 @@ public class LogWriter implements LogListener
     public void logged(final LogEntry entry)
     {
         final int level = entry.getLevel();
+        //The bundle is needed for multiple operations
+        final Bundle bundle = entry.getBundle();
+        if (!isLoggable(bundle, level) || !m_LogStdOut && m_LogFileWriter == null)
+        {
+            return;
+        }
+        
+        final AsyncLogAppender appender = m_Appender;
+        if (appender == null || !appender.append(entry))
+        {
+            writeEntry(entry, bundle);
+        }
+    }
+    
+    /**
+     * Get the number of entries queued to be written by the asynchronous writer thread since asynchronous logging was
+     * last enabled or reconfigured.
+     * 
+     * @return
+     *      number of entries queued, 0 if asynchronous logging is disabled
+     */
+    public long getAsyncEnqueuedCount()
+    {
+        final AsyncLogAppender appender = m_Appender;
+        return appender == null ? 0 : appender.getEnqueuedCount();
+    }
+    
+    /**
+     * Get the number of entries dropped because the asynchronous queue was full since asynchronous logging was last
+     * enabled or reconfigured.
+     * 
+     * @return
+     *      number of entries dropped, 0 if asynchronous logging is disabled
+     */
+    public long getAsyncDroppedCount()
+    {
+        final AsyncLogAppender appender = m_Appender;
+        return appender == null ? 0 : appender.getDroppedCount();
+    }
+    
+    @Override
+    public boolean isLoggable(final Bundle bundle, final int level)
+    {
         // Log the entry if within the configured logging level
         if (level > m_LogLevel)
         {
-            return;
+            return false;
+        }
+        
+        if (m_LogFilterList.isEmpty() || bundle == null)
+        {
+            return true;
         }
-        //The bundle is needed for multiple operations
-        final Bundle bundle = entry.getBundle();
 
         LogFilter filterMatch = null;
         //sort through filters
@@ -360,37 +471,162 @@ public class LogWriter implements LogListener
                 }
             }
         }
-        if (filterMatch != null && filterMatch.getSeverity() < level)
-        {
-            //ignore the message as messages matching this bundle's symbolic name at the given level have been
-            //requested to be ignored
-            return;
-        }
         
+        //ignore the message if messages matching this bundle's symbolic name at the given level have been
+        //requested to be ignored
+        return filterMatch == null || filterMatch.getSeverity() >= level;
+    }
+
+    /**
+     * Write the log entry to STDOUT and/or the log file. The entry is built in a reusable builder, encoded into a 
+     * reusable buffer and written directly to the buffered file stream.
+     * 
+     * @param entry
+     *      entry to write
+     * @param bundle
+     *      bundle that logged the entry
+     */
+    private synchronized void writeEntry(final LogEntry entry, final Bundle bundle)
+    {
         // Convert log entry to a string buffer
-        final String entryString = LogUtil.fromLogEntry(level, entry.getTime(), bundle,
-                 entry.getServiceReference(), entry.getMessage(), entry.getException(), m_LogExceptions);
-            
+        m_EntryBuilder.setLength(0);
+        LogUtil.appendLogEntry(m_EntryBuilder, entry.getLevel(), entry.getTime(), bundle, 
+                entry.getServiceReference(), entry.getMessage(), entry.getException(), m_LogExceptions);
+        
         // Send to STDOUT if enabled
         if (m_LogStdOut)
         {
-            System.out.println(entryString); // NOPMD: System.out is necessary for the logging implementation
+            System.out.println(// NOPMD: System.out is necessary for the logging implementation
+                    m_EntryBuilder.toString());
         }
         // Send to file if log file is opened
-        if (m_LogFileWriter != null) 
+        if (m_LogFileWriter == null)
         {
-            try
+            return;
+        }
+        
+        // a newline is added as the write method does not
+        m_EntryBuilder.append(m_LineSeparator);
+        try
+        {
+            m_LogFileBytes += encodeAndWrite(m_EntryBuilder);
+        }
+        catch (final IOException ex1)
+        {
+            System.err.println("Failed to write: " + m_EntryBuilder + " because of: " // NOPMD
+                 + ex1.getMessage());
+        }
+        //check the size and age of the file
+        checkLogSizeAndAge();
+    }
+
+    /**
+     * Encode the characters using the reusable encoder and buffer and write the bytes to the log file.
+     * 
+     * @param chars
+     *      characters to write
+     * @return
+     *      number of bytes written
+     * @throws IOException
+     *      if the bytes cannot be written
+     */
+    private long encodeAndWrite(final CharSequence chars) throws IOException
+    {
+        final CharBuffer charBuffer = CharBuffer.wrap(chars);
+        long written = 0;
+        m_Encoder.reset();
+        
+        // buffer is written out each time it fills up until all characters are encoded
+        CoderResult result = m_Encoder.encode(charBuffer, m_ByteBuffer, true);
+        while (result.isOverflow())
+        {
+            written += drainByteBuffer();
+            result = m_Encoder.encode(charBuffer, m_ByteBuffer, true);
+        }
+        
+        result = m_Encoder.flush(m_ByteBuffer);
+        while (result.isOverflow())
+        {
+            written += drainByteBuffer();
+            result = m_Encoder.flush(m_ByteBuffer);
+        }
+        
+        return written + drainByteBuffer();
+    }
+
+    /**
+     * Write the content of the byte buffer to the log file and clear the buffer.
+     * 
+     * @return
+     *      number of bytes written
+     * @throws IOException
+     *      if the bytes cannot be written
+     */
+    private int drainByteBuffer() throws IOException
+    {
+        final int length = m_ByteBuffer.position();
+        m_LogFileWriter.write(m_ByteBuffer.array(), 0, length);
+        m_ByteBuffer.clear();
+        return length;
+    }
+
+    /**
+     * Flush any entries buffered for the log file, called by the asynchronous writer thread after each batch.
+     */
+    private synchronized void flushLogFile()
+    {
+        if (m_LogFileWriter == null)
+        {
+            return;
+        }
+        try
+        {
+            m_LogFileWriter.flush();
+        }
+        catch (final IOException ex)
+        {
+            System.err.println("Failed to flush logfile due to: " + ex.getMessage()); // NOPMD
+        }
+    }
+    
+    /**
+     * Start writing entries from a dedicated thread if enabled by the configuration.
+     */
+    private void startAppender()
+    {
+        if (!m_AsyncEnabled)
+        {
+            return;
+        }
+        
+        final AsyncLogAppender appender = new AsyncLogAppender(new AsyncLogAppender.EntryWriter()
+        {
+            @Override
+            public void write(final LogEntry entry)
             {
-                // Send byte encoded string to buffered stream; a newline is added as the write method does not
-                m_LogFileWriter.write((entryString + m_LineSeparator).getBytes());
+                writeEntry(entry, entry.getBundle());
             }
-            catch (final IOException ex1)
+            
+            @Override
+            public void flush()
             {
-                System.err.println("Failed to write: " + entryString + " because of: " // NOPMD
-                     + ex1.getMessage());
+                flushLogFile();
             }
-            //check the size and age of the file
-            checkLogSizeAndAge();
+        }, m_AsyncQueueCapacity, m_AsyncOverflowPolicy);
+        appender.start("LogWriter");
+        m_Appender = appender;
+    }
+    
+    /**
+     * Stop the dedicated writer thread if running, entries that are already queued are written first.
+     */
+    private void stopAppender()
+    {
+        final AsyncLogAppender appender = m_Appender;
+        if (appender != null)
+        {
+            m_Appender = null; // NOPMD: Null assignment: Needed to identify that entries are written synchronously
+            appender.stop();
         }
     }
 
@@ -445,7 +681,7 @@ public class LogWriter implements LogListener
     /**
      * Opens a new log file for writing. Log name is "Those_'Date'_'Time'.log".
      */
-    private void openLogFile()
+    private synchronized void openLogFile()
     {
         if (m_LogFileDir == null)
         {
@@ -457,13 +693,18 @@ public class LogWriter implements LogListener
         m_LogFile = new File(m_LogFileDir, fileName);
         try
         {
-            m_LogFileWriter = new BufferedOutputStream(new FileOutputStream(m_LogFile), m_LogFileBuffer);
+            // entries are flushed after each batch when asynchronous so don't write out as often
+            final int bufferSize = m_AsyncEnabled ? Math.max(m_LogFileBuffer, ASYNC_FILE_BUFFER_SIZE) 
+                    : m_LogFileBuffer;
+            m_LogFileWriter = new BufferedOutputStream(new FileOutputStream(m_LogFile), bufferSize);
             // Constructs the file header and appends a newline as the LogFileWriter's write method does not
             final FastDateFormat headerFomatter = FastDateFormat.getInstance("yyyyMMdd HH:mm:ss", locale);
             final String fileHeader = "*** THOSE log started " + headerFomatter.format(new Date()) + " ***" 
                 + m_LineSeparator;
-            m_LogFileWriter.write(fileHeader.getBytes());
+            final byte[] headerBytes = fileHeader.getBytes();
+            m_LogFileWriter.write(headerBytes);
             m_LogFileWriter.flush();
+            m_LogFileBytes = headerBytes.length;
         }
         catch (final IOException ex)
         {
@@ -471,14 +712,15 @@ public class LogWriter implements LogListener
             System.err.println("Failed to open logfile " + m_LogFile + " due to: " + ex.getMessage()); // NOPMD
             m_LogFileWriter = null; // NOPMD: Null assignment: Needed to identify that an error occurred
         }
-        m_NextCreationDate = Calendar.getInstance();
-        m_NextCreationDate.add(Calendar.DAY_OF_MONTH, m_LogDaysAlive);
+        final Calendar nextCreationDate = Calendar.getInstance();
+        nextCreationDate.add(Calendar.DAY_OF_MONTH, m_LogDaysAlive);
+        m_NextCreationTime = nextCreationDate.getTimeInMillis();
     }
 
     /**
      * Closes the currently open log file.
      */
-    private void closeLogFile()
+    private synchronized void closeLogFile()
     {
         if (m_LogFileWriter != null)
         {
@@ -514,6 +756,9 @@ public class LogWriter implements LogListener
             setLogSizeLimit(config.logMBSizeLimit());
             setLogLevel(config.logLevel());
             setLogMaxFileCount(config.logMaxFileCount());
+            m_AsyncEnabled = config.asyncEnabled();
+            m_AsyncQueueCapacity = config.asyncQueueCapacity();
+            m_AsyncOverflowPolicy = config.asyncOverflowPolicy();
         }
         else
         {
@@ -548,6 +793,9 @@ public class LogWriter implements LogListener
             final int defaultMaxLogs = 1000;
             final int maxLogs = maxLogsProp == null ? defaultMaxLogs : Integer.parseInt(maxLogsProp);
             setLogMaxFileCount(maxLogs);
+            
+            //asynchronous logging is only available through the configuration
+            m_AsyncEnabled = false;
 
             //framework property for log level
             final String levelProp = m_Context.getProperty(LOG_LEVEL_PROPERTY);
@@ -635,7 +883,7 @@ public class LogWriter implements LogListener
      */
     private void checkLogSizeAndAge()
     {
-        if (m_LogFile.length() >= m_LogMaxByteLimit || Calendar.getInstance().compareTo(m_NextCreationDate) > 0)
+        if (m_LogFileBytes >= m_LogMaxByteLimit || System.currentTimeMillis() > m_NextCreationTime)
         {
             closeLogFile();
             openLogFile();
@@ -79,4 +79,36 @@ public interface LogWriterConfig
      */
     @Meta.AD(required = false, deflt = "Debug", description = "The log level to log for.")
     LogLevel logLevel();
+    
+    /**
+     * Whether log entries are written by a dedicated thread instead of the thread that logged the message.
+     * 
+     * @return
+     *     true if entries are queued and written asynchronously
+     */
+    @Meta.AD(required = false, deflt = "false", description = "If true, log entries are queued and written to STDOUT "
+            + "and the log file by a dedicated thread so threads logging messages do not wait on I/O. Entries are "
+            + "flushed to the log file in batches.")
+    boolean asyncEnabled();
+    
+    /**
+     * Capacity of the queue used when {@link #asyncEnabled()} is true.
+     * 
+     * @return
+     *     maximum number of entries waiting to be written
+     */
+    @Meta.AD(required = false, deflt = "8192", min = "1", description = "Maximum number of log entries waiting to "
+            + "be written when asynchronous logging is enabled.")
+    int asyncQueueCapacity();
+    
+    /**
+     * What happens to new entries when the asynchronous queue is full.
+     * 
+     * @return
+     *     policy used when the queue is full
+     */
+    @Meta.AD(required = false, deflt = "Block", description = "What to do when the queue is full and asynchronous "
+            + "logging is enabled. Block waits for room, DropDebugFirst drops debug entries before others and "
+            + "DropOldest drops the oldest queued entry.")
+    LogOverflowPolicy asyncOverflowPolicy();
 }
@@ -19,13 +19,15 @@ import aQute.bnd.annotation.component.Reference;
 
 import mil.dod.th.core.log.LoggingService;
 
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.log.LogService;
 
 /**
- * Implementation of the {@link LoggingService}.
+ * Implementation of the {@link LoggingService}. If a {@link LogThreshold} is available, messages that would be 
+ * discarded are not formatted or sent to the OSGi log service.
  * 
  * @author dhumeniuk
  */
@@ -37,6 +39,16 @@ public class LoggingServiceImpl implements LoggingService
      */
     private LogService m_LogService;
     
+    /**
+     * Bundle using this component, messages are logged on behalf of this bundle.
+     */
+    private Bundle m_UsingBundle;
+    
+    /**
+     * Threshold used to check if a message will be logged before formatting it, null if not available.
+     */
+    private volatile LogThreshold m_LogThreshold;
+    
     /**
      * Binds the logging service for logging messages.
      *  
@@ -50,6 +62,29 @@ public class LoggingServiceImpl implements LoggingService
         // below will always work
     }
     
+    /**
+     * Binds the threshold used to skip messages that will not be logged.
+     * 
+     * @param logThreshold
+     *      threshold to check messages against
+     */
+    @Reference(optional = true, dynamic = true)
+    public void setLogThreshold(final LogThreshold logThreshold)
+    {
+        m_LogThreshold = logThreshold;
+    }
+    
+    /**
+     * Unbinds the threshold, all messages will be sent to the OSGi log service.
+     * 
+     * @param logThreshold
+     *      threshold being removed
+     */
+    public void unsetLogThreshold(final LogThreshold logThreshold)
+    {
+        m_LogThreshold = null; // NOPMD: Null assignment: Needed to identify that the threshold is not available
+    }
+    
     /**
      * Activate the component by setting the log service based on the bundle using this component.
      * 
@@ -59,7 +94,8 @@ public class LoggingServiceImpl implements LoggingService
     @Activate
     public void activate(final ComponentContext context)
     {
-        final BundleContext usingBundleContext = context.getUsingBundle().getBundleContext();
+        m_UsingBundle = context.getUsingBundle();
+        final BundleContext usingBundleContext = m_UsingBundle.getBundleContext();
         final ServiceReference<LogService> ref = usingBundleContext.getServiceReference(LogService.class);
         m_LogService = usingBundleContext.getService(ref);
     }
@@ -81,18 +117,30 @@ public class LoggingServiceImpl implements LoggingService
     @Override
     public void log(final int level, final String format, final Object... args)
     {
+        if (!isLoggable(level))
+        {
+            return;
+        }
         m_LogService.log(level, String.format(format, args));
     }
     
     @Override
     public void log(final int level, final Throwable exception, final String format, final Object... args)
     {
+        if (!isLoggable(level))
+        {
+            return;
+        }
         m_LogService.log(level, String.format(format, args), exception);
     }
     
     @Override
     public void log(final ServiceReference<?> reference, final int level, final String format, final Object... args)
     {
+        if (!isLoggable(level))
+        {
+            return;
+        }
         m_LogService.log(reference, level, String.format(format, args));
     }
     
@@ -100,6 +148,10 @@ public class LoggingServiceImpl implements LoggingService
     public void log(final ServiceReference<?> reference, final int level, final Throwable exception, 
             final String format, final Object... args)
     {
+        if (!isLoggable(level))
+        {
+            return;
+        }
         m_LogService.log(reference, level, String.format(format, args), exception);
     }
     
@@ -138,4 +190,18 @@ public class LoggingServiceImpl implements LoggingService
     {
         log(LogService.LOG_ERROR, exception, format, args);
     }
+    
+    /**
+     * Check if a message at the given level will be logged for the using bundle.
+     * 
+     * @param level
+     *      level of the message
+     * @return
+     *      true if the message should be formatted and sent to the log service
+     */
+    private boolean isLoggable(final int level)
+    {
+        final LogThreshold threshold = m_LogThreshold;
+        return threshold == null || threshold.isLoggable(m_UsingBundle, level);
+    }
 }
@@ -0,0 +1,292 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.logging;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogService;
+
+/**
+ */
+public class TestAsyncLogAppender
+{
+    private AsyncLogAppender m_SUT;
+    private List<LogEntry> m_Written;
+    private CountDownLatch m_WriteStarted;
+    private CountDownLatch m_ReleaseWrite;
+    private int m_FlushCount;
+    
+    @Before
+    public void setUp()
+    {
+        m_Written = Collections.synchronizedList(new ArrayList<LogEntry>());
+        m_WriteStarted = new CountDownLatch(1);
+        m_ReleaseWrite = new CountDownLatch(0);
+    }
+    
+    @After
+    public void tearDown()
+    {
+        m_ReleaseWrite.countDown();
+        if (m_SUT != null)
+        {
+            m_SUT.stop();
+        }
+    }
+    
+    /**
+     * Verify entries are written in order by the writer thread and flushed after each batch.
+     */
+    @Test
+    public void testAppend() throws Exception
+    {
+        m_SUT = createAppender(16, LogOverflowPolicy.Block);
+        
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            LogEntry entry = createEntry(LogService.LOG_INFO);
+            entries.add(entry);
+            assertThat(m_SUT.append(entry), is(true));
+        }
+        
+        m_SUT.stop();
+        
+        assertThat(m_Written, is(entries));
+        assertThat(m_SUT.getEnqueuedCount(), is(10L));
+        assertThat(m_SUT.getWrittenCount(), is(10L));
+        assertThat(m_SUT.getDroppedCount(), is(0L));
+        assertThat(m_SUT.getQueueDepth(), is(0));
+        assertThat((long)m_FlushCount, is(m_SUT.getBatchCount()));
+        assertThat(m_FlushCount, is(greaterThan(0)));
+    }
+    
+    /**
+     * Verify entries are rejected once stopped so the caller can write them itself.
+     */
+    @Test
+    public void testAppendStopped()
+    {
+        m_SUT = createAppender(16, LogOverflowPolicy.Block);
+        m_SUT.stop();
+        
+        assertThat(m_SUT.append(createEntry(LogService.LOG_INFO)), is(false));
+        assertThat(m_SUT.getEnqueuedCount(), is(0L));
+    }
+    
+    /**
+     * Verify the logging thread waits for room when the policy is to block and no entries are lost.
+     */
+    @Test
+    public void testBlockPolicy() throws Exception
+    {
+        m_SUT = createAppender(2, LogOverflowPolicy.Block);
+        final List<LogEntry> entries = fillWhileWriterBusy();
+        
+        final LogEntry last = createEntry(LogService.LOG_DEBUG);
+        final AtomicBoolean appended = new AtomicBoolean();
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                appended.set(m_SUT.append(last));
+            }
+        });
+        thread.start();
+        
+        // should be blocked until the writer makes room
+        thread.join(200);
+        assertThat(thread.isAlive(), is(true));
+        
+        m_ReleaseWrite.countDown();
+        thread.join(5000);
+        assertThat(appended.get(), is(true));
+        m_SUT.stop();
+        
+        entries.add(last);
+        assertThat(m_Written, is(entries));
+        assertThat(m_SUT.getDroppedCount(), is(0L));
+    }
+    
+    /**
+     * Verify the oldest queued entry is replaced when the policy is to drop the oldest.
+     */
+    @Test
+    public void testDropOldestPolicy() throws Exception
+    {
+        m_SUT = createAppender(2, LogOverflowPolicy.DropOldest);
+        final List<LogEntry> entries = fillWhileWriterBusy();
+        
+        LogEntry last = createEntry(LogService.LOG_ERROR);
+        assertThat(m_SUT.append(last), is(true));
+        
+        m_ReleaseWrite.countDown();
+        m_SUT.stop();
+        
+        // first entry was already taken by the writer, second was the oldest queued
+        assertThat(m_Written, contains(entries.get(0), entries.get(2), last));
+        assertThat(m_SUT.getDroppedCount(), is(1L));
+        assertThat(m_SUT.getEnqueuedCount(), is(4L));
+    }
+    
+    /**
+     * Verify debug entries are dropped before others when the policy is to drop debug first.
+     */
+    @Test
+    public void testDropDebugFirstPolicy() throws Exception
+    {
+        m_SUT = createAppender(3, LogOverflowPolicy.DropDebugFirst);
+        
+        // first entry is taken by the writer which is held until released
+        m_ReleaseWrite = new CountDownLatch(1);
+        LogEntry first = createEntry(LogService.LOG_INFO);
+        m_SUT.append(first);
+        assertThat(m_WriteStarted.await(5, TimeUnit.SECONDS), is(true));
+        
+        LogEntry info = createEntry(LogService.LOG_INFO);
+        LogEntry debug = createEntry(LogService.LOG_DEBUG);
+        LogEntry warning = createEntry(LogService.LOG_WARNING);
+        m_SUT.append(info);
+        m_SUT.append(debug);
+        m_SUT.append(warning);
+        
+        // new debug entry is dropped
+        m_SUT.append(createEntry(LogService.LOG_DEBUG));
+        
+        // queued debug entry is dropped to make room for the error
+        LogEntry error = createEntry(LogService.LOG_ERROR);
+        m_SUT.append(error);
+        
+        // no debug entries left, oldest is dropped
+        LogEntry error2 = createEntry(LogService.LOG_ERROR);
+        m_SUT.append(error2);
+        
+        m_ReleaseWrite.countDown();
+        m_SUT.stop();
+        
+        assertThat(m_Written, contains(first, warning, error, error2));
+        assertThat(m_SUT.getDroppedCount(), is(3L));
+    }
+    
+    /**
+     * Verify entries from many threads are all written when blocking.
+     */
+    @Test
+    public void testConcurrentAppend() throws Exception
+    {
+        m_SUT = createAppender(8, LogOverflowPolicy.Block);
+        
+        final int threads = 4;
+        final int perThread = 5000;
+        final LogEntry entry = createEntry(LogService.LOG_INFO);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < perThread; j++)
+                    {
+                        m_SUT.append(entry);
+                    }
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workers)
+        {
+            thread.join(10000);
+        }
+        m_SUT.stop();
+        
+        assertThat(m_Written.size(), is(threads * perThread));
+        assertThat(m_SUT.getWrittenCount(), is((long)threads * perThread));
+        assertThat(m_SUT.getDroppedCount(), is(0L));
+    }
+    
+    /**
+     * Hold the writer thread in the middle of writing the first entry and fill the ring with 2 more.
+     * 
+     * @return
+     *      all 3 entries appended
+     */
+    private List<LogEntry> fillWhileWriterBusy() throws InterruptedException
+    {
+        m_ReleaseWrite = new CountDownLatch(1);
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            LogEntry entry = createEntry(LogService.LOG_INFO);
+            entries.add(entry);
+            assertThat(m_SUT.append(entry), is(true));
+            if (i == 0)
+            {
+                assertThat(m_WriteStarted.await(5, TimeUnit.SECONDS), is(true));
+            }
+        }
+        return entries;
+    }
+    
+    private AsyncLogAppender createAppender(final int capacity, final LogOverflowPolicy policy)
+    {
+        AsyncLogAppender appender = new AsyncLogAppender(new AsyncLogAppender.EntryWriter()
+        {
+            @Override
+            public void write(final LogEntry entry)
+            {
+                m_WriteStarted.countDown();
+                try
+                {
+                    m_ReleaseWrite.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                m_Written.add(entry);
+            }
+            
+            @Override
+            public void flush()
+            {
+                m_FlushCount++;
+            }
+        }, capacity, policy);
+        appender.start("TestAsyncLogAppender");
+        return appender;
+    }
+    
+    private LogEntry createEntry(final int level)
+    {
+        LogEntry entry = mock(LogEntry.class);
+        when(entry.getLevel()).thenReturn(level);
+        return entry;
+    }
+}
@@ -998,6 +998,83 @@ public class TestLogWriter
         }
     }
     
+    /**
+     * Verify the threshold reflects the log level and any log filters so callers can skip creating messages.
+     */
+    @Test
+    public void testIsLoggable()
+    {
+        BundleContext context = mock(BundleContext.class);
+        when(context.getProperty(LogWriter.LOG_DIR_PROPERTY)).thenReturn("TempLogDir");
+        when(context.getProperty(LogWriter.LOG_LEVEL_PROPERTY)).thenReturn("Info");
+        m_SUT.activate(context, new HashMap<String, Object>(getComponentProperties()));
+
+        when(m_Bundle.getSymbolicName()).thenReturn("my.bundle.puppies");
+        assertThat(m_SUT.isLoggable(m_Bundle, LogService.LOG_DEBUG), is(false));
+        assertThat(m_SUT.isLoggable(m_Bundle, LogService.LOG_INFO), is(true));
+        assertThat(m_SUT.isLoggable(m_Bundle, LogService.LOG_ERROR), is(true));
+
+        // filter raises the threshold for matching bundles only
+        m_SUT.setLogFilter(createFilter("my.bundle.*", LogService.LOG_WARNING));
+        assertThat(m_SUT.isLoggable(m_Bundle, LogService.LOG_INFO), is(false));
+        assertThat(m_SUT.isLoggable(m_Bundle, LogService.LOG_WARNING), is(true));
+
+        Bundle otherBundle = mock(Bundle.class);
+        when(otherBundle.getSymbolicName()).thenReturn("other.bundle");
+        assertThat(m_SUT.isLoggable(otherBundle, LogService.LOG_INFO), is(true));
+        assertThat(m_SUT.isLoggable(otherBundle, LogService.LOG_DEBUG), is(false));
+
+        m_SUT.deactivate();
+    }
+
+    /**
+     * Verify entries are written to the log file by the writer thread when asynchronous logging is enabled and that
+     * everything queued is written when deactivated.
+     */
+    @Test
+    public void testLoggedAsync() throws Exception
+    {
+        BundleContext context = mock(BundleContext.class);
+        when(context.getProperty(LogWriter.LOG_DIR_PROPERTY)).thenReturn("TempLogDir");
+        when(context.getProperty(LogWriter.LOG_STDOUT_PROPERTY)).thenReturn("false");
+        Map<String, Object> props = new HashMap<String, Object>(getComponentProperties());
+        props.put("asyncEnabled", true);
+        props.put("asyncQueueCapacity", 4);
+        props.put("asyncOverflowPolicy", LogOverflowPolicy.Block.toString());
+        m_SUT.activate(context, props);
+        setUpFileNaming();
+
+        LogEntry logEntry = mock(LogEntry.class);
+        when(logEntry.getBundle()).thenReturn(m_Bundle);
+        when(logEntry.getLevel()).thenReturn(LogService.LOG_INFO);
+        when(logEntry.getTime()).thenReturn(1L);
+        when(logEntry.getMessage()).thenReturn("async entry");
+        for (int i = 0; i < 20; i++)
+        {
+            m_SUT.logged(logEntry);
+        }
+        assertThat(m_SUT.getAsyncEnqueuedCount(), is(20L));
+        assertThat(m_SUT.getAsyncDroppedCount(), is(0L));
+
+        // writes out anything left in the queue
+        m_SUT.deactivate();
+        assertThat(m_SUT.getAsyncEnqueuedCount(), is(0L));
+
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(m_LogFile)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.contains("async entry"))
+                {
+                    count++;
+                }
+            }
+        }
+        assertThat(count, is(20));
+    }
+
     /**
      * Mimic the properties usually passed as properties in the activate and modify methods.
      */
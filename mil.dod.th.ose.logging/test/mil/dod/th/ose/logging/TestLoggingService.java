@@ -12,15 +12,25 @@
 //==============================================================================
 package mil.dod.th.ose.logging;
 
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogReaderService;
 import org.osgi.service.log.LogService;
 
 /**
@@ -34,6 +44,8 @@ public class TestLoggingService
     private BundleContext m_UsingBundleContext;
     private ServiceReference<LogService> m_LogServiceRef;
     private LogService m_LogService;
+    private LogWriter m_Writer;
+    private int m_LoggedCount;
 
     @SuppressWarnings("unchecked")
     @Before
@@ -154,6 +166,42 @@ public class TestLoggingService
         verify(m_LogService).log(ref, LogService.LOG_DEBUG, "some message 4 u", e);
     }
     
+    /**
+     * Verify messages are not formatted or passed to the log service if the bound threshold will discard them, and
+     * that everything is passed on once the threshold is unbound.
+     */
+    @Test
+    public void testLogThreshold()
+    {
+        Bundle usingBundle = m_Context.getUsingBundle();
+        LogThreshold threshold = mock(LogThreshold.class);
+        when(threshold.isLoggable(usingBundle, LogService.LOG_DEBUG)).thenReturn(false);
+        when(threshold.isLoggable(usingBundle, LogService.LOG_INFO)).thenReturn(true);
+        m_SUT.setLogThreshold(threshold);
+
+        Object arg = mock(Object.class);
+        Exception e = new Exception();
+        ServiceReference<?> ref = mock(ServiceReference.class);
+
+        // replay
+        m_SUT.debug("hello %s", arg);
+        m_SUT.log(LogService.LOG_DEBUG, e, "hello %s", arg);
+        m_SUT.log(ref, LogService.LOG_DEBUG, "hello %s", arg);
+        m_SUT.log(ref, LogService.LOG_DEBUG, e, "hello %s", arg);
+        m_SUT.info("hello %d", 4);
+
+        // verify only the info message made it through
+        verify(m_LogService).log(LogService.LOG_INFO, "hello 4");
+        verifyNoMoreInteractions(m_LogService);
+
+        // replay
+        m_SUT.unsetLogThreshold(threshold);
+        m_SUT.debug("hello %d", 5);
+
+        // verify
+        verify(m_LogService).log(LogService.LOG_DEBUG, "hello 5");
+    }
+
     /**
      * Verify calling the debug method will call on log service with the debug log level.
      */
@@ -273,4 +321,188 @@ public class TestLoggingService
         // verify
         verify(m_LogService).log(LogService.LOG_ERROR, "some message 4 u", e);
     }
+
+    /**
+     * Measure the rate of debug messages through the {@link LoggingServiceImpl} and the {@link LogWriter}, both when
+     * debug is disabled and the messages are discarded by the threshold, and when debug is enabled and the messages are
+     * written to the log file, synchronously and by the asynchronous writer thread. Rates are printed for comparison,
+     * only the number of entries reaching the writer is verified.
+     */
+    @Test
+    public void testLoggingThroughput()
+    {
+        final int messages = 250000;
+        final LoggingServiceImpl logging = createForwardingLoggingService();
+
+        final File logDir = new File(".", "TempBenchmarkLogDir");
+        BundleContext context = mock(BundleContext.class);
+        when(context.getProperty(LogWriter.LOG_DIR_PROPERTY)).thenReturn(logDir.getPath());
+        when(context.getProperty(LogWriter.LOG_STDOUT_PROPERTY)).thenReturn("false");
+        when(context.getProperty(LogWriter.LOG_SIZE_PROPERTY)).thenReturn("128");
+        when(context.getProperty(LogWriter.LOG_LEVEL_PROPERTY)).thenReturn("Info");
+        LogReaderService logReader = mock(LogReaderService.class);
+        when(logReader.getLog()).thenReturn(new Vector<LogEntry>().elements());
+        m_Writer = new LogWriter();
+        m_Writer.setLogReaderService(logReader);
+        m_Writer.activate(context, getComponentProperties());
+        logging.setLogThreshold(m_Writer);
+
+        final long disabledStart = System.nanoTime();
+        for (int i = 0; i < messages; i++)
+        {
+            logging.debug("Processed message %d of %s", i, "benchmark");
+        }
+        final long disabledNanos = System.nanoTime() - disabledStart;
+        m_Writer.deactivate();
+        assertThat(m_LoggedCount, is(0));
+
+        when(context.getProperty(LogWriter.LOG_LEVEL_PROPERTY)).thenReturn("Debug");
+        m_Writer.activate(context, getComponentProperties());
+
+        final long enabledStart = System.nanoTime();
+        for (int i = 0; i < messages; i++)
+        {
+            logging.debug("Processed message %d of %s", i, "benchmark");
+        }
+        final long enabledNanos = System.nanoTime() - enabledStart;
+        m_Writer.deactivate();
+        assertThat(m_LoggedCount, is(messages));
+
+        Map<String, Object> asyncProps = getComponentProperties();
+        asyncProps.put("logLevel", "Debug");
+        asyncProps.put("logMBSizeLimit", 32);
+        asyncProps.put("asyncEnabled", true);
+        m_Writer.activate(context, asyncProps);
+
+        final long asyncStart = System.nanoTime();
+        for (int i = 0; i < messages; i++)
+        {
+            logging.debug("Processed message %d of %s", i, "benchmark");
+        }
+        final long asyncNanos = System.nanoTime() - asyncStart;
+        m_Writer.deactivate();
+        assertThat(m_LoggedCount, is(messages * 2));
+
+        System.out.format("Debug disabled: %d lines/sec, debug enabled: %d lines/sec, debug enabled async: %d "
+                + "lines/sec%n", messages * 1000000000L / Math.max(disabledNanos, 1),
+                messages * 1000000000L / Math.max(enabledNanos, 1), messages * 1000000000L / Math.max(asyncNanos, 1));
+
+        for (File file : logDir.listFiles())
+        {
+            file.delete();
+        }
+        logDir.delete();
+        m_Writer.unsetLogReaderService(logReader);
+    }
+
+    /**
+     * Mimic the properties passed to the log writer when activated by the framework without a configuration.
+     */
+    private Map<String, Object> getComponentProperties()
+    {
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ComponentConstants.COMPONENT_NAME, LogWriter.class.getName());
+        props.put(ComponentConstants.COMPONENT_ID, "1");
+        return props;
+    }
+
+    /**
+     * Create a logging service backed by a log service that passes each entry straight to the benchmark log writer.
+     */
+    private LoggingServiceImpl createForwardingLoggingService()
+    {
+        final Bundle usingBundle = mock(Bundle.class);
+        when(usingBundle.getSymbolicName()).thenReturn("my.bundle.benchmark");
+        final BundleContext usingContext = mock(BundleContext.class);
+        when(usingBundle.getBundleContext()).thenReturn(usingContext);
+        @SuppressWarnings("unchecked")
+        final ServiceReference<LogService> logServiceRef = mock(ServiceReference.class);
+        when(usingContext.getServiceReference(LogService.class)).thenReturn(logServiceRef);
+        when(usingContext.getService(logServiceRef)).thenReturn(new ForwardingLogService(usingBundle));
+
+        final ComponentContext componentContext = mock(ComponentContext.class);
+        when(componentContext.getUsingBundle()).thenReturn(usingBundle);
+
+        final LoggingServiceImpl logging = new LoggingServiceImpl();
+        logging.activate(componentContext);
+        return logging;
+    }
+
+    /**
+     * Log service that creates a {@link LogEntry} for each message and passes it to the benchmark log writer.
+     */
+    private class ForwardingLogService implements LogService
+    {
+        private final Bundle m_LoggingBundle;
+
+        ForwardingLogService(final Bundle bundle)
+        {
+            m_LoggingBundle = bundle;
+        }
+
+        @Override
+        public void log(final int level, final String message)
+        {
+            log(null, level, message, null);
+        }
+
+        @Override
+        public void log(final int level, final String message, final Throwable exception)
+        {
+            log(null, level, message, exception);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void log(final ServiceReference sr, final int level, final String message)
+        {
+            log(sr, level, message, null);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void log(final ServiceReference sr, final int level, final String message, final Throwable exception)
+        {
+            final long time = System.currentTimeMillis();
+            m_LoggedCount++;
+            m_Writer.logged(new LogEntry()
+            {
+                @Override
+                public Bundle getBundle()
+                {
+                    return m_LoggingBundle;
+                }
+
+                @Override
+                public ServiceReference getServiceReference()
+                {
+                    return sr;
+                }
+
+                @Override
+                public int getLevel()
+                {
+                    return level;
+                }
+
+                @Override
+                public String getMessage()
+                {
+                    return message;
+                }
+
+                @Override
+                public Throwable getException()
+                {
+                    return exception;
+                }
+
+                @Override
+                public long getTime()
+                {
+                    return time;
+                }
+            });
+        }
+    }
 }
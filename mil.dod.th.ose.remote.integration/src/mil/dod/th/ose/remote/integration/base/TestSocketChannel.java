@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 
 import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
 import mil.dod.th.core.remote.proto.BaseMessages.ControllerInfoData;
@@ -106,6 +108,49 @@ public class TestSocketChannel
         }
     }
     
+    /**
+     * Load test that holds 1,000 connections open on the controller at once.  Each connection sends a request and 
+     * verifies the response is received.
+     */
+    @Test(timeout = 120000)
+    public void testManyConnections() throws IOException
+    {
+        final int connections = 1000;
+        final List<Socket> sockets = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < connections; i++)
+            {
+                sockets.add(SocketHostHelper.connectToController());
+            }
+            
+            for (Socket socket : sockets)
+            {
+                TerraHarvestMessage request = TerraHarvestMessageHelper.createRequestControllerInfoMsg();
+                request.writeDelimitedTo(socket.getOutputStream());
+            }
+            
+            for (Socket socket : sockets)
+            {
+                TerraHarvestMessage response = TerraHarvestMessage.parseDelimitedFrom(socket.getInputStream());
+                assertThat(response, is(notNullValue()));
+                
+                TerraHarvestPayload payLoadTest = TerraHarvestPayload.parseFrom(response.getTerraHarvestPayload());
+                assertThat(payLoadTest.getNamespace(), is(Namespace.Base));
+                
+                BaseNamespace namespaceResponse = BaseNamespace.parseFrom(payLoadTest.getNamespaceMessage());
+                assertThat(namespaceResponse.getType(), is(BaseMessageType.ControllerInfo));
+            }
+        }
+        finally
+        {
+            for (Socket socket : sockets)
+            {
+                socket.close();
+            }
+        }
+    }
+    
     /**
      * Confirm that sending a message over the max size will close the connection.
      */
@@ -16,6 +16,7 @@ import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
@@ -43,9 +44,14 @@ public abstract class AbstractRemoteChannel implements RemoteChannel
     private ComponentFactory m_MessageSenderFactory;
 
     /**
-     * Service that will send queued messages.
+     * Queue of messages to send, either backed by a {@link QueuedMessageSender} or provided by the implementer.
      */
-    private QueuedMessageSender m_MessageSender;
+    private MessageQueue m_MessageQueue;
+    
+    /**
+     * Running count of messages transmitted by the channel.
+     */
+    private final AtomicLong m_MessagesTransmitted = new AtomicLong();
     
     /**
      * Type of channel.
@@ -86,13 +92,80 @@ public abstract class AbstractRemoteChannel implements RemoteChannel
      *      properties used when matching channels, must only contain channel specific properties to match on 
      */
     public void initMessageSender(final Map<String, Object> matchProps)
+    {
+        initMessageSender(matchProps, null);
+    }
+    
+    /**
+     * Initialize the message sender with a writer used to send batches of queued messages.  Must be called by 
+     * implementer instead of {@link #initMessageSender(Map)} if used.
+     * 
+     * @param matchProps 
+     *      properties used when matching channels, must only contain channel specific properties to match on 
+     * @param batchWriter
+     *      writer used to send batches of messages, null to send queued messages one at a time using {@link 
+     *      #trySendMessage(TerraHarvestMessage)}
+     */
+    void initMessageSender(final Map<String, Object> matchProps, final QueuedMessageSender.BatchWriter batchWriter)
     {
         m_Properties = new HashMap<String, Object>(matchProps);
         
         final Dictionary<String, Object> senderProps = new Hashtable<String, Object>();
         senderProps.put(QueuedMessageSender.CHANNEL_PROP_KEY, this);
+        if (batchWriter != null)
+        {
+            senderProps.put(QueuedMessageSender.BATCH_WRITER_PROP_KEY, batchWriter);
+        }
         m_MessageSenderInstance = m_MessageSenderFactory.newInstance(senderProps);
-        m_MessageSender = (QueuedMessageSender)m_MessageSenderInstance.getInstance();
+        final QueuedMessageSender messageSender = (QueuedMessageSender)m_MessageSenderInstance.getInstance();
+        m_MessageQueue = new MessageQueue()
+        {
+            @Override
+            public boolean queue(final TerraHarvestMessage message)
+            {
+                return messageSender.queue(message);
+            }
+
+            @Override
+            public int getQueuedMessageCount()
+            {
+                return messageSender.getQueuedMessageCount();
+            }
+
+            @Override
+            public void clearQueue()
+            {
+                messageSender.clearQueue();
+            }
+
+            @Override
+            public long getQueuedByteCount()
+            {
+                return messageSender.getQueuedByteCount();
+            }
+
+            @Override
+            public long getDroppedMessageCount()
+            {
+                return messageSender.getDroppedMessageCount();
+            }
+        };
+    }
+
+    /**
+     * Initialize the channel with a queue that sends messages itself instead of creating a message sender.  Must be 
+     * called by implementers instead of {@link #initMessageSender(Map)} if used, {@link #cleanupMessageSender()} must 
+     * not be called.
+     * 
+     * @param matchProps 
+     *      properties used when matching channels, must only contain channel specific properties to match on 
+     * @param messageQueue
+     *      queue used to send messages
+     */
+    void initMessageQueue(final Map<String, Object> matchProps, final MessageQueue messageQueue)
+    {
+        m_Properties = new HashMap<String, Object>(matchProps);
+        m_MessageQueue = messageQueue;
     }
 
     /**
@@ -112,13 +185,31 @@ public abstract class AbstractRemoteChannel implements RemoteChannel
     @Override
     public boolean queueMessage(final TerraHarvestMessage message)
     {
-        return m_MessageSender.queue(message);
+        return m_MessageQueue.queue(message);
     }
 
     @Override
     public int getQueuedMessageCount()
     {
-        return m_MessageSender.getQueuedMessageCount();
+        return m_MessageQueue.getQueuedMessageCount();
+    }
+
+    @Override
+    public long getQueuedByteCount()
+    {
+        return m_MessageQueue.getQueuedByteCount();
+    }
+
+    @Override
+    public long getMessagesTransmitted()
+    {
+        return m_MessagesTransmitted.get();
+    }
+
+    @Override
+    public long getDroppedMessageCount()
+    {
+        return m_MessageQueue.getDroppedMessageCount();
     }
 
     @Override
@@ -130,7 +221,7 @@ public abstract class AbstractRemoteChannel implements RemoteChannel
     @Override
     public void clearQueuedMessages()
     {
-        m_MessageSender.clearQueue();
+        m_MessageQueue.clearQueue();
     }
     
     /**
@@ -144,4 +235,61 @@ public abstract class AbstractRemoteChannel implements RemoteChannel
     {
         return m_Properties;
     }
+    
+    /**
+     * Add to the running count of messages transmitted.  Must be called by implementers each time messages have been 
+     * sent.
+     * 
+     * @param count
+     *      number of messages sent
+     */
+    protected void addMessagesTransmitted(final int count)
+    {
+        m_MessagesTransmitted.addAndGet(count);
+    }
+    
+    /**
+     * Queue of messages waiting to be sent by a channel.
+     */
+    interface MessageQueue
+    {
+        /**
+         * Queue a message to be sent.
+         * 
+         * @param message
+         *      message to send
+         * @return
+         *      true if queued, false if the queue is full
+         */
+        boolean queue(TerraHarvestMessage message);
+
+        /**
+         * Get the number of messages waiting to be sent.
+         * 
+         * @return
+         *      number of queued messages
+         */
+        int getQueuedMessageCount();
+
+        /**
+         * Discard all messages waiting to be sent.
+         */
+        void clearQueue();
+
+        /**
+         * Get the total size of the messages waiting to be sent.
+         * 
+         * @return
+         *      number of bytes of queued messages
+         */
+        long getQueuedByteCount();
+
+        /**
+         * Get the running count of messages that could not be queued or were discarded.
+         * 
+         * @return
+         *      number of dropped messages
+         */
+        long getDroppedMessageCount();
+    }
 }
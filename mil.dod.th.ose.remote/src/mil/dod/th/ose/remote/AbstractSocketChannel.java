@@ -13,11 +13,17 @@
 package mil.dod.th.ose.remote;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.pm.PowerManager;
 import mil.dod.th.core.pm.WakeLock;
@@ -94,6 +100,16 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
      */
     private WakeLock m_WakeLock;
 
+    /**
+     * Engine used to service the socket if it has an associated {@link java.nio.channels.SocketChannel}.
+     */
+    private NioSocketEngine m_NioSocketEngine;
+
+    /**
+     * Connection of the socket with the {@link NioSocketEngine}, null if the socket is serviced by its own threads.
+     */
+    private NioConnection m_NioConnection;
+
     /**
      * Default constructor.
      */
@@ -147,14 +163,29 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
     }
 
     /**
-     * Activate the component by getting a reference to the connected socket.
+     * Bind the engine used to service sockets with an associated {@link java.nio.channels.SocketChannel}.
+     * 
+     * @param nioSocketEngine
+     *      engine that services non-blocking sockets
+     */
+    public void setNioSocketEngine(final NioSocketEngine nioSocketEngine)
+    {
+        m_NioSocketEngine = nioSocketEngine;
+    }
+
+    /**
+     * Activate the component by getting a reference to the connected socket.  If the socket has an associated
+     * {@link java.nio.channels.SocketChannel}, it is serviced by the {@link NioSocketEngine}, otherwise a listener
+     * and a sender thread are started for the socket.
      *
      * @param socket
      *      socket used by this channel to send/receive data
      * @param matchProps
      *      properties of the component that will be used by {@link #matches(Map)} (exclude others)
+     * @throws IOException
+     *      if unable to register the socket with the {@link NioSocketEngine}
      */
-    public void subActivate(final Socket socket, final Map<String, Object> matchProps)
+    public void subActivate(final Socket socket, final Map<String, Object> matchProps) throws IOException
     {
         m_Socket = socket;
 
@@ -168,19 +199,55 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
 
         m_Logging.info("Activated remote channel for socket (%s)", m_Socket.getRemoteSocketAddress());
 
-        initMessageSender(matchProps);
-
         //assign initial channel status
         m_Status = ChannelStatus.Unknown;
         
-        // create message listener for this channel and run it on a thread
+        // create message listener for this channel
         final Dictionary<String, Object> listenerProps = new Hashtable<String, Object>();
         listenerProps.put(SocketMessageListener.SOCKET_PROP_KEY, m_Socket);
         listenerProps.put(SocketMessageListener.CHANNEL_PROP_KEY, this);
         m_ListenerInstance = m_SocketMessageListenerFactory.newInstance(listenerProps);
-        
-        // now that sending is setup through subclass, start listener
         final SocketMessageListener listener = (SocketMessageListener)m_ListenerInstance.getInstance();
+        
+        if (m_Socket.getChannel() != null)
+        {
+            m_NioConnection = m_NioSocketEngine.createConnection(m_Socket.getChannel(), new NioConnection.Handler()
+            {
+                @Override
+                public void frameReceived(final ByteString frame)
+                {
+                    listener.handleMessageBuffer(frame);
+                }
+
+                @Override
+                public void connectionClosed()
+                {
+                    listener.cleanup();
+                }
+
+                @Override
+                public void messagesWritten(final int count)
+                {
+                    addMessagesTransmitted(count);
+                }
+            });
+            
+            // the engine queues outbound messages itself, so no sender thread is needed
+            initMessageQueue(matchProps, m_NioConnection);
+            m_NioConnection.start();
+            return;
+        }
+        
+        initMessageSender(matchProps, new QueuedMessageSender.BatchWriter()
+        {
+            @Override
+            public int trySendMessages(final List<TerraHarvestMessage> messages)
+            {
+                return writeMessages(messages);
+            }
+        });
+        
+        // now that sending is setup through subclass, run listener on a thread
         m_ListenerThread = new Thread(listener);
         m_ListenerThread.setName(m_Socket.getRemoteSocketAddress() + "-MessageListener");
         m_ListenerThread.start();
@@ -194,13 +261,26 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
      */
     public void subDeactivate() throws InterruptedException
     {
-        m_ListenerInstance.dispose();
+        final DecodeStatistics decodeStatistics = getDecodeStatistics();
+        if (decodeStatistics != null)
+        {
+            m_Logging.debug("Socket (%s) closing, %s", m_Socket.getRemoteSocketAddress(), decodeStatistics);
+        }
         
-        final int ThreadWaitMs = 1000;
-        m_ListenerThread.join(ThreadWaitMs);
-        assert !m_ListenerThread.isAlive();
+        m_ListenerInstance.dispose();
         
-        cleanupMessageSender();
+        if (m_NioConnection == null)
+        {
+            final int ThreadWaitMs = 1000;
+            m_ListenerThread.join(ThreadWaitMs);
+            assert !m_ListenerThread.isAlive();
+            
+            cleanupMessageSender();
+        }
+        else
+        {
+            m_NioConnection.close();
+        }
         
         try
         {
@@ -229,28 +309,12 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
     @Override
     public boolean trySendMessage(final TerraHarvestMessage message)
     {
-        try
-        {
-            synchronized (this) 
-            {
-                message.writeDelimitedTo(m_Socket.getOutputStream());
-            }
-            m_BytesTransmitted += message.getSerializedSize();
-            m_Status = ChannelStatus.Active;
-        }
-        catch (final IOException e)
-        {
-            m_Logging.debug("Failed to send message to socket [%s]", m_Socket.getRemoteSocketAddress());
-            m_Status = ChannelStatus.Unavailable;
-            return false;
-        }
-
-        if (m_RemoteSettings.isLogRemoteMessagesEnabled())
+        if (m_NioConnection != null)
         {
-            m_Logging.debug("Remote message written to socket [%s]%n%s", m_Socket.getRemoteSocketAddress(), message);
+            return queueNioMessage(message);
         }
-
-        return true;
+        
+        return writeMessages(Collections.singletonList(message)) == 1;
     }
     
     @Override
@@ -268,15 +332,38 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
     @Override
     public long getBytesTransmitted()
     {
+        if (m_NioConnection != null)
+        {
+            return m_NioConnection.getBytesWritten();
+        }
         return m_BytesTransmitted;
     }
     
     @Override
     public long getBytesReceived()
     {
+        if (m_NioConnection != null)
+        {
+            return m_NioConnection.getBytesRead();
+        }
         return m_BytesReceived;
     }
     
+    /**
+     * Get the statistics of messages decoded for this channel, including the memory allocated for them.
+     * 
+     * @return
+     *      decode statistics of the channel or null if the channel is not active
+     */
+    DecodeStatistics getDecodeStatistics()
+    {
+        if (m_ListenerInstance == null || m_ListenerInstance.getInstance() == null)
+        {
+            return null;
+        }
+        return ((SocketMessageListener)m_ListenerInstance.getInstance()).getDecodeStatistics();
+    }
+    
     /**
      * Get the socket for this channel.
      * 
@@ -288,6 +375,17 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
         return m_Socket;
     }
     
+    /**
+     * Get the settings for the remote interface.
+     * 
+     * @return
+     *      interface containing remote settings from config admin
+     */
+    protected RemoteSettings getRemoteSettings()
+    {
+        return m_RemoteSettings;
+    }
+    
     /**
      * Updates the byte received.  Should be called by the component that reads messages.
      * 
@@ -298,4 +396,100 @@ abstract class AbstractSocketChannel extends AbstractRemoteChannel implements So
     {
         m_BytesReceived = newValue;
     }
+    
+    /**
+     * Write the messages to the socket, each with its size prefix, using a single write to the socket stream.
+     * 
+     * @param messages
+     *      messages to write in order
+     * @return
+     *      number of messages written, either all or none
+     */
+    private int writeMessages(final List<TerraHarvestMessage> messages)
+    {
+        int batchSize = 0;
+        int messagesSize = 0;
+        for (TerraHarvestMessage message : messages)
+        {
+            final int messageSize = message.getSerializedSize();
+            batchSize += CodedOutputStream.computeRawVarint32Size(messageSize) + messageSize;
+            messagesSize += messageSize;
+        }
+        
+        final byte[] batch = new byte[batchSize];
+        final CodedOutputStream output = CodedOutputStream.newInstance(batch);
+        try
+        {
+            for (TerraHarvestMessage message : messages)
+            {
+                output.writeRawVarint32(message.getSerializedSize());
+                message.writeTo(output);
+            }
+            output.checkNoSpaceLeft();
+        }
+        catch (final IOException e)
+        {
+            throw new IllegalStateException("Unable to serialize messages into array", e);
+        }
+        
+        try
+        {
+            synchronized (this) 
+            {
+                final OutputStream socketStream = m_Socket.getOutputStream();
+                socketStream.write(batch);
+                socketStream.flush();
+                m_BytesTransmitted += messagesSize;
+            }
+            m_Status = ChannelStatus.Active;
+        }
+        catch (final IOException e)
+        {
+            m_Logging.debug("Failed to send message to socket [%s]", m_Socket.getRemoteSocketAddress());
+            m_Status = ChannelStatus.Unavailable;
+            return 0;
+        }
+        addMessagesTransmitted(messages.size());
+
+        if (m_RemoteSettings.isLogRemoteMessagesEnabled())
+        {
+            for (TerraHarvestMessage message : messages)
+            {
+                m_Logging.debug("Remote message written to socket [%s]%n%s", m_Socket.getRemoteSocketAddress(), 
+                        message);
+            }
+        }
+
+        return messages.size();
+    }
+    
+    /**
+     * Queue a message with the {@link NioSocketEngine}, which will write it once the socket is writable.  Unlike the
+     * thread per socket sender, messages are not retried if the socket fails as the socket is closed.
+     * 
+     * @param message
+     *      message to send
+     * @return
+     *      true if the message was queued
+     */
+    private boolean queueNioMessage(final TerraHarvestMessage message)
+    {
+        if (!m_NioConnection.queue(message))
+        {
+            m_Logging.debug("Failed to queue message for socket [%s]", m_Socket.getRemoteSocketAddress());
+            if (m_NioConnection.isClosed())
+            {
+                m_Status = ChannelStatus.Unavailable;
+            }
+            return false;
+        }
+        m_Status = ChannelStatus.Active;
+
+        if (m_RemoteSettings.isLogRemoteMessagesEnabled())
+        {
+            m_Logging.debug("Remote message queued for socket [%s]%n%s", m_Socket.getRemoteSocketAddress(), message);
+        }
+
+        return true;
+    }
 }
@@ -25,6 +25,7 @@ import aQute.bnd.annotation.component.Reference;
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.pm.PowerManager;
 import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.remote.api.RemoteSettings.SocketEngine;
 import mil.dod.th.ose.utils.ClientSocketFactory;
 
 import org.osgi.service.component.ComponentFactory;
@@ -122,6 +123,13 @@ public class ClientSocketChannel extends AbstractSocketChannel
         super.setPowerManager(powerManager);
     }
 
+    @Override
+    @Reference
+    public void setNioSocketEngine(final NioSocketEngine nioSocketEngine)
+    {
+        super.setNioSocketEngine(nioSocketEngine);
+    }
+
     /**
      * Activate the component by creating the socket based on the input.
      * 
@@ -136,7 +144,15 @@ public class ClientSocketChannel extends AbstractSocketChannel
         final String host = (String)props.get(HOST_PROP_KEY);
         final int port = (Integer)props.get(PORT_PROP_KEY);
         final boolean useSsl = (Boolean)props.get(SSL_PROP_KEY);
-        final Socket socket = m_ClientSocketFactory.createClientSocket(host, port, useSsl);
+        final Socket socket;
+        if (!useSsl && getRemoteSettings().getSocketEngine() == SocketEngine.NIO_SELECTOR)
+        {
+            socket = m_ClientSocketFactory.createClientSocketChannel(host, port).socket();
+        }
+        else
+        {
+            socket = m_ClientSocketFactory.createClientSocket(host, port, useSsl);
+        }
         
         final Map<String, Object> matchProps = new HashMap<String, Object>();
         matchProps.put(HOST_PROP_KEY, host);
@@ -0,0 +1,100 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages decoded for a single channel and the memory allocated to hold them, so the allocation rate of
+ * inbound traffic can be reported.  Only the frame each message is read into is allocated per message, buffers used
+ * to read from the socket are reused and parsed messages share the frame, so the frame bytes are the allocation rate.
+ */
+final class DecodeStatistics
+{
+    /**
+     * Number of messages decoded.
+     */
+    private final AtomicLong m_MessageCount = new AtomicLong();
+
+    /**
+     * Number of bytes allocated for frames.
+     */
+    private final AtomicLong m_AllocatedBytes = new AtomicLong();
+
+    /**
+     * System time in nanoseconds when counting started.
+     */
+    private final long m_StartNanos;
+
+    /**
+     * Start counting from now.
+     */
+    DecodeStatistics()
+    {
+        m_StartNanos = System.nanoTime();
+    }
+
+    /**
+     * Record a decoded message.
+     * 
+     * @param frameSize
+     *      number of bytes allocated for the frame the message was decoded from
+     */
+    void recordMessage(final int frameSize)
+    {
+        m_MessageCount.incrementAndGet();
+        m_AllocatedBytes.addAndGet(frameSize);
+    }
+
+    /**
+     * Get the number of messages decoded.
+     * 
+     * @return
+     *      message count
+     */
+    long getMessageCount()
+    {
+        return m_MessageCount.get();
+    }
+
+    /**
+     * Get the number of bytes allocated to decode messages.
+     * 
+     * @return
+     *      allocated bytes
+     */
+    long getAllocatedBytes()
+    {
+        return m_AllocatedBytes.get();
+    }
+
+    /**
+     * Get the average allocation rate since counting started.
+     * 
+     * @return
+     *      bytes allocated per second
+     */
+    double getAllocationRate()
+    {
+        final long elapsedNanos = Math.max(1, System.nanoTime() - m_StartNanos);
+        return (double)m_AllocatedBytes.get() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d messages decoded, %d bytes allocated (%.1f bytes/s)", getMessageCount(), 
+                getAllocatedBytes(), getAllocationRate());
+    }
+}
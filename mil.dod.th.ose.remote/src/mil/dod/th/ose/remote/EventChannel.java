@@ -93,6 +93,24 @@ public class EventChannel implements RemoteChannel
         return 0;
     }
 
+    @Override
+    public long getQueuedByteCount()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getMessagesTransmitted()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getDroppedMessageCount()
+    {
+        return 0;
+    }
+
     @Override
     public long getBytesTransmitted()
     {
@@ -0,0 +1,424 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.ose.remote.util.LatencyHistogram;
+
+/**
+ * Hands received messages off to a pool of threads so a slow message service doesn't hold up messages for other 
+ * namespaces.  Messages are kept in a lane for each namespace of each origin (typically a channel), and each lane is 
+ * handled in order by at most one thread at a time.  Lanes take turns on the threads, one message at a time.
+ * 
+ * <p>
+ * Each lane holds a limited number of messages.  Once full, {@link #dispatch(Object, Namespace, Runnable)} blocks, 
+ * which stops the channel from reading more messages until the lane has room.  If created without threads, messages 
+ * are handled by the calling thread.
+ */
+class MessageDispatcher
+{
+    /**
+     * How long to wait for messages being handled on shutdown.
+     */
+    private static final long SHUTDOWN_TIMEOUT_MS = 1000;
+
+    /**
+     * Lanes that have messages waiting or being handled by origin and namespace, lanes are removed once empty.  Map is
+     * also the lock for all lanes.
+     */
+    private final Map<LaneKey, Lane> m_Lanes = new HashMap<LaneKey, Lane>();
+
+    /**
+     * Statistics for each namespace, map is not modified after construction.
+     */
+    private final Map<Namespace, NamespaceStatistics> m_Statistics = 
+            new EnumMap<Namespace, NamespaceStatistics>(Namespace.class);
+
+    /**
+     * Threads handling messages, null if handled by the calling thread.
+     */
+    private final ExecutorService m_Executor;
+
+    /**
+     * Maximum number of messages in a lane.
+     */
+    private final int m_LaneCapacity;
+
+    /**
+     * Service for logging messages.
+     */
+    private final LoggingService m_Logging;
+
+    /**
+     * Create a dispatcher.
+     * 
+     * @param threads
+     *      number of threads to handle messages, 0 to handle messages on the thread calling {@link 
+     *      #dispatch(Object, Namespace, Runnable)}
+     * @param laneCapacity
+     *      maximum number of messages in each lane, including the one being handled
+     * @param logging
+     *      service for logging messages
+     */
+    MessageDispatcher(final int threads, final int laneCapacity, final LoggingService logging)
+    {
+        m_LaneCapacity = laneCapacity;
+        m_Logging = logging;
+        for (Namespace namespace : Namespace.values())
+        {
+            m_Statistics.put(namespace, new NamespaceStatistics());
+        }
+        
+        if (threads > 0)
+        {
+            m_Executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+            {
+                private final AtomicInteger m_Count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable)
+                {
+                    final Thread thread = new Thread(runnable, "RemoteMessageDispatcher-" + m_Count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        else
+        {
+            m_Executor = null; // NOPMD: null means messages are handled by the calling thread
+        }
+    }
+
+    /**
+     * Add a message handler to the lane for the origin and namespace, blocking while the lane is full.
+     * 
+     * @param origin
+     *      where the message came from, messages with equal origins and the same namespace are handled in order
+     * @param namespace
+     *      namespace of the message
+     * @param handler
+     *      handles the message
+     * @throws InterruptedException
+     *      if interrupted while waiting for room in the lane, the message is not handled
+     */
+    void dispatch(final Object origin, final Namespace namespace, final Runnable handler) throws InterruptedException
+    {
+        final NamespaceStatistics statistics = m_Statistics.get(namespace);
+        if (m_Executor == null)
+        {
+            statistics.getQueueWait().record(0);
+            runHandler(handler, statistics);
+            return;
+        }
+        
+        final LaneKey key = new LaneKey(origin, namespace);
+        final Task task = new Task(handler, statistics);
+        synchronized (m_Lanes)
+        {
+            Lane lane = m_Lanes.get(key);
+            while (lane != null && lane.m_Tasks.size() >= m_LaneCapacity)
+            {
+                m_Lanes.wait();
+                lane = m_Lanes.get(key);
+            }
+            
+            if (lane == null)
+            {
+                lane = new Lane(key);
+                m_Lanes.put(key, lane);
+            }
+            lane.m_Tasks.add(task);
+            if (lane.m_Tasks.size() == 1)
+            {
+                schedule(lane);
+            }
+        }
+    }
+
+    /**
+     * Get the statistics for messages of the given namespace.
+     * 
+     * @param namespace
+     *      namespace to get statistics for
+     * @return
+     *      statistics for the namespace
+     */
+    NamespaceStatistics getStatistics(final Namespace namespace)
+    {
+        return m_Statistics.get(namespace);
+    }
+
+    /**
+     * Stop the threads handling messages.  Messages being handled are given a short time to finish, messages still 
+     * waiting are dropped.
+     * 
+     * @throws InterruptedException
+     *      if interrupted while waiting for messages being handled
+     */
+    void shutdown() throws InterruptedException
+    {
+        if (m_Executor != null)
+        {
+            m_Executor.shutdown();
+            m_Executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hand the lane to the threads to handle the next message, must hold the lock.  If the threads have been shutdown,
+     * the lane is dropped.
+     * 
+     * @param lane
+     *      lane with at least one message
+     */
+    private void schedule(final Lane lane)
+    {
+        try
+        {
+            m_Executor.execute(lane);
+        }
+        catch (final RejectedExecutionException e)
+        {
+            m_Logging.warning("Dropping %d received %s messages, message dispatcher is shut down", 
+                    lane.m_Tasks.size(), lane.m_Key.m_Namespace);
+            m_Lanes.remove(lane.m_Key);
+            m_Lanes.notifyAll();
+        }
+    }
+
+    /**
+     * Run the handler and record the time it took.
+     * 
+     * @param handler
+     *      handler to run
+     * @param statistics
+     *      statistics of the namespace of the message
+     */
+    private void runHandler(final Runnable handler, final NamespaceStatistics statistics)
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            handler.run();
+        }
+        catch (final RuntimeException e)
+        {
+            m_Logging.error(e, "Unable to handle received message");
+        }
+        finally
+        {
+            statistics.getHandlingTime().record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Queue wait and handling time of messages for a single namespace.
+     */
+    static class NamespaceStatistics
+    {
+        /**
+         * Time from dispatch until handling starts.
+         */
+        private final LatencyHistogram m_QueueWait = new LatencyHistogram();
+
+        /**
+         * Time taken to handle a message.
+         */
+        private final LatencyHistogram m_HandlingTime = new LatencyHistogram();
+
+        /**
+         * Get the time messages waited to be handled.
+         * 
+         * @return
+         *      queue wait histogram
+         */
+        LatencyHistogram getQueueWait()
+        {
+            return m_QueueWait;
+        }
+
+        /**
+         * Get the time taken to handle messages.
+         * 
+         * @return
+         *      handling time histogram
+         */
+        LatencyHistogram getHandlingTime()
+        {
+            return m_HandlingTime;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("queue wait [%s], handling [%s]", m_QueueWait, m_HandlingTime);
+        }
+    }
+
+    /**
+     * Message handler waiting in a lane.
+     */
+    private static class Task
+    {
+        /**
+         * Handles the message.
+         */
+        private final Runnable m_Handler;
+
+        /**
+         * Statistics of the namespace of the message.
+         */
+        private final NamespaceStatistics m_Statistics;
+
+        /**
+         * When the message was dispatched as returned by {@link System#nanoTime()}.
+         */
+        private final long m_DispatchTime = System.nanoTime();
+
+        /**
+         * Create a task.
+         * 
+         * @param handler
+         *      handles the message
+         * @param statistics
+         *      statistics of the namespace of the message
+         */
+        Task(final Runnable handler, final NamespaceStatistics statistics)
+        {
+            m_Handler = handler;
+            m_Statistics = statistics;
+        }
+    }
+
+    /**
+     * Messages for a single origin and namespace.  The lane is run by a thread to handle the first message, then 
+     * scheduled again if more are waiting.  The message being handled stays in the lane until done so the lane is only
+     * scheduled once at a time.
+     */
+    private class Lane implements Runnable
+    {
+        /**
+         * Key of this lane.
+         */
+        private final LaneKey m_Key;
+
+        /**
+         * Messages waiting, first is being handled, guarded by {@link MessageDispatcher#m_Lanes}.
+         */
+        private final Queue<Task> m_Tasks = new ArrayDeque<Task>();
+
+        /**
+         * Create a lane.
+         * 
+         * @param key
+         *      key of the lane
+         */
+        Lane(final LaneKey key)
+        {
+            m_Key = key;
+        }
+
+        @Override
+        public void run()
+        {
+            final Task task;
+            synchronized (m_Lanes)
+            {
+                task = m_Tasks.peek();
+            }
+            
+            task.m_Statistics.getQueueWait().record(System.nanoTime() - task.m_DispatchTime);
+            try
+            {
+                runHandler(task.m_Handler, task.m_Statistics);
+            }
+            finally
+            {
+                synchronized (m_Lanes)
+                {
+                    m_Tasks.remove();
+                    if (m_Tasks.isEmpty())
+                    {
+                        m_Lanes.remove(m_Key);
+                    }
+                    else
+                    {
+                        schedule(this);
+                    }
+                    m_Lanes.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Key of a lane.
+     */
+    private static class LaneKey
+    {
+        /**
+         * Where messages of the lane come from.
+         */
+        private final Object m_Origin;
+
+        /**
+         * Namespace of messages in the lane.
+         */
+        private final Namespace m_Namespace;
+
+        /**
+         * Create a key.
+         * 
+         * @param origin
+         *      where messages of the lane come from
+         * @param namespace
+         *      namespace of messages in the lane
+         */
+        LaneKey(final Object origin, final Namespace namespace)
+        {
+            m_Origin = origin;
+            m_Namespace = namespace;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (!(obj instanceof LaneKey))
+            {
+                return false;
+            }
+            final LaneKey other = (LaneKey)obj;
+            return m_Origin.equals(other.m_Origin) && m_Namespace == other.m_Namespace;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return m_Origin.hashCode() * 31 + m_Namespace.hashCode();
+        }
+    }
+}
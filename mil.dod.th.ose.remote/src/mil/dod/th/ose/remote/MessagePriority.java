@@ -0,0 +1,81 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
+
+/**
+ * Lanes of the {@link QueuedMessageSender} queue in the order they are sent.  A message in a lane is only sent once all
+ * lanes before it are empty, messages in the same lane are sent in the order queued.
+ */
+enum MessagePriority
+{
+    /**
+     * Responses to requests, a remote system is waiting on these.
+     */
+    RESPONSE,
+
+    /**
+     * Requests, status and any other message not in another lane.
+     */
+    NORMAL,
+
+    /**
+     * Events and observations, which can be large and frequent so must not hold up other messages.
+     */
+    BULK;
+
+    /**
+     * Get the lane for the given message.  The namespace of an encrypted message can't be read, so non-response 
+     * encrypted messages are always {@link #NORMAL}.
+     * 
+     * @param message
+     *      message that will be queued
+     * @return
+     *      lane the message belongs to
+     */
+    static MessagePriority of(final TerraHarvestMessage message)
+    {
+        if (message.getIsResponse())
+        {
+            return RESPONSE;
+        }
+
+        if (message.getEncryptType() == EncryptType.NONE)
+        {
+            final Namespace namespace;
+            try
+            {
+                // parsed in place, the namespace message is not copied
+                namespace = ZeroCopyParser.parse(TerraHarvestPayload.PARSER, message.getTerraHarvestPayload())
+                        .getNamespace();
+            }
+            catch (final InvalidProtocolBufferException e)
+            {
+                return NORMAL;
+            }
+
+            if (namespace == Namespace.EventAdmin || namespace == Namespace.ObservationStore)
+            {
+                return BULK;
+            }
+        }
+        return NORMAL;
+    }
+}
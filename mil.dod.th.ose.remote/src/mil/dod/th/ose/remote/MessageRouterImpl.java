@@ -13,20 +13,24 @@
 package mil.dod.th.ose.remote;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.UnmarshalException;
 
+import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
+import aQute.bnd.annotation.component.Deactivate;
 import aQute.bnd.annotation.component.Reference;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.RemoteChannelLookup;
+import mil.dod.th.core.remote.ResponseHandler;
 import mil.dod.th.core.remote.messaging.MessageRouter;
 import mil.dod.th.core.remote.objectconverter.ObjectConverterException;
 import mil.dod.th.core.remote.proto.BaseMessages.ErrorCode;
@@ -42,12 +46,16 @@ import mil.dod.th.ose.remote.encryption.EncryptMessageService;
 import mil.dod.th.ose.remote.encryption.InvalidKeySignatureException;
 import mil.dod.th.ose.remote.messaging.TerraHarvestMessageUtil;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
+import mil.dod.th.ose.shared.EventTopicInterest;
 
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
- * Implementation of the MessageRouter interface.
+ * Implementation of the MessageRouter interface.  Messages are checked and decrypted on the thread that received them,
+ * then handed to a {@link MessageDispatcher} so message services for different namespaces handle messages in 
+ * parallel.  Messages from the same channel for the same namespace are still handled in the order received.
  * 
  * @author Dave Humeniuk
  *
@@ -58,7 +66,8 @@ public class MessageRouterImpl implements MessageRouter, MessageRouterInternal
     /**
      * Map containing all messages services by their namespace.
      */
-    final private Map<Namespace, MessageService> m_MessageServices = new HashMap<Namespace, MessageService>();
+    final private Map<Namespace, MessageService> m_MessageServices = 
+            new ConcurrentHashMap<Namespace, MessageService>();
     
     /**
      * Service for logging messages.
@@ -85,11 +94,27 @@ public class MessageRouterImpl implements MessageRouter, MessageRouterInternal
      */
     private EventAdmin m_EventAdmin;
     
+    /**
+     * Service used by the message services to skip the message received event if nothing is subscribed to it, null if 
+     * not available.
+     */
+    private volatile EventTopicInterest m_EventTopicInterest;
+    
     /**
      * Remote channel lookup used to route messages.
      */
     private RemoteChannelLookup m_RemoteChannelLookup;
     
+    /**
+     * Handler matching received responses to requests, null if not bound.
+     */
+    private volatile ResponseHandler m_ResponseHandler;
+    
+    /**
+     * Hands messages to the message services.
+     */
+    private MessageDispatcher m_Dispatcher;
+    
     /**
      * Binds the logging service for logging messages.
      * 
@@ -144,6 +169,74 @@ public class MessageRouterImpl implements MessageRouter, MessageRouterInternal
         m_EventAdmin = eventAdmin;
     }
     
+    /**
+     * Bind the service used to check if anything is subscribed to event topics.
+     * 
+     * This reference is optional, events are always posted if not available.
+     * 
+     * @param topicInterest
+     *      service used to check if event topics have any subscribers
+     */
+    @Reference(optional = true, dynamic = true)
+    public void setEventTopicInterest(final EventTopicInterest topicInterest)
+    {
+        m_EventTopicInterest = topicInterest;
+    }
+    
+    /**
+     * Unbind the event topic interest service.
+     * 
+     * @param topicInterest
+     *      parameter not used, must match binding method signature
+     */
+    public void unsetEventTopicInterest(final EventTopicInterest topicInterest)
+    {
+        m_EventTopicInterest = null; // NOPMD: NullAssignment, Must assign to null if no longer available
+    }
+    
+    /**
+     * Activate the component by creating the dispatcher using the current remote settings.
+     */
+    @Activate
+    public void activate()
+    {
+        m_Dispatcher = new MessageDispatcher(m_RemoteSettings.getDispatchThreads(), 
+                m_RemoteSettings.getDispatchQueueCapacity(), m_Log);
+    }
+    
+    /**
+     * Deactivate the component by stopping the dispatcher and logging the statistics of each namespace.
+     * 
+     * @throws InterruptedException
+     *      if interrupted while waiting for messages being handled
+     */
+    @Deactivate
+    public void deactivate() throws InterruptedException
+    {
+        m_Dispatcher.shutdown();
+        for (Namespace namespace : Namespace.values())
+        {
+            final MessageDispatcher.NamespaceStatistics statistics = m_Dispatcher.getStatistics(namespace);
+            if (statistics.getHandlingTime().getCount() > 0)
+            {
+                m_Log.debug("Remote %s namespace messages: %s", namespace, statistics);
+            }
+        }
+    }
+    
+    /**
+     * Get the queue wait and handling time of messages for a namespace.
+     * 
+     * @param namespace
+     *      namespace to get the statistics for
+     * @return
+     *      statistics of the namespace
+     */
+    MessageDispatcher.NamespaceStatistics getDispatchStatistics(final Namespace namespace)
+    {
+        return m_Dispatcher.getStatistics(namespace);
+    }
+    
     @Override
     public void bindMessageService(final MessageService messageService)
     {
@@ -176,6 +269,38 @@ public class MessageRouterImpl implements MessageRouter, MessageRouterInternal
         }
     }
     
+    @Override
+    public void bindResponseHandler(final ResponseHandler handler)
+    {
+        m_ResponseHandler = handler;
+    }
+    
+    @Override
+    public void unbindResponseHandler(final ResponseHandler handler)
+    {
+        if (handler == m_ResponseHandler)
+        {
+            m_ResponseHandler = null; //NOPMD: explicit null set, set to null to fully release ownership
+        }
+    }
+    
+    @Override
+    public void handleResponse(final TerraHarvestMessage message, final TerraHarvestPayload payload, 
+            final Message namespaceMessage, final Message dataMessage)
+    {
+        final ResponseHandler handler = m_ResponseHandler;
+        if (message.getIsResponse() && handler != null)
+        {
+            handler.handleResponse(message, payload, namespaceMessage, dataMessage);
+        }
+    }
+    
+    @Override
+    public EventTopicInterest getEventTopicInterest()
+    {
+        return m_EventTopicInterest;
+    }
+    
     @Override
     public void handleMessage(final TerraHarvestMessage message)
     {
@@ -237,7 +362,25 @@ public class MessageRouterImpl implements MessageRouter, MessageRouterInternal
             return;
         }
         
-        tryCallMessageServiceHandleMessage(message, payload, destChannel);
+        // messages without a channel are ordered by the system that sent them
+        final Object origin = channel == null ? Integer.valueOf(message.getSourceId()) : channel;
+        try
+        {
+            m_Dispatcher.dispatch(origin, payload.getNamespace(), new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    tryCallMessageServiceHandleMessage(message, payload, destChannel);
+                }
+            });
+        }
+        catch (final InterruptedException e)
+        {
+            m_Log.warning("Interrupted while waiting to handle %s message %d from %d, message dropped", 
+                    payload.getNamespace(), message.getMessageId(), message.getSourceId());
+            Thread.currentThread().interrupt();
+        }
     }
     
     /**
@@ -312,7 +455,7 @@ public class MessageRouterImpl implements MessageRouter, MessageRouterInternal
         if (messageEncryptType == EncryptType.NONE)
         {
             final TerraHarvestPayload unencryptedPayload = 
-                    TerraHarvestPayload.parseFrom(message.getTerraHarvestPayload());
+                    ZeroCopyParser.parse(TerraHarvestPayload.PARSER, message.getTerraHarvestPayload());
             final Namespace messageNamespace = unencryptedPayload.getNamespace();
             
 
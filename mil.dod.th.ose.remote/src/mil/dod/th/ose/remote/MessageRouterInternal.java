@@ -12,7 +12,13 @@
 //==============================================================================
 package mil.dod.th.ose.remote;
 
+import com.google.protobuf.Message;
+
 import mil.dod.th.core.remote.RemoteChannelLookup;
+import mil.dod.th.core.remote.ResponseHandler;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
+import mil.dod.th.ose.shared.EventTopicInterest;
 
 /**
  * Contains internal functions available to the {@link mil.dod.th.core.remote.messaging.MessageRouter} implementation.
@@ -58,4 +64,48 @@ public interface MessageRouterInternal
      *      remote channel lookup service to be unbound
      */
     void unbindRemoteChannelLookup(RemoteChannelLookup lookup);
+    
+    /**
+     * Bind the handler that all received responses are passed to by {@link #handleResponse(TerraHarvestMessage, 
+     * TerraHarvestPayload, Message, Message)}, replacing any handler already bound.
+     * 
+     * @param handler
+     *      handler that matches responses to requests
+     */
+    void bindResponseHandler(ResponseHandler handler);
+    
+    /**
+     * Unbind the handler that received responses are passed to if it is the one bound.
+     * 
+     * @param handler
+     *      handler to unbind
+     */
+    void unbindResponseHandler(ResponseHandler handler);
+    
+    /**
+     * Pass a received message to the bound response handler if the message is a response.  Called by each {@link 
+     * MessageService} once the namespace and data messages are parsed, so responses reach the request without going 
+     * through the event admin.
+     * 
+     * @param message
+     *      message that was received
+     * @param payload
+     *      payload of the message
+     * @param namespaceMessage
+     *      namespace message parsed from the payload
+     * @param dataMessage
+     *      data message parsed from the namespace message, null if the message has no data
+     */
+    void handleResponse(TerraHarvestMessage message, TerraHarvestPayload payload, Message namespaceMessage, 
+            Message dataMessage);
+    
+    /**
+     * Get the service used to check if event topics have any subscribers. Shared by all {@link MessageService}s so 
+     * the {@link mil.dod.th.core.remote.RemoteConstants#TOPIC_MESSAGE_RECEIVED} event can be skipped if nothing is 
+     * subscribed to it, see {@link mil.dod.th.ose.remote.util.RemoteInterfaceUtilities#postMessageReceivedEvent}.
+     * 
+     * @return
+     *      the topic interest service, null if not available
+     */
+    EventTopicInterest getEventTopicInterest();
 }
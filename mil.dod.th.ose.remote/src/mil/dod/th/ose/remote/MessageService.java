@@ -45,7 +45,8 @@ public interface MessageService
      * Handle the message for a particular namespace.
      * 
      * Each message service will handle messages differently, but at a minimum must post an event for the remote 
-     * message.  The event will contain the inner message (e.g., BaseNamespace and message type).
+     * message.  The event will contain the inner message (e.g., BaseNamespace and message type).  The parsed 
+     * messages must also be passed to {@link MessageRouterInternal#handleResponse} so responses reach the request.
      * 
      * @param message
      *      message that was received and routed for the particular namespace
@@ -0,0 +1,666 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.ose.remote.api.RemoteSettings;
+
+/**
+ * A single non-blocking socket serviced by a {@link NioSelectorLoop}.  Received bytes are decoded into frames on the
+ * selector thread and handed to the {@link Handler} on a worker thread, frames from the same socket are always handled
+ * one at a time in the order received.  Outbound messages are serialized by the sending thread and written by the
+ * selector thread using gathering writes.
+ */
+class NioConnection implements VarintFrameDecoder.FrameHandler, AbstractRemoteChannel.MessageQueue
+{
+    /**
+     * Number of received frames waiting to be handled before reading from the socket is paused.
+     */
+    static final int MAX_PENDING_FRAMES = 256;
+
+    /**
+     * Maximum number of buffers written in a single gathering write.
+     */
+    private static final int MAX_GATHER_BUFFERS = 64;
+
+    /**
+     * Maximum number of reads from the socket each time it is selected, keeps a busy socket from starving others on
+     * the same selector.
+     */
+    private static final int MAX_READS_PER_SELECT = 16;
+
+    /**
+     * Underlying non-blocking socket.
+     */
+    private final SocketChannel m_SocketChannel;
+
+    /**
+     * Remote address of the socket, kept for logging after the socket is closed.
+     */
+    private final SocketAddress m_RemoteAddress;
+
+    /**
+     * Handles frames received by this connection.
+     */
+    private final Handler m_Handler;
+
+    /**
+     * Selector loop servicing this connection.
+     */
+    private final NioSelectorLoop m_Loop;
+
+    /**
+     * Executes the handler for received frames.
+     */
+    private final Executor m_Executor;
+
+    /**
+     * Decodes frames from the bytes read, only used by the selector thread.
+     */
+    private final VarintFrameDecoder m_Decoder;
+
+    /**
+     * Service for logging messages.
+     */
+    private final LoggingService m_Logging;
+
+    /**
+     * Maximum number of messages that can be queued for sending.
+     */
+    private final int m_OutboundCapacity;
+
+    /**
+     * Maximum number of bytes that can be queued for sending.
+     */
+    private final long m_OutboundMaxBytes;
+
+    /**
+     * Serialized messages waiting to be written, guarded by itself.
+     */
+    private final Deque<ByteBuffer> m_Outbound = new ArrayDeque<ByteBuffer>();
+
+    /**
+     * Total size of the frames in {@link #m_Outbound}, guarded by {@link #m_Outbound}.
+     */
+    private long m_OutboundBytes;
+
+    /**
+     * Running count of messages that could not be queued or were cleared from the queue.
+     */
+    private final AtomicLong m_DroppedCount = new AtomicLong();
+
+    /**
+     * Buffers passed to each gathering write, only used by the selector thread while holding {@link #m_Outbound}.
+     */
+    private final ByteBuffer[] m_GatherBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+
+    /**
+     * Frames received but not yet handled.
+     */
+    private final Queue<ByteString> m_Inbound = new ConcurrentLinkedQueue<ByteString>();
+
+    /**
+     * Number of frames in {@link #m_Inbound}.
+     */
+    private final AtomicInteger m_PendingFrames = new AtomicInteger();
+
+    /**
+     * Whether a task to handle received frames has been submitted to the executor and has not finished.
+     */
+    private final AtomicBoolean m_DispatchScheduled = new AtomicBoolean();
+
+    /**
+     * Whether the connection has been closed.
+     */
+    private final AtomicBoolean m_Closed = new AtomicBoolean();
+
+    /**
+     * Whether the handler has been told the connection is closed.
+     */
+    private final AtomicBoolean m_CloseHandled = new AtomicBoolean();
+
+    /**
+     * Task that handles received frames.
+     */
+    private final Runnable m_DispatchTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            dispatch();
+        }
+    };
+
+    /**
+     * Whether reading has been paused because too many received frames are waiting to be handled.
+     */
+    private volatile boolean m_ReadPaused;
+
+    /**
+     * Selection key of the socket, set by the selector thread once registered.
+     */
+    private volatile SelectionKey m_Key;
+
+    /**
+     * Running count of bytes read from the socket.
+     */
+    private volatile long m_BytesRead;
+
+    /**
+     * Running count of bytes written to the socket.
+     */
+    private volatile long m_BytesWritten;
+
+    /**
+     * Create a connection for a socket that has already been switched to non-blocking mode.
+     * 
+     * @param socketChannel
+     *      non-blocking socket
+     * @param handler
+     *      handler of received frames
+     * @param loop
+     *      selector loop that will service the socket
+     * @param executor
+     *      executor used to handle received frames
+     * @param remoteSettings
+     *      settings used for the maximum size of received messages and the limits of the outbound queue, a message 
+     *      larger than the byte limit is still accepted if nothing is queued
+     * @param logging
+     *      service for logging messages
+     */
+    NioConnection(final SocketChannel socketChannel, final Handler handler, final NioSelectorLoop loop,
+            final Executor executor, final RemoteSettings remoteSettings, final LoggingService logging)
+    {
+        m_SocketChannel = socketChannel;
+        m_RemoteAddress = socketChannel.socket().getRemoteSocketAddress();
+        m_Handler = handler;
+        m_Loop = loop;
+        m_Executor = executor;
+        m_Decoder = new VarintFrameDecoder(remoteSettings.getMaxMessageSize());
+        m_OutboundCapacity = remoteSettings.getSendQueueCapacity();
+        m_OutboundMaxBytes = remoteSettings.getSendQueueMaxBytes();
+        m_Logging = logging;
+    }
+
+    /**
+     * Start servicing the socket, received frames will be passed to the handler after this is called.
+     */
+    public void start()
+    {
+        m_Loop.register(this);
+    }
+
+    /**
+     * Serialize the message with its size prefix and queue it to be written by the selector thread.
+     * 
+     * @param message
+     *      message to send
+     * @return
+     *      true if the message was queued, false if the connection is closed or the outbound queue is full
+     */
+    @Override
+    public boolean queue(final TerraHarvestMessage message)
+    {
+        if (m_Closed.get())
+        {
+            m_DroppedCount.incrementAndGet();
+            return false;
+        }
+
+        final int messageSize = message.getSerializedSize();
+        final byte[] frame = new byte[CodedOutputStream.computeRawVarint32Size(messageSize) + messageSize];
+        final CodedOutputStream output = CodedOutputStream.newInstance(frame);
+        try
+        {
+            output.writeRawVarint32(messageSize);
+            message.writeTo(output);
+            output.checkNoSpaceLeft();
+        }
+        catch (final IOException e)
+        {
+            throw new IllegalStateException("Unable to serialize message into array", e);
+        }
+
+        final boolean wasEmpty;
+        synchronized (m_Outbound)
+        {
+            wasEmpty = m_Outbound.isEmpty();
+            if (m_Closed.get() || m_Outbound.size() >= m_OutboundCapacity 
+                    || !wasEmpty && m_OutboundBytes + frame.length > m_OutboundMaxBytes)
+            {
+                m_DroppedCount.incrementAndGet();
+                return false;
+            }
+            m_Outbound.addLast(ByteBuffer.wrap(frame));
+            m_OutboundBytes += frame.length;
+        }
+
+        // the selector thread only needs to be woken up when the queue goes from empty to not empty, otherwise it is
+        // already writing or waiting for the socket to become writable
+        if (wasEmpty)
+        {
+            m_Loop.requestUpdate(this);
+        }
+        return true;
+    }
+
+    @Override
+    public int getQueuedMessageCount()
+    {
+        synchronized (m_Outbound)
+        {
+            return m_Outbound.size();
+        }
+    }
+
+    @Override
+    public long getQueuedByteCount()
+    {
+        synchronized (m_Outbound)
+        {
+            return m_OutboundBytes;
+        }
+    }
+
+    @Override
+    public long getDroppedMessageCount()
+    {
+        return m_DroppedCount.get();
+    }
+
+    /**
+     * Discard all messages waiting to be written.  A message that has been partially written is kept so the stream
+     * stays intact.
+     */
+    @Override
+    public void clearQueue()
+    {
+        synchronized (m_Outbound)
+        {
+            final ByteBuffer first = m_Outbound.peekFirst();
+            final int cleared = m_Outbound.size();
+            m_Outbound.clear();
+            m_OutboundBytes = 0;
+            if (first != null && first.position() > 0)
+            {
+                m_Outbound.addFirst(first);
+                m_OutboundBytes = first.capacity();
+                m_DroppedCount.addAndGet(cleared - 1);
+            }
+            else
+            {
+                m_DroppedCount.addAndGet(cleared);
+            }
+        }
+    }
+
+    /**
+     * Get the running count of bytes read from the socket.
+     * 
+     * @return
+     *      number of bytes read
+     */
+    public long getBytesRead()
+    {
+        return m_BytesRead;
+    }
+
+    /**
+     * Get the running count of bytes written to the socket.
+     * 
+     * @return
+     *      number of bytes written
+     */
+    public long getBytesWritten()
+    {
+        return m_BytesWritten;
+    }
+
+    /**
+     * Whether the connection has been closed.
+     * 
+     * @return
+     *      true if closed
+     */
+    public boolean isClosed()
+    {
+        return m_Closed.get();
+    }
+
+    /**
+     * Close the socket and discard queued messages.  The handler will be told the connection is closed once all
+     * frames already received have been handled.  Can be called from any thread, extra calls are ignored.
+     */
+    public void close()
+    {
+        if (!m_Closed.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        try
+        {
+            m_SocketChannel.close();
+        }
+        catch (final IOException e)
+        {
+            m_Logging.debug("Unable to close socket (%s): %s", m_RemoteAddress, e.getMessage());
+        }
+
+        synchronized (m_Outbound)
+        {
+            m_DroppedCount.addAndGet(m_Outbound.size());
+            m_Outbound.clear();
+            m_OutboundBytes = 0;
+        }
+
+        scheduleDispatch();
+    }
+
+    @Override
+    public void frameDecoded(final ByteString frame)
+    {
+        m_Inbound.add(frame);
+        m_PendingFrames.incrementAndGet();
+    }
+
+    /**
+     * Get the underlying socket.
+     * 
+     * @return
+     *      non-blocking socket
+     */
+    SocketChannel getSocketChannel()
+    {
+        return m_SocketChannel;
+    }
+
+    /**
+     * Called by the selector thread once the socket has been registered.
+     * 
+     * @param key
+     *      selection key of the socket
+     */
+    void onRegistered(final SelectionKey key)
+    {
+        m_Key = key;
+        onUpdateRequested();
+    }
+
+    /**
+     * Called by the selector thread when the socket is readable.  Reads and decodes all available bytes.
+     * 
+     * @param readBuffer
+     *      buffer shared by all connections of the selector thread
+     */
+    void onReadable(final ByteBuffer readBuffer)
+    {
+        try
+        {
+            for (int i = 0; i < MAX_READS_PER_SELECT; i++)
+            {
+                readBuffer.clear();
+                final int bytesRead = m_SocketChannel.read(readBuffer);
+                if (bytesRead < 0)
+                {
+                    m_Logging.info("Socket %s closed, will stop reading from it", m_RemoteAddress);
+                    close();
+                    return;
+                }
+                if (bytesRead == 0)
+                {
+                    break;
+                }
+
+                m_BytesRead += bytesRead;
+                readBuffer.flip();
+                m_Decoder.decode(readBuffer, this);
+            }
+        }
+        catch (final RemoteInterfaceException e)
+        {
+            m_Logging.error("Error reading message: %s", e.getMessage());
+            close();
+        }
+        catch (final IOException e)
+        {
+            m_Logging.error(e, "Failed to read message from socket %s", m_RemoteAddress);
+            close();
+        }
+
+        if (!m_Inbound.isEmpty())
+        {
+            if (m_PendingFrames.get() >= MAX_PENDING_FRAMES)
+            {
+                // stop reading until the handler catches up, lets TCP flow control slow down the sender
+                m_ReadPaused = true;
+                updateInterest();
+            }
+            scheduleDispatch();
+        }
+    }
+
+    /**
+     * Called by the selector thread when the socket is writable.
+     */
+    void onWritable()
+    {
+        flushOutbound();
+        updateInterest();
+    }
+
+    /**
+     * Called by the selector thread when messages have been queued or reading should be resumed.
+     */
+    void onUpdateRequested()
+    {
+        if (m_Key == null)
+        {
+            // not registered yet, update will be done once registered
+            return;
+        }
+        flushOutbound();
+        updateInterest();
+    }
+
+    /**
+     * Write as many queued messages as the socket will accept without blocking.
+     */
+    private void flushOutbound()
+    {
+        int framesWritten = 0;
+        try
+        {
+            synchronized (m_Outbound)
+            {
+                while (!m_Outbound.isEmpty())
+                {
+                    int count = 0;
+                    final Iterator<ByteBuffer> iterator = m_Outbound.iterator();
+                    while (count < MAX_GATHER_BUFFERS && iterator.hasNext())
+                    {
+                        m_GatherBuffers[count++] = iterator.next();
+                    }
+
+                    final long bytesWritten = m_SocketChannel.write(m_GatherBuffers, 0, count);
+                    m_BytesWritten += bytesWritten;
+
+                    for (int i = 0; i < count; i++)
+                    {
+                        m_GatherBuffers[i] = null; // NOPMD: release reference to written messages
+                    }
+
+                    while (!m_Outbound.isEmpty() && !m_Outbound.peekFirst().hasRemaining())
+                    {
+                        m_OutboundBytes -= m_Outbound.removeFirst().capacity();
+                        framesWritten++;
+                    }
+
+                    if (!m_Outbound.isEmpty() && m_Outbound.peekFirst().position() > 0 || bytesWritten == 0)
+                    {
+                        // socket send buffer is full, wait until it is writable again
+                        break;
+                    }
+                }
+            }
+        }
+        catch (final IOException e)
+        {
+            m_Logging.debug("Failed to send message to socket [%s]: %s", m_RemoteAddress, e.getMessage());
+            close();
+        }
+
+        if (framesWritten > 0)
+        {
+            m_Handler.messagesWritten(framesWritten);
+        }
+    }
+
+    /**
+     * Update the operations the selector is interested in based on whether there are messages to write and reading
+     * is paused.
+     */
+    private void updateInterest()
+    {
+        final SelectionKey key = m_Key;
+        if (key == null || !key.isValid())
+        {
+            return;
+        }
+
+        int ops = m_ReadPaused ? 0 : SelectionKey.OP_READ;
+        synchronized (m_Outbound)
+        {
+            if (!m_Outbound.isEmpty())
+            {
+                ops |= SelectionKey.OP_WRITE;
+            }
+        }
+        key.interestOps(ops);
+    }
+
+    /**
+     * Submit a task to handle received frames if one is not already running.
+     */
+    private void scheduleDispatch()
+    {
+        if (m_DispatchScheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                m_Executor.execute(m_DispatchTask);
+            }
+            catch (final RejectedExecutionException e)
+            {
+                m_DispatchScheduled.set(false);
+                m_Logging.debug("Unable to handle messages received from socket %s, engine has stopped", 
+                        m_RemoteAddress);
+            }
+        }
+    }
+
+    /**
+     * Handle all received frames, then tell the handler if the connection has been closed.  Run by the executor.
+     */
+    private void dispatch()
+    {
+        ByteString frame;
+        while ((frame = m_Inbound.poll()) != null)
+        {
+            m_PendingFrames.decrementAndGet();
+            try
+            {
+                m_Handler.frameReceived(frame);
+            }
+            catch (final RuntimeException e)
+            {
+                m_Logging.error(e, "Failed to handle message received from socket %s", m_RemoteAddress);
+            }
+        }
+
+        if (m_ReadPaused && !m_Closed.get())
+        {
+            m_ReadPaused = false;
+            m_Loop.requestUpdate(this);
+        }
+
+        if (m_Closed.get() && m_CloseHandled.compareAndSet(false, true))
+        {
+            try
+            {
+                m_Handler.connectionClosed();
+            }
+            catch (final RuntimeException e)
+            {
+                m_Logging.error(e, "Failed to handle closing of socket %s", m_RemoteAddress);
+            }
+        }
+
+        m_DispatchScheduled.set(false);
+
+        // frames may have been added after the queue was found empty but before the flag was cleared
+        if (!m_Inbound.isEmpty() || m_Closed.get() && !m_CloseHandled.get())
+        {
+            scheduleDispatch();
+        }
+    }
+
+    /**
+     * Handles frames received by a connection.  Methods are called on a worker thread, never concurrently for the
+     * same connection.
+     */
+    interface Handler
+    {
+        /**
+         * Called for each frame received in order.
+         * 
+         * @param frame
+         *      bytes of a {@link TerraHarvestMessage} without the size prefix
+         */
+        void frameReceived(ByteString frame);
+
+        /**
+         * Called by the selector thread after messages have been completely written to the socket.  Must return 
+         * quickly.
+         * 
+         * @param count
+         *      number of messages written
+         */
+        void messagesWritten(int count);
+
+        /**
+         * Called once after the connection has been closed and all received frames have been handled.
+         */
+        void connectionClosed();
+    }
+}
@@ -0,0 +1,276 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import mil.dod.th.core.log.LoggingService;
+
+/**
+ * Runs a single {@link Selector} on its own thread, servicing reads and writes for all {@link NioConnection}s
+ * registered with it.  Other threads never touch the selector directly, they queue requests that are processed by the
+ * selector thread after waking it up.
+ */
+class NioSelectorLoop implements Runnable
+{
+    /**
+     * Size of the buffer used to read from sockets, shared by all connections of the loop.
+     */
+    static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How long to wait for the thread to finish when stopping.
+     */
+    private static final int THREAD_JOIN_TIMEOUT_MS = 1000;
+
+    /**
+     * Selector for all sockets of this loop.
+     */
+    private final Selector m_Selector;
+
+    /**
+     * Connections waiting to be registered with the selector.
+     */
+    private final Queue<NioConnection> m_Registrations = new ConcurrentLinkedQueue<NioConnection>();
+
+    /**
+     * Connections that have queued messages or want to resume reading.
+     */
+    private final Queue<NioConnection> m_Updates = new ConcurrentLinkedQueue<NioConnection>();
+
+    /**
+     * Buffer sockets are read into before being decoded, shared by all connections of the loop.  Heap backed so the
+     * decoder can fill frames straight from the backing array.
+     */
+    private final ByteBuffer m_ReadBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    /**
+     * Service for logging messages.
+     */
+    private final LoggingService m_Logging;
+
+    /**
+     * Thread running the loop.
+     */
+    private final Thread m_Thread;
+
+    /**
+     * Whether the loop should continue to run.
+     */
+    private volatile boolean m_Running = true;
+
+    /**
+     * Create a loop with a new selector, must call {@link #start()} before registering connections.
+     * 
+     * @param name
+     *      name of the selector thread
+     * @param logging
+     *      service for logging messages
+     * @throws IOException
+     *      if unable to open the selector
+     */
+    NioSelectorLoop(final String name, final LoggingService logging) throws IOException
+    {
+        m_Selector = Selector.open();
+        m_Logging = logging;
+        m_Thread = new Thread(this, name);
+        m_Thread.setDaemon(true);
+    }
+
+    /**
+     * Start the selector thread.
+     */
+    void start()
+    {
+        m_Thread.start();
+    }
+
+    /**
+     * Stop the selector thread and close all connections.
+     * 
+     * @throws InterruptedException
+     *      if interrupted while waiting for the thread to stop
+     */
+    void stop() throws InterruptedException
+    {
+        m_Running = false;
+        m_Selector.wakeup();
+        m_Thread.join(THREAD_JOIN_TIMEOUT_MS);
+    }
+
+    /**
+     * Register a connection to be serviced by this loop.
+     * 
+     * @param connection
+     *      connection with a socket already in non-blocking mode
+     */
+    void register(final NioConnection connection)
+    {
+        m_Registrations.add(connection);
+        m_Selector.wakeup();
+        if (!m_Running)
+        {
+            connection.close();
+        }
+    }
+
+    /**
+     * Request the selector thread to write queued messages of the connection and update its selection interest.
+     * 
+     * @param connection
+     *      connection to update
+     */
+    void requestUpdate(final NioConnection connection)
+    {
+        m_Updates.add(connection);
+        m_Selector.wakeup();
+    }
+
+    /**
+     * Get the number of sockets registered with the selector.
+     * 
+     * @return
+     *      number of sockets, includes sockets closed since the last select
+     */
+    int getConnectionCount()
+    {
+        return m_Selector.keys().size();
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (m_Running)
+            {
+                try
+                {
+                    m_Selector.select();
+                }
+                catch (final IOException e)
+                {
+                    m_Logging.error(e, "Failed to select sockets on %s", m_Thread.getName());
+                    continue;
+                }
+
+                processRegistrations();
+                processUpdates();
+                processSelectedKeys();
+            }
+        }
+        finally
+        {
+            closeAll();
+        }
+    }
+
+    /**
+     * Register all pending connections with the selector.
+     */
+    private void processRegistrations()
+    {
+        NioConnection connection;
+        while ((connection = m_Registrations.poll()) != null)
+        {
+            try
+            {
+                final SelectionKey key = connection.getSocketChannel().register(m_Selector, 0, connection);
+                connection.onRegistered(key);
+            }
+            catch (final ClosedChannelException e)
+            {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Process all pending update requests.
+     */
+    private void processUpdates()
+    {
+        NioConnection connection;
+        while ((connection = m_Updates.poll()) != null)
+        {
+            if (!connection.isClosed())
+            {
+                connection.onUpdateRequested();
+            }
+        }
+    }
+
+    /**
+     * Read from and write to all sockets that are ready.
+     */
+    private void processSelectedKeys()
+    {
+        final Iterator<SelectionKey> iterator = m_Selector.selectedKeys().iterator();
+        while (iterator.hasNext())
+        {
+            final SelectionKey key = iterator.next();
+            iterator.remove();
+
+            final NioConnection connection = (NioConnection)key.attachment();
+            try
+            {
+                if (key.isValid() && key.isReadable())
+                {
+                    connection.onReadable(m_ReadBuffer);
+                }
+                if (key.isValid() && key.isWritable())
+                {
+                    connection.onWritable();
+                }
+            }
+            catch (final CancelledKeyException e)
+            {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Close all connections and the selector once the loop has stopped.
+     */
+    private void closeAll()
+    {
+        for (SelectionKey key : m_Selector.keys())
+        {
+            ((NioConnection)key.attachment()).close();
+        }
+
+        NioConnection connection;
+        while ((connection = m_Registrations.poll()) != null)
+        {
+            connection.close();
+        }
+
+        try
+        {
+            m_Selector.close();
+        }
+        catch (final IOException e)
+        {
+            m_Logging.error(e, "Unable to close selector of %s", m_Thread.getName());
+        }
+    }
+}
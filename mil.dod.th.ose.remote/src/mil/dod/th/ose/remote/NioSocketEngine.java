@@ -0,0 +1,245 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import aQute.bnd.annotation.component.Component;
+import aQute.bnd.annotation.component.Deactivate;
+import aQute.bnd.annotation.component.Reference;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.remote.api.RemoteSettings.SocketEngine;
+
+/**
+ * Services remote sockets using a small pool of non-blocking selector threads instead of a reading and a sending thread
+ * for each socket.  Used by socket channels when {@link RemoteSettings#getSocketEngine()} is
+ * {@link SocketEngine#NIO_SELECTOR}.  Threads are not started until the first connection is created.
+ */
+@Component(provide = NioSocketEngine.class)
+public class NioSocketEngine
+{
+    /**
+     * How long to wait for worker threads to finish handling messages when deactivated.
+     */
+    private static final int WORKER_SHUTDOWN_TIMEOUT_MS = 1000;
+
+    /**
+     * Service for logging messages.
+     */
+    private LoggingService m_Logging;
+
+    /**
+     * Service contains current settings from config admin.
+     */
+    private RemoteSettings m_RemoteSettings;
+
+    /**
+     * Selector loops sockets are spread across, null until the first connection is created.
+     */
+    private NioSelectorLoop[] m_Loops;
+
+    /**
+     * Threads used to handle received messages, null until the first connection is created.
+     */
+    private ExecutorService m_Workers;
+
+    /**
+     * Index of the loop the next socket will be registered with.
+     */
+    private final AtomicInteger m_NextLoop = new AtomicInteger();
+
+    /**
+     * Binds the logging service for logging messages.
+     * 
+     * @param logging
+     *            Logging service object
+     */
+    @Reference
+    public void setLoggingService(final LoggingService logging)
+    {
+        m_Logging = logging;
+    }
+
+    /**
+     * Bind the settings for the remote interface.
+     * 
+     * @param remoteSettings
+     *      interface containing remote settings from config admin
+     */
+    @Reference
+    public void setRemoteSettings(final RemoteSettings remoteSettings)
+    {
+        m_RemoteSettings = remoteSettings;
+    }
+
+    /**
+     * Stop all selector and worker threads, closing all registered sockets.
+     * 
+     * @throws InterruptedException
+     *      if interrupted while waiting for threads to stop
+     */
+    @Deactivate
+    public synchronized void deactivate() throws InterruptedException
+    {
+        if (m_Loops == null)
+        {
+            return;
+        }
+
+        for (NioSelectorLoop loop : m_Loops)
+        {
+            loop.stop();
+        }
+        m_Workers.shutdown();
+        m_Workers.awaitTermination(WORKER_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        m_Loops = null; // NOPMD: null is used to restart threads if the component is reactivated
+        m_Workers = null; // NOPMD: same as above
+    }
+
+    /**
+     * Switch the socket to non-blocking mode and create a connection serviced by one of the selector threads.  The 
+     * socket is not read from until {@link NioConnection#start()} is called.
+     * 
+     * @param socketChannel
+     *      connected socket
+     * @param handler
+     *      handler of frames received on the socket
+     * @return
+     *      connection used to send messages and close the socket
+     * @throws IOException
+     *      if unable to switch the socket to non-blocking mode or to start the selector threads
+     */
+    public NioConnection createConnection(final SocketChannel socketChannel, final NioConnection.Handler handler)
+            throws IOException
+    {
+        final NioSelectorLoop[] loops;
+        final ExecutorService workers;
+        synchronized (this)
+        {
+            if (m_Loops == null)
+            {
+                start();
+            }
+            loops = m_Loops;
+            workers = m_Workers;
+        }
+
+        socketChannel.configureBlocking(false);
+
+        final NioSelectorLoop loop = loops[Math.floorMod(m_NextLoop.getAndIncrement(), loops.length)];
+        return new NioConnection(socketChannel, handler, loop, workers, m_RemoteSettings, m_Logging);
+    }
+
+    /**
+     * Get the number of sockets currently registered.
+     * 
+     * @return
+     *      number of sockets across all selector threads
+     */
+    public synchronized int getConnectionCount()
+    {
+        if (m_Loops == null)
+        {
+            return 0;
+        }
+
+        int count = 0;
+        for (NioSelectorLoop loop : m_Loops)
+        {
+            count += loop.getConnectionCount();
+        }
+        return count;
+    }
+
+    /**
+     * Start the selector and worker threads based on the current settings.
+     * 
+     * @throws IOException
+     *      if unable to open a selector
+     */
+    private void start() throws IOException
+    {
+        final int selectorThreads = Math.max(1, m_RemoteSettings.getNioSelectorThreads());
+        final int workerThreads = Math.max(1, m_RemoteSettings.getNioWorkerThreads());
+
+        final NioSelectorLoop[] loops = new NioSelectorLoop[selectorThreads];
+        try
+        {
+            for (int i = 0; i < selectorThreads; i++)
+            {
+                loops[i] = new NioSelectorLoop("RemoteNioSelector-" + i, m_Logging);
+            }
+        }
+        catch (final IOException e)
+        {
+            for (NioSelectorLoop loop : loops)
+            {
+                if (loop != null)
+                {
+                    loop.start();
+                    stopQuietly(loop);
+                }
+            }
+            throw e;
+        }
+
+        for (NioSelectorLoop loop : loops)
+        {
+            loop.start();
+        }
+
+        m_Workers = Executors.newFixedThreadPool(workerThreads, new ThreadFactory()
+        {
+            private final AtomicInteger m_Count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "RemoteNioWorker-" + m_Count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        m_Loops = loops;
+
+        m_Logging.info("Started NIO socket engine with %d selector threads and %d worker threads", selectorThreads,
+                workerThreads);
+    }
+
+    /**
+     * Stop a loop that failed to fully start, ignoring interruption.
+     * 
+     * @param loop
+     *      loop to stop
+     */
+    private void stopQuietly(final NioSelectorLoop loop)
+    {
+        try
+        {
+            loop.stop();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
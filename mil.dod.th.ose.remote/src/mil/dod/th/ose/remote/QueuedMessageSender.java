@@ -12,9 +12,14 @@
 //==============================================================================
 package mil.dod.th.ose.remote;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
@@ -24,11 +29,19 @@ import aQute.bnd.annotation.component.Reference;
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.ose.remote.api.RemoteSettings;
 
 /**
  * Class will send messages that have been queued.  If the message can't be sent, the message will stay in queue for a
- * later attempt.  The queue has a capacity of {@value #QUEUE_CAPACITY} messages and will retry messages every {@value 
- * #RETRY_INTERVAL_MS} milliseconds.
+ * later attempt.  Each time the send thread runs, it takes everything queued (up to {@value #MAX_BATCH_MESSAGES} 
+ * messages or {@value #MAX_BATCH_BYTES} bytes) and sends it as a single batch, using one buffered write if the channel
+ * provides a {@link BatchWriter}.  Messages are taken from the {@link MessagePriority} lanes in order, so responses go
+ * out ahead of bulk events and observations.
+ * 
+ * <p>
+ * The queue is limited by the number of messages and bytes from {@link RemoteSettings}.  Failed sends are retried with 
+ * an exponential backoff starting at {@value #INITIAL_RETRY_INTERVAL_MS} milliseconds, up to {@value 
+ * #MAX_RETRY_INTERVAL_MS} milliseconds, with random jitter so channels that fail together don't retry together.
  */
 @Component(factory = QueuedMessageSender.FACTORY_NAME)
 public class QueuedMessageSender
@@ -39,14 +52,29 @@ public class QueuedMessageSender
     public static final String FACTORY_NAME = "mil.dod.th.ose.remote.QueuedMessageSender";
     
     /**
-     * Size of queue for sending messages.
+     * Default size of queue for sending messages, used if the settings are not available.
      */
     public static final int QUEUE_CAPACITY = 500;
     
     /**
-     * How often to attempt re-sending.
+     * Interval before the first attempt to re-send, doubled for each failure after that.
      */
-    public static final int RETRY_INTERVAL_MS = 1000; 
+    public static final int INITIAL_RETRY_INTERVAL_MS = 100;
+    
+    /**
+     * Longest interval between attempts to re-send.
+     */
+    public static final int MAX_RETRY_INTERVAL_MS = 10000;
+    
+    /**
+     * Maximum number of messages sent in a single batch.
+     */
+    public static final int MAX_BATCH_MESSAGES = 256;
+    
+    /**
+     * Maximum number of bytes sent in a single batch, a larger message is still sent on its own.
+     */
+    public static final int MAX_BATCH_BYTES = 1024 * 1024;
 
     /**
      * Property key for the component containing the {@link RemoteChannel} used for sending messages.
@@ -54,35 +82,103 @@ public class QueuedMessageSender
     public static final String CHANNEL_PROP_KEY = "channel";
 
     /**
-     * Queue used for sending messages.
+     * Property key for the component containing the optional {@link BatchWriter} used for sending messages.  If not 
+     * set, each message is sent with {@link RemoteChannel#trySendMessage(TerraHarvestMessage)}.
+     */
+    public static final String BATCH_WRITER_PROP_KEY = "batchWriter";
+
+    /**
+     * Lock guarding the queue state.
+     */
+    private final Object m_Lock = new Object();
+
+    /**
+     * Messages waiting to be sent for each lane, guarded by {@link #m_Lock}.
+     */
+    private final Map<MessagePriority, Deque<TerraHarvestMessage>> m_Lanes = 
+            new EnumMap<MessagePriority, Deque<TerraHarvestMessage>>(MessagePriority.class);
+
+    /**
+     * Messages taken from the lanes that are being sent, kept until sent so they are retried ahead of newer messages,
+     * guarded by {@link #m_Lock}.
+     */
+    private final Deque<TerraHarvestMessage> m_InFlight = new ArrayDeque<TerraHarvestMessage>();
+
+    /**
+     * Number of messages in the lanes and in flight, guarded by {@link #m_Lock}.
+     */
+    private int m_QueuedCount;
+
+    /**
+     * Number of bytes of the messages in the lanes and in flight, guarded by {@link #m_Lock}.
+     */
+    private long m_QueuedBytes;
+
+    /**
+     * Running count of messages sent.
+     */
+    private final AtomicLong m_SentCount = new AtomicLong();
+
+    /**
+     * Running count of messages that could not be queued or were cleared from the queue.
+     */
+    private final AtomicLong m_DroppedCount = new AtomicLong();
+
+    /**
+     * Random source of the retry jitter.
+     */
+    private final Random m_Random = new Random();
+
+    /**
+     * Maximum number of messages that can be queued.
+     */
+    private int m_Capacity = QUEUE_CAPACITY;
+
+    /**
+     * Maximum number of bytes that can be queued.
      */
-    private final BlockingDeque<TerraHarvestMessage> m_SendMessageQueue = 
-            new LinkedBlockingDeque<TerraHarvestMessage>(QUEUE_CAPACITY);
+    private long m_MaxBytes = Long.MAX_VALUE;
 
     /**
      * Channel used to send queued data.
      */
     private RemoteChannel m_Channel;
 
+    /**
+     * Writes batches of messages, null if messages are sent one at a time.
+     */
+    private BatchWriter m_BatchWriter;
+
     /**
      * Service for logging messages.
      */
     private LoggingService m_Logging;
 
+    /**
+     * Settings containing the limits of the queue.
+     */
+    private RemoteSettings m_RemoteSettings;
+
     /**
      * Whether the sender is enabled to be running.  Set to false to stop thread.
      */
-    private boolean m_EnableRunning = true;
+    private volatile boolean m_EnableRunning = true;
 
     /**
      * Thread continuously attempts to send messages as new ones are queued.
      */
     private Thread m_Thread;
-    
-   /**
-    * Queued message that is trying to be sent.
-    */
-    private TerraHarvestMessage m_QueueMessage;
+
+    /**
+     * Create the sender with empty lanes.
+     */
+    public QueuedMessageSender()
+    {
+        for (MessagePriority priority : MessagePriority.values())
+        {
+            m_Lanes.put(priority, new ArrayDeque<TerraHarvestMessage>());
+        }
+    }
 
     /**
      * Binds the logging service for logging messages.
@@ -96,16 +192,33 @@ public class QueuedMessageSender
         m_Logging = logging;
     }
     
+    /**
+     * Bind the settings for the remote interface.
+     * 
+     * @param remoteSettings
+     *      interface containing remote settings from config admin
+     */
+    @Reference
+    public void setRemoteSettings(final RemoteSettings remoteSettings)
+    {
+        m_RemoteSettings = remoteSettings;
+    }
+    
     /**
      * Activate this component.
      * 
      * @param properties
-     *      properties of the component, namely {@value #CHANNEL_PROP_KEY}
+     *      properties of the component, namely {@value #CHANNEL_PROP_KEY} and optionally {@value 
+     *      #BATCH_WRITER_PROP_KEY}
      */
     @Activate
     public void activate(final Map<String, Object> properties)
     {
         m_Channel = (RemoteChannel)properties.get(CHANNEL_PROP_KEY);
+        m_BatchWriter = (BatchWriter)properties.get(BATCH_WRITER_PROP_KEY);
+        
+        m_Capacity = m_RemoteSettings.getSendQueueCapacity();
+        m_MaxBytes = m_RemoteSettings.getSendQueueMaxBytes();
         
         m_Thread = new Thread(new Runner());
         m_Thread.setName(m_Channel.toString() + "MessageSender");
@@ -130,8 +243,8 @@ public class QueuedMessageSender
     }
     
     /**
-     * Queue the message to be sent.  The message will attempted to be sent until successful.  Will attempt to send 
-     * message every {@value #RETRY_INTERVAL_MS} milliseconds.
+     * Queue the message to be sent.  The message will attempted to be sent until successful, backing off between 
+     * failed attempts.
      * 
      * @param message
      *      message to send
@@ -140,37 +253,194 @@ public class QueuedMessageSender
      */
     public boolean queue(final TerraHarvestMessage message)
     {
-        return m_SendMessageQueue.offer(message);
+        final MessagePriority priority = MessagePriority.of(message);
+        final int size = message.getSerializedSize();
+        synchronized (m_Lock)
+        {
+            // a message bigger than the byte limit can still be sent if it's the only one
+            if (m_QueuedCount >= m_Capacity || m_QueuedCount > 0 && m_QueuedBytes + size > m_MaxBytes)
+            {
+                m_DroppedCount.incrementAndGet();
+                return false;
+            }
+            
+            m_Lanes.get(priority).addLast(message);
+            m_QueuedCount++;
+            m_QueuedBytes += size;
+            m_Lock.notifyAll();
+        }
+        return true;
     }
     
     /**
-     * Get the count of queued messages.  The queue count is different than how many messages are left to be sent.  A 
-     * single message may be in the process of being sent and no longer on the queue.
+     * Get the count of queued messages, including messages in the process of being sent.
      * 
      * @return
      *      number of queued messages
      */
     public int getQueuedMessageCount()
     {
-        if (m_QueueMessage == null)
+        synchronized (m_Lock)
         {
-            return m_SendMessageQueue.size();
+            return m_QueuedCount;
         }
-        else
+    }
+    
+    /**
+     * Get the total size of queued messages, including messages in the process of being sent.
+     * 
+     * @return
+     *      number of bytes of queued messages
+     */
+    public long getQueuedByteCount()
+    {
+        synchronized (m_Lock)
         {
-            //Account for the message that is trying to be sent
-            return m_SendMessageQueue.size() + 1;
+            return m_QueuedBytes;
         }
     }
+    
+    /**
+     * Get the running count of messages sent.
+     * 
+     * @return
+     *      number of messages sent
+     */
+    public long getSentMessageCount()
+    {
+        return m_SentCount.get();
+    }
+    
+    /**
+     * Get the running count of messages that were not sent because the queue was full or cleared.
+     * 
+     * @return
+     *      number of dropped messages
+     */
+    public long getDroppedMessageCount()
+    {
+        return m_DroppedCount.get();
+    }
 
     /**
-     * Clear the queue of messages for this channel. Any data in the queue will be permanently lost.  If a message is 
-     * already in the process of being sent, it will still be sent.
+     * Clear the queue of messages for this channel. Any data in the queue will be permanently lost.  If messages are 
+     * already in the process of being sent, they will still be sent.
      */
     public void clearQueue()
     {
-        m_SendMessageQueue.clear();
-        m_QueueMessage = null; //NOPMD: null assignment, makes getQueuedMessages return correct number.
+        synchronized (m_Lock)
+        {
+            for (Deque<TerraHarvestMessage> lane : m_Lanes.values())
+            {
+                lane.clear();
+            }
+            m_InFlight.clear();
+            m_DroppedCount.addAndGet(m_QueuedCount);
+            m_QueuedCount = 0;
+            m_QueuedBytes = 0;
+        }
+    }
+    
+    /**
+     * Wait for messages and move as many as allowed in a batch from the lanes to the in flight messages.  Messages still
+     * in flight from a failed attempt are sent again first, without adding more.
+     * 
+     * @return
+     *      copy of the messages to send
+     * @throws InterruptedException
+     *      if interrupted while waiting for messages
+     */
+    private List<TerraHarvestMessage> takeBatch() throws InterruptedException
+    {
+        synchronized (m_Lock)
+        {
+            while (m_QueuedCount == 0)
+            {
+                m_Lock.wait();
+            }
+            
+            if (m_InFlight.isEmpty())
+            {
+                long batchBytes = 0;
+                for (Deque<TerraHarvestMessage> lane : m_Lanes.values())
+                {
+                    while (!lane.isEmpty() && m_InFlight.size() < MAX_BATCH_MESSAGES 
+                            && (m_InFlight.isEmpty() || batchBytes + lane.peekFirst().getSerializedSize() 
+                                    <= MAX_BATCH_BYTES))
+                    {
+                        final TerraHarvestMessage message = lane.removeFirst();
+                        batchBytes += message.getSerializedSize();
+                        m_InFlight.addLast(message);
+                    }
+                }
+            }
+            return new ArrayList<TerraHarvestMessage>(m_InFlight);
+        }
+    }
+    
+    /**
+     * Send a batch of messages through the channel.
+     * 
+     * @param batch
+     *      messages to send in order
+     * @return
+     *      number of messages from the start of the batch that were sent
+     */
+    private int sendBatch(final List<TerraHarvestMessage> batch)
+    {
+        if (m_BatchWriter != null)
+        {
+            return m_BatchWriter.trySendMessages(batch);
+        }
+        
+        int sent = 0;
+        for (TerraHarvestMessage message : batch)
+        {
+            if (!m_Channel.trySendMessage(message))
+            {
+                break;
+            }
+            sent++;
+        }
+        return sent;
+    }
+    
+    /**
+     * Remove sent messages from the in flight messages.  If the queue was cleared while sending, the messages are 
+     * already gone.
+     * 
+     * @param batch
+     *      batch that was sent
+     * @param sent
+     *      number of messages from the start of the batch that were sent
+     */
+    private void removeSent(final List<TerraHarvestMessage> batch, final int sent)
+    {
+        synchronized (m_Lock)
+        {
+            for (int i = 0; i < sent && !m_InFlight.isEmpty() && m_InFlight.peekFirst() == batch.get(i); i++)
+            {
+                m_QueuedBytes -= m_InFlight.removeFirst().getSerializedSize();
+                m_QueuedCount--;
+            }
+        }
+        m_SentCount.addAndGet(sent);
+    }
+    
+    /**
+     * Interface implemented by channels that can send multiple messages at once more efficiently than one at a time.
+     */
+    interface BatchWriter
+    {
+        /**
+         * Try to send the messages in order.
+         * 
+         * @param messages
+         *      messages to send
+         * @return
+         *      number of messages from the start of the list that were sent, the rest will be attempted again later
+         */
+        int trySendMessages(List<TerraHarvestMessage> messages);
     }
     
     /**
@@ -184,48 +454,46 @@ public class QueuedMessageSender
         @Override
         public void run()
         {
+            int retryIntervalMs = INITIAL_RETRY_INTERVAL_MS;
             while (m_EnableRunning)
             {
-                if (m_QueueMessage == null)
+                final List<TerraHarvestMessage> batch;
+                try
                 {
-                    // no message to send yet, wait for one
-                    try
-                    {
-                        m_QueueMessage = m_SendMessageQueue.takeFirst();
-                    }
-                    catch (final InterruptedException e)
-                    {
-                        // thread is interrupted so go ahead and exit out
-                        m_Logging.debug("QueuedMessageSender thread for [%s] interrupted while waiting for message" 
-                                + ", possibly due to channel deactivation", m_Channel);
-                        return;
-                    }
+                    batch = takeBatch();
                 }
-                else
+                catch (final InterruptedException e)
                 {
-                    // message send, try to do it
-                    if (m_Channel.trySendMessage(m_QueueMessage))
-                    {
-                        // message sent, no longer needed
-                        m_QueueMessage = null; //NOPMD: null assignment, used to keep track of state
-                    }
-                    else
-                    {
-                        // failed to send message, wait before trying again
-                        try
-                        {
-                            Thread.sleep(RETRY_INTERVAL_MS);
-                        }
-                        catch (final InterruptedException e)
-                        {
-                            // thread is interrupted so go ahead and exit out
-                            m_Logging.warning(
-                                    "QueuedMessageSender thread for [%s] interrupted while waiting to retry sending", 
-                                    m_Channel);
-                            return;
-                        }
-                    }
+                    // thread is interrupted so go ahead and exit out
+                    m_Logging.debug("QueuedMessageSender thread for [%s] interrupted while waiting for message" 
+                            + ", possibly due to channel deactivation", m_Channel);
+                    return;
+                }
+                
+                final int sent = sendBatch(batch);
+                removeSent(batch, sent);
+                
+                if (sent == batch.size())
+                {
+                    retryIntervalMs = INITIAL_RETRY_INTERVAL_MS;
+                    continue;
+                }
+                
+                // failed to send all messages, wait a random time between half and all of the interval, then double the
+                // interval for the next failure
+                try
+                {
+                    Thread.sleep(retryIntervalMs / 2 + m_Random.nextInt(retryIntervalMs / 2 + 1));
+                }
+                catch (final InterruptedException e)
+                {
+                    // thread is interrupted so go ahead and exit out
+                    m_Logging.warning(
+                            "QueuedMessageSender thread for [%s] interrupted while waiting to retry sending", 
+                            m_Channel);
+                    return;
                 }
+                retryIntervalMs = Math.min(retryIntervalMs * 2, MAX_RETRY_INTERVAL_MS);
             }
         }
     }
@@ -17,6 +17,7 @@ import aQute.bnd.annotation.metatype.Meta.OCD;
 
 import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.api.RemoteSettings.EncryptionMode;
+import mil.dod.th.ose.remote.api.RemoteSettings.SocketEngine;
 
 /**
  * Configuration interface for the remote interface.
@@ -71,4 +72,119 @@ public interface RemoteSettingsConfig
         + " remote socket channels are active or connected. Note: Does not affect current channels, must reconnect"
         + " for changes to take effect")
     boolean preventSleepMode();
+
+    /**
+     * Get the engine used to read and write messages for remote socket channels.
+     * 
+     * @return
+     *      the socket engine
+     */
+    @AD(required = false, deflt = "THREAD_PER_SOCKET", name = RemoteSettings.KEY_SOCKET_ENGINE,
+            description = "THREAD_PER_SOCKET uses dedicated threads for each socket, NIO_SELECTOR shares a small pool"
+            + " of non-blocking selector threads between all sockets (SSL sockets always use dedicated threads). Note:"
+            + " Does not affect current channels, must reconnect for changes to take effect")
+    SocketEngine socketEngine();
+
+    /**
+     * Get the number of selector threads used by the NIO socket engine.
+     * 
+     * @return
+     *      number of selector threads
+     */
+    @AD(required = false, deflt = "2", min = "1", name = RemoteSettings.KEY_NIO_SELECTOR_THREADS,
+            description = "Number of selector threads shared by all socket channels when using the NIO_SELECTOR"
+            + " socket engine. Note: Only read when the first NIO socket is connected")
+    int nioSelectorThreads();
+
+    /**
+     * Get the number of worker threads used by the NIO socket engine to handle received messages.
+     * 
+     * @return
+     *      number of worker threads
+     */
+    @AD(required = false, deflt = "4", min = "1", name = RemoteSettings.KEY_NIO_WORKER_THREADS,
+            description = "Number of threads used to handle messages received by socket channels when using the"
+            + " NIO_SELECTOR socket engine. Note: Only read when the first NIO socket is connected")
+    int nioWorkerThreads();
+
+    /**
+     * Get the maximum number of messages queued to be sent by a single remote channel.
+     * 
+     * @return
+     *      number of messages a channel can queue
+     */
+    @AD(required = false, deflt = "500", min = "1", name = RemoteSettings.KEY_SEND_QUEUE_CAPACITY,
+            description = "Maximum number of messages queued to be sent by each remote channel, further messages are"
+            + " dropped. Note: Does not affect current channels, must reconnect for changes to take effect")
+    int sendQueueCapacity();
+
+    /**
+     * Get the maximum number of bytes of messages queued to be sent by a single remote channel.
+     * 
+     * @return
+     *      number of bytes a channel can queue
+     */
+    @AD(required = false, deflt = "16777216", min = "1", name = RemoteSettings.KEY_SEND_QUEUE_MAX_BYTES,
+            description = "Maximum number of bytes of messages queued to be sent by each remote channel, further"
+            + " messages are dropped. Default is 16MB. Note: Does not affect current channels, must reconnect for"
+            + " changes to take effect")
+    long sendQueueMaxBytes();
+
+    /**
+     * Get the number of threads used to handle received messages.
+     * 
+     * @return
+     *      number of threads, 0 to handle messages on the thread that received them
+     */
+    @AD(required = false, deflt = "4", min = "0", name = RemoteSettings.KEY_DISPATCH_THREADS,
+            description = "Number of threads used to handle received messages. Messages for the same namespace from"
+            + " the same channel are always handled in order. Set to 0 to handle messages on the thread that received"
+            + " them. Note: Only read when the message router is activated")
+    int dispatchThreads();
+
+    /**
+     * Get the maximum number of received messages waiting to be handled for a single namespace of a channel.
+     * 
+     * @return
+     *      number of messages that can wait
+     */
+    @AD(required = false, deflt = "100", min = "1", name = RemoteSettings.KEY_DISPATCH_QUEUE_CAPACITY,
+            description = "Maximum number of received messages waiting to be handled for a single namespace of a"
+            + " channel, the channel stops reading until there is room. Note: Only read when the message router is"
+            + " activated")
+    int dispatchQueueCapacity();
+
+    /**
+     * Get how long a response handler waits for a response before it is removed.
+     * 
+     * @return
+     *      timeout in milliseconds
+     */
+    @AD(required = false, deflt = "300000", min = "1000", name = RemoteSettings.KEY_RESPONSE_HANDLER_TIMEOUT,
+            description = "Time in milliseconds to wait for the response to a request sent with a response handler."
+            + " The handler is removed if no response is received in time. Default is 5 minutes")
+    long responseHandlerTimeout();
+
+    /**
+     * Get the maximum number of events waiting to be sent for a remote event registration.
+     * 
+     * @return
+     *      number of events
+     */
+    @AD(required = false, deflt = "1000", min = "1", name = RemoteSettings.KEY_EVENT_QUEUE_CAPACITY,
+            description = "Maximum number of local events waiting to be sent for a single remote event registration,"
+            + " events occurring once reached are dropped. Note: Only read when the event admin message service is"
+            + " activated")
+    int eventQueueCapacity();
+
+    /**
+     * Get the maximum number of events sent in a single message.
+     * 
+     * @return
+     *      number of events
+     */
+    @AD(required = false, deflt = "25", min = "1", name = RemoteSettings.KEY_EVENT_BATCH_SIZE,
+            description = "Maximum number of events sent in a single message to a system that registered for events"
+            + " with batching enabled. Note: Only read when the event admin message service is activated")
+    int eventBatchSize();
 }
@@ -57,6 +57,56 @@ public class RemoteSettingsImpl implements RemoteSettings  // TODO: TH-700 - sho
      */
     private boolean m_IsPreventSleepModeEnabled;
 
+    /**
+     * Engine used to read and write messages for socket channels.
+     */
+    private SocketEngine m_SocketEngine;
+
+    /**
+     * Number of selector threads for the NIO socket engine.
+     */
+    private int m_NioSelectorThreads;
+
+    /**
+     * Number of worker threads for the NIO socket engine.
+     */
+    private int m_NioWorkerThreads;
+
+    /**
+     * Maximum number of messages queued by a channel.
+     */
+    private int m_SendQueueCapacity;
+
+    /**
+     * Maximum number of bytes queued by a channel.
+     */
+    private long m_SendQueueMaxBytes;
+
+    /**
+     * Number of threads used to handle received messages.
+     */
+    private int m_DispatchThreads;
+
+    /**
+     * Maximum number of received messages waiting per namespace of a channel.
+     */
+    private int m_DispatchQueueCapacity;
+
+    /**
+     * Time in milliseconds to wait for a response before removing the response handler.
+     */
+    private long m_ResponseHandlerTimeout;
+
+    /**
+     * Maximum number of events waiting to be sent per remote event registration.
+     */
+    private int m_EventQueueCapacity;
+
+    /**
+     * Maximum number of events per message.
+     */
+    private int m_EventBatchSize;
+
     /**
      * The bundle context from the bundle containing this component.
      */
@@ -128,6 +178,16 @@ public class RemoteSettingsImpl implements RemoteSettings  // TODO: TH-700 - sho
         m_EncryptionMode = config.encryptionMode();
         m_MaxMsgSizeInBytes = config.maxMsgSizeInBytes();
         m_IsPreventSleepModeEnabled = config.preventSleepMode();
+        m_SocketEngine = config.socketEngine();
+        m_NioSelectorThreads = config.nioSelectorThreads();
+        m_NioWorkerThreads = config.nioWorkerThreads();
+        m_SendQueueCapacity = config.sendQueueCapacity();
+        m_SendQueueMaxBytes = config.sendQueueMaxBytes();
+        m_DispatchThreads = config.dispatchThreads();
+        m_DispatchQueueCapacity = config.dispatchQueueCapacity();
+        m_ResponseHandlerTimeout = config.responseHandlerTimeout();
+        m_EventQueueCapacity = config.eventQueueCapacity();
+        m_EventBatchSize = config.eventBatchSize();
     }
 
     @Override
@@ -141,4 +201,64 @@ public class RemoteSettingsImpl implements RemoteSettings  // TODO: TH-700 - sho
     {
         return m_IsPreventSleepModeEnabled;
     }
+
+    @Override
+    public SocketEngine getSocketEngine()
+    {
+        return m_SocketEngine;
+    }
+
+    @Override
+    public int getNioSelectorThreads()
+    {
+        return m_NioSelectorThreads;
+    }
+
+    @Override
+    public int getNioWorkerThreads()
+    {
+        return m_NioWorkerThreads;
+    }
+
+    @Override
+    public int getSendQueueCapacity()
+    {
+        return m_SendQueueCapacity;
+    }
+
+    @Override
+    public long getSendQueueMaxBytes()
+    {
+        return m_SendQueueMaxBytes;
+    }
+
+    @Override
+    public int getDispatchThreads()
+    {
+        return m_DispatchThreads;
+    }
+
+    @Override
+    public int getDispatchQueueCapacity()
+    {
+        return m_DispatchQueueCapacity;
+    }
+
+    @Override
+    public long getResponseHandlerTimeout()
+    {
+        return m_ResponseHandlerTimeout;
+    }
+
+    @Override
+    public int getEventQueueCapacity()
+    {
+        return m_EventQueueCapacity;
+    }
+
+    @Override
+    public int getEventBatchSize()
+    {
+        return m_EventBatchSize;
+    }
 }
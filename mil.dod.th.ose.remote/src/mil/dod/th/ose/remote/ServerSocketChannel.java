@@ -12,6 +12,7 @@
 //==============================================================================
 package mil.dod.th.ose.remote;
 
+import java.io.IOException;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
@@ -95,14 +96,23 @@ public class ServerSocketChannel extends AbstractSocketChannel
         super.setPowerManager(powerManager);
     }
 
+    @Override
+    @Reference
+    public void setNioSocketEngine(final NioSocketEngine nioSocketEngine)
+    {
+        super.setNioSocketEngine(nioSocketEngine);
+    }
+
     /**
      * Activate the component by getting a reference to the connected socket.
      * 
      * @param props
      *      properties of the component, namely {@link #SOCKET_PROP_KEY}
+     * @throws IOException
+     *      if unable to register a non-blocking socket with the {@link NioSocketEngine}
      */
     @Activate
-    public void activate(final Map<String, Object> props)
+    public void activate(final Map<String, Object> props) throws IOException
     {
         final Socket socket = (Socket)props.get(SOCKET_PROP_KEY);
         
@@ -23,13 +23,16 @@ import aQute.bnd.annotation.component.Reference;
 
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannelLookup;
+import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.remote.api.RemoteSettings.SocketEngine;
 import mil.dod.th.ose.utils.ServerSocketFactory;
 
 import org.osgi.framework.BundleContext;
 
 /**
  * Component will accept multiple connections from a configured port.  Will listen to each connected socket on a 
- * separate thread.
+ * separate thread, or with the {@link NioSocketEngine} if selected by {@link RemoteSettings#getSocketEngine()}.  The
+ * socket engine setting is read when this component is activated.
  * 
  * Ideally this component would use a designator class for configuration, but there is a bug in Felix SCR 1.6.0 
  * (FELIX-3090) where it ignore target filters in factory components.  This component had a target filter for a service
@@ -86,6 +89,11 @@ public class ServerSocketMessageListener
      */
     private Thread m_ServerSocketThread;
 
+    /**
+     * Service contains current settings from config admin.
+     */
+    private RemoteSettings m_RemoteSettings;
+
     /**
      * Bind a factory for creating server sockets.
      * 
@@ -122,6 +130,18 @@ public class ServerSocketMessageListener
         m_Logging = logging;
     }
     
+    /**
+     * Bind the settings for the remote interface.
+     * 
+     * @param remoteSettings
+     *      interface containing remote settings from config admin
+     */
+    @Reference
+    public void setRemoteSettings(final RemoteSettings remoteSettings)
+    {
+        m_RemoteSettings = remoteSettings;
+    }
+    
     /**
      * Activate this component by starting to listen on a configured port.
      * 
@@ -150,7 +170,15 @@ public class ServerSocketMessageListener
             enableSsl = Boolean.parseBoolean(context.getProperty(SSL_PROP_KEY));
         }
 
-        m_ServerSocket = m_ServerSocketFactory.createServerSocket(serverPort, enableSsl);
+        if (!enableSsl && m_RemoteSettings.getSocketEngine() == SocketEngine.NIO_SELECTOR)
+        {
+            // accepted sockets will have an associated channel so they are serviced by the NIO socket engine
+            m_ServerSocket = m_ServerSocketFactory.createServerSocketChannel(serverPort).socket();
+        }
+        else
+        {
+            m_ServerSocket = m_ServerSocketFactory.createServerSocket(serverPort, enableSsl);
+        }
 
         m_Logging.info("Server socket listening on port %d for remote messages", m_ServerSocket.getLocalPort());
         
@@ -25,6 +25,7 @@ import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Deactivate;
 import aQute.bnd.annotation.component.Reference;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 
@@ -33,6 +34,7 @@ import mil.dod.th.core.remote.RemoteConstants;
 import mil.dod.th.core.remote.messaging.MessageRouter;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
 import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
@@ -41,7 +43,12 @@ import org.apache.commons.io.HexDump;
 
 /**
  * Reads in messages from a socket on a thread.  Will pass received message to a {@link MessageRouter} and sync with the
- * {@link mil.dod.th.core.remote.RemoteChannelLookup}.
+ * {@link mil.dod.th.core.remote.RemoteChannelLookup}.  When the socket is serviced by the {@link NioSocketEngine}, the
+ * listener is not run on a thread, the engine passes it each received message instead.
+ * 
+ * <p>
+ * Each message is read into a frame sized exactly for it and parsed in place with the {@link ZeroCopyParser}, so the
+ * payload and namespace messages passed on to the router are slices of the frame instead of copies.
  * 
  * @author Dave Humeniuk
  *
@@ -64,6 +71,11 @@ public class SocketMessageListener implements Runnable
      */
     public static final String SOCKET_PROP_KEY = "socket";
     
+    /**
+     * Size of the buffer reused to read message bytes from the socket stream.
+     */
+    private static final int READ_BUFFER_SIZE = 8192;
+    
     /**
      * Whether the runner should continue.
      */
@@ -114,6 +126,16 @@ public class SocketMessageListener implements Runnable
      */
     private RemoteSettings m_RemoteSettings;
     
+    /**
+     * Buffer reused to read message bytes from the socket stream before they are added to the frame.
+     */
+    private final byte[] m_ReadBuffer = new byte[READ_BUFFER_SIZE];
+    
+    /**
+     * Counts the messages decoded by this listener and the memory allocated for them.
+     */
+    private final DecodeStatistics m_DecodeStatistics = new DecodeStatistics();
+    
     /**
      * Bind a message route to handler message read in from socket.
      * 
@@ -187,7 +209,7 @@ public class SocketMessageListener implements Runnable
         m_Running = false;
     }
     
-    @Override // NOCHECKSTYLE: This logic is required until refactoring can be done
+    @Override
     public void run()
     {
         // continuously read messages from socket
@@ -195,7 +217,7 @@ public class SocketMessageListener implements Runnable
         {
             while (m_Running)
             {
-                byte[] messageBuffer = null;
+                ByteString messageBuffer = null;
                 try
                 {
                     messageBuffer = readMessage();
@@ -212,84 +234,119 @@ public class SocketMessageListener implements Runnable
                     return;
                 }
                 
-                TerraHarvestMessage message = null;
-                try
-                {
-                    message = TerraHarvestMessage.parseFrom(messageBuffer);
-                }
-                catch (final InvalidProtocolBufferException e)
-                {
-                    // if failure occurs, then sender sent bad data, continue running to accept further messages
-                    m_Logging.warning("Tried to parse message of size %d from socket %s: %s", messageBuffer.length, 
-                            m_Socket.getRemoteSocketAddress(), e.getMessage());
-                    m_Logging.debug(hexDump(messageBuffer));
-                }
-                
-                if (message != null)
-                {
-                    if (m_RemoteSettings.isLogRemoteMessagesEnabled())
-                    {
-                        m_Logging.debug("Socket %s received remote message%n%s", m_Socket.getRemoteSocketAddress(), 
-                            message);
-                    }
-                    
-                    if (m_RemoteId == null || m_RemoteId == Integer.MAX_VALUE)
-                    {
-                        m_RemoteId = message.getSourceId();
-                        final Map<String, Object> props = new HashMap<String, Object>();
-                        props.put(RemoteConstants.EVENT_PROP_SYS_ID, message.getSourceId());
-                        props.put(RemoteConstants.EVENT_PROP_CHANNEL, m_Channel);
-                        final Event event = new Event(RemoteConstants.TOPIC_NEW_OR_CHANGED_CHANNEL_ID, props);
-                        m_EventAdmin.sendEvent(event);
-                    }
-                    
-                    // send message on to router if parsed
-                    m_MessageRouter.handleMessage(message, m_Channel);
-                }
+                handleMessageBuffer(messageBuffer);
             }
         }
         finally
         {
             //do thread cleanup
-            final Map<String, Object> props = new HashMap<String, Object>();
-            props.put(RemoteConstants.EVENT_PROP_CHANNEL, m_Channel);
-            final Event event = new Event(RemoteConstants.TOPIC_REMOVE_CHANNEL, props);
-            m_EventAdmin.postEvent(event);
-            
-            // try to close input stream and socket, ignoring all exceptions to ensure both are closed
-            try
-            {
-                m_InputStream.close();
-            }
-            catch (final Exception e)
+            cleanup();
+        }
+        
+        m_Logging.debug("Socket listener thread completed");
+    }
+
+    /**
+     * Parse a received message and pass it on to the router.  Called by {@link #run()} for each message read, or
+     * directly by the {@link NioSocketEngine} when the socket is serviced by a selector thread instead.
+     * 
+     * @param messageBuffer
+     *      frame containing the {@link TerraHarvestMessage} (does not include the octet count), fields of the parsed 
+     *      message will be slices of the frame
+     */
+    void handleMessageBuffer(final ByteString messageBuffer)
+    {
+        m_DecodeStatistics.recordMessage(messageBuffer.size());
+        
+        TerraHarvestMessage message = null;
+        try
+        {
+            message = ZeroCopyParser.parse(TerraHarvestMessage.PARSER, messageBuffer);
+        }
+        catch (final InvalidProtocolBufferException e)
+        {
+            // if failure occurs, then sender sent bad data, continue running to accept further messages
+            m_Logging.warning("Tried to parse message of size %d from socket %s: %s", messageBuffer.size(), 
+                    m_Socket.getRemoteSocketAddress(), e.getMessage());
+            m_Logging.debug(hexDump(messageBuffer.toByteArray()));
+        }
+        
+        if (message != null)
+        {
+            if (m_RemoteSettings.isLogRemoteMessagesEnabled())
             {
-                m_Logging.error(e, "Unable to close input stream");
+                m_Logging.debug("Socket %s received remote message%n%s", m_Socket.getRemoteSocketAddress(), 
+                    message);
             }
             
-            try
-            {
-                m_Socket.close();
-            }
-            catch (final Exception e)
+            if (m_RemoteId == null || m_RemoteId == Integer.MAX_VALUE)
             {
-                m_Logging.error(e, "Unable to close socket");
+                m_RemoteId = message.getSourceId();
+                final Map<String, Object> props = new HashMap<String, Object>();
+                props.put(RemoteConstants.EVENT_PROP_SYS_ID, message.getSourceId());
+                props.put(RemoteConstants.EVENT_PROP_CHANNEL, m_Channel);
+                final Event event = new Event(RemoteConstants.TOPIC_NEW_OR_CHANGED_CHANNEL_ID, props);
+                m_EventAdmin.sendEvent(event);
             }
+            
+            // send message on to router if parsed
+            m_MessageRouter.handleMessage(message, m_Channel);
+        }
+    }
+
+    /**
+     * Get the statistics of messages decoded by this listener.
+     * 
+     * @return
+     *      decode statistics of the channel
+     */
+    DecodeStatistics getDecodeStatistics()
+    {
+        return m_DecodeStatistics;
+    }
+
+    /**
+     * Remove the channel and close the socket once no more messages will be read.
+     */
+    void cleanup()
+    {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(RemoteConstants.EVENT_PROP_CHANNEL, m_Channel);
+        final Event event = new Event(RemoteConstants.TOPIC_REMOVE_CHANNEL, props);
+        m_EventAdmin.postEvent(event);
+        
+        // try to close input stream and socket, ignoring all exceptions to ensure both are closed
+        try
+        {
+            m_InputStream.close();
+        }
+        catch (final Exception e)
+        {
+            m_Logging.error(e, "Unable to close input stream");
         }
         
-        m_Logging.debug("Socket listener thread completed");
+        try
+        {
+            m_Socket.close();
+        }
+        catch (final Exception e)
+        {
+            m_Logging.error(e, "Unable to close socket");
+        }
     }
 
     /**
      * Read a single {@link TerraHarvestMessage} from the input stream with an octet count of the message size before
-     * the message.
+     * the message.  The message is read through the reused {@link #m_ReadBuffer} into a frame of the exact message
+     * size, so the returned frame wraps it without another copy.
      * 
      * @return
-     *      array containing the {@link TerraHarvestMessage} (does not include the octet count) or null if no message
+     *      frame containing the {@link TerraHarvestMessage} (does not include the octet count) or null if no message
      * @throws RemoteInterfaceException An error with the size of the message.
      */
-    private byte[] readMessage() throws RemoteInterfaceException
+    private ByteString readMessage() throws RemoteInterfaceException
     {
-        final byte[] messageBuffer;
+        final ByteString.Output messageBuffer;
         try
         {
             // first read size of message coming in
@@ -327,12 +384,12 @@ public class SocketMessageListener implements Runnable
             }
             
             // now read in message
-            messageBuffer = new byte[messageSize];
+            messageBuffer = ByteString.newOutput(messageSize);
             int bytesRemaining = messageSize;
             while (bytesRemaining > 0)
             {
-                final int bytesRead = m_InputStream.read(messageBuffer, messageSize - bytesRemaining, 
-                        bytesRemaining);
+                final int bytesRead = m_InputStream.read(m_ReadBuffer, 0, 
+                        Math.min(bytesRemaining, m_ReadBuffer.length));
                 if (bytesRead == -1)
                 {
                     // reached EOF
@@ -340,6 +397,7 @@ public class SocketMessageListener implements Runnable
                             m_Socket.getRemoteSocketAddress());
                     return null;
                 }
+                messageBuffer.write(m_ReadBuffer, 0, bytesRead);
                 m_AllBytesReceived += bytesRead;
                 m_Channel.setBytesReceived(m_AllBytesReceived);
                 bytesRemaining -= bytesRead;
@@ -352,7 +410,7 @@ public class SocketMessageListener implements Runnable
                     m_Socket.getRemoteSocketAddress());
             return null;
         }
-        return messageBuffer;
+        return messageBuffer.toByteString();
     }
 
     /**
@@ -0,0 +1,195 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Incrementally decodes varint delimited {@link mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage} frames
+ * from bytes read off of a non-blocking socket.  Bytes can arrive in chunks of any size, a partial frame (including a
+ * partial size prefix) is kept until the rest of the frame is received.  Each frame is filled directly into an output
+ * sized exactly for the frame, so the completed {@link ByteString} wraps it without another copy and can be parsed with
+ * {@link mil.dod.th.ose.remote.util.ZeroCopyParser}.  Instances are not thread safe, each socket must have its own
+ * decoder.
+ */
+final class VarintFrameDecoder
+{
+    /**
+     * Maximum number of bytes in the varint size prefix of a frame, enough for any positive 32-bit value.
+     */
+    private static final int MAX_VARINT_BYTES = 5;
+
+    /**
+     * Number of value bits in each varint byte.
+     */
+    private static final int VARINT_BITS_PER_BYTE = 7;
+
+    /**
+     * Mask of the continuation bit of a varint byte.
+     */
+    private static final int VARINT_CONTINUATION_MASK = 0x80;
+
+    /**
+     * Mask of the value bits of a varint byte.
+     */
+    private static final int VARINT_VALUE_MASK = 0x7F;
+
+    /**
+     * Largest frame that will be accepted.
+     */
+    private final long m_MaxFrameSize;
+
+    /**
+     * Size value decoded so far from a partial size prefix.
+     */
+    private int m_SizeValue;
+
+    /**
+     * Bit position of the next size prefix byte.
+     */
+    private int m_SizeShift;
+
+    /**
+     * Frame currently being filled, null if reading the size prefix.
+     */
+    private ByteString.Output m_Frame;
+
+    /**
+     * Number of bytes of {@link #m_Frame} that still need to be filled.
+     */
+    private int m_FrameRemaining;
+
+    /**
+     * Create a decoder for a single socket.
+     * 
+     * @param maxFrameSize
+     *      largest frame that will be accepted, larger frames cause {@link #decode(ByteBuffer, FrameHandler)} to fail
+     */
+    VarintFrameDecoder(final long maxFrameSize)
+    {
+        m_MaxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Decode all bytes remaining in the buffer.  Each completed frame is passed to the handler in order.  The buffer
+     * will have no remaining bytes when this method returns normally.
+     * 
+     * @param buffer
+     *      bytes read from the socket, ready to be read
+     * @param handler
+     *      handler of completed frames
+     * @throws RemoteInterfaceException
+     *      if the size prefix of a frame is malformed or exceeds the maximum frame size, the socket should be closed
+     *      as the remainder of the stream can no longer be decoded
+     */
+    void decode(final ByteBuffer buffer, final FrameHandler handler) throws RemoteInterfaceException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (m_Frame == null && !readSize(buffer))
+            {
+                return;
+            }
+
+            final int count = Math.min(buffer.remaining(), m_FrameRemaining);
+            if (buffer.hasArray())
+            {
+                m_Frame.write(buffer.array(), buffer.arrayOffset() + buffer.position(), count);
+                buffer.position(buffer.position() + count);
+            }
+            else
+            {
+                final byte[] chunk = new byte[count];
+                buffer.get(chunk);
+                m_Frame.write(chunk, 0, count);
+            }
+            m_FrameRemaining -= count;
+
+            if (m_FrameRemaining == 0)
+            {
+                final ByteString frame = m_Frame.toByteString();
+                m_Frame = null;
+                handler.frameDecoded(frame);
+            }
+        }
+    }
+
+    /**
+     * Whether the decoder is in the middle of a frame.
+     * 
+     * @return
+     *      true if part of a frame has been decoded, false if at a frame boundary
+     */
+    boolean hasPartialFrame()
+    {
+        return m_Frame != null || m_SizeShift > 0;
+    }
+
+    /**
+     * Read bytes of the size prefix until the prefix is complete or the buffer is empty.
+     * 
+     * @param buffer
+     *      buffer to read from
+     * @return
+     *      true if the size prefix is complete and {@link #m_Frame} has been allocated, false if more bytes are needed
+     * @throws RemoteInterfaceException
+     *      if the size prefix is malformed or too large
+     */
+    private boolean readSize(final ByteBuffer buffer) throws RemoteInterfaceException
+    {
+        while (buffer.hasRemaining())
+        {
+            final byte sizeByte = buffer.get();
+            m_SizeValue |= (sizeByte & VARINT_VALUE_MASK) << m_SizeShift;
+            if ((sizeByte & VARINT_CONTINUATION_MASK) == 0)
+            {
+                final int frameSize = m_SizeValue;
+                m_SizeValue = 0;
+                m_SizeShift = 0;
+
+                if (frameSize < 0 || frameSize > m_MaxFrameSize)
+                {
+                    throw new RemoteInterfaceException(
+                            String.format("Message over Max Size: %s > %s", frameSize, m_MaxFrameSize));
+                }
+
+                m_Frame = ByteString.newOutput(frameSize);
+                m_FrameRemaining = frameSize;
+                return true;
+            }
+
+            m_SizeShift += VARINT_BITS_PER_BYTE;
+            if (m_SizeShift >= MAX_VARINT_BYTES * VARINT_BITS_PER_BYTE)
+            {
+                throw new RemoteInterfaceException("Malformed message size, varint is too long");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Receives frames as they are completed by the decoder.
+     */
+    interface FrameHandler
+    {
+        /**
+         * Called for each completed frame.
+         * 
+         * @param frame
+         *      bytes of the frame without the size prefix
+         */
+        void frameDecoded(ByteString frame);
+    }
+}
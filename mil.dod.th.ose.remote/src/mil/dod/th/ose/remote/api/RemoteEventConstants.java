@@ -33,6 +33,22 @@ public final class RemoteEventConstants
      */
     final public static String EVENT_PROP_OBS_NUMBER_RETRIEVED = "obs.number.retrieved";
     
+    /** 
+     * Event topic posted as observations retrieved by a GetObservationsRequest are stored in the observation store, 
+     * before the {@link #TOPIC_OBS_STORE_RETRIEVE_COMPLETE} event.
+     */
+    final public static String TOPIC_OBS_STORE_RETRIEVE_PROGRESS = TOPIC_PREFIX + "OBS_STORE_RETRIEVE_PROGRESS";
+    
+    /**
+     * Event property denoting the number of retrieved observations that have been stored so far (Integer).
+     */
+    final public static String EVENT_PROP_OBS_NUMBER_STORED = "obs.number.stored";
+    
+    /**
+     * Event property denoting the rate retrieved observations are being stored in observations per second (Double).
+     */
+    final public static String EVENT_PROP_OBS_STORE_RATE = "obs.store.rate";
+    
     /**
      * Constructor to prevent instantiation. 
      */
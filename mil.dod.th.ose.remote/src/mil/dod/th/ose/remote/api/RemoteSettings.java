@@ -45,6 +45,56 @@ public interface RemoteSettings
      */
     String KEY_PREVENT_SLEEP_MODE = "preventSleepMode";
 
+    /**
+     * Key for the {@link #getSocketEngine()} configuration property.
+     */
+    String KEY_SOCKET_ENGINE = "socketEngine";
+
+    /**
+     * Key for the {@link #getNioSelectorThreads()} configuration property.
+     */
+    String KEY_NIO_SELECTOR_THREADS = "nioSelectorThreads";
+
+    /**
+     * Key for the {@link #getNioWorkerThreads()} configuration property.
+     */
+    String KEY_NIO_WORKER_THREADS = "nioWorkerThreads";
+
+    /**
+     * Key for the {@link #getSendQueueCapacity()} configuration property.
+     */
+    String KEY_SEND_QUEUE_CAPACITY = "sendQueueCapacity";
+
+    /**
+     * Key for the {@link #getSendQueueMaxBytes()} configuration property.
+     */
+    String KEY_SEND_QUEUE_MAX_BYTES = "sendQueueMaxBytes";
+
+    /**
+     * Key for the {@link #getDispatchThreads()} configuration property.
+     */
+    String KEY_DISPATCH_THREADS = "dispatchThreads";
+
+    /**
+     * Key for the {@link #getDispatchQueueCapacity()} configuration property.
+     */
+    String KEY_DISPATCH_QUEUE_CAPACITY = "dispatchQueueCapacity";
+
+    /**
+     * Key for the {@link #getResponseHandlerTimeout()} configuration property.
+     */
+    String KEY_RESPONSE_HANDLER_TIMEOUT = "responseHandlerTimeout";
+
+    /**
+     * Key for the {@link #getEventQueueCapacity()} configuration property.
+     */
+    String KEY_EVENT_QUEUE_CAPACITY = "eventQueueCapacity";
+
+    /**
+     * Key for the {@link #getEventBatchSize()} configuration property.
+     */
+    String KEY_EVENT_BATCH_SIZE = "eventBatchSize";
+
     /**
      * Whether logging of remote messages is enabled for the system.
      * 
@@ -77,6 +127,96 @@ public interface RemoteSettings
      */
     boolean isPreventSleepModeEnabled();
 
+    /**
+     * The engine used to read and write messages for remote socket channels. Only affects sockets connected after the
+     * setting is changed.
+     * 
+     * @return
+     *      the socket engine
+     */
+    SocketEngine getSocketEngine();
+
+    /**
+     * The number of selector threads shared by all socket channels when using {@link SocketEngine#NIO_SELECTOR}.
+     * 
+     * @return
+     *      number of selector threads
+     */
+    int getNioSelectorThreads();
+
+    /**
+     * The number of threads used to handle messages received by socket channels when using
+     * {@link SocketEngine#NIO_SELECTOR}. Messages from a single socket are always handled in the order received.
+     * 
+     * @return
+     *      number of worker threads
+     */
+    int getNioWorkerThreads();
+
+    /**
+     * The maximum number of messages queued to be sent by a single remote channel. Only affects channels created after 
+     * the setting is changed.
+     * 
+     * @return
+     *      number of messages a channel can queue
+     */
+    int getSendQueueCapacity();
+
+    /**
+     * The maximum number of bytes of messages queued to be sent by a single remote channel. A single message larger 
+     * than this is still accepted if nothing else is queued. Only affects channels created after the setting is 
+     * changed.
+     * 
+     * @return
+     *      number of bytes a channel can queue
+     */
+    long getSendQueueMaxBytes();
+
+    /**
+     * The number of threads used to handle received messages. Messages for the same namespace from the same channel
+     * are always handled in order. Only read when the message router is activated.
+     * 
+     * @return
+     *      number of threads, 0 if messages are handled on the thread that received them
+     */
+    int getDispatchThreads();
+
+    /**
+     * The maximum number of received messages waiting to be handled for a single namespace of a channel. Once reached, 
+     * the channel stops reading messages until there is room. Only read when the message router is activated.
+     * 
+     * @return
+     *      number of messages that can wait
+     */
+    int getDispatchQueueCapacity();
+
+    /**
+     * How long to wait for the response to a request sent with a {@link mil.dod.th.core.remote.ResponseHandler}. If 
+     * no response is received in time, the handler is removed and will not be called.
+     * 
+     * @return
+     *      timeout in milliseconds
+     */
+    long getResponseHandlerTimeout();
+
+    /**
+     * The maximum number of local events waiting to be sent for a single remote event registration. Events occurring 
+     * once reached are dropped. Only read when the event admin message service is activated.
+     * 
+     * @return
+     *      number of events that can wait
+     */
+    int getEventQueueCapacity();
+
+    /**
+     * The maximum number of events sent in a single message to a system that registered for events with batching 
+     * enabled. Only read when the event admin message service is activated.
+     * 
+     * @return
+     *      number of events per message
+     */
+    int getEventBatchSize();
+
     /**
      * Enumeration representing the encryption mode of the remote interface.
      */
@@ -92,4 +232,21 @@ public interface RemoteSettings
          */
         AES_ECDH_ECDSA;
     }
+
+    /**
+     * Enumeration representing how remote socket channels read and write messages.
+     */
+    enum SocketEngine
+    {
+        /**
+         * Each socket has a dedicated thread for reading messages and another for sending queued messages.
+         */
+        THREAD_PER_SOCKET,
+
+        /**
+         * All sockets share a small pool of non-blocking selector threads. Sockets using SSL always use
+         * {@link #THREAD_PER_SOCKET}.
+         */
+        NIO_SELECTOR;
+    }
 }
@@ -52,10 +52,10 @@ import mil.dod.th.core.remote.proto.SharedMessages.FactoryObjectInfo;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.remote.lexicon.asset.capability.AssetCapabilitiesGen;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -83,7 +83,7 @@ public class AssetDirectoryMessageService implements MessageService
      * Reference to the event admin service.  Used for local messages within event admin service.
      */
     private EventAdmin m_EventAdmin;
-
+    
     /**
      * Local service for managing assets.
      */
@@ -127,7 +127,7 @@ public class AssetDirectoryMessageService implements MessageService
     {
         m_EventAdmin = eventAdmin;
     }
-
+    
     /**
      * Bind the AssetDirectoryService.
      * 
@@ -205,8 +205,8 @@ public class AssetDirectoryMessageService implements MessageService
             final TerraHarvestPayload payload, final RemoteChannel channel) throws IOException
     {
         //parse event message
-        final AssetDirectoryServiceNamespace serviceMessage = AssetDirectoryServiceNamespace.
-                parseFrom(payload.getNamespaceMessage());
+        final AssetDirectoryServiceNamespace serviceMessage = ZeroCopyParser.parse(
+                AssetDirectoryServiceNamespace.PARSER, payload.getNamespaceMessage());
         final Message dataMessage;
 
         switch (serviceMessage.getType())
@@ -257,10 +257,9 @@ public class AssetDirectoryMessageService implements MessageService
         }
 
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, serviceMessage, 
-                serviceMessage.getType(), dataMessage, channel);
-
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, serviceMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, serviceMessage, serviceMessage.getType(), dataMessage, channel);
     }
 
     /**
@@ -70,13 +70,13 @@ import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.api.CommandConverter;
 import mil.dod.th.ose.remote.api.EnumConverter;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.remote.converter.CommandResponseEnumConverter;
 import mil.dod.th.remote.converter.CommandTypeEnumConverter;
 import mil.dod.th.remote.lexicon.observation.types.ObservationGen;
 import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -250,7 +250,7 @@ public class AssetMessageService implements MessageService
     public void handleMessage(final TerraHarvestMessage message, final TerraHarvestPayload payload,
         final RemoteChannel channel) throws IOException
     {
-        final AssetNamespace assetMessage = AssetNamespace.parseFrom(payload.getNamespaceMessage());
+        final AssetNamespace assetMessage = ZeroCopyParser.parse(AssetNamespace.PARSER, payload.getNamespaceMessage());
         final Message dataMessage;
 
         switch (assetMessage.getType())
@@ -327,9 +327,9 @@ public class AssetMessageService implements MessageService
                                 + " the AssetMessageService namespace.", assetMessage.getType()));
         }
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, assetMessage, 
-                assetMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, assetMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, assetMessage, assetMessage.getType(), dataMessage, channel);
     }
  
     /**
@@ -50,6 +50,7 @@ import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.api.EnumConverter;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.remote.lexicon.controller.capability.ControllerCapabilitiesGen;
 import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
@@ -57,7 +58,6 @@ import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 
@@ -232,7 +232,7 @@ public class BaseMessageService implements MessageService
     public void handleMessage(final TerraHarvestMessage message, final TerraHarvestPayload payload, 
         final RemoteChannel channel) throws IOException
     {
-        final BaseNamespace baseMessage = BaseNamespace.parseFrom(payload.getNamespaceMessage());
+        final BaseNamespace baseMessage = ZeroCopyParser.parse(BaseNamespace.PARSER, payload.getNamespaceMessage());
         final Message dataMessage;
      
         // message specific handling
@@ -282,9 +282,9 @@ public class BaseMessageService implements MessageService
         }
         
         // post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, baseMessage, 
-                baseMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, baseMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, baseMessage, baseMessage.getType(), dataMessage, channel);
     }
 
     /**
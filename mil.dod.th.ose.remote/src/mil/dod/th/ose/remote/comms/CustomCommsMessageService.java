@@ -73,6 +73,7 @@ import mil.dod.th.core.remote.proto.SharedMessages;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.remote.converter.PhysicalLinkTypeEnumConverter;
 import mil.dod.th.remote.lexicon.ccomm.link.capability.LinkLayerCapabilitiesGen;
@@ -80,7 +81,6 @@ import mil.dod.th.remote.lexicon.ccomm.physical.capability.PhysicalLinkCapabilit
 import mil.dod.th.remote.lexicon.ccomm.transport.capability.TransportLayerCapabilitiesGen;
 import mil.dod.th.remote.lexicon.types.ccomm.CustomCommTypesGen.PhysicalLinkType;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -239,7 +239,8 @@ public class CustomCommsMessageService implements MessageService //NOPMD: avoid
     public void handleMessage(final TerraHarvestMessage message, final TerraHarvestPayload payload, //NOPMD Avoid 
         final RemoteChannel channel) throws IOException      //Really long methods - need to implement all messages
     {
-        final CustomCommsNamespace ccommsMessage = CustomCommsNamespace.parseFrom(payload.getNamespaceMessage());
+        final CustomCommsNamespace ccommsMessage = ZeroCopyParser.parse(CustomCommsNamespace.PARSER,
+                payload.getNamespaceMessage());
         final Message dataMessage;
 
         switch (ccommsMessage.getType())
@@ -299,10 +300,9 @@ public class CustomCommsMessageService implements MessageService //NOPMD: avoid
         }
         
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, ccommsMessage, 
-                ccommsMessage.getType(), dataMessage, channel);
-        
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, ccommsMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, ccommsMessage, ccommsMessage.getType(), dataMessage, channel);
     }
 
     /**
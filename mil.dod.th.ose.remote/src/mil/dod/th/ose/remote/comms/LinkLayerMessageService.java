@@ -59,9 +59,9 @@ import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.api.EnumConverter;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -202,7 +202,8 @@ public class LinkLayerMessageService implements MessageService
     public void handleMessage(final TerraHarvestMessage message, final TerraHarvestPayload payload, 
               final RemoteChannel channel) throws IOException
     {
-        final LinkLayerNamespace linkLayerMessage = LinkLayerNamespace.parseFrom(payload.getNamespaceMessage());
+        final LinkLayerNamespace linkLayerMessage = ZeroCopyParser.parse(LinkLayerNamespace.PARSER,
+                payload.getNamespaceMessage());
         final Message dataMessage;
 
         switch (linkLayerMessage.getType())
@@ -273,9 +274,9 @@ public class LinkLayerMessageService implements MessageService
                                 + " the LinkLayerMessageService namespace.", linkLayerMessage.getType()));
         }
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, linkLayerMessage, 
-                linkLayerMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, linkLayerMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, linkLayerMessage, linkLayerMessage.getType(), dataMessage, channel);
     }
 
     /**
@@ -45,9 +45,9 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -171,8 +171,8 @@ public class PhysicalLinkMessageService implements MessageService
     public void handleMessage(final TerraHarvestMessage message, final TerraHarvestPayload payload, 
         final RemoteChannel channel) throws IOException
     {
-        final PhysicalLinkNamespace physicalLinkMessage = PhysicalLinkNamespace.
-              parseFrom(payload.getNamespaceMessage());
+        final PhysicalLinkNamespace physicalLinkMessage = ZeroCopyParser.parse(PhysicalLinkNamespace.PARSER,
+                payload.getNamespaceMessage());
         final Message dataMessage;
 
         switch (physicalLinkMessage.getType())
@@ -207,9 +207,9 @@ public class PhysicalLinkMessageService implements MessageService
                                 + " the PhysicalLinkMessageService namespace.", physicalLinkMessage.getType()));
         }
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, physicalLinkMessage, 
-                physicalLinkMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, physicalLinkMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, physicalLinkMessage, physicalLinkMessage.getType(), dataMessage, channel);
     }
 
     /**
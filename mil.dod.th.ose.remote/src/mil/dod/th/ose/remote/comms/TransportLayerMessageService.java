@@ -51,9 +51,9 @@ import mil.dod.th.core.remote.proto.TransportLayerMessages.TransportLayerNamespa
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -192,8 +192,8 @@ public class TransportLayerMessageService implements MessageService
     public void handleMessage(final TerraHarvestMessage message, final TerraHarvestPayload payload,
         final RemoteChannel channel) throws IOException
     {
-        final TransportLayerNamespace transportLayerMessage = TransportLayerNamespace.
-              parseFrom(payload.getNamespaceMessage());
+        final TransportLayerNamespace transportLayerMessage = ZeroCopyParser.parse(TransportLayerNamespace.PARSER,
+                payload.getNamespaceMessage());
         final Message dataMessage;
 
         switch (transportLayerMessage.getType())
@@ -246,9 +246,9 @@ public class TransportLayerMessageService implements MessageService
                                 + " the TransportLayerMessageService namespace.", transportLayerMessage.getType()));
         }
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, 
-             transportLayerMessage, transportLayerMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);        
+        m_MessageRouter.handleResponse(message, payload, transportLayerMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, transportLayerMessage, transportLayerMessage.getType(), dataMessage, channel);
     }
 
     /**
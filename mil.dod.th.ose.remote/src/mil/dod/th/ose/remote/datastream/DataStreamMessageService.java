@@ -51,10 +51,10 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.remote.lexicon.datastream.capability.StreamProfileCapabilitiesGen;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 
@@ -234,8 +234,8 @@ public class DataStreamMessageService implements MessageService
             final TerraHarvestPayload payload, final RemoteChannel channel) throws IOException
     {
         //parse event message
-        final DataStreamServiceNamespace serviceMessage = DataStreamServiceNamespace.
-                parseFrom(payload.getNamespaceMessage());
+        final DataStreamServiceNamespace serviceMessage = ZeroCopyParser.parse(DataStreamServiceNamespace.PARSER,
+                payload.getNamespaceMessage());
         
         Message dataMessage = null;
         
@@ -270,10 +270,9 @@ public class DataStreamMessageService implements MessageService
         }
 
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, serviceMessage, 
-                serviceMessage.getType(), dataMessage, channel);
-
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, serviceMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, serviceMessage, serviceMessage.getType(), dataMessage, channel);
     }
     
     /**
@@ -51,9 +51,9 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -235,8 +235,8 @@ public class DataStreamStoreMessageService implements MessageService
     public void handleMessage(final TerraHarvestMessage message, 
             final TerraHarvestPayload payload, final RemoteChannel channel) throws IOException
     {
-        final DataStreamStoreNamespace serviceMessage = DataStreamStoreNamespace.
-                parseFrom(payload.getNamespaceMessage());
+        final DataStreamStoreNamespace serviceMessage = ZeroCopyParser.parse(DataStreamStoreNamespace.PARSER,
+                payload.getNamespaceMessage());
         
         Message dataMessage = null;
         
@@ -274,10 +274,9 @@ public class DataStreamStoreMessageService implements MessageService
         }
         
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, serviceMessage,
-                serviceMessage.getType(), dataMessage, channel);
-        
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, serviceMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, serviceMessage, serviceMessage.getType(), dataMessage, channel);
 
     }
     
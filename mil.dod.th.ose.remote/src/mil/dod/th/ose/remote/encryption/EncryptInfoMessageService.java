@@ -36,8 +36,8 @@ import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.api.EnumConverter;
 import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -147,7 +147,7 @@ public class EncryptInfoMessageService implements MessageService
             final RemoteChannel channel) throws IOException
     {
         final EncryptionInfoNamespace encryptInfoMessage = 
-                EncryptionInfoNamespace.parseFrom(payload.getNamespaceMessage());
+                ZeroCopyParser.parse(EncryptionInfoNamespace.PARSER, payload.getNamespaceMessage());
         final Message dataMessage;
         
         switch (encryptInfoMessage.getType())
@@ -168,9 +168,9 @@ public class EncryptInfoMessageService implements MessageService
                                 + " the EncryptionInfo namespace.", encryptInfoMessage.getType()));
         }
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, encryptInfoMessage, 
-                encryptInfoMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, encryptInfoMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, encryptInfoMessage, encryptInfoMessage.getType(), dataMessage, channel);
     }
 
     /**
@@ -0,0 +1,54 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.encryption;
+
+import aQute.bnd.annotation.metatype.Meta;
+
+/**
+ * Configuration interface for the {@link EncryptMessageServiceImpl}.
+ */
+public interface EncryptMessageServiceConfig
+{
+    /**
+     * Key to use for the id of the {@link #sessionKeyMaxMessages()}.
+     */
+    String SESSION_KEY_MAX_MESSAGES_KEY = "session.key.max.messages";
+
+    /**
+     * Key to use for the id of the {@link #sessionKeyMaxAgeSeconds()}.
+     */
+    String SESSION_KEY_MAX_AGE_SECONDS_KEY = "session.key.max.age.seconds";
+
+    /**
+     * Maximum number of messages sent to a remote system using the same ephemeral key pair, and therefore the same
+     * derived AES key, before a new key pair is created.
+     *
+     * @return
+     *      number of messages a session key can be used for, 1 or less creates a new key for every message
+     */
+    @Meta.AD(id = SESSION_KEY_MAX_MESSAGES_KEY, required = false, deflt = "100", min = "0",
+            description = "Number of encrypted messages sent to a remote system using the same ephemeral key before a "
+                    + "new key is created, 1 or less to create a new key for every message")
+    int sessionKeyMaxMessages();
+
+    /**
+     * Maximum amount of time a session key is used for sending to a remote system before a new one is created.
+     *
+     * @return
+     *      number of seconds a session key can be used for
+     */
+    @Meta.AD(id = SESSION_KEY_MAX_AGE_SECONDS_KEY, required = false, deflt = "60", min = "0",
+            description = "Number of seconds the same ephemeral key is used for a remote system before a new key is "
+                    + "created")
+    int sessionKeyMaxAgeSeconds();
+}
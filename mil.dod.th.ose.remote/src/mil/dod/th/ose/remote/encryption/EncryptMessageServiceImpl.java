@@ -18,25 +18,36 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.Security;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec; 
 import javax.xml.bind.DatatypeConverter;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
+import aQute.bnd.annotation.component.ConfigurationPolicy;
+import aQute.bnd.annotation.component.Modified;
 import aQute.bnd.annotation.component.Reference;
+import aQute.bnd.annotation.metatype.Configurable;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -47,6 +58,7 @@ import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.ose.remote.api.EncryptionUtility;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SystemConfigurationConstants;
 
 import org.osgi.framework.BundleContext;
@@ -63,10 +75,16 @@ import org.bouncycastle.math.ec.ECPoint;
 
 /**
  * Implementation of EncryptMessage Service.
+ * <p>
+ * Messages can be encrypted and decrypted by multiple threads at once, each thread has its own {@link Cipher}. The 
+ * ephemeral key pair, signature and derived AES key used for a remote system are reused as a session key for a 
+ * configurable number of messages or amount of time (see {@link EncryptMessageServiceConfig}) so the asymmetric 
+ * operations are not done for every message. Each message still gets its own random initialization vector.
  * 
  * @author powarniu
  */
-@Component // NOCHECKSTYLE: Class Fan-Out Complexity: Class works with a lot of other things.
+@Component(designate = EncryptMessageServiceConfig.class, // NOCHECKSTYLE: Class Fan-Out Complexity: Class works with 
+        configurationPolicy = ConfigurationPolicy.optional) // a lot of other things.
 public class EncryptMessageServiceImpl implements EncryptMessageService 
 {
     /**
@@ -155,14 +173,44 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
     private static final int m_IvLength = 12;//NOCHECKSTYLE 12 is used as initialization vector length
    
     /**
-     * Cipher input for encrypting data.
+     * Cipher for encrypting data, one per thread as a cipher can only be used by one thread at a time.
      */
-    private Cipher m_Input;
+    private final ThreadLocal<Cipher> m_Input = ThreadLocal.withInitial(() -> createCipher());
     
     /**
-     * Cipher output for decrypting data.
+     * Cipher for decrypting data, one per thread as a cipher can only be used by one thread at a time.
      */
-    private Cipher m_Output;
+    private final ThreadLocal<Cipher> m_Output = ThreadLocal.withInitial(() -> createCipher());
+    
+    /**
+     * Session keys used to send messages, keyed by remote system id.
+     */
+    private final ConcurrentMap<Integer, SendSessionKey> m_SendSessionKeys = new ConcurrentHashMap<>();
+    
+    /**
+     * Last verified session key received from each remote system, keyed by remote system id.
+     */
+    private final ConcurrentMap<Integer, ReceiveSessionKey> m_ReceiveSessionKeys = new ConcurrentHashMap<>();
+    
+    /**
+     * Public keys of remote systems already parsed from {@link #m_PropAuthorized}, keyed by remote system id.
+     */
+    private final ConcurrentMap<Integer, ECPublicKeyParameters> m_RemotePublicKeys = new ConcurrentHashMap<>();
+    
+    /**
+     * Private static key already parsed from {@link #m_PropPrivate}, null if not parsed yet.
+     */
+    private volatile ECPrivateKeyParameters m_PrivateStaticKey;
+    
+    /**
+     * Number of messages a send session key can be used for.
+     */
+    private volatile int m_SessionKeyMaxMessages;
+    
+    /**
+     * Number of nanoseconds a send session key can be used for.
+     */
+    private volatile long m_SessionKeyMaxAgeNanos;
     
     /**
      * Binds the logging service for logging messages.
@@ -185,6 +233,8 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
      * 
      * @param context
      *      this bundle's context
+     * @param props
+     *      configuration properties of the component
      * @throws IOException 
      *         Component is not activated if there is an IOException
      * @throws NoSuchPaddingException 
@@ -195,13 +245,15 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
      *         Incorrect name of the algorithm, should be AES.
      */
     @Activate
-    public void activate(final BundleContext context)
+    public void activate(final BundleContext context, final Map<String, Object> props)
             throws IOException, NoSuchAlgorithmException, NoSuchProviderException, NoSuchPaddingException
     {
         // Bouncy castle provider is added during execution
         Security.addProvider(new BouncyCastleProvider());
-        m_Input = Cipher.getInstance(FULL_ENCRYPT_ALGORITHM, BOUNCY_CASTLE_PROVIDER);
-        m_Output = Cipher.getInstance(FULL_ENCRYPT_ALGORITHM, BOUNCY_CASTLE_PROVIDER);
+        // verify the algorithm is available now, ciphers are created for each thread as needed
+        Cipher.getInstance(FULL_ENCRYPT_ALGORITHM, BOUNCY_CASTLE_PROVIDER);
+        updateProps(props);
+        
         final String dataDir = context.getProperty(SystemConfigurationConstants.DATA_DIR_PROPERTY);
         final String dir = dataDir + File.separator + "encrypt-conf";
         
@@ -240,6 +292,52 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
             m_Logging.warning("private key file not found");
         }
     }
+    
+    /**
+     * Update the configuration of the component.
+     * 
+     * @param props
+     *      updated configuration properties of the component
+     */
+    @Modified
+    public void modified(final Map<String, Object> props)
+    {
+        updateProps(props);
+    }
+    
+    /**
+     * Apply the configuration properties. Existing session keys are dropped so the new limits apply right away.
+     * 
+     * @param props
+     *      configuration properties of the component
+     */
+    private void updateProps(final Map<String, Object> props)
+    {
+        final EncryptMessageServiceConfig config = 
+                Configurable.createConfigurable(EncryptMessageServiceConfig.class, props);
+        m_SessionKeyMaxMessages = config.sessionKeyMaxMessages();
+        m_SessionKeyMaxAgeNanos = TimeUnit.SECONDS.toNanos(config.sessionKeyMaxAgeSeconds());
+        m_SendSessionKeys.clear();
+    }
+    
+    /**
+     * Create a new cipher used to encrypt or decrypt a message.
+     * 
+     * @return
+     *      the new cipher
+     */
+    private static Cipher createCipher()
+    {
+        try
+        {
+            return Cipher.getInstance(FULL_ENCRYPT_ALGORITHM, BOUNCY_CASTLE_PROVIDER);
+        }
+        catch (final NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException e)
+        {
+            // already checked when the component was activated
+            throw new IllegalStateException("Unable to create cipher for " + FULL_ENCRYPT_ALGORITHM, e);
+        }
+    }
 
     /**
      * Encrypt the payload information from the message.
@@ -264,41 +362,7 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
         final int remoteSystemId = message.getDestId();
         final int localSystemId = message.getSourceId();
         
-        // One Pass Diffie-Hellman key exchange per "Suite B Implementers' Guide to NIST SP 800-56A" section 3.2
-        // for store and forward applications. Basically, we generate an ephemeral (temporary) key pair for each
-        // message and then use ECDH with the ephemeral private key and the recipient's static (preloaded) public
-        // key to generate an AES key that is used to encrypt the message. The ephemeral public key is sent along
-        // with the message, and is signed with the sender's static private key to allow the recipient to authenticate
-        // the sender. The receiver uses ECDH with its static private key and the ephemeral public key received with the
-        // message to generate the AES key used to decrypt the message as previously described. This is basically the
-        // technique used for S/MIME email.
-        //
-        //create a ephemeral key pair for the source
-        final AsymmetricCipherKeyPair ephemeralKeyPair = EncryptionUtility.createKeyPair();
-        final byte[] ephemeralPublicKey = 
-                ((ECPublicKeyParameters)ephemeralKeyPair.getPublic()).getQ().getEncoded(false);
-        
-        //Now sign the ephemeral public key with source private static key.
-        // To follow the guidance exactly, we should use a separate private key for the signing operation and the
-        // encryption operation (see the Suite B Implementer's Guide section 8.2 as well as NIST SP 800-57 section 5.2.)
-        // We don't do this right now for simplicity. We may want to change this later 
-        //(which would mean we'd need to load two sets of keys for each System.)
-        
-        final DSADigestSigner dsaSigner = new DSADigestSigner(new ECDSASigner(), new SHA256Digest()); 
-        dsaSigner.init(true, getPrivateStaticKey());
-        
-        //If we realize it here, we don't use the whole message, instead just use the Ephemeral public key from source
-        //and sign it using Astatic priv key. This is done because whole message signature would take a long time,
-        //just signing the ephemeral public key with Source static private key will save time. 
-        
-        dsaSigner.update(ephemeralPublicKey, 0, ephemeralPublicKey.length);
-        final byte[] ephemeralSignature = dsaSigner.generateSignature();
-        
-        //generate the shared KDF key
-        final byte[] sharedKeyBytesEncrypt = EncryptionUtility.sharedEcdhKeyCreate(
-                    (ECPrivateKeyParameters)ephemeralKeyPair.getPrivate(), getRemotePublicKey(remoteSystemId), 
-                    localSystemId, remoteSystemId);
-        final Key key = new SecretKeySpec(sharedKeyBytesEncrypt, ENCRYPT_ALGORITHM_AES);
+        final SendSessionKey sessionKey = getSendSessionKey(localSystemId, remoteSystemId);
         //create the initialization vector for length =12
         //final SecureRandom rngBC1 = new SecureRandom();
         final byte[] ivBytes = new byte[m_IvLength];
@@ -308,8 +372,9 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
         final byte[] encrypt;
         try
         {
-            m_Input.init(Cipher.ENCRYPT_MODE, key, ivBytes_New);
-            encrypt = m_Input.doFinal(payload.toByteArray());
+            final Cipher cipher = m_Input.get();
+            cipher.init(Cipher.ENCRYPT_MODE, sessionKey.getKey(), ivBytes_New);
+            encrypt = cipher.doFinal(payload.toByteArray());
         } 
         catch (final InvalidKeyException e) 
         {
@@ -330,8 +395,8 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
 
         //build EncryptInfo
         final EncryptInfo encryptInfo = EncryptInfo.newBuilder().
-                setEphemeralKey(ByteString.copyFrom(ephemeralPublicKey)).
-                setEphemeralKeySignature(ByteString.copyFrom(ephemeralSignature)).
+                setEphemeralKey(sessionKey.getEphemeralPublicKey()).
+                setEphemeralKeySignature(sessionKey.getEphemeralSignature()).
                 setInitializationVector(ByteString.copyFrom(ivBytes)).
                 build();
   
@@ -358,15 +423,158 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
     {
         if (message.getEncryptType().equals(EncryptType.NONE))
         {
-            return TerraHarvestPayload.parseFrom(message.getTerraHarvestPayload());
+            return ZeroCopyParser.parse(TerraHarvestPayload.PARSER, message.getTerraHarvestPayload());
         }
-        final byte[] payload = message.getTerraHarvestPayload().toByteArray();
+        // cipher reads the payload in place, no need to copy it to an array first
+        final ByteBuffer payload = message.getTerraHarvestPayload().asReadOnlyByteBuffer();
         final EncryptInfo encryptInfo = message.getEncryptInfo();
         final int localSystemId = message.getDestId();
         final int remoteSystemId = message.getSourceId();
         //parse the initialization vector from The TerraHarvestMessage
         final IvParameterSpec ivBytes_New = new IvParameterSpec(encryptInfo.getInitializationVector().toByteArray());
         
+        final Key key = getReceiveSessionKey(localSystemId, remoteSystemId, encryptInfo);
+        
+        final ByteString decrypt;
+        //Create a CIpher object to perform the decryption
+        try
+        {
+            final Cipher cipher = m_Output.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, ivBytes_New);
+            final ByteBuffer decryptBuffer = ByteBuffer.allocate(cipher.getOutputSize(payload.remaining()));
+            cipher.doFinal(payload, decryptBuffer);
+            decrypt = ByteString.copyFrom(decryptBuffer.array(), 0, decryptBuffer.position());
+        }
+        catch (final InvalidKeyException e) 
+        {
+            throw new IllegalArgumentException("Key returned by KDF does not meet specification", e);
+        } 
+        catch (final InvalidAlgorithmParameterException e)
+        {
+            throw new IllegalArgumentException("Inappropriate Algorithm parameters", e);
+        }
+        catch (final IllegalBlockSizeException e)
+        {
+            throw new IllegalArgumentException("Data and block size are not aligned", e);
+        }
+        catch (final BadPaddingException e)
+        {
+            throw new IllegalArgumentException("Data is not padded appropriately for the padding mechanism", e);
+        }
+        catch (final ShortBufferException e)
+        {
+            throw new IllegalStateException("Buffer too small for decrypted payload", e);
+        }
+
+        return ZeroCopyParser.parse(TerraHarvestPayload.PARSER, decrypt);
+    }
+    
+    /**
+     * Get the session key to use for sending a message to the given remote system. The current session key is used if 
+     * it has not reached its message or time limit, otherwise a new one is created.
+     * 
+     * @param localSystemId
+     *      id of this system
+     * @param remoteSystemId
+     *      id of the system the message is sent to
+     * @return
+     *      session key to encrypt the message with
+     */
+    private SendSessionKey getSendSessionKey(final int localSystemId, final int remoteSystemId)
+    {
+        final SendSessionKey current = m_SendSessionKeys.get(remoteSystemId);
+        if (current != null && current.tryUse(localSystemId, System.nanoTime()))
+        {
+            return current;
+        }
+        
+        final SendSessionKey created = createSendSessionKey(localSystemId, remoteSystemId);
+        if (m_SessionKeyMaxMessages > 1)
+        {
+            m_SendSessionKeys.put(remoteSystemId, created);
+        }
+        return created;
+    }
+    
+    /**
+     * Create a new session key for sending messages to the given remote system.
+     * 
+     * @param localSystemId
+     *      id of this system
+     * @param remoteSystemId
+     *      id of the system messages are sent to
+     * @return
+     *      new session key, already counted as used once
+     */
+    private SendSessionKey createSendSessionKey(final int localSystemId, final int remoteSystemId)
+    {
+        // One Pass Diffie-Hellman key exchange per "Suite B Implementers' Guide to NIST SP 800-56A" section 3.2
+        // for store and forward applications. Basically, we generate an ephemeral (temporary) key pair and then use 
+        // ECDH with the ephemeral private key and the recipient's static (preloaded) public key to generate an AES key 
+        // that is used to encrypt the message. The ephemeral public key is sent along with the message, and is signed 
+        // with the sender's static private key to allow the recipient to authenticate the sender. The receiver uses 
+        // ECDH with its static private key and the ephemeral public key received with the message to generate the AES 
+        // key used to decrypt the message as previously described. This is basically the technique used for S/MIME 
+        // email. The ephemeral key pair is reused for a limited number of messages to the same system to avoid the 
+        // cost of the asymmetric operations for every message.
+        //
+        //create a ephemeral key pair for the source
+        final AsymmetricCipherKeyPair ephemeralKeyPair = EncryptionUtility.createKeyPair();
+        final byte[] ephemeralPublicKey = 
+                ((ECPublicKeyParameters)ephemeralKeyPair.getPublic()).getQ().getEncoded(false);
+        
+        //Now sign the ephemeral public key with source private static key.
+        // To follow the guidance exactly, we should use a separate private key for the signing operation and the
+        // encryption operation (see the Suite B Implementer's Guide section 8.2 as well as NIST SP 800-57 section 5.2.)
+        // We don't do this right now for simplicity. We may want to change this later 
+        //(which would mean we'd need to load two sets of keys for each System.)
+        
+        final DSADigestSigner dsaSigner = new DSADigestSigner(new ECDSASigner(), new SHA256Digest()); 
+        dsaSigner.init(true, getPrivateStaticKey());
+        
+        //If we realize it here, we don't use the whole message, instead just use the Ephemeral public key from source
+        //and sign it using Astatic priv key. This is done because whole message signature would take a long time,
+        //just signing the ephemeral public key with Source static private key will save time. 
+        
+        dsaSigner.update(ephemeralPublicKey, 0, ephemeralPublicKey.length);
+        final byte[] ephemeralSignature = dsaSigner.generateSignature();
+        
+        //generate the shared KDF key
+        final byte[] sharedKeyBytesEncrypt = EncryptionUtility.sharedEcdhKeyCreate(
+                    (ECPrivateKeyParameters)ephemeralKeyPair.getPrivate(), getRemotePublicKey(remoteSystemId), 
+                    localSystemId, remoteSystemId);
+        final Key key = new SecretKeySpec(sharedKeyBytesEncrypt, ENCRYPT_ALGORITHM_AES);
+        
+        return new SendSessionKey(localSystemId, ByteString.copyFrom(ephemeralPublicKey), 
+                ByteString.copyFrom(ephemeralSignature), key, System.nanoTime() + m_SessionKeyMaxAgeNanos, 
+                m_SessionKeyMaxMessages - 1);
+    }
+    
+    /**
+     * Get the key to decrypt a message received from the given remote system. If the ephemeral key and signature are 
+     * the same as the last verified message from the system, the previously derived key is used. Otherwise, the 
+     * signature is verified and a new key is derived.
+     * 
+     * @param localSystemId
+     *      id of this system
+     * @param remoteSystemId
+     *      id of the system that sent the message
+     * @param encryptInfo
+     *      encryption information of the received message
+     * @return
+     *      key to decrypt the message with
+     * @throws InvalidKeySignatureException
+     *      if the ephemeral key signature can not be verified
+     */
+    private Key getReceiveSessionKey(final int localSystemId, final int remoteSystemId, 
+            final EncryptInfo encryptInfo) throws InvalidKeySignatureException
+    {
+        final ReceiveSessionKey cached = m_ReceiveSessionKeys.get(remoteSystemId);
+        if (cached != null && cached.matches(localSystemId, encryptInfo))
+        {
+            return cached.getKey();
+        }
+        
         //we will verify the signature using sender public key and the ephemeral key received with
         //the message and the ephemeral signature itself
         final DSADigestSigner dsaSigner1 = new DSADigestSigner(new ECDSASigner(), new SHA256Digest()); 
@@ -392,35 +600,10 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
         //local and remote system id gets flipped for decrypt.   
         final byte[] sharedKeyBytesDecrypt = EncryptionUtility.sharedEcdhKeyCreate(getPrivateStaticKey(),
             ephemeralPublicKey, remoteSystemId, localSystemId);
-       
 
         final Key key = new SecretKeySpec(sharedKeyBytesDecrypt, ENCRYPT_ALGORITHM_AES);
-        
-        final byte[] decrypt;
-        //Create a CIpher object to perform the decryption
-        try
-        {
-            m_Output.init(Cipher.DECRYPT_MODE, key, ivBytes_New);
-            decrypt = m_Output.doFinal(payload);
-        }
-        catch (final InvalidKeyException e) 
-        {
-            throw new IllegalArgumentException("Key returned by KDF does not meet specification", e);
-        } 
-        catch (final InvalidAlgorithmParameterException e)
-        {
-            throw new IllegalArgumentException("Inappropriate Algorithm parameters", e);
-        }
-        catch (final IllegalBlockSizeException e)
-        {
-            throw new IllegalArgumentException("Data and block size are not aligned", e);
-        }
-        catch (final BadPaddingException e)
-        {
-            throw new IllegalArgumentException("Data is not padded appropriately for the padding mechanism", e);
-        }
-
-        return TerraHarvestPayload.parseFrom(decrypt);
+        m_ReceiveSessionKeys.put(remoteSystemId, new ReceiveSessionKey(localSystemId, encryptInfo, key));
+        return key;
     }
     
     /**
@@ -432,6 +615,12 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
      */
     public ECPublicKeyParameters getRemotePublicKey(final int remoteSystemId) 
     {
+        final ECPublicKeyParameters cached = m_RemotePublicKeys.get(remoteSystemId);
+        if (cached != null)
+        {
+            return cached;
+        }
+        
         final String property = m_PropAuthorized.getProperty(SYSTEM_ID_KEY +  ((Integer)remoteSystemId).toString());
         if (property == null || property.equals(""))
         {
@@ -442,6 +631,7 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
         final ECPublicKeyParameters remotePublicKey = new ECPublicKeyParameters(
             EncryptionUtility.CURVEPARAMS.getCurve().decodePoint(remotePublicKeybytes),
             EncryptionUtility.CURVEPARAMS);
+        m_RemotePublicKeys.put(remoteSystemId, remotePublicKey);
         return remotePublicKey;
     }
     
@@ -452,6 +642,12 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
      */    
     public ECPrivateKeyParameters getPrivateStaticKey() 
     {
+        final ECPrivateKeyParameters cached = m_PrivateStaticKey;
+        if (cached != null)
+        {
+            return cached;
+        }
+        
         final String property = m_PropPrivate.getProperty(PRIVATE_KEY);
         if (property == null || property.equals(""))
         {
@@ -460,6 +656,7 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
         final BigInteger privateStaticKeyBytes = new BigInteger(property, hexaDecimalRadix);
         final ECPrivateKeyParameters privateStaticKey = new ECPrivateKeyParameters(privateStaticKeyBytes,
                                                                EncryptionUtility.CURVEPARAMS);
+        m_PrivateStaticKey = privateStaticKey;
         return privateStaticKey;
     }
 
@@ -474,6 +671,10 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
      */    
     public void saveStaticKeyPair(final String staticPublicKeyString, final String staticPrivateKeyString)
     {
+        // keys derived from the old key pair can no longer be used
+        m_PrivateStaticKey = null;
+        m_SendSessionKeys.clear();
+        m_ReceiveSessionKeys.clear();
 
         //Save the string in hexadecimal format in "th.encryption.public.properties"
         m_PropPublic.setProperty("public.key", staticPublicKeyString);
@@ -510,6 +711,10 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
      */    
     public void saveAuthorizedKey(final int systemId, final String authorizedPublicKey)
     {
+        // keys derived from the old public key can no longer be used
+        m_RemotePublicKeys.remove(systemId);
+        m_SendSessionKeys.remove(systemId);
+        m_ReceiveSessionKeys.remove(systemId);
 
         m_PropAuthorized.setProperty(SYSTEM_ID_KEY + ((Integer)systemId).toString(), authorizedPublicKey);
         try (FileOutputStream outputStream = new FileOutputStream(m_PropFileAuthorized))
@@ -521,5 +726,188 @@ public class EncryptMessageServiceImpl implements EncryptMessageService
             m_Logging.log(LogService.LOG_ERROR, "Unable to write authorized public key to file: " + ex.getMessage());
         }
     }
+    
+    /**
+     * Ephemeral key pair information and derived AES key used to send messages to a remote system.
+     */
+    private static final class SendSessionKey
+    {
+        /**
+         * Id of the local system the key was derived for.
+         */
+        private final int m_LocalSystemId;
+        
+        /**
+         * Encoded ephemeral public key sent with each message.
+         */
+        private final ByteString m_EphemeralPublicKey;
+        
+        /**
+         * Signature of the ephemeral public key sent with each message.
+         */
+        private final ByteString m_EphemeralSignature;
+        
+        /**
+         * AES key derived from the ephemeral private key and the remote public key.
+         */
+        private final Key m_Key;
+        
+        /**
+         * {@link System#nanoTime()} after which the key can no longer be used.
+         */
+        private final long m_ExpireTime;
+        
+        /**
+         * Number of messages the key can still be used for.
+         */
+        private final AtomicInteger m_RemainingUses;
+        
+        /**
+         * Create a new session key.
+         * 
+         * @param localSystemId
+         *      id of the local system the key was derived for
+         * @param ephemeralPublicKey
+         *      encoded ephemeral public key
+         * @param ephemeralSignature
+         *      signature of the ephemeral public key
+         * @param key
+         *      derived AES key
+         * @param expireTime
+         *      {@link System#nanoTime()} after which the key can no longer be used
+         * @param remainingUses
+         *      number of messages the key can still be used for
+         */
+        SendSessionKey(final int localSystemId, final ByteString ephemeralPublicKey, 
+                final ByteString ephemeralSignature, final Key key, final long expireTime, final int remainingUses)
+        {
+            m_LocalSystemId = localSystemId;
+            m_EphemeralPublicKey = ephemeralPublicKey;
+            m_EphemeralSignature = ephemeralSignature;
+            m_Key = key;
+            m_ExpireTime = expireTime;
+            m_RemainingUses = new AtomicInteger(remainingUses);
+        }
+        
+        /**
+         * Try to use the key for another message.
+         * 
+         * @param localSystemId
+         *      id of the local system sending the message
+         * @param now
+         *      current {@link System#nanoTime()}
+         * @return
+         *      true if the key can be used, false if a new key must be created
+         */
+        boolean tryUse(final int localSystemId, final long now)
+        {
+            return localSystemId == m_LocalSystemId && now - m_ExpireTime < 0 
+                    && m_RemainingUses.getAndDecrement() > 0;
+        }
+        
+        /**
+         * Get the encoded ephemeral public key.
+         * 
+         * @return
+         *      ephemeral public key
+         */
+        ByteString getEphemeralPublicKey()
+        {
+            return m_EphemeralPublicKey;
+        }
+        
+        /**
+         * Get the signature of the ephemeral public key.
+         * 
+         * @return
+         *      ephemeral public key signature
+         */
+        ByteString getEphemeralSignature()
+        {
+            return m_EphemeralSignature;
+        }
+        
+        /**
+         * Get the AES key used to encrypt messages.
+         * 
+         * @return
+         *      AES key
+         */
+        Key getKey()
+        {
+            return m_Key;
+        }
+    }
+    
+    /**
+     * Verified ephemeral key information and derived AES key of messages received from a remote system.
+     */
+    private static final class ReceiveSessionKey
+    {
+        /**
+         * Id of the local system the key was derived for.
+         */
+        private final int m_LocalSystemId;
+        
+        /**
+         * Encoded ephemeral public key that was verified.
+         */
+        private final byte[] m_EphemeralPublicKey;
+        
+        /**
+         * Signature of the ephemeral public key that was verified.
+         */
+        private final byte[] m_EphemeralSignature;
+        
+        /**
+         * AES key derived from the ephemeral public key and the local private key.
+         */
+        private final Key m_Key;
+        
+        /**
+         * Create a new verified session key.
+         * 
+         * @param localSystemId
+         *      id of the local system the key was derived for
+         * @param encryptInfo
+         *      encryption information containing the verified ephemeral key and signature
+         * @param key
+         *      derived AES key
+         */
+        ReceiveSessionKey(final int localSystemId, final EncryptInfo encryptInfo, final Key key)
+        {
+            m_LocalSystemId = localSystemId;
+            m_EphemeralPublicKey = encryptInfo.getEphemeralKey().toByteArray();
+            m_EphemeralSignature = encryptInfo.getEphemeralKeySignature().toByteArray();
+            m_Key = key;
+        }
+        
+        /**
+         * Check if the given encryption information uses the same ephemeral key and signature.
+         * 
+         * @param localSystemId
+         *      id of the local system receiving the message
+         * @param encryptInfo
+         *      encryption information of the received message
+         * @return
+         *      true if the key can be used for the message
+         */
+        boolean matches(final int localSystemId, final EncryptInfo encryptInfo)
+        {
+            return localSystemId == m_LocalSystemId 
+                    && Arrays.equals(m_EphemeralPublicKey, encryptInfo.getEphemeralKey().toByteArray())
+                    && Arrays.equals(m_EphemeralSignature, encryptInfo.getEphemeralKeySignature().toByteArray());
+        }
+        
+        /**
+         * Get the AES key used to decrypt messages.
+         * 
+         * @return
+         *      AES key
+         */
+        Key getKey()
+        {
+            return m_Key;
+        }
+    }
 }
-
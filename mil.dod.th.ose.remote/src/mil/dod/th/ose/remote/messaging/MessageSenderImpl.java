@@ -12,20 +12,15 @@
 //==============================================================================
 package mil.dod.th.ose.remote.messaging;
 
-import java.util.Collections;
-import java.util.Dictionary;
-import java.util.Hashtable;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Deactivate;
 import aQute.bnd.annotation.component.Reference;
 
-import com.google.protobuf.Message;
-
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.RemoteChannelLookup;
@@ -33,26 +28,24 @@ import mil.dod.th.core.remote.RemoteConstants;
 import mil.dod.th.core.remote.RemoteSystemEncryption;
 import mil.dod.th.core.remote.ResponseHandler;
 import mil.dod.th.core.remote.messaging.MessageSender;
+import mil.dod.th.core.remote.messaging.RemoteResponse;
 import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
 import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.core.system.TerraHarvestSystem;
 import mil.dod.th.ose.remote.EventChannel;
+import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.api.EnumConverter;
 import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.encryption.EncryptMessageService;
 
-import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceRegistration;
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
-import org.osgi.service.event.EventConstants;
-import org.osgi.service.event.EventHandler;
-import org.osgi.service.log.LogService;
 
 /**
- * Implementation of the {@link MessageSender}.
+ * Implementation of the {@link MessageSender}.  Requests waiting on a response are kept in a {@link 
+ * ResponseCorrelator}, which is bound to the message router so responses are passed to it directly as they are 
+ * received.
  * @author allenchl
  *
  */
@@ -70,23 +63,17 @@ public class MessageSenderImpl implements MessageSender
     private TerraHarvestSystem m_TerraHarvestSystem;
     
     /**
-     * Next message id to use for requests.  Responses will use the same message id as the request. It will be unique
-     * for each route attempted to send the message.  For a single message, the message id will be different when 
-     * attempted to send (trySendX) versus if the message is queued (queueX).
+     * Hands out message ids for requests and matches responses to requests.  Responses will use the same message id
+     * as the request. It will be unique for each route attempted to send the message.  For a single message sent with
+     * a handler, the message id will be different when attempted to send (trySendX) versus if the message is queued 
+     * (queueX).
      */
-    private int m_NextRequestMessageId;
+    private ResponseCorrelator m_Correlator;
     
     /**
-     * Map of message ids, and {@link ResponseHandler}s that are to be called when the response message id 
-     * matches the request id.
+     * Router that passes received responses to the {@link #m_Correlator}.
      */
-    private final Map<Integer, ResponseHandler> m_Handlers = 
-        Collections.synchronizedMap(new LinkedHashMap<Integer, ResponseHandler>());
-
-    /**
-     * Class to handle response messages that have a defined handler from the request.
-     */
-    private ResponseEventHandler m_ResponseEventHandler;
+    private MessageRouterInternal m_MessageRouter;
     
     /**
      * Used for logging messages.
@@ -196,6 +183,18 @@ public class MessageSenderImpl implements MessageSender
         m_RemoteSystemEncryption = null; //NOPMD setting to null because the reference is no longer valid
     }
     
+    /**
+     * Binds the message router that received responses come from.
+     * 
+     * @param messageRouter
+     *      the message router to use
+     */
+    @Reference
+    public void setMessageRouter(final MessageRouterInternal messageRouter)
+    {
+        m_MessageRouter = messageRouter;
+    }
+    
     /**
      * Binds the remote settings service to be used.
      * 
@@ -209,32 +208,77 @@ public class MessageSenderImpl implements MessageSender
     }
     
     /**
-     * Register the event handler.
-     * @param context
-     *     the bundle context used to register the event handler with the framework
+     * Start matching responses to requests.
      */
     @Activate
-    public void activate(final BundleContext context)
+    public void activate()
     {
-        m_ResponseEventHandler = new ResponseEventHandler(context);
-        m_ResponseEventHandler.registerMessageReceivedEvent();
+        m_Correlator = new ResponseCorrelator(m_Logging);
+        m_MessageRouter.bindResponseHandler(m_Correlator);
     }
 
     /**
-     * Unregister the event handler.
+     * Stop matching responses to requests and log the statistics of each namespace.
+     * 
+     * @throws InterruptedException
+     *      if interrupted while waiting for the timeout thread to stop
      */
     @Deactivate
-    public void deactivate()
+    public void deactivate() throws InterruptedException
+    {
+        m_MessageRouter.unbindResponseHandler(m_Correlator);
+        m_Correlator.stop();
+        for (Namespace namespace : Namespace.values())
+        {
+            final ResponseCorrelator.NamespaceStatistics statistics = m_Correlator.getStatistics(namespace);
+            if (statistics.getLatency().getCount() > 0 || statistics.getTimeoutCount() > 0)
+            {
+                m_Logging.debug("Remote %s namespace requests: %s", namespace, statistics);
+            }
+        }
+    }
+    
+    /**
+     * Get the outstanding requests, response latency and timeouts for a namespace.
+     * 
+     * @param namespace
+     *      namespace of the requests
+     * @return
+     *      statistics of the namespace
+     */
+    ResponseCorrelator.NamespaceStatistics getResponseStatistics(final Namespace namespace)
     {
-        m_ResponseEventHandler.unregisterServiceRegistration();
+        return m_Correlator.getStatistics(namespace);
     }
 
     @Override
     public boolean trySendMessage(final int destId, final TerraHarvestPayload payload, final EncryptType encryptType)
             throws IllegalArgumentException
+    {
+        return trySendMessage(destId, payload, encryptType, m_Correlator.nextMessageId());
+    }
+    
+    /**
+     * Try sending a message with the given message id on each channel to the destination until one succeeds.
+     * 
+     * @param destId
+     *      the id of the destination system
+     * @param payload
+     *      the payload message
+     * @param encryptType
+     *      the encryption mode to be used
+     * @param messageId
+     *      the message id to use
+     * @return
+     *      true if sent on a channel, false if no channel could send it
+     * @throws IllegalArgumentException
+     *      if there is no channel to the destination
+     */
+    private boolean trySendMessage(final int destId, final TerraHarvestPayload payload, 
+            final EncryptType encryptType, final int messageId) throws IllegalArgumentException
     {
         final TerraHarvestMessage builtMessage = 
-            createCompleteMessage(destId, payload, encryptType, false, m_NextRequestMessageId++);
+            createCompleteMessage(destId, payload, encryptType, false, messageId);
         final List<RemoteChannel> channels = m_RemoteChannelLookup.getChannels(builtMessage.getDestId());
         if (channels.isEmpty())
         {
@@ -267,27 +311,27 @@ public class MessageSenderImpl implements MessageSender
         final ResponseHandler handler) throws IllegalArgumentException
     {
         //capture the message ID
-        int messageIdForHandler = m_NextRequestMessageId;
+        int messageIdForHandler = m_Correlator.nextMessageId();
         if (handler != null)
         {
             regResponseHandler(messageIdForHandler, handler, payload.getNamespace());
         }
-        if (trySendMessage(destId, payload, encryptType))
+        if (trySendMessageOrUnregister(destId, payload, encryptType, messageIdForHandler))
         {
             // successfully sent message
             return true;
         }
-        m_Handlers.remove(messageIdForHandler);
+        m_Correlator.unregister(messageIdForHandler);
         m_Logging.debug("Handler removed, failed 'try send', for namespace %s, message id: %d", 
                 payload.getNamespace(), messageIdForHandler);
         //recapture the message ID
-        messageIdForHandler = m_NextRequestMessageId;
+        messageIdForHandler = m_Correlator.nextMessageId();
         if (handler != null)
         {
             regResponseHandler(messageIdForHandler, handler, payload.getNamespace());
         }
         final TerraHarvestMessage builtMessage = 
-                createCompleteMessage(destId, payload, encryptType, false, m_NextRequestMessageId++);
+                createCompleteMessage(destId, payload, encryptType, false, messageIdForHandler);
         // send failed, so queue instead
         final RemoteChannel channel = m_RemoteChannelLookup.getChannel(destId);
         if (!channel.queueMessage(builtMessage))
@@ -312,7 +356,7 @@ public class MessageSenderImpl implements MessageSender
     public boolean queueMessage(final RemoteChannel channel, final TerraHarvestPayload payload, 
             final EncryptType encryptType, final ResponseHandler handler)
     {
-        final int messageIdForHandler = m_NextRequestMessageId;
+        final int messageIdForHandler = m_Correlator.nextMessageId();
         if (handler != null)
         {
             regResponseHandler(messageIdForHandler, handler, payload.getNamespace());
@@ -335,8 +379,7 @@ public class MessageSenderImpl implements MessageSender
         }
         
         final TerraHarvestMessage builtMessage = 
-                createCompleteMessage(destId, payload, encryptType, false, 
-                        m_NextRequestMessageId++);
+                createCompleteMessage(destId, payload, encryptType, false, messageIdForHandler);
         if (!destChannel.queueMessage(builtMessage))
         {
             //queue failed remove the handler
@@ -356,6 +399,27 @@ public class MessageSenderImpl implements MessageSender
         return queueMessage(channel, payload, encryptionLevel, handler);
     }
 
+    @Override
+    public CompletableFuture<RemoteResponse> queueRequest(final int destId, final TerraHarvestPayload payload, 
+            final EncryptType encryptType, final long timeout, final TimeUnit unit) throws IllegalArgumentException
+    {
+        final int messageId = m_Correlator.nextMessageId();
+        final CompletableFuture<RemoteResponse> future = 
+                m_Correlator.register(messageId, payload.getNamespace(), unit.toMillis(timeout));
+        if (trySendMessageOrUnregister(destId, payload, encryptType, messageId))
+        {
+            return future;
+        }
+        
+        // nothing was sent, so the same message id can be used to queue the request
+        final TerraHarvestMessage builtMessage = createCompleteMessage(destId, payload, encryptType, false, messageId);
+        if (!m_RemoteChannelLookup.getChannel(destId).queueMessage(builtMessage))
+        {
+            m_Correlator.unregister(messageId);
+        }
+        return future;
+    }
+
     @Override
     public boolean queueMessageResponse(final TerraHarvestMessage request, final TerraHarvestPayload payload, 
         final RemoteChannel channel)
@@ -400,7 +464,37 @@ public class MessageSenderImpl implements MessageSender
     @Override
     public int getResponseHandleRegCount()
     {
-        return m_Handlers.size();
+        return m_Correlator.getOutstandingCount();
+    }
+    
+    /**
+     * Try sending a message with a registered response, unregistering it if there is no channel to the destination.
+     * 
+     * @param destId
+     *      the id of the destination system
+     * @param payload
+     *      the payload message
+     * @param encryptType
+     *      the encryption mode to be used
+     * @param messageId
+     *      the message id the response is registered for
+     * @return
+     *      true if sent on a channel, false if no channel could send it
+     * @throws IllegalArgumentException
+     *      if there is no channel to the destination
+     */
+    private boolean trySendMessageOrUnregister(final int destId, final TerraHarvestPayload payload, 
+            final EncryptType encryptType, final int messageId) throws IllegalArgumentException
+    {
+        try
+        {
+            return trySendMessage(destId, payload, encryptType, messageId);
+        }
+        catch (final IllegalArgumentException e)
+        {
+            m_Correlator.unregister(messageId);
+            throw e;
+        }
     }
     
     /**
@@ -490,7 +584,7 @@ public class MessageSenderImpl implements MessageSender
      */
     private void regResponseHandler(final int messageId, final ResponseHandler handler, final Namespace namespace)
     {
-        m_Handlers.put(messageId, handler);
+        m_Correlator.register(messageId, namespace, handler, m_RemoteSettings.getResponseHandlerTimeout());
         m_Logging.debug("Handler registered for namespace %s, message id: %d", namespace, 
             messageId);
     }
@@ -504,81 +598,8 @@ public class MessageSenderImpl implements MessageSender
      */
     private void removeResponseHandler(final int messageId, final Namespace namespace)
     {
-        m_Handlers.remove(messageId);
+        m_Correlator.unregister(messageId);
         m_Logging.debug("Handler removed, failed 'queue' for namespace %s, message id: %d", 
             namespace, messageId);
     }
-    
-    /**
-     * Inner event listener used to handle {@link RemoteConstants#TOPIC_MESSAGE_RECEIVED} events where the
-     * request registered a handler.
-     */
-    class ResponseEventHandler implements EventHandler
-    {
-        /**
-         * The service registration object for the registered event.
-         */
-        private ServiceRegistration<EventHandler> m_ServiceReg;
-        
-        /**
-         * The OSGi bundle context for this bundle.
-         */
-        private final BundleContext m_Context;
-        
-        /**
-         * Public constructor for the event handler.
-         * @param context
-         *   the bundle context used to register the event handler   
-         */
-        ResponseEventHandler(final BundleContext context)
-        {
-            m_Context = context;
-        }
-
-        @Override
-        public void handleEvent(final Event event)
-        {
-            final TerraHarvestMessage thMessage = (TerraHarvestMessage)event.
-                getProperty(RemoteConstants.EVENT_PROP_MESSAGE);
-            
-            final TerraHarvestPayload payload = (TerraHarvestPayload)event.
-                getProperty(RemoteConstants.EVENT_PROP_PAYLOAD);
-            
-            final int messageId = thMessage.getMessageId();
-            final ResponseHandler handler = m_Handlers.remove(messageId);
-            if (handler != null)
-            {
-                m_Logging.log(LogService.LOG_DEBUG, "Response handler called for a %s namespace message, with message"
-                    + " id %d", payload.getNamespace(), messageId);
-                final Message namespaceMessage = (Message)event.getProperty(
-                    RemoteConstants.EVENT_PROP_NAMESPACE_MESSAGE);
-                final Message data = (Message)event.getProperty(RemoteConstants.EVENT_PROP_DATA_MESSAGE);
-                //call the handlers handle method
-                handler.handleResponse(thMessage, payload, namespaceMessage, data);
-            }
-        }
-        
-        /**
-         * Method to register this event handler for the message received event.
-         */
-        public void registerMessageReceivedEvent()
-        {
-            //dictionary of properties for the event handler for TOPIC_MESSAGE_RECEIVED
-            final Dictionary<String, Object> props = new Hashtable<String, Object>();
-            props.put(EventConstants.EVENT_TOPIC, RemoteConstants.TOPIC_MESSAGE_RECEIVED);
-            props.put(EventConstants.EVENT_FILTER, String.format("(%s=%s)", 
-                    RemoteConstants.EVENT_PROP_MESSAGE_RESPONSE, true));
-            
-            //register the event handler
-            m_ServiceReg = m_Context.registerService(EventHandler.class, this, props);
-        }
-        
-        /**
-         * Method to unregister the service registration for the registered event.
-         */
-        public void unregisterServiceRegistration()
-        {
-            m_ServiceReg.unregister();
-        }
-    }
 }
@@ -12,10 +12,14 @@
 //==============================================================================
 package mil.dod.th.ose.remote.messaging;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.ResponseHandler;
 import mil.dod.th.core.remote.messaging.MessageSender;
 import mil.dod.th.core.remote.messaging.MessageWrapper;
+import mil.dod.th.core.remote.messaging.RemoteResponse;
 import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 
@@ -87,4 +91,11 @@ public class MessageWrapperImpl implements MessageWrapper
     {
         return m_MessageSender.queueMessage(channel, m_Payload, encryptType, handler);
     }
+
+    @Override
+    public CompletableFuture<RemoteResponse> queueRequest(final int destId, final EncryptType encryptType, 
+            final long timeout, final TimeUnit unit) throws IllegalArgumentException
+    {
+        return m_MessageSender.queueRequest(destId, m_Payload, encryptType, timeout, unit);
+    }
 }
@@ -0,0 +1,412 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.messaging;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.protobuf.Message;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.core.remote.ResponseHandler;
+import mil.dod.th.core.remote.messaging.RemoteResponse;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
+import mil.dod.th.ose.remote.util.LatencyHistogram;
+
+/**
+ * Matches received responses to the requests waiting on them by message id.  Each request is registered with a handler
+ * or a future, and removed when the response arrives or the timeout passes, whichever is first.  The table is a
+ * concurrent map and ids come from an atomic counter, so registering and completing requests never blocks.  Timeouts
+ * are run by a {@link TimerWheel} and do nothing if the response already arrived.
+ */
+class ResponseCorrelator implements ResponseHandler
+{
+    /**
+     * Length of a timer wheel tick.
+     */
+    private static final long TICK_MS = 50;
+
+    /**
+     * Number of ticks in a rotation of the timer wheel, about 25 seconds.
+     */
+    private static final int TICKS_PER_ROTATION = 512;
+
+    /**
+     * Requests waiting for a response by message id.
+     */
+    private final Map<Integer, PendingRequest> m_Pending = new ConcurrentHashMap<Integer, PendingRequest>();
+
+    /**
+     * Next message id to use for requests.
+     */
+    private final AtomicInteger m_NextMessageId = new AtomicInteger();
+
+    /**
+     * Statistics for each namespace, map is not modified after construction.
+     */
+    private final Map<Namespace, NamespaceStatistics> m_Statistics = 
+            new EnumMap<Namespace, NamespaceStatistics>(Namespace.class);
+
+    /**
+     * Runs request timeouts.
+     */
+    private final TimerWheel m_TimerWheel;
+
+    /**
+     * Service for logging messages.
+     */
+    private final LoggingService m_Logging;
+
+    /**
+     * Create the correlator and start the timer thread.
+     * 
+     * @param logging
+     *      service for logging messages
+     */
+    ResponseCorrelator(final LoggingService logging)
+    {
+        m_Logging = logging;
+        for (Namespace namespace : Namespace.values())
+        {
+            m_Statistics.put(namespace, new NamespaceStatistics());
+        }
+        m_TimerWheel = new TimerWheel(TICK_MS, TimeUnit.MILLISECONDS, TICKS_PER_ROTATION, "RemoteResponseTimeouts", 
+                logging);
+        m_TimerWheel.start();
+    }
+
+    /**
+     * Stop the timer thread, requests still waiting will not time out.
+     * 
+     * @throws InterruptedException
+     *      if interrupted while waiting for the thread to stop
+     */
+    void stop() throws InterruptedException
+    {
+        m_TimerWheel.stop();
+    }
+
+    /**
+     * Get a new message id for a request.  Ids wrap around after {@link Integer#MAX_VALUE}.
+     * 
+     * @return
+     *      message id to use
+     */
+    int nextMessageId()
+    {
+        return m_NextMessageId.getAndIncrement();
+    }
+
+    /**
+     * Wait for the response to a request and call the handler when it arrives.  The handler is removed if no response 
+     * arrives within the timeout.
+     * 
+     * @param messageId
+     *      message id of the request
+     * @param namespace
+     *      namespace of the request
+     * @param handler
+     *      handler to call with the response
+     * @param timeoutMs
+     *      how long to wait for the response in milliseconds
+     */
+    void register(final int messageId, final Namespace namespace, final ResponseHandler handler, 
+            final long timeoutMs)
+    {
+        register(new PendingRequest(messageId, namespace, handler, null), timeoutMs);
+    }
+
+    /**
+     * Wait for the response to a request and complete the returned future when it arrives.  The future is completed 
+     * exceptionally with a {@link TimeoutException} if no response arrives within the timeout.  Completing or 
+     * cancelling the future by other means stops waiting.
+     * 
+     * @param messageId
+     *      message id of the request
+     * @param namespace
+     *      namespace of the request
+     * @param timeoutMs
+     *      how long to wait for the response in milliseconds
+     * @return
+     *      future for the response
+     */
+    CompletableFuture<RemoteResponse> register(final int messageId, final Namespace namespace, final long timeoutMs)
+    {
+        final CompletableFuture<RemoteResponse> future = new CompletableFuture<RemoteResponse>();
+        final PendingRequest request = new PendingRequest(messageId, namespace, null, future);
+        register(request, timeoutMs);
+        future.whenComplete((response, error) -> remove(request));
+        return future;
+    }
+
+    /**
+     * Stop waiting for the response to a request, for example because it could not be sent.
+     * 
+     * @param messageId
+     *      message id of the request
+     */
+    void unregister(final int messageId)
+    {
+        final PendingRequest request = m_Pending.get(messageId);
+        if (request != null && remove(request) && request.m_Future != null)
+        {
+            request.m_Future.completeExceptionally(
+                    new IllegalStateException(String.format("Request %d was not sent", messageId)));
+        }
+    }
+
+    /**
+     * Get the number of requests waiting for a response.
+     * 
+     * @return
+     *      number of requests
+     */
+    int getOutstandingCount()
+    {
+        return m_Pending.size();
+    }
+
+    /**
+     * Get the statistics of requests for a namespace.
+     * 
+     * @param namespace
+     *      namespace of the requests
+     * @return
+     *      statistics of the namespace
+     */
+    NamespaceStatistics getStatistics(final Namespace namespace)
+    {
+        return m_Statistics.get(namespace);
+    }
+
+    @Override
+    public void handleResponse(final TerraHarvestMessage message, final TerraHarvestPayload payload, 
+            final Message namespaceMessage, final Message dataMessage)
+    {
+        final PendingRequest request = m_Pending.get(message.getMessageId());
+        if (request == null || !remove(request))
+        {
+            return;
+        }
+        
+        request.m_NamespaceStatistics.m_Latency.record(System.nanoTime() - request.m_StartNanos);
+        if (request.m_Handler == null)
+        {
+            request.m_Future.complete(new RemoteResponse(message, payload, namespaceMessage, dataMessage));
+        }
+        else
+        {
+            m_Logging.debug("Response handler called for a %s namespace message, with message id %d", 
+                    payload.getNamespace(), message.getMessageId());
+            request.m_Handler.handleResponse(message, payload, namespaceMessage, dataMessage);
+        }
+    }
+
+    /**
+     * Add the request to the table and schedule its timeout.
+     * 
+     * @param request
+     *      request to add
+     * @param timeoutMs
+     *      how long to wait for the response in milliseconds
+     */
+    private void register(final PendingRequest request, final long timeoutMs)
+    {
+        final PendingRequest replaced = m_Pending.put(request.m_MessageId, request);
+        if (replaced != null)
+        {
+            // only happens if ids wrap around while a request is still waiting
+            replaced.m_NamespaceStatistics.m_Outstanding.decrementAndGet();
+        }
+        request.m_NamespaceStatistics.m_Outstanding.incrementAndGet();
+        
+        m_TimerWheel.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                timeout(request, timeoutMs);
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Remove the request from the table if still there.
+     * 
+     * @param request
+     *      request to remove
+     * @return
+     *      true if removed by this call, false if already removed
+     */
+    private boolean remove(final PendingRequest request)
+    {
+        if (m_Pending.remove(request.m_MessageId, request))
+        {
+            request.m_NamespaceStatistics.m_Outstanding.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove the request if no response has arrived.
+     * 
+     * @param request
+     *      request that timed out
+     * @param timeoutMs
+     *      timeout of the request in milliseconds
+     */
+    private void timeout(final PendingRequest request, final long timeoutMs)
+    {
+        if (!remove(request))
+        {
+            return;
+        }
+        
+        request.m_NamespaceStatistics.m_TimeoutCount.incrementAndGet();
+        final String description = String.format("No response received within %d ms for %s namespace message id %d", 
+                timeoutMs, request.m_Namespace, request.m_MessageId);
+        m_Logging.debug(description);
+        if (request.m_Future != null)
+        {
+            request.m_Future.completeExceptionally(new TimeoutException(description));
+        }
+    }
+
+    /**
+     * Outstanding requests, response latency and timeouts for a single namespace.
+     */
+    static class NamespaceStatistics
+    {
+        /**
+         * Time from registering a request until the response arrives.
+         */
+        private final LatencyHistogram m_Latency = new LatencyHistogram();
+
+        /**
+         * Number of requests waiting for a response.
+         */
+        private final AtomicLong m_Outstanding = new AtomicLong();
+
+        /**
+         * Number of requests that timed out.
+         */
+        private final AtomicLong m_TimeoutCount = new AtomicLong();
+
+        /**
+         * Get the time taken for responses to arrive.
+         * 
+         * @return
+         *      response latency histogram
+         */
+        LatencyHistogram getLatency()
+        {
+            return m_Latency;
+        }
+
+        /**
+         * Get the number of requests waiting for a response.
+         * 
+         * @return
+         *      number of requests
+         */
+        long getOutstandingCount()
+        {
+            return m_Outstanding.get();
+        }
+
+        /**
+         * Get the number of requests that timed out.
+         * 
+         * @return
+         *      number of requests
+         */
+        long getTimeoutCount()
+        {
+            return m_TimeoutCount.get();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("outstanding=%d, timeouts=%d, latency [%s]", getOutstandingCount(), 
+                    getTimeoutCount(), m_Latency);
+        }
+    }
+
+    /**
+     * Request waiting for a response.
+     */
+    private class PendingRequest
+    {
+        /**
+         * Message id of the request.
+         */
+        private final int m_MessageId;
+
+        /**
+         * Namespace of the request.
+         */
+        private final Namespace m_Namespace;
+
+        /**
+         * Statistics of the namespace of the request.
+         */
+        private final NamespaceStatistics m_NamespaceStatistics;
+
+        /**
+         * Handler to call with the response, null if completing a future.
+         */
+        private final ResponseHandler m_Handler;
+
+        /**
+         * Future to complete with the response, null if calling a handler.
+         */
+        private final CompletableFuture<RemoteResponse> m_Future;
+
+        /**
+         * When the request was registered as returned by {@link System#nanoTime()}.
+         */
+        private final long m_StartNanos = System.nanoTime();
+
+        /**
+         * Create a request.
+         * 
+         * @param messageId
+         *      message id of the request
+         * @param namespace
+         *      namespace of the request
+         * @param handler
+         *      handler to call with the response, null if completing a future
+         * @param future
+         *      future to complete with the response, null if calling a handler
+         */
+        PendingRequest(final int messageId, final Namespace namespace, final ResponseHandler handler, 
+                final CompletableFuture<RemoteResponse> future)
+        {
+            m_MessageId = messageId;
+            m_Namespace = namespace;
+            m_NamespaceStatistics = m_Statistics.get(namespace);
+            m_Handler = handler;
+            m_Future = future;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.messaging;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import mil.dod.th.core.log.LoggingService;
+
+/**
+ * Hashed timer wheel for running many timeouts that are usually cancelled, like waiting on responses.  Scheduling only 
+ * adds to a lock free queue, the timer thread moves new timeouts into the bucket for their deadline each tick and runs
+ * the timeouts in the current bucket that are due.  Timeouts run up to one tick late and there is no cancel, a timeout
+ * that is no longer needed should do nothing when run.
+ */
+class TimerWheel
+{
+    /**
+     * Timeouts scheduled since the last tick.
+     */
+    private final Queue<Timeout> m_NewTimeouts = new ConcurrentLinkedQueue<Timeout>();
+
+    /**
+     * Timeouts for each tick of a rotation, only accessed by the timer thread.
+     */
+    private final List<Queue<Timeout>> m_Buckets;
+
+    /**
+     * Length of a tick in nanoseconds.
+     */
+    private final long m_TickNanos;
+
+    /**
+     * Service for logging messages.
+     */
+    private final LoggingService m_Logging;
+
+    /**
+     * Thread advancing the wheel.
+     */
+    private final Thread m_Thread;
+
+    /**
+     * Time the wheel started as returned by {@link System#nanoTime()}, ticks are counted from here.
+     */
+    private final long m_StartNanos = System.nanoTime();
+
+    /**
+     * Whether the timer thread should keep running.
+     */
+    private volatile boolean m_Running = true;
+
+    /**
+     * Create the wheel, call {@link #start()} to start running timeouts.
+     * 
+     * @param tick
+     *      length of a tick
+     * @param unit
+     *      unit of the tick
+     * @param bucketCount
+     *      number of ticks in a rotation, timeouts further out than a rotation are checked once per rotation
+     * @param name
+     *      name of the timer thread
+     * @param logging
+     *      service for logging messages
+     */
+    TimerWheel(final long tick, final TimeUnit unit, final int bucketCount, final String name, 
+            final LoggingService logging)
+    {
+        m_TickNanos = unit.toNanos(tick);
+        m_Logging = logging;
+        m_Buckets = new ArrayList<Queue<Timeout>>(bucketCount);
+        for (int i = 0; i < bucketCount; i++)
+        {
+            m_Buckets.add(new ArrayDeque<Timeout>());
+        }
+        m_Thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runTicks();
+            }
+        }, name);
+        m_Thread.setDaemon(true);
+    }
+
+    /**
+     * Start the timer thread.
+     */
+    void start()
+    {
+        m_Thread.start();
+    }
+
+    /**
+     * Stop the timer thread, timeouts not yet run are dropped.
+     * 
+     * @throws InterruptedException
+     *      if interrupted while waiting for the thread to stop
+     */
+    void stop() throws InterruptedException
+    {
+        m_Running = false;
+        m_Thread.interrupt();
+        m_Thread.join(TimeUnit.NANOSECONDS.toMillis(m_TickNanos) + 1000);
+    }
+
+    /**
+     * Schedule a task to run once the delay has passed.
+     * 
+     * @param task
+     *      task to run on the timer thread, must not block
+     * @param delay
+     *      how long to wait before running the task
+     * @param unit
+     *      unit of the delay
+     */
+    void schedule(final Runnable task, final long delay, final TimeUnit unit)
+    {
+        m_NewTimeouts.add(new Timeout(task, System.nanoTime() + unit.toNanos(delay)));
+    }
+
+    /**
+     * Advance the wheel each tick until stopped.
+     */
+    private void runTicks()
+    {
+        long tick = 0;
+        while (m_Running)
+        {
+            final long sleepNanos = m_StartNanos + (tick + 1) * m_TickNanos - System.nanoTime();
+            if (sleepNanos > 0)
+            {
+                try
+                {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+                catch (final InterruptedException e)
+                {
+                    // stopping
+                    return;
+                }
+            }
+            tick++;
+            
+            final long now = System.nanoTime();
+            Timeout timeout;
+            while ((timeout = m_NewTimeouts.poll()) != null)
+            {
+                addToBucket(timeout, tick);
+            }
+            
+            final Queue<Timeout> bucket = m_Buckets.get((int)(tick % m_Buckets.size()));
+            final List<Timeout> notDue = new ArrayList<Timeout>();
+            while ((timeout = bucket.poll()) != null)
+            {
+                if (timeout.m_DeadlineNanos - now > 0)
+                {
+                    // more than a rotation away
+                    notDue.add(timeout);
+                }
+                else
+                {
+                    runTimeout(timeout);
+                }
+            }
+            bucket.addAll(notDue);
+        }
+    }
+
+    /**
+     * Add the timeout to the bucket of the tick it is due.
+     * 
+     * @param timeout
+     *      timeout to add
+     * @param currentTick
+     *      tick being processed
+     */
+    private void addToBucket(final Timeout timeout, final long currentTick)
+    {
+        final long deadlineTick = (timeout.m_DeadlineNanos - m_StartNanos + m_TickNanos - 1) / m_TickNanos;
+        final long tick = Math.max(deadlineTick, currentTick);
+        m_Buckets.get((int)(tick % m_Buckets.size())).add(timeout);
+    }
+
+    /**
+     * Run the timeout's task, logging any failure.
+     * 
+     * @param timeout
+     *      timeout to run
+     */
+    private void runTimeout(final Timeout timeout)
+    {
+        try
+        {
+            timeout.m_Task.run();
+        }
+        catch (final RuntimeException e)
+        {
+            m_Logging.error(e, "Failed to run timeout");
+        }
+    }
+
+    /**
+     * Task and when it should run.
+     */
+    private static class Timeout
+    {
+        /**
+         * Task to run.
+         */
+        private final Runnable m_Task;
+
+        /**
+         * When to run the task as returned by {@link System#nanoTime()}.
+         */
+        private final long m_DeadlineNanos;
+
+        /**
+         * Create a timeout.
+         * 
+         * @param task
+         *      task to run
+         * @param deadlineNanos
+         *      when to run the task
+         */
+        Timeout(final Runnable task, final long deadlineNanos)
+        {
+            m_Task = task;
+            m_DeadlineNanos = deadlineNanos;
+        }
+    }
+}
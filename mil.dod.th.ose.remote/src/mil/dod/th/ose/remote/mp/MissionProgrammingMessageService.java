@@ -79,12 +79,12 @@ import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.api.EnumConverter;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.remote.lexicon.mp.model.MissionProgramParametersGen;
 import mil.dod.th.remote.lexicon.mp.model.MissionProgramTemplateGen;
 import mil.dod.th.remote.lexicon.types.SharedTypesGen.MapEntry;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -285,7 +285,7 @@ public class MissionProgrammingMessageService implements MessageService //NOPMD
     {
         
         final MissionProgrammingNamespace missionMessage = 
-            MissionProgrammingNamespace.parseFrom(payload.getNamespaceMessage());
+            ZeroCopyParser.parse(MissionProgrammingNamespace.PARSER, payload.getNamespaceMessage());
         final Message dataMessage;
         
         // handle according to the message sent
@@ -405,9 +405,9 @@ public class MissionProgrammingMessageService implements MessageService //NOPMD
         }
         
          // post event that MissionProgramming message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, missionMessage, 
-                missionMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);        
+        m_MessageRouter.handleResponse(message, payload, missionMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, missionMessage, missionMessage.getType(), dataMessage, channel);
     }
 
     /**
@@ -14,8 +14,8 @@ package mil.dod.th.ose.remote.observation;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import aQute.bnd.annotation.component.Activate;
@@ -23,6 +23,7 @@ import aQute.bnd.annotation.component.Component;
 import aQute.bnd.annotation.component.Deactivate;
 import aQute.bnd.annotation.component.Reference;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 
@@ -56,14 +57,15 @@ import mil.dod.th.core.types.observation.ObservationSubTypeEnum;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.api.EnumConverter;
+import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.remote.converter.ObservationSubTypeEnumConverter;
 import mil.dod.th.remote.lexicon.observation.types.ObservationGen;
 import mil.dod.th.remote.lexicon.types.observation.ObservationTypesGen.ObservationSubType;
 import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 /**
@@ -75,6 +77,17 @@ import org.osgi.service.event.EventAdmin;
 @Component(immediate = true, provide = { }) //NOCHECKSTYLE: High class fan out. Need to process all possible observation
 public class ObservationMessageService implements MessageService //store messages
 {
+    /**
+     * Number of observations to retrieve from the store at a time when handling a query.
+     */
+    private static final int QUERY_FETCH_SIZE = 50;
+    
+    /**
+     * Number of bytes of the max message size reserved for the parts of a response message other than the 
+     * observations.
+     */
+    private static final int RESPONSE_HEADER_SIZE = 1024;
+    
     /**
      * Observation store service that persistently stores observations.
      */
@@ -89,7 +102,7 @@ public class ObservationMessageService implements MessageService //store message
      * Service to use for posting events generated by this service.
      */
     private EventAdmin m_EventAdmin;
-
+    
     /**
      * Service that assists in converting instances of {@link Observation}s from 
      * JAXB objects to proto messages.
@@ -105,6 +118,11 @@ public class ObservationMessageService implements MessageService //store message
      * Routes incoming messages.
      */
     private MessageRouterInternal m_MessageRouter;
+    
+    /**
+     * Service that contains configurations specific to the remote interface.
+     */
+    private RemoteSettings m_RemoteSettings;
 
     /**
      * Bind the {@link EventAdmin} service.
@@ -117,7 +135,7 @@ public class ObservationMessageService implements MessageService //store message
     {
         m_EventAdmin = eventAdmin;
     }
-
+    
     /**
      * Bind a message router to register.
      * 
@@ -178,6 +196,18 @@ public class ObservationMessageService implements MessageService //store message
         m_Logging = logging;
     }
 
+    /**
+     * Bind the remote settings service.
+     * 
+     * @param remoteSettings
+     *     service that contains configurations specific to the remote interface
+     */
+    @Reference
+    public void setRemoteSettings(final RemoteSettings remoteSettings)
+    {
+        m_RemoteSettings = remoteSettings;
+    }
+
     /**
      * Activate method to bind this service to the message router. Also creates an object converter for observations.
      */
@@ -206,7 +236,8 @@ public class ObservationMessageService implements MessageService //store message
     public void handleMessage(final TerraHarvestMessage message, final TerraHarvestPayload payload,
         final RemoteChannel channel) throws IOException 
     {
-        final ObservationStoreNamespace obsMessage = ObservationStoreNamespace.parseFrom(payload.getNamespaceMessage());
+        final ObservationStoreNamespace obsMessage = ZeroCopyParser.parse(ObservationStoreNamespace.PARSER,
+                payload.getNamespaceMessage());
         final Message dataMessage;
      
         // message specific handling
@@ -216,13 +247,13 @@ public class ObservationMessageService implements MessageService //store message
                 dataMessage = getObservationsByQuery(message, obsMessage, channel);
                 break;
             case GetObservationResponse:
-                dataMessage = GetObservationResponseData.parseFrom(obsMessage.getData());
+                dataMessage = ZeroCopyParser.parse(GetObservationResponseData.PARSER, obsMessage.getData());
                 break;
             case RemoveObservationRequest:
                 dataMessage = removeObservation(message, obsMessage, channel);
                 break;
             case RemoveObservationResponse:
-                dataMessage = RemoveObservationResponseData.parseFrom(obsMessage.getData());
+                dataMessage = ZeroCopyParser.parse(RemoveObservationResponseData.PARSER, obsMessage.getData());
                 break;
             case RemoveObservationByUUIDRequest:
                 dataMessage = removeObservationByUUID(message, obsMessage, channel);
@@ -234,13 +265,13 @@ public class ObservationMessageService implements MessageService //store message
                 dataMessage = findObservation(message, obsMessage, channel);
                 break;
             case FindObservationByUUIDResponse:
-                dataMessage = FindObservationByUUIDResponseData.parseFrom(obsMessage.getData());
+                dataMessage = ZeroCopyParser.parse(FindObservationByUUIDResponseData.PARSER, obsMessage.getData());
                 break;
             case GetObservationCountRequest:
                 dataMessage = getObservationByCountQuery(message, obsMessage, channel);
                 break;
             case GetObservationCountResponse:
-                dataMessage = GetObservationCountResponseData.parseFrom(obsMessage.getData());
+                dataMessage = ZeroCopyParser.parse(GetObservationCountResponseData.PARSER, obsMessage.getData());
                 break;
             default:
                 throw new UnsupportedOperationException(
@@ -249,9 +280,9 @@ public class ObservationMessageService implements MessageService //store message
         }
 
         // post event that an ObservationStore message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, obsMessage, 
-            obsMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event); 
+        m_MessageRouter.handleResponse(message, payload, obsMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, obsMessage, obsMessage.getType(), dataMessage, channel);
     }
     
     /**
@@ -272,7 +303,8 @@ public class ObservationMessageService implements MessageService //store message
             final ObservationStoreNamespace obsMessage, 
             final RemoteChannel channel) throws InvalidProtocolBufferException
     {
-        final GetObservationCountRequestData request = GetObservationCountRequestData.parseFrom(obsMessage.getData());
+        final GetObservationCountRequestData request = ZeroCopyParser.parse(GetObservationCountRequestData.PARSER,
+                obsMessage.getData());
         
         final ObservationQuery obsQuery = createObservationQuery(request.getObsQuery());
         
@@ -304,19 +336,21 @@ public class ObservationMessageService implements MessageService //store message
         final ObservationStoreNamespace obsMessage, final RemoteChannel channel) throws InvalidProtocolBufferException
     {
         //parse the get observation request
-        final GetObservationRequestData request = GetObservationRequestData.parseFrom(obsMessage.getData());
+        final GetObservationRequestData request = ZeroCopyParser.parse(GetObservationRequestData.PARSER,
+                obsMessage.getData());
         if (request.getObservationFormat() != RemoteTypesGen.LexiconFormat.Enum.NATIVE)
         {
             throw new UnsupportedOperationException(
                  String.format("Lexicon format %s is not valid for observation query", request.getObservationFormat()));
         }
         
-        //collection of observations
+        //page through the observations so only the converted ones are held for the whole query, the response is 
+        //limited to the max message size so observations past that are not sent
         final ObservationQuery obsQuery = createObservationQuery(request.getObsQuery());
-        final Collection<Observation> observations = obsQuery.execute();
         
         //get a converted list of observations returned
-        final List<ObservationGen.Observation> observationConv = createProtoObservationList(observations);
+        final List<ObservationGen.Observation> observationConv = 
+                createProtoObservationList(obsQuery.iterate(QUERY_FETCH_SIZE));
         
         //response message
         final GetObservationResponseData response = GetObservationResponseData.newBuilder().
@@ -346,7 +380,8 @@ public class ObservationMessageService implements MessageService //store message
     private Message removeObservation(final TerraHarvestMessage message, final ObservationStoreNamespace obsMessage, 
         final RemoteChannel channel) throws InvalidProtocolBufferException 
     {
-        final RemoveObservationRequestData request = RemoveObservationRequestData.parseFrom(obsMessage.getData());
+        final RemoveObservationRequestData request = ZeroCopyParser.parse(RemoveObservationRequestData.PARSER,
+                obsMessage.getData());
             
         //pull out the type of interaction
         final Query requestQuery = Query.parseFrom(request.getObsQuery().toByteString());
@@ -381,8 +416,8 @@ public class ObservationMessageService implements MessageService //store message
         final ObservationStoreNamespace obsMessage, final RemoteChannel channel) throws InvalidProtocolBufferException 
     {
         //request to remove by UUID
-        final RemoveObservationByUUIDRequestData request = RemoveObservationByUUIDRequestData.
-            parseFrom(obsMessage.getData());
+        final RemoveObservationByUUIDRequestData request = ZeroCopyParser.parse(
+                RemoveObservationByUUIDRequestData.PARSER, obsMessage.getData());
 
         //process request, by removing all requested observations
         for (UUID uuid : request.getUuidOfObservationList())
@@ -415,7 +450,7 @@ public class ObservationMessageService implements MessageService //store message
         final RemoteChannel channel) throws InvalidProtocolBufferException 
     {
         final FindObservationByUUIDRequestData request = 
-                FindObservationByUUIDRequestData.parseFrom(obsMessage.getData());
+                ZeroCopyParser.parse(FindObservationByUUIDRequestData.PARSER, obsMessage.getData());
         if (request.getObservationFormat() != RemoteTypesGen.LexiconFormat.Enum.NATIVE)
         {
             throw new UnsupportedOperationException(
@@ -444,7 +479,8 @@ public class ObservationMessageService implements MessageService //store message
         }
 
         //convert the observations
-        final List<ObservationGen.Observation> protoObservations = createProtoObservationList(observations);
+        final List<ObservationGen.Observation> protoObservations = 
+                createProtoObservationList(observations.iterator());
 
         //response message
         final FindObservationByUUIDResponseData response = FindObservationByUUIDResponseData.newBuilder().
@@ -459,22 +495,36 @@ public class ObservationMessageService implements MessageService //store message
     }
 
     /**
-     * Create a list of proto observations from a list of {@link Observation}.
+     * Create a list of proto observations from a list of {@link Observation}. Conversion stops once the converted 
+     * observations would no longer fit in a response message of the max message size.
      * @param observations
-     *     a collection of observations
+     *     iterator of the observations to convert
      * @return
      *     list of converted observations
      */
-    private List<ObservationGen.Observation> createProtoObservationList(final Collection<Observation> observations)
+    private List<ObservationGen.Observation> createProtoObservationList(final Iterator<Observation> observations)
     {
+        final long maxSize = m_RemoteSettings.getMaxMessageSize() - RESPONSE_HEADER_SIZE;
+        long size = 0;
+        
         //List to return
         final List<ObservationGen.Observation> protoObs = new ArrayList<ObservationGen.Observation>();
-        for (Observation observ : observations)
+        while (observations.hasNext())
         {
+            final Observation observ = observations.next();
             try
             {
                 final ObservationGen.Observation protoObsGen = (ObservationGen.Observation)m_Converter.
                     convertToProto(observ);
+                
+                //size of the observation and its length prefix plus a byte for the field tag
+                size += CodedOutputStream.computeMessageSizeNoTag(protoObsGen) + 1;
+                if (size > maxSize)
+                {
+                    m_Logging.warning("Response limited to the first %d observations to stay within the max "
+                        + "message size of %d bytes", protoObs.size(), m_RemoteSettings.getMaxMessageSize());
+                    break;
+                }
                 protoObs.add(protoObsGen);
             }
             catch (final ObjectConverterException exception)
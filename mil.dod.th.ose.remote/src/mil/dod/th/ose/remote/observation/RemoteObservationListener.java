@@ -12,14 +12,20 @@
 //==============================================================================
 package mil.dod.th.ose.remote.observation; 
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import aQute.bnd.annotation.component.Activate;
 import aQute.bnd.annotation.component.Component;
@@ -40,10 +46,9 @@ import mil.dod.th.core.remote.proto.ObservationStoreMessages.FindObservationByUU
 import mil.dod.th.core.remote.proto.ObservationStoreMessages.GetObservationResponseData;
 import mil.dod.th.core.remote.proto.ObservationStoreMessages.ObservationStoreNamespace.ObservationStoreMessageType;
 import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
-import mil.dod.th.core.remote.proto.SharedMessages;
 import mil.dod.th.core.validator.ValidationFailedException;
 import mil.dod.th.ose.remote.api.RemoteEventConstants;
-import mil.dod.th.ose.shared.SharedMessageUtils;
+import mil.dod.th.ose.shared.ExceptionLoggingThreadPool;
 import mil.dod.th.remote.lexicon.observation.types.ObservationGen;
 
 import org.osgi.framework.BundleContext;
@@ -71,9 +76,9 @@ public class RemoteObservationListener
     public static final String ENABLED_FRAMEWORK_PROPERTY = "mil.dod.th.ose.remote.observationlistener.enabled";
     
     /**
-     * Max number of observations the received observation queue can hold at one time.
+     * Number of nanoseconds in a second, used to calculate the store rate.
      */
-    private static final int QUEUE_LIMIT = 100;
+    private static final double NANOS_PER_SECOND = 1e9;
 
     /**
      * Service for logging messages.
@@ -111,15 +116,15 @@ public class RemoteObservationListener
     private BundleContext m_Context;
     
     /**
-     * Queue used to store observations that still need to be added to the local store.
+     * Queue used to store observations that still need to be added to the local store, created with the configured 
+     * capacity each time the handler threads are started.
      */
-    private LinkedBlockingQueue<Observation> m_ReceivedObsQueue = new LinkedBlockingQueue<>(QUEUE_LIMIT);
+    private volatile LinkedBlockingQueue<PendingObservation> m_ReceivedObsQueue;
     
     /**
-     * Queue used to store protobuf observations that need to be converted to JAXB observations before being stored
-     * locally.
+     * Thread pool used to convert protobuf observations to their JAXB equivalent.
      */
-    private LinkedBlockingQueue<ObservationGen.Observation> m_ConvertObsQueue = new LinkedBlockingQueue<>();
+    private volatile ExceptionLoggingThreadPool m_ConversionPool;
     
     /**
      * Thread used to process observations received and persist them locally.
@@ -127,21 +132,25 @@ public class RemoteObservationListener
     private Thread m_ObsHandlerThread;
     
     /**
-     * Thread used to convert protobuf observations to their JAXB equivalent.
+     * Boolean used to determine if the observation handling thread is running.
      */
-    private Thread m_ConvertObsThread;
+    private volatile boolean m_Running;
     
     /**
-     * Boolean used to determine if the observation handling thread is running.
+     * Number of threads used to convert observations, see {@link RemoteObservationListenerConfig#conversionThreads()}.
+     */
+    private int m_ConversionThreads;
+    
+    /**
+     * Max number of observations stored in a single transaction, see 
+     * {@link RemoteObservationListenerConfig#persistBatchSize()}.
      */
-    private boolean m_Running;
+    private volatile int m_PersistBatchSize;
     
     /**
-     * Map with a key that is the UUID of the last observation in a {@link GetObservationResponseData} message and value
-     * that is the total number of observations within the message. This map is used to determine when all observations 
-     * within the message have been stored locally so an update event can be posted.
+     * Capacity of the received observation queue, see {@link RemoteObservationListenerConfig#receivedQueueCapacity()}.
      */
-    private Map<UUID, Integer> m_LastObsUuidMap = Collections.synchronizedMap(new HashMap<UUID, Integer>());
+    private int m_ReceivedQueueCapacity;
 
     /**
      * Set the {@link mil.dod.th.core.remote.objectconverter.JaxbProtoObjectConverter}.
@@ -272,6 +281,23 @@ public class RemoteObservationListener
 
         final RemoteObservationListenerConfig config = Configurable.createConfigurable(
             RemoteObservationListenerConfig.class, properties);
+        m_ConversionThreads = config.conversionThreads();
+        m_PersistBatchSize = config.persistBatchSize();
+        m_ReceivedQueueCapacity = config.receivedQueueCapacity();
+        if (m_ConversionPool != null)
+        {
+            final ExceptionLoggingThreadPool pool = m_ConversionPool;
+            if (m_ConversionThreads > pool.getMaximumPoolSize())
+            {
+                pool.setMaximumPoolSize(m_ConversionThreads);
+                pool.setCorePoolSize(m_ConversionThreads);
+            }
+            else
+            {
+                pool.setCorePoolSize(m_ConversionThreads);
+                pool.setMaximumPoolSize(m_ConversionThreads);
+            }
+        }
         setEnabled(config.enabled());
     }
     
@@ -283,12 +309,13 @@ public class RemoteObservationListener
         if (!m_Running)
         {
             m_Running = true;
+            m_ReceivedObsQueue = new LinkedBlockingQueue<>(m_ReceivedQueueCapacity);
+            //Create the threads responsible for converting protobuf observations to JAXB observations
+            m_ConversionPool = new ExceptionLoggingThreadPool(m_Logging, m_ConversionThreads, m_ConversionThreads, 0L,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
             //Create the thread responsible for handling observations received.
-            m_ObsHandlerThread = new Thread(new ObsHandler());
-            //Create the thread responsible for converting protobuf observations to JAXB observations
-            m_ConvertObsThread = new Thread(new ObsConverter());
+            m_ObsHandlerThread = new Thread(new ObsHandler(), "RemoteObservationHandler");
             m_ObsHandlerThread.start();
-            m_ConvertObsThread.start();
         }
     }
     
@@ -302,7 +329,7 @@ public class RemoteObservationListener
             m_Running = false;
             final int wait = 1000;
             m_ObsHandlerThread.interrupt();
-            m_ConvertObsThread.interrupt();
+            m_ConversionPool.shutdownNow();
             try
             {
                 m_ObsHandlerThread.join(wait);
@@ -314,26 +341,27 @@ public class RemoteObservationListener
             }
             try
             {
-                m_ConvertObsThread.join(wait);
+                m_ConversionPool.awaitTermination(wait, TimeUnit.MILLISECONDS);
             } 
             catch (final InterruptedException exception)
             {
-                m_Logging.log(LogService.LOG_WARNING, exception, "Observation converter thread was interrupted while "
-                        + "waiting for it to join.");
+                m_Logging.log(LogService.LOG_WARNING, exception, "Observation converter threads were interrupted while "
+                        + "waiting for them to terminate.");
             }
+            m_ConversionPool = null; //NOPMD: explicitly setting to null so a pool is only resized while running
         }
     }
     
     /**
-     * Method used to post and {@link RemoteEventConstants#TOPIC_OBS_STORE_RETRIEVE_COMPLETE} event.
-     * 
-     * @param count
-     *      Integer that represents the number of observations received.
+     * Method used to post a {@link RemoteEventConstants#TOPIC_OBS_STORE_RETRIEVE_COMPLETE} event when no 
+     * observations were retrieved.
      */
-    private void postObsStoreRetrieveCompleteEvent(final int count)
+    private void postObsStoreRetrieveCompleteEvent()
     {
         final Map<String, Object> props = new Hashtable<String, Object>();
-        props.put(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_RETRIEVED, count);
+        props.put(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_RETRIEVED, 0);
+        props.put(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_STORED, 0);
+        props.put(RemoteEventConstants.EVENT_PROP_OBS_STORE_RATE, 0.0);
         m_EventAdmin.postEvent(new Event(RemoteEventConstants.TOPIC_OBS_STORE_RETRIEVE_COMPLETE, props));
     }
 
@@ -348,10 +376,11 @@ public class RemoteObservationListener
     {
         if (enabled)
         {
+            //start the threads first so the received queue exists before any handler can be called
+            startHandlerThreads();
             //register the handlers
             m_ObservationHandler.registerForObservationStore();
             m_RemoteObsListener.registerForObservationStore();
-            startHandlerThreads();
             m_Logging.debug("Remote observation listener is enabled");
         }
         else
@@ -407,33 +436,41 @@ public class RemoteObservationListener
             
             //analyze the type
             final List<ObservationGen.Observation> observations;
+            final RetrieveProgress progress;
             if (messageType.equals(ObservationStoreMessageType.GetObservationResponse.toString()))
             {
                 final GetObservationResponseData obsResponse = (GetObservationResponseData)event.getProperty(
                     RemoteConstants.EVENT_PROP_DATA_MESSAGE);
 
                 observations = obsResponse.getObservationNativeList();
-                final int obsCount = obsResponse.getObservationNativeCount();
-                if (obsCount == 0)
-                {
-                    postObsStoreRetrieveCompleteEvent(0);
-                }
-                else
+                if (observations.isEmpty())
                 {
-                    final SharedMessages.UUID protoUuid = observations.get(obsCount - 1).getUuid();
-                    final UUID lastUuid = SharedMessageUtils.convertProtoUUIDtoUUID(protoUuid);
-                    m_LastObsUuidMap.put(lastUuid, obsResponse.getObservationNativeCount()); 
+                    postObsStoreRetrieveCompleteEvent();
+                    return;
                 }
+                progress = new RetrieveProgress(observations.size());
             }
             else
             {
                 final FindObservationByUUIDResponseData request = (FindObservationByUUIDResponseData)event.getProperty(
                         RemoteConstants.EVENT_PROP_DATA_MESSAGE);
                 observations = request.getObservationNativeList();
+                progress = null;
             }
             
-            //queue the proto observations to be converted to JAXB observations.
-            m_ConvertObsQueue.addAll(observations);
+            final ExceptionLoggingThreadPool conversionPool = m_ConversionPool;
+            if (conversionPool == null)
+            {
+                m_Logging.warning("Unable to store %d remote observations, the listener is not running", 
+                        observations.size());
+                return;
+            }
+            
+            //convert the proto observations to JAXB observations in parallel, each is queued to be stored once done
+            for (ObservationGen.Observation observation : observations)
+            {
+                conversionPool.execute(new ObsConverter(observation, progress));
+            }
         }
         
         /**
@@ -487,7 +524,7 @@ public class RemoteObservationListener
             final Observation observation = (Observation)event.getProperty(ObservationStore.EVENT_PROP_OBSERVATION);
 
             //add the observation to the observation handler queue so that it may be validated and loaded
-            if (!m_ReceivedObsQueue.offer(observation))
+            if (!m_ReceivedObsQueue.offer(new PendingObservation(observation, null)))
             {
                 m_Logging.info("The remote observations with UUID %s could not be received, the received observation"
                     + "queue is currently full.", observation.getUuid());
@@ -507,21 +544,24 @@ public class RemoteObservationListener
         }
     }
     
+    
     /**
      * Class that handles validating and loading observations to the local observation store from the received 
-     * observations queue. Implements the {@link Runnable} interface.
+     * observations queue. Observations are drained from the queue and stored in batches using a single transaction 
+     * per batch. Implements the {@link Runnable} interface.
      */
     private class ObsHandler implements Runnable
     {
         @Override
         public void run()
         {
+            final LinkedBlockingQueue<PendingObservation> queue = m_ReceivedObsQueue;
+            final List<PendingObservation> batch = new ArrayList<>();
             while (m_Running)
             {
-                final Observation observation;
                 try
                 {
-                    observation = m_ReceivedObsQueue.take();
+                    batch.add(queue.take());
                 } 
                 catch (final InterruptedException exception)
                 {
@@ -529,98 +569,332 @@ public class RemoteObservationListener
                             + "while waiting for an observation to be received.");
                     continue;
                 }
-                removeIfKnownAndLoad(observation);
-
-                final Integer count = m_LastObsUuidMap.remove(observation.getUuid());
-                if (count != null)
+                queue.drainTo(batch, m_PersistBatchSize - 1);
+                
+                handleBatch(batch);
+                batch.clear();
+            }
+        }
+        
+        /**
+         * Store a batch of received observations and post progress events for any retrieve requests the observations
+         * belong to. Observations with the same UUID are stored in separate transactions in the order received.
+         * 
+         * @param batch
+         *     the received observations to store
+         */
+        private void handleBatch(final List<PendingObservation> batch)
+        {
+            final Set<RetrieveProgress> updated = new LinkedHashSet<>();
+            final Set<UUID> uuids = new HashSet<>();
+            final List<PendingObservation> group = new ArrayList<>();
+            for (PendingObservation pending : batch)
+            {
+                if (!uuids.add(pending.getObservation().getUuid()))
+                {
+                    storeGroup(group, updated);
+                    group.clear();
+                    uuids.clear();
+                    uuids.add(pending.getObservation().getUuid());
+                }
+                group.add(pending);
+            }
+            storeGroup(group, updated);
+            
+            for (RetrieveProgress progress : updated)
+            {
+                if (!progress.isComplete())
                 {
-                    postObsStoreRetrieveCompleteEvent(count);
+                    progress.postEvent(RemoteEventConstants.TOPIC_OBS_STORE_RETRIEVE_PROGRESS);
                 }
             }
         }
         
         /**
-         * Removes the observation if it already exists and loads the observation.
-         * @param observation
-         *     the observation to load
+         * Store a group of observations in a single transaction, replacing any existing observations with the same 
+         * UUIDs. If the transaction fails, each observation is stored on its own so a single invalid observation does 
+         * not cause the others to be lost.
+         * 
+         * @param group
+         *     the received observations to store, must not contain the same UUID twice
+         * @param updated
+         *     set of retrieve requests, the progress of any request the group belongs to will be added
          */
-        private void removeIfKnownAndLoad(final Observation observation)
+        private void storeGroup(final List<PendingObservation> group, final Set<RetrieveProgress> updated)
         {
-            //make sure that the observation doesn't already exist, if it does this call will remove it
-            removeObservationIfKnown(observation.getUuid());
-
-            //persist observation
+            final List<Observation> observations = new ArrayList<>(group.size());
+            for (PendingObservation pending : group)
+            {
+                observations.add(pending.getObservation());
+            }
+            
+            boolean stored = false;
             try
             {
-                m_ObservationStore.persist(observation);
+                final int replaced = m_ObservationStore.persistOrReplaceAll(observations);
+                stored = true;
+                if (replaced > 0)
+                {
+                    m_Logging.info("%d observation(s) were replaced by remotely received observations with the same "
+                        + "UUID", replaced);
+                }
             }
             catch (final PersistenceFailedException | IllegalArgumentException | ValidationFailedException exception)
             {
-                m_Logging.error(exception, "The remote observation with UUID %s failed to be persisted.", 
-                    observation.getUuid());
+                if (group.size() == 1)
+                {
+                    m_Logging.error(exception, "The remote observation with UUID %s failed to be persisted.", 
+                        observations.get(0).getUuid());
+                }
+                else
+                {
+                    m_Logging.debug("Storing %d remote observations together failed, storing each individually: %s", 
+                        group.size(), exception.getMessage());
+                }
+            }
+            
+            for (PendingObservation pending : group)
+            {
+                final boolean pendingStored = stored || group.size() > 1 && storeObservation(pending.getObservation());
+                final RetrieveProgress progress = pending.getProgress();
+                if (progress != null)
+                {
+                    progress.observationHandled(pendingStored);
+                    updated.add(progress);
+                }
             }
         }
         
         /**
-         * Check if the given observation already exists within the local datatstore.
-         * @param uuid
-         *     the UUID of the observation to check for.
+         * Store a single observation, replacing an existing observation with the same UUID.
+         * 
+         * @param observation
+         *     the observation to store
+         * @return
+         *     true if the observation was stored, false if it failed
          */
-        private void removeObservationIfKnown(final UUID uuid)
+        private boolean storeObservation(final Observation observation)
         {
-            //check if the observation already exists
-            final Observation observation = m_ObservationStore.find(uuid);
-            if (observation != null)
+            try
             {
-                //already exists, remove existing observation
-                m_ObservationStore.remove(observation);
-                m_Logging.info("Observation with UUID [%s] was replace by a remotely received observation with the "
-                    + "same UUID", uuid);
+                m_ObservationStore.persistOrReplaceAll(Collections.singletonList(observation));
+                return true;
+            }
+            catch (final PersistenceFailedException | IllegalArgumentException | ValidationFailedException exception)
+            {
+                m_Logging.error(exception, "The remote observation with UUID %s failed to be persisted.", 
+                    observation.getUuid());
+                return false;
             }
         }
-
     }
     
     /**
-     * Class that handles converting received protobuf observations to JAXB observations and adds the converted 
-     * observations to the received observations queue. Implements the {@link Runnable} interface.
+     * Task that converts a received protobuf observation to a JAXB observation and adds the converted observation to 
+     * the received observations queue, waiting for space in the queue if it is full. Implements the {@link Runnable} 
+     * interface.
      */
     private class ObsConverter implements Runnable
     {
+        /**
+         * The observation to convert.
+         */
+        private final ObservationGen.Observation m_Observation;
+        
+        /**
+         * Progress of the retrieve request the observation belongs to, null if not part of a retrieve request.
+         */
+        private final RetrieveProgress m_Progress;
+        
+        /**
+         * Create a task to convert the given observation.
+         * 
+         * @param observation
+         *     the observation to convert
+         * @param progress
+         *     progress of the retrieve request the observation belongs to, null if not part of a retrieve request
+         */
+        ObsConverter(final ObservationGen.Observation observation, final RetrieveProgress progress)
+        {
+            m_Observation = observation;
+            m_Progress = progress;
+        }
+        
         @Override
         public void run()
         {
-            while (m_Running)
+            final Observation convertedObs;
+            try
             {
-                final ObservationGen.Observation observation;
-                try
-                {
-                    observation = m_ConvertObsQueue.take();
-                } 
-                catch (final InterruptedException exception)
-                {
-                    m_Logging.log(LogService.LOG_INFO, "Protobuffer observation converter thread was "
-                            + "interrupted while waiting for an observation to be received.");
-                    continue;
-                }
-                final Observation convertedObs;
-                try
-                {
-                    convertedObs = (Observation) m_Converter.convertToJaxb(observation);
-                }
-                catch (final ObjectConverterException exception)
-                {
-                    m_Logging.error(exception, "The remote observation with UUID %s failed to be converted.", 
-                        observation.getUuid());
-                    continue;
-                }
-                //add the observation to the observation handler queue so that it may be validated and loaded
-                if (!m_ReceivedObsQueue.offer(convertedObs))
-                {
-                    m_Logging.info("The converted remote observation with UUID %s could not be handled, the received "
-                         + "observation queue is currently full.", convertedObs.getUuid());
-                }
+                convertedObs = (Observation) m_Converter.convertToJaxb(m_Observation);
+            }
+            catch (final ObjectConverterException exception)
+            {
+                m_Logging.error(exception, "The remote observation with UUID %s failed to be converted.", 
+                    m_Observation.getUuid());
+                observationFailed();
+                return;
+            }
+            
+            //add the observation to the observation handler queue so that it may be validated and loaded
+            try
+            {
+                m_ReceivedObsQueue.put(new PendingObservation(convertedObs, m_Progress));
+            }
+            catch (final InterruptedException exception)
+            {
+                m_Logging.info("The converted remote observation with UUID %s could not be handled, the listener was "
+                        + "stopped.", convertedObs.getUuid());
+                observationFailed();
+            }
+        }
+        
+        /**
+         * Update the progress of the retrieve request as the observation will not be stored.
+         */
+        private void observationFailed()
+        {
+            if (m_Progress != null)
+            {
+                m_Progress.observationHandled(false);
+            }
+        }
+    }
+    
+    /**
+     * A converted observation waiting to be stored.
+     */
+    private static class PendingObservation
+    {
+        /**
+         * The observation to store.
+         */
+        private final Observation m_Observation;
+        
+        /**
+         * Progress of the retrieve request the observation belongs to, null if not part of a retrieve request.
+         */
+        private final RetrieveProgress m_Progress;
+        
+        /**
+         * Create a pending observation.
+         * 
+         * @param observation
+         *     the observation to store
+         * @param progress
+         *     progress of the retrieve request the observation belongs to, null if not part of a retrieve request
+         */
+        PendingObservation(final Observation observation, final RetrieveProgress progress)
+        {
+            m_Observation = observation;
+            m_Progress = progress;
+        }
+        
+        /**
+         * Get the observation to store.
+         * 
+         * @return
+         *     the observation
+         */
+        public Observation getObservation()
+        {
+            return m_Observation;
+        }
+        
+        /**
+         * Get the progress of the retrieve request the observation belongs to.
+         * 
+         * @return
+         *     the progress or null if not part of a retrieve request
+         */
+        public RetrieveProgress getProgress()
+        {
+            return m_Progress;
+        }
+    }
+    
+    /**
+     * Tracks how many observations from a single {@link GetObservationResponseData} message have been handled so 
+     * progress and complete events can be posted with the actual store rate.
+     */
+    private class RetrieveProgress
+    {
+        /**
+         * Total number of observations in the response.
+         */
+        private final int m_Total;
+        
+        /**
+         * Number of observations that have been stored or have failed.
+         */
+        private final AtomicInteger m_Handled = new AtomicInteger();
+        
+        /**
+         * Number of observations that have been stored.
+         */
+        private final AtomicInteger m_Stored = new AtomicInteger();
+        
+        /**
+         * {@link System#nanoTime()} when the response was received.
+         */
+        private final long m_StartTime = System.nanoTime();
+        
+        /**
+         * Create the progress for a response.
+         * 
+         * @param total
+         *     total number of observations in the response
+         */
+        RetrieveProgress(final int total)
+        {
+            m_Total = total;
+        }
+        
+        /**
+         * Record that an observation has been handled, posting the complete event if it was the last one.
+         * 
+         * @param stored
+         *     true if the observation was stored, false if it failed to be converted or stored
+         */
+        public void observationHandled(final boolean stored)
+        {
+            if (stored)
+            {
+                m_Stored.incrementAndGet();
+            }
+            if (m_Handled.incrementAndGet() == m_Total)
+            {
+                postEvent(RemoteEventConstants.TOPIC_OBS_STORE_RETRIEVE_COMPLETE);
             }
         }
+        
+        /**
+         * Whether all observations in the response have been handled.
+         * 
+         * @return
+         *     true if complete
+         */
+        public boolean isComplete()
+        {
+            return m_Handled.get() >= m_Total;
+        }
+        
+        /**
+         * Post an event with the current progress.
+         * 
+         * @param topic
+         *     topic of the event
+         */
+        public void postEvent(final String topic)
+        {
+            final int stored = m_Stored.get();
+            final double elapsedSeconds = Math.max(1, System.nanoTime() - m_StartTime) / NANOS_PER_SECOND;
+            
+            final Map<String, Object> props = new Hashtable<String, Object>();
+            props.put(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_RETRIEVED, m_Total);
+            props.put(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_STORED, stored);
+            props.put(RemoteEventConstants.EVENT_PROP_OBS_STORE_RATE, stored / elapsedSeconds);
+            m_EventAdmin.postEvent(new Event(topic, props));
+        }
     }
 }
@@ -31,4 +31,36 @@ public interface RemoteObservationListenerConfig
     @Meta.AD(required = false,
         description = "If true the service is enabled, else the service is disabled.")
     boolean enabled();
+    
+    /**
+     * Property for the number of threads used to convert received protocol buffer observations to JAXB observations.
+     * 
+     * @return
+     *    number of conversion threads
+     */
+    @Meta.AD(required = false, deflt = "2", min = "1",
+        description = "Number of threads used to convert received observations before they are stored.")
+    int conversionThreads();
+    
+    /**
+     * Property for the maximum number of received observations stored locally in a single transaction.
+     * 
+     * @return
+     *    max number of observations per transaction
+     */
+    @Meta.AD(required = false, deflt = "50", min = "1",
+        description = "Max number of received observations stored locally in a single transaction.")
+    int persistBatchSize();
+    
+    /**
+     * Property for the number of received observations that can be waiting to be stored before observations from 
+     * remote events are dropped. Changes take effect the next time the service is enabled.
+     * 
+     * @return
+     *    capacity of the received observation queue
+     */
+    @Meta.AD(required = false, deflt = "1000", min = "1",
+        description = "Max number of received observations that can wait to be stored before observations from remote "
+                + "events are dropped. Changes take effect the next time the service is enabled.")
+    int receivedQueueCapacity();
 }
@@ -49,12 +49,12 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 
@@ -176,7 +176,7 @@ public class BundleManagementMessageService implements MessageService
         final RemoteChannel channel) throws IOException
     {
         //parse bundle message
-        final BundleNamespace bunMessage = BundleNamespace.parseFrom(payload.getNamespaceMessage());
+        final BundleNamespace bunMessage = ZeroCopyParser.parse(BundleNamespace.PARSER, payload.getNamespaceMessage());
         final Message dataMessage;
         
         switch (bunMessage.getType())
@@ -234,9 +234,9 @@ public class BundleManagementMessageService implements MessageService
         }
 
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, bunMessage, 
-                bunMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, bunMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, bunMessage, bunMessage.getType(), dataMessage, channel);
     }
 
     /**
@@ -53,12 +53,12 @@ import mil.dod.th.core.remote.proto.SharedMessages.Multitype;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 
@@ -185,7 +185,8 @@ public class ConfigAdminMessageService implements MessageService //messages for
         final RemoteChannel channel) throws IOException  
     {
         //parse config admin message
-        final ConfigAdminNamespace configMessage = ConfigAdminNamespace.parseFrom(payload.getNamespaceMessage());
+        final ConfigAdminNamespace configMessage = ZeroCopyParser.parse(ConfigAdminNamespace.PARSER,
+                payload.getNamespaceMessage());
         final Message dataMessage;
         
         switch (configMessage.getType())
@@ -236,9 +237,9 @@ public class ConfigAdminMessageService implements MessageService //messages for
         }
         
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, configMessage, 
-                configMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, configMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, configMessage, configMessage.getType(), dataMessage, channel);
     }
     
     /**
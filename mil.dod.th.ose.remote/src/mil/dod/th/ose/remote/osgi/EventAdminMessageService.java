@@ -21,12 +21,9 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
-import javax.xml.bind.MarshalException;
 import javax.xml.bind.UnmarshalException;
 
 import aQute.bnd.annotation.component.Activate;
@@ -51,9 +48,9 @@ import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace;
 import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace.EventAdminMessageType;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationRequestData;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationResponseData;
+import mil.dod.th.core.remote.proto.EventMessages.SendEventBatchData;
 import mil.dod.th.core.remote.proto.EventMessages.SendEventData;
 import mil.dod.th.core.remote.proto.EventMessages.UnregisterEventRequestData;
-import mil.dod.th.core.remote.proto.MapTypes.ComplexTypesMapEntry;
 import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
 import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
@@ -62,15 +59,13 @@ import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.api.RemoteEventAdmin;
 import mil.dod.th.ose.remote.api.RemoteEventRegistration;
+import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.proto.PersistEventRegistration.PersistentEventRegistrationMessage;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
 import mil.dod.th.ose.remote.util.RemotePropertyConverter;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 import mil.dod.th.ose.shared.AutoExpireHashMap;
 import mil.dod.th.ose.shared.AutoExpireMap;
-import mil.dod.th.ose.shared.EventUtils;
-import mil.dod.th.ose.shared.ExceptionLoggingThreadPool;
-import mil.dod.th.ose.shared.SharedMessageUtils;
-import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
 
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
@@ -100,7 +95,7 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
      * Reference to the event admin service.  Used for local messages within event admin service.
      */
     private EventAdmin m_EventAdmin;
-
+    
     /**
      * Service for creating messages to send through the remote interface.
      */
@@ -135,6 +130,21 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
      * Persistent datastore service.
      */
     private PersistentDataStore m_Datastore;
+    
+    /**
+     * Service containing the settings for the remote interface.
+     */
+    private RemoteSettings m_RemoteSettings;
+    
+    /**
+     * Sends local events to the systems that registered for them, shared by all registrations.
+     */
+    private RemoteEventForwarder m_EventForwarder;
+
+    /**
+     * Event handler of each registration, key is the registration id.
+     */
+    private final Map<Integer, EventHandlerImpl> m_EventHandlers = new ConcurrentHashMap<Integer, EventHandlerImpl>();
 
     /**
      * Binds the logging service for logging messages.
@@ -159,7 +169,7 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
     {
         m_EventAdmin = eventAdmin;
     }
-
+    
     /**
      * Bind to the service for creating remote messages.
      * 
@@ -207,7 +217,20 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
     }
 
     /**
-     * Activate this component, just save the context for later use and bind this service to the message router.
+     * Bind the remote settings service.
+     * 
+     * @param remoteSettings
+     *      service containing the settings for the remote interface
+     */
+    @Reference
+    public void setRemoteSettings(final RemoteSettings remoteSettings)
+    {
+        m_RemoteSettings = remoteSettings;
+    }
+
+    /**
+     * Activate this component, save the context for later use, start forwarding events and bind this service to the 
+     * message router.
      * 
      * @param context
      *      context for this bundle
@@ -216,6 +239,8 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
     public void activate(final BundleContext context)
     {
         m_Context = context;
+        m_EventForwarder = new RemoteEventForwarder(m_Logging, m_MessageFactory, m_RemotePropertyConverter, 
+                m_RemoteSettings.getEventQueueCapacity(), m_RemoteSettings.getEventBatchSize());
         m_Registrations = new AutoExpireHashMap<Integer, RemoteEventRegistration>(
             TimeUnit.HOURS.toMillis(RemoteConstants.REMOTE_EVENT_DEFAULT_REG_TIMEOUT_HOURS),
             TimeUnit.MINUTES.toMillis(1),
@@ -267,15 +292,15 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
     private void handleExpiredEntry(final Integer id, final RemoteEventRegistration eventReg)
     {
         m_Logging.info("Remote event registration %d for system [0x%08x] expired", id, eventReg.getSystemId());
-        final ServiceRegistration<EventHandler> serviceReg = eventReg.getServiceRegistration();
-        serviceReg.unregister();
+        unregisterListenerLocally(id, eventReg);
 
         // remove from datastore
         removePersistedRegistration(id);
     }
 
     /**
-     * Deactivate the service, clean out all event registrations and unbind the service from the message router.
+     * Deactivate the service, clean out all event registrations, stop forwarding events and unbind the service from 
+     * the message router.
      */
     @Deactivate
     public void deactivate()
@@ -283,6 +308,7 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
         m_MessageRouter.unbindMessageService(this);
         
         cleanupAllRegistrations();
+        m_EventForwarder.shutdown();
     }
     
     @Override
@@ -296,7 +322,8 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
         final RemoteChannel channel) throws IOException, ObjectConverterException, UnmarshalException
     {
         //parse event message
-        final EventAdminNamespace eventMessage = EventAdminNamespace.parseFrom(payload.getNamespaceMessage());
+        final EventAdminNamespace eventMessage = ZeroCopyParser.parse(EventAdminNamespace.PARSER,
+                payload.getNamespaceMessage());
         final Message dataMessage;
         
         switch (eventMessage.getType())
@@ -305,6 +332,9 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
                 //Send event message type was received.  Respond accordingly.
                 dataMessage = sendEvent(message, eventMessage);
                 break;
+            case SendEventBatch:
+                dataMessage = sendEventBatch(message, eventMessage);
+                break;
             case EventRegistrationRequest:
                 //Register for event message type was received.  Respond accordingly.  
                 dataMessage = registerForEvent(message, eventMessage, channel);
@@ -333,9 +363,9 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
                                 + " the EventAdminMessageService namespace.", eventMessage.getType()));
         }
         // locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, eventMessage, 
-                eventMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, eventMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, eventMessage, eventMessage.getType(), dataMessage, channel);
     }
     
     @Override
@@ -378,14 +408,60 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
             throws InvalidProtocolBufferException, ObjectConverterException, UnmarshalException
     {
         final SendEventData regRequest = SendEventData.parseFrom(message.getData());
-        final Map<String, Object> props = m_RemotePropertyConverter.complexTypesMapToMap(regRequest.getPropertyList());
+        postRemoteEvent(request, regRequest);
         
-        props.put(RemoteConstants.REMOTE_EVENT_PROP_CONTROLLER_ID, request.getSourceId());
-        m_EventAdmin.postEvent(new Event(RemoteInterfaceUtilities.getRemoteEventTopic(regRequest.getTopic()), props));
+        return regRequest;
+    }
+    
+    /**
+     * Method that locally posts each event of a received remote event batch message.
+     * @param request
+     *      entire remote message for the request 
+     * @param message
+     *      message containing the events
+     * @throws InvalidProtocolBufferException 
+     *      if message cannot be properly parsed
+     * @return
+     *      the data message for this request 
+     * @throws ObjectConverterException
+     *      if object cannot be converted between JAXB and protocol buffer format
+     * @throws UnmarshalException
+     *      if unable to parse XML as JAXB object
+     */
+    private Message sendEventBatch(final TerraHarvestMessage request, final EventAdminNamespace message) 
+            throws InvalidProtocolBufferException, ObjectConverterException, UnmarshalException
+    {
+        final SendEventBatchData batch = SendEventBatchData.parseFrom(message.getData());
+        for (SendEventData event : batch.getEventList())
+        {
+            postRemoteEvent(request, event);
+        }
         
-        m_Logging.debug("Received remote event [%s]", regRequest.getTopic());
+        return batch;
+    }
+    
+    /**
+     * Locally post a remote event with its properties converted.
+     * @param request
+     *      entire remote message containing the event
+     * @param event
+     *      message containing the properties and topic of the remote event
+     * @throws InvalidProtocolBufferException 
+     *      if a property cannot be properly parsed
+     * @throws ObjectConverterException
+     *      if object cannot be converted between JAXB and protocol buffer format
+     * @throws UnmarshalException
+     *      if unable to parse XML as JAXB object
+     */
+    private void postRemoteEvent(final TerraHarvestMessage request, final SendEventData event) 
+            throws InvalidProtocolBufferException, ObjectConverterException, UnmarshalException
+    {
+        final Map<String, Object> props = m_RemotePropertyConverter.complexTypesMapToMap(event.getPropertyList());
         
-        return regRequest;
+        props.put(RemoteConstants.REMOTE_EVENT_PROP_CONTROLLER_ID, request.getSourceId());
+        m_EventAdmin.postEvent(new Event(RemoteInterfaceUtilities.getRemoteEventTopic(event.getTopic()), props));
+        
+        m_Logging.debug("Received remote event [%s]", event.getTopic());
     }
 
     /**
@@ -468,8 +544,7 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
         final UnregisterEventRequestData requestData = UnregisterEventRequestData.parseFrom(message.getData());
         //TD: id might not be valid, should check input before using it
         final RemoteEventRegistration eventReg = m_Registrations.remove(requestData.getId());  
-        final ServiceRegistration<EventHandler> serviceReg = eventReg.getServiceRegistration();
-        serviceReg.unregister();
+        unregisterListenerLocally(requestData.getId(), eventReg);
         
         //remove for datastore
         removePersistedRegistration(requestData.getId());
@@ -500,8 +575,7 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
             if (eventReg.getSystemId() == request.getSourceId())
             {
                 // only remove if request is from the same source as the previous registration
-                final ServiceRegistration<EventHandler> serviceReg = eventReg.getServiceRegistration();
-                serviceReg.unregister();
+                unregisterListenerLocally(regId, eventReg);
                 registrationsToRemove.add(regId);
             }
         }
@@ -532,8 +606,7 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
             updateRegistration(regId);
 
             // Unregister the service registration
-            final ServiceRegistration<EventHandler> serviceReg = eventReg.getServiceRegistration();
-            serviceReg.unregister();
+            unregisterListenerLocally(regId, eventReg);
         }
         m_Logging.debug("The number of registrations that should have been removed %d", m_Registrations.size());
         m_Registrations.clear();
@@ -657,8 +730,10 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
         }
         
         // register event handler for the given channel
-        final ServiceRegistration<EventHandler> reg = m_Context.registerService(EventHandler.class, 
-                new EventHandlerImpl(systemId, encryptionType, message), properties);
+        final EventHandlerImpl handler = new EventHandlerImpl(systemId, encryptionType, message);
+        final ServiceRegistration<EventHandler> reg = m_Context.registerService(EventHandler.class, handler, 
+                properties);
+        m_EventHandlers.put(regId, handler);
 
         // Determine the expiration time for the registration
         final long expireTimeMillis;
@@ -674,6 +749,25 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
         m_Registrations.put(regId, new RemoteEventRegistration(systemId, reg, message), expireTimeMillis);
     }
 
+    /**
+     * Unregister the event handler of a registration and close its destination so events held back for the 
+     * registration are no longer sent.
+     * 
+     * @param regId
+     *     the id of the registration
+     * @param eventReg
+     *     the registration to remove
+     */
+    private void unregisterListenerLocally(final int regId, final RemoteEventRegistration eventReg)
+    {
+        eventReg.getServiceRegistration().unregister();
+        final EventHandlerImpl handler = m_EventHandlers.remove(regId);
+        if (handler != null)
+        {
+            handler.close();
+        }
+    }
+
     /**
      * Check to see if an event registration already exists for a system ID.
      * @param message
@@ -694,6 +788,8 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
             if (systemId == existingEventReg.getSystemId()
                     && message.getCanQueueEvent() == existingMessage.getCanQueueEvent()
                     && message.getObjectFormat().equals(existingMessage.getObjectFormat())
+                    && message.getCanBatchEvents() == existingMessage.getCanBatchEvents()
+                    && message.getTopicIntervalMs() == existingMessage.getTopicIntervalMs()
                     && ((message.hasFilter() && message.getFilter().equals(existingMessage.getFilter()))
                             || (!message.hasFilter() && !existingMessage.hasFilter()))
                     && topicListsEqual(message.getTopicList(), existingMessage.getTopicList()))
@@ -739,42 +835,16 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
     }
 
     /**
-     * Handles local events and sends them to a remote listener server.
-     * If there is not a channel available to send to event through the event will be lost.
+     * Handles local events and passes them to the shared {@link RemoteEventForwarder} to be sent to a remote listener 
+     * server.  If there is not a channel available to send to event through the event will be lost.
      * 
      * @author bachmakm
      *
      */
     class EventHandlerImpl implements EventHandler
     {
-        /** Maximum number of times to post errors when sending the event fails. */
-        private final static int MAX_ERROR_LOGGING = 3;
-        
-        /** Blocking queue used by the executor to store tasks in FIFO order. */
-        final private BlockingQueue<Runnable> m_WorkQueue = new LinkedBlockingQueue<Runnable>();
-        
-        /** Executor used to queue and handle multiple sendEvent messages to be sent back to a controller. */
-        final private ExecutorService m_ExecutorService = new ExceptionLoggingThreadPool(m_Logging, 1, 1, 0L, 
-                TimeUnit.SECONDS, m_WorkQueue);
-        
-        /** System id for identifying the TerraHarvestSystem that registered to listen to an event. */
-        final private int m_RegisteredSystemId;
-        
-        /** The encryption type to applied to messages that result from this registration. */
-        final private EncryptType m_EncryptionType;
-        
-        /**
-         * Number of times this handler could not send an event since last successful transmission to the desired 
-         * remote system.
-         * */
-        private int m_FailedAttemptsSinceLastSuccess;
-
-        /**
-         * Format to use when converting JAXB lexicon objects.
-         */
-        private RemoteTypesGen.LexiconFormat.Enum m_LexiconFormat;
-        
-        private boolean m_CanQueueEvents;
+        /** Events waiting to be sent for this registration. */
+        final private RemoteEventForwarder.Destination m_Destination;
         
         /**
          * Construct an event handler.
@@ -784,91 +854,26 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
          * @param encryptionType
          *      the type of encryption to applied to messages that are sent because of this registration
          * @param requestData
-         *      Request Data used to get Lexicon Format and the canQueuEvents Flag
+         *      Request Data used to get the Lexicon Format and how events are to be sent
          */
         EventHandlerImpl(final int registeredSystemId, final EncryptType encryptionType, final 
                 EventRegistrationRequestData requestData)
         {
-            m_RegisteredSystemId = registeredSystemId;
-            m_EncryptionType = encryptionType;
-            m_LexiconFormat = requestData.getObjectFormat();
-            m_CanQueueEvents = requestData.getCanQueueEvent();
+            m_Destination = m_EventForwarder.createDestination(registeredSystemId, encryptionType, requestData);
         }
  
         @Override
         public void handleEvent(final Event event)
         {
-            m_ExecutorService.execute(new Runnable()//NOCHECKSTYLE Need long inner class to support Queuing
-            {
-                @Override
-                public void run()
-                {
-                    final SendEventData.Builder sendEventMsg = SendEventData.newBuilder().
-                        setTopic(event.getTopic());
-                    
-                    final Map<String, Object> props = EventUtils.getEventProps(event);
-                    
-                    //remove the topic
-                    props.remove(EventConstants.EVENT_TOPIC);
-                    
-                    //get remote properties
-                    final List<ComplexTypesMapEntry> eventProps;
-                    try
-                    {
-                        eventProps = m_RemotePropertyConverter.mapToComplexTypesMap(props, m_LexiconFormat);
-                    }
-                    catch (final ObjectConverterException | MarshalException e)
-                    {
-                        m_Logging.error(e, 
-                            "Unable to send event to system [0x%08x] because a property could not be converted.", 
-                            m_RegisteredSystemId);
-                        return;
-                    }
-                    //prop
-                    final ComplexTypesMapEntry eventProp = ComplexTypesMapEntry.newBuilder().
-                        setKey(RemoteConstants.REMOTE_EVENT_PROP).
-                        setMulti(SharedMessageUtils.convertObjectToMultitype(true)).build();
-                    //add to entries
-                    eventProps.add(eventProp);
-                    //add the rest of the properties
-                    sendEventMsg.addAllProperty(eventProps).build();
-                    
-                    //try to send the message
-                    try
-                    {
-                        if (m_CanQueueEvents)
-                        {
-                            final boolean queued = m_MessageFactory.createEventAdminMessage(
-                                    EventAdminMessageType.SendEvent, sendEventMsg.build()).
-                                    queue(m_RegisteredSystemId, m_EncryptionType, null);
-                            m_Logging.debug("Tried to queue event %s to remote service, result:%b", 
-                                    event.getTopic(), queued);
-                            //set failure count to 0 
-                            m_FailedAttemptsSinceLastSuccess = 0;
-                        }
-                        else
-                        {
-                            final boolean sent = m_MessageFactory.createEventAdminMessage(
-                                    EventAdminMessageType.SendEvent, sendEventMsg.build()).
-                                    trySend(m_RegisteredSystemId, m_EncryptionType);
-                            m_Logging.debug("Tried to send event %s to remote service, result:%b", 
-                                    event.getTopic(), sent);
-                            //set failure count to 0 
-                            m_FailedAttemptsSinceLastSuccess = 0;
-                        }
-                    }
-                    catch (final IllegalArgumentException e)
-                    {
-                        //increment failure counter and check the number of times error have be logged
-                        m_FailedAttemptsSinceLastSuccess++;
-                        if (m_FailedAttemptsSinceLastSuccess <= MAX_ERROR_LOGGING)
-                        {
-                            m_Logging.warning("Unable to send remote event to remote system [0x%08x]", 
-                                    m_RegisteredSystemId);
-                        }
-                    }
-                }
-            });
+            m_Destination.offer(event);
+        }
+        
+        /**
+         * Stop sending events for the registration, called once the handler is unregistered.
+         */
+        void close()
+        {
+            m_Destination.close();
         }
         
         /**
@@ -878,7 +883,17 @@ public class EventAdminMessageService implements MessageService, RemoteEventAdmi
          */
         public int getFailedAttemptCount()
         {
-            return m_FailedAttemptsSinceLastSuccess;
+            return m_Destination.getFailedAttemptCount();
+        }
+        
+        /**
+         * Get the number of events dropped because too many were waiting to be sent.
+         * @return
+         *     the number of events
+         */
+        public long getDroppedCount()
+        {
+            return m_Destination.getDroppedCount();
         }
     }
 }
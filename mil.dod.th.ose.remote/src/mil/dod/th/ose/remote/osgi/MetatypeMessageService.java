@@ -45,10 +45,10 @@ import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.MetatypeInformationListener;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.metatype.AttributeDefinition;
 import org.osgi.service.metatype.MetaTypeInformation;
@@ -186,7 +186,8 @@ public class MetatypeMessageService implements MessageService
         final RemoteChannel channel) throws IOException  
     {
         //parse meta type message
-        final MetaTypeNamespace metaMessage = MetaTypeNamespace.parseFrom(payload.getNamespaceMessage());
+        final MetaTypeNamespace metaMessage = ZeroCopyParser.parse(MetaTypeNamespace.PARSER,
+                payload.getNamespaceMessage());
         //data message
         final Message dataMessage;
 
@@ -223,9 +224,9 @@ public class MetatypeMessageService implements MessageService
         }
         
         //locally post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, metaMessage, 
-            metaMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, metaMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, metaMessage, metaMessage.getType(), dataMessage, channel);
     }
     
     /**
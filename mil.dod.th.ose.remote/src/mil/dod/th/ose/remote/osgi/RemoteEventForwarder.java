@@ -0,0 +1,583 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.osgi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.MarshalException;
+
+import com.google.protobuf.Message;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.core.remote.RemoteConstants;
+import mil.dod.th.core.remote.messaging.MessageFactory;
+import mil.dod.th.core.remote.messaging.MessageWrapper;
+import mil.dod.th.core.remote.objectconverter.ObjectConverterException;
+import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace.EventAdminMessageType;
+import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationRequestData;
+import mil.dod.th.core.remote.proto.EventMessages.SendEventBatchData;
+import mil.dod.th.core.remote.proto.EventMessages.SendEventData;
+import mil.dod.th.core.remote.proto.MapTypes.ComplexTypesMapEntry;
+import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
+import mil.dod.th.ose.remote.util.RemotePropertyConverter;
+import mil.dod.th.ose.shared.EventUtils;
+import mil.dod.th.ose.shared.ScheduledExceptionLoggingThreadPool;
+import mil.dod.th.ose.shared.SharedMessageUtils;
+import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
+
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+
+/**
+ * Sends local events to the systems that registered for them remotely.  Each registration gets a {@link Destination} 
+ * with a bounded queue of events waiting to be sent.  A single thread shared by all registrations converts and sends 
+ * the events, several per message for registrations that can handle {@link EventAdminMessageType#SendEventBatch} 
+ * messages.  The properties of an event matching several registrations are only converted once for each lexicon 
+ * format.
+ */
+class RemoteEventForwarder
+{
+    /** Maximum number of times to post errors when sending events fails. */
+    private static final int MAX_ERROR_LOGGING = 3;
+
+    /** Number of recently converted events to keep so other registrations matching the event can reuse them. */
+    private static final int MAX_CONVERTED_EVENTS = 32;
+
+    /**
+     * Service for logging messages.
+     */
+    private final LoggingService m_Logging;
+
+    /**
+     * Service for creating messages to send through the remote interface.
+     */
+    private final MessageFactory m_MessageFactory;
+
+    /**
+     * Service that converts the event properties to protocol buffer equivalents.
+     */
+    private final RemotePropertyConverter m_RemotePropertyConverter;
+
+    /**
+     * Maximum number of events waiting to be sent for a single destination.
+     */
+    private final int m_QueueCapacity;
+
+    /**
+     * Maximum number of events sent in a single message, also the most sent for a destination before others get a 
+     * turn.
+     */
+    private final int m_BatchSize;
+
+    /**
+     * Single thread that converts and sends events, also releases events held back by a topic interval.
+     */
+    private final ScheduledExceptionLoggingThreadPool m_Executor;
+
+    /**
+     * Recently converted events, only accessed by the forwarding thread.
+     */
+    private final Map<ConversionKey, SendEventData> m_ConvertedEvents = 
+        new LinkedHashMap<ConversionKey, SendEventData>(MAX_CONVERTED_EVENTS, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ConversionKey, SendEventData> eldest)
+            {
+                return size() > MAX_CONVERTED_EVENTS;
+            }
+        };
+
+    /**
+     * Create the forwarder and its thread.
+     * 
+     * @param logging
+     *      service for logging messages
+     * @param messageFactory
+     *      service for creating messages
+     * @param remotePropertyConverter
+     *      service that converts event properties
+     * @param queueCapacity
+     *      maximum number of events waiting to be sent for a single destination
+     * @param batchSize
+     *      maximum number of events sent in a single message
+     */
+    RemoteEventForwarder(final LoggingService logging, final MessageFactory messageFactory, 
+            final RemotePropertyConverter remotePropertyConverter, final int queueCapacity, final int batchSize)
+    {
+        m_Logging = logging;
+        m_MessageFactory = messageFactory;
+        m_RemotePropertyConverter = remotePropertyConverter;
+        m_QueueCapacity = queueCapacity;
+        m_BatchSize = batchSize;
+        m_Executor = new ScheduledExceptionLoggingThreadPool(logging, 1);
+        //release tasks of closed destinations are cancelled, don't keep them queued until they would have run
+        m_Executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Create the destination for a remote event registration.
+     * 
+     * @param systemId
+     *      id of the system that registered for the events
+     * @param encryptionType
+     *      the type of encryption to apply to messages sent for the registration
+     * @param requestData
+     *      registration request containing how events should be sent
+     * @return
+     *      destination to pass events to
+     */
+    Destination createDestination(final int systemId, final EncryptType encryptionType, 
+            final EventRegistrationRequestData requestData)
+    {
+        return new Destination(systemId, encryptionType, requestData);
+    }
+
+    /**
+     * Stop the forwarding thread, events still waiting are not sent.
+     */
+    void shutdown()
+    {
+        m_Executor.shutdownNow();
+    }
+
+    /**
+     * Convert the event for the given lexicon format, reusing the conversion done for another destination if there is
+     * one.  Must only be called by the forwarding thread.
+     * 
+     * @param event
+     *      event to convert
+     * @param format
+     *      format of lexicon properties
+     * @return
+     *      the event message
+     * @throws ObjectConverterException
+     *      if a property cannot be converted
+     * @throws MarshalException
+     *      if a lexicon property cannot be marshalled
+     */
+    private SendEventData convert(final Event event, final RemoteTypesGen.LexiconFormat.Enum format) 
+            throws ObjectConverterException, MarshalException
+    {
+        final ConversionKey key = new ConversionKey(event, format);
+        final SendEventData cached = m_ConvertedEvents.get(key);
+        if (cached != null)
+        {
+            return cached;
+        }
+        
+        final Map<String, Object> props = EventUtils.getEventProps(event);
+        //remove the topic
+        props.remove(EventConstants.EVENT_TOPIC);
+        
+        final List<ComplexTypesMapEntry> eventProps = m_RemotePropertyConverter.mapToComplexTypesMap(props, format);
+        //mark the event as remote
+        eventProps.add(ComplexTypesMapEntry.newBuilder().
+                setKey(RemoteConstants.REMOTE_EVENT_PROP).
+                setMulti(SharedMessageUtils.convertObjectToMultitype(true)).build());
+        
+        final SendEventData sendEventData = SendEventData.newBuilder().
+                setTopic(event.getTopic()).
+                addAllProperty(eventProps).build();
+        m_ConvertedEvents.put(key, sendEventData);
+        return sendEventData;
+    }
+
+    /**
+     * Events waiting to be sent for a single remote event registration and how to send them.
+     */
+    class Destination
+    {
+        /** System id for identifying the system that registered to listen to the events. */
+        private final int m_SystemId;
+
+        /** The encryption type to apply to messages sent to the system. */
+        private final EncryptType m_EncryptionType;
+
+        /** Format to use when converting JAXB lexicon objects. */
+        private final RemoteTypesGen.LexiconFormat.Enum m_LexiconFormat;
+
+        /** Whether events are queued if they cannot be sent right away. */
+        private final boolean m_CanQueueEvents;
+
+        /** Whether several events can be sent in a single message. */
+        private final boolean m_CanBatchEvents;
+
+        /** Minimum time between events sent for the same topic, 0 if every event is sent. */
+        private final long m_TopicIntervalNanos;
+
+        /** Events waiting to be sent, guarded by this. */
+        private final Queue<Event> m_Pending = new ArrayDeque<Event>();
+
+        /** State of each topic when a topic interval is used, guarded by this. */
+        private final Map<String, TopicState> m_Topics = new HashMap<String, TopicState>();
+
+        /** Whether a task to send the pending events has been submitted, guarded by this. */
+        private boolean m_Scheduled;
+
+        /** Whether events have been dropped since the queue was last drained, guarded by this. */
+        private boolean m_Full;
+
+        /** Whether the destination has been closed and no longer accepts events, guarded by this. */
+        private boolean m_Closed;
+
+        /** Number of events dropped because the queue was full. */
+        private final AtomicLong m_DroppedCount = new AtomicLong();
+
+        /** Number of events replaced by a later event of the same topic. */
+        private final AtomicLong m_CoalescedCount = new AtomicLong();
+
+        /**
+         * Number of times events could not be sent since the last successful transmission to the system, only 
+         * written by the forwarding thread.
+         */
+        private volatile int m_FailedAttemptsSinceLastSuccess;
+
+        /**
+         * Create the destination.
+         * 
+         * @param systemId
+         *      id of the system that registered for the events
+         * @param encryptionType
+         *      the type of encryption to apply to messages sent to the system
+         * @param requestData
+         *      registration request containing how events should be sent
+         */
+        Destination(final int systemId, final EncryptType encryptionType, 
+                final EventRegistrationRequestData requestData)
+        {
+            m_SystemId = systemId;
+            m_EncryptionType = encryptionType;
+            m_LexiconFormat = requestData.getObjectFormat();
+            m_CanQueueEvents = requestData.getCanQueueEvent();
+            m_CanBatchEvents = requestData.getCanBatchEvents();
+            m_TopicIntervalNanos = TimeUnit.MILLISECONDS.toNanos(requestData.getTopicIntervalMs());
+        }
+
+        /**
+         * Add an event to be sent.  Never blocks, the event is dropped if the queue is full.
+         * 
+         * @param event
+         *      event to send
+         */
+        synchronized void offer(final Event event)
+        {
+            if (m_Closed)
+            {
+                return;
+            }
+            if (m_TopicIntervalNanos == 0 || admitTopic(event))
+            {
+                enqueue(event);
+            }
+        }
+
+        /**
+         * Close the destination once the registration is removed.  Cancels the release of events held back by a topic
+         * interval and discards events still waiting to be sent, later events are ignored.
+         */
+        synchronized void close()
+        {
+            m_Closed = true;
+            for (TopicState state : m_Topics.values())
+            {
+                if (state.m_Release != null)
+                {
+                    state.m_Release.cancel(false);
+                }
+            }
+            m_Topics.clear();
+            m_Pending.clear();
+        }
+
+        /**
+         * Get the number of events dropped because too many were waiting to be sent.
+         * 
+         * @return
+         *      number of events
+         */
+        long getDroppedCount()
+        {
+            return m_DroppedCount.get();
+        }
+
+        /**
+         * Get the number of events that were not sent because a later event of the same topic replaced them.
+         * 
+         * @return
+         *      number of events
+         */
+        long getCoalescedCount()
+        {
+            return m_CoalescedCount.get();
+        }
+
+        /**
+         * Get the number of times events could not be sent since the last successful transmission.
+         * 
+         * @return
+         *      the number of failed attempts
+         */
+        int getFailedAttemptCount()
+        {
+            return m_FailedAttemptsSinceLastSuccess;
+        }
+
+        /**
+         * Check whether the event can be sent now based on the topic interval.  If not, the event is held until the 
+         * interval has passed, replacing any event of the topic already held.  Must hold the lock.
+         * 
+         * @param event
+         *      event to check
+         * @return
+         *      true if the event can be queued now
+         */
+        private boolean admitTopic(final Event event)
+        {
+            final String topic = event.getTopic();
+            final long now = System.nanoTime();
+            TopicState state = m_Topics.get(topic);
+            if (state == null)
+            {
+                state = new TopicState();
+                m_Topics.put(topic, state);
+            }
+            else if (state.m_Held != null)
+            {
+                state.m_Held = event;
+                m_CoalescedCount.incrementAndGet();
+                return false;
+            }
+            else if (now - state.m_NextSendNanos < 0)
+            {
+                state.m_Held = event;
+                state.m_Release = m_Executor.schedule(() -> releaseHeld(topic), state.m_NextSendNanos - now, 
+                        TimeUnit.NANOSECONDS);
+                return false;
+            }
+            
+            state.m_NextSendNanos = now + m_TopicIntervalNanos;
+            return true;
+        }
+
+        /**
+         * Queue the event held back for the topic now that the interval has passed.
+         * 
+         * @param topic
+         *      topic of the held event
+         */
+        private synchronized void releaseHeld(final String topic)
+        {
+            final TopicState state = m_Topics.get(topic);
+            if (m_Closed || state == null)
+            {
+                return;
+            }
+            final Event event = state.m_Held;
+            state.m_Held = null;
+            state.m_Release = null;
+            state.m_NextSendNanos = System.nanoTime() + m_TopicIntervalNanos;
+            enqueue(event);
+        }
+
+        /**
+         * Add the event to the queue and make sure the forwarding thread will send it.  Must hold the lock.
+         * 
+         * @param event
+         *      event to add
+         */
+        private void enqueue(final Event event)
+        {
+            if (m_Pending.size() >= m_QueueCapacity)
+            {
+                m_DroppedCount.incrementAndGet();
+                if (!m_Full)
+                {
+                    m_Full = true;
+                    m_Logging.warning("Too many events waiting to be sent to system [0x%08x], dropping events", 
+                            m_SystemId);
+                }
+                return;
+            }
+            
+            m_Pending.add(event);
+            if (!m_Scheduled)
+            {
+                m_Scheduled = true;
+                m_Executor.execute(this::sendPending);
+            }
+        }
+
+        /**
+         * Send up to a batch of the pending events, called by the forwarding thread.  Resubmits itself if more events 
+         * are waiting so other destinations get a turn in between.
+         */
+        private void sendPending()
+        {
+            final List<Event> events = new ArrayList<Event>();
+            synchronized (this)
+            {
+                while (events.size() < m_BatchSize && !m_Pending.isEmpty())
+                {
+                    events.add(m_Pending.poll());
+                }
+                m_Full = false;
+                if (m_Pending.isEmpty())
+                {
+                    m_Scheduled = false;
+                }
+                else
+                {
+                    m_Executor.execute(this::sendPending);
+                }
+            }
+            
+            final List<SendEventData> messages = new ArrayList<SendEventData>(events.size());
+            for (Event event : events)
+            {
+                try
+                {
+                    messages.add(convert(event, m_LexiconFormat));
+                }
+                catch (final ObjectConverterException | MarshalException e)
+                {
+                    m_Logging.error(e, 
+                        "Unable to send event to system [0x%08x] because a property could not be converted.", 
+                        m_SystemId);
+                }
+            }
+            
+            if (m_CanBatchEvents && messages.size() > 1)
+            {
+                send(EventAdminMessageType.SendEventBatch, 
+                        SendEventBatchData.newBuilder().addAllEvent(messages).build(), 
+                        String.format("%d events", messages.size()));
+            }
+            else
+            {
+                for (SendEventData message : messages)
+                {
+                    send(EventAdminMessageType.SendEvent, message, String.format("event %s", message.getTopic()));
+                }
+            }
+        }
+
+        /**
+         * Send or queue a message to the system.
+         * 
+         * @param type
+         *      type of message
+         * @param dataMessage
+         *      data of the message
+         * @param description
+         *      description of what is sent for logging
+         */
+        private void send(final EventAdminMessageType type, final Message dataMessage, final String description)
+        {
+            try
+            {
+                final MessageWrapper message = m_MessageFactory.createEventAdminMessage(type, dataMessage);
+                if (m_CanQueueEvents)
+                {
+                    final boolean queued = message.queue(m_SystemId, m_EncryptionType, null);
+                    m_Logging.debug("Tried to queue %s to remote service, result:%b", description, queued);
+                }
+                else
+                {
+                    final boolean sent = message.trySend(m_SystemId, m_EncryptionType);
+                    m_Logging.debug("Tried to send %s to remote service, result:%b", description, sent);
+                }
+                //set failure count to 0 
+                m_FailedAttemptsSinceLastSuccess = 0;
+            }
+            catch (final IllegalArgumentException e)
+            {
+                //increment failure counter and check the number of times error have be logged
+                m_FailedAttemptsSinceLastSuccess++;
+                if (m_FailedAttemptsSinceLastSuccess <= MAX_ERROR_LOGGING)
+                {
+                    m_Logging.warning("Unable to send remote event to remote system [0x%08x]", m_SystemId);
+                }
+            }
+        }
+    }
+
+    /**
+     * When a topic can next be sent and the latest event held until then.
+     */
+    private static class TopicState
+    {
+        /** Earliest time the next event of the topic can be sent as returned by {@link System#nanoTime()}. */
+        private long m_NextSendNanos;
+
+        /** Latest event of the topic waiting for the interval to pass, null if none. */
+        private Event m_Held;
+
+        /** Task that releases the held event, null if no event is held. */
+        private ScheduledFuture<?> m_Release;
+    }
+
+    /**
+     * Key for a converted event, events are compared by identity as the same event object is delivered to each 
+     * matching registration.
+     */
+    private static class ConversionKey
+    {
+        /** Event that was converted. */
+        private final Event m_Event;
+
+        /** Format of lexicon properties. */
+        private final RemoteTypesGen.LexiconFormat.Enum m_Format;
+
+        /**
+         * Create the key.
+         * 
+         * @param event
+         *      event that was converted
+         * @param format
+         *      format of lexicon properties
+         */
+        ConversionKey(final Event event, final RemoteTypesGen.LexiconFormat.Enum format)
+        {
+            m_Event = event;
+            m_Format = format;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (!(obj instanceof ConversionKey))
+            {
+                return false;
+            }
+            final ConversionKey other = (ConversionKey)obj;
+            return m_Event == other.m_Event && m_Format == other.m_Format;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(m_Event) * 31 + m_Format.hashCode();
+        }
+    }
+}
@@ -37,8 +37,8 @@ import mil.dod.th.core.remote.proto.RemoteChannelLookupMessages.SyncTransportCha
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.MessageService;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
+import mil.dod.th.ose.remote.util.ZeroCopyParser;
 
-import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 
@@ -148,7 +148,7 @@ public class RemoteChannelLookupMessageService implements MessageService
         final RemoteChannel channel) throws IOException
     {
         final RemoteChannelLookupNamespace remoteChannelMessage =
-                RemoteChannelLookupNamespace.parseFrom(payload.getNamespaceMessage());
+                ZeroCopyParser.parse(RemoteChannelLookupNamespace.PARSER, payload.getNamespaceMessage());
         final Message dataMessage;
      
         // message specific handling
@@ -167,9 +167,9 @@ public class RemoteChannelLookupMessageService implements MessageService
         }
         
         // post event that message was received
-        final Event event = RemoteInterfaceUtilities.createMessageReceivedEvent(message, payload, remoteChannelMessage, 
-                remoteChannelMessage.getType(), dataMessage, channel);
-        m_EventAdmin.postEvent(event);
+        m_MessageRouter.handleResponse(message, payload, remoteChannelMessage, dataMessage);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(m_EventAdmin, m_MessageRouter.getEventTopicInterest(), 
+                message, payload, remoteChannelMessage, remoteChannelMessage.getType(), dataMessage, channel);
     }
 
     /**
@@ -318,6 +318,10 @@ public class TransportChannelImpl extends AbstractRemoteChannel implements Trans
         }
         
         final boolean messageSent = sendMessage(message, transport, remoteAddress);
+        if (messageSent)
+        {
+            addMessagesTransmitted(1);
+        }
                 
         if (m_RemoteSettings.isLogRemoteMessagesEnabled() && messageSent)
         {
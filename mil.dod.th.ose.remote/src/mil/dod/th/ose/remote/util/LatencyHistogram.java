@@ -0,0 +1,154 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with buckets that are powers of 2 in microseconds, so bucket 0 counts samples of less than 1 
+ * microsecond, bucket 1 less than 2 microseconds and so on, with the last bucket counting everything slower.
+ */
+public class LatencyHistogram
+{
+    /**
+     * Number of buckets, the last bucket holds anything 2^(BUCKET_COUNT - 2) microseconds (about 1 minute) or longer.
+     */
+    public static final int BUCKET_COUNT = 28;
+    
+    /**
+     * Number of samples in each bucket.
+     */
+    private final AtomicLongArray m_Buckets = new AtomicLongArray(BUCKET_COUNT);
+    
+    /**
+     * Total number of samples.
+     */
+    private final AtomicLong m_Count = new AtomicLong();
+    
+    /**
+     * Sum of all samples in nanoseconds.
+     */
+    private final AtomicLong m_TotalNanos = new AtomicLong();
+    
+    /**
+     * Largest sample in nanoseconds.
+     */
+    private final AtomicLong m_MaxNanos = new AtomicLong();
+    
+    /**
+     * Record a sample.
+     * 
+     * @param nanos
+     *      latency in nanoseconds
+     */
+    public void record(final long nanos)
+    {
+        m_Buckets.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        m_Count.incrementAndGet();
+        m_TotalNanos.addAndGet(nanos);
+        m_MaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+    
+    /**
+     * Get the number of samples recorded.
+     * 
+     * @return
+     *      number of samples
+     */
+    public long getCount()
+    {
+        return m_Count.get();
+    }
+    
+    /**
+     * Get the average of the samples.
+     * 
+     * @return
+     *      average latency in microseconds, 0 if nothing has been recorded
+     */
+    public double getAverageMicros()
+    {
+        final long count = m_Count.get();
+        return count == 0 ? 0 : m_TotalNanos.get() / 1000.0 / count;
+    }
+    
+    /**
+     * Get the largest sample.
+     * 
+     * @return
+     *      maximum latency in microseconds
+     */
+    public long getMaxMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(m_MaxNanos.get());
+    }
+    
+    /**
+     * Get the upper bound of the bucket containing the given percentile.
+     * 
+     * @param percentile
+     *      percentile between 0 and 100
+     * @return
+     *      latency in microseconds that the given percent of samples are within, 0 if nothing has been recorded
+     */
+    public long getPercentileMicros(final double percentile)
+    {
+        long total = 0;
+        final long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            buckets[i] = m_Buckets.get(i);
+            total += buckets[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        
+        final long target = (long)Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++)
+        {
+            seen += buckets[i];
+            if (seen >= target)
+            {
+                return 1L << i;
+            }
+        }
+        return getMaxMicros();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("count=%d, avg=%.1fus, p50<%dus, p99<%dus, max=%dus", getCount(), getAverageMicros(), 
+                getPercentileMicros(50), getPercentileMicros(99), getMaxMicros());
+    }
+    
+    /**
+     * Get the bucket for the given latency.
+     * 
+     * @param micros
+     *      latency in microseconds
+     * @return
+     *      index of the bucket
+     */
+    private static int getBucket(final long micros)
+    {
+        // number of bits needed to represent the value, 0 for 0, 1 for 1, 2 for 2-3, 3 for 4-7...
+        final int bits = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(bits, BUCKET_COUNT - 1);
+    }
+}
@@ -23,8 +23,10 @@ import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.RemoteConstants;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
+import mil.dod.th.ose.shared.EventTopicInterest;
 
 import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
 
 /**
  * Utility class for the remote interface.
@@ -55,6 +57,44 @@ public final class RemoteInterfaceUtilities
         return eventTopic + RemoteConstants.REMOTE_TOPIC_SUFFIX;
     }
 
+    /**
+     * Create and post a {@link mil.dod.th.core.remote.RemoteConstants#TOPIC_MESSAGE_RECEIVED} event for the given 
+     * remote message. The event is not created if the topic interest service reports that nothing is subscribed to the 
+     * topic.
+     * 
+     * @param eventAdmin
+     *      service used to post the event
+     * @param topicInterest
+     *      service used to check if the topic has any subscribers, null if not available in which case the event is 
+     *      always posted
+     * @param message
+     *      message that was received
+     * @param payload
+     *      payload that was received
+     * @param namespaceMessage
+     *      namespace message object parsed from the given message based on the namespace of the message
+     * @param messageType
+     *      specific type of message, each {@link mil.dod.th.core.remote.proto.RemoteBase.Namespace} has an enum of 
+     *      message types
+     * @param dataMessage
+     *      data message object parsed from the given namespace message based on the message type
+     * @param channel
+     *      channel the message was received on
+     * @throws InvalidProtocolBufferException
+     *      unable to parse the payload 
+     */
+    public static void postMessageReceivedEvent(final EventAdmin eventAdmin,
+            final EventTopicInterest topicInterest, final TerraHarvestMessage message, 
+            final TerraHarvestPayload payload, final Message namespaceMessage, final ProtocolMessageEnum messageType, 
+            final Message dataMessage, final RemoteChannel channel) throws InvalidProtocolBufferException
+    {
+        if (topicInterest == null || topicInterest.isSubscribed(RemoteConstants.TOPIC_MESSAGE_RECEIVED))
+        {
+            eventAdmin.postEvent(createMessageReceivedEvent(message, payload, namespaceMessage, messageType, 
+                    dataMessage, channel));
+        }
+    }
+    
     /**
      * Create a {@link mil.dod.th.core.remote.RemoteConstants#TOPIC_MESSAGE_RECEIVED} event for the given remote 
      * message.
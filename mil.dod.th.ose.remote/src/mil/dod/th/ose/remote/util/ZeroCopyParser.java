@@ -0,0 +1,66 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.util;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+/**
+ * Parses protocol buffer messages so that bytes fields are slices of the input instead of copies.  Nested messages
+ * carried in bytes fields (e.g. the payload of a {@link mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage})
+ * can then be parsed at each level without copying them again.  A slice holds a reference to the whole input, so a
+ * small field kept for a long time keeps the entire input from being collected.
+ * 
+ * <p>
+ * The protocol buffer library only shares the input when it is backed by a single array, like a {@link ByteString}
+ * created from a {@link ByteString.Output} filled to its exact initial capacity, or a slice of one.  Other inputs are
+ * still parsed correctly, just with copies.
+ */
+public final class ZeroCopyParser
+{
+    /**
+     * Utility class, no need to instantiate it.
+     */
+    private ZeroCopyParser()
+    {
+        
+    }
+
+    /**
+     * Parse a message from the given byte string with bytes fields being slices of the byte string.  Byte strings are
+     * immutable, so this is always safe.
+     * 
+     * @param <T>
+     *      type of message to parse
+     * @param parser
+     *      parser for the message type
+     * @param bytes
+     *      bytes of the message, typically a bytes field of another message
+     * @return
+     *      the parsed message
+     * @throws InvalidProtocolBufferException
+     *      if the data is not a valid message
+     */
+    public static <T extends MessageLite> T parse(final Parser<T> parser, final ByteString bytes) 
+            throws InvalidProtocolBufferException
+    {
+        final CodedInputStream input = bytes.newCodedInput();
+        input.enableAliasing(true);
+        final T message = parser.parseFrom(input);
+        input.checkLastTagWas(0);
+        return message;
+    }
+}
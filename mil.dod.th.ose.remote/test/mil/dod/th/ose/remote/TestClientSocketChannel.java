@@ -22,10 +22,14 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.google.protobuf.ByteString;
+
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.pm.PowerManager;
 import mil.dod.th.core.pm.WakeLock;
@@ -36,6 +40,7 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
 import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
 import mil.dod.th.core.types.remote.RemoteChannelTypeEnum;
 import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.remote.api.RemoteSettings.SocketEngine;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.ose.utils.ClientSocketFactory;
 
@@ -62,6 +67,8 @@ public class TestClientSocketChannel
     private PowerManager m_PowerManager;
     private WakeLock m_WakeLock;
     private Socket m_Socket;
+    private ClientSocketFactory m_ClientSocketFactory;
+    private NioSocketEngine m_NioSocketEngine;
     
     @SuppressWarnings("unchecked")
     @Before
@@ -83,13 +90,13 @@ public class TestClientSocketChannel
         when(m_RemoteSettings.isLogRemoteMessagesEnabled()).thenReturn(true);
         
         // mock out the socket factory
-        ClientSocketFactory clientSocketFactory = mock(ClientSocketFactory.class);
-        m_SUT.setClientSocketFactory(clientSocketFactory);
+        m_ClientSocketFactory = mock(ClientSocketFactory.class);
+        m_SUT.setClientSocketFactory(m_ClientSocketFactory);
         m_Socket = mock(Socket.class);
         SocketAddress socketAddress = mock(SocketAddress.class);
         when(socketAddress.toString()).thenReturn("test:10");
         when(m_Socket.getRemoteSocketAddress()).thenReturn(socketAddress);
-        when(clientSocketFactory.createClientSocket(eq("test"), eq(10), anyBoolean())).thenReturn(m_Socket);
+        when(m_ClientSocketFactory.createClientSocket(eq("test"), eq(10), anyBoolean())).thenReturn(m_Socket);
         
         // mock out listener factory
         m_ListenerFactory = mock(ComponentFactory.class);
@@ -104,6 +111,9 @@ public class TestClientSocketChannel
         m_SenderInstance = mock(ComponentInstance.class);
         when(m_SenderFactory.newInstance(Mockito.any(Dictionary.class))).thenReturn(m_SenderInstance);
         when(m_SenderInstance.getInstance()).thenReturn(m_MessageSender);
+        
+        m_NioSocketEngine = mock(NioSocketEngine.class);
+        m_SUT.setNioSocketEngine(m_NioSocketEngine);
     }
 
     /**
@@ -163,6 +173,8 @@ public class TestClientSocketChannel
         verify(m_SenderFactory).newInstance(dictionaryCaptor.capture());
         assertThat((ClientSocketChannel)dictionaryCaptor.getValue().get(QueuedMessageSender.CHANNEL_PROP_KEY), 
                 is(m_SUT));
+        assertThat(dictionaryCaptor.getValue().get(QueuedMessageSender.BATCH_WRITER_PROP_KEY), 
+                is(instanceOf(QueuedMessageSender.BatchWriter.class)));
         
         Thread.sleep(500); // allow thread to run
         
@@ -171,6 +183,111 @@ public class TestClientSocketChannel
         verify(socketMessageListener).run();
     }
 
+    /**
+     * Verify that when the NIO selector engine is selected, the channel connects using a socket channel and registers
+     * it with the engine instead of starting listener and sender threads.  Verify messages are sent through the engine
+     * and the engine connection is closed on deactivation.
+     */
+    @Test
+    public void testActivateNioSelector() throws IOException, InterruptedException
+    {
+        when(m_RemoteSettings.getSocketEngine()).thenReturn(SocketEngine.NIO_SELECTOR);
+        java.nio.channels.SocketChannel socketChannel = mock(java.nio.channels.SocketChannel.class);
+        when(socketChannel.socket()).thenReturn(m_Socket);
+        when(m_Socket.getChannel()).thenReturn(socketChannel);
+        when(m_Socket.getOutputStream()).thenReturn(mock(OutputStream.class));
+        when(m_ClientSocketFactory.createClientSocketChannel("test", 10)).thenReturn(socketChannel);
+        SocketMessageListener socketMessageListener = mock(SocketMessageListener.class);
+        when(m_ListenerInstance.getInstance()).thenReturn(socketMessageListener);
+        NioConnection connection = mock(NioConnection.class);
+        when(m_NioSocketEngine.createConnection(eq(socketChannel), Mockito.any(NioConnection.Handler.class)))
+            .thenReturn(connection);
+        
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ClientSocketChannel.HOST_PROP_KEY, "test");
+        props.put(ClientSocketChannel.PORT_PROP_KEY, 10);
+        props.put(ClientSocketChannel.SSL_PROP_KEY, false);
+        m_SUT.activate(props);
+        
+        verify(m_ClientSocketFactory, never()).createClientSocket(anyString(), anyInt(), anyBoolean());
+        verify(m_SenderFactory, never()).newInstance(Mockito.any(Dictionary.class));
+        verify(connection).start();
+        
+        // verify handler passes received frames and closing to the listener
+        ArgumentCaptor<NioConnection.Handler> handlerCaptor = ArgumentCaptor.forClass(NioConnection.Handler.class);
+        verify(m_NioSocketEngine).createConnection(eq(socketChannel), handlerCaptor.capture());
+        ByteString frame = ByteString.copyFrom(new byte[] {1, 2, 3});
+        handlerCaptor.getValue().frameReceived(frame);
+        verify(socketMessageListener).handleMessageBuffer(frame);
+        handlerCaptor.getValue().connectionClosed();
+        verify(socketMessageListener).cleanup();
+        
+        // verify messages written by the engine are counted
+        handlerCaptor.getValue().messagesWritten(3);
+        assertThat(m_SUT.getMessagesTransmitted(), is(3L));
+        
+        // verify sending goes through the engine connection
+        BaseNamespace baseNamespaceMessage = BaseNamespace.newBuilder()
+                .setType(BaseMessageType.ControllerInfo)
+                .build();
+        TerraHarvestMessage message = 
+                TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Base, 100, baseNamespaceMessage);
+        when(connection.queue(message)).thenReturn(true);
+        assertThat(m_SUT.trySendMessage(message), is(true));
+        assertThat(m_SUT.queueMessage(message), is(true));
+        verify(connection, times(2)).queue(message);
+        assertThat(m_SUT.getStatus(), is(ChannelStatus.Active));
+        
+        when(connection.queue(message)).thenReturn(false);
+        when(connection.isClosed()).thenReturn(true);
+        assertThat(m_SUT.trySendMessage(message), is(false));
+        assertThat(m_SUT.getStatus(), is(ChannelStatus.Unavailable));
+        
+        when(connection.getQueuedMessageCount()).thenReturn(7);
+        assertThat(m_SUT.getQueuedMessageCount(), is(7));
+        when(connection.getQueuedByteCount()).thenReturn(700L);
+        assertThat(m_SUT.getQueuedByteCount(), is(700L));
+        when(connection.getDroppedMessageCount()).thenReturn(2L);
+        assertThat(m_SUT.getDroppedMessageCount(), is(2L));
+        m_SUT.clearQueuedMessages();
+        verify(connection).clearQueue();
+        verify(m_MessageSender, never()).clearQueue();
+        
+        when(connection.getBytesRead()).thenReturn(100L);
+        when(connection.getBytesWritten()).thenReturn(200L);
+        assertThat(m_SUT.getBytesReceived(), is(100L));
+        assertThat(m_SUT.getBytesTransmitted(), is(200L));
+        
+        m_SUT.deactivate();
+        verify(connection).close();
+        verify(m_ListenerInstance).dispose();
+        verify(m_SenderInstance, never()).dispose();
+        verify(m_WakeLock).delete();
+    }
+    
+    /**
+     * Verify that SSL sockets are not serviced by the NIO selector engine even if selected.
+     */
+    @Test
+    public void testActivateNioSelectorSsl() throws IOException
+    {
+        when(m_RemoteSettings.getSocketEngine()).thenReturn(SocketEngine.NIO_SELECTOR);
+        SocketMessageListener socketMessageListener = mock(SocketMessageListener.class);
+        when(m_ListenerInstance.getInstance()).thenReturn(socketMessageListener);
+        
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ClientSocketChannel.HOST_PROP_KEY, "test");
+        props.put(ClientSocketChannel.PORT_PROP_KEY, 10);
+        props.put(ClientSocketChannel.SSL_PROP_KEY, true);
+        m_SUT.activate(props);
+        
+        verify(m_ClientSocketFactory).createClientSocket("test", 10, true);
+        verify(m_ClientSocketFactory, never()).createClientSocketChannel(anyString(), anyInt());
+        verify(m_NioSocketEngine, never()).createConnection(Mockito.any(java.nio.channels.SocketChannel.class), 
+                Mockito.any(NioConnection.Handler.class));
+        verify(m_SenderFactory).newInstance(Mockito.any(Dictionary.class));
+    }
+
     /**
      * Verify that the wake lock is activated when enabled by the remote settings.
      */
@@ -282,17 +399,66 @@ public class TestClientSocketChannel
         System.arraycopy(binaryMessage, 0, fullBinaryMessage, 1, binaryMessage.length);
         
         assertThat(outStream.toByteArray(), is(fullBinaryMessage));
+        assertThat(m_SUT.getMessagesTransmitted(), is(1L));
     
         // verify debug logging is enabled
         verify(m_Logging, times(1)).debug(anyString(), anyVararg());
     }
     
+    /**
+     * Verify the batch writer given to the message sender writes all messages delimited with a single write to the 
+     * socket.
+     */
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testBatchWriter() throws IOException
+    {
+        OutputStream outStream = mock(OutputStream.class);
+        when(m_Socket.getOutputStream()).thenReturn(outStream);
+        
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ClientSocketChannel.HOST_PROP_KEY, "test");
+        props.put(ClientSocketChannel.PORT_PROP_KEY, 10);
+        props.put(ClientSocketChannel.SSL_PROP_KEY, false);
+        m_SUT.activate(props);
+        
+        ArgumentCaptor<Dictionary> dictionaryCaptor = ArgumentCaptor.forClass(Dictionary.class);
+        verify(m_SenderFactory).newInstance(dictionaryCaptor.capture());
+        QueuedMessageSender.BatchWriter batchWriter = (QueuedMessageSender.BatchWriter)dictionaryCaptor.getValue()
+                .get(QueuedMessageSender.BATCH_WRITER_PROP_KEY);
+        
+        List<TerraHarvestMessage> messages = new ArrayList<TerraHarvestMessage>();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++)
+        {
+            TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Base, i, 
+                    BaseNamespace.newBuilder().setType(BaseMessageType.ControllerInfo).build());
+            messages.add(message);
+            message.writeDelimitedTo(expected);
+        }
+        
+        assertThat(batchWriter.trySendMessages(messages), is(3));
+        
+        verify(outStream).write(expected.toByteArray());
+        verify(outStream).flush();
+        assertThat(m_SUT.getMessagesTransmitted(), is(3L));
+        assertThat(m_SUT.getStatus(), is(ChannelStatus.Active));
+        
+        // failed write sends nothing
+        doThrow(new IOException()).when(outStream).write(Mockito.any(byte[].class));
+        assertThat(batchWriter.trySendMessages(messages), is(0));
+        assertThat(m_SUT.getMessagesTransmitted(), is(3L));
+        assertThat(m_SUT.getStatus(), is(ChannelStatus.Unavailable));
+    }
+    
     /**
      * Verify bytes transmitted is correct.
      */
     @Test
     public void testGetBytesTransmitted() throws IOException
     {
+        when(m_Socket.getOutputStream()).thenReturn(mock(OutputStream.class));
+        
         // activate method expects a connected socket to be passed in
         Map<String, Object> props = new HashMap<String, Object>();
         props.put(ClientSocketChannel.HOST_PROP_KEY, "test");
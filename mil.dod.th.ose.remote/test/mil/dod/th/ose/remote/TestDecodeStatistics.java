@@ -0,0 +1,46 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import org.junit.Test;
+
+/**
+ * Test counting of decoded messages and allocated bytes.
+ */
+public class TestDecodeStatistics
+{
+    /**
+     * Verify messages and allocated bytes are counted and the rate is based on the bytes.
+     */
+    @Test
+    public void testRecordMessage() throws InterruptedException
+    {
+        DecodeStatistics stats = new DecodeStatistics();
+        assertThat(stats.getMessageCount(), is(0L));
+        assertThat(stats.getAllocatedBytes(), is(0L));
+        assertThat(stats.getAllocationRate(), is(0.0));
+
+        stats.recordMessage(100);
+        stats.recordMessage(1000);
+        Thread.sleep(10);
+
+        assertThat(stats.getMessageCount(), is(2L));
+        assertThat(stats.getAllocatedBytes(), is(1100L));
+        // at least 10 ms have passed, so the rate can be no more than 1100 bytes per 10 ms 
+        assertThat(stats.getAllocationRate(), is(both(greaterThan(0.0)).and(lessThanOrEqualTo(110000.0))));
+        assertThat(stats.toString(), startsWith("2 messages decoded, 1100 bytes allocated"));
+    }
+}
@@ -143,12 +143,15 @@ public class TestEventChannel
     }
 
     /**
-     * Verify bytes transmitted is 0.
+     * Verify bytes and messages transmitted and dropped are 0.
      */
     @Test
     public void testGetBytesTransmitted()
     {
         assertThat(m_SUT.getBytesTransmitted(), equalTo(0L));
+        assertThat(m_SUT.getMessagesTransmitted(), equalTo(0L));
+        assertThat(m_SUT.getQueuedByteCount(), equalTo(0L));
+        assertThat(m_SUT.getDroppedMessageCount(), equalTo(0L));
     }
 
     /**
@@ -0,0 +1,238 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.ose.test.LoggingServiceMocker;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestMessageDispatcher
+{
+    private MessageDispatcher m_SUT;
+    
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        if (m_SUT != null)
+        {
+            m_SUT.shutdown();
+        }
+    }
+    
+    /**
+     * Verify handlers run on the calling thread if there are no threads and statistics are still recorded.
+     */
+    @Test
+    public void testNoThreads() throws InterruptedException
+    {
+        m_SUT = new MessageDispatcher(0, 1, LoggingServiceMocker.createMock());
+        
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 3; i++)
+        {
+            m_SUT.dispatch("channel", Namespace.Base, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    threads.add(Thread.currentThread());
+                }
+            });
+        }
+        
+        assertThat(threads, contains(Thread.currentThread(), Thread.currentThread(), Thread.currentThread()));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getHandlingTime().getCount(), is(3L));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getQueueWait().getCount(), is(3L));
+    }
+    
+    /**
+     * Verify a blocked lane doesn't hold up other namespaces or other origins with the same namespace.
+     */
+    @Test(timeout = 10000)
+    public void testLanesIndependent() throws InterruptedException
+    {
+        m_SUT = new MessageDispatcher(3, 10, LoggingServiceMocker.createMock());
+        
+        final CountDownLatch release = new CountDownLatch(1);
+        m_SUT.dispatch("channel1", Namespace.ObservationStore, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                await(release);
+            }
+        });
+        
+        final CountDownLatch handled = new CountDownLatch(2);
+        m_SUT.dispatch("channel1", Namespace.Base, countDown(handled));
+        m_SUT.dispatch("channel2", Namespace.ObservationStore, countDown(handled));
+        assertThat(handled.await(5, TimeUnit.SECONDS), is(true));
+        
+        release.countDown();
+    }
+    
+    /**
+     * Verify dispatch blocks once the lane is full and continues once a message has been handled.
+     */
+    @Test(timeout = 10000)
+    public void testLaneFull() throws InterruptedException
+    {
+        m_SUT = new MessageDispatcher(2, 2, LoggingServiceMocker.createMock());
+        
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blocked = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                await(release);
+            }
+        };
+        m_SUT.dispatch("channel", Namespace.Base, blocked);
+        m_SUT.dispatch("channel", Namespace.Base, blocked);
+        
+        final AtomicBoolean dispatched = new AtomicBoolean();
+        final CountDownLatch handled = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    m_SUT.dispatch("channel", Namespace.Base, countDown(handled));
+                    dispatched.set(true);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        reader.start();
+        
+        Thread.sleep(500);
+        assertThat("lane is full so dispatch is blocked", dispatched.get(), is(false));
+        
+        release.countDown();
+        reader.join();
+        assertThat(dispatched.get(), is(true));
+        assertThat(handled.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getHandlingTime().getCount(), is(3L));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getQueueWait().getMaxMicros(), 
+                is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(400))));
+    }
+    
+    /**
+     * Verify messages in the same lane are handled in order even though multiple threads are used, and a handler that
+     * throws an exception doesn't stop the lane.
+     */
+    @Test(timeout = 10000)
+    public void testOrder() throws InterruptedException
+    {
+        m_SUT = new MessageDispatcher(4, 3, LoggingServiceMocker.createMock());
+        
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1000);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++)
+        {
+            final int index = i;
+            expected.add(i);
+            m_SUT.dispatch("channel", Namespace.Base, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    handled.add(index);
+                    done.countDown();
+                    if (index % 100 == 0)
+                    {
+                        throw new IllegalStateException("failed to handle");
+                    }
+                }
+            });
+            // other lanes compete for the same threads
+            m_SUT.dispatch("channel" + i % 5, Namespace.EventAdmin, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // nothing to do
+                }
+            });
+        }
+        done.await();
+        
+        assertThat(handled, is(expected));
+    }
+    
+    /**
+     * Verify messages dispatched after shutdown are dropped.
+     */
+    @Test
+    public void testShutdown() throws InterruptedException
+    {
+        m_SUT = new MessageDispatcher(1, 1, LoggingServiceMocker.createMock());
+        m_SUT.shutdown();
+        
+        final AtomicBoolean ran = new AtomicBoolean();
+        m_SUT.dispatch("channel", Namespace.Base, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.set(true);
+            }
+        });
+        
+        Thread.sleep(100);
+        assertThat(ran.get(), is(false));
+    }
+    
+    private static Runnable countDown(final CountDownLatch latch)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                latch.countDown();
+            }
+        };
+    }
+    
+    private static void await(final CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
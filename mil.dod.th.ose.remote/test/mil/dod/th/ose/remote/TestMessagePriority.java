@@ -0,0 +1,73 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.google.protobuf.ByteString;
+
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
+import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+
+import org.junit.Test;
+
+public class TestMessagePriority
+{
+    /**
+     * Verify responses are in the response lane regardless of namespace.
+     */
+    @Test
+    public void testResponse()
+    {
+        assertThat(MessagePriority.of(createMessage(Namespace.Base, true)), is(MessagePriority.RESPONSE));
+        assertThat(MessagePriority.of(createMessage(Namespace.EventAdmin, true)), is(MessagePriority.RESPONSE));
+    }
+    
+    /**
+     * Verify events and observations are in the bulk lane, other namespaces in the normal lane.
+     */
+    @Test
+    public void testNamespace()
+    {
+        assertThat(MessagePriority.of(createMessage(Namespace.EventAdmin, false)), is(MessagePriority.BULK));
+        assertThat(MessagePriority.of(createMessage(Namespace.ObservationStore, false)), is(MessagePriority.BULK));
+        assertThat(MessagePriority.of(createMessage(Namespace.Base, false)), is(MessagePriority.NORMAL));
+        assertThat(MessagePriority.of(createMessage(Namespace.Asset, false)), is(MessagePriority.NORMAL));
+    }
+    
+    /**
+     * Verify encrypted messages and messages with an invalid payload are in the normal lane.
+     */
+    @Test
+    public void testUnreadablePayload()
+    {
+        TerraHarvestMessage encrypted = createMessage(Namespace.EventAdmin, false).toBuilder()
+                .setEncryptType(EncryptType.AES_ECDH_ECDSA).build();
+        assertThat(MessagePriority.of(encrypted), is(MessagePriority.NORMAL));
+        
+        TerraHarvestMessage invalid = createMessage(Namespace.EventAdmin, false).toBuilder()
+                .setTerraHarvestPayload(ByteString.copyFrom(new byte[] {(byte)0xff, (byte)0xff})).build();
+        assertThat(MessagePriority.of(invalid), is(MessagePriority.NORMAL));
+    }
+    
+    private TerraHarvestMessage createMessage(Namespace namespace, boolean isResponse)
+    {
+        return TerraHarvestMessageHelper.createTerraHarvestMessage(1, 2, namespace, 5, 
+                BaseNamespace.newBuilder().setType(BaseMessageType.ControllerInfo).build())
+                    .toBuilder().setIsResponse(isResponse).build();
+    }
+}
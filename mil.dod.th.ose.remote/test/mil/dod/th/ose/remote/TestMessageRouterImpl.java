@@ -15,12 +15,16 @@ package mil.dod.th.ose.remote;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.bind.UnmarshalException;
 
@@ -28,6 +32,7 @@ import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.RemoteChannelLookup;
 import mil.dod.th.core.remote.RemoteConstants;
+import mil.dod.th.core.remote.ResponseHandler;
 import mil.dod.th.core.remote.objectconverter.ObjectConverterException;
 import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
 import mil.dod.th.core.remote.proto.BaseMessages.GenericErrorResponseData;
@@ -47,16 +52,20 @@ import mil.dod.th.ose.remote.api.RemoteSettings.EncryptionMode;
 import mil.dod.th.ose.remote.encryption.EncryptMessageService;
 import mil.dod.th.ose.remote.encryption.InvalidKeySignatureException;
 import mil.dod.th.ose.remote.messaging.TerraHarvestMessageUtil;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 
 /**
  * @author Dave Humeniuk
@@ -96,6 +105,9 @@ public class TestMessageRouterImpl
         
         when(m_TerraSystem.getId()).thenReturn(m_SystemId);
         when(m_RemoteSettings.getEncryptionMode()).thenReturn(EncryptionMode.NONE);
+        
+        // no dispatch threads by default so messages are handled before handleMessage returns
+        m_SUT.activate();
     }
     
     /**
@@ -837,6 +849,175 @@ public class TestMessageRouterImpl
         assertThat(invalidDestEvent.getProperty(RemoteConstants.EVENT_PROP_MESSAGE), is(baseMessage));
     }
     
+    /**
+     * Verify a message service that is slow to handle a message does not hold up messages for other namespaces when
+     * dispatch threads are used, and verify each namespace records its own statistics.
+     */
+    @Test(timeout = 10000)
+    public void testParallelDispatch() throws Exception
+    {
+        when(m_RemoteSettings.getDispatchThreads()).thenReturn(2);
+        when(m_RemoteSettings.getDispatchQueueCapacity()).thenReturn(10);
+        m_SUT.deactivate();
+        m_SUT.activate();
+        
+        final CountDownLatch observationStarted = new CountDownLatch(1);
+        final CountDownLatch releaseObservation = new CountDownLatch(1);
+        MessageService observationService = mock(MessageService.class);
+        when(observationService.getNamespace()).thenReturn(Namespace.ObservationStore);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                observationStarted.countDown();
+                releaseObservation.await();
+                return null;
+            }
+        }).when(observationService).handleMessage(Mockito.any(TerraHarvestMessage.class), 
+                Mockito.any(TerraHarvestPayload.class), Mockito.any(RemoteChannel.class));
+        m_SUT.bindMessageService(observationService);
+        
+        final CountDownLatch baseHandled = new CountDownLatch(1);
+        MessageService baseService = mock(MessageService.class);
+        when(baseService.getNamespace()).thenReturn(Namespace.Base);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                baseHandled.countDown();
+                return null;
+            }
+        }).when(baseService).handleMessage(Mockito.any(TerraHarvestMessage.class), 
+                Mockito.any(TerraHarvestPayload.class), Mockito.any(RemoteChannel.class));
+        m_SUT.bindMessageService(baseService);
+        
+        RemoteChannel channel = mock(RemoteChannel.class);
+        TerraHarvestMessage observationMessage = createMessage(Namespace.ObservationStore, 1);
+        TerraHarvestMessage baseMessage = createMessage(Namespace.Base, 2);
+        
+        m_SUT.handleMessage(observationMessage, channel);
+        observationStarted.await();
+        
+        // observation service is still busy, base message is handled anyway
+        m_SUT.handleMessage(baseMessage, channel);
+        baseHandled.await();
+        
+        releaseObservation.countDown();
+        m_SUT.deactivate();
+        
+        assertThat(m_SUT.getDispatchStatistics(Namespace.ObservationStore).getHandlingTime().getCount(), is(1L));
+        assertThat(m_SUT.getDispatchStatistics(Namespace.Base).getHandlingTime().getCount(), is(1L));
+        assertThat(m_SUT.getDispatchStatistics(Namespace.Base).getQueueWait().getCount(), is(1L));
+        assertThat(m_SUT.getDispatchStatistics(Namespace.Asset).getHandlingTime().getCount(), is(0L));
+    }
+    
+    /**
+     * Verify messages for the same namespace from the same channel are handled in order when dispatch threads are 
+     * used.
+     */
+    @Test(timeout = 10000)
+    public void testDispatchOrder() throws Exception
+    {
+        when(m_RemoteSettings.getDispatchThreads()).thenReturn(4);
+        when(m_RemoteSettings.getDispatchQueueCapacity()).thenReturn(5);
+        m_SUT.deactivate();
+        m_SUT.activate();
+        
+        final List<Integer> handledIds = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch allHandled = new CountDownLatch(100);
+        MessageService baseService = mock(MessageService.class);
+        when(baseService.getNamespace()).thenReturn(Namespace.Base);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                handledIds.add(((TerraHarvestMessage)invocation.getArguments()[0]).getMessageId());
+                allHandled.countDown();
+                return null;
+            }
+        }).when(baseService).handleMessage(Mockito.any(TerraHarvestMessage.class), 
+                Mockito.any(TerraHarvestPayload.class), Mockito.any(RemoteChannel.class));
+        m_SUT.bindMessageService(baseService);
+        
+        RemoteChannel channel = mock(RemoteChannel.class);
+        List<Integer> expectedIds = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++)
+        {
+            m_SUT.handleMessage(createMessage(Namespace.Base, i), channel);
+            expectedIds.add(i);
+        }
+        allHandled.await();
+        
+        assertThat(handledIds, is(expectedIds));
+        m_SUT.deactivate();
+    }
+    
+    /**
+     * Verify parsed responses are passed to the bound response handler, and requests are not.
+     * Verify the handler is no longer called once unbound, and only the bound handler can be unbound.
+     */
+    @Test
+    public void testHandleResponse() throws Exception
+    {
+        BaseNamespace namespaceMessage = BaseNamespace.newBuilder().setType(BaseMessageType.ControllerInfo).build();
+        TerraHarvestMessage request = createMessage(Namespace.Base, 5);
+        TerraHarvestMessage response = request.toBuilder().setIsResponse(true).build();
+        TerraHarvestPayload payload = TerraHarvestPayload.parseFrom(response.getTerraHarvestPayload());
+        
+        // nothing bound, nothing to call
+        m_SUT.handleResponse(response, payload, namespaceMessage, null);
+        
+        ResponseHandler handler = mock(ResponseHandler.class);
+        m_SUT.bindResponseHandler(handler);
+        
+        m_SUT.handleResponse(request, payload, namespaceMessage, null);
+        verify(handler, never()).handleResponse(Mockito.any(TerraHarvestMessage.class), 
+                Mockito.any(TerraHarvestPayload.class), Mockito.any(Message.class), Mockito.any(Message.class));
+        
+        m_SUT.handleResponse(response, payload, namespaceMessage, null);
+        verify(handler).handleResponse(response, payload, namespaceMessage, null);
+        
+        m_SUT.unbindResponseHandler(mock(ResponseHandler.class));
+        m_SUT.handleResponse(response, payload, namespaceMessage, null);
+        verify(handler, times(2)).handleResponse(response, payload, namespaceMessage, null);
+        
+        m_SUT.unbindResponseHandler(handler);
+        m_SUT.handleResponse(response, payload, namespaceMessage, null);
+        verify(handler, times(2)).handleResponse(response, payload, namespaceMessage, null);
+    }
+    
+    /**
+     * Verify the topic interest service is shared with the message services while bound.
+     */
+    @Test
+    public void testEventTopicInterest()
+    {
+        assertThat(m_SUT.getEventTopicInterest(), is(nullValue()));
+        
+        EventTopicInterest topicInterest = mock(EventTopicInterest.class);
+        m_SUT.setEventTopicInterest(topicInterest);
+        assertThat(m_SUT.getEventTopicInterest(), is(topicInterest));
+        
+        m_SUT.unsetEventTopicInterest(topicInterest);
+        assertThat(m_SUT.getEventTopicInterest(), is(nullValue()));
+    }
+    
+    /**
+     * Create an unencrypted message for the given namespace and have the encryption service return its payload.
+     */
+    private TerraHarvestMessage createMessage(Namespace namespace, int messageId) throws Exception
+    {
+        BaseNamespace namespaceMessage = BaseNamespace.newBuilder().setType(BaseMessageType.ControllerInfo).build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, m_SystemId, namespace, 
+                messageId, namespaceMessage);
+        when(m_EcryptService.decryptRemoteMessage(message))
+            .thenReturn(TerraHarvestPayload.parseFrom(message.getTerraHarvestPayload()));
+        return message;
+    }
+    
     public void verifyBaseErrorResponse(RemoteChannel channel, ErrorCode errorCode, String errorDescription) 
         throws InvalidProtocolBufferException
     {
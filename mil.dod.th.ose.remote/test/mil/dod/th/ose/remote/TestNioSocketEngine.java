@@ -0,0 +1,402 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import static org.mockito.Mockito.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.protobuf.ByteString;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.test.LoggingServiceMocker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the NIO socket engine using real loopback sockets.
+ */
+public class TestNioSocketEngine
+{
+    private NioSocketEngine m_SUT;
+    private LoggingService m_Logging;
+    private RemoteSettings m_RemoteSettings;
+    private ServerSocketChannel m_ServerChannel;
+    private List<Socket> m_Clients = new ArrayList<Socket>();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        m_SUT = new NioSocketEngine();
+        
+        m_Logging = LoggingServiceMocker.createMock();
+        m_SUT.setLoggingService(m_Logging);
+        
+        m_RemoteSettings = mock(RemoteSettings.class);
+        when(m_RemoteSettings.getNioSelectorThreads()).thenReturn(2);
+        when(m_RemoteSettings.getNioWorkerThreads()).thenReturn(4);
+        when(m_RemoteSettings.getMaxMessageSize()).thenReturn(1024L * 1024L);
+        when(m_RemoteSettings.getSendQueueCapacity()).thenReturn(500);
+        when(m_RemoteSettings.getSendQueueMaxBytes()).thenReturn(16L * 1024L * 1024L);
+        m_SUT.setRemoteSettings(m_RemoteSettings);
+        
+        m_ServerChannel = ServerSocketChannel.open();
+        m_ServerChannel.bind(new InetSocketAddress("localhost", 0), 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        m_SUT.deactivate();
+        m_ServerChannel.close();
+        for (Socket client : m_Clients)
+        {
+            client.close();
+        }
+    }
+
+    /**
+     * Verify messages written by the remote side are passed to the handler in order and messages sent through the
+     * connection are received by the remote side.
+     */
+    @Test(timeout = 10000)
+    public void testSendReceive() throws Exception
+    {
+        QueueHandler handler = new QueueHandler();
+        Socket client = connect();
+        NioConnection connection = register(handler);
+        
+        for (int i = 0; i < 100; i++)
+        {
+            createMessage(i).writeDelimitedTo(client.getOutputStream());
+        }
+        client.getOutputStream().flush();
+        
+        for (int i = 0; i < 100; i++)
+        {
+            ByteString frame = handler.m_Frames.poll(5, TimeUnit.SECONDS);
+            assertThat(TerraHarvestMessage.parseFrom(frame).getMessageId(), is(i));
+        }
+        assertThat(connection.getBytesRead(), is((long)100 * createMessage(0).toByteArray().length + 100));
+        
+        for (int i = 0; i < 100; i++)
+        {
+            assertThat(connection.queue(createMessage(i)), is(true));
+        }
+        for (int i = 0; i < 100; i++)
+        {
+            TerraHarvestMessage message = TerraHarvestMessage.parseDelimitedFrom(client.getInputStream());
+            assertThat(message, is(createMessage(i)));
+        }
+        assertThat(connection.getBytesWritten(), is(connection.getBytesRead()));
+        assertThat(connection.getQueuedMessageCount(), is(0));
+        assertThat(connection.getQueuedByteCount(), is(0L));
+        // handler is told after the write completes, which may be just after the remote side has read the messages
+        while (handler.m_MessagesWritten.get() < 100)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(handler.m_MessagesWritten.get(), is(100));
+        assertThat(m_SUT.getConnectionCount(), is(1)); // registered with selector once data was received
+    }
+
+    /**
+     * Verify the handler is told when the remote side closes the socket, after all received frames are handled.
+     */
+    @Test(timeout = 10000)
+    public void testRemoteClose() throws Exception
+    {
+        QueueHandler handler = new QueueHandler();
+        Socket client = connect();
+        NioConnection connection = register(handler);
+        
+        createMessage(1).writeDelimitedTo(client.getOutputStream());
+        client.close();
+        
+        assertThat(handler.m_Closed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(handler.m_Frames.size(), is(1));
+        assertThat(connection.isClosed(), is(true));
+        assertThat(connection.queue(createMessage(2)), is(false));
+    }
+
+    /**
+     * Verify closing the connection closes the socket and tells the handler.
+     */
+    @Test(timeout = 10000)
+    public void testClose() throws Exception
+    {
+        QueueHandler handler = new QueueHandler();
+        Socket client = connect();
+        NioConnection connection = register(handler);
+        
+        connection.close();
+        connection.close();
+        
+        assertThat(client.getInputStream().read(), is(-1));
+        assertThat(handler.m_Closed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(handler.m_ClosedCount.get(), is(1));
+    }
+
+    /**
+     * Verify the socket is closed if the remote side sends a message larger than the max message size.
+     */
+    @Test(timeout = 10000)
+    public void testOverMaxSize() throws Exception
+    {
+        when(m_RemoteSettings.getMaxMessageSize()).thenReturn(10L);
+        QueueHandler handler = new QueueHandler();
+        Socket client = connect();
+        NioConnection connection = register(handler);
+        
+        createMessage(1).writeDelimitedTo(client.getOutputStream());
+        
+        assertThat(handler.m_Closed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(handler.m_Frames.size(), is(0));
+        assertThat(connection.isClosed(), is(true));
+        verify(m_Logging).error(eq("Error reading message: %s"), anyVararg());
+    }
+
+    /**
+     * Verify messages are rejected once the outbound queue is full because the remote side is not reading, and that
+     * clearing the queue allows messages to be queued again.
+     */
+    @Test(timeout = 20000)
+    public void testOutboundCapacity() throws Exception
+    {
+        connect();
+        NioConnection connection = register(new QueueHandler());
+        
+        TerraHarvestMessage largeMessage = createMessage(1).toBuilder()
+                .setTerraHarvestPayload(ByteString.copyFrom(new byte[64 * 1024])).build();
+        int rejected = 0;
+        for (int i = 0; i < 1000; i++)
+        {
+            if (!connection.queue(largeMessage))
+            {
+                rejected++;
+            }
+        }
+        
+        assertThat(rejected, is(greaterThan(0)));
+        assertThat(connection.getQueuedMessageCount(), is(lessThanOrEqualTo(500)));
+        assertThat(connection.getDroppedMessageCount(), is((long)rejected));
+        int queued = connection.getQueuedMessageCount();
+        
+        connection.clearQueue();
+        
+        // partially written message is kept
+        assertThat(connection.getQueuedMessageCount(), is(lessThanOrEqualTo(1)));
+        assertThat(connection.getDroppedMessageCount(), 
+                is((long)(rejected + queued - connection.getQueuedMessageCount())));
+        assertThat(connection.queue(largeMessage), is(true));
+    }
+
+    /**
+     * Verify messages are rejected once the configured number of bytes are queued, but a single message larger than 
+     * the limit is accepted if nothing else is queued.
+     */
+    @Test(timeout = 20000)
+    public void testOutboundByteLimit() throws Exception
+    {
+        when(m_RemoteSettings.getSendQueueMaxBytes()).thenReturn(256L * 1024L);
+        connect();
+        NioConnection connection = register(new QueueHandler());
+        
+        TerraHarvestMessage hugeMessage = createMessage(1).toBuilder()
+                .setTerraHarvestPayload(ByteString.copyFrom(new byte[512 * 1024])).build();
+        TerraHarvestMessage largeMessage = createMessage(2).toBuilder()
+                .setTerraHarvestPayload(ByteString.copyFrom(new byte[64 * 1024])).build();
+        
+        int rejected = 0;
+        for (int i = 0; i < 100; i++)
+        {
+            if (!connection.queue(largeMessage))
+            {
+                rejected++;
+            }
+            assertThat(connection.getQueuedByteCount(), is(lessThanOrEqualTo(256L * 1024L)));
+        }
+        assertThat(rejected, is(greaterThan(0)));
+        
+        connection.clearQueue();
+        if (connection.getQueuedMessageCount() == 0)
+        {
+            assertThat(connection.queue(hugeMessage), is(true));
+        }
+    }
+
+    /**
+     * Verify many connections are handled by the engine's small, fixed set of threads.  Each connection sends a
+     * message that is echoed back by the handler.  The load test with many more connections is part of the remote 
+     * integration tests.
+     */
+    @Test(timeout = 20000)
+    public void testManyConnections() throws Exception
+    {
+        final int connections = 20;
+        final CountDownLatch closed = new CountDownLatch(connections);
+        
+        for (int i = 0; i < connections; i++)
+        {
+            connect();
+            EchoHandler handler = new EchoHandler(closed);
+            handler.m_Connection = register(handler);
+        }
+        
+        // registration is completed asynchronously by the selector threads
+        for (int i = 0; i < 50 && m_SUT.getConnectionCount() < connections; i++)
+        {
+            Thread.sleep(100);
+        }
+        assertThat(m_SUT.getConnectionCount(), is(connections));
+        
+        for (int i = 0; i < connections; i++)
+        {
+            createMessage(i).writeDelimitedTo(m_Clients.get(i).getOutputStream());
+        }
+        for (int i = 0; i < connections; i++)
+        {
+            TerraHarvestMessage echo = TerraHarvestMessage.parseDelimitedFrom(m_Clients.get(i).getInputStream());
+            assertThat(echo.getMessageId(), is(i));
+        }
+        
+        // 2 selector threads and at most 4 worker threads regardless of the number of connections
+        assertThat(countEngineThreads(), is(lessThanOrEqualTo(6)));
+        
+        for (Socket client : m_Clients)
+        {
+            client.close();
+        }
+        assertThat(closed.await(10, TimeUnit.SECONDS), is(true));
+    }
+
+    private NioConnection register(final NioConnection.Handler handler) throws IOException
+    {
+        NioConnection connection = m_SUT.createConnection(m_ServerChannel.accept(), handler);
+        connection.start();
+        return connection;
+    }
+
+    private Socket connect() throws IOException
+    {
+        SocketChannel clientChannel = SocketChannel.open(m_ServerChannel.getLocalAddress());
+        Socket client = clientChannel.socket();
+        m_Clients.add(client);
+        return client;
+    }
+
+    private int countEngineThreads()
+    {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if (thread.getName().startsWith("RemoteNio"))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private TerraHarvestMessage createMessage(final int messageId)
+    {
+        BaseNamespace baseNamespaceMessage = BaseNamespace.newBuilder()
+                .setType(BaseMessageType.ControllerInfo)
+                .build();
+        return TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Base, messageId, 
+                baseNamespaceMessage);
+    }
+
+    private static class QueueHandler implements NioConnection.Handler
+    {
+        private final BlockingQueue<ByteString> m_Frames = new LinkedBlockingQueue<ByteString>();
+        private final CountDownLatch m_Closed = new CountDownLatch(1);
+        private final AtomicInteger m_ClosedCount = new AtomicInteger();
+        private final AtomicInteger m_MessagesWritten = new AtomicInteger();
+
+        @Override
+        public void frameReceived(final ByteString frame)
+        {
+            m_Frames.add(frame);
+        }
+
+        @Override
+        public void messagesWritten(final int count)
+        {
+            m_MessagesWritten.addAndGet(count);
+        }
+
+        @Override
+        public void connectionClosed()
+        {
+            m_ClosedCount.incrementAndGet();
+            m_Closed.countDown();
+        }
+    }
+
+    private static class EchoHandler implements NioConnection.Handler
+    {
+        private final CountDownLatch m_Closed;
+        private volatile NioConnection m_Connection;
+
+        EchoHandler(final CountDownLatch closed)
+        {
+            m_Closed = closed;
+        }
+
+        @Override
+        public void frameReceived(final ByteString frame)
+        {
+            try
+            {
+                m_Connection.queue(TerraHarvestMessage.parseFrom(frame));
+            }
+            catch (final IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void messagesWritten(final int count)
+        {
+            // not needed
+        }
+
+        @Override
+        public void connectionClosed()
+        {
+            m_Closed.countDown();
+        }
+    }
+}
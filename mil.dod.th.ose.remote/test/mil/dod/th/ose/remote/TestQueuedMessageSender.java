@@ -16,8 +16,15 @@ import static org.mockito.Mockito.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
 
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannel;
@@ -25,6 +32,7 @@ import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
 import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
 import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 
 import org.junit.Before;
@@ -45,21 +53,38 @@ public class TestQueuedMessageSender
     private int m_NextMessageIndex;
     private boolean m_OutOfOrderDetected;
     private LoggingService m_Logging;
+    private RemoteSettings m_RemoteSettings;
     
     @Before
     public void setUp()
     {
-        m_SUT = new QueuedMessageSender();
-        
         m_Logging = LoggingServiceMocker.createMock();
-        m_SUT.setLoggingService(m_Logging);
-        
         m_Channel = mock(RemoteChannel.class);
+        m_RemoteSettings = mock(RemoteSettings.class);
+        when(m_RemoteSettings.getSendQueueCapacity()).thenReturn(QueuedMessageSender.QUEUE_CAPACITY);
+        when(m_RemoteSettings.getSendQueueMaxBytes()).thenReturn(16L * 1024L * 1024L);
+        
+        m_SUT = createSender(null);
+    }
+    
+    /**
+     * Create and activate a sender for the mocked channel.
+     */
+    private QueuedMessageSender createSender(QueuedMessageSender.BatchWriter batchWriter)
+    {
+        QueuedMessageSender sender = new QueuedMessageSender();
+        sender.setLoggingService(m_Logging);
+        sender.setRemoteSettings(m_RemoteSettings);
         
         // simulate activation of the component
         Map<String, Object> properties = new HashMap<String, Object>();
         properties.put(QueuedMessageSender.CHANNEL_PROP_KEY, m_Channel);
-        m_SUT.activate(properties);
+        if (batchWriter != null)
+        {
+            properties.put(QueuedMessageSender.BATCH_WRITER_PROP_KEY, batchWriter);
+        }
+        sender.activate(properties);
+        return sender;
     }
     
     /**
@@ -84,10 +109,13 @@ public class TestQueuedMessageSender
         
         // verify actually sent to channel and only once
         verify(m_Channel, times(1)).trySendMessage(message);
+        assertThat(m_SUT.getSentMessageCount(), is(1L));
+        assertThat(m_SUT.getQueuedMessageCount(), is(0));
+        assertThat(m_SUT.getQueuedByteCount(), is(0L));
     }
     
     /**
-     * Verify that is the send fails, the component will attempt to send again until successful.
+     * Verify that is the send fails, the component will attempt to send again with an increasing interval.
      */
     @Test
     public void testQueueingWithInitialFailure() throws InterruptedException
@@ -103,10 +131,17 @@ public class TestQueuedMessageSender
         // wait for the sender thread to attempt sending message
         Thread.sleep(2000);
         
-        // verify message was attempted multiple times, retry is 1000, slept 2000, so should be 2-3 times depending on 
-        // timing
-        verify(m_Channel, atLeast(2)).trySendMessage(message);
-        verify(m_Channel, atMost(3)).trySendMessage(message);
+        // retry interval starts at 100 ms and doubles, each wait is between half and all of the interval, so within 
+        // 2000 ms there will be the initial attempt and 3 to 5 retries
+        verify(m_Channel, atLeast(4)).trySendMessage(message);
+        verify(m_Channel, atMost(6)).trySendMessage(message);
+        assertThat(m_SUT.getSentMessageCount(), is(0L));
+        
+        // once the channel is available, message is sent and the queue emptied
+        when(m_Channel.trySendMessage(Mockito.any(TerraHarvestMessage.class))).thenReturn(true);
+        Thread.sleep(2000);
+        assertThat(m_SUT.getSentMessageCount(), is(1L));
+        assertThat(m_SUT.getQueuedMessageCount(), is(0));
     }
     
     /**
@@ -201,8 +236,8 @@ public class TestQueuedMessageSender
         assertThat("queue is empty initially", m_SUT.getQueuedMessageCount(), is(0));
         
         boolean result;
-        //Add one to the capacity to account for the message that is currently trying to be sent.
-        for (int i=1; i <= QueuedMessageSender.QUEUE_CAPACITY+1; i++)
+        // capacity includes the messages currently trying to be sent
+        for (int i=1; i <= QueuedMessageSender.QUEUE_CAPACITY; i++)
         {
             TerraHarvestMessage message = constructMessage(i);
             result = m_SUT.queue(message);
@@ -215,12 +250,15 @@ public class TestQueuedMessageSender
         TerraHarvestMessage message = constructMessage(1000);
         result = m_SUT.queue(message);
         assertThat("not able to queue since at limit", result, is(false));
+        assertThat(m_SUT.getDroppedMessageCount(), is(1L));
         
         //empty the queue.
         m_SUT.clearQueue();
         
         //verify
         assertThat("queue was emptied", m_SUT.getQueuedMessageCount(), is(0));
+        assertThat(m_SUT.getQueuedByteCount(), is(0L));
+        assertThat(m_SUT.getDroppedMessageCount(), is(1L + QueuedMessageSender.QUEUE_CAPACITY));
         
         //try to queue a message
         message = constructMessage(1001);
@@ -259,15 +297,150 @@ public class TestQueuedMessageSender
         assertThat("queue was emptied", m_SUT.getQueuedMessageCount(), is(0));
     }
 
+    /**
+     * Verify messages are rejected once the byte limit is reached, except for a message larger than the limit when the 
+     * queue is empty.
+     */
+    @Test
+    public void testQueueByteLimit() throws InterruptedException
+    {
+        when(m_Channel.trySendMessage(Mockito.any(TerraHarvestMessage.class))).thenReturn(false);
+        
+        TerraHarvestMessage message = constructMessage(1);
+        int size = message.getSerializedSize();
+        when(m_RemoteSettings.getSendQueueMaxBytes()).thenReturn(size * 3L);
+        m_SUT.deactivate();
+        m_SUT = createSender(null);
+        
+        for (int i = 1; i <= 3; i++)
+        {
+            assertThat(m_SUT.queue(constructMessage(i)), is(true));
+        }
+        assertThat(m_SUT.getQueuedByteCount(), is(size * 3L));
+        assertThat(m_SUT.queue(constructMessage(4)), is(false));
+        assertThat(m_SUT.getDroppedMessageCount(), is(1L));
+        
+        m_SUT.clearQueue();
+        
+        TerraHarvestMessage largeMessage = TerraHarvestMessageHelper.createTerraHarvestMessage(1, 2, Namespace.Base, 5,
+                BaseNamespace.newBuilder().setType(BaseMessageType.ControllerInfo)
+                    .setData(ByteString.copyFrom(new byte[size * 4])).build());
+        assertThat(m_SUT.queue(largeMessage), is(true));
+        assertThat(m_SUT.queue(constructMessage(6)), is(false));
+    }
+    
+    /**
+     * Verify responses are sent ahead of queued requests, and requests ahead of queued events and observations.
+     */
+    @Test
+    public void testPriorityLanes() throws InterruptedException
+    {
+        final CountDownLatch firstSendLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final List<Integer> sentIds = Collections.synchronizedList(new ArrayList<Integer>());
+        
+        // first send blocks so the remaining messages queue up behind it
+        when(m_Channel.trySendMessage(Mockito.any(TerraHarvestMessage.class))).thenAnswer(new Answer<Boolean>()
+        {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable
+            {
+                firstSendLatch.countDown();
+                releaseLatch.await();
+                sentIds.add(((TerraHarvestMessage)invocation.getArguments()[0]).getMessageId());
+                return true;
+            }
+        });
+        
+        m_SUT.queue(constructMessage(1));
+        assertThat(firstSendLatch.await(5, TimeUnit.SECONDS), is(true));
+        
+        m_SUT.queue(constructMessage(2, Namespace.EventAdmin, false));
+        m_SUT.queue(constructMessage(3, Namespace.ObservationStore, false));
+        m_SUT.queue(constructMessage(4, Namespace.Base, false));
+        m_SUT.queue(constructMessage(5, Namespace.Base, true));
+        releaseLatch.countDown();
+        
+        Thread.sleep(1000);
+        
+        assertThat(sentIds, contains(1, 5, 4, 2, 3));
+        assertThat(m_SUT.getSentMessageCount(), is(5L));
+    }
+    
+    /**
+     * Verify queued messages are passed to the batch writer together and messages that were not sent are retried.
+     */
+    @Test
+    public void testBatchWriter() throws InterruptedException
+    {
+        m_SUT.deactivate();
+        
+        final CountDownLatch firstSendLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        QueuedMessageSender.BatchWriter batchWriter = new QueuedMessageSender.BatchWriter()
+        {
+            @Override
+            public int trySendMessages(List<TerraHarvestMessage> messages)
+            {
+                firstSendLatch.countDown();
+                try
+                {
+                    releaseLatch.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return 0;
+                }
+                List<Integer> ids = new ArrayList<Integer>();
+                for (TerraHarvestMessage message : messages)
+                {
+                    ids.add(message.getMessageId());
+                }
+                batches.add(ids);
+                
+                // only send the first 2 messages of the second batch
+                return batches.size() == 2 ? 2 : messages.size();
+            }
+        };
+        m_SUT = createSender(batchWriter);
+        
+        m_SUT.queue(constructMessage(1));
+        assertThat(firstSendLatch.await(5, TimeUnit.SECONDS), is(true));
+        for (int i = 2; i <= 5; i++)
+        {
+            m_SUT.queue(constructMessage(i));
+        }
+        releaseLatch.countDown();
+        
+        Thread.sleep(1000);
+        
+        assertThat(batches.size(), is(3));
+        assertThat(batches.get(0), contains(1));
+        assertThat(batches.get(1), contains(2, 3, 4, 5));
+        assertThat(batches.get(2), contains(4, 5));
+        assertThat(m_SUT.getSentMessageCount(), is(5L));
+        assertThat(m_SUT.getQueuedMessageCount(), is(0));
+        verify(m_Channel, never()).trySendMessage(Mockito.any(TerraHarvestMessage.class));
+    }
+
     /**
      * Create a basic message for testing.
      */
     private TerraHarvestMessage constructMessage(int messageId)
+    {
+        return constructMessage(messageId, Namespace.Base, false);
+    }
+
+    /**
+     * Create a message for testing in the given namespace.
+     */
+    private TerraHarvestMessage constructMessage(int messageId, Namespace namespace, boolean isResponse)
     {
         BaseNamespace baseNamespaceMessage = BaseNamespace.newBuilder().setType(BaseMessageType.ControllerInfo).build();
         TerraHarvestMessage message = 
-                TerraHarvestMessageHelper.createTerraHarvestMessage(1, 2, Namespace.Base, messageId, 
+                TerraHarvestMessageHelper.createTerraHarvestMessage(1, 2, namespace, messageId, 
                         baseNamespaceMessage);
-        return message;
+        return message.toBuilder().setIsResponse(isResponse).build();
     }
 }
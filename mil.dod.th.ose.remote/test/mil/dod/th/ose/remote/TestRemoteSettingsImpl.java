@@ -22,6 +22,7 @@ import java.util.Map;
 
 import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.api.RemoteSettings.EncryptionMode;
+import mil.dod.th.ose.remote.api.RemoteSettings.SocketEngine;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -157,4 +158,94 @@ public class TestRemoteSettingsImpl
         assertThat(m_SUT.getEncryptionMode(), is(EncryptionMode.AES_ECDH_ECDSA));
         assertThat(m_SUT.getMaxMessageSize(), is(1L));
     }
+    
+    /**
+     * Test the socket engine defaults to a thread per socket and can be changed to the NIO selector engine.
+     */
+    @Test
+    public void testSocketEngine()
+    {
+        m_SUT.activate(m_Context, m_Props);
+        assertThat(m_SUT.getSocketEngine(), is(SocketEngine.THREAD_PER_SOCKET));
+        assertThat(m_SUT.getNioSelectorThreads(), is(2));
+        assertThat(m_SUT.getNioWorkerThreads(), is(4));
+        
+        m_Props.put(RemoteSettings.KEY_SOCKET_ENGINE, "NIO_SELECTOR");
+        m_Props.put(RemoteSettings.KEY_NIO_SELECTOR_THREADS, 3);
+        m_Props.put(RemoteSettings.KEY_NIO_WORKER_THREADS, 8);
+        m_SUT.modified(m_Props);
+        
+        assertThat(m_SUT.getSocketEngine(), is(SocketEngine.NIO_SELECTOR));
+        assertThat(m_SUT.getNioSelectorThreads(), is(3));
+        assertThat(m_SUT.getNioWorkerThreads(), is(8));
+    }
+    
+    /**
+     * Verify the send queue limits default and can be updated.
+     */
+    @Test
+    public void testSendQueueLimits()
+    {
+        m_SUT.activate(m_Context, m_Props);
+        assertThat(m_SUT.getSendQueueCapacity(), is(500));
+        assertThat(m_SUT.getSendQueueMaxBytes(), is(16777216L));
+        
+        m_Props.put(RemoteSettings.KEY_SEND_QUEUE_CAPACITY, 1000);
+        m_Props.put(RemoteSettings.KEY_SEND_QUEUE_MAX_BYTES, 1024L);
+        m_SUT.modified(m_Props);
+        
+        assertThat(m_SUT.getSendQueueCapacity(), is(1000));
+        assertThat(m_SUT.getSendQueueMaxBytes(), is(1024L));
+    }
+    
+    /**
+     * Verify the dispatch settings default and can be updated.
+     */
+    @Test
+    public void testDispatchSettings()
+    {
+        m_SUT.activate(m_Context, m_Props);
+        assertThat(m_SUT.getDispatchThreads(), is(4));
+        assertThat(m_SUT.getDispatchQueueCapacity(), is(100));
+        
+        m_Props.put(RemoteSettings.KEY_DISPATCH_THREADS, 0);
+        m_Props.put(RemoteSettings.KEY_DISPATCH_QUEUE_CAPACITY, 10);
+        m_SUT.modified(m_Props);
+        
+        assertThat(m_SUT.getDispatchThreads(), is(0));
+        assertThat(m_SUT.getDispatchQueueCapacity(), is(10));
+    }
+    
+    /**
+     * Verify the response handler timeout defaults and can be updated.
+     */
+    @Test
+    public void testResponseHandlerTimeout()
+    {
+        m_SUT.activate(m_Context, m_Props);
+        assertThat(m_SUT.getResponseHandlerTimeout(), is(300000L));
+        
+        m_Props.put(RemoteSettings.KEY_RESPONSE_HANDLER_TIMEOUT, 5000L);
+        m_SUT.modified(m_Props);
+        
+        assertThat(m_SUT.getResponseHandlerTimeout(), is(5000L));
+    }
+
+    /**
+     * Verify the remote event forwarding settings default and can be changed.
+     */
+    @Test
+    public void testEventSettings()
+    {
+        m_SUT.activate(m_Context, m_Props);
+        assertThat(m_SUT.getEventQueueCapacity(), is(1000));
+        assertThat(m_SUT.getEventBatchSize(), is(25));
+        
+        m_Props.put(RemoteSettings.KEY_EVENT_QUEUE_CAPACITY, 50);
+        m_Props.put(RemoteSettings.KEY_EVENT_BATCH_SIZE, 5);
+        m_SUT.modified(m_Props);
+        
+        assertThat(m_SUT.getEventQueueCapacity(), is(50));
+        assertThat(m_SUT.getEventBatchSize(), is(5));
+    }
 }
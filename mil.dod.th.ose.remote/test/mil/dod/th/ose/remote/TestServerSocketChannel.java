@@ -114,7 +114,7 @@ public class TestServerSocketChannel
     @SuppressWarnings({ "rawtypes", "unchecked" })
     // this timeout is less then time the thread below blocks to prove it is blocking on a separate thread
     @Test(timeout = 2000)
-    public void testActivate() throws InterruptedException
+    public void testActivate() throws IOException, InterruptedException
     {
         // mock the input
         Socket socket = mock(Socket.class);
@@ -172,7 +172,7 @@ public class TestServerSocketChannel
      * Verify that the wake lock is activated when enabled by the remote settings.
      */
     @Test
-    public void testActivateWakeLock() throws InterruptedException
+    public void testActivateWakeLock() throws IOException, InterruptedException
     {
         // mock the input
         Socket socket = mock(Socket.class);
@@ -339,6 +339,7 @@ public class TestServerSocketChannel
         SocketAddress socketAddress = mock(SocketAddress.class);
         when(socketAddress.toString()).thenReturn(REMOTE_SOCKET_ADDR);
         when(socket.getRemoteSocketAddress()).thenReturn(socketAddress);
+        when(socket.getOutputStream()).thenReturn(mock(OutputStream.class));
         
         // activate method expects a connected socket to be passed in
         Map<String, Object> props = new HashMap<String, Object>();
@@ -448,7 +449,7 @@ public class TestServerSocketChannel
      * Verify count is returned from queue.
      */
     @Test
-    public void testGetQueuedMessageCount()
+    public void testGetQueuedMessageCount() throws IOException
     {
         // activate the component with mocked socket
         Socket socket = mock(Socket.class);
@@ -471,7 +472,7 @@ public class TestServerSocketChannel
      * Verify message senders clear queue call is made.
      */
     @Test
-    public void testEmptyQueue()
+    public void testEmptyQueue() throws IOException
     {
         // activate the component with mocked socket
         Socket socket = mock(Socket.class);
@@ -492,7 +493,7 @@ public class TestServerSocketChannel
      * Verify the matches method returns true if the socket property matches
      */
     @Test
-    public void testMatches()
+    public void testMatches() throws IOException
     {
         // mock some different property values
         Socket socket1 = mock(Socket.class);
@@ -543,7 +544,7 @@ public class TestServerSocketChannel
      * Verify port returned is the one associated with the incoming socket. 
      */
     @Test
-    public void testGetPort()
+    public void testGetPort() throws IOException
     {
         // mock the socket
         Socket socket = mock(Socket.class);
@@ -564,7 +565,7 @@ public class TestServerSocketChannel
      * Verify host returned is the one associated with the incoming socket. 
      */
     @Test
-    public void testGetHost()
+    public void testGetHost() throws IOException
     {
         // mock the socket and its InetAddress as it contains the hostname used by the method
         Socket socket = mock(Socket.class);
@@ -587,7 +588,7 @@ public class TestServerSocketChannel
      * Verify SSL flag returned is the one associated with the incoming socket. 
      */
     @Test
-    public void testIsSslEnabled()
+    public void testIsSslEnabled() throws IOException
     {
         // mock the socket
         Socket socket = mock(SSLSocket.class);
@@ -604,7 +605,7 @@ public class TestServerSocketChannel
      * Verify SSL flag returned is the one associated with the incoming socket. 
      */
     @Test
-    public void testIsSslDisabled()
+    public void testIsSslDisabled() throws IOException
     {
         // mock the socket
         Socket socket = mock(Socket.class);
@@ -621,7 +622,7 @@ public class TestServerSocketChannel
      * Verify toString prints a short readable string.
      */
     @Test
-    public void testToString()
+    public void testToString() throws IOException
     {
         // mock the socket so getHost and getPort work
         Socket socket = mock(Socket.class);
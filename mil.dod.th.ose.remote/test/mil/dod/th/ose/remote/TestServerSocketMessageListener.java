@@ -26,6 +26,8 @@ import java.util.concurrent.TimeUnit;
 
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannelLookup;
+import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.remote.api.RemoteSettings.SocketEngine;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.ose.utils.ServerSocketFactory;
 
@@ -53,6 +55,7 @@ public class TestServerSocketMessageListener
     // used to queue mocked accept method to throw exception
     private Semaphore m_CloseSocketSem = new Semaphore(0);
     private LoggingService m_Logging;
+    private RemoteSettings m_RemoteSettings;
 
     @Before
     public void setUp() throws Exception
@@ -68,6 +71,10 @@ public class TestServerSocketMessageListener
         m_RemoteChannelLookup = mock(RemoteChannelLookup.class);
         m_SUT.setRemoteChannelLookup(m_RemoteChannelLookup);
         
+        m_RemoteSettings = mock(RemoteSettings.class);
+        when(m_RemoteSettings.getSocketEngine()).thenReturn(SocketEngine.THREAD_PER_SOCKET);
+        m_SUT.setRemoteSettings(m_RemoteSettings);
+        
         // mock server socket factory to create the correct server socket
         m_ServerSocket = mock(ServerSocket.class);
         when(m_Factory.createServerSocket(anyInt(), anyBoolean())).thenReturn(m_ServerSocket);
@@ -156,6 +163,45 @@ public class TestServerSocketMessageListener
         verify(m_Factory).createServerSocket(4500, false);
     }
 
+    /**
+     * Verify the server socket is created from a server socket channel when the NIO selector engine is selected, so 
+     * accepted sockets can be serviced by the {@link NioSocketEngine}.
+     */
+    @Test
+    public void testActivateNioSelector() throws IOException
+    {
+        when(m_RemoteSettings.getSocketEngine()).thenReturn(SocketEngine.NIO_SELECTOR);
+        java.nio.channels.ServerSocketChannel serverChannel = mock(java.nio.channels.ServerSocketChannel.class);
+        when(serverChannel.socket()).thenReturn(m_ServerSocket);
+        when(m_Factory.createServerSocketChannel(anyInt())).thenReturn(serverChannel);
+        
+        BundleContext contextNoProp = mock(BundleContext.class);
+        m_SUT.activate(contextNoProp);
+        
+        verify(m_Factory).createServerSocketChannel(ServerSocketMessageListener.DEFAULT_PORT);
+        verify(m_Factory, never()).createServerSocket(anyInt(), anyBoolean());
+        
+        m_SUT.deactivate();
+    }
+    
+    /**
+     * Verify SSL server sockets do not use the NIO selector engine even if selected.
+     */
+    @Test
+    public void testActivateNioSelectorSsl() throws IOException
+    {
+        when(m_RemoteSettings.getSocketEngine()).thenReturn(SocketEngine.NIO_SELECTOR);
+        
+        BundleContext context = mock(BundleContext.class);
+        when(context.getProperty(ServerSocketMessageListener.SSL_PROP_KEY)).thenReturn("true");
+        m_SUT.activate(context);
+        
+        verify(m_Factory).createServerSocket(ServerSocketMessageListener.DEFAULT_PORT, true);
+        verify(m_Factory, never()).createServerSocketChannel(anyInt());
+        
+        m_SUT.deactivate();
+    }
+
     /**
      * Verify socket stops listening on port and all child threads are stopped.
      */
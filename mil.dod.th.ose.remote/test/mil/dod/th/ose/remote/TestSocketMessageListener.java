@@ -587,18 +587,19 @@ public class TestSocketMessageListener extends SocketMessageListener
             public Integer answer(InvocationOnMock invocation) throws Throwable
             {
                 byte[] buffer = (byte[])invocation.getArguments()[0];
-                if (step == 0)  // first read will get the first half of the message
+                int offset = (Integer)invocation.getArguments()[1];
+                if (step == 0)  // first read will get the first part of the message
                 {
-                    System.arraycopy(output.toByteArray(), 1, buffer, 0, 4);
+                    System.arraycopy(output.toByteArray(), 1, buffer, offset, 4);
                     step++;
                     return 4;
                 }
                 
                 Thread.sleep(50); // simulate break between reads
                 // copy in the rest of the message buffer to be read back
-                System.arraycopy(output.toByteArray(), 5, buffer, 4, messageSize - 4);
-                step = 0; // reset to first step to get 1st half next time
-                return 4;
+                System.arraycopy(output.toByteArray(), 5, buffer, offset, messageSize - 4);
+                step = 0; // reset to first step to get 1st part next time
+                return messageSize - 4;
             }
         });
         
@@ -763,6 +764,57 @@ public class TestSocketMessageListener extends SocketMessageListener
         verify(m_Logging, never()).error(Mockito.any(Throwable.class), anyString());
     }
     
+    /**
+     * Verify a message larger than the read buffer is read in multiple reads, parsed intact and counted in the decode 
+     * statistics.
+     */
+    @Test
+    public void testRunLargeMessage() throws InterruptedException, IOException
+    {
+        when(m_RemoteSettings.getMaxMessageSize()).thenReturn(1024L * 1024L);
+        
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++)
+        {
+            data[i] = (byte)i;
+        }
+        BaseNamespace baseMessage = BaseNamespace.newBuilder().
+                setType(BaseMessageType.GenericErrorResponse).
+                setData(ByteString.copyFrom(data)).
+                build();
+        final TerraHarvestMessage message = 
+                TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Base, 100, baseMessage);
+        final TerraHarvestMessage message2 = TerraHarvestMessageHelper.createBaseMessage();
+        
+        Map<String, Object> props = new HashMap<String, Object>();
+        Socket socket = mock(Socket.class);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        message.writeDelimitedTo(output);
+        message2.writeDelimitedTo(output);
+        
+        InputStream inStream = spy(new ByteArrayInputStream(output.toByteArray()));
+        when(socket.getInputStream()).thenReturn(inStream);
+        props.put(SocketMessageListener.SOCKET_PROP_KEY, socket);
+        AbstractSocketChannel channel = mock(AbstractSocketChannel.class);
+        props.put(SocketMessageListener.CHANNEL_PROP_KEY, channel);
+        m_SUT.activate(props);
+        
+        Thread thread = new Thread(m_SUT);
+        thread.start();
+        
+        verify(m_MessageRouter, timeout(1000)).handleMessage(message, channel);
+        verify(m_MessageRouter, timeout(1000)).handleMessage(message2, channel);
+        thread.join(1000);
+        
+        // message data is read in chunks no bigger than the reused read buffer
+        verify(inStream, atLeast(data.length / 8192)).read(Mockito.any(byte[].class), eq(0), 
+                Mockito.intThat(org.hamcrest.Matchers.lessThanOrEqualTo(8192)));
+        
+        assertThat(m_SUT.getDecodeStatistics().getMessageCount(), is(2L));
+        assertThat(m_SUT.getDecodeStatistics().getAllocatedBytes(), 
+                is((long)(message.getSerializedSize() + message2.getSerializedSize())));
+    }
+    
     /**
      * This class is used to provide a mock of constant data for a SocketMessageListener.
      *
@@ -0,0 +1,212 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the incremental decoding of varint delimited frames.
+ */
+public class TestVarintFrameDecoder
+{
+    private VarintFrameDecoder m_SUT;
+    private List<ByteString> m_Frames;
+    private VarintFrameDecoder.FrameHandler m_Handler;
+
+    @Before
+    public void setUp()
+    {
+        m_SUT = new VarintFrameDecoder(1000);
+        m_Frames = new ArrayList<ByteString>();
+        m_Handler = new VarintFrameDecoder.FrameHandler()
+        {
+            @Override
+            public void frameDecoded(final ByteString frame)
+            {
+                m_Frames.add(frame);
+            }
+        };
+    }
+
+    /**
+     * Verify multiple frames in a single buffer are all decoded in order.
+     */
+    @Test
+    public void testDecodeMultipleFrames() throws Exception
+    {
+        TerraHarvestMessage message1 = createMessage(1);
+        TerraHarvestMessage message2 = createMessage(2);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        message1.writeDelimitedTo(stream);
+        message2.writeDelimitedTo(stream);
+
+        m_SUT.decode(ByteBuffer.wrap(stream.toByteArray()), m_Handler);
+
+        assertThat(m_Frames.size(), is(2));
+        assertThat(TerraHarvestMessage.parseFrom(m_Frames.get(0)), is(message1));
+        assertThat(TerraHarvestMessage.parseFrom(m_Frames.get(1)), is(message2));
+        assertThat(m_SUT.hasPartialFrame(), is(false));
+    }
+
+    /**
+     * Verify a frame is decoded when received one byte at a time, including a multi-byte size prefix.
+     */
+    @Test
+    public void testDecodeByteAtATime() throws Exception
+    {
+        m_SUT = new VarintFrameDecoder(100000);
+        byte[] payload = new byte[300]; // size needs 2 varint bytes
+        for (int i = 0; i < payload.length; i++)
+        {
+            payload[i] = (byte)i;
+        }
+        byte[] data = new byte[payload.length + 2];
+        data[0] = (byte)(0x80 | (payload.length & 0x7F));
+        data[1] = (byte)(payload.length >> 7);
+        System.arraycopy(payload, 0, data, 2, payload.length);
+
+        for (int i = 0; i < data.length; i++)
+        {
+            assertThat(m_Frames.size(), is(0));
+            m_SUT.decode(ByteBuffer.wrap(data, i, 1), m_Handler);
+            assertThat(m_SUT.hasPartialFrame(), is(i < data.length - 1));
+        }
+
+        assertThat(m_Frames.size(), is(1));
+        assertThat(m_Frames.get(0).toByteArray(), is(payload));
+    }
+
+    /**
+     * Verify a frame split across buffers with the next frame starting in the same buffer is decoded.
+     */
+    @Test
+    public void testDecodeSplitFrames() throws Exception
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++)
+        {
+            createMessage(i).writeDelimitedTo(stream);
+        }
+        byte[] data = stream.toByteArray();
+
+        // feed in odd sized chunks so frame boundaries fall in different places
+        int offset = 0;
+        while (offset < data.length)
+        {
+            int length = Math.min(7, data.length - offset);
+            m_SUT.decode(ByteBuffer.wrap(data, offset, length), m_Handler);
+            offset += length;
+        }
+
+        assertThat(m_Frames.size(), is(10));
+        for (int i = 0; i < 10; i++)
+        {
+            assertThat(TerraHarvestMessage.parseFrom(m_Frames.get(i)).getMessageId(), is(i));
+        }
+    }
+
+    /**
+     * Verify frames are decoded from a direct buffer that has no backing array.
+     */
+    @Test
+    public void testDecodeDirectBuffer() throws Exception
+    {
+        TerraHarvestMessage message = createMessage(1);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        message.writeDelimitedTo(stream);
+        byte[] data = stream.toByteArray();
+        
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        buffer.flip();
+        m_SUT.decode(buffer, m_Handler);
+
+        assertThat(buffer.hasRemaining(), is(false));
+        assertThat(m_Frames.size(), is(1));
+        assertThat(TerraHarvestMessage.parseFrom(m_Frames.get(0)), is(message));
+    }
+
+    /**
+     * Verify an empty frame is decoded even if it is at the end of the buffer.
+     */
+    @Test
+    public void testDecodeEmptyFrame() throws Exception
+    {
+        m_SUT.decode(ByteBuffer.wrap(new byte[] {0}), m_Handler);
+
+        assertThat(m_Frames.size(), is(1));
+        assertThat(m_Frames.get(0).size(), is(0));
+    }
+
+    /**
+     * Verify a frame larger than the max size is rejected once the size is known.
+     */
+    @Test
+    public void testDecodeOverMaxSize()
+    {
+        // 1001 as varint
+        try
+        {
+            m_SUT.decode(ByteBuffer.wrap(new byte[] {(byte)0xE9, 0x07}), m_Handler);
+            fail("Expecting exception");
+        }
+        catch (final RemoteInterfaceException e)
+        {
+            assertThat(e.getMessage(), containsString("1001 > 1000"));
+        }
+    }
+
+    /**
+     * Verify a size prefix that is too long is rejected.
+     */
+    @Test
+    public void testDecodeMalformedSize()
+    {
+        try
+        {
+            m_SUT.decode(ByteBuffer.wrap(new byte[] {(byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80}), 
+                    m_Handler);
+            fail("Expecting exception");
+        }
+        catch (final RemoteInterfaceException e)
+        {
+            assertThat(e.getMessage(), containsString("Malformed"));
+        }
+    }
+
+    private TerraHarvestMessage createMessage(final int messageId)
+    {
+        BaseNamespace baseNamespaceMessage = BaseNamespace.newBuilder()
+                .setType(BaseMessageType.ControllerInfo)
+                .build();
+        return TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Base, messageId, 
+                baseNamespaceMessage);
+    }
+}
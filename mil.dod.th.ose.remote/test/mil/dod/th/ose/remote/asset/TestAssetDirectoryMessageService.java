@@ -60,6 +60,7 @@ import mil.dod.th.core.remote.proto.SharedMessages.Multitype;
 import mil.dod.th.core.remote.proto.SharedMessages.Multitype.Type;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.ose.test.FactoryObjectMocker;
 import mil.dod.th.ose.test.LoggingServiceMocker;
@@ -189,6 +190,30 @@ public class TestAssetDirectoryMessageService
         assertThat((RemoteChannel)postedEvent.getProperty(RemoteConstants.EVENT_PROP_CHANNEL), is(channel));      
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        AssetDirectoryServiceNamespace namespaceMessage = AssetDirectoryServiceNamespace.newBuilder()
+                .setType(AssetDirectoryServiceMessageType.ScanForNewAssetsResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.AssetDirectoryService)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.AssetDirectoryService, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Test the get asset types request/response remote message system for the asset directory service.  
      * Specifically, the following behaviors are tested: 
@@ -75,6 +75,7 @@ import mil.dod.th.core.types.command.CommandTypeEnum;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.api.CommandConverter;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.remote.converter.CommandResponseEnumConverter;
@@ -284,6 +285,30 @@ public class TestAssetMessageService
         verify(m_ResponseWrapper).queue(channel);
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        AssetNamespace namespaceMessage = AssetNamespace.newBuilder()
+                .setType(AssetMessageType.ActivateResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.Asset)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.Asset, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify command execution with interrupted exception is properly handled.
      */
@@ -49,6 +49,7 @@ import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
 import mil.dod.th.core.system.TerraHarvestSystem;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.remote.lexicon.capability.BaseCapabilitiesGen;
 import mil.dod.th.remote.lexicon.controller.capability.ControllerCapabilitiesGen.ControllerCapabilities;
@@ -167,6 +168,27 @@ public class TestBaseMessageService
                 is(BaseMessageType.ReceivedShutdownRequest.toString()));
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        BaseNamespace baseMessage = BaseNamespace.newBuilder().
+                setType(BaseMessageType.ReceivedShutdownRequest).
+                build();
+        TerraHarvestPayload payload = createPayload(baseMessage);
+        TerraHarvestMessage message = createBaseMessage(baseMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, baseMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+
+    }
+    
     /**
      * Verify generic handling of message, that it posts event
      */
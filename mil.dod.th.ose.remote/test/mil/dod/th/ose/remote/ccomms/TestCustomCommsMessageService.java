@@ -76,6 +76,7 @@ import mil.dod.th.core.types.ccomm.PhysicalLinkTypeEnum;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.comms.CustomCommsMessageService;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.ose.test.FactoryObjectMocker;
 import mil.dod.th.ose.test.LoggingServiceMocker;
@@ -255,6 +256,30 @@ public class TestCustomCommsMessageService
         assertThat(response.getInfo().getPid(), is("physPid"));
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        CustomCommsNamespace namespaceMessage = CustomCommsNamespace.newBuilder()
+                .setType(CustomCommsMessageType.SetLayerNameResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.CustomComms)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.CustomComms, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify ability to create GPIO phys link
      */
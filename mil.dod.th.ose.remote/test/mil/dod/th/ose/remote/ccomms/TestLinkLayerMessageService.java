@@ -67,6 +67,7 @@ import mil.dod.th.core.remote.proto.BaseMessages.ErrorCode;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.comms.LinkLayerMessageService;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 
@@ -204,6 +205,30 @@ public class TestLinkLayerMessageService
         assertThat(SharedMessageUtils.convertProtoUUIDtoUUID(response.getPhysicalLinkUuid()), is(testUuid));
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        LinkLayerNamespace namespaceMessage = LinkLayerNamespace.newBuilder()
+                .setType(LinkLayerMessageType.ActivateResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.LinkLayer)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.LinkLayer, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify returned physical link UUID is null when the link layer does not have a physical link.
      */
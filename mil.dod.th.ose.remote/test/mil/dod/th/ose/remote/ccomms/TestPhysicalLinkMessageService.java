@@ -19,6 +19,7 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -58,6 +59,7 @@ import mil.dod.th.core.remote.proto.SharedMessages.Multitype.Type;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.comms.PhysicalLinkMessageService;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 
@@ -179,6 +181,30 @@ public class TestPhysicalLinkMessageService
         assertThat(response.getIsOpen(), is(true));
     }
 
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        PhysicalLinkNamespace namespaceMessage = PhysicalLinkNamespace.newBuilder()
+                .setType(PhysicalLinkMessageType.DeleteResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.PhysicalLink)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.PhysicalLink, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify event posted for response message, verify event property key in the posted event is the correct response 
      * for the message that was sent.
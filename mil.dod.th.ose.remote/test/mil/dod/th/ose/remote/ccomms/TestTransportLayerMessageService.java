@@ -61,6 +61,7 @@ import mil.dod.th.core.remote.proto.TransportLayerMessages.TransportLayerNamespa
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.comms.TransportLayerMessageService;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 
@@ -196,6 +197,30 @@ public class TestTransportLayerMessageService
         verify(m_ResponseWrapper).queue(channel);
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        TransportLayerNamespace namespaceMessage = TransportLayerNamespace.newBuilder()
+                .setType(TransportLayerMessageType.ShutdownResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.TransportLayer)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.TransportLayer, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify the shutdown response message sends an event with null data message.
      */
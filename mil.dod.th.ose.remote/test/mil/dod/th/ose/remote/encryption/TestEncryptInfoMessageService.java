@@ -35,6 +35,7 @@ import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.api.RemoteSettings.EncryptionMode;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.shared.EventTopicInterest;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -139,6 +140,33 @@ public class TestEncryptInfoMessageService
         assertThat((TerraHarvestPayload)postedEvent.getProperty(RemoteConstants.EVENT_PROP_PAYLOAD), is(payload));
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        GetEncryptionTypeResponseData data = GetEncryptionTypeResponseData.newBuilder()
+                .setType(EncryptType.NONE).build();
+        EncryptionInfoNamespace namespaceMessage = EncryptionInfoNamespace.newBuilder()
+                .setType(EncryptionInfoMessageType.GetEncryptionTypeResponse)
+                .setData(data.toByteString())
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.EncryptionInfo)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.EncryptionInfo, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, data);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify that the encryption response message is handled appropriately.
      */
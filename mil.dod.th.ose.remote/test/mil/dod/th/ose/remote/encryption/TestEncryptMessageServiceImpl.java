@@ -14,6 +14,7 @@ package mil.dod.th.ose.remote.encryption;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
@@ -22,6 +23,14 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.NoSuchPaddingException;
 
@@ -30,6 +39,7 @@ import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
 import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
 import mil.dod.th.core.remote.proto.BaseMessages.ControllerInfoData;
 import mil.dod.th.core.remote.proto.RemoteBase;
+import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
 import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
@@ -109,7 +119,7 @@ public class TestEncryptMessageServiceImpl
         throws IOException, NoSuchAlgorithmException, NoSuchProviderException, 
         NoSuchPaddingException, InvalidKeySignatureException 
     {
-        m_SUT.activate(m_Context);
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
 
         // First generate keys for the controllers. In reality this would be done in advance and the keys
         // loaded into a config file on each controller.
@@ -182,4 +192,223 @@ public class TestEncryptMessageServiceImpl
         
         assertThat(payloadDecrypted, is(payload));        
     }
+
+    /**
+     * Verify the same session key is used for multiple messages to the same system by default, but each message still
+     * gets a unique initialization vector.
+     */
+    @Test
+    public final void testSessionKeyReuse() throws Exception
+    {
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        saveLoopbackKeys();
+
+        TerraHarvestMessage message1 = m_SUT.encryptMessage(createMessage(EncryptType.AES_ECDH_ECDSA), createPayload());
+        TerraHarvestMessage message2 = m_SUT.encryptMessage(createMessage(EncryptType.AES_ECDH_ECDSA), createPayload());
+
+        assertThat(message2.getEncryptInfo().getEphemeralKey(), is(message1.getEncryptInfo().getEphemeralKey()));
+        assertThat(message2.getEncryptInfo().getInitializationVector(), 
+                is(not(message1.getEncryptInfo().getInitializationVector())));
+        assertThat(m_SUT.decryptRemoteMessage(message1), is(createPayload()));
+        assertThat(m_SUT.decryptRemoteMessage(message2), is(createPayload()));
+    }
+
+    /**
+     * Verify a new session key is created for every message if the max messages is set to 1.
+     */
+    @Test
+    public final void testSessionKeyNoReuse() throws Exception
+    {
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        saveLoopbackKeys();
+
+        Map<String, Object> props = new HashMap<>();
+        props.put(EncryptMessageServiceConfig.SESSION_KEY_MAX_MESSAGES_KEY, 1);
+        m_SUT.modified(props);
+
+        TerraHarvestMessage message1 = m_SUT.encryptMessage(createMessage(EncryptType.AES_ECDH_ECDSA), createPayload());
+        TerraHarvestMessage message2 = m_SUT.encryptMessage(createMessage(EncryptType.AES_ECDH_ECDSA), createPayload());
+
+        assertThat(message2.getEncryptInfo().getEphemeralKey(), is(not(message1.getEncryptInfo().getEphemeralKey())));
+        assertThat(m_SUT.decryptRemoteMessage(message1), is(createPayload()));
+        assertThat(m_SUT.decryptRemoteMessage(message2), is(createPayload()));
+    }
+
+    /**
+     * Verify the session key is rotated once the max number of messages have been sent with it.
+     */
+    @Test
+    public final void testSessionKeyRotation() throws Exception
+    {
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        saveLoopbackKeys();
+
+        Map<String, Object> props = new HashMap<>();
+        props.put(EncryptMessageServiceConfig.SESSION_KEY_MAX_MESSAGES_KEY, 3);
+        m_SUT.modified(props);
+
+        List<TerraHarvestMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            messages.add(m_SUT.encryptMessage(createMessage(EncryptType.AES_ECDH_ECDSA), createPayload()));
+        }
+
+        assertThat(messages.get(1).getEncryptInfo().getEphemeralKey(), 
+                is(messages.get(0).getEncryptInfo().getEphemeralKey()));
+        assertThat(messages.get(2).getEncryptInfo().getEphemeralKey(), 
+                is(messages.get(0).getEncryptInfo().getEphemeralKey()));
+        assertThat(messages.get(3).getEncryptInfo().getEphemeralKey(), 
+                is(not(messages.get(0).getEncryptInfo().getEphemeralKey())));
+        for (TerraHarvestMessage message : messages)
+        {
+            assertThat(m_SUT.decryptRemoteMessage(message), is(createPayload()));
+        }
+    }
+
+    /**
+     * Verify a session key is no longer used after the authorized key of the remote system changes.
+     */
+    @Test
+    public final void testSessionKeyClearedOnKeyChange() throws Exception
+    {
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        saveLoopbackKeys();
+
+        TerraHarvestMessage message1 = m_SUT.encryptMessage(createMessage(EncryptType.AES_ECDH_ECDSA), createPayload());
+        saveLoopbackKeys();
+        TerraHarvestMessage message2 = m_SUT.encryptMessage(createMessage(EncryptType.AES_ECDH_ECDSA), createPayload());
+
+        assertThat(message2.getEncryptInfo().getEphemeralKey(), is(not(message1.getEncryptInfo().getEphemeralKey())));
+        assertThat(m_SUT.decryptRemoteMessage(message2), is(createPayload()));
+    }
+
+    /**
+     * Verify messages can be encrypted and decrypted from multiple threads at the same time.
+     */
+    @Test
+    public final void testConcurrentEncryptDecrypt() throws Exception
+    {
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        saveLoopbackKeys();
+
+        Map<String, Object> props = new HashMap<>();
+        props.put(EncryptMessageServiceConfig.SESSION_KEY_MAX_MESSAGES_KEY, 5);
+        m_SUT.modified(props);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+            {
+                results.add(executor.submit(new Callable<Boolean>()
+                {
+                    @Override
+                    public Boolean call() throws Exception
+                    {
+                        for (int j = 0; j < 25; j++)
+                        {
+                            TerraHarvestMessage message = m_SUT.encryptMessage(
+                                    createMessage(EncryptType.AES_ECDH_ECDSA), createPayload());
+                            if (!m_SUT.decryptRemoteMessage(message).equals(createPayload()))
+                            {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results)
+            {
+                assertThat(result.get(), is(true));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Measure the throughput of encrypting and decrypting messages for each encryption type, with and without session 
+     * key reuse. Results are printed for comparison, only correctness is asserted.
+     */
+    @Test
+    public final void testThroughput() throws Exception
+    {
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        saveLoopbackKeys();
+
+        measureThroughput("NONE", EncryptType.NONE);
+        measureThroughput("AES_ECDH_ECDSA (key reuse)", EncryptType.AES_ECDH_ECDSA);
+
+        Map<String, Object> props = new HashMap<>();
+        props.put(EncryptMessageServiceConfig.SESSION_KEY_MAX_MESSAGES_KEY, 1);
+        m_SUT.modified(props);
+        measureThroughput("AES_ECDH_ECDSA (no key reuse)", EncryptType.AES_ECDH_ECDSA);
+    }
+
+    /**
+     * Encrypt and decrypt a number of messages and print the rate.
+     */
+    private void measureThroughput(String name, EncryptType type) throws Exception
+    {
+        final int count = 200;
+        TerraHarvestPayload payload = createPayload();
+
+        // warm up
+        for (int i = 0; i < count / 10; i++)
+        {
+            m_SUT.decryptRemoteMessage(m_SUT.encryptMessage(createMessage(type), payload));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+        {
+            assertThat(m_SUT.decryptRemoteMessage(m_SUT.encryptMessage(createMessage(type), payload)), is(payload));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %.1f messages/sec%n", name, count * 1e9 / elapsed);
+    }
+
+    /**
+     * Save a new static key pair for this system and authorize its public key as system 1 so messages can be sent to 
+     * and received from system 1 using a single service.
+     */
+    private void saveLoopbackKeys()
+    {
+        final AsymmetricCipherKeyPair keyPair = EncryptionUtility.createKeyPair();
+        final String publicKey = 
+                EncryptionHelper.toHex(((ECPublicKeyParameters)keyPair.getPublic()).getQ().getEncoded(false));
+        final String privateKey = ((ECPrivateKeyParameters)keyPair.getPrivate()).getD().toString(16);
+
+        m_SUT.saveStaticKeyPair(publicKey, privateKey);
+        m_SUT.saveAuthorizedKey(1, publicKey);
+    }
+
+    private TerraHarvestMessage.Builder createMessage(EncryptType type)
+    {
+        return TerraHarvestMessage.newBuilder()
+                .setVersion(RemoteConstants.SPEC_VERSION)
+                .setSourceId(1)
+                .setDestId(1)
+                .setMessageId(100)
+                .setEncryptType(type);
+    }
+
+    private TerraHarvestPayload createPayload()
+    {
+        ControllerInfoData systemInfoData = ControllerInfoData.newBuilder()
+                .setName("test-name")
+                .build();
+        BaseNamespace baseNamespaceMessage = BaseNamespace.newBuilder()
+                .setType(BaseMessageType.ControllerInfo)
+                .setData(systemInfoData.toByteString())
+                .build();
+        return TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.Base)
+                .setNamespaceMessage(baseNamespaceMessage.toByteString())
+                .build();
+    }
 }
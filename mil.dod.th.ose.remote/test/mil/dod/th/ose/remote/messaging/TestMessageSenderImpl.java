@@ -13,6 +13,7 @@
 package mil.dod.th.ose.remote.messaging;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.*;
@@ -20,10 +21,11 @@ import static org.mockito.Mockito.*;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Dictionary;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import mil.dod.th.core.log.LoggingService;
 import mil.dod.th.core.remote.RemoteChannel;
@@ -31,6 +33,7 @@ import mil.dod.th.core.remote.RemoteChannelLookup;
 import mil.dod.th.core.remote.RemoteConstants;
 import mil.dod.th.core.remote.RemoteSystemEncryption;
 import mil.dod.th.core.remote.ResponseHandler;
+import mil.dod.th.core.remote.messaging.RemoteResponse;
 import mil.dod.th.core.remote.proto.AssetMessages.ActivateRequestData;
 import mil.dod.th.core.remote.proto.AssetMessages.AssetNamespace;
 import mil.dod.th.core.remote.proto.AssetMessages.AssetNamespace.AssetMessageType;
@@ -51,24 +54,21 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage.Builder;
 import mil.dod.th.core.remote.proto.SharedMessages.UUID;
 import mil.dod.th.core.system.TerraHarvestSystem;
 import mil.dod.th.ose.remote.EventChannel;
+import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.api.RemoteSettings.EncryptionMode;
 import mil.dod.th.ose.remote.encryption.EncryptMessageService;
-import mil.dod.th.ose.remote.messaging.MessageSenderImpl.ResponseEventHandler;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.remote.lexicon.mp.model.MissionProgramTemplateGen.MissionProgramTemplate;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
-import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
-import org.osgi.service.event.EventConstants;
-import org.osgi.service.event.EventHandler;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -88,8 +88,8 @@ public class TestMessageSenderImpl
     private int m_RemoteId;
     private int m_LocalId;
     private ResponseHandler m_Handler;
-    private ServiceRegistration<EventHandler> m_HandlerReg;
-    private ResponseEventHandler m_ResponseHandler;
+    private MessageRouterInternal m_MessageRouter;
+    private ResponseHandler m_ResponseHandler;
     private EncryptMessageService m_EncryptService;
     private LoggingService m_Logging;
     private RemoteSystemEncryption m_RemoteSystemEncryption;
@@ -116,6 +116,9 @@ public class TestMessageSenderImpl
         m_EventAdmin = mock(EventAdmin.class);
         m_SUT.setEventAdmin(m_EventAdmin);
         m_EventChannel = mock(EventChannel.class);
+        m_MessageRouter = mock(MessageRouterInternal.class);
+        m_SUT.setMessageRouter(m_MessageRouter);
+        when(m_RemoteSettings.getResponseHandlerTimeout()).thenReturn(300000L);
         
         m_LocalId = 102;
         m_RemoteId = 282;
@@ -130,6 +133,18 @@ public class TestMessageSenderImpl
         when(m_RemoteChannelLookup.getChannel(m_RemoteId)).thenReturn(m_Channel);
         when(m_Channel.trySendMessage(Mockito.any(TerraHarvestMessage.class))).thenReturn(true);
         when(m_Channel.queueMessage(Mockito.any(TerraHarvestMessage.class))).thenReturn(true);
+        
+        m_SUT.activate();
+        ArgumentCaptor<ResponseHandler> captor = ArgumentCaptor.forClass(ResponseHandler.class);
+        verify(m_MessageRouter).bindResponseHandler(captor.capture());
+        m_ResponseHandler = captor.getValue();
+        m_Handler = mock(ResponseHandler.class);
+    }
+    
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        m_SUT.deactivate();
     }
     
     /**
@@ -454,44 +469,12 @@ public class TestMessageSenderImpl
     }
     
     /**
-     * Setup the service registration and activate the component.
-     * Verify that the service is registered.
-     */
-    @SuppressWarnings("unchecked")
-    private void activateSetUp()
-    {
-        //mocks for registration
-        BundleContext context = mock(BundleContext.class);
-        m_HandlerReg = mock(ServiceRegistration.class);
-        
-        //activate component
-        when(context.registerService(eq(EventHandler.class), Mockito.any(EventHandler.class), 
-                Mockito.any(Dictionary.class))).thenReturn(m_HandlerReg);
-        m_SUT.activate(context);
-        ArgumentCaptor<EventHandler> captor = ArgumentCaptor.forClass(EventHandler.class);
-        @SuppressWarnings("rawtypes")
-        ArgumentCaptor<Dictionary> captorDict = ArgumentCaptor.forClass(Dictionary.class);
-        verify(context).registerService(eq(EventHandler.class), captor.capture(), 
-            captorDict.capture());
-        
-        assertThat((String)captorDict.getValue().get(EventConstants.EVENT_FILTER), is("(message.response=true)"));
-        
-        //enter mocks for the inner classes
-        m_ResponseHandler = (ResponseEventHandler) captor.getAllValues().get(0);
-        m_Handler = mock(ResponseHandler.class);
-    }
-    
-    /**
-     * Verify that the event handler will call the response handler {@link ResponseHandler#handleResponse} method.
-     * Verify activation registers the event handler.
-     * Verify that deactivation unregisters the listener.
+     * Verify that a response passed from the router will call the {@link ResponseHandler#handleResponse} method.
+     * Verify that deactivation unbinds the correlator from the router.
      */
     @Test
-    public void testQueueMessageWithHandler() throws IOException
+    public void testQueueMessageWithHandler() throws Exception
     {
-        //setup and activate component
-        activateSetUp();
-
         // construct data message to send, should reg handler
         ActivateRequestData messageData = ActivateRequestData.newBuilder().
                 setUuid(UUID.newBuilder().setLeastSignificantBits(0L).setMostSignificantBits(1L).build()).build();
@@ -512,61 +495,30 @@ public class TestMessageSenderImpl
         request = createTerraHarvestMessage(0, Namespace.Asset, nameMessage, true);
         TerraHarvestPayload payLoadTest = TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload());
                 
-        // properties for the event
-        final Map<String, Object> props = new HashMap<String, Object>();
-        props.put(RemoteConstants.EVENT_PROP_DATA_MESSAGE, null);
-        props.put(RemoteConstants.EVENT_PROP_PAYLOAD, payLoadTest);
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE, request);
-        props.put(RemoteConstants.EVENT_PROP_SOURCE_ID, m_RemoteId);
-        props.put(RemoteConstants.EVENT_PROP_DEST_ID, 0);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE_MESSAGE, nameMessage);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE, Namespace.Asset.toString());
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE_TYPE, 
-            AssetMessageType.ActivateResponse.toString());
-
-        Event event = new Event(RemoteConstants.TOPIC_MESSAGE_RECEIVED, props);
-
-        m_ResponseHandler.handleEvent(event);
+        m_ResponseHandler.handleResponse(request, payLoadTest, nameMessage, null);
         verify(m_Handler).handleResponse(request,payLoadTest, nameMessage, null);
         
         //post the event again and verify the handler was not called again
-        m_ResponseHandler.handleEvent(event);
+        m_ResponseHandler.handleResponse(request, payLoadTest, nameMessage, null);
         verify(m_Handler, only()).handleResponse(request, payLoadTest,nameMessage, null);
         
         m_SUT.deactivate();
-        verify(m_HandlerReg).unregister();
+        verify(m_MessageRouter).unbindResponseHandler(m_ResponseHandler);
     }
     
     /**
-     * Verify that the event handler will not call a handler if no handler is associated with the message.
+     * Verify that a response will not call a handler if no handler is associated with the message.
      */
     @Test
     public void testQueueMessageWithoutHandlerReg() throws IOException
     {
-        //setup and activate component
-        activateSetUp();
-
         //message as response
         AssetNamespace  nameMessage = AssetNamespace.newBuilder().
                  setType(AssetMessageType.ActivateResponse).build();
         TerraHarvestMessage request = createTerraHarvestMessage(0, Namespace.Asset, nameMessage, false);
         TerraHarvestPayload payLoadTest = TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload());
             
-        // properties for the event
-        final Map<String, Object> props = new HashMap<String, Object>();
-        props.put(RemoteConstants.EVENT_PROP_DATA_MESSAGE, null);
-        props.put(RemoteConstants.EVENT_PROP_PAYLOAD, payLoadTest);
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE, request);
-        props.put(RemoteConstants.EVENT_PROP_SOURCE_ID, m_RemoteId);
-        props.put(RemoteConstants.EVENT_PROP_DEST_ID, 0);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE_MESSAGE, nameMessage);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE, Namespace.Asset.toString());
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE_TYPE, 
-            AssetMessageType.ActivateResponse.toString());
-
-        Event event = new Event(RemoteConstants.TOPIC_MESSAGE_RECEIVED, props);
-
-        m_ResponseHandler.handleEvent(event);
+        m_ResponseHandler.handleResponse(request, payLoadTest, nameMessage, null);
         //verify
         verify(m_Handler, never()).handleResponse(Mockito.any(TerraHarvestMessage.class),
             Mockito.any(TerraHarvestPayload.class), Mockito.any(Message.class),Mockito.any(Message.class));
@@ -578,9 +530,6 @@ public class TestMessageSenderImpl
     @Test
     public void testQueueMessageWithMultipleHandlers() throws IOException
     {
-        //setup and activate component
-        activateSetUp();
-
         //create another handler
         ResponseHandler handler2 = mock(ResponseHandler.class);
 
@@ -616,22 +565,8 @@ public class TestMessageSenderImpl
         request = createTerraHarvestMessage(0, Namespace.Asset, nameMessage, true);
         TerraHarvestPayload payLoadTest = TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload());
         
-        // properties for the event
-        final Map<String, Object> props = new HashMap<String, Object>();
-        props.put(RemoteConstants.EVENT_PROP_DATA_MESSAGE, null);
-        props.put(RemoteConstants.EVENT_PROP_PAYLOAD, payLoadTest);
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE, request);
-        props.put(RemoteConstants.EVENT_PROP_SOURCE_ID, m_RemoteId);
-        props.put(RemoteConstants.EVENT_PROP_DEST_ID, 0);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE_MESSAGE, nameMessage);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE, Namespace.Asset.toString());
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE_TYPE, 
-            AssetMessageType.ActivateResponse.toString());
-
-        Event event = new Event(RemoteConstants.TOPIC_MESSAGE_RECEIVED, props);
-
         //handle event first handle should be called
-        m_ResponseHandler.handleEvent(event);
+        m_ResponseHandler.handleResponse(request, payLoadTest, nameMessage, null);
         verify(m_Handler).handleResponse(request,payLoadTest, nameMessage, null);
         verify(handler2, never()).handleResponse(request, payLoadTest, nameMessage, null);
         
@@ -639,22 +574,8 @@ public class TestMessageSenderImpl
         request = createTerraHarvestMessage(1, Namespace.Asset, nameMessage, true);
         payLoadTest = TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload());
                 
-        // properties for the event
-        final Map<String, Object> props2 = new HashMap<String, Object>();
-        props2.put(RemoteConstants.EVENT_PROP_DATA_MESSAGE, null);
-        props2.put(RemoteConstants.EVENT_PROP_PAYLOAD, payLoadTest);
-        props2.put(RemoteConstants.EVENT_PROP_MESSAGE, request);
-        props2.put(RemoteConstants.EVENT_PROP_SOURCE_ID, m_RemoteId);
-        props2.put(RemoteConstants.EVENT_PROP_DEST_ID, 0);
-        props2.put(RemoteConstants.EVENT_PROP_NAMESPACE_MESSAGE, nameMessage);
-        props2.put(RemoteConstants.EVENT_PROP_NAMESPACE, Namespace.Asset.toString());
-        props2.put(RemoteConstants.EVENT_PROP_MESSAGE_TYPE, 
-            AssetMessageType.ActivateResponse.toString());
-
-        Event event2 = new Event(RemoteConstants.TOPIC_MESSAGE_RECEIVED, props2);
-
         //verify second handler is called, and not the original
-        m_ResponseHandler.handleEvent(event2);
+        m_ResponseHandler.handleResponse(request, payLoadTest, nameMessage, null);
         
         verify(handler2).handleResponse(request, payLoadTest, nameMessage, null);
         verify(m_Handler, never()).handleResponse(request, payLoadTest, nameMessage, null);
@@ -667,9 +588,6 @@ public class TestMessageSenderImpl
     @Test
     public void testQueueMessageWithMultipleHandlersFailTrySend() throws IOException
     {
-        //setup and activate component
-        activateSetUp();
-
         //create another handler
         ResponseHandler handler2 = mock(ResponseHandler.class);
 
@@ -725,23 +643,8 @@ public class TestMessageSenderImpl
         TerraHarvestMessage response = createTerraHarvestMessage(3, Namespace.Asset, nameMessage, true);
         TerraHarvestPayload payLoadTest = TerraHarvestPayload.parseFrom(response.getTerraHarvestPayload());
                 
-        // properties for the event
-        final Map<String, Object> props = new HashMap<String, Object>();
-        props.put(RemoteConstants.EVENT_PROP_DATA_MESSAGE, null);
-        props.put(RemoteConstants.EVENT_PROP_PAYLOAD, payLoadTest);
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE, response);
-        props.put(RemoteConstants.EVENT_PROP_SOURCE_ID, m_RemoteId);
-        props.put(RemoteConstants.EVENT_PROP_DEST_ID, 0);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE_MESSAGE, nameMessage);
-        props.put(RemoteConstants.EVENT_PROP_NAMESPACE, Namespace.Asset.toString());
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE_TYPE, 
-            AssetMessageType.ActivateResponse.toString());
-        props.put(RemoteConstants.EVENT_PROP_MESSAGE_RESPONSE, true);
-
-        Event event = new Event(RemoteConstants.TOPIC_MESSAGE_RECEIVED, props);
-
         //handle event first handle should be called
-        m_ResponseHandler.handleEvent(event);
+        m_ResponseHandler.handleResponse(response, payLoadTest, nameMessage, null);
         verify(m_Handler).handleResponse(response, payLoadTest, nameMessage, null);
         verify(handler2, never()).handleResponse(response, payLoadTest, nameMessage, null);
         
@@ -751,28 +654,124 @@ public class TestMessageSenderImpl
         response = createTerraHarvestMessage(5, Namespace.Asset, nameMessage, true);
         payLoadTest = TerraHarvestPayload.parseFrom(response.getTerraHarvestPayload());
                 
-        // properties for the event
-        final Map<String, Object> props2 = new HashMap<String, Object>();
-        props2.put(RemoteConstants.EVENT_PROP_DATA_MESSAGE, null);
-        props2.put(RemoteConstants.EVENT_PROP_PAYLOAD, payLoadTest);
-        props2.put(RemoteConstants.EVENT_PROP_MESSAGE, response);
-        props2.put(RemoteConstants.EVENT_PROP_SOURCE_ID, m_RemoteId);
-        props2.put(RemoteConstants.EVENT_PROP_DEST_ID, 0);
-        props2.put(RemoteConstants.EVENT_PROP_NAMESPACE_MESSAGE, nameMessage);
-        props2.put(RemoteConstants.EVENT_PROP_NAMESPACE, Namespace.Asset.toString());
-        props2.put(RemoteConstants.EVENT_PROP_MESSAGE_TYPE, 
-            AssetMessageType.ActivateResponse.toString());
-        props2.put(RemoteConstants.EVENT_PROP_MESSAGE_RESPONSE, true);
-
-        Event event2 = new Event(RemoteConstants.TOPIC_MESSAGE_RECEIVED, props2);
-
         //verify second handler is called, and not the original
-        m_ResponseHandler.handleEvent(event2);
+        m_ResponseHandler.handleResponse(response, payLoadTest, nameMessage, null);
         
         verify(handler2).handleResponse(response, payLoadTest, nameMessage, null);
         verify(m_Handler, never()).handleResponse(response, payLoadTest, nameMessage, null);
     }
 
+    /**
+     * Verify that a request future completes with the response that has the same message id.
+     * Verify the latency of the response is recorded for the namespace.
+     */
+    @Test
+    public void testQueueRequest() throws Exception
+    {
+        AssetNamespace nameMessage = AssetNamespace.newBuilder().setType(AssetMessageType.ActivateRequest).build();
+        TerraHarvestMessage request = 
+                createMessageWithDestSource(m_LocalId, m_RemoteId, 0, Namespace.Asset, nameMessage);
+        when(m_EncryptService.encryptMessage(Mockito.any(Builder.class), Mockito.any(TerraHarvestPayload.class))).
+            thenReturn(request);
+        
+        CompletableFuture<RemoteResponse> future = m_SUT.queueRequest(m_RemoteId, 
+                TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload()), EncryptType.NONE, 
+                5, TimeUnit.SECONDS);
+        assertThat(future.isDone(), is(false));
+        assertThat(m_SUT.getResponseHandleRegCount(), is(1));
+        assertThat(m_SUT.getResponseStatistics(Namespace.Asset).getOutstandingCount(), is(1L));
+        
+        // response to another request is ignored
+        AssetNamespace responseMessage = 
+                AssetNamespace.newBuilder().setType(AssetMessageType.ActivateResponse).build();
+        TerraHarvestMessage response = createTerraHarvestMessage(1, Namespace.Asset, responseMessage, true);
+        TerraHarvestPayload payload = TerraHarvestPayload.parseFrom(response.getTerraHarvestPayload());
+        m_ResponseHandler.handleResponse(response, payload, responseMessage, null);
+        assertThat(future.isDone(), is(false));
+        
+        response = createTerraHarvestMessage(0, Namespace.Asset, responseMessage, true);
+        payload = TerraHarvestPayload.parseFrom(response.getTerraHarvestPayload());
+        m_ResponseHandler.handleResponse(response, payload, responseMessage, null);
+        
+        RemoteResponse remoteResponse = future.get(1, TimeUnit.SECONDS);
+        assertThat(remoteResponse.getMessage(), is(response));
+        assertThat(remoteResponse.getPayload(), is(payload));
+        assertThat(remoteResponse.getNamespaceMessage(), is((Message)responseMessage));
+        assertThat(m_SUT.getResponseHandleRegCount(), is(0));
+        assertThat(m_SUT.getResponseStatistics(Namespace.Asset).getLatency().getCount(), is(1L));
+    }
+    
+    /**
+     * Verify that a request queued after failing to send uses the same message id.
+     * Verify that the future completes exceptionally if the request could not be queued.
+     */
+    @Test
+    public void testQueueRequestFailed() throws Exception
+    {
+        AssetNamespace nameMessage = AssetNamespace.newBuilder().setType(AssetMessageType.ActivateRequest).build();
+        TerraHarvestMessage request = 
+                createMessageWithDestSource(m_LocalId, m_RemoteId, 0, Namespace.Asset, nameMessage);
+        when(m_EncryptService.encryptMessage(Mockito.any(Builder.class), Mockito.any(TerraHarvestPayload.class))).
+            thenReturn(request);
+        when(m_Channel.trySendMessage(Mockito.any(TerraHarvestMessage.class))).thenReturn(false);
+        when(m_Channel.queueMessage(Mockito.any(TerraHarvestMessage.class))).thenReturn(false);
+        
+        CompletableFuture<RemoteResponse> future = m_SUT.queueRequest(m_RemoteId, 
+                TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload()), EncryptType.NONE, 
+                5, TimeUnit.SECONDS);
+        
+        ArgumentCaptor<Builder> builderCaptor = ArgumentCaptor.forClass(Builder.class);
+        verify(m_EncryptService, times(2)).encryptMessage(builderCaptor.capture(), 
+                Mockito.any(TerraHarvestPayload.class));
+        assertThat(builderCaptor.getAllValues().get(0).getMessageId(), 
+                is(builderCaptor.getAllValues().get(1).getMessageId()));
+        
+        assertThat(future.isCompletedExceptionally(), is(true));
+        assertThat(m_SUT.getResponseHandleRegCount(), is(0));
+        
+        // no channel at all
+        when(m_RemoteChannelLookup.getChannels(m_RemoteId)).thenReturn(new ArrayList<RemoteChannel>());
+        try
+        {
+            m_SUT.queueRequest(m_RemoteId, TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload()), 
+                    EncryptType.NONE, 5, TimeUnit.SECONDS);
+            fail("Expected exception, no channel to the destination");
+        }
+        catch (IllegalArgumentException e)
+        {
+            //expected
+        }
+        assertThat(m_SUT.getResponseHandleRegCount(), is(0));
+    }
+    
+    /**
+     * Verify that the future completes with a timeout exception if no response is received in time.
+     */
+    @Test
+    public void testQueueRequestTimeout() throws Exception
+    {
+        AssetNamespace nameMessage = AssetNamespace.newBuilder().setType(AssetMessageType.ActivateRequest).build();
+        TerraHarvestMessage request = 
+                createMessageWithDestSource(m_LocalId, m_RemoteId, 0, Namespace.Asset, nameMessage);
+        when(m_EncryptService.encryptMessage(Mockito.any(Builder.class), Mockito.any(TerraHarvestPayload.class))).
+            thenReturn(request);
+        
+        CompletableFuture<RemoteResponse> future = m_SUT.queueRequest(m_RemoteId, 
+                TerraHarvestPayload.parseFrom(request.getTerraHarvestPayload()), EncryptType.NONE, 
+                100, TimeUnit.MILLISECONDS);
+        try
+        {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected exception, no response was received");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), is(instanceOf(TimeoutException.class)));
+        }
+        assertThat(m_SUT.getResponseHandleRegCount(), is(0));
+        assertThat(m_SUT.getResponseStatistics(Namespace.Asset).getTimeoutCount(), is(1L));
+    }
+
     /**
      * Verify that the send base message method will pass the correct message based on the destination id.
      * Verify that given no encryption level that the appropriate level is obtained from the service.
@@ -1031,9 +1030,6 @@ public class TestMessageSenderImpl
     @Test
     public void testQueueMessageWithEventChannel() throws IOException
     {
-        //setup and activate component
-        activateSetUp();
-
         // construct data message to send, should reg handler
         ActivateRequestData messageData = ActivateRequestData.newBuilder().
                 setUuid(UUID.newBuilder().setLeastSignificantBits(0L).setMostSignificantBits(1L).build()).build();
@@ -1061,9 +1057,6 @@ public class TestMessageSenderImpl
     @Test
     public void testQueueMessageWithConvertToRemoteChannel() throws IOException
     {
-        //setup and activate component
-        activateSetUp();
-
         // construct data message to send, should reg handler
         ActivateRequestData messageData = ActivateRequestData.newBuilder().
                 setUuid(UUID.newBuilder().setLeastSignificantBits(0L).setMostSignificantBits(1L).build()).build();
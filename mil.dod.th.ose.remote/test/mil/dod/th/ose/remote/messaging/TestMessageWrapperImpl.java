@@ -18,12 +18,16 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import mil.dod.th.core.remote.RemoteChannel;
 import mil.dod.th.core.remote.ResponseHandler;
 import mil.dod.th.core.remote.messaging.MessageSender;
+import mil.dod.th.core.remote.messaging.RemoteResponse;
 import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
 import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
 import mil.dod.th.core.remote.proto.BaseMessages.ControllerInfoData;
@@ -114,6 +118,20 @@ public class TestMessageWrapperImpl
         assertThat(result, is(false));
     }
     
+    /**
+     * Verify that correct information is sent to the message sender service when 'queueRequest' is called.
+     */
+    @Test
+    public void testQueueRequest()
+    {
+        CompletableFuture<RemoteResponse> future = new CompletableFuture<RemoteResponse>();
+        when(m_MessageSender.queueRequest(sysId, m_Payload, EncryptType.AES_ECDH_ECDSA, 10, TimeUnit.SECONDS))
+            .thenReturn(future);
+        
+        assertThat(m_SUT.queueRequest(sysId, EncryptType.AES_ECDH_ECDSA, 10, TimeUnit.SECONDS), is(future));
+        verify(m_MessageSender).queueRequest(sysId, m_Payload, EncryptType.AES_ECDH_ECDSA, 10, TimeUnit.SECONDS);
+    }
+    
     /**
      * Verify that correct information is sent to the message sender service when 'trySend' is called.
      * Verify that the encryption type not being present does not cause an error.
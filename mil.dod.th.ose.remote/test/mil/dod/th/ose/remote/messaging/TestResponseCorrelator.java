@@ -0,0 +1,220 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.messaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.core.remote.ResponseHandler;
+import mil.dod.th.core.remote.messaging.RemoteResponse;
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
+import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.test.LoggingServiceMocker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.protobuf.Message;
+
+/**
+ * Test class for the {@link ResponseCorrelator}.
+ */
+public class TestResponseCorrelator
+{
+    private ResponseCorrelator m_SUT;
+    private LoggingService m_Logging;
+    private BaseNamespace m_NamespaceMessage;
+
+    @Before
+    public void setUp()
+    {
+        m_Logging = LoggingServiceMocker.createMock();
+        m_SUT = new ResponseCorrelator(m_Logging);
+        m_NamespaceMessage = BaseNamespace.newBuilder().setType(BaseMessageType.ControllerInfo).build();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        m_SUT.stop();
+    }
+
+    /**
+     * Verify message ids are handed out in sequence.
+     */
+    @Test
+    public void testNextMessageId()
+    {
+        int first = m_SUT.nextMessageId();
+        assertThat(m_SUT.nextMessageId(), is(first + 1));
+        assertThat(m_SUT.nextMessageId(), is(first + 2));
+    }
+
+    /**
+     * Verify a handler is called once for the response with its message id and the latency is recorded.
+     */
+    @Test
+    public void testRegisterHandler()
+    {
+        ResponseHandler handler = mock(ResponseHandler.class);
+        m_SUT.register(3, Namespace.Base, handler, 60000);
+        assertThat(m_SUT.getOutstandingCount(), is(1));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getOutstandingCount(), is(1L));
+        
+        TerraHarvestMessage other = createResponse(4);
+        m_SUT.handleResponse(other, getPayload(other), m_NamespaceMessage, null);
+        verify(handler, never()).handleResponse(any(TerraHarvestMessage.class), any(TerraHarvestPayload.class), 
+                any(Message.class), any(Message.class));
+        
+        TerraHarvestMessage response = createResponse(3);
+        TerraHarvestPayload payload = getPayload(response);
+        m_SUT.handleResponse(response, payload, m_NamespaceMessage, null);
+        m_SUT.handleResponse(response, payload, m_NamespaceMessage, null);
+        verify(handler, times(1)).handleResponse(response, payload, m_NamespaceMessage, null);
+        
+        assertThat(m_SUT.getOutstandingCount(), is(0));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getOutstandingCount(), is(0L));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getLatency().getCount(), is(1L));
+        assertThat(m_SUT.getStatistics(Namespace.Asset).getLatency().getCount(), is(0L));
+    }
+
+    /**
+     * Verify a future completes with the response.
+     */
+    @Test
+    public void testRegisterFuture() throws Exception
+    {
+        CompletableFuture<RemoteResponse> future = m_SUT.register(7, Namespace.Base, 60000);
+        
+        TerraHarvestMessage response = createResponse(7);
+        TerraHarvestPayload payload = getPayload(response);
+        m_SUT.handleResponse(response, payload, m_NamespaceMessage, null);
+        
+        RemoteResponse remoteResponse = future.get(1, TimeUnit.SECONDS);
+        assertThat(remoteResponse.getMessage(), is(response));
+        assertThat(remoteResponse.getPayload(), is(payload));
+        assertThat(remoteResponse.getNamespaceMessage(), is((Message)m_NamespaceMessage));
+        assertThat(remoteResponse.getDataMessage(), is(nullValue()));
+        assertThat(m_SUT.getOutstandingCount(), is(0));
+    }
+
+    /**
+     * Verify cancelling a future stops waiting for the response.
+     */
+    @Test
+    public void testCancelFuture()
+    {
+        CompletableFuture<RemoteResponse> future = m_SUT.register(7, Namespace.Base, 60000);
+        future.cancel(false);
+        
+        assertThat(m_SUT.getOutstandingCount(), is(0));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getOutstandingCount(), is(0L));
+    }
+
+    /**
+     * Verify unregistering completes a future exceptionally and removes a handler.
+     */
+    @Test
+    public void testUnregister() throws InterruptedException
+    {
+        CompletableFuture<RemoteResponse> future = m_SUT.register(1, Namespace.Base, 60000);
+        ResponseHandler handler = mock(ResponseHandler.class);
+        m_SUT.register(2, Namespace.Base, handler, 60000);
+        
+        m_SUT.unregister(1);
+        m_SUT.unregister(2);
+        m_SUT.unregister(3);
+        assertThat(m_SUT.getOutstandingCount(), is(0));
+        
+        try
+        {
+            future.get();
+            fail("Expected exception, request was unregistered");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+        
+        TerraHarvestMessage response = createResponse(2);
+        m_SUT.handleResponse(response, getPayload(response), m_NamespaceMessage, null);
+        verify(handler, never()).handleResponse(any(TerraHarvestMessage.class), any(TerraHarvestPayload.class), 
+                any(Message.class), any(Message.class));
+    }
+
+    /**
+     * Verify requests time out, a response after the timeout is ignored and the timeout is counted.
+     */
+    @Test(timeout = 10000)
+    public void testTimeout() throws InterruptedException
+    {
+        CompletableFuture<RemoteResponse> future = m_SUT.register(1, Namespace.Base, 100);
+        ResponseHandler handler = mock(ResponseHandler.class);
+        m_SUT.register(2, Namespace.Base, handler, 100);
+        
+        try
+        {
+            future.get();
+            fail("Expected exception, no response received");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), is(instanceOf(TimeoutException.class)));
+        }
+        
+        while (m_SUT.getOutstandingCount() > 0)
+        {
+            Thread.sleep(10);
+        }
+        
+        TerraHarvestMessage response = createResponse(2);
+        m_SUT.handleResponse(response, getPayload(response), m_NamespaceMessage, null);
+        verify(handler, never()).handleResponse(any(TerraHarvestMessage.class), any(TerraHarvestPayload.class), 
+                any(Message.class), any(Message.class));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getTimeoutCount(), is(2L));
+        assertThat(m_SUT.getStatistics(Namespace.Base).getLatency().getCount(), is(0L));
+    }
+
+    private TerraHarvestMessage createResponse(int messageId)
+    {
+        return TerraHarvestMessageHelper.createTerraHarvestMessage(1, 0, Namespace.Base, messageId, 
+                m_NamespaceMessage).toBuilder().setIsResponse(true).build();
+    }
+
+    private TerraHarvestPayload getPayload(TerraHarvestMessage message)
+    {
+        try
+        {
+            return TerraHarvestPayload.parseFrom(message.getTerraHarvestPayload());
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
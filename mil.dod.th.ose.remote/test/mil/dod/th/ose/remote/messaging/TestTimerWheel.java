@@ -0,0 +1,108 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.messaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.ose.test.LoggingServiceMocker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the {@link TimerWheel}.
+ */
+public class TestTimerWheel
+{
+    private TimerWheel m_SUT;
+    private LoggingService m_Logging;
+
+    @Before
+    public void setUp()
+    {
+        m_Logging = LoggingServiceMocker.createMock();
+        m_SUT = new TimerWheel(10, TimeUnit.MILLISECONDS, 8, "TestTimerWheel", m_Logging);
+        m_SUT.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        m_SUT.stop();
+    }
+
+    /**
+     * Verify timeouts run in deadline order, including ones further out than a rotation, and not before they are due.
+     */
+    @Test(timeout = 10000)
+    public void testSchedule() throws InterruptedException
+    {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch ran = new CountDownLatch(3);
+        final long start = System.nanoTime();
+        final int[] delays = {250, 30, 120};
+        for (final int delay : delays)
+        {
+            m_SUT.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    assertThat(System.nanoTime() - start, 
+                            is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(delay))));
+                    order.add(delay);
+                    ran.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        
+        ran.await();
+        assertThat(order, contains(30, 120, 250));
+    }
+
+    /**
+     * Verify a timeout that throws an exception does not stop the wheel.
+     */
+    @Test(timeout = 10000)
+    public void testScheduleException() throws InterruptedException
+    {
+        m_SUT.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new IllegalStateException("failed");
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        
+        final CountDownLatch ran = new CountDownLatch(1);
+        m_SUT.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.countDown();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        ran.await();
+    }
+}
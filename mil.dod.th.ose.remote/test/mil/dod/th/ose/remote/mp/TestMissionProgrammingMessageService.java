@@ -85,6 +85,7 @@ import mil.dod.th.core.remote.proto.SharedMessages.Multitype;
 import mil.dod.th.core.remote.proto.SharedMessages.Multitype.Type;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.remote.lexicon.mp.model.MissionProgramParametersGen;
 import mil.dod.th.remote.lexicon.mp.model.MissionProgramTemplateGen;
@@ -274,6 +275,30 @@ public class TestMissionProgrammingMessageService
         assertThat((RemoteChannel)postedEvent.getProperty(RemoteConstants.EVENT_PROP_CHANNEL), is(channel));
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        MissionProgrammingNamespace namespaceMessage = MissionProgrammingNamespace.newBuilder()
+                .setType(MissionProgrammingMessageType.LoadTemplateResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.MissionProgramming)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.MissionProgramming, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify that the loaded template response is sent after the load program message is processed.
      */
@@ -13,9 +13,11 @@
 package mil.dod.th.ose.remote.observation;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.fail;
@@ -65,6 +67,8 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.core.types.observation.ObservationSubTypeEnum;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.remote.api.RemoteSettings;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.shared.SharedMessageUtils;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.remote.converter.ObservationSubTypeEnumConverter;
@@ -95,6 +99,7 @@ public class TestObservationMessageService
     private MessageFactory m_MessageFactory;
     private MessageRouterInternal m_MessageRouter;
     private MessageResponseWrapper m_ResponseWrapper;
+    private RemoteSettings m_RemoteSettings;
 
     //observation uuids
     private UUID uuidObs1 = UUID.randomUUID();
@@ -118,6 +123,8 @@ public class TestObservationMessageService
         m_MessageFactory = mock(MessageFactory.class);
         m_ResponseWrapper = mock(MessageResponseWrapper.class);
         m_MessageRouter = mock(MessageRouterInternal.class);
+        m_RemoteSettings = mock(RemoteSettings.class);
+        when(m_RemoteSettings.getMaxMessageSize()).thenReturn(1024L * 1024L);
 
         //set services
         m_SUT.setLoggingService(m_Logging);
@@ -126,6 +133,7 @@ public class TestObservationMessageService
         m_SUT.setEventAdmin(m_EventAdmin);
         m_SUT.setMessageFactory(m_MessageFactory);
         m_SUT.setMessageRouter(m_MessageRouter);
+        m_SUT.setRemoteSettings(m_RemoteSettings);
 
         when(m_MessageFactory.createObservationStoreResponseMessage(Mockito.any(TerraHarvestMessage.class), 
                 Mockito.any(ObservationStoreMessageType.class), Mockito.any(Message.class))).
@@ -197,6 +205,30 @@ public class TestObservationMessageService
         assertThat((RemoteChannel)postedEvent.getProperty(RemoteConstants.EVENT_PROP_CHANNEL), is(channel));
     }
 
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        ObservationStoreNamespace namespaceMessage = ObservationStoreNamespace.newBuilder()
+                .setType(ObservationStoreMessageType.RemoveObservationByUUIDResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.ObservationStore)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.ObservationStore, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Test handling of response messages.
      * Verify that they post events locally.
@@ -419,7 +451,57 @@ public class TestObservationMessageService
         verify(oQuery, never()).withTimeCreatedRange(Mockito.any(Date.class), Mockito.any(Date.class));
         verify(oQuery, never()).withSubType(Mockito.any(ObservationSubTypeEnum.class));
         
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
+    }
+
+    /**
+     * Verify the response only contains the observations that fit within the max message size.
+     */
+    @Test
+    public void testGetObservationRequestMaxMessageSize() throws ObjectConverterException, IOException
+    {
+        Query query = Query.getDefaultInstance();
+        
+        GetObservationRequestData message = GetObservationRequestData.newBuilder().setObsQuery(query).build();
+        
+        ObservationStoreNamespace namespace = ObservationStoreNamespace.newBuilder().
+            setData(message.toByteString()).
+            setType(ObservationStoreMessageType.GetObservationRequest).build();
+        TerraHarvestPayload payload = createPayload(namespace);
+        TerraHarvestMessage thMessage = createMessageObservationStore(namespace);
+        RemoteChannel channel = mock(RemoteChannel.class);
+
+        Observation obs1 = mock(Observation.class);
+        Observation obs2 = mock(Observation.class);
+        Observation obs3 = mock(Observation.class);
+        List<Observation> observations = new ArrayList<Observation>();
+        observations.add(obs1);
+        observations.add(obs2);
+        observations.add(obs3);
+        mockObservationQueryExecute(null, null, null, null, null, null, null, null, null, null, null, null, 
+                observations);
+        
+        ObservationGen.Observation obGen1 = TerraHarvestMessageHelper.getProtoObs();
+        ObservationGen.Observation obGen2 = TerraHarvestMessageHelper.getProtoObs();
+        ObservationGen.Observation obGen3 = TerraHarvestMessageHelper.getProtoObs();
+        when(m_Converter.convertToProto(obs1)).thenReturn(obGen1);
+        when(m_Converter.convertToProto(obs2)).thenReturn(obGen2);
+        when(m_Converter.convertToProto(obs3)).thenReturn(obGen3);
+        
+        // room for the message header and 2 observations, each with a few bytes for the tag and length
+        long maxSize = 1024L + 2 * (obGen1.getSerializedSize() + 4);
+        when(m_RemoteSettings.getMaxMessageSize()).thenReturn(maxSize);
+
+        m_SUT.handleMessage(thMessage, payload, channel);
+
+        ArgumentCaptor<GetObservationResponseData> response = ArgumentCaptor.forClass(GetObservationResponseData.class);
+        verify(m_MessageFactory).createObservationStoreResponseMessage(eq(thMessage), 
+            eq(ObservationStoreMessageType.GetObservationResponse), response.capture());
+        verify(m_ResponseWrapper).queue(channel);
+        
+        GetObservationResponseData responseData = response.getValue();
+        assertThat(responseData.getObservationNativeList(), contains(obGen1, obGen2));
+        assertThat((long)responseData.getSerializedSize(), is(lessThan(maxSize)));
     }
 
     /**
@@ -477,7 +559,7 @@ public class TestObservationMessageService
         assertThat(responseData.getObservationNativeList(), hasItems(obGen1, obGen2));
         
         verify(oQuery).withAssetUuid(uuid);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
 
     /**
@@ -542,7 +624,7 @@ public class TestObservationMessageService
         
         verify(oQuery).withAssetUuid(uuid);
         verify(oQuery).withTimeCreatedRange(timeStart, timeEnd);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -613,7 +695,7 @@ public class TestObservationMessageService
         verify(oQuery).withAssetUuid(uuid);
         verify(oQuery).withTimeCreatedRange(createdTimeStart, createdTimeEnd);
         verify(oQuery).withTimeObservedRange(observedTimeStart, observedTimeEnd);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -674,7 +756,7 @@ public class TestObservationMessageService
         
         verify(oQuery).withAssetUuid(uuid);
         verify(oQuery).withMaxObservations(1);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -736,7 +818,7 @@ public class TestObservationMessageService
         verify(oQuery).withAssetUuid(uuid);
         verify(oQuery).withTimeCreatedRange(timeStart, timeEnd);
         verify(oQuery).withMaxObservations(1);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     /**
      * Test GetObservationRequest with query of assetType.
@@ -794,7 +876,7 @@ public class TestObservationMessageService
         assertThat(responseData.getObservationNativeList(), hasItems(obGen1, obGen2));
         
         verify(oQuery).withAssetType("a.new.Asset");
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
 
     /**
@@ -859,7 +941,7 @@ public class TestObservationMessageService
         
         verify(oQuery).withAssetType("a.new.Asset");
         verify(oQuery).withTimeCreatedRange(timeStart, timeEnd);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -919,7 +1001,7 @@ public class TestObservationMessageService
         
         verify(oQuery).withAssetType("a.new.Asset");
         verify(oQuery).withMaxObservations(1);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
 
     /**
@@ -981,7 +1063,7 @@ public class TestObservationMessageService
         verify(oQuery).withAssetType("a.new.Asset");
         verify(oQuery).withTimeCreatedRange(timeStart, timeEnd);
         verify(oQuery).withMaxObservations(1);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     /**
      * Test GetObservationRequest with query of observation type.
@@ -1040,7 +1122,7 @@ public class TestObservationMessageService
         assertThat(responseData.getObservationNativeList(), hasItems(obGen1, obGen2));
         
         verify(oQuery).withSubType(ObservationSubTypeEnum.AUDIO_METADATA);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
 
     /**
@@ -1106,7 +1188,7 @@ public class TestObservationMessageService
         
         verify(oQuery).withSubType(ObservationSubTypeEnum.AUDIO_METADATA);
         verify(oQuery).withTimeCreatedRange(timeStart, timeEnd);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -1169,7 +1251,7 @@ public class TestObservationMessageService
         
         verify(oQuery).withMaxObservations(1);
         verify(oQuery).withSubType(ObservationSubTypeEnum.AUDIO_METADATA);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -1232,7 +1314,7 @@ public class TestObservationMessageService
         verify(oQuery).withSubType(ObservationSubTypeEnum.AUDIO_METADATA);
         verify(oQuery).withTimeCreatedRange(timeStart, timeEnd);
         verify(oQuery).withMaxObservations(1);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -1290,7 +1372,7 @@ public class TestObservationMessageService
         assertThat(responseData.getObservationNativeList(), hasItems(obGen1));
         
         verify(oQuery).withOrder(ObservationQuery.SortField.CreatedTimestamp, ObservationQuery.SortOrder.Ascending);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -1349,7 +1431,7 @@ public class TestObservationMessageService
         
         verify(oQuery, never()).withOrder(Mockito.any(ObservationQuery.SortField.class),
                                           Mockito.any(ObservationQuery.SortOrder.class));
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -1407,7 +1489,7 @@ public class TestObservationMessageService
         assertThat(responseData.getObservationNativeList(), hasItems(obGen1));
         
         verify(oQuery).withOrder(ObservationQuery.SortField.ObservedTimestamp, ObservationQuery.SortOrder.Descending);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -1466,7 +1548,7 @@ public class TestObservationMessageService
         
         verify(oQuery, never()).withOrder(Mockito.any(ObservationQuery.SortField.class),
                                           Mockito.any(ObservationQuery.SortOrder.class));
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
     
     /**
@@ -1521,7 +1603,7 @@ public class TestObservationMessageService
         assertThat(responseData.getObservationNativeList(), hasItems(obGen1));
         
         verify(oQuery).withRange(0, 1);
-        verify(oQuery).execute();
+        verify(oQuery).iterate(Mockito.anyInt());
     }
 
     /**
@@ -2109,7 +2191,7 @@ public class TestObservationMessageService
     /**
      * Mocks an ObservationQuery based on the inputs given and makes sure that the mocked object is returned
      * from the observation store when m_ObservationStore.newQuery() is called. Also ensures that the 
-     * observation list passed in is returned when query.execute() is called. If a field is not to be set 
+     * observation list passed in is returned when query.iterate() is called. If a field is not to be set 
      * then null should be passed to the method. This method makes no checks on what are 
      * the valid combinations of query fields. 
      * 
@@ -2136,7 +2218,7 @@ public class TestObservationMessageService
      * @param maxObs
      *  the max number of observations; null if not to be set
      * @param obs
-     *  the observations that should be returned when query.execute() is called.
+     *  the observations that should be returned when query.iterate() is called.
      * @return
      *  the mocked observation query object
      */
@@ -2158,7 +2240,7 @@ public class TestObservationMessageService
             when(query.withRange(startRange, endRange)).thenReturn(query);
         }
         
-        when(query.execute()).thenReturn(obs);
+        when(query.iterate(Mockito.anyInt())).thenReturn(obs.iterator());
         
         return query;
     }
@@ -13,13 +13,21 @@
 package mil.dod.th.ose.remote.observation;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import mil.dod.th.core.log.LoggingService;
@@ -47,6 +55,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
@@ -132,19 +142,118 @@ public class TestRemoteObservationListener
      * Verify that the observation loading interactions take place.
      */
     @Test
-    public void testGetObservationResponse() throws ObjectConverterException, IllegalArgumentException, 
-        PersistenceFailedException, ValidationFailedException
+    public void testGetObservationResponse() throws Exception
     {
 
         m_ObservationHandler.handleEvent(getObservationsEvent());
 
-        verify(m_ObservationStore, timeout(100).times(3)).persist(Mockito.any(Observation.class));
+        Event completeEvent = waitForCompleteEvent();
+        assertThat((Integer)completeEvent.getProperty(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_RETRIEVED), is(3));
+        assertThat((Integer)completeEvent.getProperty(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_STORED), is(3));
+        assertThat((Double)completeEvent.getProperty(RemoteEventConstants.EVENT_PROP_OBS_STORE_RATE), 
+                greaterThan(0.0));
+        assertThat(waitForPersistedObservations(3), hasSize(3));
+    }
+    
+    /**
+     * Verify observations are stored in batches limited by the configured batch size and progress events are posted 
+     * as batches are stored.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetObservationResponse_Batched() throws Exception
+    {
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put("enabled", false);
+        m_SUT.modified(props);
+        props.put("enabled", true);
+        props.put("persistBatchSize", 2);
+        props.put("conversionThreads", 4);
+        m_SUT.modified(props);
         
-        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
-        //verify push event
-        verify(m_EventAdmin).postEvent(captor.capture());
-        assertThat(captor.getValue().getTopic(), is(RemoteEventConstants.TOPIC_OBS_STORE_RETRIEVE_COMPLETE));
-        assertThat((Integer)captor.getValue().getProperty(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_RETRIEVED), is(3));
+        final int numObs = 9;
+        GetObservationResponseData.Builder response = GetObservationResponseData.newBuilder();
+        for (int i = 0; i < numObs; i++)
+        {
+            ObservationGen.Observation protoObs = TerraHarvestMessageHelper.getProtoObs();
+            response.addObservationNative(protoObs);
+            when(m_Converter.convertToJaxb(protoObs)).thenReturn(
+                    new Observation().withUuid(SharedMessageUtils.convertProtoUUIDtoUUID(protoObs.getUuid())));
+        }
+        
+        m_ObservationHandler.handleEvent(createEvent(response.build(), Namespace.ObservationStore, 
+            ObservationStoreMessageType.GetObservationResponse.toString()));
+        
+        Event completeEvent = waitForCompleteEvent();
+        assertThat((Integer)completeEvent.getProperty(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_STORED), 
+                is(numObs));
+        
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(m_ObservationStore, atLeast(numObs / 2 + 1)).persistOrReplaceAll(captor.capture());
+        Set<Observation> persisted = new HashSet<>();
+        for (Collection<Observation> batch : captor.getAllValues())
+        {
+            assertThat(batch.size(), lessThanOrEqualTo(2));
+            persisted.addAll(batch);
+        }
+        assertThat(persisted, hasSize(numObs));
+        
+        ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+        verify(m_EventAdmin, atLeastOnce()).postEvent(eventCaptor.capture());
+        for (Event event : eventCaptor.getAllValues())
+        {
+            if (event.getTopic().equals(RemoteEventConstants.TOPIC_OBS_STORE_RETRIEVE_PROGRESS))
+            {
+                assertThat((Integer)event.getProperty(RemoteEventConstants.EVENT_PROP_OBS_NUMBER_STORED), 
+                        lessThan(numObs));
+            }
+        }
+    }
+    
+    /**
+     * Verify observations in a batch are stored individually if storing the batch fails so only the invalid 
+     * observation is lost.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetObservationResponse_BatchFails() throws Exception
+    {
+        m_SUT.deactivate();
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        
+        final Observation invalidObs = new Observation().withUuid(UUID.randomUUID());
+        when(m_ObservationStore.persistOrReplaceAll(Mockito.any(Collection.class))).thenAnswer(
+            new Answer<Integer>()
+            {
+                @Override
+                public Integer answer(InvocationOnMock invocation) throws Throwable
+                {
+                    if (((Collection<Observation>)invocation.getArguments()[0]).contains(invalidObs))
+                    {
+                        throw new ValidationFailedException("invalid");
+                    }
+                    return 0;
+                }
+            });
+        
+        ArgumentCaptor<EventHandler> handlerCaptor = ArgumentCaptor.forClass(EventHandler.class);
+        verify(m_Context, times(4)).registerService(eq(EventHandler.class), handlerCaptor.capture(), 
+            Mockito.any(Dictionary.class));
+        ObservationRemoteHandler remoteHandler = (ObservationRemoteHandler)handlerCaptor.getAllValues().get(3);
+        
+        Observation validObs = new Observation().withUuid(UUID.randomUUID());
+        for (Observation obs : Arrays.asList(validObs, invalidObs))
+        {
+            final Map<String, Object> props = new HashMap<String, Object>();
+            props.put(ObservationStore.EVENT_PROP_OBSERVATION, obs);
+            remoteHandler.handleEvent(new Event(ObservationStore.TOPIC_OBSERVATION_PERSISTED_WITH_OBS, props));
+        }
+        
+        verify(m_Logging, timeout(1000)).error(Mockito.any(ValidationFailedException.class), 
+                eq("The remote observation with UUID %s failed to be persisted."), eq(invalidObs.getUuid()));
+        verify(m_ObservationStore).persistOrReplaceAll(Collections.singletonList(invalidObs));
+        verify(m_ObservationStore, atLeastOnce()).persistOrReplaceAll(Collections.singletonList(validObs));
     }
     
     /**
@@ -156,7 +265,7 @@ public class TestRemoteObservationListener
     {
         m_ObservationHandler.handleEvent(getEmptyObservationEvent());
 
-        verify(m_ObservationStore, never()).persist(Mockito.any(Observation.class));
+        verify(m_ObservationStore, never()).persistOrReplaceAll(Mockito.anyCollectionOf(Observation.class));
         
         ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
         //verify push event
@@ -181,7 +290,8 @@ public class TestRemoteObservationListener
         m_ObservationHandler.handleEvent(createEvent(response, Namespace.ObservationStore, 
             ObservationStoreMessageType.GetObservationResponse.toString()));
 
-        verify(m_ObservationStore, timeout(1000).never()).persist(Mockito.any(Observation.class));
+        verify(m_ObservationStore, timeout(1000).never()).persistOrReplaceAll(
+                Mockito.anyCollectionOf(Observation.class));
         
         ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
         //verify push event
@@ -195,8 +305,7 @@ public class TestRemoteObservationListener
      * Verify that the observation loading interactions take place.
      */
     @Test
-    public void testFindObservationResponse() throws ObjectConverterException, IllegalArgumentException, 
-        PersistenceFailedException, ValidationFailedException
+    public void testFindObservationResponse() throws Exception
     {
         //mocks for converter
         Observation obsJaxb = mock(Observation.class);
@@ -206,7 +315,7 @@ public class TestRemoteObservationListener
 
         m_ObservationHandler.handleEvent(findObservationsEvent());
 
-        verify(m_ObservationStore, timeout(100).times(3)).persist(Mockito.any(Observation.class));
+        assertThat(waitForPersistedObservations(3), hasSize(3));
     }
 
     /**
@@ -215,18 +324,18 @@ public class TestRemoteObservationListener
      * Verify other observations are persisted.
      */
     @Test
-    public void testFindObservationResponsePersistException() throws ObjectConverterException, 
-        IllegalArgumentException, PersistenceFailedException, ValidationFailedException
+    public void testFindObservationResponsePersistException() throws Exception
     {
         m_ObservationHandler.handleEvent(findObservationsEventException());
 
-        verify(m_ObservationStore, timeout(100).times(2)).persist(Mockito.any(Observation.class));
+        verify(m_Logging, timeout(1000)).error(Mockito.any(ObjectConverterException.class), 
+                eq("The remote observation with UUID %s failed to be converted."), Mockito.anyObject());
+        assertThat(waitForPersistedObservations(2), hasSize(2));
     }
     
     /**
-     * Test loading an observation namespace message where the observation already exists.
-     * Verify that the observations are removed.
-     * Verify validated observation is persisted, replacing the already existent observation.
+     * Test loading an observation namespace message where the same observation is received more than once.
+     * Verify each copy is stored in a separate transaction so the last one received replaces the others.
      */
     @Test
     public void testFindObservationResponsePersistMerge() throws ObjectConverterException, 
@@ -238,12 +347,17 @@ public class TestRemoteObservationListener
         
         //mock behavior
         when(m_Converter.convertToJaxb(Mockito.any(Message.class))).thenReturn(obsJaxb);
-        when(m_ObservationStore.find(Mockito.any(UUID.class))).thenReturn(obsJaxb);
+        when(m_ObservationStore.persistOrReplaceAll(Collections.singletonList(obsJaxb))).thenReturn(1);
 
-        m_ObservationHandler.handleEvent(findObservationsEvent());
+        FindObservationByUUIDResponseData response = FindObservationByUUIDResponseData.newBuilder()
+                .addObservationNative(TerraHarvestMessageHelper.getProtoObs())
+                .addObservationNative(TerraHarvestMessageHelper.getProtoObs())
+                .addObservationNative(TerraHarvestMessageHelper.getProtoObs()).build();
+        m_ObservationHandler.handleEvent(createEvent(response, Namespace.ObservationStore, 
+            ObservationStoreMessageType.FindObservationByUUIDResponse.toString()));
 
-        verify(m_ObservationStore, timeout(100).times(3)).remove(obsJaxb);
-        verify(m_ObservationStore, timeout(100).times(3)).persist(Mockito.any(Observation.class));
+        verify(m_ObservationStore, timeout(1000).times(3)).persistOrReplaceAll(Collections.singletonList(obsJaxb));
+        verify(m_ObservationStore, never()).find(Mockito.any(UUID.class));
     }
 
     /**
@@ -256,7 +370,41 @@ public class TestRemoteObservationListener
         //handle event
         m_RemoteObsListener.handleEvent(createObsEvent());
 
-        verify(m_ObservationStore, timeout(100).atLeastOnce()).persist(Mockito.any(Observation.class));
+        verify(m_ObservationStore, timeout(1000).atLeastOnce()).persistOrReplaceAll(
+                Mockito.anyCollectionOf(Observation.class));
+    }
+
+    /**
+     * Verify an event delivered as soon as the handlers are registered is queued and persisted, the received queue 
+     * must exist before the handlers are registered.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testActivate_EventDuringRegistration() throws Exception
+    {
+        m_SUT = new RemoteObservationListener();
+        m_SUT.setLoggingService(m_Logging);
+        m_SUT.setJaxbProtoObjectConverter(m_Converter);
+        m_SUT.setObservationStore(m_ObservationStore);
+        m_SUT.setEventAdmin(m_EventAdmin);
+        
+        //deliver an event to the remote handler while it is being registered
+        when(m_Context.registerService(eq(EventHandler.class), Mockito.isA(ObservationRemoteHandler.class), 
+            Mockito.any(Dictionary.class))).thenAnswer(new Answer<ServiceRegistration<EventHandler>>()
+            {
+                @Override
+                public ServiceRegistration<EventHandler> answer(final InvocationOnMock invocation)
+                {
+                    ((EventHandler)invocation.getArguments()[1]).handleEvent(createObsEvent());
+                    return m_HandlerReg;
+                }
+            });
+        
+        m_SUT.activate(m_Context, new HashMap<String, Object>());
+        
+        verify(m_ObservationStore, timeout(1000).atLeastOnce()).persistOrReplaceAll(
+                Mockito.anyCollectionOf(Observation.class));
+        m_SUT.deactivate();
     }
 
     /**
@@ -342,7 +490,13 @@ public class TestRemoteObservationListener
     @Test
     public void testRemoteObservationHandlerFullQueue() throws InterruptedException
     {
-        // deactivate component so thread isn't running to read items off of queue
+        // use a small queue and deactivate component so thread isn't running to read items off of queue
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put("enabled", false);
+        m_SUT.modified(config);
+        config.put("enabled", true);
+        config.put("receivedQueueCapacity", 100);
+        m_SUT.modified(config);
         m_SUT.deactivate();
         
         Observation obs = null;
@@ -360,6 +514,51 @@ public class TestRemoteObservationListener
                 + "queue is currently full.", obs.getUuid());
     }
     
+    /**
+     * Wait for the retrieve complete event to be posted and return it.
+     */
+    private Event waitForCompleteEvent() throws InterruptedException
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+            verify(m_EventAdmin, atLeast(0)).postEvent(captor.capture());
+            for (Event event : captor.getAllValues())
+            {
+                if (event.getTopic().equals(RemoteEventConstants.TOPIC_OBS_STORE_RETRIEVE_COMPLETE))
+                {
+                    return event;
+                }
+            }
+            Thread.sleep(10);
+        }
+        fail("Retrieve complete event was not posted");
+        return null;
+    }
+    
+    /**
+     * Wait for the given number of observations to be passed to the observation store to be persisted and return all 
+     * observations that have been passed.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Observation> waitForPersistedObservations(final int count) throws Exception
+    {
+        List<Observation> persisted = new ArrayList<>();
+        for (int i = 0; i < 100 && persisted.size() < count; i++)
+        {
+            Thread.sleep(10);
+            @SuppressWarnings("rawtypes")
+            ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+            verify(m_ObservationStore, atLeast(0)).persistOrReplaceAll(captor.capture());
+            persisted.clear();
+            for (Collection<Observation> batch : captor.getAllValues())
+            {
+                persisted.addAll(batch);
+            }
+        }
+        return persisted;
+    }
+    
     //////////////////////////////////////////////////////////////////////////////////////////////
     //  Support methods representing proto observations and jaxb observations                   //
     //////////////////////////////////////////////////////////////////////////////////////////////
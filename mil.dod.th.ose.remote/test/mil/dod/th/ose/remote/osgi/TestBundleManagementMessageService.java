@@ -46,6 +46,7 @@ import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.core.remote.proto.BaseMessages.ErrorCode;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 
 import org.junit.Before;
@@ -147,8 +148,8 @@ public class TestBundleManagementMessageService
                 setNamespace(Namespace.Bundle).
                 setNamespaceMessage(namespaceMessage.toByteString()).
                 build();
-        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Bundle, 100, 
-                namespaceMessage);
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.Bundle, 100, namespaceMessage);
 
         //mock the channel the message came from
         RemoteChannel channel = mock(RemoteChannel.class);
@@ -226,6 +227,30 @@ public class TestBundleManagementMessageService
                 is(namespaceMessage));
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        BundleNamespace namespaceMessage = BundleNamespace.newBuilder()
+                .setType(BundleMessageType.StartResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.Bundle)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.Bundle, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Test the start bundle request.
      * 
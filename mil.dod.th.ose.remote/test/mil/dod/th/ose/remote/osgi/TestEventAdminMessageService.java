@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 
 import javax.xml.bind.MarshalException;
 import javax.xml.bind.UnmarshalException;
@@ -45,6 +46,7 @@ import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationRequestData;
 import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace.EventAdminMessageType;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationResponseData;
+import mil.dod.th.core.remote.proto.EventMessages.SendEventBatchData;
 import mil.dod.th.core.remote.proto.EventMessages.SendEventData;
 import mil.dod.th.core.remote.proto.EventMessages.UnregisterEventRequestData;
 import mil.dod.th.core.remote.proto.MapTypes.ComplexTypesMapEntry;
@@ -57,10 +59,12 @@ import mil.dod.th.core.remote.proto.SharedMessages.Multitype.Type;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.api.RemoteEventRegistration;
+import mil.dod.th.ose.remote.api.RemoteSettings;
 import mil.dod.th.ose.remote.osgi.EventAdminMessageService.EventHandlerImpl;
 import mil.dod.th.ose.remote.proto.PersistEventRegistration.PersistentEventRegistrationMessage;
 import mil.dod.th.ose.remote.util.RemoteInterfaceUtilities;
 import mil.dod.th.ose.remote.util.RemotePropertyConverter;
+import mil.dod.th.ose.shared.EventTopicInterest;
 import mil.dod.th.ose.test.LoggingServiceMocker;
 import mil.dod.th.ose.test.remote.RemoteUtils;
 import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
@@ -69,6 +73,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
@@ -96,6 +102,7 @@ public class TestEventAdminMessageService
     private LoggingService m_Logger;
     private MessageResponseWrapper m_ResponseWrapper;
     private MessageWrapper m_MessageWrapper;
+    private RemoteSettings m_RemoteSettings;
 
     @Before
     public void setUp() throws Exception
@@ -110,6 +117,9 @@ public class TestEventAdminMessageService
         m_ConversionService =  mock(RemotePropertyConverter.class);
         m_DataStore = mock(PersistentDataStore.class);
         m_Logger = LoggingServiceMocker.createMock();
+        m_RemoteSettings = mock(RemoteSettings.class);
+        when(m_RemoteSettings.getEventQueueCapacity()).thenReturn(100);
+        when(m_RemoteSettings.getEventBatchSize()).thenReturn(10);
         
         m_SUT.setLoggingService(m_Logger);        
         m_SUT.setEventAdmin(m_EventAdmin);
@@ -117,6 +127,7 @@ public class TestEventAdminMessageService
         m_SUT.setMessageRouter(m_MessageRouter);
         m_SUT.setRemotePropertyConverter(m_ConversionService);
         m_SUT.setPersistentDataStore(m_DataStore);
+        m_SUT.setRemoteSettings(m_RemoteSettings);
         
         when(m_MessageFactory.createEventAdminResponseMessage(Mockito.any(TerraHarvestMessage.class), 
                 Mockito.any(EventAdminMessageType.class), Mockito.any(Message.class))).thenReturn(m_ResponseWrapper);
@@ -271,6 +282,30 @@ public class TestEventAdminMessageService
         assertThat(receivedMessage.getId(), is(7));
     }
 
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws Exception
+    {
+        EventAdminNamespace namespaceMessage = EventAdminNamespace.newBuilder()
+                .setType(EventAdminMessageType.UnregisterEventResponse)
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.EventAdmin)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.EventAdmin, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, null);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify the namespace is EventAdmin
      */
@@ -600,6 +635,14 @@ public class TestEventAdminMessageService
         verify(reg).unregister();
         verify(m_DataStore).removeMatching(EventAdminMessageService.class, "1");
         
+        // verify events still delivered to the unregistered handler are not sent
+        ArgumentCaptor<EventHandler> handlerCaptor = ArgumentCaptor.forClass(EventHandler.class);
+        verify(m_Context).registerService(eq(EventHandler.class), handlerCaptor.capture(), 
+                Mockito.any(Dictionary.class));
+        handlerCaptor.getValue().handleEvent(new Event("test-topic", new HashMap<String, Object>()));
+        verify(m_MessageFactory, never()).createEventAdminMessage(eq(EventAdminMessageType.SendEvent), 
+                Mockito.any(Message.class));
+        
         // verify the event contains the data message
         ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
         verify(m_EventAdmin, times(2)).postEvent(eventCaptor.capture());
@@ -796,6 +839,93 @@ public class TestEventAdminMessageService
                 is(requestMessage));
     }
 
+    /**
+     * Verify each event of a received batch is posted locally.
+     */
+    @Test
+    public void testSendEventBatch() throws Exception
+    {
+        SendEventBatchData requestMessage = SendEventBatchData.newBuilder()
+                .addEvent(SendEventData.newBuilder().setTopic("topic-a"))
+                .addEvent(SendEventData.newBuilder().setTopic("topic-b")).build();
+
+        EventAdminNamespace eventAdminMessage = EventAdminNamespace.newBuilder()
+                .setType(EventAdminMessageType.SendEventBatch)
+                .setData(requestMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = createEventAdminMessage(eventAdminMessage);
+        TerraHarvestPayload payload = createPayload(eventAdminMessage);
+
+        when(m_ConversionService.complexTypesMapToMap(Mockito.anyList())).thenReturn(new HashMap<String, Object>(), 
+                new HashMap<String, Object>());
+
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+
+        // once for each event and again in handle message
+        ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+        verify(m_EventAdmin, times(3)).postEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getAllValues().get(0).getTopic(), 
+            is(RemoteInterfaceUtilities.getRemoteEventTopic("topic-a")));
+        assertThat((Integer)eventCaptor.getAllValues().get(0).getProperty("controller.id"), is(200));
+        assertThat(eventCaptor.getAllValues().get(1).getTopic(), 
+            is(RemoteInterfaceUtilities.getRemoteEventTopic("topic-b")));
+        assertThat((SendEventBatchData)eventCaptor.getValue().getProperty(RemoteConstants.EVENT_PROP_DATA_MESSAGE),
+                is(requestMessage));
+    }
+
+    /**
+     * Verify events waiting to be sent for a registration that can batch events are sent in a single message.
+     */
+    @Test
+    public void testEventHandlerImpl_Batch() throws Exception
+    {
+        EventRegistrationRequestData requestData = EventRegistrationRequestData.newBuilder()
+                .setCanQueueEvent(true)
+                .setCanBatchEvents(true)
+                .setExpirationTimeHours(1)
+                .addTopic("Silver")
+                .build();
+        
+        // hold up conversion of the first event so the rest wait to be sent
+        final CountDownLatch firstConverting = new CountDownLatch(1);
+        final CountDownLatch releaseFirst = new CountDownLatch(1);
+        when(m_ConversionService.mapToComplexTypesMap(anyMap(), (RemoteTypesGen.LexiconFormat.Enum)any()))
+            .thenAnswer(new Answer<List<ComplexTypesMapEntry>>()
+            {
+                @Override
+                public List<ComplexTypesMapEntry> answer(InvocationOnMock invocation) throws Throwable
+                {
+                    firstConverting.countDown();
+                    releaseFirst.await();
+                    return new ArrayList<ComplexTypesMapEntry>();
+                }
+            });
+        
+        EventHandlerImpl handler = m_SUT.new EventHandlerImpl(200, EncryptType.NONE, requestData);
+        handler.handleEvent(new Event("topic/0", new HashMap<String, Object>()));
+        firstConverting.await();
+        for (int i = 1; i < 5; i++)
+        {
+            handler.handleEvent(new Event("topic/" + i, new HashMap<String, Object>()));
+        }
+        releaseFirst.countDown();
+        
+        ArgumentCaptor<SendEventBatchData> batchCaptor = ArgumentCaptor.forClass(SendEventBatchData.class);
+        verify(m_MessageFactory, timeout(1000)).createEventAdminMessage(eq(EventAdminMessageType.SendEventBatch), 
+                batchCaptor.capture());
+        verify(m_MessageFactory).createEventAdminMessage(eq(EventAdminMessageType.SendEvent), 
+                Mockito.any(Message.class));
+        verify(m_MessageWrapper, timeout(1000).times(2)).queue(200, EncryptType.NONE, null);
+        
+        List<SendEventData> events = batchCaptor.getValue().getEventList();
+        assertThat(events.size(), is(4));
+        for (int i = 0; i < events.size(); i++)
+        {
+            assertThat(events.get(i).getTopic(), is("topic/" + (i + 1)));
+        }
+        assertThat(handler.getDroppedCount(), is(0L));
+    }
+
     /**
      * Test event handling logic for locally posted events.
      */
@@ -1121,6 +1251,14 @@ public class TestEventAdminMessageService
         
         // verify that expiration occurred and event handler unregistered
         verify(handler1).unregister();
+        
+        // verify events still delivered to the expired handler are not sent
+        ArgumentCaptor<EventHandler> handlerCaptor = ArgumentCaptor.forClass(EventHandler.class);
+        verify(m_Context).registerService(eq(EventHandler.class), handlerCaptor.capture(), 
+                Mockito.any(Dictionary.class));
+        handlerCaptor.getValue().handleEvent(new Event("BURGERS", new HashMap<String, Object>()));
+        verify(m_MessageFactory, never()).createEventAdminMessage(eq(EventAdminMessageType.SendEvent), 
+                Mockito.any(Message.class));
     }
     
     TerraHarvestMessage createEventAdminMessage(EventAdminNamespace eventAdminNamespaceMessage)
@@ -46,6 +46,7 @@ import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
 import mil.dod.th.ose.remote.messaging.TerraHarvestMessageUtil;
 import mil.dod.th.ose.remote.util.MetatypeInformationListener;
+import mil.dod.th.ose.shared.EventTopicInterest;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -302,6 +303,33 @@ public class TestMetatypeMessageService
         assertThat(attributeList.get(0).getName(), is("rawr!"));
     }
 
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        GetBundlePidsResponseData data = GetBundlePidsResponseData.newBuilder()
+                .setBundleId(1L).build();
+        MetaTypeNamespace namespaceMessage = MetaTypeNamespace.newBuilder()
+                .setType(MetaTypeMessageType.GetBundlePidsResponse)
+                .setData(data.toByteString())
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.MetaType)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.MetaType, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, data);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Test that if the bundle id is not found that the GetBundlePidsRequest is properly handled.
      * 
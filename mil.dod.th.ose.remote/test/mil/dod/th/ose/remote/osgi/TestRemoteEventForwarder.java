@@ -0,0 +1,224 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.osgi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import mil.dod.th.core.log.LoggingService;
+import mil.dod.th.core.remote.messaging.MessageFactory;
+import mil.dod.th.core.remote.messaging.MessageWrapper;
+import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace.EventAdminMessageType;
+import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationRequestData;
+import mil.dod.th.core.remote.proto.EventMessages.SendEventData;
+import mil.dod.th.core.remote.proto.MapTypes.ComplexTypesMapEntry;
+import mil.dod.th.core.remote.proto.RemoteBase.EncryptType;
+import mil.dod.th.ose.remote.util.RemotePropertyConverter;
+import mil.dod.th.ose.test.LoggingServiceMocker;
+import mil.dod.th.remote.lexicon.types.remote.RemoteTypesGen;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.service.event.Event;
+
+import com.google.protobuf.Message;
+
+/**
+ * Test class for the {@link RemoteEventForwarder}.
+ */
+public class TestRemoteEventForwarder
+{
+    private RemoteEventForwarder m_SUT;
+    private LoggingService m_Logging;
+    private MessageFactory m_MessageFactory;
+    private MessageWrapper m_MessageWrapper;
+    private RemotePropertyConverter m_Converter;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        m_Logging = LoggingServiceMocker.createMock();
+        m_MessageFactory = mock(MessageFactory.class);
+        m_MessageWrapper = mock(MessageWrapper.class);
+        m_Converter = mock(RemotePropertyConverter.class);
+        
+        when(m_MessageFactory.createEventAdminMessage(Mockito.any(EventAdminMessageType.class), 
+                Mockito.any(Message.class))).thenReturn(m_MessageWrapper);
+        when(m_Converter.mapToComplexTypesMap(Mockito.anyMap(), Mockito.any(RemoteTypesGen.LexiconFormat.Enum.class)))
+            .thenAnswer(new Answer<List<ComplexTypesMapEntry>>()
+            {
+                @Override
+                public List<ComplexTypesMapEntry> answer(InvocationOnMock invocation)
+                {
+                    return new ArrayList<ComplexTypesMapEntry>();
+                }
+            });
+        
+        m_SUT = new RemoteEventForwarder(m_Logging, m_MessageFactory, m_Converter, 3, 10);
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_SUT.shutdown();
+    }
+
+    /**
+     * Verify events are dropped once too many are waiting to be sent.
+     */
+    @Test
+    public void testQueueFull() throws Exception
+    {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch releaseSend = new CountDownLatch(1);
+        when(m_MessageWrapper.trySend(100, EncryptType.NONE)).thenAnswer(new Answer<Boolean>()
+        {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable
+            {
+                sending.countDown();
+                releaseSend.await();
+                return true;
+            }
+        });
+        
+        RemoteEventForwarder.Destination destination = 
+                m_SUT.createDestination(100, EncryptType.NONE, createRequest(0));
+        destination.offer(createEvent("topic/0"));
+        sending.await();
+        
+        // first event is being sent, 3 more can wait
+        for (int i = 1; i < 6; i++)
+        {
+            destination.offer(createEvent("topic/" + i));
+        }
+        assertThat(destination.getDroppedCount(), is(2L));
+        releaseSend.countDown();
+        
+        ArgumentCaptor<SendEventData> captor = ArgumentCaptor.forClass(SendEventData.class);
+        verify(m_MessageWrapper, timeout(1000).times(4)).trySend(100, EncryptType.NONE);
+        verify(m_MessageFactory, times(4)).createEventAdminMessage(eq(EventAdminMessageType.SendEvent), 
+                captor.capture());
+        for (int i = 0; i < 4; i++)
+        {
+            assertThat(captor.getAllValues().get(i).getTopic(), is("topic/" + i));
+        }
+    }
+
+    /**
+     * Verify events of a topic occurring within the topic interval are replaced by the latest one, which is sent once 
+     * the interval has passed.
+     */
+    @Test
+    public void testTopicInterval() throws Exception
+    {
+        RemoteEventForwarder.Destination destination = 
+                m_SUT.createDestination(100, EncryptType.NONE, createRequest(200));
+        
+        destination.offer(createEvent("topic/a"));
+        destination.offer(createEvent("topic/a"));
+        destination.offer(createEvent("topic/b"));
+        destination.offer(createEvent("topic/a"));
+        assertThat(destination.getCoalescedCount(), is(1L));
+        
+        // first of each topic is sent right away
+        ArgumentCaptor<SendEventData> captor = ArgumentCaptor.forClass(SendEventData.class);
+        verify(m_MessageWrapper, timeout(1000).times(2)).trySend(100, EncryptType.NONE);
+        Thread.sleep(100);
+        verify(m_MessageWrapper, times(2)).trySend(100, EncryptType.NONE);
+        
+        // latest held event is sent after the interval
+        verify(m_MessageWrapper, timeout(1000).times(3)).trySend(100, EncryptType.NONE);
+        verify(m_MessageFactory, times(3)).createEventAdminMessage(eq(EventAdminMessageType.SendEvent), 
+                captor.capture());
+        assertThat(captor.getAllValues().get(0).getTopic(), is("topic/a"));
+        assertThat(captor.getAllValues().get(1).getTopic(), is("topic/b"));
+        assertThat(captor.getAllValues().get(2).getTopic(), is("topic/a"));
+        verify(m_Converter, times(3)).mapToComplexTypesMap(Mockito.anyMap(), 
+                Mockito.any(RemoteTypesGen.LexiconFormat.Enum.class));
+    }
+
+    /**
+     * Verify closing a destination cancels the release of held events and later events are ignored.
+     */
+    @Test
+    public void testClose() throws Exception
+    {
+        RemoteEventForwarder.Destination destination = 
+                m_SUT.createDestination(100, EncryptType.NONE, createRequest(200));
+        
+        destination.offer(createEvent("topic/a"));
+        verify(m_MessageWrapper, timeout(1000)).trySend(100, EncryptType.NONE);
+        
+        // held until the interval passes
+        destination.offer(createEvent("topic/a"));
+        destination.close();
+        destination.offer(createEvent("topic/b"));
+        
+        Thread.sleep(400);
+        verify(m_MessageWrapper, times(1)).trySend(100, EncryptType.NONE);
+    }
+
+    /**
+     * Verify an event sent to several destinations using the same lexicon format is only converted once.
+     */
+    @Test
+    public void testConversionShared() throws Exception
+    {
+        RemoteEventForwarder.Destination destination1 = 
+                m_SUT.createDestination(100, EncryptType.NONE, createRequest(0));
+        RemoteEventForwarder.Destination destination2 = 
+                m_SUT.createDestination(101, EncryptType.NONE, createRequest(0));
+        RemoteEventForwarder.Destination xmlDestination = m_SUT.createDestination(102, EncryptType.NONE, 
+                createRequest(0).toBuilder().setObjectFormat(RemoteTypesGen.LexiconFormat.Enum.XML).build());
+        
+        Event event = createEvent("topic/a");
+        destination1.offer(event);
+        destination2.offer(event);
+        xmlDestination.offer(event);
+        
+        verify(m_MessageWrapper, timeout(1000)).trySend(100, EncryptType.NONE);
+        verify(m_MessageWrapper, timeout(1000)).trySend(101, EncryptType.NONE);
+        verify(m_MessageWrapper, timeout(1000)).trySend(102, EncryptType.NONE);
+        verify(m_Converter).mapToComplexTypesMap(Mockito.anyMap(), 
+                eq(RemoteTypesGen.LexiconFormat.Enum.NATIVE));
+        verify(m_Converter).mapToComplexTypesMap(Mockito.anyMap(), 
+                eq(RemoteTypesGen.LexiconFormat.Enum.XML));
+    }
+
+    private EventRegistrationRequestData createRequest(int topicIntervalMs)
+    {
+        return EventRegistrationRequestData.newBuilder()
+                .setCanQueueEvent(false)
+                .setTopicIntervalMs(topicIntervalMs)
+                .setExpirationTimeHours(1)
+                .addTopic("topic/*")
+                .build();
+    }
+
+    private Event createEvent(String topic)
+    {
+        return new Event(topic, new HashMap<String, Object>());
+    }
+}
@@ -34,6 +34,7 @@ import mil.dod.th.core.remote.proto.RemoteChannelLookupMessages.SyncTransportCha
 import mil.dod.th.core.remote.proto.RemoteChannelLookupMessages.SyncTransportChannelResponseData;
 import mil.dod.th.ose.remote.MessageRouterInternal;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.shared.EventTopicInterest;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -155,6 +156,34 @@ public class TestRemoteChannelLookupService
         assertThat((RemoteChannel)postedEvent.getProperty(RemoteConstants.EVENT_PROP_CHANNEL), is(channel));
     }
     
+    /**
+     * Verify the message received event is posted using the topic interest known by the router and the response is 
+     * handled by the router.
+     */
+    @Test
+    public void testHandleMessage_Response() throws IOException
+    {
+        SyncTransportChannelResponseData data = SyncTransportChannelResponseData.newBuilder()
+                .setTransportLayerName("tl").setRemoteSystemAddress("remote").setSourceSystemAddress("source")
+                .setRemoteSystemId(2).build();
+        RemoteChannelLookupNamespace namespaceMessage = RemoteChannelLookupNamespace.newBuilder()
+                .setType(RemoteChannelLookupMessageType.SyncTransportChannelResponse)
+                .setData(data.toByteString())
+                .build();
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder()
+                .setNamespace(Namespace.RemoteChannelLookup)
+                .setNamespaceMessage(namespaceMessage.toByteString())
+                .build();
+        TerraHarvestMessage message = TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, 
+                Namespace.RemoteChannelLookup, 100, namespaceMessage);
+        
+        m_SUT.handleMessage(message, payload, mock(RemoteChannel.class));
+        
+        verify(m_MessageRouter).getEventTopicInterest();
+        verify(m_MessageRouter).handleResponse(message, payload, namespaceMessage, data);
+        verify(m_EventAdmin).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify handling of the response to syncing a transport layer channel.
      */
@@ -278,6 +278,7 @@ public class TestTransportChannelImpl
         
         // should pass complete message as byte buffer to correct address
         verify(m_TransportLayer).send(ByteBuffer.wrap(fullBinaryMessage), m_Address);
+        assertThat(m_SUT.getMessagesTransmitted(), is(1L));
         
         // verify logging is enabled
         verify(m_Logging, times(1)).debug(anyString(), anyVararg());
@@ -556,6 +557,11 @@ public class TestTransportChannelImpl
         when(m_MessageSender.getQueuedMessageCount()).thenReturn(100);
         
         assertThat(m_SUT.getQueuedMessageCount(), is(100));
+        
+        when(m_MessageSender.getQueuedByteCount()).thenReturn(1000L);
+        assertThat(m_SUT.getQueuedByteCount(), is(1000L));
+        when(m_MessageSender.getDroppedMessageCount()).thenReturn(5L);
+        assertThat(m_SUT.getDroppedMessageCount(), is(5L));
     }
     
     /**
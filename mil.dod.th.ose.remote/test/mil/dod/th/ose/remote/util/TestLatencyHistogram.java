@@ -0,0 +1,73 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram
+{
+    /**
+     * Verify an empty histogram reports zeros.
+     */
+    @Test
+    public void testEmpty()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getAverageMicros(), is(0.0));
+        assertThat(histogram.getMaxMicros(), is(0L));
+        assertThat(histogram.getPercentileMicros(50), is(0L));
+    }
+    
+    /**
+     * Verify samples are counted, averaged and placed in power of 2 buckets for percentiles.
+     */
+    @Test
+    public void testRecord()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        for (int i = 0; i < 99; i++)
+        {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        }
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(1000));
+        
+        assertThat(histogram.getCount(), is(100L));
+        assertThat(histogram.getAverageMicros(), closeTo(12.97, 0.01));
+        assertThat(histogram.getMaxMicros(), is(1000L));
+        assertThat(histogram.getPercentileMicros(50), is(4L));
+        assertThat(histogram.getPercentileMicros(99), is(4L));
+        assertThat(histogram.getPercentileMicros(100), is(1024L));
+        assertThat(histogram.toString(), containsString("count=100"));
+    }
+    
+    /**
+     * Verify samples longer than the last bucket report the maximum.
+     */
+    @Test
+    public void testOverflow()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        histogram.record(TimeUnit.MINUTES.toNanos(10));
+        
+        assertThat(histogram.getPercentileMicros(50), is(TimeUnit.MINUTES.toMicros(10)));
+    }
+}
@@ -24,9 +24,13 @@ import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
 import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+import mil.dod.th.ose.shared.EventTopicInterest;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 
@@ -42,6 +46,48 @@ public class TestRemoteInterfaceUtilities
         assertThat(RemoteInterfaceUtilities.getRemoteEventTopic("blah"), is("blah_REMOTE"));
     }
     
+    /**
+     * Verify the message received event is only created and posted if subscribed to or the topic interest is not 
+     * known.
+     */
+    @Test
+    public final void testPostMessageReceivedEvent() throws InvalidProtocolBufferException
+    {
+        BaseNamespace baseNamespaceMessage = BaseNamespace.newBuilder()
+                .setType(BaseMessageType.ControllerInfo)
+                .build();
+        TerraHarvestMessage message = 
+                TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Base, 100, baseNamespaceMessage);
+        TerraHarvestPayload payload = TerraHarvestPayload.newBuilder().
+                setNamespace(Namespace.Base).
+                setNamespaceMessage(baseNamespaceMessage.toByteString()).
+                build();
+        RemoteChannel channel = mock(RemoteChannel.class);
+        EventAdmin eventAdmin = mock(EventAdmin.class);
+        
+        // always posted if the topic interest is not known
+        RemoteInterfaceUtilities.postMessageReceivedEvent(eventAdmin, null, message, payload, baseNamespaceMessage, 
+                BaseMessageType.ControllerInfo, null, channel);
+        ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+        verify(eventAdmin).postEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getTopic(), is(RemoteConstants.TOPIC_MESSAGE_RECEIVED));
+        assertThat((TerraHarvestMessage)eventCaptor.getValue().getProperty(RemoteConstants.EVENT_PROP_MESSAGE), 
+                is(message));
+        
+        // not posted when nothing is subscribed
+        EventTopicInterest topicInterest = mock(EventTopicInterest.class);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(eventAdmin, topicInterest, message, payload, 
+                baseNamespaceMessage, BaseMessageType.ControllerInfo, null, channel);
+        verify(topicInterest).isSubscribed(RemoteConstants.TOPIC_MESSAGE_RECEIVED);
+        verify(eventAdmin, times(1)).postEvent(Mockito.any(Event.class));
+        
+        // posted again once subscribed
+        when(topicInterest.isSubscribed(RemoteConstants.TOPIC_MESSAGE_RECEIVED)).thenReturn(true);
+        RemoteInterfaceUtilities.postMessageReceivedEvent(eventAdmin, topicInterest, message, payload, 
+                baseNamespaceMessage, BaseMessageType.ControllerInfo, null, channel);
+        verify(eventAdmin, times(2)).postEvent(Mockito.any(Event.class));
+    }
+    
     /**
      * Verify the event is created with the proper topic and properties.
      */
@@ -0,0 +1,194 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.remote.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace;
+import mil.dod.th.core.remote.proto.BaseMessages.BaseNamespace.BaseMessageType;
+import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
+import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestPayload;
+import mil.dod.th.ose.remote.TerraHarvestMessageHelper;
+
+import org.junit.Test;
+
+/**
+ * Test parsing messages with bytes fields as slices of the input.  Also compares the rate and allocations of parsing
+ * nested messages by copying versus parsing in place for small and large messages.
+ */
+public class TestZeroCopyParser
+{
+    private static final int SMALL_DATA_SIZE = 100;
+    private static final int LARGE_DATA_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Verify all levels of a nested message can be parsed from a frame and match the original.
+     */
+    @Test
+    public void testParseNested() throws InvalidProtocolBufferException
+    {
+        TerraHarvestMessage message = createMessage(SMALL_DATA_SIZE);
+
+        BaseNamespace namespace = parseInPlace(createFrame(message));
+
+        assertThat(namespace, is(BaseNamespace.parseFrom(
+                TerraHarvestPayload.parseFrom(message.getTerraHarvestPayload()).getNamespaceMessage())));
+        assertThat(namespace.getData().size(), is(SMALL_DATA_SIZE));
+    }
+
+    /**
+     * Verify invalid data is rejected.
+     */
+    @Test
+    public void testParseInvalid()
+    {
+        try
+        {
+            ZeroCopyParser.parse(TerraHarvestMessage.PARSER, ByteString.copyFrom(new byte[] {0x7, 0x4d, 0x7e}));
+            fail("Expecting exception");
+        }
+        catch (final InvalidProtocolBufferException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Verify a large message is parsed down to the namespace message without copying the data, while parsing by 
+     * copying allocates the data at each level.
+     */
+    @Test
+    public void testParseLargeWithoutCopies() throws InvalidProtocolBufferException
+    {
+        ByteString frame = createFrame(createMessage(LARGE_DATA_SIZE));
+
+        // warm up so class loading is not counted
+        parseInPlace(frame);
+        parseByCopying(frame);
+
+        long before = getAllocatedBytes();
+        BaseNamespace inPlace = parseInPlace(frame);
+        long inPlaceAllocated = getAllocatedBytes() - before;
+
+        before = getAllocatedBytes();
+        BaseNamespace copied = parseByCopying(frame);
+        long copiedAllocated = getAllocatedBytes() - before;
+
+        assertThat(inPlace, is(copied));
+        assertThat(inPlaceAllocated, lessThan((long)LARGE_DATA_SIZE));
+        assertThat(copiedAllocated, greaterThan(2L * LARGE_DATA_SIZE));
+    }
+
+    /**
+     * Compare decode rate and allocations when parsing by copying and parsing in place for small and large messages.
+     * Only verifies the decoded messages, the results are reported for comparison between runs.
+     */
+    @Test
+    public void testDecodeBenchmark() throws InvalidProtocolBufferException
+    {
+        benchmark("small", createFrame(createMessage(SMALL_DATA_SIZE)), 200000);
+        benchmark("large", createFrame(createMessage(LARGE_DATA_SIZE)), 100);
+    }
+
+    private void benchmark(final String name, final ByteString frame, final int iterations)
+            throws InvalidProtocolBufferException
+    {
+        final BaseNamespace expected = parseByCopying(frame);
+
+        // warm up both paths before measuring
+        for (int i = 0; i < iterations; i++)
+        {
+            parseByCopying(frame);
+            parseInPlace(frame);
+        }
+
+        long allocated = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            assertThat(parseByCopying(frame).getType(), is(expected.getType()));
+        }
+        final double copyRate = iterations / ((System.nanoTime() - start) / 1e9);
+        final long copyAllocated = (getAllocatedBytes() - allocated) / iterations;
+
+        allocated = getAllocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            assertThat(parseInPlace(frame).getType(), is(expected.getType()));
+        }
+        final double inPlaceRate = iterations / ((System.nanoTime() - start) / 1e9);
+        final long inPlaceAllocated = (getAllocatedBytes() - allocated) / iterations;
+
+        System.out.printf(// NOPMD: report benchmark results
+                "Decode %s message (%d bytes): copying %.0f msg/s, %d bytes/msg; in place %.0f msg/s, %d bytes/msg%n",
+                name, frame.size(), copyRate, copyAllocated, inPlaceRate, inPlaceAllocated);
+    }
+
+    /**
+     * Parse each level the way message services did before, each nested message is copied out of its parent.
+     */
+    private BaseNamespace parseByCopying(final ByteString frame) throws InvalidProtocolBufferException
+    {
+        final TerraHarvestMessage message = TerraHarvestMessage.parseFrom(frame.toByteArray());
+        final TerraHarvestPayload payload = TerraHarvestPayload.parseFrom(message.getTerraHarvestPayload());
+        return BaseNamespace.parseFrom(payload.getNamespaceMessage());
+    }
+
+    private BaseNamespace parseInPlace(final ByteString frame) throws InvalidProtocolBufferException
+    {
+        final TerraHarvestMessage message = ZeroCopyParser.parse(TerraHarvestMessage.PARSER, frame);
+        final TerraHarvestPayload payload = ZeroCopyParser.parse(TerraHarvestPayload.PARSER, 
+                message.getTerraHarvestPayload());
+        return ZeroCopyParser.parse(BaseNamespace.PARSER, payload.getNamespaceMessage());
+    }
+
+    private TerraHarvestMessage createMessage(final int dataSize)
+    {
+        final byte[] data = new byte[dataSize];
+        for (int i = 0; i < data.length; i++)
+        {
+            data[i] = (byte)i;
+        }
+        final BaseNamespace namespace = BaseNamespace.newBuilder()
+                .setType(BaseMessageType.GenericErrorResponse)
+                .setData(ByteString.copyFrom(data))
+                .build();
+        return TerraHarvestMessageHelper.createTerraHarvestMessage(0, 1, Namespace.Base, 100, namespace);
+    }
+
+    /**
+     * Create a frame the same way the socket listener does, filling an output of the exact message size.
+     */
+    private ByteString createFrame(final TerraHarvestMessage message)
+    {
+        final byte[] bytes = message.toByteArray();
+        final ByteString.Output output = ByteString.newOutput(bytes.length);
+        output.write(bytes, 0, bytes.length);
+        return output.toByteString();
+    }
+
+    private long getAllocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+}
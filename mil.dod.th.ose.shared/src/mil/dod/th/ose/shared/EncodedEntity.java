@@ -0,0 +1,115 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.shared;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Form in which the {@link mil.dod.th.core.persistence.PersistentDataStore} stores an entity encoded by a {@link 
+ * PersistentEntityCodec}. Stored entities of any other type, including byte arrays, were not encoded and are returned 
+ * as stored.
+ * 
+ * <p>
+ * Instances are immutable, the encoded bytes returned by {@link #getData()} must not be modified.
+ */
+public final class EncodedEntity implements Serializable
+{
+    /**
+     * Version of the serialized form, must be kept so existing data can be read.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Fully qualified class name of the entity, used to find the codec when decoding. Written by {@link 
+     * #writeObject(ObjectOutputStream)} so the serialized form does not describe each field.
+     */
+    private transient String m_EntityType;
+    
+    /**
+     * Bytes produced by the codec. Written by {@link #writeObject(ObjectOutputStream)}.
+     */
+    private transient byte[] m_Data;
+    
+    /**
+     * Create an encoded entity.
+     * 
+     * @param entityType
+     *      fully qualified class name of the entity that was encoded
+     * @param data
+     *      bytes produced by the codec, not copied
+     */
+    public EncodedEntity(final String entityType, final byte[] data)
+    {
+        m_EntityType = entityType;
+        m_Data = data; // NOPMD: ArrayIsStoredDirectly, encoded bytes are not copied to avoid extra copies
+    }
+    
+    /**
+     * Get the class name of the entity that was encoded.
+     * 
+     * @return
+     *      fully qualified class name of the entity
+     */
+    public String getEntityType()
+    {
+        return m_EntityType;
+    }
+    
+    /**
+     * Get the bytes produced by the codec. The array is not copied and must not be modified.
+     * 
+     * @return
+     *      encoded form of the entity
+     */
+    public byte[] getData() // NOPMD: MethodReturnsInternalArray, not copied to avoid a copy for each decode
+    {
+        return m_Data;
+    }
+    
+    /**
+     * Write the entity type and the encoded bytes.
+     * 
+     * @param output
+     *      stream to write to
+     * @throws IOException
+     *      if unable to write to the stream
+     */
+    private void writeObject(final ObjectOutputStream output) throws IOException
+    {
+        output.defaultWriteObject();
+        output.writeUTF(m_EntityType);
+        output.writeInt(m_Data.length);
+        output.write(m_Data);
+    }
+    
+    /**
+     * Read the entity type and the encoded bytes.
+     * 
+     * @param input
+     *      stream to read from
+     * @throws IOException
+     *      if unable to read from the stream
+     * @throws ClassNotFoundException
+     *      never, no classes are read
+     */
+    private void readObject(final ObjectInputStream input) throws IOException, ClassNotFoundException
+    {
+        input.defaultReadObject();
+        m_EntityType = input.readUTF();
+        m_Data = new byte[input.readInt()];
+        input.readFully(m_Data);
+    }
+}
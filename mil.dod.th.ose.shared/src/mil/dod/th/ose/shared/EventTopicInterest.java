@@ -0,0 +1,53 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.shared;
+
+/**
+ * Service that tracks which event topics have at least one {@link org.osgi.service.event.EventHandler} registered, 
+ * allowing high rate events to be skipped before they are built when nothing will receive them.
+ * 
+ * <p>
+ * A handler with an event filter is treated as interested in all of its topics as the filter can only be evaluated 
+ * against the properties of an event that has already been built.
+ */
+public interface EventTopicInterest
+{
+    /**
+     * Check if an event with the given topic would be delivered to at least one event handler. Each call counts as a
+     * delivered event if true is returned or a suppressed event otherwise, so only call this method once for each event
+     * that is about to be posted.
+     * 
+     * @param topic
+     *      topic of the event about to be posted
+     * @return
+     *      true if the event should be built and posted, false if no handler is subscribed to the topic
+     */
+    boolean isSubscribed(String topic);
+    
+    /**
+     * Get the number of events checked with {@link #isSubscribed(String)} that had at least one subscriber.
+     * 
+     * @return
+     *      number of delivered events
+     */
+    long getDeliveredCount();
+    
+    /**
+     * Get the number of events checked with {@link #isSubscribed(String)} that were skipped as no handler was 
+     * subscribed.
+     * 
+     * @return
+     *      number of suppressed events
+     */
+    long getSuppressedCount();
+}
@@ -13,6 +13,7 @@
 package mil.dod.th.ose.shared;
 
 import java.util.Collection;
+import java.util.Map;
 
 import javax.jdo.Query;
 
@@ -57,6 +58,17 @@ public interface JdoDataStore<T>
      */
     Collection<T> executeJdoQuery(Query query);
     
+    /**
+     * Run the given JDO query binding the given values to its implicit parameters (e.g. {@code uuid < :lastUuid}).
+     * 
+     * @param query
+     *            the specified query
+     * @param parameters
+     *            values of the implicit parameters, keyed by parameter name without the leading colon
+     * @return the collection of T class objects returned by the query
+     */
+    Collection<T> executeJdoQuery(Query query, Map<String, ?> parameters);
+    
     /**
      * Retrieves the total count of all rows of the specified T type.
      * 
@@ -68,6 +80,15 @@ public interface JdoDataStore<T>
      */
     long executeGetCount(Query query);
     
+    /**
+     * Get the plan the underlying database would use to run the given JDO query, without running it.
+     * 
+     * @param query
+     *          the query to explain
+     * @return the plan as reported by the database, or a message describing why the plan is not available
+     */
+    String explainJdoQuery(Query query);
+    
     /**
      * Remove based on a JDO query.
      * 
@@ -0,0 +1,67 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.shared;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Codec used by the {@link mil.dod.th.core.persistence.PersistentDataStore} to store entities of a specific type in a 
+ * compact binary form instead of using Java serialization. Register an implementation as an OSGi service and the 
+ * store will use it for any entity of type {@link #getEntityType()} that is persisted or merged while the service is 
+ * registered. Entities are decoded when queried, so the codec must be registered before data stored with it is 
+ * queried, e.g. by having the component that uses the data reference the codec service. Data stored before a codec 
+ * was registered is still read using Java serialization.
+ * 
+ * @param <T>
+ *      type of entity handled by the codec
+ */
+public interface PersistentEntityCodec<T extends Serializable>
+{
+    /**
+     * Get the type of entity handled by this codec. Only entities of this exact class are encoded, not subclasses. 
+     * The class name is stored with the encoded entity, so it must not change once data has been stored.
+     * 
+     * @return
+     *      class of the entity
+     */
+    Class<T> getEntityType();
+    
+    /**
+     * Encode the given entity.
+     * 
+     * @param entity
+     *      entity to encode
+     * @return
+     *      encoded form of the entity
+     * @throws IOException
+     *      if the entity cannot be encoded
+     */
+    byte[] encode(T entity) throws IOException;
+    
+    /**
+     * Decode an entity previously encoded with {@link #encode(Serializable)}.
+     * 
+     * @param data
+     *      buffer containing the encoded entity
+     * @param offset
+     *      offset of the encoded entity within the buffer
+     * @param length
+     *      length of the encoded entity
+     * @return
+     *      the decoded entity
+     * @throws IOException
+     *      if the data cannot be decoded
+     */
+    T decode(byte[] data, int offset, int length) throws IOException;
+}
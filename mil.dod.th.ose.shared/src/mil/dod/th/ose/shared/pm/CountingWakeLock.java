@@ -12,6 +12,12 @@
 //==============================================================================
 package mil.dod.th.ose.shared.pm;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import mil.dod.th.core.pm.WakeLock;
 
 /**
@@ -20,6 +26,10 @@ import mil.dod.th.core.pm.WakeLock;
  * counter and calls to cancel decrement a counter. When the counter is 0, activate or cancel is called on the
  * underlying wake lock as appropriate.
  * <p>
+ * Calls that do not change the counter to or from 0 only update the counter and do not block. If a hysteresis window 
+ * is set, the underlying wake lock is canceled only after the counter has stayed at 0 for the window so back-to-back 
+ * operations do not activate and cancel the underlying lock each time.
+ * <p>
  * If the underlying wake lock is not set this class does nothing (it does not throw exceptions, etc.).
  * 
  * @author jkovach
@@ -27,8 +37,30 @@ import mil.dod.th.core.pm.WakeLock;
 public class CountingWakeLock
 {
     private final Object m_LockObj = new Object();
+    private final AtomicInteger m_Count = new AtomicInteger();
+    private final AtomicLong m_ActivateCount = new AtomicLong();
+    private final AtomicLong m_LockActivateCount = new AtomicLong();
     private WakeLock m_TheWakeLock;
-    private int m_Count;
+
+    /**
+     * Whether the underlying wake lock is currently activated, guarded by {@link #m_LockObj}.
+     */
+    private boolean m_LockActive;
+    
+    /**
+     * Time to wait before canceling the underlying lock once the count reaches 0, guarded by {@link #m_LockObj}.
+     */
+    private long m_HysteresisMs;
+    
+    /**
+     * Used to schedule delayed cancels when a hysteresis window is set, guarded by {@link #m_LockObj}.
+     */
+    private ScheduledExecutorService m_Scheduler;
+    
+    /**
+     * Cancel waiting for the hysteresis window to expire, null if none, guarded by {@link #m_LockObj}.
+     */
+    private DelayedCancel m_PendingCancel;
 
     /**
      * Create instance without an associated {@link WakeLock}.
@@ -64,20 +96,62 @@ public class CountingWakeLock
     {
         synchronized (m_LockObj)
         {
-            if (m_TheWakeLock != null && m_Count != 0)
-            {
-                m_TheWakeLock.cancel();
-            }
+            cancelLock();
 
             m_TheWakeLock = wakeLock;
 
-            if (m_TheWakeLock != null && m_Count != 0)
+            if (m_Count.get() != 0)
+            {
+                activateLock();
+            }
+        }
+    }
+
+    /**
+     * Set how long the underlying wake lock stays active after the count drops to 0. Activating again within the 
+     * window keeps the underlying lock active without calling it again.
+     * 
+     * @param hysteresisMs
+     *      window in milliseconds, 0 to cancel the underlying lock as soon as the count drops to 0
+     * @param scheduler
+     *      used to cancel the underlying lock once the window expires, may be null if the window is 0
+     */
+    public void setHysteresis(final long hysteresisMs, final ScheduledExecutorService scheduler)
+    {
+        synchronized (m_LockObj)
+        {
+            m_HysteresisMs = scheduler == null ? 0 : hysteresisMs;
+            m_Scheduler = scheduler;
+            
+            if (m_HysteresisMs == 0 && m_PendingCancel != null)
             {
-                m_TheWakeLock.activate();
+                cancelLock();
             }
         }
     }
 
+    /**
+     * Get the number of calls to {@link #activate()}.
+     * 
+     * @return
+     *      number of activation requests
+     */
+    public long getActivateCount()
+    {
+        return m_ActivateCount.get();
+    }
+
+    /**
+     * Get the number of times the underlying wake lock was actually activated.
+     * 
+     * @return
+     *      number of activations passed to the underlying wake lock
+     */
+    public long getLockActivateCount()
+    {
+        return m_LockActivateCount.get();
+    }
+
     /**
      * Call {@link WakeLock#delete()} if there is a wake lock set.
      */
@@ -87,6 +161,8 @@ public class CountingWakeLock
         {
             if (m_TheWakeLock != null)
             {
+                discardPendingCancel();
+                m_LockActive = false;
                 m_TheWakeLock.delete();
                 m_TheWakeLock = null; // NOPMD: NullAssignment, Must assign to null, field is checked before using
             }
@@ -111,13 +187,27 @@ public class CountingWakeLock
      */
     public void activate()
     {
+        m_ActivateCount.incrementAndGet();
+        
+        // already active, only the count changes, transitions from 0 are handled under the lock
+        int count = m_Count.get();
+        while (count > 0)
+        {
+            if (m_Count.compareAndSet(count, count + 1))
+            {
+                return;
+            }
+            count = m_Count.get();
+        }
+        
         synchronized (m_LockObj)
         {
-            if (m_Count == 0 && m_TheWakeLock != null)
+            if (m_Count.get() == 0)
             {
-                m_TheWakeLock.activate();
+                activateLock();
             }
-            m_Count++;
+            // only incremented after the underlying lock is active so the fast path never skips an inactive lock
+            m_Count.incrementAndGet();
         }
     }
 
@@ -126,15 +216,114 @@ public class CountingWakeLock
      */
     public void cancel()
     {
+        // not the last holder, only the count changes, transitions to 0 are handled under the lock
+        int count = m_Count.get();
+        while (count > 1)
+        {
+            if (m_Count.compareAndSet(count, count - 1))
+            {
+                return;
+            }
+            count = m_Count.get();
+        }
+        
         synchronized (m_LockObj)
         {
-            if (m_Count > 0)
+            count = m_Count.get();
+            while (count > 0)
             {
-                m_Count--;
-    
-                if (m_Count == 0 && m_TheWakeLock != null)
+                if (m_Count.compareAndSet(count, count - 1))
+                {
+                    if (count == 1)
+                    {
+                        releaseLock();
+                    }
+                    return;
+                }
+                count = m_Count.get();
+            }
+        }
+    }
+
+    /**
+     * Activate the underlying wake lock if not already active. Must be called while holding {@link #m_LockObj}.
+     */
+    private void activateLock()
+    {
+        // activating within the hysteresis window keeps the lock that is still active
+        discardPendingCancel();
+        
+        if (m_TheWakeLock != null && !m_LockActive)
+        {
+            m_TheWakeLock.activate();
+            m_LockActive = true;
+            m_LockActivateCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Cancel the underlying wake lock now or once the hysteresis window expires. Must be called while holding 
+     * {@link #m_LockObj}.
+     */
+    private void releaseLock()
+    {
+        if (m_LockActive && m_HysteresisMs > 0)
+        {
+            final DelayedCancel delayedCancel = new DelayedCancel();
+            delayedCancel.m_Future = m_Scheduler.schedule(delayedCancel, m_HysteresisMs, TimeUnit.MILLISECONDS);
+            m_PendingCancel = delayedCancel;
+        }
+        else
+        {
+            cancelLock();
+        }
+    }
+
+    /**
+     * Cancel the underlying wake lock if active. Must be called while holding {@link #m_LockObj}.
+     */
+    private void cancelLock()
+    {
+        discardPendingCancel();
+        
+        if (m_TheWakeLock != null && m_LockActive)
+        {
+            m_TheWakeLock.cancel();
+        }
+        m_LockActive = false;
+    }
+
+    /**
+     * Stop waiting to cancel the underlying lock. Must be called while holding {@link #m_LockObj}.
+     */
+    private void discardPendingCancel()
+    {
+        if (m_PendingCancel != null)
+        {
+            m_PendingCancel.m_Future.cancel(false);
+            m_PendingCancel = null; // NOPMD: NullAssignment, Must assign to null, field is checked before using
+        }
+    }
+
+    /**
+     * Cancels the underlying lock once the hysteresis window expires unless the lock was activated again.
+     */
+    private final class DelayedCancel implements Runnable
+    {
+        /**
+         * Scheduled execution of this cancel.
+         */
+        private Future<?> m_Future;
+
+        @Override
+        public void run()
+        {
+            synchronized (m_LockObj)
+            {
+                // a newer activation or cancel replaced this one while it was waiting for the lock
+                if (m_PendingCancel == this && m_Count.get() == 0)
                 {
-                    m_TheWakeLock.cancel();
+                    cancelLock();
                 }
             }
         }
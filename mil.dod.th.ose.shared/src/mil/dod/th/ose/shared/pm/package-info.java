@@ -14,5 +14,5 @@
 /**
  * Package contains power management shared types used by various OSUS-R bundles.
  */
-@aQute.bnd.annotation.Version("1.0.0")
+@aQute.bnd.annotation.Version("1.1.0")
 package mil.dod.th.ose.shared.pm;
@@ -0,0 +1,570 @@
+//==============================================================================
+// This software is part of the Open Standard for Unattended Sensors (OSUS)
+// reference implementation (OSUS-R).
+//
+// To the extent possible under law, the author(s) have dedicated all copyright
+// and related and neighboring rights to this software to the public domain
+// worldwide. This software is distributed without any warranty.
+//
+// You should have received a copy of the CC0 Public Domain Dedication along
+// with this software. If not, see
+// <http://creativecommons.org/publicdomain/zero/1.0/>.
+//==============================================================================
+package mil.dod.th.ose.shared.protoconverter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import mil.dod.th.core.remote.objectconverter.ObjectConverterException;
+
+/**
+ * Caches the conversion plan of each JAXB and proto message class so reflection is only used the first time a class
+ * or field is converted. A plan holds the resolved accessors as {@link MethodHandle}s, the builder factory or
+ * constructor and the mapping to the equivalent class. Plans are filled in lazily as fields are converted.
+ */
+final class ConversionPlanCache
+{
+    /**
+     * Method type all getter handles are adapted to.
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * Method type all is set handles are adapted to.
+     */
+    private static final MethodType IS_SET_TYPE = MethodType.methodType(boolean.class, Object.class);
+
+    /**
+     * Method type all setter handles are adapted to.
+     */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * Method type of the JAXB constructor and proto builder factory handles.
+     */
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class);
+
+    /**
+     * Plans for each JAXB class that has been converted.
+     */
+    private static final ConcurrentMap<Class<?>, JaxbPlan> JAXB_PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * Plans for each proto message class that has been converted.
+     */
+    private static final ConcurrentMap<Class<?>, ProtoPlan> PROTO_PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * Hidden constructor to avoid instantiation.
+     */
+    private ConversionPlanCache()
+    {
+        //hidden on purpose
+    }
+
+    /**
+     * Get the plan for the given JAXB class.
+     *
+     * @param jaxbClass
+     *      JAXB class to get the plan for
+     * @return
+     *      the cached plan, created if needed
+     */
+    static JaxbPlan getJaxbPlan(final Class<?> jaxbClass)
+    {
+        final JaxbPlan plan = JAXB_PLANS.get(jaxbClass);
+        if (plan != null)
+        {
+            return plan;
+        }
+        return JAXB_PLANS.computeIfAbsent(jaxbClass, JaxbPlan::new);
+    }
+
+    /**
+     * Get the plan for the given proto message class.
+     *
+     * @param messageClass
+     *      proto message class to get the plan for
+     * @return
+     *      the cached plan, created if needed
+     */
+    static ProtoPlan getProtoPlan(final Class<?> messageClass)
+    {
+        final ProtoPlan plan = PROTO_PLANS.get(messageClass);
+        if (plan != null)
+        {
+            return plan;
+        }
+        return PROTO_PLANS.computeIfAbsent(messageClass, ProtoPlan::new);
+    }
+
+    /**
+     * Remove all cached plans. Plans will be built again as classes are converted.
+     */
+    static void clear()
+    {
+        JAXB_PLANS.clear();
+        PROTO_PLANS.clear();
+    }
+
+    /**
+     * Find the public method with the given name and parameters and convert it to a handle of the given type.
+     *
+     * @param clazz
+     *      class containing the method
+     * @param type
+     *      type to adapt the handle to
+     * @param name
+     *      name of the method
+     * @param parameterTypes
+     *      parameter types of the method
+     * @return
+     *      the method handle
+     * @throws ObjectConverterException
+     *      if the method does not exist or is not accessible
+     */
+    private static MethodHandle findHandle(final Class<?> clazz, final MethodType type, final String name,
+            final Class<?>... parameterTypes) throws ObjectConverterException
+    {
+        try
+        {
+            return MethodHandles.publicLookup().unreflect(clazz.getMethod(name, parameterTypes)).asType(type);
+        }
+        catch (final NoSuchMethodException exception)
+        {
+            throw new ObjectConverterException(String.format("Unable to find method [%s] for [%s]", name, clazz),
+                    exception);
+        }
+        catch (final IllegalAccessException exception)
+        {
+            throw new ObjectConverterException(exception);
+        }
+    }
+
+    /**
+     * Wrap an exception thrown by a method handle. Errors are not wrapped and are thrown directly.
+     *
+     * @param throwable
+     *      exception thrown by the invoked method
+     * @return
+     *      the exception to throw
+     */
+    private static ObjectConverterException wrap(final Throwable throwable)
+    {
+        if (throwable instanceof Error)
+        {
+            throw (Error)throwable;
+        }
+        return new ObjectConverterException(throwable);
+    }
+
+    /**
+     * Conversion plan for a single JAXB class.
+     */
+    static final class JaxbPlan
+    {
+        /**
+         * JAXB class the plan is for.
+         */
+        private final Class<?> m_JaxbClass;
+
+        /**
+         * Getter handles by proto field name.
+         */
+        private final ConcurrentMap<String, MethodHandle> m_Getters = new ConcurrentHashMap<>();
+
+        /**
+         * Is set handles by proto field name.
+         */
+        private final ConcurrentMap<String, MethodHandle> m_IsSetMethods = new ConcurrentHashMap<>();
+
+        /**
+         * Setter handles by proto field name.
+         */
+        private final ConcurrentMap<String, MethodHandle> m_Setters = new ConcurrentHashMap<>();
+
+        /**
+         * JAXB type of each field by proto field name, the item type for lists.
+         */
+        private final ConcurrentMap<String, Class<?>> m_FieldTypes = new ConcurrentHashMap<>();
+
+        /**
+         * Equivalent proto message class, null until first needed.
+         */
+        private volatile Class<? extends Message> m_ProtoClass;
+
+        /**
+         * Handle to the no argument constructor, null until first needed.
+         */
+        private volatile MethodHandle m_Constructor;
+
+        /**
+         * Create an empty plan for the given class.
+         *
+         * @param jaxbClass
+         *      JAXB class the plan is for
+         */
+        JaxbPlan(final Class<?> jaxbClass)
+        {
+            m_JaxbClass = jaxbClass;
+        }
+
+        /**
+         * Get the proto message class equivalent to the JAXB class.
+         *
+         * @return
+         *      the proto message class
+         * @throws ObjectConverterException
+         *      if the class cannot be found
+         */
+        Class<? extends Message> getProtoClass() throws ObjectConverterException
+        {
+            Class<? extends Message> protoClass = m_ProtoClass;
+            if (protoClass == null)
+            {
+                protoClass = JaxbConverter.findProtoClass(m_JaxbClass);
+                m_ProtoClass = protoClass;
+            }
+            return protoClass;
+        }
+
+        /**
+         * Create a new instance of the JAXB class.
+         *
+         * @return
+         *      the new empty instance
+         * @throws ObjectConverterException
+         *      if the instance cannot be created
+         */
+        Object newInstance() throws ObjectConverterException
+        {
+            MethodHandle constructor = m_Constructor;
+            if (constructor == null)
+            {
+                try
+                {
+                    constructor = MethodHandles.publicLookup().findConstructor(m_JaxbClass,
+                            MethodType.methodType(void.class)).asType(FACTORY_TYPE);
+                }
+                catch (final NoSuchMethodException | IllegalAccessException exception)
+                {
+                    throw new ObjectConverterException(exception);
+                }
+                m_Constructor = constructor;
+            }
+
+            try
+            {
+                return constructor.invokeExact();
+            }
+            catch (final Throwable exception) //NOPMD: handle can throw anything the constructor throws
+            {
+                throw wrap(exception);
+            }
+        }
+
+        /**
+         * Get the value of the given field from the JAXB object.
+         *
+         * @param jaxbObject
+         *      object to get the value from, must be an instance of the plan's class
+         * @param protoFieldName
+         *      name of the proto field
+         * @param protoFieldType
+         *      type of the proto field
+         * @return
+         *      value of the field
+         * @throws ObjectConverterException
+         *      if the value cannot be retrieved
+         */
+        Object getValue(final Object jaxbObject, final String protoFieldName,
+                final FieldDescriptor.Type protoFieldType) throws ObjectConverterException
+        {
+            final MethodHandle getter = getGetter(protoFieldName, protoFieldType);
+            try
+            {
+                return getter.invokeExact(jaxbObject);
+            }
+            catch (final Throwable exception) //NOPMD: handle can throw anything the getter throws
+            {
+                throw wrap(exception);
+            }
+        }
+
+        /**
+         * Check whether the given field is set in the JAXB object.
+         *
+         * @param jaxbObject
+         *      object to check, must be an instance of the plan's class
+         * @param protoFieldName
+         *      name of the proto field
+         * @return
+         *      true if the field is set
+         * @throws ObjectConverterException
+         *      if unable to determine whether the field is set
+         */
+        boolean isSet(final Object jaxbObject, final String protoFieldName) throws ObjectConverterException
+        {
+            MethodHandle isSetMethod = m_IsSetMethods.get(protoFieldName);
+            if (isSetMethod == null)
+            {
+                isSetMethod = findHandle(m_JaxbClass, IS_SET_TYPE,
+                        ConverterUtilities.getIsSetAccessorName(protoFieldName));
+                m_IsSetMethods.putIfAbsent(protoFieldName, isSetMethod);
+            }
+
+            try
+            {
+                return (boolean)isSetMethod.invokeExact(jaxbObject);
+            }
+            catch (final Throwable exception) //NOPMD: handle can throw anything the method throws
+            {
+                throw wrap(exception);
+            }
+        }
+
+        /**
+         * Set the value of the given non-repeated field in the JAXB object.
+         *
+         * @param jaxbObject
+         *      object to set the value on, must be an instance of the plan's class
+         * @param fieldValue
+         *      value to set
+         * @param protoFieldName
+         *      name of the proto field
+         * @param protoFieldType
+         *      type of the proto field
+         * @throws ObjectConverterException
+         *      if the value cannot be set
+         */
+        void setValue(final Object jaxbObject, final Object fieldValue, final String protoFieldName,
+                final FieldDescriptor.Type protoFieldType) throws ObjectConverterException
+        {
+            MethodHandle setter = m_Setters.get(protoFieldName);
+            if (setter == null)
+            {
+                setter = findHandle(m_JaxbClass, SETTER_TYPE, ConverterUtilities.getSetAccessorName(protoFieldName),
+                        getFieldType(protoFieldName, protoFieldType));
+                m_Setters.putIfAbsent(protoFieldName, setter);
+            }
+
+            try
+            {
+                setter.invokeExact(jaxbObject, fieldValue);
+            }
+            catch (final Throwable exception) //NOPMD: handle can throw anything the setter throws
+            {
+                throw wrap(exception);
+            }
+        }
+
+        /**
+         * Get the JAXB type of the given field. If the field is a list, the item type is returned.
+         *
+         * @param protoFieldName
+         *      name of the proto field
+         * @param protoFieldType
+         *      type of the proto field
+         * @return
+         *      the class type of the field or the generic type if the type is a list
+         * @throws ObjectConverterException
+         *      if unable to find a get method for the field
+         */
+        Class<?> getFieldType(final String protoFieldName, final FieldDescriptor.Type protoFieldType)
+                throws ObjectConverterException
+        {
+            Class<?> fieldType = m_FieldTypes.get(protoFieldName);
+            if (fieldType == null)
+            {
+                final Method getMethod = findGetMethod(protoFieldName, protoFieldType);
+                fieldType = getMethod.getReturnType();
+
+                // List type, so get the generic type inside it
+                if (fieldType.equals(List.class))
+                {
+                    // All List types in a JAXB class must have a parameterized type with exactly 1 actual type which
+                    // is the type we need
+                    final ParameterizedType paramType = (ParameterizedType)getMethod.getGenericReturnType();
+                    fieldType = (Class<?>)paramType.getActualTypeArguments()[0];
+                }
+                m_FieldTypes.putIfAbsent(protoFieldName, fieldType);
+            }
+            return fieldType;
+        }
+
+        /**
+         * Get the getter handle for the given field.
+         *
+         * @param protoFieldName
+         *      name of the proto field
+         * @param protoFieldType
+         *      type of the proto field
+         * @return
+         *      getter handle
+         * @throws ObjectConverterException
+         *      if the getter does not exist
+         */
+        private MethodHandle getGetter(final String protoFieldName, final FieldDescriptor.Type protoFieldType)
+                throws ObjectConverterException
+        {
+            MethodHandle getter = m_Getters.get(protoFieldName);
+            if (getter == null)
+            {
+                try
+                {
+                    getter = MethodHandles.publicLookup().unreflect(findGetMethod(protoFieldName, protoFieldType))
+                            .asType(GETTER_TYPE);
+                }
+                catch (final IllegalAccessException exception)
+                {
+                    throw new ObjectConverterException(exception);
+                }
+                m_Getters.putIfAbsent(protoFieldName, getter);
+            }
+            return getter;
+        }
+
+        /**
+         * Find the get method of the given field.
+         *
+         * @param protoFieldName
+         *      name of the proto field
+         * @param protoFieldType
+         *      type of the proto field
+         * @return
+         *      the get method
+         * @throws ObjectConverterException
+         *      if the method does not exist
+         */
+        private Method findGetMethod(final String protoFieldName, final FieldDescriptor.Type protoFieldType)
+                throws ObjectConverterException
+        {
+            try
+            {
+                return m_JaxbClass.getMethod(ConverterUtilities.getGetAccessorName(protoFieldName, protoFieldType));
+            }
+            catch (final NoSuchMethodException exception)
+            {
+                throw new ObjectConverterException(exception);
+            }
+        }
+    }
+
+    /**
+     * Conversion plan for a single proto message class.
+     */
+    static final class ProtoPlan
+    {
+        /**
+         * Proto message class the plan is for.
+         */
+        private final Class<?> m_MessageClass;
+
+        /**
+         * Message classes referenced by fields of the message by proto field name.
+         */
+        private final ConcurrentMap<String, Class<? extends Message>> m_ReferencedClasses =
+                new ConcurrentHashMap<>();
+
+        /**
+         * Handle to the static newBuilder method, null until first needed.
+         */
+        private volatile MethodHandle m_NewBuilder;
+
+        /**
+         * Plan of the equivalent JAXB class, null until first needed.
+         */
+        private volatile JaxbPlan m_JaxbPlan;
+
+        /**
+         * Create an empty plan for the given class.
+         *
+         * @param messageClass
+         *      proto message class the plan is for
+         */
+        ProtoPlan(final Class<?> messageClass)
+        {
+            m_MessageClass = messageClass;
+        }
+
+        /**
+         * Create a new builder for the message class.
+         *
+         * @return
+         *      the new builder
+         * @throws ObjectConverterException
+         *      if the builder cannot be created
+         */
+        Message.Builder newBuilder() throws ObjectConverterException
+        {
+            MethodHandle newBuilder = m_NewBuilder;
+            if (newBuilder == null)
+            {
+                newBuilder = findHandle(m_MessageClass, FACTORY_TYPE, "newBuilder");
+                m_NewBuilder = newBuilder;
+            }
+
+            final Object builder;
+            try
+            {
+                builder = newBuilder.invokeExact();
+            }
+            catch (final Throwable exception) //NOPMD: handle can throw anything the factory throws
+            {
+                throw wrap(exception);
+            }
+            return (Message.Builder)builder;
+        }
+
+        /**
+         * Get the message class referenced by the given field.
+         *
+         * @param protoFieldName
+         *      name of the field that references another message class
+         * @return
+         *      the referenced message class, null if the field cannot be found
+         */
+        Class<? extends Message> getReferencedClass(final String protoFieldName)
+        {
+            Class<? extends Message> referencedClass = m_ReferencedClasses.get(protoFieldName);
+            if (referencedClass == null)
+            {
+                referencedClass = JaxbConverter.findClass(protoFieldName, m_MessageClass);
+                if (referencedClass != null)
+                {
+                    m_ReferencedClasses.putIfAbsent(protoFieldName, referencedClass);
+                }
+            }
+            return referencedClass;
+        }
+
+        /**
+         * Get the plan of the JAXB class equivalent to the message class.
+         *
+         * @return
+         *      the JAXB class plan
+         * @throws ObjectConverterException
+         *      if the JAXB class cannot be found
+         */
+        JaxbPlan getJaxbPlan() throws ObjectConverterException
+        {
+            JaxbPlan jaxbPlan = m_JaxbPlan;
+            if (jaxbPlan == null)
+            {
+                jaxbPlan = ConversionPlanCache.getJaxbPlan(MessageConverter.findJaxbClassFromProtoClass(
+                        m_MessageClass));
+                m_JaxbPlan = jaxbPlan;
+            }
+            return jaxbPlan;
+        }
+    }
+}
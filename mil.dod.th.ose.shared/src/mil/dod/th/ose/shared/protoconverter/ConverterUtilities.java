@@ -12,18 +12,14 @@
 //==============================================================================
 package mil.dod.th.ose.shared.protoconverter;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
-import java.util.List;
-
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor.Type;
 
 import mil.dod.th.core.remote.objectconverter.ObjectConverterException;
 
 /**
- * Utility class that contains methods used by both the MessageConverter and JAXBConverter classes.
+ * Utility class that contains methods used by both the MessageConverter and JAXBConverter classes. Accessors are 
+ * resolved once per class and field and cached by {@link ConversionPlanCache}.
  * 
  * @author cweisenborn
  */
@@ -54,28 +50,8 @@ public final class ConverterUtilities
     public static Object getValue(final Object parentJaxbObject, final String protoFieldName,
             final FieldDescriptor.Type protoFieldType) throws ObjectConverterException
     {
-        Method getMethod;//NOCHECKSTYLE will get assigned in try/catch
-        try
-        {
-            getMethod = parentJaxbObject.getClass().getMethod(getGetAccessorName(protoFieldName, protoFieldType));
-        }
-        catch (final NoSuchMethodException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-
-        try
-        {
-            return getMethod.invoke(parentJaxbObject);
-        }
-        catch (final IllegalAccessException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        catch (final InvocationTargetException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
+        return ConversionPlanCache.getJaxbPlan(parentJaxbObject.getClass()).getValue(parentJaxbObject, protoFieldName,
+                protoFieldType);
     }
     
     /**
@@ -96,30 +72,8 @@ public final class ConverterUtilities
     public static void setNonRepeatedValue(final Object parentJaxbObject, final Object fieldValue, 
             final String protoFieldName, final FieldDescriptor.Type protoFieldType) throws ObjectConverterException
     {
-        final Class<?> fieldClass = getJaxbTypeForField(parentJaxbObject, protoFieldName, protoFieldType);
-        Method setMethod;//NOCHECKSTYLE will get assigned in try/catch
-        try
-        {
-            setMethod = parentJaxbObject.getClass().getMethod(getSetAccessorName(protoFieldName), fieldClass);
-        }
-        catch (final NoSuchMethodException exception)
-        {
-            throw new ObjectConverterException(String.format("Unable to set value for field [%s] for [%s]", 
-                    protoFieldName, parentJaxbObject), exception);
-        }
-        
-        try
-        {
-            setMethod.invoke(parentJaxbObject, fieldValue);
-        }
-        catch (final IllegalAccessException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        catch (final InvocationTargetException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
+        ConversionPlanCache.getJaxbPlan(parentJaxbObject.getClass()).setValue(parentJaxbObject, fieldValue, 
+                protoFieldName, protoFieldType);
     }
     
     /**
@@ -138,29 +92,7 @@ public final class ConverterUtilities
     public static boolean isSet(final Object parentJaxbObject, final String protoFieldName) 
             throws ObjectConverterException
     {
-        Method isSetMethod;//NOCHECKSTYLE will get assigned in try/catch
-
-        try
-        {
-            isSetMethod = parentJaxbObject.getClass().getMethod(getIsSetAccessorName(protoFieldName));
-        }
-        catch (final NoSuchMethodException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        
-        try
-        {
-            return (Boolean)isSetMethod.invoke(parentJaxbObject);
-        }
-        catch (final IllegalAccessException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        catch (final InvocationTargetException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
+        return ConversionPlanCache.getJaxbPlan(parentJaxbObject.getClass()).isSet(parentJaxbObject, protoFieldName);
     }
 
     /**
@@ -174,7 +106,7 @@ public final class ConverterUtilities
      * @return
      *          Returns the the string representation of the accessor method for the specified protocol field.
      */
-    private static String getGetAccessorName(final String protoFieldName, final FieldDescriptor.Type protoFieldType)
+    static String getGetAccessorName(final String protoFieldName, final FieldDescriptor.Type protoFieldType)
     {
         if (protoFieldType == Type.BOOL)
         {
@@ -208,7 +140,7 @@ public final class ConverterUtilities
      * @return
      *          The string representation of the "isSet" method for the specified protocol field.
      */
-    private static String getIsSetAccessorName(final String protoFieldName)
+    static String getIsSetAccessorName(final String protoFieldName)
     {
         return "isSet" + Character.toUpperCase(protoFieldName.charAt(0)) + protoFieldName.substring(1);
     }
@@ -232,27 +164,7 @@ public final class ConverterUtilities
     public static Class<?> getJaxbTypeForField(final Object parentJaxbObject, final String protoFieldName, 
             final FieldDescriptor.Type protoFieldType) throws ObjectConverterException
     {
-        Method getMethod;//NOCHECKSTYLE will get assigned in try/catch
-        try
-        {
-            getMethod = parentJaxbObject.getClass().getMethod(getGetAccessorName(protoFieldName, protoFieldType));
-        }
-        catch (final NoSuchMethodException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        
-        final Class<?> returnType = getMethod.getReturnType();
-        
-        // List type, so get the generic type inside it
-        if (returnType.equals(List.class))
-        {
-            // All List types in a JAXB class must have a parameterized type with exactly 1 actual type which is the
-            // type we need
-            final ParameterizedType paramType = (ParameterizedType) getMethod.getGenericReturnType();
-            return (Class<?>)paramType.getActualTypeArguments()[0];
-        }
-        
-        return returnType;
+        return ConversionPlanCache.getJaxbPlan(parentJaxbObject.getClass()).getFieldType(protoFieldName, 
+                protoFieldType);
     }
 }
@@ -13,7 +13,6 @@
 package mil.dod.th.ose.shared.protoconverter;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.util.List;
 import java.util.UUID;
@@ -48,6 +47,16 @@ public final class JaxbConverter
      * String representation of underscore character. Used multiple times in regex expressions.
      */
     private static final String UNDERSCORE = "_";
+    
+    /**
+     * Name used to find the class of the '_base' field within a message class.
+     */
+    private static final String BASE_FIELD_CLASS_NAME = "base";
+    
+    /**
+     * Name of a field that holds a {@link UUID}.
+     */
+    private static final String UUID_FIELD_NAME = UUID.class.getSimpleName().toLowerCase();
 
     /**
      * Hidden constructor to avoid instantiation.
@@ -70,16 +79,9 @@ public final class JaxbConverter
     public static Message convertToProto(final Object object)
             throws ObjectConverterException
     {   
-        final Class<? extends Message> messageClass = findProtoClass(object.getClass());
-        final Message.Builder protoBuilder = getBuilder(messageClass);
-        
-        //fill in the fields for the particular message using the values from the jaxb class
-        for (FieldDescriptor fieldDesc : protoBuilder.getDescriptorForType().getFields())
-        {
-            processField(object, protoBuilder, messageClass, fieldDesc);
-        }
-        
-        return protoBuilder.build();
+        final Class<? extends Message> messageClass = 
+                ConversionPlanCache.getJaxbPlan(object.getClass()).getProtoClass();
+        return buildProto(object, messageClass);
     }
     
     /**
@@ -97,7 +99,7 @@ public final class JaxbConverter
             throws ObjectConverterException
     {
         //get the builder for the referenced proto message class
-        final Message.Builder protoBuilder = getBuilder(refclass);
+        final Message.Builder protoBuilder = ConversionPlanCache.getProtoPlan(refclass).newBuilder();
         for (FieldDescriptor fieldDesc : protoBuilder.getDescriptorForType().getFields())
         {
             processField(object, protoBuilder, refclass, fieldDesc);
@@ -129,13 +131,14 @@ public final class JaxbConverter
         if ("_base".equals(protoFieldName))
         {
             //retrieve the field type and build that proto message and set the field
-            final Class<? extends Message> fieldType = findClass(protoFieldName.replace(UNDERSCORE, ""), messageClass);
+            final Class<? extends Message> fieldType = 
+                    ConversionPlanCache.getProtoPlan(messageClass).getReferencedClass(BASE_FIELD_CLASS_NAME);
             protoBuilder.setField(fieldDesc, buildProto(jaxbObject, fieldType));
             return;
         }
           // Don't check the isSet method for fields that belong to the UUID class. UUID is a java.util type and not 
           // an XSD generated class therefore the isSet method won't exist for fields in that class.
-        else if (!(UUID.class.getSimpleName().toLowerCase().equals(protoFieldName)
+        else if (!(UUID_FIELD_NAME.equals(protoFieldName)
                 || "leastSignificantBits".equals(protoFieldName)
                 || "mostSignificantBits".equals(protoFieldName)))
         {
@@ -183,7 +186,7 @@ public final class JaxbConverter
      * @return
      *          The {@link Class} that is class type of the referenced field.
      */
-    private static Class<? extends Message> findClass(final String protoFieldName, final Class<?> messageType)
+    static Class<? extends Message> findClass(final String protoFieldName, final Class<?> messageType)
     {
         Class<?> importedClazz = null;
         final Field[] fields = messageType.getDeclaredFields();
@@ -230,7 +233,8 @@ public final class JaxbConverter
     {
         if (field.getType() == Type.MESSAGE)
         {
-            final Class<? extends Message> refClass = findClass(protoFieldName, messageType);
+            final Class<? extends Message> refClass = 
+                    ConversionPlanCache.getProtoPlan(messageType).getReferencedClass(protoFieldName);
             if (refClass == Multitype.class)
             {
                 return handleMultitype(value);
@@ -300,7 +304,7 @@ public final class JaxbConverter
      * @throws ObjectConverterException
      *      if the class cannot be found
      */
-    private static Class<? extends Message> findProtoClass(final Class<?> jaxbClass) throws ObjectConverterException
+    static Class<? extends Message> findProtoClass(final Class<?> jaxbClass) throws ObjectConverterException
     {
         //split on the core package
         final String jaxbPackageFragment = jaxbClass.getName().split("mil.dod.th.core")[1];
@@ -392,21 +396,6 @@ public final class JaxbConverter
      */
     public static Message.Builder getBuilder(final Class<?> messageType) throws ObjectConverterException
     {
-        try
-        {
-            return (Message.Builder)messageType.getMethod("newBuilder").invoke(null);
-        }
-        catch (final IllegalAccessException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        catch (final InvocationTargetException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        catch (final NoSuchMethodException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
+        return ConversionPlanCache.getProtoPlan(messageType).newBuilder();
     }
 }
@@ -38,6 +38,11 @@ public final class MessageConverter
 {
     private static final String PACKAGE_SEPARATOR = ".";
     
+    /**
+     * Pattern matching the parent message and Gen suffix of a generated proto class name.
+     */
+    private static final Pattern OUTER_CLASS_PATTERN = Pattern.compile(".[A-Z]\\w*[\\$]");
+    
     /**
      * Private constructor so that the class cannot be instantiated.
      */
@@ -61,17 +66,17 @@ public final class MessageConverter
     {
         //UUID is not an XSD generated class and does not have a standard no arguments constructor and therefore
         //must be handled separately.
-        if (protoMsg.getClass().getSimpleName().equals(UUID.class.getSimpleName()))
+        if (protoMsg instanceof SharedMessages.UUID)
         {
             return handleUUID((SharedMessages.UUID)protoMsg); 
         }
         //The Multitype protocol class does not have a corresponding JAXB class and therefore must have a special case
         //to handle the conversion. In JAXB classes the multitype is represented by a generic Object.
-        else if (protoMsg.getClass().getSimpleName().equals(Multitype.class.getSimpleName()))
+        else if (protoMsg instanceof Multitype)
         {
             return handleMultitype((Multitype)protoMsg);
         }
-        final Object jaxbObj = createEmptyJaxb(protoMsg);
+        final Object jaxbObj = ConversionPlanCache.getProtoPlan(protoMsg.getClass()).getJaxbPlan().newInstance();
         for (FieldDescriptor fieldDesc : protoMsg.getDescriptorForType().getFields())
         {
             if (fieldDesc.isRepeated())
@@ -248,34 +253,6 @@ public final class MessageConverter
         }
     }
 
-    /**
-     * Create an empty jaxb object representing the message.
-     * @param protoMsg
-     *      the proto message to base the jaxb object from
-     * @return
-     *      empty jaxb class
-     * @throws ObjectConverterException
-     *      if the jaxb class cannot be found
-     */
-    private static Object createEmptyJaxb(final Message protoMsg) throws ObjectConverterException
-    {
-
-        final Class<?> jaxbClass = findJaxbClassFromProtoClass(protoMsg.getClass());
-
-        try
-        {
-            return jaxbClass.newInstance();
-        }
-        catch (final InstantiationException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-        catch (final IllegalAccessException exception)
-        {
-            throw new ObjectConverterException(exception);
-        }
-    }
-    
     /**
      * Find the proto class associated with the given jaxb class.
      * @param classToFind
@@ -285,15 +262,14 @@ public final class MessageConverter
      * @throws ObjectConverterException
      *      if the class cannot be found
      */
-    private static Class<?> findJaxbClassFromProtoClass(final Class<?> classToFind) throws ObjectConverterException
+    static Class<?> findJaxbClassFromProtoClass(final Class<?> classToFind) throws ObjectConverterException
     {
         final String jabClazz = classToFind.getName();
         //rename the package as we are going to the jaxb lexicon
         final String classString = jabClazz.replace("remote.lexicon", "core");
         
         //trim off parent message and Gen
-        final Pattern pattern = Pattern.compile(".[A-Z]\\w*[\\$]");
-        final Matcher match = pattern.matcher(classString);
+        final Matcher match = OUTER_CLASS_PATTERN.matcher(classString);
         final String trimmedClass = match.replaceFirst(PACKAGE_SEPARATOR);
         try
         {
@@ -15,11 +15,19 @@ package mil.dod.th.ose.shared.pm;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import mil.dod.th.core.pm.WakeLock;
 import mil.dod.th.ose.shared.pm.CountingWakeLock.CountingWakeLockHandle;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -147,4 +155,103 @@ public class TestCountingWakeLock
         m_SUT.cancel();
         Mockito.verify(m_WakeLock, Mockito.times(2)).cancel();
     }
+
+    /**
+     * Verify the underlying lock is canceled only after the hysteresis window and activating within the window keeps 
+     * the lock active without activating it again.
+     */
+    @Test
+    public void testHysteresis()
+    {
+        ScheduledExecutorService scheduler = Mockito.mock(ScheduledExecutorService.class);
+        ScheduledFuture<?> future = Mockito.mock(ScheduledFuture.class);
+        Mockito.doReturn(future).when(scheduler).schedule(Mockito.any(Runnable.class), Mockito.anyLong(), 
+                Mockito.any(TimeUnit.class));
+        
+        m_SUT = new CountingWakeLock(m_WakeLock);
+        m_SUT.setHysteresis(100, scheduler);
+        
+        m_SUT.activate();
+        m_SUT.cancel();
+        Mockito.verify(m_WakeLock, Mockito.never()).cancel();
+        ArgumentCaptor<Runnable> firstCancel = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(scheduler).schedule(firstCancel.capture(), Mockito.eq(100L), 
+                Mockito.eq(TimeUnit.MILLISECONDS));
+        
+        // back-to-back operation reuses the active lock
+        m_SUT.activate();
+        Mockito.verify(future).cancel(false);
+        m_SUT.cancel();
+        Mockito.verify(m_WakeLock, Mockito.times(1)).activate();
+        
+        // replaced cancel does nothing
+        firstCancel.getValue().run();
+        Mockito.verify(m_WakeLock, Mockito.never()).cancel();
+        
+        ArgumentCaptor<Runnable> secondCancel = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(scheduler, Mockito.times(2)).schedule(secondCancel.capture(), Mockito.eq(100L), 
+                Mockito.eq(TimeUnit.MILLISECONDS));
+        secondCancel.getValue().run();
+        Mockito.verify(m_WakeLock).cancel();
+        
+        m_SUT.activate();
+        Mockito.verify(m_WakeLock, Mockito.times(2)).activate();
+        assertThat(m_SUT.getActivateCount(), is(3L));
+        assertThat(m_SUT.getLockActivateCount(), is(2L));
+        
+        // disabling the window while a cancel is pending cancels right away
+        m_SUT.cancel();
+        m_SUT.setHysteresis(0, null);
+        Mockito.verify(m_WakeLock, Mockito.times(2)).cancel();
+    }
+
+    /**
+     * Verify concurrent activate and cancel calls leave the underlying lock canceled once all callers are done.
+     */
+    @Test
+    public void testConcurrentActivateCancel() throws Exception
+    {
+        m_SUT = new CountingWakeLock(m_WakeLock);
+        final int threadCount = 4;
+        final int iterations = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    for (int j = 0; j < iterations; j++)
+                    {
+                        m_SUT.activate();
+                        m_SUT.cancel();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        
+        assertThat(m_SUT.getActivateCount(), is((long)threadCount * iterations));
+        long activations = m_SUT.getLockActivateCount();
+        assertThat(activations, is(greaterThan(0L)));
+        Mockito.verify(m_WakeLock, Mockito.times((int)activations)).activate();
+        Mockito.verify(m_WakeLock, Mockito.times((int)activations)).cancel();
+    }
 }
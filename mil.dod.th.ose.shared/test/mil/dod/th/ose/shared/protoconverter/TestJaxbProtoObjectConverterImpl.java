@@ -14,6 +14,7 @@ package mil.dod.th.ose.shared.protoconverter;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +30,7 @@ import mil.dod.th.core.mp.model.MissionProgramTemplate;
 import mil.dod.th.core.mp.model.MissionVariableMetaData;
 import mil.dod.th.core.mp.model.MissionVariableTypesEnum;
 import mil.dod.th.core.observation.types.AlgorithmStatus;
+import mil.dod.th.core.observation.types.Detection;
 import mil.dod.th.core.observation.types.Observation;
 import mil.dod.th.core.observation.types.Status;
 import mil.dod.th.core.remote.objectconverter.ObjectConverterException;
@@ -37,18 +39,24 @@ import mil.dod.th.core.types.ComponentTypeEnum;
 import mil.dod.th.core.types.DigitalMedia;
 import mil.dod.th.core.types.Direction;
 import mil.dod.th.core.types.DirectionEnum;
+import mil.dod.th.core.types.FrequencyKhz;
 import mil.dod.th.core.types.MapEntry;
 import mil.dod.th.core.types.Mode;
 import mil.dod.th.core.types.ModeEnum;
 import mil.dod.th.core.types.PowerWatts;
+import mil.dod.th.core.types.SensingModality;
+import mil.dod.th.core.types.SensingModalityEnum;
+import mil.dod.th.core.types.SpeedMetersPerSecond;
 import mil.dod.th.core.types.TemperatureCelsius;
 import mil.dod.th.core.types.Version;
 import mil.dod.th.core.types.VoltageVolts;
 import mil.dod.th.core.types.command.CommandTypeEnum;
+import mil.dod.th.core.types.detection.DetectionTypeEnum;
 import mil.dod.th.core.types.factory.SpatialTypesFactory;
 import mil.dod.th.core.types.spatial.Coordinates;
 import mil.dod.th.core.types.spatial.DistanceMeters;
 import mil.dod.th.core.types.spatial.Orientation;
+import mil.dod.th.core.types.spatial.TrackElement;
 import mil.dod.th.core.types.status.AmbientStatus;
 import mil.dod.th.core.types.status.AmbientType;
 import mil.dod.th.core.types.status.AmbientTypeEnum;
@@ -61,6 +69,7 @@ import mil.dod.th.core.types.status.SummaryStatusEnum;
 import mil.dod.th.ose.test.matchers.JaxbUtil;
 import mil.dod.th.remote.lexicon.asset.capability.AssetCapabilitiesGen;
 import mil.dod.th.remote.lexicon.capability.BaseCapabilitiesGen.BaseCapabilities;
+import mil.dod.th.remote.lexicon.observation.types.ObservationGen;
 import mil.dod.th.remote.lexicon.types.SharedTypesGen;
 import mil.dod.th.remote.lexicon.types.command.CommandTypesGen;
 
@@ -283,6 +292,128 @@ public class TestJaxbProtoObjectConverterImpl
         JaxbUtil.assertEqualContent(convertedDirection, direction);
     }
     
+    /**
+     * Verify conversion plans are built once per class and reused for later conversions.
+     */
+    @Test
+    public void testConversionPlansCached() throws ObjectConverterException
+    {
+        ConversionPlanCache.clear();
+        
+        Observation observation = createDetectionObservation();
+        Message message = m_SUT.convertToProto(observation);
+        
+        ConversionPlanCache.JaxbPlan jaxbPlan = ConversionPlanCache.getJaxbPlan(Observation.class);
+        ConversionPlanCache.ProtoPlan protoPlan = ConversionPlanCache.getProtoPlan(ObservationGen.Observation.class);
+        assertThat(jaxbPlan.getProtoClass(), equalTo((Object)ObservationGen.Observation.class));
+        assertThat(protoPlan.getJaxbPlan(), is(jaxbPlan));
+        
+        // converting again must give the same results using the same plans
+        assertThat(m_SUT.convertToProto(observation), equalTo(message));
+        JaxbUtil.assertEqualContent((Observation)m_SUT.convertToJaxb(message), observation);
+        assertThat(ConversionPlanCache.getJaxbPlan(Observation.class), is(sameInstance(jaxbPlan)));
+        assertThat(ConversionPlanCache.getProtoPlan(ObservationGen.Observation.class), is(sameInstance(protoPlan)));
+    }
+    
+    /**
+     * Verify an exception is thrown if a field does not have an accessor, also when the accessor is requested again.
+     */
+    @Test
+    public void testConversionPlanMissingAccessor()
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                ConverterUtilities.getValue(new Direction(), "notAField", 
+                        com.google.protobuf.Descriptors.FieldDescriptor.Type.STRING);
+                fail("Expected exception for missing accessor");
+            }
+            catch (ObjectConverterException e)
+            {
+                // expected
+            }
+        }
+    }
+    
+    /**
+     * Measure the throughput of converting an observation with a detection and digital media to a proto message and 
+     * back. Plans are cleared before each conversion to approximate the previous per call reflection and compared to 
+     * conversions with cached plans. Results are printed for comparison, only correctness is asserted.
+     */
+    @Test
+    public void testConversionThroughput() throws ObjectConverterException
+    {
+        Observation observation = createDetectionObservation();
+        
+        measureThroughput("uncached", observation, true);
+        measureThroughput("cached", observation, false);
+    }
+    
+    /**
+     * Convert the observation to proto and back a number of times and print the rate.
+     */
+    private void measureThroughput(String name, Observation observation, boolean clearPlans) 
+            throws ObjectConverterException
+    {
+        final int count = 500;
+        Message expected = m_SUT.convertToProto(observation);
+        
+        // warm up
+        for (int i = 0; i < count; i++)
+        {
+            if (clearPlans)
+            {
+                ConversionPlanCache.clear();
+            }
+            m_SUT.convertToJaxb(m_SUT.convertToProto(observation));
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+        {
+            if (clearPlans)
+            {
+                ConversionPlanCache.clear();
+            }
+            Message message = m_SUT.convertToProto(observation);
+            assertThat(message, equalTo(expected));
+            m_SUT.convertToJaxb(message);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Observation conversion (%s): %.1f round trips/sec%n", name, count * 1e9 / elapsed);
+    }
+    
+    /**
+     * Create an observation with a detection and digital media.
+     */
+    private Observation createDetectionObservation()
+    {
+        Detection detection = new Detection()
+            .withType(DetectionTypeEnum.TEST)
+            .withTargetLocation(SpatialTypesFactory.newCoordinates(70, 50))
+            .withTargetOrientation(SpatialTypesFactory.newOrientation(50, 90, 0))
+            .withTrackHistories(new TrackElement(SpatialTypesFactory.newCoordinates(50.0, 70.0), 
+                    new SpeedMetersPerSecond(205.5, null, null, null, null), 
+                    SpatialTypesFactory.newOrientation(1.5, 30.55, 55.55), null, 2003L))
+            .withTargetFrequency(new FrequencyKhz().withValue(30))
+            .withTargetId("target-id");
+        
+        return new Observation()
+            .withVersion(new Version(1, 2))
+            .withUuid(UUID.randomUUID())
+            .withAssetUuid(UUID.randomUUID())
+            .withAssetName("asset-name")
+            .withAssetType("asset-type")
+            .withCreatedTimestamp(100L)
+            .withSystemInTestMode(false)
+            .withSystemId(5)
+            .withModalities(new SensingModality().withValue(SensingModalityEnum.ACOUSTIC))
+            .withDetection(detection)
+            .withAssetLocation(SpatialTypesFactory.newCoordinates(54, 74))
+            .withDigitalMedia(new DigitalMedia(new byte[1024], "image/jpeg"));
+    }
+    
     /**
      * Create an observation.
      */
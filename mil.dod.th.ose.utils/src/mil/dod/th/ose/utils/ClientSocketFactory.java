@@ -14,6 +14,7 @@ package mil.dod.th.ose.utils;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 import aQute.bnd.annotation.ProviderType;
 
@@ -57,4 +58,19 @@ public interface ClientSocketFactory
      *     thrown in the event that there is an issue creating the socket     
      */
     Socket createClientSocket(String host, int port) throws IOException;
+
+    /**
+     * Create a connected {@link SocketChannel} for the specified host and port. The channel is left in blocking mode.
+     * SSL is not supported.
+     * 
+     * @param host
+     *     the host address 
+     * @param port
+     *     port that this socket is bound to
+     * @return
+     *     socket channel created by this factory
+     * @throws IOException
+     *     thrown in the event that there is an issue creating the socket channel
+     */
+    SocketChannel createClientSocketChannel(String host, int port) throws IOException;
 }
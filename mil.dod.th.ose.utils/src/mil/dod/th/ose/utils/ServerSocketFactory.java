@@ -14,6 +14,7 @@ package mil.dod.th.ose.utils;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 
 import aQute.bnd.annotation.ProviderType;
 
@@ -54,4 +55,19 @@ public interface ServerSocketFactory
      * @see ServerSocket#ServerSocket(int)
      */
     ServerSocket createServerSocket(int port) throws IOException;
+
+    /**
+     * Creates a {@link ServerSocketChannel} bound to the given port. The channel is left in blocking mode, sockets
+     * accepted from the channel can be switched to non-blocking mode. SSL is not supported.
+     * 
+     * @param port
+     *      port to listen on
+     * @return
+     *      server socket channel created by this factory
+     * @throws IOException
+     *      if there is an error creating the server socket channel
+     * 
+     * @see ServerSocketChannel#open()
+     */
+    ServerSocketChannel createServerSocketChannel(int port) throws IOException;
 }
@@ -13,7 +13,9 @@
 package mil.dod.th.ose.utils.impl;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
@@ -72,4 +74,10 @@ public class ClientSocketFactoryImpl implements ClientSocketFactory
             return new Socket(host, port);
         }
     }
+
+    @Override
+    public SocketChannel createClientSocketChannel(final String host, final int port) throws IOException
+    {
+        return SocketChannel.open(new InetSocketAddress(host, port));
+    }
 }
@@ -13,7 +13,9 @@
 package mil.dod.th.ose.utils.impl;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import java.security.NoSuchAlgorithmException;
 
 import javax.net.ssl.SSLContext;
@@ -65,4 +67,21 @@ public class ServerSocketFactoryImpl implements ServerSocketFactory
             return new ServerSocket(port);
         }
     }
+
+    @Override
+    @CoverageIgnore // simple call and it actually opens a port
+    public ServerSocketChannel createServerSocketChannel(final int port) throws IOException
+    {
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try
+        {
+            serverChannel.bind(new InetSocketAddress(port));
+        }
+        catch (final IOException e)
+        {
+            serverChannel.close();
+            throw e;
+        }
+        return serverChannel;
+    }
 }
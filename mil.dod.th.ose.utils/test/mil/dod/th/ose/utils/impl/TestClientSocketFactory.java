@@ -18,6 +18,7 @@ import static org.hamcrest.Matchers.*;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -60,4 +61,25 @@ public class TestClientSocketFactory
         server.close();
         socket.close();
     }
+    
+    /**
+     * Test method for {@link mil.dod.th.ose.utils.impl.ClientSocketFactoryImpl#createClientSocketChannel(String, int)}.
+     * Test that a socket channel created with the factory is connected to the server socket.
+     */
+    @Test
+    public void testCreateClientSocketChannel() throws IOException
+    {
+        ServerSocket server = new ServerSocket(0);
+        int serverPort = server.getLocalPort();
+        
+        SocketChannel channel = m_SUT.createClientSocketChannel("localhost", serverPort);
+        
+        assertThat(channel.isConnected(), is(true));
+        assertThat(channel.isBlocking(), is(true));
+        assertThat(channel.socket().getPort(), is(serverPort));
+        
+        //cleanup
+        server.close();
+        channel.close();
+    }
 }
@@ -18,6 +18,7 @@ import com.google.protobuf.Message;
 import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationRequestData;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationResponseData;
+import mil.dod.th.core.remote.proto.EventMessages.SendEventBatchData;
 import mil.dod.th.core.remote.proto.EventMessages.SendEventData;
 import mil.dod.th.core.remote.proto.EventMessages.UnregisterEventRequestData;
 import mil.dod.th.core.remote.proto.RemoteBase.TerraHarvestMessage;
@@ -43,6 +44,9 @@ public class EventAdminParser implements MessageParser<EventAdminNamespace>
             case SendEvent:
                 dataMessage = SendEventData.parseFrom(namespaceMessage.getData());
                 break;
+            case SendEventBatch:
+                dataMessage = SendEventBatchData.parseFrom(namespaceMessage.getData());
+                break;
             case EventRegistrationRequest:
                 dataMessage = EventRegistrationRequestData.parseFrom(namespaceMessage.getData());
                 break;
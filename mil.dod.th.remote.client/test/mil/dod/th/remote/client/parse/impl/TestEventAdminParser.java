@@ -18,6 +18,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import mil.dod.th.core.remote.proto.EventMessages.EventAdminNamespace;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationRequestData;
 import mil.dod.th.core.remote.proto.EventMessages.EventRegistrationResponseData;
+import mil.dod.th.core.remote.proto.EventMessages.SendEventBatchData;
 import mil.dod.th.core.remote.proto.EventMessages.SendEventData;
 import mil.dod.th.core.remote.proto.EventMessages.UnregisterEventRequestData;
 import mil.dod.th.core.remote.proto.RemoteBase.Namespace;
@@ -51,6 +52,10 @@ public class TestEventAdminParser
             case SendEvent:
                 dataMessage = SendEventData.newBuilder().setTopic("test").build().toByteString();
                 break;
+            case SendEventBatch:
+                dataMessage = SendEventBatchData.newBuilder()
+                    .addEvent(SendEventData.newBuilder().setTopic("test")).build().toByteString();
+                break;
             case EventRegistrationRequest:
                 dataMessage = EventRegistrationRequestData.newBuilder()
                     .setCanQueueEvent(false).setExpirationTimeHours(5).setObjectFormat(LexiconFormat.Enum.NATIVE)